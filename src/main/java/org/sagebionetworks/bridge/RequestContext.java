@@ -22,7 +22,7 @@ public class RequestContext {
     
     public static final RequestContext NULL_INSTANCE = new RequestContext(null, null, null, null, ImmutableSet.of(),
             ImmutableSet.of(), ImmutableSet.of(), null, ImmutableList.of(), null,
-            null);
+            null, RequestEntityCache.DISABLED);
     
     /** Gets the request context for the current thread. See also RequestInterceptor. */
     public static RequestContext get() {
@@ -71,10 +71,12 @@ public class RequestContext {
     private final Metrics metrics;
     private final String callerIpAddress;
     private final String userAgent;
+    private final RequestEntityCache entityCache;
     
     private RequestContext(Metrics metrics, String requestId, String callerAppId, String callerOrgMembership,
             Set<String> callerEnrolledStudies, Set<String> orgSponsoredStudies, Set<Roles> callerRoles,
-            String callerUserId, List<String> callerLanguages, String callerIpAddress, String userAgent) {
+            String callerUserId, List<String> callerLanguages, String callerIpAddress, String userAgent,
+            RequestEntityCache entityCache) {
         this.requestId = requestId;
         this.callerAppId = callerAppId;
         this.callerOrgMembership = callerOrgMembership;
@@ -87,6 +89,7 @@ public class RequestContext {
         this.metrics = metrics;
         this.callerIpAddress = callerIpAddress;
         this.userAgent = userAgent;
+        this.entityCache = entityCache;
     }
     
     public Metrics getMetrics() {
@@ -139,6 +142,11 @@ public class RequestContext {
         return userAgent;
     }
 
+    /** Entities that have already been loaded during this request. */
+    public RequestEntityCache getEntityCache() {
+        return entityCache;
+    }
+
     public RequestContext.Builder toBuilder() {
         return new RequestContext.Builder()
                 .withRequestId(requestId)
@@ -151,7 +159,8 @@ public class RequestContext {
                 .withCallerUserId(callerUserId)
                 .withMetrics(metrics)
                 .withCallerIpAddress(callerIpAddress)
-                .withUserAgent(userAgent);
+                .withUserAgent(userAgent)
+                .withEntityCache(entityCache);
     }
     
     public static class Builder {
@@ -166,6 +175,7 @@ public class RequestContext {
         private List<String> callerLanguages;
         private String callerIpAddress;
         private String userAgent;
+        private RequestEntityCache entityCache;
 
         public Builder withMetrics(Metrics metrics) {
             this.metrics = metrics;
@@ -215,6 +225,10 @@ public class RequestContext {
             this.userAgent = userAgent;
             return this;
         }
+        public Builder withEntityCache(RequestEntityCache entityCache) {
+            this.entityCache = entityCache;
+            return this;
+        }
         
         public RequestContext build() {
             if (requestId == null) {
@@ -235,9 +249,12 @@ public class RequestContext {
             if (metrics == null) {
                 metrics = new Metrics(requestId);
             }
+            if (entityCache == null) {
+                entityCache = new RequestEntityCache(metrics);
+            }
             return new RequestContext(metrics, requestId, callerAppId, callerOrgMembership, callerEnrolledStudies,
                     orgSponsoredStudies, callerRoles, callerUserId, callerLanguages, callerIpAddress,
-                    userAgent);
+                    userAgent, entityCache);
         }
     }
 
@@ -0,0 +1,83 @@
+package org.sagebionetworks.bridge;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.sagebionetworks.bridge.models.Metrics;
+
+/**
+ * Request-scoped identity map of entities that are loaded repeatedly while serving a single request (apps, studies
+ * and accounts). Services consult this before going to the DAO, and must remove entries when they write the entity
+ * (the account DAO removes accounts itself, since several services write them).
+ * A new, empty map is created for each request and carried in the {@link RequestContext}. Outside of a request
+ * (see {@link RequestContext#NULL_INSTANCE}) the map is disabled, so nothing is retained between unrelated callers.
+ * Cache hits are counted in the request's {@link Metrics}.
+ */
+public class RequestEntityCache {
+
+    /** A disabled cache, which never stores anything. */
+    public static final RequestEntityCache DISABLED = new RequestEntityCache(null, false);
+
+    private final Metrics metrics;
+    private final boolean enabled;
+    private final Map<Class<?>, Map<Object, Object>> entityMaps = new ConcurrentHashMap<>();
+
+    /** Creates an empty cache. Metrics may be null, in which case cache hits are not counted. */
+    public RequestEntityCache(Metrics metrics) {
+        this(metrics, true);
+    }
+
+    private RequestEntityCache(Metrics metrics, boolean enabled) {
+        this.metrics = metrics;
+        this.enabled = enabled;
+    }
+
+    /** Returns the entity of this type stored under this key, or null if it has not been loaded in this request. */
+    public <T> T get(Class<T> clazz, Object key) {
+        checkNotNull(clazz);
+        checkNotNull(key);
+
+        Map<Object, Object> entityMap = entityMaps.get(clazz);
+        if (entityMap == null) {
+            return null;
+        }
+        T entity = clazz.cast(entityMap.get(key));
+        if (entity != null && metrics != null) {
+            metrics.incrementEntityCacheHitCount(clazz.getSimpleName());
+        }
+        return entity;
+    }
+
+    /** Stores the entity under this key. Null entities are not stored, so a lookup that found nothing is repeated. */
+    public <T> void put(Class<T> clazz, Object key, T entity) {
+        checkNotNull(clazz);
+        checkNotNull(key);
+
+        if (enabled && entity != null) {
+            entityMaps.computeIfAbsent(clazz, k -> new ConcurrentHashMap<>()).put(key, entity);
+        }
+    }
+
+    /** Removes the entity of this type stored under this key. */
+    public void remove(Class<?> clazz, Object key) {
+        checkNotNull(clazz);
+        checkNotNull(key);
+
+        Map<Object, Object> entityMap = entityMaps.get(clazz);
+        if (entityMap != null) {
+            entityMap.remove(key);
+        }
+    }
+
+    /**
+     * Removes all entities of this type. Used when an entity can be stored under several keys (e.g. an account that
+     * was loaded by ID and by health code), and a write may have made any of them stale.
+     */
+    public void removeAll(Class<?> clazz) {
+        checkNotNull(clazz);
+
+        entityMaps.remove(clazz);
+    }
+}
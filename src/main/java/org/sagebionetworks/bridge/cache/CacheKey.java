@@ -42,6 +42,10 @@ public final class CacheKey {
     public static final CacheKey orgSponsoredStudies(String appId, String orgId) {
         return new CacheKey(orgId, appId, "OrgSponsoredStudies");
     }
+    /** Version of the Hibernate second-level cache, which changes whenever cached data is written. */
+    public static final CacheKey hibernateCacheVersion() {
+        return new CacheKey("HibernateCacheVersion");
+    }
     public static final CacheKey tagList() {
         return new CacheKey("TagList");
     }
@@ -334,6 +334,23 @@ public class CacheProvider {
         }
     }
     
+    /**
+     * Set an object in the cache with no expiration, but only if there is no object for the key yet. Returns true if 
+     * the object was set.
+     */
+    public boolean setObjectIfAbsent(CacheKey cacheKey, Object object) {
+        checkNotNull(cacheKey);
+        checkNotNull(object);
+        try {
+            String ser = BridgeObjectMapper.get().writeValueAsString(object);
+            Long result = jedisOps.setnx(cacheKey.toString(), ser);
+            return result != null && result == 1L;
+        } catch (Throwable e) {
+            promptToStartRedisIfLocal(e);
+            throw new BridgeServiceException(e);
+        }
+    }
+    
     /**
      * Set an object in the cache with an expiration in seconds
      */
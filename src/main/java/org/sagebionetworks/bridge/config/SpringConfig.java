@@ -3,6 +3,9 @@ package org.sagebionetworks.bridge.config;
 import static com.amazonaws.regions.Regions.US_EAST_1;
 import static org.hibernate.event.spi.EventType.DELETE;
 import static org.hibernate.event.spi.EventType.MERGE;
+import static org.hibernate.event.spi.EventType.POST_COMMIT_DELETE;
+import static org.hibernate.event.spi.EventType.POST_COMMIT_INSERT;
+import static org.hibernate.event.spi.EventType.POST_COMMIT_UPDATE;
 import static org.hibernate.event.spi.EventType.SAVE_UPDATE;
 
 import java.net.URI;
@@ -43,6 +46,7 @@ import com.google.common.collect.ImmutableMap;
 import com.mchange.v2.c3p0.DriverManagerDataSource;
 
 import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang3.StringUtils;
 import org.hibernate.SessionFactory;
 import org.hibernate.boot.MetadataSources;
 import org.hibernate.boot.registry.StandardServiceRegistry;
@@ -72,6 +76,7 @@ import org.sagebionetworks.bridge.dynamodb.AnnotationBasedTableCreator;
 import org.sagebionetworks.bridge.dynamodb.DynamoActivityEvent;
 import org.sagebionetworks.bridge.dynamodb.DynamoAppConfig;
 import org.sagebionetworks.bridge.dynamodb.DynamoAppConfigElement;
+import org.sagebionetworks.bridge.dynamodb.DynamoCallCounter;
 import org.sagebionetworks.bridge.dynamodb.DynamoCompoundActivityDefinition;
 import org.sagebionetworks.bridge.dynamodb.DynamoCriteria;
 import org.sagebionetworks.bridge.dynamodb.DynamoDemographicValuesValidationConfig;
@@ -106,24 +111,30 @@ import org.sagebionetworks.bridge.dynamodb.DynamoUtils;
 import org.sagebionetworks.bridge.file.FileHelper;
 import org.sagebionetworks.bridge.heartbeat.HeartbeatLogger;
 import org.sagebionetworks.bridge.hibernate.AccountPersistenceExceptionConverter;
+import org.sagebionetworks.bridge.hibernate.ConnectionPoolMonitor;
 import org.sagebionetworks.bridge.hibernate.HibernateAccount;
 import org.sagebionetworks.bridge.hibernate.HibernateAccountSecret;
+import org.sagebionetworks.bridge.hibernate.HibernateCacheInvalidator;
 import org.sagebionetworks.bridge.hibernate.HibernateEnrollment;
 import org.sagebionetworks.bridge.hibernate.HibernateHelper;
 import org.sagebionetworks.bridge.hibernate.HibernateUploadTableJob;
 import org.sagebionetworks.bridge.hibernate.HibernateUploadTableRow;
 import org.sagebionetworks.bridge.hibernate.MySQLHibernatePersistenceExceptionConverter;
+import org.sagebionetworks.bridge.hibernate.MySqlStatementCounter;
 import org.sagebionetworks.bridge.hibernate.HibernateSharedModuleMetadata;
 import org.sagebionetworks.bridge.hibernate.HibernateStudy;
 import org.sagebionetworks.bridge.hibernate.HibernateTemplate;
 import org.sagebionetworks.bridge.hibernate.HibernateTemplateRevision;
 import org.sagebionetworks.bridge.hibernate.OrganizationPersistenceExceptionConverter;
+import org.sagebionetworks.bridge.hibernate.PersistenceExceptionConverter;
+import org.sagebionetworks.bridge.hibernate.ReadReplica;
 import org.sagebionetworks.bridge.hibernate.SponsorPersistenceExceptionConverter;
 import org.sagebionetworks.bridge.hibernate.TagEventListener;
 import org.sagebionetworks.bridge.hibernate.BasicPersistenceExceptionConverter;
 import org.sagebionetworks.bridge.json.BridgeObjectMapper;
 import org.sagebionetworks.bridge.models.RequestInfo;
 import org.sagebionetworks.bridge.models.Tag;
+import org.sagebionetworks.bridge.models.accounts.ParticipantDataDeletion;
 import org.sagebionetworks.bridge.models.activities.StudyActivityEvent;
 import org.sagebionetworks.bridge.models.assessments.HibernateAssessment;
 import org.sagebionetworks.bridge.models.assessments.HibernateAssessmentResource;
@@ -144,6 +155,7 @@ import org.sagebionetworks.bridge.models.schedules2.timelines.TimelineMetadata;
 import org.sagebionetworks.bridge.models.studies.Alert;
 import org.sagebionetworks.bridge.redis.JedisOps;
 import org.sagebionetworks.bridge.s3.S3Helper;
+import org.sagebionetworks.bridge.spring.filters.AdmissionControlFilter;
 import org.sagebionetworks.bridge.spring.filters.MetricsFilter;
 import org.sagebionetworks.bridge.spring.filters.RequestFilter;
 import org.sagebionetworks.bridge.spring.filters.StaticHeadersFilter;
@@ -206,6 +218,14 @@ public class SpringConfig {
         return filterRegistration(filter);
     }
 
+    // After the metrics filter, so that requests turned away are still logged and counted.
+    @Bean
+    @Order(4)
+    public FilterRegistrationBean<AdmissionControlFilter> admissionControlFilterRegistration(
+            AdmissionControlFilter filter) {
+        return filterRegistration(filter);
+    }
+
     // This will replace Spring Boot's default configuration using Jackson2ObjectMapperBuilder.
     // See: https://docs.spring.io/spring-boot/docs/current-SNAPSHOT/reference
     //      /html/howto.html#howto-customize-the-jackson-objectmapper
@@ -231,8 +251,8 @@ public class SpringConfig {
         ClientConfiguration awsClientConfig = PredefinedClientConfigurations.dynamoDefault()
                 .withMaxErrorRetry(maxRetries);
         
-        return AmazonDynamoDBClientBuilder.standard()
-                .withClientConfiguration(awsClientConfig).withRegion(US_EAST_1).build();
+        return AmazonDynamoDBClientBuilder.standard().withClientConfiguration(awsClientConfig)
+                .withRequestHandlers(new DynamoCallCounter()).withRegion(US_EAST_1).build();
     }
     
     @Bean(name = "snsClient")
@@ -591,9 +611,12 @@ public class SpringConfig {
     }
     
     private String databaseURL() {
+        return databaseURL(bridgeConfig().get("hibernate.connection.url"));
+    }
+    
+    private String databaseURL(String url) {
         BridgeConfig config = bridgeConfig();
         
-        String url = config.get("hibernate.connection.url");
         // Append SSL props to URL
         boolean useSsl = Boolean.valueOf(config.get("hibernate.connection.useSSL"));
         url += "?rewriteBatchedStatements=true&serverTimezone=UTC&requireSSL="+useSsl+"&useSSL="+useSsl+"&verifyServerCertificate="+useSsl;
@@ -603,7 +626,64 @@ public class SpringConfig {
 
     @Bean
     @Autowired
-    public SessionFactory hibernateSessionFactory(TagEventListener listener) {
+    public SessionFactory hibernateSessionFactory(TagEventListener listener,
+            HibernateCacheInvalidator cacheInvalidator) {
+        BridgeConfig config = bridgeConfig();
+        Properties props = hibernateProperties(databaseURL(), ConnectionPoolMonitor.POOL_NAME,
+                config.getPropertyAsInt("hibernate.pool.max.size"));
+
+        // Second-level and query caches. The cache regions, their sizes and expiration are configured in 
+        // ehcache.xml. The HibernateCacheInvalidator tells other servers to evict their caches when cached entities 
+        // change.
+        boolean cacheEnabled = Boolean.valueOf(config.get("hibernate.cache.enabled"));
+        props.put("hibernate.cache.use_second_level_cache", cacheEnabled);
+        props.put("hibernate.cache.use_query_cache", cacheEnabled);
+        if (cacheEnabled) {
+            props.put("hibernate.cache.region.factory_class", "jcache");
+            props.put("hibernate.javax.cache.provider", "org.ehcache.jsr107.EhcacheCachingProvider");
+            props.put("hibernate.javax.cache.uri", "ehcache.xml");
+            props.put("hibernate.generate_statistics", true);
+        }
+
+        SessionFactory factory = buildSessionFactory(props);
+        
+        // I could not find a more elegant way to register this listener that was picked up by Hibernate
+        ServiceRegistryImplementor serviceImpl = ((SessionFactoryImplementor)factory).getServiceRegistry();
+        EventListenerRegistry eventRegistry = serviceImpl.getService(EventListenerRegistry.class);
+        eventRegistry.appendListeners(SAVE_UPDATE, listener);
+        eventRegistry.appendListeners(DELETE, listener);
+        eventRegistry.appendListeners(MERGE, listener);
+        eventRegistry.appendListeners(POST_COMMIT_INSERT, cacheInvalidator);
+        eventRegistry.appendListeners(POST_COMMIT_UPDATE, cacheInvalidator);
+        eventRegistry.appendListeners(POST_COMMIT_DELETE, cacheInvalidator);
+        cacheInvalidator.setSessionFactory(factory);
+        
+        return factory;
+    }
+    
+    /**
+     * An optional MySQL read replica for heavy read-only queries. If hibernate.replica.connection.url isn't set, 
+     * there is no replica and all queries go to the primary database.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ReadReplica readReplica() {
+        BridgeConfig config = bridgeConfig();
+        String replicaUrl = config.get("hibernate.replica.connection.url");
+        if (StringUtils.isBlank(replicaUrl)) {
+            return ReadReplica.NONE;
+        }
+        // Queries on the replica are read-only, so it doesn't need the second-level cache or the write listeners.
+        Properties props = hibernateProperties(databaseURL(replicaUrl), ConnectionPoolMonitor.REPLICA_POOL_NAME,
+                config.getPropertyAsInt("hibernate.replica.pool.max.size"));
+        props.put("hibernate.cache.use_second_level_cache", false);
+        
+        ReadReplica replica = new ReadReplica(buildSessionFactory(props),
+                config.getPropertyAsInt("hibernate.replica.lag.poll.seconds"));
+        replica.start();
+        return replica;
+    }
+    
+    private Properties hibernateProperties(String url, String poolName, int maxPoolSize) {
         ClassLoader classLoader = getClass().getClassLoader();
 
         // Need to set env vars to find the truststore so we can validate Amazon's RDS SSL certificate. Note that
@@ -629,18 +709,34 @@ public class SpringConfig {
         props.put("hibernate.connection.useUnicode", true);
         props.put("hibernate.dialect", "org.hibernate.dialect.MySQLDialect");
 
-        // c3p0 connection pool properties
-        props.put("hibernate.c3p0.min_size", 5);
-        props.put("hibernate.c3p0.max_size", 20);
-        props.put("hibernate.c3p0.timeout", 300);
-        props.put("hibernate.c3p0.idle_test_period", 300);
+        // c3p0 connection pool properties come from Bridge configs, so the pool can be tuned per environment.
+        // Connections wait at most checkout.timeout for a connection, rather than blocking indefinitely when the
+        // pool is exhausted. Prepared statements are cached per connection.
+        BridgeConfig config = bridgeConfig();
+        props.put("hibernate.c3p0.dataSourceName", poolName);
+        props.put("hibernate.c3p0.min_size", config.getPropertyAsInt("hibernate.pool.min.size"));
+        props.put("hibernate.c3p0.max_size", maxPoolSize);
+        props.put("hibernate.c3p0.acquire_increment", config.getPropertyAsInt("hibernate.pool.acquire.increment"));
+        props.put("hibernate.c3p0.timeout", config.getPropertyAsInt("hibernate.pool.idle.timeout.seconds"));
+        props.put("hibernate.c3p0.idle_test_period", config.getPropertyAsInt("hibernate.pool.idle.test.period.seconds"));
+        props.put("hibernate.c3p0.checkoutTimeout", config.getPropertyAsInt("hibernate.pool.checkout.timeout.millis"));
+        props.put("hibernate.c3p0.maxStatementsPerConnection",
+                config.getPropertyAsInt("hibernate.pool.max.statements.per.connection"));
+        props.put("hibernate.jdbc.batch_size", config.getPropertyAsInt("hibernate.jdbc.batch.size"));
+        props.put("hibernate.order_inserts", true);
+        props.put("hibernate.order_updates", true);
+
+        // Counts each request's MySQL statements, for its call budget.
+        props.put("hibernate.session_factory.statement_inspector", MySqlStatementCounter.class.getName());
 
         // Connection properties come from Bridge configs
-        BridgeConfig config = bridgeConfig();
         props.put("hibernate.connection.password", config.get("hibernate.connection.password"));
         props.put("hibernate.connection.username", config.get("hibernate.connection.username"));
-        props.put("hibernate.connection.url", databaseURL());
-
+        props.put("hibernate.connection.url", url);
+        return props;
+    }
+    
+    private SessionFactory buildSessionFactory(Properties props) {
         StandardServiceRegistry reg = new StandardServiceRegistryBuilder().applySettings(props).build();
         
         // For whatever reason, we need to list each Hibernate-enabled class individually.
@@ -674,17 +770,9 @@ public class SpringConfig {
         metadataSources.addAnnotatedClass(DemographicUser.class);
         metadataSources.addAnnotatedClass(DemographicValue.class);
         metadataSources.addAnnotatedClass(Alert.class);
+        metadataSources.addAnnotatedClass(ParticipantDataDeletion.class);
         
-        SessionFactory factory = metadataSources.buildMetadata().buildSessionFactory();
-        
-        // I could not find a more elegant way to register this listener that was picked up by Hibernate
-        ServiceRegistryImplementor serviceImpl = ((SessionFactoryImplementor)factory).getServiceRegistry();
-        EventListenerRegistry eventRegistry = serviceImpl.getService(EventListenerRegistry.class);
-        eventRegistry.appendListeners(SAVE_UPDATE, listener);
-        eventRegistry.appendListeners(DELETE, listener);
-        eventRegistry.appendListeners(MERGE, listener);
-        
-        return factory;
+        return metadataSources.buildMetadata().buildSessionFactory();
     }
     
     @Bean
@@ -717,36 +805,49 @@ public class SpringConfig {
     @Bean(name = "basicHibernateHelper")
     @Autowired
     public HibernateHelper basicHibernateHelper(SessionFactory sessionFactory,
-            BasicPersistenceExceptionConverter converter) {
-        return new HibernateHelper(sessionFactory, converter);
+            BasicPersistenceExceptionConverter converter, HibernateCacheInvalidator cacheInvalidator,
+            ReadReplica readReplica) {
+        return hibernateHelper(sessionFactory, converter, cacheInvalidator, readReplica);
     }
     
     @Bean(name = "accountHibernateHelper")
     @Autowired
     public HibernateHelper accountHibernateHelper(SessionFactory sessionFactory,
-            AccountPersistenceExceptionConverter converter) {
-        return new HibernateHelper(sessionFactory, converter);
+            AccountPersistenceExceptionConverter converter, HibernateCacheInvalidator cacheInvalidator,
+            ReadReplica readReplica) {
+        return hibernateHelper(sessionFactory, converter, cacheInvalidator, readReplica);
     }
     
     @Bean(name = "sponsorHibernateHelper")
     @Autowired
     public HibernateHelper sponsorHibernateHelper(SessionFactory sessionFactory,
-            SponsorPersistenceExceptionConverter converter) {
-        return new HibernateHelper(sessionFactory, converter);
+            SponsorPersistenceExceptionConverter converter, HibernateCacheInvalidator cacheInvalidator,
+            ReadReplica readReplica) {
+        return hibernateHelper(sessionFactory, converter, cacheInvalidator, readReplica);
     }
     
     @Bean(name = "organizationHibernateHelper")
     @Autowired
     public HibernateHelper organizationHibernateHelper(SessionFactory sessionFactory,
-            OrganizationPersistenceExceptionConverter converter) {
-        return new HibernateHelper(sessionFactory, converter);
+            OrganizationPersistenceExceptionConverter converter, HibernateCacheInvalidator cacheInvalidator,
+            ReadReplica readReplica) {
+        return hibernateHelper(sessionFactory, converter, cacheInvalidator, readReplica);
     }
     
     @Bean(name = "mysqlHibernateHelper")
     @Autowired
     public HibernateHelper schedule2HibernateHelper(SessionFactory sessionFactory,
-            MySQLHibernatePersistenceExceptionConverter converter) {
-        return new HibernateHelper(sessionFactory, converter);
+            MySQLHibernatePersistenceExceptionConverter converter, HibernateCacheInvalidator cacheInvalidator,
+            ReadReplica readReplica) {
+        return hibernateHelper(sessionFactory, converter, cacheInvalidator, readReplica);
+    }
+    
+    private HibernateHelper hibernateHelper(SessionFactory sessionFactory, PersistenceExceptionConverter converter,
+            HibernateCacheInvalidator cacheInvalidator, ReadReplica readReplica) {
+        HibernateHelper helper = new HibernateHelper(sessionFactory, converter);
+        helper.setCacheInvalidator(cacheInvalidator);
+        helper.setReadReplica(readReplica);
+        return helper;
     }
     
     @Bean(name = "sessionExpireInSeconds")
@@ -6,6 +6,7 @@ import java.util.Optional;
 import org.sagebionetworks.bridge.models.AccountSummarySearch;
 import org.sagebionetworks.bridge.models.PagedResourceList;
 import org.sagebionetworks.bridge.models.accounts.Account;
+import org.sagebionetworks.bridge.models.accounts.AccountField;
 import org.sagebionetworks.bridge.models.accounts.AccountId;
 import org.sagebionetworks.bridge.models.accounts.AccountSummary;
 import org.sagebionetworks.bridge.models.accounts.ExternalIdentifierInfo;
@@ -38,6 +39,14 @@ public interface AccountDao {
      */
     void updateAccount(Account account);
     
+    /**
+     * Save the change to one field of the account, along with its modifiedOn timestamp, without rewriting the rest
+     * of the account or its other collections. The update is only made if the account's version matches the 
+     * persisted version (otherwise a ConcurrentModificationException is thrown); the account's version is then 
+     * incremented to match.
+     */
+    void updateAccountField(Account account, AccountField field);
+    
     /**
      * Get an account in the context of an app by the user's ID, email address, health code,
      * phone number, or Synapse user ID. 
@@ -59,6 +68,25 @@ public interface AccountDao {
      */
     PagedResourceList<AccountSummary> getPagedAccountSummaries(String appId, AccountSummarySearch search);
     
+    /**
+     * Get a page of lightweight account summaries, from the read replica if it is available and current enough. The 
+     * replica can lag behind the primary, so this should only be used to serve read-only API calls, never by code 
+     * that changes the accounts it finds.
+     */
+    PagedResourceList<AccountSummary> getPagedAccountSummariesFromReplica(String appId, AccountSummarySearch search);
+    
+    /**
+     * Get the number of accounts in the app. This reads a counter that is maintained as accounts are created and 
+     * deleted, and is periodically recounted against the accounts table, so it is cheap enough to call on every 
+     * sign up.
+     */
+    int getAccountCount(String appId);
+    
+    /**
+     * Count the accounts in the app, reset the maintained counter to that value, and return it.
+     */
+    int reconcileAccountCount(String appId);
+    
     /**
      * Get a page of external IDs associated to the indicated study. These are really accounts, but 
      * older APIs continue to view these as paged external ID records.  
@@ -1,13 +1,13 @@
 package org.sagebionetworks.bridge.dao;
 
-import java.util.Optional;
+import java.util.List;
 
 import org.sagebionetworks.bridge.models.accounts.AccountSecret;
 import org.sagebionetworks.bridge.models.accounts.AccountSecretType;
 
 /**
- * DAO to manage the creation and verification of passwords and reauthentication tokens. 
- * (Note though that passwords are currently still stored in the Accounts table.)
+ * DAO to manage the storage of hashed passwords and reauthentication tokens. Secrets are verified by the 
+ * AccountSecretService. (Note though that passwords are currently still stored in the Accounts table.)
  */
 public interface AccountSecretDao {
     /**
@@ -16,11 +16,9 @@ public interface AccountSecretDao {
     void createSecret(AccountSecretType type, String accountId, String plaintext);
     
     /**
-     * Retrieve N secret records (indicated by rotations), and compare the provided secret 
-     * against all of those secrets looking for a match. Return the record if a match is found,
-     * or null otherwise.
+     * Retrieve the N most recent secret records (indicated by rotations), newest first.
      */
-    Optional<AccountSecret> verifySecret(AccountSecretType type, String accountId, String plaintext, int rotations);
+    List<? extends AccountSecret> getSecrets(AccountSecretType type, String accountId, int rotations);
     
     /**
      * Delete all secrets for the indicated user, of the indicated type.
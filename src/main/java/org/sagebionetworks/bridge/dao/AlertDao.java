@@ -4,6 +4,8 @@ import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 
+import org.joda.time.DateTime;
+
 import org.sagebionetworks.bridge.models.PagedResourceList;
 import org.sagebionetworks.bridge.models.studies.Alert;
 import org.sagebionetworks.bridge.models.studies.Alert.AlertCategory;
@@ -15,6 +17,14 @@ public interface AlertDao {
      */
     void createAlert(Alert alert);
 
+    /**
+     * Creates an alert, or replaces the existing alert for the same study, app, user and category, in a single 
+     * statement. If replaceIfCreatedBefore is not null, an existing alert is only replaced if it was created before 
+     * that time; otherwise the existing alert is left as it is. Nothing is written if the user's account does not 
+     * exist in the app.
+     */
+    void upsertAlert(Alert alert, DateTime replaceIfCreatedBefore);
+
     /**
      * Deletes a specific alert.
      */
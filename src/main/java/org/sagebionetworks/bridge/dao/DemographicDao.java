@@ -1,5 +1,6 @@
 package org.sagebionetworks.bridge.dao;
 
+import java.util.List;
 import java.util.Optional;
 
 import org.sagebionetworks.bridge.models.PagedResourceList;
@@ -74,6 +75,19 @@ public interface DemographicDao {
      */
     Optional<DemographicUser> getDemographicUser(String appId, String studyId, String userId);
 
+    /**
+     * Fetches all of a user's DemographicUsers in an app, both app-level and
+     * study-level, in a single query.
+     * 
+     * @param appId  The appId of the app which contains the DemographicUsers to
+     *               fetch.
+     * @param userId The userId of the user who is associated with the
+     *               DemographicUsers to be fetched.
+     * @return a list of the user's DemographicUsers, or an empty list if there are
+     *         none.
+     */
+    List<DemographicUser> getAllDemographicUsersForUser(String appId, String userId);
+
     /**
      * Fetches all app-level DemographicUsers for an app or all study-level
      * DemographicUsers for a study.
@@ -0,0 +1,19 @@
+package org.sagebionetworks.bridge.dao;
+
+import java.util.List;
+
+import org.joda.time.DateTime;
+
+import org.sagebionetworks.bridge.models.accounts.ParticipantDataDeletion;
+
+/** DAO for the background deletions of deleted accounts' data. */
+public interface ParticipantDataDeletionDao {
+    /** Creates or updates the deletion. */
+    void saveDeletion(ParticipantDataDeletion deletion);
+
+    /** Deletes the deletion for the given user, once it has finished. Does nothing if there is none. */
+    void deleteDeletion(String userId);
+
+    /** Gets up to limit deletions that haven't made progress since the given time, least recent first. */
+    List<ParticipantDataDeletion> getStalledDeletions(DateTime modifiedBefore, int limit);
+}
@@ -18,6 +18,12 @@ public interface ParticipantVersionDao {
     /** Retrieves the latest participant version for health code. */
     Optional<ParticipantVersion> getLatestParticipantVersionForHealthCode(String appId, String healthCode);
 
+    /**
+     * Retrieves only the participant version number, createdOn, and fingerprint of the latest participant version for
+     * health code. This is all we need to create the next version, and it skips reading the demographics.
+     */
+    Optional<ParticipantVersion> getLatestParticipantVersionSummaryForHealthCode(String appId, String healthCode);
+
     /** Retrieves the participant version. */
     Optional<ParticipantVersion> getParticipantVersion(String appId, String healthCode, int participantVersion);
 }
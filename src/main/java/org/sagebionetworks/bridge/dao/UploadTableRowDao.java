@@ -1,7 +1,10 @@
 package org.sagebionetworks.bridge.dao;
 
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
+import org.sagebionetworks.bridge.models.ForwardCursorPagedResourceList;
 import org.sagebionetworks.bridge.models.PagedResourceList;
 import org.sagebionetworks.bridge.upload.UploadTableRow;
 import org.sagebionetworks.bridge.upload.UploadTableRowQuery;
@@ -17,6 +20,25 @@ public interface UploadTableRowDao {
     /** Query for upload table rows. */
     PagedResourceList<UploadTableRow> queryUploadTableRows(UploadTableRowQuery query);
 
+    /**
+     * Query for a page of upload table rows, ordered by createdOn and recordId, starting after the query's offset key.
+     * Only counts the total number of rows if the query asks for it.
+     */
+    ForwardCursorPagedResourceList<UploadTableRow> queryUploadTableRowsByCursor(UploadTableRowQuery query);
+
+    /**
+     * Passes every upload table row matching the query to the consumer, in the same order as cursor queries, starting
+     * after the query's offset key. Rows are read from the database a page at a time, as they are consumed, so memory 
+     * use doesn't depend on the number of rows. Returns the number of rows.
+     */
+    int streamUploadTableRows(UploadTableRowQuery query, Consumer<UploadTableRow> consumer);
+
     /** Create a new upload table row, or overwrite it if the row already exists. */
     void saveUploadTableRow(UploadTableRow row);
+
+    /**
+     * Creates or overwrites many upload table rows in a single transaction. Rows must already be validated. Either all
+     * rows are saved, or none are.
+     */
+    void saveUploadTableRows(List<UploadTableRow> rows);
 }
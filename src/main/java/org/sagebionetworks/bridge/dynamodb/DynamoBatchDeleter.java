@@ -0,0 +1,200 @@
+package org.sagebionetworks.bridge.dynamodb;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.annotation.PreDestroy;
+
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper.FailedBatch;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBQueryExpression;
+import com.amazonaws.services.dynamodbv2.datamodeling.QueryResultPage;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import org.sagebionetworks.bridge.BridgeUtils;
+import org.sagebionetworks.bridge.config.BridgeConfig;
+import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
+
+/**
+ * Deletes large numbers of DynamoDB items, such as all the records of a participant, without loading them all into
+ * memory or taking all of a table's write capacity. Keys are read a page at a time, and each page is deleted in
+ * batches of 25 items (the most BatchWriteItem accepts), several batches in parallel. Each deletion (one table's
+ * items for one caller) has its own throughput budget, in items per second, so a large deletion from one table
+ * doesn't slow deletions from others. Callers bound how many deletions run at once. A batch that fails (usually
+ * because of throttling) is retried with exponential backoff; since deletes are idempotent, the whole batch is
+ * retried.
+ *
+ * Keys are always re-read from the table, so if a deletion fails part-way, running it again picks up from where it
+ * stopped.
+ */
+@Component
+public class DynamoBatchDeleter {
+    private static final Logger LOG = LoggerFactory.getLogger(DynamoBatchDeleter.class);
+
+    // Package-scoped for unit tests.
+    static final String CONFIG_KEY_THREADS = "ddb.delete.threads";
+    static final String CONFIG_KEY_ITEMS_PER_SECOND = "ddb.delete.max.items.per.second";
+    static final int DEFAULT_THREADS = 4;
+    static final int DEFAULT_ITEMS_PER_SECOND = 200;
+    static final int MAX_BATCH_SIZE = 25;
+    static final int MAX_ATTEMPTS = 5;
+    static final long DEFAULT_RETRY_BACKOFF_MILLIS = 100L;
+
+    private int threads = DEFAULT_THREADS;
+    private ExecutorService executor = newExecutor(DEFAULT_THREADS);
+    private int itemsPerSecond = DEFAULT_ITEMS_PER_SECOND;
+    private long retryBackoffMillis = DEFAULT_RETRY_BACKOFF_MILLIS;
+
+    @Autowired
+    final void setConfig(BridgeConfig config) {
+        int configThreads = config.getPropertyAsInt(CONFIG_KEY_THREADS);
+        int itemsPerSecond = config.getPropertyAsInt(CONFIG_KEY_ITEMS_PER_SECOND);
+
+        this.threads = configThreads > 0 ? configThreads : DEFAULT_THREADS;
+        this.itemsPerSecond = itemsPerSecond > 0 ? itemsPerSecond : DEFAULT_ITEMS_PER_SECOND;
+        setExecutor(newExecutor(threads));
+    }
+
+    /** Executor that runs the batch deletes. Package-scoped for unit tests. */
+    final void setExecutor(ExecutorService executor) {
+        this.executor.shutdown();
+        this.executor = executor;
+    }
+
+    /** Base delay before retrying a failed batch, doubled on each attempt. Package-scoped for unit tests. */
+    final void setRetryBackoffMillis(long retryBackoffMillis) {
+        this.retryBackoffMillis = retryBackoffMillis;
+    }
+
+    private static ExecutorService newExecutor(int threads) {
+        return Executors.newFixedThreadPool(threads,
+                new ThreadFactoryBuilder().setNameFormat("DynamoBatchDelete-%d").setDaemon(true).build());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Deletes every item returned by the given query, one page of results at a time. The query only needs to return
+     * the table's keys, so it can be on a keys-only index. Returns the number of items deleted.
+     */
+    public <T> int deleteQueryResults(DynamoDBMapper mapper, Class<T> clazz, DynamoDBQueryExpression<T> query) {
+        long startMillis = System.currentTimeMillis();
+        RateLimiter rateLimiter = RateLimiter.create(itemsPerSecond);
+        int deleted = 0;
+        Map<String, AttributeValue> lastKey = null;
+        do {
+            QueryResultPage<T> page = mapper.queryPage(clazz, query.withExclusiveStartKey(lastKey));
+            deleted += deleteBatches(mapper, rateLimiter, page.getResults());
+            lastKey = page.getLastEvaluatedKey();
+            if (lastKey != null) {
+                LOG.debug("Deleted " + deleted + " " + clazz.getSimpleName() + " items so far");
+            }
+        } while (lastKey != null);
+
+        logDeleted(clazz.getSimpleName(), deleted, startMillis);
+        return deleted;
+    }
+
+    /**
+     * Deletes the items with the given keys. Keys are read from the iterable only as fast as they are deleted, so it
+     * can be backed by a paginated query. Returns the number of items deleted.
+     */
+    public <T> int deleteKeys(DynamoDBMapper mapper, Iterable<T> keys) {
+        long startMillis = System.currentTimeMillis();
+        RateLimiter rateLimiter = RateLimiter.create(itemsPerSecond);
+        // Enough keys to keep every thread busy with one batch.
+        int chunkSize = MAX_BATCH_SIZE * threads;
+        int deleted = 0;
+        String typeName = null;
+        List<T> chunk = new ArrayList<>(chunkSize);
+        for (T oneKey : keys) {
+            if (typeName == null) {
+                typeName = oneKey.getClass().getSimpleName();
+            }
+            chunk.add(oneKey);
+            if (chunk.size() >= chunkSize) {
+                deleted += deleteBatches(mapper, rateLimiter, chunk);
+                chunk = new ArrayList<>(chunkSize);
+            }
+        }
+        deleted += deleteBatches(mapper, rateLimiter, chunk);
+
+        if (typeName != null) {
+            logDeleted(typeName, deleted, startMillis);
+        }
+        return deleted;
+    }
+
+    private static void logDeleted(String typeName, int deleted, long startMillis) {
+        LOG.info("Deleted " + deleted + " " + typeName + " items in " + (System.currentTimeMillis() - startMillis)
+                + " ms");
+    }
+
+    // Deletes the items in parallel batches and waits for all of them to finish. If any batch fails, the first
+    // failure is thrown once the rest are done.
+    private int deleteBatches(DynamoDBMapper mapper, RateLimiter rateLimiter, List<?> items) {
+        if (items.isEmpty()) {
+            return 0;
+        }
+        List<Future<?>> futureList = new ArrayList<>();
+        for (List<?> oneBatch : Lists.partition(items, MAX_BATCH_SIZE)) {
+            futureList.add(executor.submit(() -> deleteBatch(mapper, rateLimiter, oneBatch)));
+        }
+
+        Throwable failure = null;
+        for (Future<?> oneFuture : futureList) {
+            try {
+                oneFuture.get();
+            } catch (ExecutionException ex) {
+                if (failure == null) {
+                    failure = ex.getCause();
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                futureList.forEach(future -> future.cancel(true));
+                throw new BridgeServiceException(ex);
+            }
+        }
+        if (failure != null) {
+            Throwables.throwIfUnchecked(failure);
+            throw new BridgeServiceException(failure);
+        }
+        return items.size();
+    }
+
+    private void deleteBatch(DynamoDBMapper mapper, RateLimiter rateLimiter, List<?> batch) {
+        for (int attempt = 1; ; attempt++) {
+            rateLimiter.acquire(batch.size());
+            List<FailedBatch> failures = mapper.batchDelete(batch);
+            if (failures.isEmpty()) {
+                return;
+            }
+            if (attempt >= MAX_ATTEMPTS) {
+                BridgeUtils.ifFailuresThrowException(failures);
+            }
+            LOG.warn("Batch delete of " + batch.size() + " items failed on attempt " + attempt + ", retrying");
+            try {
+                Thread.sleep(retryBackoffMillis << (attempt - 1));
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new BridgeServiceException(ex);
+            }
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package org.sagebionetworks.bridge.dynamodb;
+
+import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.handlers.RequestHandler2;
+
+import org.sagebionetworks.bridge.RequestContext;
+import org.sagebionetworks.bridge.models.Metrics;
+
+/**
+ * Counts the DynamoDB calls made while serving a request, and records the counts in the request's {@link Metrics}.
+ * It's registered on the DynamoDB client, so it counts every call made through any DynamoDBMapper or index helper.
+ * Each call is counted once, however many times the client retries it. Calls made outside of a request (or on
+ * other threads, such as parallel batch deletes) have no metrics and are not counted.
+ */
+public class DynamoCallCounter extends RequestHandler2 {
+
+    @Override
+    public AmazonWebServiceRequest beforeExecution(AmazonWebServiceRequest request) {
+        Metrics metrics = RequestContext.get().getMetrics();
+        if (metrics != null) {
+            metrics.incrementBackendCallCount(Metrics.BACKEND_DYNAMODB);
+        }
+        return request;
+    }
+}
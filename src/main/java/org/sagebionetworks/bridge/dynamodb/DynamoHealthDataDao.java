@@ -12,7 +12,7 @@ import com.amazonaws.services.dynamodbv2.model.AttributeValue;
 import com.amazonaws.services.dynamodbv2.model.ComparisonOperator;
 import com.amazonaws.services.dynamodbv2.model.Condition;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Lists;
+import com.google.common.collect.Iterables;
 
 import org.sagebionetworks.bridge.BridgeConstants;
 import org.sagebionetworks.bridge.BridgeUtils;
@@ -21,6 +21,7 @@ import org.sagebionetworks.bridge.models.healthdata.HealthDataRecord;
 
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 /** DynamoDB implementation of {@link org.sagebionetworks.bridge.dao.HealthDataDao}. */
@@ -29,6 +30,7 @@ public class DynamoHealthDataDao implements HealthDataDao {
     private DynamoDBMapper mapper;
     private DynamoIndexHelper healthCodeIndex;
     private DynamoIndexHelper uploadDateIndex;
+    private DynamoBatchDeleter batchDeleter;
 
     /** DynamoDB mapper for the HealthDataRecord table. This is configured by Spring. */
     @Resource(name = "healthDataDdbMapper")
@@ -54,6 +56,12 @@ public class DynamoHealthDataDao implements HealthDataDao {
         this.uploadDateIndex = uploadDateIndex;
     }
 
+    /** Deletes records in parallel batches. This is configured by Spring. */
+    @Autowired
+    public void setBatchDeleter(DynamoBatchDeleter batchDeleter) {
+        this.batchDeleter = batchDeleter;
+    }
+
     /** {@inheritDoc} */
     @Override
     public String createOrUpdateRecord(@Nonnull HealthDataRecord record) {
@@ -78,18 +86,13 @@ public class DynamoHealthDataDao implements HealthDataDao {
         Index index = healthCodeIndex.getIndex();
         Iterable<Item> iter = index.query("healthCode", healthCode);
         
-        List<DynamoHealthDataRecord> keysToDelete = Lists.newArrayList();
-        for (Item item : iter) {
+        // The query fetches further pages as we iterate, so keys are deleted as they are read.
+        Iterable<DynamoHealthDataRecord> keysToDelete = Iterables.transform(iter, item -> {
             DynamoHealthDataRecord oneRecord = new DynamoHealthDataRecord();
             oneRecord.setId(item.getString("id"));
-            keysToDelete.add(oneRecord);
-        }
-
-        // and then delete
-        List<DynamoDBMapper.FailedBatch> failureList = mapper.batchDelete(keysToDelete);
-        BridgeUtils.ifFailuresThrowException(failureList);
-
-        return keysToDelete.size();
+            return oneRecord;
+        });
+        return batchDeleter.deleteKeys(mapper, keysToDelete);
     }
 
     /** {@inheritDoc} */
@@ -1,16 +1,25 @@
 package org.sagebionetworks.bridge.dynamodb;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.regex.Pattern;
 
 import javax.annotation.Resource;
 
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBQueryExpression;
+import com.amazonaws.services.dynamodbv2.datamodeling.QueryResultPage;
 import com.amazonaws.services.dynamodbv2.model.AttributeValue;
 import com.amazonaws.services.dynamodbv2.model.ComparisonOperator;
 import com.amazonaws.services.dynamodbv2.model.Condition;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.io.BaseEncoding;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import org.sagebionetworks.bridge.BridgeUtils;
@@ -21,13 +30,28 @@ import org.sagebionetworks.bridge.models.healthdata.HealthDataRecordEx3;
 
 @Component
 public class DynamoHealthDataEx3Dao implements HealthDataEx3Dao {
+    private static final String KEY_APP_ID = "appId";
+    private static final String KEY_APP_STUDY_KEY = "appStudyKey";
+    private static final String KEY_CREATED_ON = "createdOn";
+    private static final String KEY_HEALTH_CODE = "healthCode";
+    private static final String KEY_ID = "id";
+    private static final Pattern LEGACY_OFFSET_KEY_PATTERN = Pattern.compile("^\\d+$");
+    private static final BaseEncoding OFFSET_KEY_ENCODING = BaseEncoding.base64Url().omitPadding();
+    private static final String OFFSET_KEY_SEPARATOR = ":";
+
     private DynamoDBMapper mapper;
+    private DynamoBatchDeleter batchDeleter;
 
     @Resource(name = "healthDataEx3DdbMapper")
     public final void setMapper(DynamoDBMapper mapper) {
         this.mapper = mapper;
     }
 
+    @Autowired
+    public final void setBatchDeleter(DynamoBatchDeleter batchDeleter) {
+        this.batchDeleter = batchDeleter;
+    }
+
     @Override
     public HealthDataRecordEx3 createOrUpdateRecord(HealthDataRecordEx3 record) {
         DynamoHealthDataRecordEx3 dynamoRecord = (DynamoHealthDataRecordEx3) record;
@@ -44,20 +68,14 @@ public class DynamoHealthDataEx3Dao implements HealthDataEx3Dao {
 
     @Override
     public void deleteRecordsForHealthCode(String healthCode) {
-        // First, query the records we need to delete.
+        // Query the keys from the index a page at a time, and delete each page as we go.
         DynamoHealthDataRecordEx3 key = new DynamoHealthDataRecordEx3();
         key.setHealthCode(healthCode);
 
         DynamoDBQueryExpression<DynamoHealthDataRecordEx3> query = new DynamoDBQueryExpression<DynamoHealthDataRecordEx3>()
                 .withConsistentRead(false).withIndexName(DynamoHealthDataRecordEx3.HEALTHCODE_CREATEDON_INDEX)
                 .withHashKeyValues(key);
-        List<DynamoHealthDataRecordEx3> recordsToDelete = queryHelper(query);
-
-        // Next, batch delete.
-        if (!recordsToDelete.isEmpty()) {
-            List<DynamoDBMapper.FailedBatch> failures = mapper.batchDelete(recordsToDelete);
-            BridgeUtils.ifFailuresThrowException(failures);
-        }
+        batchDeleter.deleteQueryResults(mapper, DynamoHealthDataRecordEx3.class, query);
     }
 
     @Override
@@ -75,7 +93,7 @@ public class DynamoHealthDataEx3Dao implements HealthDataEx3Dao {
         // Query.
         DynamoDBQueryExpression<DynamoHealthDataRecordEx3> query = new DynamoDBQueryExpression<DynamoHealthDataRecordEx3>()
                 .withIndexName(DynamoHealthDataRecordEx3.HEALTHCODE_CREATEDON_INDEX).withHashKeyValues(key);
-        return pagingHelper(query, createdOnStart, createdOnEnd, pageSize, offsetKey);
+        return pagingHelper(query, KEY_HEALTH_CODE, healthCode, createdOnStart, createdOnEnd, pageSize, offsetKey);
     }
 
     @Override
@@ -88,7 +106,7 @@ public class DynamoHealthDataEx3Dao implements HealthDataEx3Dao {
         // Query.
         DynamoDBQueryExpression<DynamoHealthDataRecordEx3> query = new DynamoDBQueryExpression<DynamoHealthDataRecordEx3>()
                 .withIndexName(DynamoHealthDataRecordEx3.APPID_CREATEDON_INDEX).withHashKeyValues(key);
-        return pagingHelper(query, createdOnStart, createdOnEnd, pageSize, offsetKey);
+        return pagingHelper(query, KEY_APP_ID, appId, createdOnStart, createdOnEnd, pageSize, offsetKey);
     }
 
     @Override
@@ -102,56 +120,95 @@ public class DynamoHealthDataEx3Dao implements HealthDataEx3Dao {
         // Query.
         DynamoDBQueryExpression<DynamoHealthDataRecordEx3> query = new DynamoDBQueryExpression<DynamoHealthDataRecordEx3>()
                 .withIndexName(DynamoHealthDataRecordEx3.APPSTUDYKEY_CREATEDON_INDEX).withHashKeyValues(key);
-        return pagingHelper(query, createdOnStart, createdOnEnd, pageSize, offsetKey);
+        return pagingHelper(query, KEY_APP_STUDY_KEY, key.getAppStudyKey(), createdOnStart, createdOnEnd, pageSize,
+                offsetKey);
     }
 
     private ForwardCursorPagedResourceList<HealthDataRecordEx3> pagingHelper(
-            DynamoDBQueryExpression<DynamoHealthDataRecordEx3> query, long createdOnStart, long createdOnEnd,
-            int pageSize, String offsetKey) {
-        // offsetKey is a long epoch milliseconds using the createdOn index. The real createdOnStart is whichever is
-        // the larger of the two.
+            DynamoDBQueryExpression<DynamoHealthDataRecordEx3> query, String indexHashKeyName,
+            String indexHashKeyValue, long createdOnStart, long createdOnEnd, int pageSize, String offsetKey) {
         long indexStart = createdOnStart;
         if (offsetKey != null) {
-            long offsetKeyMillis;
-            try {
-                offsetKeyMillis = Long.parseLong(offsetKey);
-            } catch (NumberFormatException ex) {
-                throw new BadRequestException("Invalid offsetKey " + offsetKey);
+            if (LEGACY_OFFSET_KEY_PATTERN.matcher(offsetKey).matches()) {
+                // Older offset keys are just the createdOn (epoch milliseconds) of the first record of the next page.
+                // The real createdOnStart is whichever is the larger of the two.
+                long offsetKeyMillis;
+                try {
+                    offsetKeyMillis = Long.parseLong(offsetKey);
+                } catch (NumberFormatException ex) {
+                    throw new BadRequestException("Invalid offsetKey " + offsetKey);
+                }
+                indexStart = Math.max(createdOnStart, offsetKeyMillis);
+            } else {
+                // The offset key is the last record of the previous page. DynamoDB resumes the query right after it,
+                // so records that share a createdOn are neither skipped nor repeated.
+                query.withExclusiveStartKey(decodeOffsetKey(offsetKey, indexHashKeyName, indexHashKeyValue,
+                        createdOnStart, createdOnEnd));
             }
-            indexStart = Math.max(createdOnStart, offsetKeyMillis);
         }
 
         // Range key.
         Condition rangeKeyCondition = new Condition().withComparisonOperator(ComparisonOperator.BETWEEN)
                 .withAttributeValueList(new AttributeValue().withN(String.valueOf(indexStart)),
                         new AttributeValue().withN(String.valueOf(createdOnEnd)));
-        query.withRangeKeyCondition("createdOn", rangeKeyCondition);
+        query.withRangeKeyCondition(KEY_CREATED_ON, rangeKeyCondition);
 
-        // Limit is pageSize+1 so we can calculate the nextOffsetKey.
+        // Limit is pageSize+1 so we can tell whether there's a next page without an extra (empty) request.
         query.setLimit(pageSize+1);
 
         // Can't do consistent reads with global secondary indices.
         query.setConsistentRead(false);
 
-        // Query. Results should be sorted by createdOn, since this is the dynamo range key.
-        List<DynamoHealthDataRecordEx3> dynamoRecordList = queryHelper(query);
+        // Query a single page. Unlike mapper.query(), this never reads past the limit. Results should be sorted by
+        // createdOn, since this is the dynamo range key.
+        QueryResultPage<DynamoHealthDataRecordEx3> page = mapper.queryPage(DynamoHealthDataRecordEx3.class, query);
 
         // Copy the list, because of generic typing reasons.
-        List<HealthDataRecordEx3> recordList = ImmutableList.copyOf(dynamoRecordList);
+        List<HealthDataRecordEx3> recordList = ImmutableList.copyOf(page.getResults());
 
-        // Calculate the nextOffsetKey, if present. We'll know there's a next page if more than pageSize entries is
-        // returned.
+        // There's a next page if DynamoDB returned more than pageSize records, or if it stopped early (because of
+        // the 1MB limit) before reaching the end of the range. Either way, the next page starts after the last
+        // record we return.
         String nextOffsetKey = null;
         if (recordList.size() > pageSize) {
-            nextOffsetKey = String.valueOf(recordList.get(pageSize).getCreatedOn());
             recordList = recordList.subList(0, pageSize);
+            nextOffsetKey = encodeOffsetKey(recordList.get(pageSize - 1));
+        } else if (page.getLastEvaluatedKey() != null && !recordList.isEmpty()) {
+            nextOffsetKey = encodeOffsetKey(Iterables.getLast(recordList));
         }
 
         return new ForwardCursorPagedResourceList<>(recordList, nextOffsetKey);
     }
 
-    // Helper method that wraps around mapper.query(). Because of typing issues, mapper.query() is hard to mock.
-    List<DynamoHealthDataRecordEx3> queryHelper(DynamoDBQueryExpression<DynamoHealthDataRecordEx3> query) {
-        return mapper.query(DynamoHealthDataRecordEx3.class, query);
+    // The offset key is the createdOn and ID of a record, which is all we need (with the query's own hash key) to
+    // reconstruct the DynamoDB ExclusiveStartKey. It's base64 encoded so that callers treat it as opaque. Package-
+    // scoped for unit tests.
+    static String encodeOffsetKey(HealthDataRecordEx3 record) {
+        String key = record.getCreatedOn() + OFFSET_KEY_SEPARATOR + record.getId();
+        return OFFSET_KEY_ENCODING.encode(key.getBytes(UTF_8));
+    }
+
+    private static Map<String, AttributeValue> decodeOffsetKey(String offsetKey, String indexHashKeyName,
+            String indexHashKeyValue, long createdOnStart, long createdOnEnd) {
+        long createdOn;
+        String id;
+        try {
+            String key = new String(OFFSET_KEY_ENCODING.decode(offsetKey), UTF_8);
+            int separatorIndex = key.indexOf(OFFSET_KEY_SEPARATOR);
+            createdOn = Long.parseLong(key.substring(0, separatorIndex));
+            id = key.substring(separatorIndex + 1);
+        } catch (IllegalArgumentException | IndexOutOfBoundsException ex) {
+            throw new BadRequestException("Invalid offsetKey " + offsetKey);
+        }
+        // DynamoDB rejects a start key outside of the range condition.
+        if (id.isEmpty() || createdOn < createdOnStart || createdOn > createdOnEnd) {
+            throw new BadRequestException("Invalid offsetKey " + offsetKey);
+        }
+
+        Map<String, AttributeValue> startKey = new HashMap<>();
+        startKey.put(KEY_ID, new AttributeValue().withS(id));
+        startKey.put(indexHashKeyName, new AttributeValue().withS(indexHashKeyValue));
+        startKey.put(KEY_CREATED_ON, new AttributeValue().withN(String.valueOf(createdOn)));
+        return startKey;
     }
 }
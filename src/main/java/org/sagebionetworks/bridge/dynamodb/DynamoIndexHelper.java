@@ -1,9 +1,14 @@
 package org.sagebionetworks.bridge.dynamodb;
 
+import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
@@ -12,11 +17,16 @@ import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
 import com.amazonaws.services.dynamodbv2.document.DynamoDB;
 import com.amazonaws.services.dynamodbv2.document.Index;
 import com.amazonaws.services.dynamodbv2.document.Item;
+import com.amazonaws.services.dynamodbv2.document.ItemUtils;
 import com.amazonaws.services.dynamodbv2.document.Page;
 import com.amazonaws.services.dynamodbv2.document.QueryOutcome;
 import com.amazonaws.services.dynamodbv2.document.RangeKeyCondition;
 import com.amazonaws.services.dynamodbv2.document.Table;
 import com.amazonaws.services.dynamodbv2.document.spec.QuerySpec;
+import com.amazonaws.services.dynamodbv2.model.ProjectionType;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
 import org.sagebionetworks.bridge.json.BridgeObjectMapper;
@@ -24,9 +34,16 @@ import org.sagebionetworks.bridge.json.BridgeObjectMapper;
 /**
  * This class is a wrapper around a DynamoDB Index object, to enable easy testing and easy mocking. This class is used
  * to query secondary indices, since DynamoDB mappers don't support querying on secondary indices. This class also 
- * encapsulates logic to re-query tables to get full table entries.
+ * encapsulates logic to re-query tables to get full table entries, which is skipped if the index projects all
+ * attributes of the table.
  */
 public class DynamoIndexHelper {
+    // BatchGetItem reads at most 100 items per call. Package-scoped for unit tests.
+    static final int MAX_BATCH_LOAD_SIZE = 100;
+
+    // Shared by all index helpers. These threads only wait on DynamoDB, so there can be more of them than cores.
+    private static final ExecutorService BATCH_LOAD_EXECUTOR = Executors.newFixedThreadPool(16,
+            new ThreadFactoryBuilder().setNameFormat("DynamoBatchLoad-%d").setDaemon(true).build());
 
     public static DynamoIndexHelper create(final Class<?> dynamoTable, final String indexName,
            final AmazonDynamoDB client, DynamoNamingHelper dynamoNamingHelper, DynamoUtils dynamoUtils) {
@@ -36,11 +53,28 @@ public class DynamoIndexHelper {
         final DynamoIndexHelper indexHelper = new DynamoIndexHelper();
         indexHelper.setIndex(ddbIndex);
         indexHelper.setMapper(dynamoUtils.getMapper(dynamoTable));
+        indexHelper.setProjectionType(getProjectionType(dynamoTable, indexName));
         return indexHelper;
     }
 
+    /**
+     * Returns the projection type declared for the given index with a {@link DynamoProjection} annotation on the
+     * table class. Indices without a declared projection only project keys. Package-scoped for unit tests.
+     */
+    static ProjectionType getProjectionType(Class<?> dynamoTable, String indexName) {
+        for (Method method : dynamoTable.getMethods()) {
+            DynamoProjection projection = method.getAnnotation(DynamoProjection.class);
+            if (projection != null && indexName.equals(projection.globalSecondaryIndexName())) {
+                return projection.projectionType();
+            }
+        }
+        return ProjectionType.KEYS_ONLY;
+    }
+
     private Index index;
     private DynamoDBMapper mapper;
+    private ProjectionType projectionType = ProjectionType.KEYS_ONLY;
+    private ExecutorService batchLoadExecutor = BATCH_LOAD_EXECUTOR;
 
     /** DynamoDB index. This is used to query the secondary index. This is configured by Spring. */
     final void setIndex(Index index) {
@@ -58,6 +92,24 @@ public class DynamoIndexHelper {
     final void setMapper(DynamoDBMapper mapper) {
         this.mapper = mapper;
     }
+
+    /**
+     * Which attributes of the table are projected onto the index. If the index projects all attributes, query results
+     * are returned directly. Otherwise, they are re-loaded from the table. Defaults to KEYS_ONLY.
+     */
+    final void setProjectionType(ProjectionType projectionType) {
+        this.projectionType = projectionType;
+    }
+
+    /** True if items returned by querying this index have all attributes of the table. */
+    public boolean isProjectingAllAttributes() {
+        return projectionType == ProjectionType.ALL;
+    }
+
+    /** Executor used to load chunks of keys in parallel. This setter is called by tests. */
+    final void setBatchLoadExecutor(ExecutorService batchLoadExecutor) {
+        this.batchLoadExecutor = batchLoadExecutor;
+    }
     
     public QueryOutcome query(@Nonnull QuerySpec spec) {
         Page<Item,QueryOutcome> page = index.query(spec).firstPage();
@@ -120,8 +172,8 @@ public class DynamoIndexHelper {
     /**
      * <p>
      * Queries the secondary index with the specified key name and value. Results will be returned as a list of
-     * the specified class. Unlike {@link #queryKeys}, this method re-queries DynamoDB to get the full rows of the
-     * DynamoDB rows.
+     * the specified class. Unlike {@link #queryKeys}, this method returns the full rows, re-querying the table if the
+     * index doesn't project all attributes.
      * </p>
      * <p>
      * Note that for some reason, this method seems to return results in an unspecified order (generally sorted forward
@@ -141,22 +193,80 @@ public class DynamoIndexHelper {
      *         expected result type
      * @return list of query results
      */
-    @SuppressWarnings("unchecked")
     public <T> List<T> query(@Nonnull Class<? extends T> clazz, @Nonnull String indexKeyName,
             @Nonnull Object indexKeyValue, RangeKeyCondition rangeKeyCondition) {
+        Iterable<Item> itemIter = queryHelper(indexKeyName, indexKeyValue, rangeKeyCondition);
+        return loadItems(clazz, itemIter);
+    }
+
+    /**
+     * Converts items returned by a query on this index to full objects of the given class. If the index projects all
+     * attributes, the items are converted directly. Otherwise, the items only have keys, and the full objects are
+     * loaded from the table with {@link #loadFullObjects}. Results are not necessarily in the same order as the items.
+     */
+    public <T> List<T> loadItems(@Nonnull Class<? extends T> clazz, @Nonnull Iterable<Item> items) {
+        List<T> resultList = new ArrayList<>();
+        if (isProjectingAllAttributes()) {
+            // Use the mapper, not Jackson, so that attributes are unmarshalled the same as when loading the table.
+            for (Item oneItem : items) {
+                resultList.add(mapper.marshallIntoObject(clazz, ItemUtils.toAttributeValues(oneItem)));
+            }
+            return resultList;
+        }
+
         // In general, we only project keys onto global secondary indices, to save storage space. This means the
         // objects we get back aren't full fledged objects. However, we can use them as "key objects" to re-query
         // the DDB table to get full results.
-        //
-        // First step is to query the index to get these "key objects".
-        List<T> recordKeyList = queryKeys(clazz, indexKeyName, indexKeyValue, rangeKeyCondition);
+        List<T> recordKeyList = new ArrayList<>();
+        for (Item oneItem : items) {
+            recordKeyList.add(BridgeObjectMapper.get().convertValue(oneItem.asMap(), clazz));
+        }
+        return loadFullObjects(clazz, recordKeyList);
+    }
+
+    /**
+     * Given objects returned by a query on this index, returns the full objects. If the index projects all
+     * attributes, the objects are already full, and are returned as is. Otherwise, they are used as keys to load the
+     * full objects from the table, in parallel chunks of up to 100 keys. (The mapper retries unprocessed keys in each
+     * chunk.) Results are not necessarily in the same order as the keys.
+     */
+    public <T> List<T> loadFullObjects(@Nonnull Class<? extends T> clazz, @Nonnull List<? extends T> keyObjects) {
+        if (isProjectingAllAttributes()) {
+            return new ArrayList<>(keyObjects);
+        }
+        if (keyObjects.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        // Load the first chunk on this thread, and the rest (if any) in the background. Most queries return no more
+        // than one chunk, so they don't need another thread.
+        List<? extends List<? extends T>> chunkList = Lists.partition(keyObjects, MAX_BATCH_LOAD_SIZE);
+        List<Future<List<T>>> futureList = new ArrayList<>();
+        for (List<? extends T> oneChunk : chunkList.subList(1, chunkList.size())) {
+            futureList.add(batchLoadExecutor.submit(() -> batchLoad(clazz, oneChunk)));
+        }
+        List<T> recordList = batchLoad(clazz, chunkList.get(0));
+        for (Future<List<T>> oneFuture : futureList) {
+            try {
+                recordList.addAll(oneFuture.get());
+            } catch (ExecutionException ex) {
+                Throwables.throwIfUnchecked(ex.getCause());
+                throw new BridgeServiceException(ex.getCause());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new BridgeServiceException(ex);
+            }
+        }
+        return recordList;
+    }
 
-        // Using the "key objects", batch query DDB to get full records. For some reason, batchLoad() returns a map.
-        // Flatten that map into a list.
+    @SuppressWarnings("unchecked")
+    private <T> List<T> batchLoad(Class<? extends T> clazz, List<? extends T> keyObjects) {
+        // For some reason, batchLoad() returns a map. Flatten that map into a list.
         //
         // Also, for some reason, batchLoad() takes a List<Object>, not a List<T> or List<?>. Fortunately, Java type
         // erasure means we can safely cast this to a List<Object>.
-        Map<String, List<Object>> resultMap = mapper.batchLoad((List<Object>) recordKeyList);
+        Map<String, List<Object>> resultMap = mapper.batchLoad((List<Object>) keyObjects);
         List<T> recordList = new ArrayList<>();
         for (List<Object> resultList : resultMap.values()) {
             for (Object oneResult : resultList) {
@@ -170,7 +280,6 @@ public class DynamoIndexHelper {
                 recordList.add((T) oneResult);
             }
         }
-
         return recordList;
     }
 
@@ -1,6 +1,7 @@
 package org.sagebionetworks.bridge.dynamodb;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import javax.annotation.Resource;
 
@@ -8,21 +9,34 @@ import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBQueryExpression;
 import com.amazonaws.services.dynamodbv2.datamodeling.QueryResultPage;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import org.sagebionetworks.bridge.BridgeUtils;
 import org.sagebionetworks.bridge.dao.ParticipantVersionDao;
 import org.sagebionetworks.bridge.models.accounts.ParticipantVersion;
 
 @Component
 public class DynamoParticipantVersionDao implements ParticipantVersionDao {
+    // Package-scoped for unit tests.
+    static final String SUMMARY_PROJECTION = "participantVersion, createdOn, fingerprint";
+    // "key" is a reserved word in DynamoDB expressions, so it needs a placeholder.
+    static final String KEYS_PROJECTION = "#key, participantVersion";
+    static final Map<String, String> KEYS_PROJECTION_NAMES = ImmutableMap.of("#key", "key");
+
     private DynamoDBMapper mapper;
+    private DynamoBatchDeleter batchDeleter;
 
     @Resource(name = "participantVersionDdbMapper")
     public final void setMapper(DynamoDBMapper mapper) {
         this.mapper = mapper;
     }
 
+    @Autowired
+    public final void setBatchDeleter(DynamoBatchDeleter batchDeleter) {
+        this.batchDeleter = batchDeleter;
+    }
+
     @Override
     public void createParticipantVersion(ParticipantVersion participantVersion) {
         // Clear version to guarantee that we're creating a new row instead of potentially updating an existing one.
@@ -33,15 +47,15 @@ public class DynamoParticipantVersionDao implements ParticipantVersionDao {
 
     @Override
     public void deleteParticipantVersionsForHealthCode(String appId, String healthCode) {
-        // First, query the records we need to delete.
-        List<ParticipantVersion> participantVersionsToDelete = getAllParticipantVersionsForHealthCode(appId,
-                healthCode);
-
-        // Next, batch delete.
-        if (!participantVersionsToDelete.isEmpty()) {
-            List<DynamoDBMapper.FailedBatch> failures = mapper.batchDelete(participantVersionsToDelete);
-            BridgeUtils.ifFailuresThrowException(failures);
-        }
+        DynamoParticipantVersion key = new DynamoParticipantVersion();
+        key.setAppId(appId);
+        key.setHealthCode(healthCode);
+
+        // Deleting only needs the keys, so don't read the rest of each participant version.
+        DynamoDBQueryExpression<DynamoParticipantVersion> query = new DynamoDBQueryExpression<DynamoParticipantVersion>()
+                .withHashKeyValues(key).withProjectionExpression(KEYS_PROJECTION)
+                .withExpressionAttributeNames(KEYS_PROJECTION_NAMES);
+        batchDeleter.deleteQueryResults(mapper, DynamoParticipantVersion.class, query);
     }
 
     @Override
@@ -60,13 +74,25 @@ public class DynamoParticipantVersionDao implements ParticipantVersionDao {
 
     @Override
     public Optional<ParticipantVersion> getLatestParticipantVersionForHealthCode(String appId, String healthCode) {
+        return getLatestHelper(appId, healthCode, null);
+    }
+
+    @Override
+    public Optional<ParticipantVersion> getLatestParticipantVersionSummaryForHealthCode(String appId,
+            String healthCode) {
+        return getLatestHelper(appId, healthCode, SUMMARY_PROJECTION);
+    }
+
+    // Helper method that gets the latest participant version. If projection is specified, only those attributes are
+    // returned.
+    private Optional<ParticipantVersion> getLatestHelper(String appId, String healthCode, String projection) {
         DynamoParticipantVersion key = new DynamoParticipantVersion();
         key.setAppId(appId);
         key.setHealthCode(healthCode);
 
         // We use queryPage() instead of query() because we only need 1 result and limit is per page.
         DynamoDBQueryExpression<DynamoParticipantVersion> query = new DynamoDBQueryExpression<DynamoParticipantVersion>()
-                .withHashKeyValues(key).withScanIndexForward(false).withLimit(1);
+                .withHashKeyValues(key).withScanIndexForward(false).withLimit(1).withProjectionExpression(projection);
         QueryResultPage<DynamoParticipantVersion> queryResultPage = mapper.queryPage(DynamoParticipantVersion.class,
                 query);
         List<DynamoParticipantVersion> participantVersionList = queryResultPage.getResults();
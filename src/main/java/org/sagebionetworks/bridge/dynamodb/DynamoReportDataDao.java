@@ -10,15 +10,16 @@ import static org.sagebionetworks.bridge.models.ResourceList.START_TIME;
 import static org.sagebionetworks.bridge.models.ResourceList.END_TIME;
 
 import java.util.List;
+import java.util.Map;
 
 import javax.annotation.Resource;
 
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
 import org.joda.time.LocalDate;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import org.sagebionetworks.bridge.BridgeUtils;
 import org.sagebionetworks.bridge.dao.ReportDataDao;
 import org.sagebionetworks.bridge.models.DateRangeResourceList;
 import org.sagebionetworks.bridge.models.ForwardCursorPagedResourceList;
@@ -28,22 +29,33 @@ import org.sagebionetworks.bridge.models.reports.ReportDataKey;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBQueryExpression;
 import com.amazonaws.services.dynamodbv2.datamodeling.QueryResultPage;
-import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper.FailedBatch;
 import com.amazonaws.services.dynamodbv2.model.AttributeValue;
 import com.amazonaws.services.dynamodbv2.model.Condition;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 
 @Component
 public class DynamoReportDataDao implements ReportDataDao {
+    // "key" and "date" are reserved words in DynamoDB expressions, so they need placeholders. Package-scoped for unit
+    // tests.
+    static final String KEYS_PROJECTION = "#key, #date";
+    static final Map<String, String> KEYS_PROJECTION_NAMES = ImmutableMap.of("#key", "key", "#date", "date");
 
     private DynamoDBMapper mapper;
+    
+    private DynamoBatchDeleter batchDeleter;
 
     @Resource(name = "reportDataMapper")
     final void setReportDataMapper(DynamoDBMapper reportDataMapper) {
         this.mapper = reportDataMapper;
     }
     
+    @Autowired
+    final void setBatchDeleter(DynamoBatchDeleter batchDeleter) {
+        this.batchDeleter = batchDeleter;
+    }
+    
     @Override
     public DateRangeResourceList<? extends ReportData> getReportData(ReportDataKey key, LocalDate startDate, LocalDate endDate) {
         checkNotNull(key);
@@ -143,14 +155,11 @@ public class DynamoReportDataDao implements ReportDataDao {
         DynamoReportData hashKey = new DynamoReportData();
         hashKey.setKey(key.getKeyString());
 
-        DynamoDBQueryExpression<DynamoReportData> query =
-                new DynamoDBQueryExpression<DynamoReportData>().withHashKeyValues(hashKey);
-        List<DynamoReportData> objectsToDelete = mapper.query(DynamoReportData.class, query);
-        
-        if (!objectsToDelete.isEmpty()) {
-            List<FailedBatch> failures = mapper.batchDelete(objectsToDelete);
-            BridgeUtils.ifFailuresThrowException(failures);
-        }
+        // Deleting only needs the keys, so don't read the report data.
+        DynamoDBQueryExpression<DynamoReportData> query = new DynamoDBQueryExpression<DynamoReportData>()
+                .withHashKeyValues(hashKey).withProjectionExpression(KEYS_PROJECTION)
+                .withExpressionAttributeNames(KEYS_PROJECTION_NAMES);
+        batchDeleter.deleteQueryResults(mapper, DynamoReportData.class, query);
     }
     
     @Override
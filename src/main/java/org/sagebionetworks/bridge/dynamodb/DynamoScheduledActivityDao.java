@@ -24,6 +24,7 @@ import org.sagebionetworks.bridge.models.schedules.ScheduledActivity;
 
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
@@ -57,6 +58,8 @@ public class DynamoScheduledActivityDao implements ScheduledActivityDao {
     
     private DynamoIndexHelper referentIndex;
     
+    private DynamoBatchDeleter batchDeleter;
+    
     @Resource(name = "activityDdbMapper")
     final void setDdbMapper(DynamoDBMapper mapper) {
         this.mapper = mapper;
@@ -67,6 +70,11 @@ public class DynamoScheduledActivityDao implements ScheduledActivityDao {
         this.referentIndex = index;
     }
     
+    @Autowired
+    final void setBatchDeleter(DynamoBatchDeleter batchDeleter) {
+        this.batchDeleter = batchDeleter;
+    }
+    
     @Override
     public ForwardCursorPagedResourceList<ScheduledActivity> getActivityHistoryV2(String healthCode,
             String activityGuid, DateTime scheduledOnStart, DateTime scheduledOnEnd, String offsetKey, int pageSize) {
@@ -313,20 +321,9 @@ public class DynamoScheduledActivityDao implements ScheduledActivityDao {
         DynamoScheduledActivity hashKey = new DynamoScheduledActivity();
         hashKey.setHealthCode(healthCode);
         
-        Map<String,AttributeValue> lastKey = null;
-        do {
-            DynamoDBQueryExpression<DynamoScheduledActivity> query = new DynamoDBQueryExpression<DynamoScheduledActivity>()
-                    .withExclusiveStartKey(lastKey)
-                    .withHashKeyValues(hashKey);
-            
-            QueryResultPage<DynamoScheduledActivity> queryResults = mapper.queryPage(DynamoScheduledActivity.class, query);
-            List<DynamoScheduledActivity> activities = queryResults.getResults();
-            if (!activities.isEmpty()) {
-                List<FailedBatch> failures = mapper.batchDelete(activities);
-                BridgeUtils.ifFailuresThrowException(failures);
-            }
-            lastKey = queryResults.getLastEvaluatedKey();
-        } while(lastKey != null);        
+        DynamoDBQueryExpression<DynamoScheduledActivity> query = new DynamoDBQueryExpression<DynamoScheduledActivity>()
+                .withHashKeyValues(hashKey);
+        batchDeleter.deleteQueryResults(mapper, DynamoScheduledActivity.class, query);
     }
     
 }
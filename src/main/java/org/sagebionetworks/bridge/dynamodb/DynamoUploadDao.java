@@ -17,7 +17,6 @@ import javax.annotation.Nullable;
 import javax.annotation.Resource;
 
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
-import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper.FailedBatch;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBQueryExpression;
 import com.amazonaws.services.dynamodbv2.datamodeling.QueryResultPage;
 import com.amazonaws.services.dynamodbv2.document.Item;
@@ -39,14 +38,11 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import org.sagebionetworks.bridge.BridgeConstants;
-import org.sagebionetworks.bridge.BridgeUtils;
 import org.sagebionetworks.bridge.dao.HealthCodeDao;
 import org.sagebionetworks.bridge.dao.UploadDao;
 import org.sagebionetworks.bridge.exceptions.BadRequestException;
-import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
 import org.sagebionetworks.bridge.exceptions.ConcurrentModificationException;
 import org.sagebionetworks.bridge.exceptions.NotFoundException;
-import org.sagebionetworks.bridge.json.BridgeObjectMapper;
 import org.sagebionetworks.bridge.time.DateUtils;
 import org.sagebionetworks.bridge.models.ForwardCursorPagedResourceList;
 import org.sagebionetworks.bridge.models.ResourceList;
@@ -63,7 +59,9 @@ public class DynamoUploadDao implements UploadDao {
 
     private DynamoDBMapper mapper;
     private DynamoIndexHelper healthCodeRequestedOnIndex;
+    private DynamoIndexHelper studyIdRequestedOnIndex;
     private HealthCodeDao healthCodeDao;
+    private DynamoBatchDeleter batchDeleter;
 
     private static final String UPLOAD_ID = "uploadId";
     private static final String STUDY_ID = "studyId";
@@ -87,11 +85,25 @@ public class DynamoUploadDao implements UploadDao {
     final void setHealthCodeRequestedOnIndex(DynamoIndexHelper healthCodeRequestedOnIndex) {
         this.healthCodeRequestedOnIndex = healthCodeRequestedOnIndex;
     }
+
+    /**
+     * DynamoDB Index reference for the studyId-requestedOn index. App uploads are queried with the mapper, but this
+     * loads the full uploads from the query results.
+     */
+    @Resource(name = "uploadStudyIdRequestedOnIndex")
+    final void setStudyIdRequestedOnIndex(DynamoIndexHelper studyIdRequestedOnIndex) {
+        this.studyIdRequestedOnIndex = studyIdRequestedOnIndex;
+    }
     
     @Autowired
     final void setHealthCodeDao(HealthCodeDao healthCodeDao) {
         this.healthCodeDao = healthCodeDao;
     }
+
+    @Autowired
+    final void setBatchDeleter(DynamoBatchDeleter batchDeleter) {
+        this.batchDeleter = batchDeleter;
+    }
     
     /** {@inheritDoc} */
     @Override
@@ -170,23 +182,14 @@ public class DynamoUploadDao implements UploadDao {
                 .withRangeKeyCondition(condition); // this is not a filter, it should not require paging on our side.
         QueryOutcome outcome = healthCodeRequestedOnIndex.query(spec);
         
-        List<Upload> itemsToLoad = new ArrayList<>(sizeWithIndicatorRecord);
+        List<Item> itemsToLoad = new ArrayList<>(sizeWithIndicatorRecord);
         Iterator<Item> iter = outcome.getItems().iterator();
         while (iter.hasNext() && itemsToLoad.size() < sizeWithIndicatorRecord) {
-            Item item = iter.next();
-            DynamoUpload2 indexKeys = BridgeObjectMapper.get().convertValue(item.asMap(), DynamoUpload2.class);
-            itemsToLoad.add(indexKeys); 
+            itemsToLoad.add(iter.next());
         }
+        List<Upload> results = healthCodeRequestedOnIndex.loadItems(DynamoUpload2.class, itemsToLoad);
         
-        List<Upload> results = new ArrayList<>(sizeWithIndicatorRecord);
-        Map<String, List<Object>> resultMap = mapper.batchLoad(itemsToLoad);
-        for (List<Object> resultList : resultMap.values()) {
-            for (Object oneResult : resultList) {
-                results.add((Upload) oneResult);
-            }
-        }
-        
-        // Due to the return in a map, these items are not in order by requestedOn attribute, so sort them.
+        // If the items were re-loaded from the table, they are not in order by requestedOn attribute, so sort them.
         results.sort(Comparator.comparing(Upload::getRequestedOn));
         
         String nextOffsetKey = null;
@@ -217,20 +220,11 @@ public class DynamoUploadDao implements UploadDao {
         QueryResultPage<DynamoUpload2> page = mapper.queryPage(DynamoUpload2.class,
                 createGetQuery(appId, startTime, endTime, offsetKey, pageSize));
 
-        Map<String, List<Object>> resultMap = mapper.batchLoad(page.getResults());
-        List<Upload> uploadList = new ArrayList<>();
-        for (List<Object> resultList : resultMap.values()) {
-            for (Object oneResult : resultList) {
-                if (!DynamoUpload2.class.isInstance(oneResult)) {
-                    // This should never happen, but just in case.
-                    throw new BridgeServiceException(String.format(
-                            "DynamoDB returned objects of type %s instead of %s",
-                            oneResult.getClass().getName(), DynamoUpload2.class.getName()));
-                }
+        List<Upload> uploadList = studyIdRequestedOnIndex.loadFullObjects(DynamoUpload2.class, page.getResults());
 
-                uploadList.add((DynamoUpload2) oneResult);
-            }
-        }
+        // If the uploads were re-loaded from the table, they are no longer in the order of the query, most recent
+        // first, so sort them.
+        uploadList.sort(Comparator.comparing(Upload::getRequestedOn).reversed());
 
         String nextPageOffsetKey = (page.getLastEvaluatedKey() != null) ? page.getLastEvaluatedKey().get(UPLOAD_ID).getS() : null;
         
@@ -325,10 +319,7 @@ public class DynamoUploadDao implements UploadDao {
                 DynamoUpload2.class, HEALTH_CODE, healthCode, null);
         List<String> uploadIdList = uploadsToDelete.stream().map(Upload::getUploadId).collect(Collectors.toList());
 
-        if (!uploadsToDelete.isEmpty()) {
-            List<FailedBatch> failures = mapper.batchDelete(uploadsToDelete);
-            BridgeUtils.ifFailuresThrowException(failures);
-        }
+        batchDeleter.deleteKeys(mapper, uploadsToDelete);
 
         return uploadIdList;
     }
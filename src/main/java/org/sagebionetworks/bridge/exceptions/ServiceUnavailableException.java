@@ -1,14 +1,30 @@
 package org.sagebionetworks.bridge.exceptions;
 
+// Thrown when the server sheds load, which is expected, so the stack trace isn't logged.
+@NoStackTraceException
 @SuppressWarnings("serial")
 public class ServiceUnavailableException extends BridgeServiceException {
 
+    private final Integer retryAfterSeconds;
+
     public ServiceUnavailableException(String message) {
         super(message, 503);
+        this.retryAfterSeconds = null;
+    }
+    
+    /** The server is temporarily overloaded. Clients should retry after the given number of seconds. */
+    public ServiceUnavailableException(String message, int retryAfterSeconds) {
+        super(message, 503);
+        this.retryAfterSeconds = retryAfterSeconds;
     }
     
     public ServiceUnavailableException(Exception e) {
         super(e, 503);
+        this.retryAfterSeconds = null;
     }
     
+    /** Seconds after which the request can be retried (sent as the Retry-After header), or null if unknown. */
+    public Integer getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
 }
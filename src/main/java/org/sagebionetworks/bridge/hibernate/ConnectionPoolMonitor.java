@@ -0,0 +1,128 @@
+package org.sagebionetworks.bridge.hibernate;
+
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.mchange.v2.c3p0.C3P0Registry;
+import com.mchange.v2.c3p0.PooledDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import org.sagebionetworks.bridge.config.BridgeConfig;
+import org.sagebionetworks.bridge.json.BridgeObjectMapper;
+
+/**
+ * Reports on the database connection pool and on each of the Hibernate helpers that use it. Metrics are logged
+ * periodically, and a warning is logged whenever callers are waiting for a connection, so pool exhaustion is visible
+ * before checkouts start timing out.
+ */
+@Component
+public class ConnectionPoolMonitor {
+    private static final Logger LOG = LoggerFactory.getLogger(ConnectionPoolMonitor.class);
+
+    /** Name of the c3p0 pool used by the Hibernate session factory. */
+    public static final String POOL_NAME = "bridge-hibernate";
+    /** Name of the c3p0 pool used by the read replica's session factory, if there is a replica. */
+    public static final String REPLICA_POOL_NAME = "bridge-hibernate-replica";
+
+    // Package-scoped for unit tests.
+    static final String CONFIG_KEY_INTERVAL_SECONDS = "hibernate.pool.monitor.interval.seconds";
+
+    private Map<String, HibernateHelper> hibernateHelpers;
+    private int intervalSeconds;
+    private ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("connection-pool-monitor-%d").setDaemon(true).build());
+
+    @Autowired
+    final void setConfig(BridgeConfig config) {
+        this.intervalSeconds = config.getPropertyAsInt(CONFIG_KEY_INTERVAL_SECONDS);
+    }
+
+    /** All Hibernate helpers, keyed by bean name. */
+    @Autowired
+    final void setHibernateHelpers(Map<String, HibernateHelper> hibernateHelpers) {
+        this.hibernateHelpers = hibernateHelpers;
+    }
+
+    /** Executor that logs the metrics. Package-scoped for unit tests. */
+    final void setExecutor(ScheduledExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /** Returns the named pool, or null if it hasn't been created. Package-scoped for unit tests. */
+    PooledDataSource getPooledDataSource(String poolName) {
+        return C3P0Registry.pooledDataSourceByName(poolName);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (intervalSeconds > 0) {
+            executor.scheduleWithFixedDelay(this::logMetrics, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /** Logs the current metrics. Package-scoped for unit tests. */
+    void logMetrics() {
+        try {
+            ObjectNode metrics = getMetrics();
+            if (metrics.path("pool").path("threadsAwaitingCheckout").intValue() > 0) {
+                LOG.warn("Callers are waiting for a database connection, connection pool metrics=" + metrics);
+            } else {
+                LOG.info("Connection pool metrics=" + metrics);
+            }
+        } catch (RuntimeException ex) {
+            // Don't let an error stop the scheduled task.
+            LOG.error("Error logging connection pool metrics: " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Returns a snapshot of the connection pool and the read replica's pool, if any (busy, idle and total 
+     * connections, threads waiting for a connection, and cached statements), and of each Hibernate helper 
+     * (connection acquisition time and checkout timeouts).
+     */
+    public ObjectNode getMetrics() {
+        ObjectNode node = BridgeObjectMapper.get().createObjectNode();
+        addPoolMetrics(node, "pool", POOL_NAME);
+        addPoolMetrics(node, "replicaPool", REPLICA_POOL_NAME);
+
+        ObjectNode helpersNode = node.putObject("helpers");
+        if (hibernateHelpers != null) {
+            for (Map.Entry<String, HibernateHelper> entry : hibernateHelpers.entrySet()) {
+                helpersNode.set(entry.getKey(), entry.getValue().getMetrics());
+            }
+        }
+        return node;
+    }
+
+    private void addPoolMetrics(ObjectNode node, String fieldName, String poolName) {
+        PooledDataSource dataSource = getPooledDataSource(poolName);
+        if (dataSource != null) {
+            ObjectNode poolNode = node.putObject(fieldName);
+            try {
+                poolNode.put("busyConnections", dataSource.getNumBusyConnectionsDefaultUser());
+                poolNode.put("idleConnections", dataSource.getNumIdleConnectionsDefaultUser());
+                poolNode.put("totalConnections", dataSource.getNumConnectionsDefaultUser());
+                poolNode.put("threadsAwaitingCheckout", dataSource.getNumThreadsAwaitingCheckoutDefaultUser());
+                poolNode.put("cachedStatements", dataSource.getStatementCacheNumStatementsDefaultUser());
+            } catch (SQLException ex) {
+                LOG.warn("Error reading connection pool metrics for " + poolName + ": " + ex.getMessage(), ex);
+            }
+        }
+    }
+}
@@ -35,6 +35,8 @@ import javax.persistence.Table;
 import javax.persistence.Transient;
 import javax.persistence.Version;
 
+import org.hibernate.annotations.Fetch;
+import org.hibernate.annotations.FetchMode;
 import org.hibernate.annotations.OnDelete;
 import org.hibernate.annotations.OnDeleteAction;
 import org.joda.time.DateTime;
@@ -52,7 +54,15 @@ import org.sagebionetworks.bridge.models.studies.Enrollment;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.databind.JsonNode;
 
-/** MySQL implementation of accounts via Hibernate. */
+/**
+ * MySQL implementation of accounts via Hibernate.
+ *
+ * Accounts are used outside of the Hibernate session, so all of their collections are loaded eagerly. Each collection
+ * is loaded with its own select (and for a query that returns several accounts, one select per collection for all of
+ * them), rather than joining all the collection tables to the account. A single join returns one row for every
+ * combination of attribute, consent, role, data group, language and enrollment, which grows very quickly for accounts
+ * with many consents and enrollments. See HibernateAccountLoadingBenchmark.
+ */
 @Entity
 @Table(name = "Accounts")
 @BridgeTypeName("Account")
@@ -131,6 +141,88 @@ public class HibernateAccount implements Account {
         this.synapseUserId = synapseUserId;
     }
 
+    /**
+     * Returns a copy of the account that shares no mutable state with it, so that changes to one do not affect the 
+     * other. The copy's collections are not Hibernate collections, so if the copy is saved, its collections are 
+     * rewritten, and enrollments removed from the copy are not deleted.
+     */
+    public static HibernateAccount copy(HibernateAccount account) {
+        HibernateAccount copy = new HibernateAccount();
+        copy.id = account.id;
+        copy.appId = account.appId;
+        copy.orgMembership = account.orgMembership;
+        copy.email = account.email;
+        copy.synapseUserId = account.synapseUserId;
+        copy.phone = (account.phone == null) ? null : new Phone(account.phone.getNumber(),
+                account.phone.getRegionCode());
+        copy.emailVerified = account.emailVerified;
+        copy.phoneVerified = account.phoneVerified;
+        copy.attributes = (account.attributes == null) ? null : new HashMap<>(account.attributes);
+        if (account.consents != null) {
+            copy.consents = new HashMap<>();
+            for (Map.Entry<HibernateAccountConsentKey, HibernateAccountConsent> entry : account.consents.entrySet()) {
+                copy.consents.put(entry.getKey(), copyConsent(entry.getValue()));
+            }
+        }
+        copy.createdOn = account.createdOn;
+        copy.healthCode = account.healthCode;
+        copy.modifiedOn = account.modifiedOn;
+        copy.firstName = account.firstName;
+        copy.lastName = account.lastName;
+        copy.passwordAlgorithm = account.passwordAlgorithm;
+        copy.passwordHash = account.passwordHash;
+        copy.passwordModifiedOn = account.passwordModifiedOn;
+        copy.reauthToken = account.reauthToken;
+        if (account.roles != null) {
+            copy.roles = EnumSet.noneOf(Roles.class);
+            copy.roles.addAll(account.roles);
+        }
+        copy.status = account.status;
+        copy.version = account.version;
+        copy.clientData = (account.clientData == null) ? null : account.clientData.deepCopy();
+        copy.timeZone = account.timeZone;
+        copy.sharingScope = account.sharingScope;
+        copy.notifyByEmail = account.notifyByEmail;
+        copy.dataGroups = (account.dataGroups == null) ? null : new HashSet<>(account.dataGroups);
+        copy.languages = (account.languages == null) ? null : new ArrayList<>(account.languages);
+        copy.migrationVersion = account.migrationVersion;
+        if (account.enrollments != null) {
+            copy.enrollments = new HashSet<>();
+            for (Enrollment enrollment : account.enrollments) {
+                copy.enrollments.add(copyEnrollment(enrollment));
+            }
+        }
+        copy.note = account.note;
+        copy.clientTimeZone = account.clientTimeZone;
+        copy.admin = account.admin;
+        copy.password = account.password;
+        return copy;
+    }
+    
+    private static HibernateAccountConsent copyConsent(HibernateAccountConsent consent) {
+        HibernateAccountConsent copy = new HibernateAccountConsent();
+        copy.setBirthdate(consent.getBirthdate());
+        copy.setConsentCreatedOn(consent.getConsentCreatedOn());
+        copy.setName(consent.getName());
+        copy.setSignatureImageData(consent.getSignatureImageData());
+        copy.setSignatureImageMimeType(consent.getSignatureImageMimeType());
+        copy.setWithdrewOn(consent.getWithdrewOn());
+        return copy;
+    }
+    
+    private static Enrollment copyEnrollment(Enrollment enrollment) {
+        Enrollment copy = Enrollment.create(enrollment.getAppId(), enrollment.getStudyId(), 
+                enrollment.getAccountId(), enrollment.getExternalId());
+        copy.setConsentRequired(enrollment.isConsentRequired());
+        copy.setEnrolledOn(enrollment.getEnrolledOn());
+        copy.setWithdrawnOn(enrollment.getWithdrawnOn());
+        copy.setEnrolledBy(enrollment.getEnrolledBy());
+        copy.setWithdrawnBy(enrollment.getWithdrawnBy());
+        copy.setWithdrawalNote(enrollment.getWithdrawalNote());
+        copy.setNote(enrollment.getNote());
+        return copy;
+    }
+
     /**
      * Account ID, used as a unique identifier for the account that doesn't leak email address (which is personally
      * identifying info).
@@ -232,6 +324,7 @@ public class HibernateAccount implements Account {
             referencedColumnName = "id"))
     @Column(name = "attributeValue")
     @ElementCollection(fetch = FetchType.EAGER)
+    @Fetch(FetchMode.SUBSELECT)
     @MapKeyColumn(name = "attributeKey")
     public Map<String, String> getAttributes() {
         if (attributes == null) {
@@ -250,6 +343,7 @@ public class HibernateAccount implements Account {
     @CollectionTable(name = "AccountConsents", joinColumns = @JoinColumn(name = "accountId",
             referencedColumnName = "id"))
     @ElementCollection(fetch = FetchType.EAGER)
+    @Fetch(FetchMode.SUBSELECT)
     @MapKeyClass(HibernateAccountConsentKey.class)
     @JsonIgnore
     public Map<HibernateAccountConsentKey, HibernateAccountConsent> getConsents() {
@@ -366,6 +460,7 @@ public class HibernateAccount implements Account {
     @CollectionTable(name = "AccountRoles", joinColumns = @JoinColumn(name = "accountId", referencedColumnName = "id"))
     @Column(name = "role")
     @ElementCollection(fetch = FetchType.EAGER)
+    @Fetch(FetchMode.SUBSELECT)
     @Enumerated(EnumType.STRING)
     public Set<Roles> getRoles() {
         if (roles == null) {
@@ -471,6 +566,7 @@ public class HibernateAccount implements Account {
     @CollectionTable(name = "AccountDataGroups", joinColumns = @JoinColumn(name = "accountId", referencedColumnName = "id"))
     @Column(name = "dataGroup")
     @ElementCollection(fetch = FetchType.EAGER)
+    @Fetch(FetchMode.SUBSELECT)
     public Set<String> getDataGroups() {
         if (dataGroups == null) {
             dataGroups = new HashSet<>();
@@ -489,6 +585,7 @@ public class HibernateAccount implements Account {
     @Column(name = "language")
     @OrderColumn(name="order_index", insertable=true, updatable=true)
     @ElementCollection(fetch = FetchType.EAGER)
+    @Fetch(FetchMode.SUBSELECT)
     public List<String> getLanguages() {
         if (languages == null) {
             languages = new ArrayList<>();
@@ -524,6 +621,7 @@ public class HibernateAccount implements Account {
     
     @OneToMany(mappedBy = "accountId", cascade = CascadeType.ALL, orphanRemoval = true, 
         fetch = FetchType.EAGER, targetEntity=HibernateEnrollment.class)
+    @Fetch(FetchMode.SUBSELECT)
     @OnDelete(action=OnDeleteAction.CASCADE)
     @JsonIgnore
     @Override
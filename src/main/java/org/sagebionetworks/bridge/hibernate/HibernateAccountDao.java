@@ -28,7 +28,9 @@ import static org.sagebionetworks.bridge.models.ResourceList.STATUS;
 import static org.sagebionetworks.bridge.models.ResourceList.STRING_SEARCH_POSITION;
 import static org.sagebionetworks.bridge.models.SearchTermPredicate.AND;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -36,23 +38,28 @@ import java.util.stream.Collectors;
 import javax.annotation.Resource;
 
 import org.apache.commons.lang3.StringUtils;
+import org.hibernate.Session;
+import org.hibernate.query.NativeQuery;
 import org.joda.time.DateTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 
 import org.sagebionetworks.bridge.BridgeUtils;
 import org.sagebionetworks.bridge.BridgeUtils.StudyAssociations;
 import org.sagebionetworks.bridge.RequestContext;
 import org.sagebionetworks.bridge.dao.AccountDao;
+import org.sagebionetworks.bridge.exceptions.ConcurrentModificationException;
 import org.sagebionetworks.bridge.hibernate.QueryBuilder.WhereClauseBuilder;
 import org.sagebionetworks.bridge.time.DateUtils;
 import org.sagebionetworks.bridge.models.AccountSummarySearch;
 import org.sagebionetworks.bridge.models.PagedResourceList;
 import org.sagebionetworks.bridge.models.SearchTermPredicate;
 import org.sagebionetworks.bridge.models.accounts.Account;
+import org.sagebionetworks.bridge.models.accounts.AccountField;
 import org.sagebionetworks.bridge.models.accounts.AccountId;
 import org.sagebionetworks.bridge.models.accounts.AccountSummary;
 import org.sagebionetworks.bridge.models.accounts.ExternalIdentifierInfo;
@@ -62,18 +69,46 @@ import org.sagebionetworks.bridge.models.accounts.ExternalIdentifierInfo;
 public class HibernateAccountDao implements AccountDao {
     private static final Logger LOG = LoggerFactory.getLogger(HibernateAccountDao.class);
 
+    // Account searches from the API are used by researchers, who can tolerate a few seconds of lag, so they can be 
+    // read from the replica.
+    static final int MAX_REPLICA_LAG_SECONDS = 10;
     static final String ID_QUERY = "SELECT acct.id FROM HibernateAccount AS acct";
     static final String FULL_QUERY = "SELECT acct FROM HibernateAccount AS acct";
+    static final String PAGE_QUERY = "SELECT acct FROM HibernateAccount AS acct WHERE acct.id IN (:ids)";
     static final String COUNT_QUERY = "SELECT COUNT(DISTINCT acct.id) FROM HibernateAccount AS acct";
     static final String DELETE_ALL_ACCOUNTS_QUERY = "DELETE FROM Accounts WHERE studyId = :appId";
+    static final String ACCOUNT_COUNTS_TABLE = "AppAccountCounts";
+    static final String GET_ACCOUNT_COUNT_QUERY = "SELECT accountCount, reconciledOn FROM AppAccountCounts "
+            + "WHERE appId = :appId";
+    static final String RECOUNT_ACCOUNTS_QUERY = "SELECT COUNT(*) FROM Accounts WHERE studyId = :appId";
+    static final String UPSERT_ACCOUNT_COUNT_QUERY = "INSERT INTO AppAccountCounts (appId, accountCount, reconciledOn) "
+            + "VALUES (:appId, :accountCount, :reconciledOn) ON DUPLICATE KEY UPDATE "
+            + "accountCount = VALUES(accountCount), reconciledOn = VALUES(reconciledOn)";
+    static final String INCREMENT_ACCOUNT_COUNT_QUERY = "UPDATE AppAccountCounts SET accountCount = accountCount + 1 "
+            + "WHERE appId = :appId";
+    static final String DECREMENT_ACCOUNT_COUNT_QUERY = "UPDATE AppAccountCounts SET accountCount = "
+            + "GREATEST(accountCount - 1, 0) WHERE appId = :appId";
+    static final String DELETE_ACCOUNT_COUNT_QUERY = "DELETE FROM AppAccountCounts WHERE appId = :appId";
+    // Single-field updates. The version check makes these optimistic, like a full update of the account.
+    static final String UPDATE_ACCOUNT_FIELD_QUERY = "UPDATE Accounts SET %s modifiedOn = :modifiedOn, "
+            + "version = version + 1 WHERE id = :id AND version = :version";
+    static final String DELETE_LANGUAGES_QUERY = "DELETE FROM AccountLanguages WHERE accountId = :id";
+    static final String INSERT_LANGUAGES_QUERY = "INSERT INTO AccountLanguages (accountId, language, order_index) "
+            + "VALUES ";
     static final String APP_IDS_FOR_USER_QUERY = "SELECT DISTINCT acct.appId FROM HibernateAccount AS acct WHERE synapseUserId = :synapseUserId";
     
+    // The account counter is recounted against the Accounts table when it is older than this, to correct any drift.
+    static final long ACCOUNT_COUNT_RECONCILE_INTERVAL_MILLIS = 10 * 60 * 1000;
+
     static final String EXTID_BASE_QUERY = "from HibernateEnrollment as en "
             + "WHERE en.appId = :appId AND en.studyId = :studyId "
             + "AND en.externalId IS NOT NULL";
     static final String EXTID_FILTER_QUERY = "AND en.externalId LIKE :idFilter";
     static final String EXTID_ORDER_QUERY = "ORDER BY en.externalId";
     
+    private static final DateTimeToLongAttributeConverter DATE_TIME_CONVERTER = new DateTimeToLongAttributeConverter();
+    private static final DateTimeZoneAttributeConverter TIME_ZONE_CONVERTER = new DateTimeZoneAttributeConverter();
+    
     private HibernateHelper hibernateHelper;
 
     /** This makes interfacing with Hibernate easier. */
@@ -97,18 +132,102 @@ public class HibernateAccountDao implements AccountDao {
         return hibernateHelper.queryGet(query.getQuery(), query.getParameters(), null, null, String.class);
     }
     
+    // AccountService memoizes accounts for the rest of the request, under each ID they were looked up by. Every 
+    // write goes through this DAO, so it removes them all here, before the write, so they're removed even if the 
+    // write fails part-way.
+    private static void removeMemoizedAccounts() {
+        RequestContext.get().getEntityCache().removeAll(Account.class);
+    }
+    
     /** {@inheritDoc} */
     @Override
     public void createAccount(Account account) {
-        hibernateHelper.create(account);
+        removeMemoizedAccounts();
+        hibernateHelper.executeWithExceptionHandling(account, session -> {
+            session.save(account);
+            updateAccountCount(session, INCREMENT_ACCOUNT_COUNT_QUERY, account.getAppId());
+            return account;
+        });
     }
 
     /** {@inheritDoc} */
     @Override
     public void updateAccount(Account account) {
+        removeMemoizedAccounts();
         hibernateHelper.update(account);
     }
     
+    /** {@inheritDoc} */
+    @Override
+    public void updateAccountField(Account account, AccountField field) {
+        checkNotNull(account);
+        checkNotNull(field);
+        removeMemoizedAccounts();
+        
+        Map<String, Object> params = new HashMap<>();
+        params.put("id", account.getId());
+        params.put("version", account.getVersion());
+        params.put("modifiedOn", DATE_TIME_CONVERTER.convertToDatabaseColumn(account.getModifiedOn()));
+        
+        String column = null;
+        switch (field) {
+            case CLIENT_TIME_ZONE:
+                column = "clientTimeZone";
+                params.put("value", account.getClientTimeZone());
+                break;
+            case NOTIFY_BY_EMAIL:
+                column = "notifyByEmail";
+                params.put("value", account.getNotifyByEmail());
+                break;
+            case SHARING_SCOPE:
+                column = "sharingScope";
+                params.put("value", account.getSharingScope().name());
+                break;
+            case TIME_ZONE:
+                column = "timeZone";
+                params.put("value", TIME_ZONE_CONVERTER.convertToDatabaseColumn(account.getTimeZone()));
+                break;
+            case LANGUAGES:
+                // Only the version and modifiedOn change in the Accounts table. The languages are replaced below.
+                break;
+        }
+        String query = String.format(UPDATE_ACCOUNT_FIELD_QUERY, (column == null) ? "" : column + " = :value,");
+        List<String> languages = account.getLanguages();
+        
+        int count = hibernateHelper.executeWithExceptionHandling(null, session -> {
+            int updated = setParameters(session.createNativeQuery(query), params).executeUpdate();
+            // If the version check failed, leave the languages alone.
+            if (updated > 0 && field == AccountField.LANGUAGES) {
+                Map<String, Object> idParam = ImmutableMap.of("id", account.getId());
+                setParameters(session.createNativeQuery(DELETE_LANGUAGES_QUERY), idParam).executeUpdate();
+                if (!languages.isEmpty()) {
+                    // One multi-row insert, in the same order Hibernate uses for the @OrderColumn.
+                    Map<String, Object> languageParams = new HashMap<>(idParam);
+                    StringBuilder insert = new StringBuilder(INSERT_LANGUAGES_QUERY);
+                    for (int i = 0; i < languages.size(); i++) {
+                        insert.append((i == 0) ? "" : ", ").append("(:id, :language").append(i).append(", ")
+                                .append(i).append(")");
+                        languageParams.put("language" + i, languages.get(i));
+                    }
+                    setParameters(session.createNativeQuery(insert.toString()), languageParams).executeUpdate();
+                }
+            }
+            return updated;
+        });
+        if (count == 0) {
+            throw new ConcurrentModificationException(account);
+        }
+        account.setVersion(account.getVersion() + 1);
+    }
+    
+    private static NativeQuery<?> setParameters(NativeQuery<?> query, Map<String, Object> params) {
+        query.addSynchronizedEntityClass(HibernateAccount.class);
+        for (Map.Entry<String, Object> entry : params.entrySet()) {
+            query.setParameter(entry.getKey(), entry.getValue());
+        }
+        return query;
+    }
+    
     /** {@inheritDoc} */
     @Override
     public Optional<Account> getAccount(AccountId accountId) {
@@ -217,30 +336,102 @@ public class HibernateAccountDao implements AccountDao {
     /** {@inheritDoc} */
     @Override
     public void deleteAccount(String userId) {
-        hibernateHelper.deleteById(HibernateAccount.class, userId);
+        removeMemoizedAccounts();
+        // Hibernate optimistic versioning also applies to deletes, so the account is loaded before it's deleted. 
+        // If it's already gone, there's nothing to do.
+        hibernateHelper.executeWithExceptionHandling(null, session -> {
+            HibernateAccount account = session.get(HibernateAccount.class, userId);
+            if (account != null) {
+                updateAccountCount(session, DECREMENT_ACCOUNT_COUNT_QUERY, account.getAppId());
+                session.delete(account);
+            }
+            return null;
+        });
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getAccountCount(String appId) {
+        checkNotNull(appId);
+
+        QueryBuilder builder = new QueryBuilder();
+        builder.append(GET_ACCOUNT_COUNT_QUERY, "appId", appId);
+        List<Object[]> results = hibernateHelper.nativeQuery(builder.getQuery(), builder.getParameters());
+        if (!results.isEmpty()) {
+            Object[] row = results.get(0);
+            long reconciledOn = ((Number) row[1]).longValue();
+            if (DateUtils.getCurrentMillisFromEpoch() - reconciledOn < ACCOUNT_COUNT_RECONCILE_INTERVAL_MILLIS) {
+                return ((Number) row[0]).intValue();
+            }
+        }
+        return reconcileAccountCount(appId);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int reconcileAccountCount(String appId) {
+        checkNotNull(appId);
+
+        QueryBuilder builder = new QueryBuilder();
+        builder.append(RECOUNT_ACCOUNTS_QUERY, "appId", appId);
+        int count = hibernateHelper.nativeQueryCount(builder.getQuery(), builder.getParameters());
+
+        builder = new QueryBuilder();
+        builder.append(UPSERT_ACCOUNT_COUNT_QUERY, "appId", appId, "accountCount", count, "reconciledOn",
+                DateUtils.getCurrentMillisFromEpoch());
+        hibernateHelper.nativeTableUpdate(builder.getQuery(), builder.getParameters(), ACCOUNT_COUNTS_TABLE);
+        return count;
+    }
+
+    // The counter is updated in the same transaction as the account is created or deleted, so the two can't drift 
+    // apart. If the app has no counter row yet, nothing is updated; the next read counts the accounts.
+    private static void updateAccountCount(Session session, String query, String appId) {
+        NativeQuery<?> nativeQuery = session.createNativeQuery(query);
+        nativeQuery.addSynchronizedQuerySpace(ACCOUNT_COUNTS_TABLE);
+        nativeQuery.setParameter("appId", appId);
+        nativeQuery.executeUpdate();
     }
 
     /** {@inheritDoc} */
     @Override
     public PagedResourceList<AccountSummary> getPagedAccountSummaries(String appId, AccountSummarySearch search) {
-        // Getting the IDs and loading the records individually leads to N+1 queries (one id query and a 
-        // query for each object), whereas querying for a constructor of a subset of columns leads to 
-        // (N*Y)+1 queries as we must load each collection individually... Y=1 in the prior code to load
-        // studies, and Y=2 once we add attributes. On the downside, this approach loads all 
-        // HibernateAccount fields, like clientData, though it is not returned.
+        return getPagedAccountSummaries(hibernateHelper, appId, search);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public PagedResourceList<AccountSummary> getPagedAccountSummariesFromReplica(String appId,
+            AccountSummarySearch search) {
+        return getPagedAccountSummaries(hibernateHelper.replica(MAX_REPLICA_LAG_SECONDS), appId, search);
+    }
+
+    private PagedResourceList<AccountSummary> getPagedAccountSummaries(HibernateHelper readHelper, String appId,
+            AccountSummarySearch search) {
+        // Page through the IDs, then load the page's accounts with one query. The accounts' collections are 
+        // fetched by subselect, so each collection is loaded with one more query for the whole page, rather than 
+        // one query per account (loading each account by ID cost seven statements per account). On the downside, 
+        // this approach loads all HibernateAccount fields, like clientData, though it is not returned.
         QueryBuilder builder = makeQuery(ID_QUERY, appId, null, search, false);
         
-        List<String> ids = hibernateHelper.queryGet(builder.getQuery(), builder.getParameters(),
+        List<String> ids = readHelper.queryGet(builder.getQuery(), builder.getParameters(),
                 search.getOffsetBy(), search.getPageSize(), String.class);
         
-        List<AccountSummary>accountSummaryList = ids.stream()
-                .map(id -> hibernateHelper.getById(HibernateAccount.class, id))
-                .map(this::unmarshallAccountSummary)
-                .collect(Collectors.toList());
+        List<AccountSummary> accountSummaryList = ImmutableList.of();
+        if (!ids.isEmpty()) {
+            Map<String, HibernateAccount> accountsById = readHelper.queryGet(PAGE_QUERY, 
+                    ImmutableMap.of("ids", ids), null, null, HibernateAccount.class).stream()
+                    .collect(Collectors.toMap(HibernateAccount::getId, account -> account));
+            // Keep the order of the ID query. An account deleted between the two queries is left out.
+            accountSummaryList = ids.stream()
+                    .map(accountsById::get)
+                    .filter(account -> account != null)
+                    .map(this::unmarshallAccountSummary)
+                    .collect(Collectors.toList());
+        }
 
         // Get count of accounts.
         builder = makeQuery(COUNT_QUERY, appId, null, search, true);
-        int count = hibernateHelper.queryCount(builder.getQuery(), builder.getParameters());
+        int count = readHelper.queryCount(builder.getQuery(), builder.getParameters());
         
         // Package results and return.
         return new PagedResourceList<>(accountSummaryList, count)
@@ -341,10 +532,16 @@ public class HibernateAccountDao implements AccountDao {
     @Override
     public void deleteAllAccounts(String appId) {
         checkNotNull(appId);
+        removeMemoizedAccounts();
         
         QueryBuilder builder = new QueryBuilder();
         builder.append(DELETE_ALL_ACCOUNTS_QUERY, "appId", appId);
         
-        hibernateHelper.nativeQueryUpdate(builder.getQuery(), builder.getParameters());
+        hibernateHelper.nativeQueryUpdate(builder.getQuery(), builder.getParameters(), HibernateAccount.class);
+
+        // Drop the counter, so it's recounted the next time it's read.
+        builder = new QueryBuilder();
+        builder.append(DELETE_ACCOUNT_COUNT_QUERY, "appId", appId);
+        hibernateHelper.nativeTableUpdate(builder.getQuery(), builder.getParameters(), ACCOUNT_COUNTS_TABLE);
     }
 }
@@ -8,12 +8,9 @@ import java.security.spec.InvalidKeySpecException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 
 import javax.annotation.Resource;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
 import org.sagebionetworks.bridge.dao.AccountSecretDao;
@@ -26,8 +23,6 @@ import org.sagebionetworks.bridge.time.DateUtils;
 /** Hibernate implementation of Account Secret Dao. */
 @Component
 public class HibernateAccountSecretDao implements AccountSecretDao {
-    private static final Logger LOG = LoggerFactory.getLogger(HibernateAccountSecretDao.class);
-    
     static final String GET_QUERY = "SELECT secret FROM HibernateAccountSecret as secret " + 
             "WHERE accountId = :accountId AND type = :type ORDER BY createdOn DESC";
     
@@ -66,31 +61,15 @@ public class HibernateAccountSecretDao implements AccountSecretDao {
     }
 
     @Override
-    public Optional<AccountSecret> verifySecret(AccountSecretType type, String accountId, String plaintext,
-            int rotations) {
+    public List<HibernateAccountSecret> getSecrets(AccountSecretType type, String accountId, int rotations) {
         checkNotNull(type);
         checkNotNull(accountId);
-        checkNotNull(plaintext);
         
         Map<String,Object> params = new HashMap<>();
         params.put("accountId", accountId);
         params.put("type", type);
         
-        List<HibernateAccountSecret> secrets = hibernateHelper.queryGet(
-                GET_QUERY, params, 0, rotations, HibernateAccountSecret.class);
-        for (HibernateAccountSecret accountSecret : secrets) {
-            try {
-                // It's not possible to cache the hashed plaintext, as it is being compared to a hash
-                // that has been seeded with a random salt (in the default algorithm's case). So we
-                // must extract and use that salt + iterations to compare the hashes.
-                if (accountSecret.getAlgorithm().checkHash(accountSecret.getHash(), plaintext)) {
-                    return Optional.of(accountSecret);
-                }
-            } catch (InvalidKeyException | InvalidKeySpecException | NoSuchAlgorithmException e) {
-                LOG.error("Error checking reauthentication token", e);
-            }
-        }
-        return Optional.empty();
+        return hibernateHelper.queryGet(GET_QUERY, params, 0, rotations, HibernateAccountSecret.class);
     }
     
     @Override
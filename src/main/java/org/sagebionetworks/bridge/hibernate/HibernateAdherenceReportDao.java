@@ -58,6 +58,8 @@ public class HibernateAdherenceReportDao implements AdherenceReportDao {
         return (sb != 0) ? sb : STRING_COMPARATOR.compare(r1.getSessionName(), r2.getSessionName());
     };
 
+    // Reports are recalculated in the background, so they can be read from the replica if it's within a minute.
+    static final int MAX_REPLICA_LAG_SECONDS = 60;
     static final String SELECT_COUNT = "SELECT COUNT(*) ";
     static final String SELECT_DISTINCT = "SELECT DISTINCT h ";
     static final String ADHERENCE_MIN_FIELD = "adherenceMin";
@@ -137,9 +139,10 @@ public class HibernateAdherenceReportDao implements AdherenceReportDao {
         builder.append("ORDER BY h.weeklyAdherencePercent, h.participant.lastName, h.participant.firstName, "
                 +"h.participant.email, h.participant.phone, h.participant.externalId");
 
-        int total = hibernateHelper.queryCount(SELECT_COUNT + builder.getQuery(), builder.getParameters());
+        HibernateHelper readHelper = hibernateHelper.replica(MAX_REPLICA_LAG_SECONDS);
+        int total = readHelper.queryCount(SELECT_COUNT + builder.getQuery(), builder.getParameters());
         
-        List<WeeklyAdherenceReport> reports = hibernateHelper.queryGet(SELECT_DISTINCT + builder.getQuery(),
+        List<WeeklyAdherenceReport> reports = readHelper.queryGet(SELECT_DISTINCT + builder.getQuery(),
                 builder.getParameters(), search.getOffsetBy(), search.getPageSize(), WeeklyAdherenceReport.class);
 
         return new PagedResourceList<>(reports, total, true);
@@ -151,7 +154,8 @@ public class HibernateAdherenceReportDao implements AdherenceReportDao {
         
         QueryBuilder builder = new QueryBuilder();
         builder.append(STATISTICS_SQL, "appId", appId, "studyId", studyId);
-        List<Object[]> results = hibernateHelper.nativeQuery(builder.getQuery(), builder.getParameters());
+        List<Object[]> results = hibernateHelper.replica(MAX_REPLICA_LAG_SECONDS).nativeQuery(builder.getQuery(),
+                builder.getParameters());
         for (Object[] oneResult : results) {
             String searchableLabel = (String)oneResult[0];
             BigInteger totalActive = (BigInteger)oneResult[1];
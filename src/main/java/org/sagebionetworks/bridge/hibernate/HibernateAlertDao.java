@@ -1,11 +1,14 @@
 package org.sagebionetworks.bridge.hibernate;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 
 import javax.annotation.Resource;
 
+import org.joda.time.DateTime;
 import org.sagebionetworks.bridge.dao.AlertDao;
 import org.sagebionetworks.bridge.hibernate.QueryBuilder.WhereClauseBuilder;
 import org.sagebionetworks.bridge.models.PagedResourceList;
@@ -18,6 +21,21 @@ import org.springframework.stereotype.Component;
 
 @Component
 public class HibernateAlertDao implements AlertDao {
+    // Category counts are a dashboard summary and can be read from the replica. Package-scoped for unit tests.
+    static final int MAX_REPLICA_LAG_SECONDS = 30;
+    // The SELECT only returns a row if the account exists, so no alert is created for a missing account (the foreign
+    // key would otherwise fail the insert). The update assigns createdOn last, because MySQL evaluates these 
+    // assignments in order and the earlier ones compare against the existing createdOn.
+    static final String UPSERT_ALERT = "INSERT INTO Alerts (id, createdOn, studyId, appId, userId, category, data, "
+            + "isRead) SELECT :id, :createdOn, :studyId, :appId, :userId, :category, :data, :isRead FROM DUAL "
+            + "WHERE EXISTS (SELECT 1 FROM Accounts WHERE id = :userId AND studyId = :appId) "
+            + "ON DUPLICATE KEY UPDATE id = IF(createdOn < :replaceBefore, VALUES(id), id), "
+            + "data = IF(createdOn < :replaceBefore, VALUES(data), data), "
+            + "isRead = IF(createdOn < :replaceBefore, VALUES(isRead), isRead), "
+            + "createdOn = IF(createdOn < :replaceBefore, VALUES(createdOn), createdOn)";
+
+    private static final JsonNodeAttributeConverter DATA_CONVERTER = new JsonNodeAttributeConverter();
+
     private HibernateHelper hibernateHelper;
 
     @Resource(name = "mysqlHibernateHelper")
@@ -30,6 +48,23 @@ public class HibernateAlertDao implements AlertDao {
         hibernateHelper.create(alert);
     }
 
+    @Override
+    public void upsertAlert(Alert alert, DateTime replaceIfCreatedBefore) {
+        long replaceBefore = (replaceIfCreatedBefore == null) ? Long.MAX_VALUE : replaceIfCreatedBefore.getMillis();
+        
+        Map<String, Object> params = new HashMap<>();
+        params.put("id", alert.getId());
+        params.put("createdOn", alert.getCreatedOn().getMillis());
+        params.put("studyId", alert.getStudyId());
+        params.put("appId", alert.getAppId());
+        params.put("userId", alert.getUserId());
+        params.put("category", alert.getCategory().name());
+        params.put("data", DATA_CONVERTER.convertToDatabaseColumn(alert.getData()));
+        params.put("isRead", alert.isRead());
+        params.put("replaceBefore", replaceBefore);
+        hibernateHelper.nativeQueryUpdate(UPSERT_ALERT, params, Alert.class);
+    }
+
     @Override
     public void deleteAlert(Alert alert) {
         hibernateHelper.deleteById(Alert.class, alert.getId());
@@ -120,7 +155,8 @@ public class HibernateAlertDao implements AlertDao {
         where.append("a.studyId = :studyId", "studyId", studyId);
         builder.append("GROUP BY category");
         builder.append("ORDER BY category");
-        List<AlertCategoryAndCount> alertCategoriesAndCounts = hibernateHelper.queryGet(builder.getQuery(),
+        List<AlertCategoryAndCount> alertCategoriesAndCounts = hibernateHelper.replica(MAX_REPLICA_LAG_SECONDS)
+                .queryGet(builder.getQuery(),
                 builder.getParameters(), null, null, AlertCategoryAndCount.class);
         return new AlertCategoriesAndCounts(alertCategoriesAndCounts);
     }
@@ -130,7 +130,7 @@ class HibernateAssessmentDao implements AssessmentDao {
             builder.append(LIMIT_TO_OWNER, OWNER_ID, ownerId); 
         }
         
-        List<HibernateAssessment> results = hibernateHelper.queryGet(
+        List<HibernateAssessment> results = hibernateHelper.cacheableQueryGet(
                 builder.getQuery(), builder.getParameters(), null, null, HibernateAssessment.class);
         if (results.isEmpty()) {
             return Optional.empty();
@@ -145,7 +145,7 @@ class HibernateAssessmentDao implements AssessmentDao {
         if (ownerId != null) {
             builder.append(LIMIT_TO_OWNER, OWNER_ID, ownerId); 
         }
-        List<HibernateAssessment> results = hibernateHelper.queryGet(
+        List<HibernateAssessment> results = hibernateHelper.cacheableQueryGet(
                 builder.getQuery(), builder.getParameters(), null, null, HibernateAssessment.class);
         if (results.isEmpty()) {
             return Optional.empty();
@@ -250,6 +250,6 @@ class HibernateAssessmentDao implements AssessmentDao {
         QueryBuilder builder = new QueryBuilder();
         builder.append(DELETE_ALL_ASSESSMENTS_SQL, APP_ID, appId);
         
-        hibernateHelper.nativeQueryUpdate(builder.getQuery(), builder.getParameters());
+        hibernateHelper.nativeQueryUpdate(builder.getQuery(), builder.getParameters(), HibernateAssessment.class);
     }
 }
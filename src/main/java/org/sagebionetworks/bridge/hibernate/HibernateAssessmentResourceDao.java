@@ -123,6 +123,7 @@ public class HibernateAssessmentResourceDao implements AssessmentResourceDao {
         QueryBuilder builder = new QueryBuilder();
         builder.append(DELETE_ALL_QUERY, "appId", appId);
         
-        hibernateHelper.nativeQueryUpdate(builder.getQuery(), builder.getParameters());
+        hibernateHelper.nativeQueryUpdate(builder.getQuery(), builder.getParameters(),
+                HibernateAssessmentResource.class);
     }
 }
@@ -0,0 +1,218 @@
+package org.sagebionetworks.bridge.hibernate;
+
+import static org.sagebionetworks.bridge.BridgeUtils.generateGuid;
+
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.hibernate.SessionFactory;
+import org.hibernate.annotations.Cache;
+import org.hibernate.event.spi.PostCommitDeleteEventListener;
+import org.hibernate.event.spi.PostCommitInsertEventListener;
+import org.hibernate.event.spi.PostCommitUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import org.sagebionetworks.bridge.cache.CacheKey;
+import org.sagebionetworks.bridge.cache.CacheProvider;
+import org.sagebionetworks.bridge.config.BridgeConfig;
+import org.sagebionetworks.bridge.json.BridgeObjectMapper;
+
+/**
+ * Keeps the Hibernate second-level cache consistent across server instances. Hibernate evicts its own cache when
+ * this instance writes to a cached entity, but other instances have no way of knowing about the change. So after any
+ * committed write to a cached entity (or any bulk update that might touch one), we store a new cache version in
+ * Redis. Each instance polls this version and evicts its entire second-level cache when it changes. Writes to cached
+ * entities (schedules, assessments, studies, etc.) are infrequent compared to reads, so evicting everything is
+ * simpler and safer than tracking individual entries.
+ */
+@SuppressWarnings("serial")
+@Component
+public class HibernateCacheInvalidator implements PostCommitInsertEventListener, PostCommitUpdateEventListener,
+        PostCommitDeleteEventListener {
+    private static final Logger LOG = LoggerFactory.getLogger(HibernateCacheInvalidator.class);
+
+    // Package-scoped for unit tests.
+    static final String CONFIG_KEY_POLL_SECONDS = "hibernate.cache.invalidation.poll.seconds";
+    static final int DEFAULT_POLL_SECONDS = 5;
+
+    // As with the TagEventListener, Hibernate listeners are serializable, but these are never serialized.
+    private transient CacheProvider cacheProvider;
+    private transient SessionFactory sessionFactory;
+    private transient ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("hibernate-cache-invalidator-%d").setDaemon(true).build());
+    private int pollSeconds = DEFAULT_POLL_SECONDS;
+    private volatile String cacheVersion;
+
+    @Autowired
+    final void setCacheProvider(CacheProvider cacheProvider) {
+        this.cacheProvider = cacheProvider;
+    }
+
+    @Autowired
+    final void setConfig(BridgeConfig config) {
+        int pollSeconds = config.getPropertyAsInt(CONFIG_KEY_POLL_SECONDS);
+        this.pollSeconds = pollSeconds > 0 ? pollSeconds : DEFAULT_POLL_SECONDS;
+    }
+
+    /**
+     * The session factory whose cache is evicted. This is set after the session factory is built, since the
+     * session factory needs this class as a listener.
+     */
+    public final void setSessionFactory(SessionFactory sessionFactory) {
+        this.sessionFactory = sessionFactory;
+    }
+
+    /** Executor that polls for the cache version. Package-scoped for unit tests. */
+    final void setExecutor(ScheduledExecutorService executor) {
+        this.executor = executor;
+    }
+
+    @PostConstruct
+    public void start() {
+        // Anything that changes after this point will be evicted on the next poll.
+        try {
+            cacheVersion = getRemoteVersion();
+        } catch (RuntimeException ex) {
+            LOG.warn("Error reading second-level cache version: " + ex.getMessage(), ex);
+        }
+        executor.scheduleWithFixedDelay(this::poll, pollSeconds, pollSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Record that cached data has changed, so all instances evict their caches. This instance also evicts its cache
+     * when it next polls. That's redundant, but two instances can publish at nearly the same time, and one version
+     * overwrites the other, so an instance can't skip versions it thinks it published.
+     */
+    public void invalidate() {
+        try {
+            cacheProvider.setObject(CacheKey.hibernateCacheVersion(), generateGuid());
+        } catch (RuntimeException ex) {
+            // The write has already been committed. Other instances will see the change once their entries expire.
+            LOG.error("Error publishing second-level cache invalidation: " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Record that a bulk update has changed rows for the given entity. If the entity is not cached, or if the
+     * update can't change a cached entity, nothing needs to be evicted. If the entity is null (that is, the update
+     * could affect any table), cached data is invalidated.
+     */
+    public void invalidate(Class<?> entityClass) {
+        if (entityClass == null || entityClass.isAnnotationPresent(Cache.class)) {
+            invalidate();
+        }
+    }
+
+    /** Evicts the second-level cache if another instance has changed cached data. Package-scoped for unit tests. */
+    void poll() {
+        try {
+            String version = getRemoteVersion();
+            if (!Objects.equals(version, cacheVersion)) {
+                if (sessionFactory != null) {
+                    sessionFactory.getCache().evictAllRegions();
+                    LOG.info("Evicted second-level cache after cache version changed to " + version);
+                }
+                cacheVersion = version;
+            }
+        } catch (RuntimeException ex) {
+            // Don't let an error stop the scheduled task.
+            LOG.error("Error polling second-level cache version: " + ex.getMessage(), ex);
+        }
+    }
+
+    private String getRemoteVersion() {
+        return cacheProvider.getObject(CacheKey.hibernateCacheVersion(), String.class);
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        invalidate();
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        invalidate();
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        invalidate();
+    }
+
+    @Override
+    public void onPostInsertCommitFailed(PostInsertEvent event) {
+        // Nothing changed.
+    }
+
+    @Override
+    public void onPostUpdateCommitFailed(PostUpdateEvent event) {
+        // Nothing changed.
+    }
+
+    @Override
+    public void onPostDeleteCommitFailed(PostDeleteEvent event) {
+        // Nothing changed.
+    }
+
+    /** Only writes to cached entities need to be published. */
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return persister.canWriteToCache();
+    }
+
+    /**
+     * Returns hit, miss and put counts (and the hit ratio) for the second-level cache and the query cache, overall
+     * and for each cache region.
+     */
+    public ObjectNode getMetrics() {
+        ObjectNode node = BridgeObjectMapper.get().createObjectNode();
+        if (sessionFactory == null) {
+            return node;
+        }
+        Statistics stats = sessionFactory.getStatistics();
+        addCounts(node.putObject("secondLevelCache"), stats.getSecondLevelCacheHitCount(),
+                stats.getSecondLevelCacheMissCount(), stats.getSecondLevelCachePutCount());
+        addCounts(node.putObject("queryCache"), stats.getQueryCacheHitCount(), stats.getQueryCacheMissCount(),
+                stats.getQueryCachePutCount());
+
+        ObjectNode regionsNode = node.putObject("regions");
+        for (String regionName : stats.getSecondLevelCacheRegionNames()) {
+            CacheRegionStatistics regionStats = stats.getDomainDataRegionStatistics(regionName);
+            if (regionStats != null) {
+                ObjectNode regionNode = regionsNode.putObject(regionName);
+                addCounts(regionNode, regionStats.getHitCount(), regionStats.getMissCount(),
+                        regionStats.getPutCount());
+                regionNode.put("elementCount", regionStats.getElementCountInMemory());
+            }
+        }
+        return node;
+    }
+
+    private static void addCounts(ObjectNode node, long hits, long misses, long puts) {
+        node.put("hitCount", hits);
+        node.put("missCount", misses);
+        node.put("putCount", puts);
+        node.put("hitRatio", (hits + misses) > 0 ? (double) hits / (hits + misses) : 0.0);
+    }
+}
@@ -149,6 +149,28 @@ public class HibernateDemographicDao implements DemographicDao {
         return existingDemographicUser;
     }
 
+    /**
+     * Fetches all of a user's DemographicUsers in an app, both app-level and
+     * study-level, in a single query.
+     * 
+     * @param appId  The appId of the app which contains the DemographicUsers to
+     *               fetch.
+     * @param userId The userId of the user who is associated with the
+     *               DemographicUsers to be fetched.
+     * @return a list of the user's DemographicUsers, or an empty list if there are
+     *         none.
+     */
+    @Override
+    public List<DemographicUser> getAllDemographicUsersForUser(String appId, String userId) {
+        QueryBuilder builder = new QueryBuilder();
+        builder.append("FROM DemographicUser du");
+        WhereClauseBuilder where = builder.startWhere(SearchTermPredicate.AND);
+        where.append("du.appId = :appId", "appId", appId);
+        where.append("du.userId = :userId", "userId", userId);
+        return hibernateHelper.queryGet(builder.getQuery(), builder.getParameters(), null, null,
+                DemographicUser.class);
+    }
+
     /**
      * Fetches all app-level DemographicUsers for an app or all study-level
      * DemographicUsers for a study.
@@ -2,31 +2,94 @@ package org.sagebionetworks.bridge.hibernate;
 
 import java.io.Serializable;
 import java.math.BigInteger;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 
 import javax.persistence.PersistenceException;
 import javax.persistence.RollbackException;
 
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.base.Stopwatch;
+import com.google.common.base.Throwables;
+import com.mchange.v2.resourcepool.TimeoutException;
+import org.hibernate.Cache;
+import org.hibernate.FlushMode;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.Transaction;
+import org.hibernate.exception.JDBCConnectionException;
 import org.hibernate.query.NativeQuery;
 import org.hibernate.query.Query;
 import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
+import org.sagebionetworks.bridge.json.BridgeObjectMapper;
 
-/** Encapsulates common scenarios for using Hibernate to make it easier to use. */
+/**
+ * Encapsulates common scenarios for using Hibernate to make it easier to use. Each helper also keeps metrics on 
+ * the transactions it runs, including how long it waited to get a connection from the pool. Read-only queries that 
+ * can tolerate stale data can be sent to a read replica with {@link #replica(int)}.
+ */
 public class HibernateHelper {
     private SessionFactory hibernateSessionFactory;
     private PersistenceExceptionConverter exceptionConverter;
+    private HibernateCacheInvalidator cacheInvalidator;
+    private ReadReplica readReplica;
+    private volatile HibernateHelper replicaHelper;
+    // Only set on the helper for a read replica. Queries fall back to the primary if the replica can't be reached.
+    private HibernateHelper primaryHelper;
+    
+    // Metrics.
+    private final AtomicLong transactionCount = new AtomicLong();
+    private final AtomicLong readOnlyTransactionCount = new AtomicLong();
+    private final AtomicLong totalAcquireMillis = new AtomicLong();
+    private final AtomicLong maxAcquireMillis = new AtomicLong();
+    private final AtomicLong acquireTimeoutCount = new AtomicLong();
+    private final AtomicLong replicaFallbackCount = new AtomicLong();
 
     public HibernateHelper(SessionFactory hibernateSessionFactory, PersistenceExceptionConverter exceptionConverter) {
         this.hibernateSessionFactory = hibernateSessionFactory;
         this.exceptionConverter = exceptionConverter;
     }
 
+    /**
+     * Notified of bulk updates, so other servers can evict cached entities. (Writes to individual entities are 
+     * detected by the invalidator's Hibernate listener.)
+     */
+    public final void setCacheInvalidator(HibernateCacheInvalidator cacheInvalidator) {
+        this.cacheInvalidator = cacheInvalidator;
+    }
+
+    /** The read replica used by {@link #replica(int)}. If not set, all queries go to the primary database. */
+    public final void setReadReplica(ReadReplica readReplica) {
+        this.readReplica = readReplica;
+    }
+
+    /**
+     * Returns a helper that queries the read replica, if the replica is available and is no more than 
+     * maxStalenessSeconds behind the primary database. Otherwise returns this helper. Only use the returned helper 
+     * for read-only queries. If the replica can't be reached, queries fall back to the primary.
+     */
+    public final HibernateHelper replica(int maxStalenessSeconds) {
+        if (readReplica == null || !readReplica.isAvailable(maxStalenessSeconds)) {
+            return this;
+        }
+        if (replicaHelper == null) {
+            synchronized (this) {
+                if (replicaHelper == null) {
+                    HibernateHelper helper = new HibernateHelper(readReplica.getSessionFactory(), exceptionConverter);
+                    helper.primaryHelper = this;
+                    replicaHelper = helper;
+                }
+            }
+        }
+        return replicaHelper;
+    }
+
     /**
      * Creates (inserts) an object through Hibernate. Throws a ConcurrentModificationException if creating the object
      * would violate a key constraint, most commonly if the row already exists. A consumer may be passed to this method 
@@ -54,7 +117,7 @@ public class HibernateHelper {
 
     /** Get by the table's primary key. Returns null if the object doesn't exist. */
     public <T> T getById(Class<T> clazz, Serializable id) {
-        return executeWithExceptionHandling(null, session -> session.get(clazz, id));
+        return executeWithExceptionHandling(null, readOnly(session -> session.get(clazz, id)));
     }
 
     /**
@@ -63,7 +126,7 @@ public class HibernateHelper {
     public int queryCount(String queryString, Map<String,Object> parameters) {
         // Hibernate returns a long for a count. However, we never expect more than 2 billion rows, for obvious
         // reasons.
-        Long count = executeWithExceptionHandling(null, session -> {
+        Long count = executeWithExceptionHandling(null, readOnly(session -> {
             Query<Long> query = session.createQuery(queryString, Long.class);
             if (parameters != null) {
                 for (Map.Entry<String, Object> entry : parameters.entrySet()) {
@@ -71,7 +134,7 @@ public class HibernateHelper {
                 }
             }
             return query.uniqueResult();
-        });
+        }));
         if (count != null) {
             return count.intValue();
         } else {
@@ -85,7 +148,7 @@ public class HibernateHelper {
         // This does not accept the typed parameter with something like a Long value, it
         // throws an "unknown entity" exception. So we use the untyped API for this. Also,
         // it returns BigInteger(?!).
-        BigInteger count = executeWithExceptionHandling(null, session -> {
+        BigInteger count = executeWithExceptionHandling(null, readOnly(session -> {
             NativeQuery query = session.createNativeQuery(queryString);
             if (parameters != null) {
                 for (Map.Entry<String, Object> entry : parameters.entrySet()) {
@@ -93,7 +156,7 @@ public class HibernateHelper {
                 }
             }
             return (BigInteger)query.uniqueResult();
-        });
+        }));
         if (count != null) {
             return count.intValue();
         } else {
@@ -107,8 +170,25 @@ public class HibernateHelper {
      * and limit for pagination.
      */
     public <T> List<T> queryGet(String queryString, Map<String,Object> parameters, Integer offset, Integer limit, Class<T> clazz) {
-        return executeWithExceptionHandling(null, session -> {
+        return queryGet(queryString, parameters, offset, limit, clazz, false);
+    }
+
+    /**
+     * Same as queryGet(), but the results are stored in the query cache. Only use this for queries of entities that
+     * are in the second-level cache, or the cached IDs will be loaded from the database one at a time.
+     */
+    public <T> List<T> cacheableQueryGet(String queryString, Map<String,Object> parameters, Integer offset,
+            Integer limit, Class<T> clazz) {
+        return queryGet(queryString, parameters, offset, limit, clazz, true);
+    }
+
+    private <T> List<T> queryGet(String queryString, Map<String,Object> parameters, Integer offset, Integer limit,
+            Class<T> clazz, boolean cacheable) {
+        return executeWithExceptionHandling(null, readOnly(session -> {
             Query<T> query = session.createQuery(queryString, clazz);
+            if (cacheable) {
+                query.setCacheable(true);
+            }
             if (parameters != null) {
                 for (Map.Entry<String, Object> entry : parameters.entrySet()) {
                     query.setParameter(entry.getKey(), entry.getValue());
@@ -121,7 +201,7 @@ public class HibernateHelper {
                 query.setMaxResults(limit);
             }
             return query.list();
-        });
+        }));
     }
 
     /**
@@ -134,7 +214,7 @@ public class HibernateHelper {
      */
     public <T> Optional<T> queryGetOne(String queryString, Map<String, Object> parameters, Class<T> clazz)
             throws BridgeServiceException {
-        return executeWithExceptionHandling(null, session -> {
+        return executeWithExceptionHandling(null, readOnly(session -> {
             Query<T> query = session.createQuery(queryString, clazz);
             if (parameters != null) {
                 for (Map.Entry<String, Object> entry : parameters.entrySet()) {
@@ -142,11 +222,11 @@ public class HibernateHelper {
                 }
             }
             return query.uniqueResultOptional();
-        });
+        }));
     }
 
     public <T> List<T> nativeQueryGet(String queryString, Map<String,Object> parameters, Integer offset, Integer limit, Class<T> clazz) {
-        return executeWithExceptionHandling(null, session -> {
+        return executeWithExceptionHandling(null, readOnly(session -> {
             Query<T> query = session.createNativeQuery(queryString, clazz);
             if (parameters != null) {
                 for (Map.Entry<String, Object> entry : parameters.entrySet()) {
@@ -160,7 +240,7 @@ public class HibernateHelper {
                 query.setMaxResults(limit);
             }
             return query.list();
-        });
+        }));
     }
     
     @SuppressWarnings("unchecked")
@@ -178,10 +258,19 @@ public class HibernateHelper {
     
     /**
      * Executes the given query as an update. Can either be an UPDATE query or a DELETE query. Returns the number of
-     * rows affected by this query.
+     * rows affected by this query. Hibernate can't tell which entity the query changes, so this evicts all cached 
+     * entities on every server; use {@link #queryUpdate(String, Map, Class)} instead.
      */
     public int queryUpdate(String queryString, Map<String,Object> parameters) {
-        return executeWithExceptionHandling(null, session -> { 
+        return queryUpdate(queryString, parameters, null);
+    }
+    
+    /**
+     * Executes the given query as an update (or delete) of the given entity. Returns the number of rows affected by 
+     * this query. Only cached data for that entity is evicted (if the entity isn't cached, nothing is evicted).
+     */
+    public int queryUpdate(String queryString, Map<String,Object> parameters, Class<?> entityClass) {
+        int count = executeWithExceptionHandling(null, session -> { 
             Query<?> query = session.createQuery(queryString);
             if (parameters != null) {
                 for (Map.Entry<String, Object> entry : parameters.entrySet()) {
@@ -190,22 +279,61 @@ public class HibernateHelper {
             }
             return query.executeUpdate();
         });
+        invalidateCache(entityClass);
+        return count;
     }
     
+    /**
+     * Executes the given native query as an update. Hibernate can't tell which tables a native query changes, so 
+     * this evicts all cached entities on every server. Only use this when the tables really are unknown; otherwise 
+     * use {@link #nativeQueryUpdate(String, Map, Class)} or {@link #nativeTableUpdate}.
+     */
     public int nativeQueryUpdate(String queryString, Map<String,Object> parameters) {
-        return executeWithExceptionHandling(null, session -> { 
-            Query<?> query = session.createNativeQuery(queryString);
-            if (parameters != null) {
-                for (Map.Entry<String, Object> entry : parameters.entrySet()) {
-                    query.setParameter(entry.getKey(), entry.getValue());
-                }
+        return nativeQueryUpdate(queryString, parameters, null);
+    }
+    
+    /**
+     * Executes the given native query as an update of the table for the given entity. Only cached data for that 
+     * entity is evicted (if the entity isn't cached, nothing is evicted), so prefer this method for frequent 
+     * updates.
+     */
+    public int nativeQueryUpdate(String queryString, Map<String,Object> parameters, Class<?> entityClass) {
+        int count = executeWithExceptionHandling(null, session -> { 
+            NativeQuery<?> query = session.createNativeQuery(queryString);
+            if (entityClass != null) {
+                query.addSynchronizedEntityClass(entityClass);
             }
-            return query.executeUpdate();
+            return executeNativeUpdate(query, parameters);
         });
+        invalidateCache(entityClass);
+        return count;
+    }
+    
+    /**
+     * Executes the given native query as an update of a table that isn't mapped to an entity (such as a counter 
+     * table, or a join table that no cached entity maps). Nothing is evicted from the second-level cache.
+     */
+    public int nativeTableUpdate(String queryString, Map<String,Object> parameters, String tableName) {
+        return executeWithExceptionHandling(null, session -> { 
+            NativeQuery<?> query = session.createNativeQuery(queryString);
+            query.addSynchronizedQuerySpace(tableName);
+            return executeNativeUpdate(query, parameters);
+        });
+    }
+    
+    private static int executeNativeUpdate(NativeQuery<?> query, Map<String,Object> parameters) {
+        if (parameters != null) {
+            for (Map.Entry<String, Object> entry : parameters.entrySet()) {
+                query.setParameter(entry.getKey(), entry.getValue());
+            }
+        }
+        return query.executeUpdate();
     }
     
     /**
-     * Execute HQL query with no return value, like a batch delete. 
+     * Execute HQL query with no return value, like a batch delete. This is only used for entities that aren't in 
+     * the second-level cache, so it never publishes an invalidation; use 
+     * {@link #queryUpdate(String, Map, Class)} to change cached entities.
      */
     public void query(String queryString, Map<String,Object> parameters) {
         executeWithExceptionHandling(null, session -> { 
@@ -218,6 +346,25 @@ public class HibernateHelper {
             return query.executeUpdate();
         });
     }
+    
+    /**
+     * Evicts the given entities from this server's second-level cache. Call this after cached entities have been 
+     * written through JDBC (which Hibernate doesn't see), once the write has committed. Other servers only evict 
+     * their caches when they next poll the invalidation that the write publishes.
+     */
+    public void evictFromCache(Class<?> entityClass, Collection<? extends Serializable> ids) {
+        Cache cache = hibernateSessionFactory.getCache();
+        for (Serializable id : ids) {
+            cache.evictEntityData(entityClass, id);
+        }
+    }
+    
+    // Hibernate evicts this server's cache after bulk updates. Other servers need to be told.
+    private void invalidateCache(Class<?> entityClass) {
+        if (cacheInvalidator != null) {
+            cacheInvalidator.invalidate(entityClass);
+        }
+    }
 
     /** Save or update a single object. */
     public <T> T saveOrUpdate(T obj) {
@@ -248,12 +395,56 @@ public class HibernateHelper {
         }
     }
 
+    /**
+     * Wraps a function that only reads from the database. Entities loaded by the function are read-only (Hibernate 
+     * doesn't keep snapshots of them for dirty checking), the session is never flushed, and the JDBC connection is 
+     * marked read-only, so MySQL can skip the bookkeeping it does for transactions that write.
+     */
+    <T> Function<Session, T> readOnly(Function<Session, T> function) {
+        return session -> {
+            readOnlyTransactionCount.incrementAndGet();
+            session.setDefaultReadOnly(true);
+            session.setHibernateFlushMode(FlushMode.MANUAL);
+            // MySQL doesn't start the transaction until the first statement, so this applies to this transaction.
+            session.doWork(connection -> connection.setReadOnly(true));
+            try {
+                return function.apply(session);
+            } finally {
+                // Reset the connection before it goes back to the pool, where it may be used for writes.
+                session.doWork(connection -> connection.setReadOnly(false));
+            }
+        };
+    }
+    
     // Helper function, which handles opening and closing sessions and transactions.
     // Package-scoped to facilitate unit tests.
     <T> T execute(Function<Session, T> function) {
+        if (primaryHelper == null) {
+            return executeInTransaction(function);
+        }
+        AtomicBoolean connected = new AtomicBoolean(false);
+        try {
+            return executeInTransaction(session -> {
+                connected.set(true);
+                return function.apply(session);
+            });
+        } catch (RuntimeException e) {
+            // If we couldn't get a connection to the replica, or lost it, the replica is down. Queries on the 
+            // replica are read-only, so it's safe to run them again on the primary.
+            if (connected.get() && Throwables.getCausalChain(e).stream()
+                    .noneMatch(cause -> cause instanceof JDBCConnectionException)) {
+                throw e;
+            }
+            replicaFallbackCount.incrementAndGet();
+            primaryHelper.readReplica.markUnavailable();
+            return primaryHelper.execute(function);
+        }
+    }
+    
+    private <T> T executeInTransaction(Function<Session, T> function) {
         T retval;
         try (Session session = hibernateSessionFactory.openSession()) {
-            Transaction transaction = session.beginTransaction();
+            Transaction transaction = beginTransaction(session);
             try {
                 retval = function.apply(session);
                 transaction.commit();
@@ -264,4 +455,42 @@ public class HibernateHelper {
         }
         return retval;
     }
+    
+    // Hibernate acquires the connection from the pool when the transaction begins, so the time spent here is the
+    // time spent waiting for a connection. (The request's MySQL statements are counted by MySqlStatementCounter.)
+    private Transaction beginTransaction(Session session) {
+        transactionCount.incrementAndGet();
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        try {
+            return session.beginTransaction();
+        } catch (RuntimeException e) {
+            if (Throwables.getCausalChain(e).stream().anyMatch(cause -> cause instanceof TimeoutException)) {
+                acquireTimeoutCount.incrementAndGet();
+            }
+            throw e;
+        } finally {
+            long elapsedMillis = stopwatch.elapsed(TimeUnit.MILLISECONDS);
+            totalAcquireMillis.addAndGet(elapsedMillis);
+            maxAcquireMillis.accumulateAndGet(elapsedMillis, Math::max);
+        }
+    }
+    
+    /** Returns a snapshot of this helper's metrics, including connection acquisition time and timeouts. */
+    public ObjectNode getMetrics() {
+        long transactions = transactionCount.get();
+        
+        ObjectNode node = BridgeObjectMapper.get().createObjectNode();
+        node.put("transactionCount", transactions);
+        node.put("readOnlyTransactionCount", readOnlyTransactionCount.get());
+        node.put("averageAcquireMillis", transactions > 0 ? (double) totalAcquireMillis.get() / transactions : 0.0);
+        node.put("maxAcquireMillis", maxAcquireMillis.get());
+        node.put("acquireTimeoutCount", acquireTimeoutCount.get());
+        if (primaryHelper != null) {
+            node.put("replicaFallbackCount", replicaFallbackCount.get());
+        }
+        if (replicaHelper != null) {
+            node.set("replica", replicaHelper.getMetrics());
+        }
+        return node;
+    }
 }
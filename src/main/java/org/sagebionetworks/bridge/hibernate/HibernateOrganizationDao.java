@@ -94,6 +94,6 @@ public class HibernateOrganizationDao implements OrganizationDao {
         Map<String,Object> parameters = ImmutableMap.of("appId", appId);
         String query = "delete from HibernateOrganization where appId=:appId";
 
-        hibernateHelper.queryUpdate(query, parameters);
+        hibernateHelper.queryUpdate(query, parameters, HibernateOrganization.class);
     }
 }
@@ -0,0 +1,44 @@
+package org.sagebionetworks.bridge.hibernate;
+
+import java.util.List;
+
+import javax.annotation.Resource;
+
+import com.google.common.collect.ImmutableMap;
+import org.joda.time.DateTime;
+import org.springframework.stereotype.Component;
+
+import org.sagebionetworks.bridge.dao.ParticipantDataDeletionDao;
+import org.sagebionetworks.bridge.models.accounts.ParticipantDataDeletion;
+
+/** Hibernate implementation of ParticipantDataDeletionDao. */
+@Component
+public class HibernateParticipantDataDeletionDao implements ParticipantDataDeletionDao {
+    // Package-scoped for unit tests.
+    static final String STALLED_QUERY = "FROM ParticipantDataDeletion WHERE modifiedOn < :modifiedBefore "
+            + "ORDER BY modifiedOn";
+
+    private HibernateHelper hibernateHelper;
+
+    @Resource(name = "basicHibernateHelper")
+    public final void setHibernateHelper(HibernateHelper hibernateHelper) {
+        this.hibernateHelper = hibernateHelper;
+    }
+
+    @Override
+    public void saveDeletion(ParticipantDataDeletion deletion) {
+        hibernateHelper.saveOrUpdate(deletion);
+    }
+
+    @Override
+    public void deleteDeletion(String userId) {
+        hibernateHelper.deleteById(ParticipantDataDeletion.class, userId);
+    }
+
+    @Override
+    public List<ParticipantDataDeletion> getStalledDeletions(DateTime modifiedBefore, int limit) {
+        return hibernateHelper.queryGet(STALLED_QUERY,
+                ImmutableMap.of("modifiedBefore", modifiedBefore.getMillis()), null, limit,
+                ParticipantDataDeletion.class);
+    }
+}
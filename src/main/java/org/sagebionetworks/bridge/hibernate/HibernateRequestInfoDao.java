@@ -2,6 +2,10 @@ package org.sagebionetworks.bridge.hibernate;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 import javax.annotation.Resource;
 
 import org.springframework.stereotype.Component;
@@ -11,6 +15,32 @@ import org.sagebionetworks.bridge.models.RequestInfo;
 
 @Component
 public class HibernateRequestInfoDao implements RequestInfoDao {
+    static final String UPSERT_INSERT = "INSERT INTO RequestInfos (userId, clientInfo, userAgent, languages, "
+            + "userDataGroups, userSubstudyIds, activitiesAccessedOn, signedInOn, uploadedOn, timeZone, "
+            + "studyIdentifier, timelineAccessedOn) VALUES ";
+    static final String UPSERT_VALUES = "(:userId%1$d, :clientInfo%1$d, :userAgent%1$d, :languages%1$d, "
+            + ":userDataGroups%1$d, :userStudyIds%1$d, :activitiesAccessedOn%1$d, :signedInOn%1$d, :uploadedOn%1$d, "
+            + ":timeZone%1$d, :appId%1$d, :timelineAccessedOn%1$d)";
+    // Null values in the new row leave the existing values in place.
+    static final String UPSERT_ON_DUPLICATE = " ON DUPLICATE KEY UPDATE "
+            + "clientInfo = COALESCE(VALUES(clientInfo), clientInfo), "
+            + "userAgent = COALESCE(VALUES(userAgent), userAgent), "
+            + "languages = COALESCE(VALUES(languages), languages), "
+            + "userDataGroups = COALESCE(VALUES(userDataGroups), userDataGroups), "
+            + "userSubstudyIds = COALESCE(VALUES(userSubstudyIds), userSubstudyIds), "
+            + "activitiesAccessedOn = COALESCE(VALUES(activitiesAccessedOn), activitiesAccessedOn), "
+            + "signedInOn = COALESCE(VALUES(signedInOn), signedInOn), "
+            + "uploadedOn = COALESCE(VALUES(uploadedOn), uploadedOn), "
+            + "timeZone = COALESCE(VALUES(timeZone), timeZone), "
+            + "studyIdentifier = COALESCE(VALUES(studyIdentifier), studyIdentifier), "
+            + "timelineAccessedOn = COALESCE(VALUES(timelineAccessedOn), timelineAccessedOn)";
+    
+    private static final ClientInfoConverter CLIENT_INFO_CONVERTER = new ClientInfoConverter();
+    private static final StringListConverter STRING_LIST_CONVERTER = new StringListConverter();
+    private static final StringSetConverter STRING_SET_CONVERTER = new StringSetConverter();
+    private static final DateTimeToLongAttributeConverter DATE_TIME_CONVERTER = new DateTimeToLongAttributeConverter();
+    private static final DateTimeZoneAttributeConverter TIME_ZONE_CONVERTER = new DateTimeZoneAttributeConverter();
+    
     private HibernateHelper hibernateHelper;
     
     @Resource(name = "basicHibernateHelper")
@@ -31,6 +61,44 @@ public class HibernateRequestInfoDao implements RequestInfoDao {
         }        
     }
 
+    @Override
+    public void upsertRequestInfos(List<RequestInfo> requestInfos) {
+        checkNotNull(requestInfos);
+        if (requestInfos.isEmpty()) {
+            return;
+        }
+        // The converters are the same ones Hibernate uses for the entity, so the columns are written in the same 
+        // format as updateRequestInfo().
+        StringBuilder sb = new StringBuilder(UPSERT_INSERT);
+        Map<String, Object> params = new HashMap<>();
+        for (int i = 0; i < requestInfos.size(); i++) {
+            RequestInfo info = requestInfos.get(i);
+            checkNotNull(info.getUserId());
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(String.format(UPSERT_VALUES, i));
+            params.put("userId" + i, info.getUserId());
+            params.put("clientInfo" + i, CLIENT_INFO_CONVERTER.convertToDatabaseColumn(info.getClientInfo()));
+            params.put("userAgent" + i, info.getUserAgent());
+            params.put("languages" + i, STRING_LIST_CONVERTER.convertToDatabaseColumn(info.getLanguages()));
+            params.put("userDataGroups" + i, STRING_SET_CONVERTER.convertToDatabaseColumn(info.getUserDataGroups()));
+            params.put("userStudyIds" + i, STRING_SET_CONVERTER.convertToDatabaseColumn(info.getUserStudyIds()));
+            params.put("activitiesAccessedOn" + i, DATE_TIME_CONVERTER.convertToDatabaseColumn(
+                    info.getActivitiesAccessedOn()));
+            params.put("signedInOn" + i, DATE_TIME_CONVERTER.convertToDatabaseColumn(info.getSignedInOn()));
+            params.put("uploadedOn" + i, DATE_TIME_CONVERTER.convertToDatabaseColumn(info.getUploadedOn()));
+            params.put("timeZone" + i, (info.getTimeZone() == null) ? null : 
+                TIME_ZONE_CONVERTER.convertToDatabaseColumn(info.getTimeZone()));
+            params.put("appId" + i, info.getAppId());
+            params.put("timelineAccessedOn" + i, DATE_TIME_CONVERTER.convertToDatabaseColumn(
+                    info.getTimelineAccessedOn()));
+        }
+        sb.append(UPSERT_ON_DUPLICATE);
+        // Declare the entity, so this frequent update doesn't evict unrelated cached entities.
+        hibernateHelper.nativeQueryUpdate(sb.toString(), params, RequestInfo.class);
+    }
+
     @Override
     public RequestInfo getRequestInfo(String userId) {
         checkNotNull(userId);
@@ -7,8 +7,11 @@ import static java.util.stream.Collectors.toSet;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 
@@ -17,7 +20,9 @@ import javax.annotation.Resource;
 import com.google.common.base.Stopwatch;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
 
+import org.hibernate.CacheMode;
 import org.hibernate.jdbc.Work;
 import org.hibernate.query.NativeQuery;
 import org.slf4j.Logger;
@@ -50,7 +55,18 @@ public class HibernateSchedule2Dao implements Schedule2Dao {
             + "assessmentRevision, scheduleGuid, scheduleModifiedOn, schedulePublished, sessionGuid, sessionInstanceEndDay, "
             + "sessionInstanceGuid, sessionInstanceStartDay, sessionStartEventId, timeWindowGuid, timeWindowPersistent, guid, "
             + "studyBurstId, studyBurstNum, sessionSymbol, sessionName) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
-    static final String DELETE_TIMELINE_RECORDS = "DELETE FROM TimelineMetadata WHERE scheduleGuid = :scheduleGuid";
+    static final String UPSERT = INSERT + " ON DUPLICATE KEY UPDATE appId = VALUES(appId), "
+            + "assessmentGuid = VALUES(assessmentGuid), assessmentId = VALUES(assessmentId), "
+            + "assessmentInstanceGuid = VALUES(assessmentInstanceGuid), assessmentRevision = VALUES(assessmentRevision), "
+            + "scheduleGuid = VALUES(scheduleGuid), scheduleModifiedOn = VALUES(scheduleModifiedOn), "
+            + "schedulePublished = VALUES(schedulePublished), sessionGuid = VALUES(sessionGuid), "
+            + "sessionInstanceEndDay = VALUES(sessionInstanceEndDay), sessionInstanceGuid = VALUES(sessionInstanceGuid), "
+            + "sessionInstanceStartDay = VALUES(sessionInstanceStartDay), sessionStartEventId = VALUES(sessionStartEventId), "
+            + "timeWindowGuid = VALUES(timeWindowGuid), timeWindowPersistent = VALUES(timeWindowPersistent), "
+            + "studyBurstId = VALUES(studyBurstId), studyBurstNum = VALUES(studyBurstNum), "
+            + "sessionSymbol = VALUES(sessionSymbol), sessionName = VALUES(sessionName)";
+    static final String SELECT_TIMELINE_RECORDS = "SELECT * FROM TimelineMetadata WHERE scheduleGuid = :scheduleGuid";
+    static final String DELETE_TIMELINE_RECORDS_BY_GUID = "DELETE FROM TimelineMetadata WHERE guid IN (:guids)";
     static final String SELECT_ASSESSMENTS_FOR_SESSION_INSTANCE = "SELECT * FROM TimelineMetadata WHERE sessionInstanceGuid = :instanceGuid AND assessmentInstanceGuid IS NOT NULL";
     static final String DELETE_ALL_SCHEDULES = "DELETE FROM Schedules WHERE appId = :appId";
     static final String BATCH_SIZE_PROPERTY = "schedule.batch.size";
@@ -119,8 +135,9 @@ public class HibernateSchedule2Dao implements Schedule2Dao {
         checkNotNull(appId);
         checkNotNull(guid);
 
-        List<Schedule2> results = hibernateHelper.queryGet(GET_SCHEDULE, ImmutableMap.of(APP_ID, appId, GUID, guid),
-                null, null, Schedule2.class);
+        // Schedules are read on every timeline request, so this query and the schedule are cached.
+        List<Schedule2> results = hibernateHelper.cacheableQueryGet(GET_SCHEDULE,
+                ImmutableMap.of(APP_ID, appId, GUID, guid), null, null, Schedule2.class);
         if (results.isEmpty()) {
             return Optional.empty();
         }
@@ -133,7 +150,7 @@ public class HibernateSchedule2Dao implements Schedule2Dao {
 
         hibernateHelper.executeWithExceptionHandling(schedule, (session) -> {
             session.save(schedule);
-            deleteAndRecreateTimelineMetadataRecords(session, schedule, false);
+            createTimelineMetadataRecords(session, schedule);
             return schedule;
         });
         return schedule;
@@ -144,6 +161,7 @@ public class HibernateSchedule2Dao implements Schedule2Dao {
         checkNotNull(schedule);
 
         // Update the schedule
+        List<String> changedMetadataGuids = new ArrayList<>();
         hibernateHelper.executeWithExceptionHandling(schedule, (session) -> {
             Set<String> sessionGuids = schedule.getSessions().stream().map(Session::getGuid).collect(toSet());
 
@@ -161,30 +179,23 @@ public class HibernateSchedule2Dao implements Schedule2Dao {
             }
             query.executeUpdate();
             session.update(schedule);
-            deleteAndRecreateTimelineMetadataRecords(session, schedule, true);
+            changedMetadataGuids.addAll(updateTimelineMetadataRecords(session, schedule));
             return schedule;
         });
+        // The changed metadata records were written through JDBC, so Hibernate hasn't evicted them from this 
+        // server's cache. Other servers evict their caches when they next poll the invalidation published by the 
+        // schedule update (every few seconds).
+        hibernateHelper.evictFromCache(TimelineMetadata.class, changedMetadataGuids);
         return schedule;
     }
 
-    private void deleteAndRecreateTimelineMetadataRecords(org.hibernate.Session session, Schedule2 schedule, boolean deleteFirst) {
+    private void createTimelineMetadataRecords(org.hibernate.Session session, Schedule2 schedule) {
         Timeline timeline = Scheduler.INSTANCE.calculateTimeline(schedule);
         List<TimelineMetadata> metadata = timeline.getMetadata();
 
         // batch these operations. Improves network performance
         session.setJdbcBatchSize(batchSize);
 
-        if (deleteFirst) {
-            Stopwatch deleteMetadataStopwatch = Stopwatch.createStarted();
-            NativeQuery<?> query = session.createNativeQuery(DELETE_TIMELINE_RECORDS);
-            query.setParameter(SCHEDULE_GUID, schedule.getGuid());
-            query.executeUpdate();
-            deleteMetadataStopwatch.stop();
-
-            LOG.info("Batch deleting timeline metadata records in " + 
-                    deleteMetadataStopwatch.elapsed(MILLISECONDS) + " ms");
-        }
-        
         // This is necessary or the timeline records fail for lack of a session guid (hasn't been registered yet
         // on creates).
         session.flush();
@@ -201,6 +212,93 @@ public class HibernateSchedule2Dao implements Schedule2Dao {
                 + createMetadataStopwatch.elapsed(MILLISECONDS) + " ms (batchSize = " + batchSize + ")");
     }
 
+    /**
+     * Deleting and re-inserting every record of a large schedule rewrites tens of thousands of rows (and locks them 
+     * against the adherence queries that join this table), even when the edit only touched one session. Instead, 
+     * compare the new records to the existing records by instance GUID, and only delete the records that are gone, 
+     * insert the records that are new, and update the records that have changed. Returns the GUIDs of the records 
+     * that were written or deleted.
+     */
+    private List<String> updateTimelineMetadataRecords(org.hibernate.Session session, Schedule2 schedule) {
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        Timeline timeline = Scheduler.INSTANCE.calculateTimeline(schedule);
+        List<TimelineMetadata> metadata = timeline.getMetadata();
+
+        session.setJdbcBatchSize(batchSize);
+        session.flush();
+
+        NativeQuery<TimelineMetadata> query = session.createNativeQuery(SELECT_TIMELINE_RECORDS, TimelineMetadata.class);
+        query.setParameter(SCHEDULE_GUID, schedule.getGuid());
+        // We only compare these records, so don't track them for changes or add them to the cache.
+        query.setReadOnly(true);
+        query.setCacheMode(CacheMode.IGNORE);
+        Map<String, TimelineMetadata> existingRecords = new HashMap<>();
+        for (TimelineMetadata existing : query.list()) {
+            existingRecords.put(existing.getGuid(), existing);
+        }
+
+        int insertCount = 0;
+        List<TimelineMetadata> upserts = new ArrayList<>();
+        for (TimelineMetadata meta : metadata) {
+            TimelineMetadata existing = existingRecords.remove(meta.getGuid());
+            if (existing == null) {
+                insertCount++;
+                upserts.add(meta);
+            } else if (isChanged(existing, meta)) {
+                upserts.add(meta);
+            }
+        }
+        // Whatever is left over is no longer in the timeline.
+        for (List<String> guids : Iterables.partition(existingRecords.keySet(), batchSize)) {
+            NativeQuery<?> deleteQuery = session.createNativeQuery(DELETE_TIMELINE_RECORDS_BY_GUID);
+            deleteQuery.setParameter(GUIDS, guids);
+            deleteQuery.addSynchronizedEntityClass(TimelineMetadata.class);
+            deleteQuery.executeUpdate();
+        }
+        // These writes bypass the second-level cache. The caller evicts the records once the transaction commits.
+        if (!upserts.isEmpty()) {
+            session.doWork(persistRecordsInBatches(UPSERT, upserts));
+        }
+        stopwatch.stop();
+
+        LOG.info("Updated timeline metadata for schedule " + schedule.getGuid() + " in " 
+                + stopwatch.elapsed(MILLISECONDS) + " ms (" + insertCount + " inserted, " 
+                + (upserts.size() - insertCount) + " updated, " + existingRecords.size() + " deleted, " 
+                + (metadata.size() - upserts.size()) + " unchanged)");
+
+        List<String> changedGuids = new ArrayList<>(existingRecords.keySet());
+        for (TimelineMetadata meta : upserts) {
+            changedGuids.add(meta.getGuid());
+        }
+        return changedGuids;
+    }
+
+    /**
+     * The schedule's modifiedOn timestamp changes on every update, so it is not compared. Otherwise every record 
+     * would be rewritten on every update. A record that doesn't change keeps the modifiedOn timestamp of the 
+     * schedule version that last changed it. Package-scoped for unit tests.
+     */
+    static boolean isChanged(TimelineMetadata existing, TimelineMetadata meta) {
+        return !Objects.equals(existing.getAppId(), meta.getAppId())
+                || !Objects.equals(existing.getAssessmentGuid(), meta.getAssessmentGuid())
+                || !Objects.equals(existing.getAssessmentId(), meta.getAssessmentId())
+                || !Objects.equals(existing.getAssessmentInstanceGuid(), meta.getAssessmentInstanceGuid())
+                || !Objects.equals(existing.getAssessmentRevision(), meta.getAssessmentRevision())
+                || !Objects.equals(existing.getScheduleGuid(), meta.getScheduleGuid())
+                || existing.isSchedulePublished() != meta.isSchedulePublished()
+                || !Objects.equals(existing.getSessionGuid(), meta.getSessionGuid())
+                || !Objects.equals(existing.getSessionInstanceEndDay(), meta.getSessionInstanceEndDay())
+                || !Objects.equals(existing.getSessionInstanceGuid(), meta.getSessionInstanceGuid())
+                || !Objects.equals(existing.getSessionInstanceStartDay(), meta.getSessionInstanceStartDay())
+                || !Objects.equals(existing.getSessionStartEventId(), meta.getSessionStartEventId())
+                || !Objects.equals(existing.getTimeWindowGuid(), meta.getTimeWindowGuid())
+                || existing.isTimeWindowPersistent() != meta.isTimeWindowPersistent()
+                || !Objects.equals(existing.getStudyBurstId(), meta.getStudyBurstId())
+                || !Objects.equals(existing.getStudyBurstNum(), meta.getStudyBurstNum())
+                || !Objects.equals(existing.getSessionSymbol(), meta.getSessionSymbol())
+                || !Objects.equals(existing.getSessionName(), meta.getSessionName());
+    }
+
     /**
      * For batch operations to work efficiently using the MySQL driver, rewriteBatchedStatements=true 
      * must be included in the connector string, auto commit must be off, and you must use the batch 
@@ -208,8 +306,12 @@ public class HibernateSchedule2Dao implements Schedule2Dao {
      * cannot measure any benefit to having larger values).
      */
     protected Work persistRecordsInBatches(List<TimelineMetadata> metadata) {
+        return persistRecordsInBatches(INSERT, metadata);
+    }
+
+    protected Work persistRecordsInBatches(String sql, List<TimelineMetadata> metadata) {
         return (connection) -> {
-            try (PreparedStatement ps = connection.prepareStatement(INSERT)) {
+            try (PreparedStatement ps = connection.prepareStatement(sql)) {
                 connection.setAutoCommit(false);
 
                 for (int i = 0, len = metadata.size(); i < len; i++) {
@@ -320,6 +422,6 @@ public class HibernateSchedule2Dao implements Schedule2Dao {
         QueryBuilder builder = new QueryBuilder();
         builder.append(DELETE_ALL_SCHEDULES, APP_ID, appId);
 
-        hibernateHelper.nativeQueryUpdate(builder.getQuery(), builder.getParameters());
+        hibernateHelper.nativeQueryUpdate(builder.getQuery(), builder.getParameters(), Schedule2.class);
     }
 }
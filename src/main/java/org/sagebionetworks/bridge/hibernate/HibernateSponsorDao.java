@@ -17,6 +17,7 @@ import org.sagebionetworks.bridge.models.studies.Study;
 @Component
 public class HibernateSponsorDao implements SponsorDao {
     
+    static final String SPONSORS_TABLE = "OrganizationsStudies";
     public static final String ADD_SPONSOR_SQL = "INSERT INTO OrganizationsStudies (appId, studyId, orgId) VALUES (:appId, :studyId, :orgId)";
 
     private HibernateHelper hibernateHelper;
@@ -67,7 +68,7 @@ public class HibernateSponsorDao implements SponsorDao {
         builder.getParameters().put("studyId", studyId);
         builder.getParameters().put("orgId", orgId);
         
-        hibernateHelper.nativeQueryUpdate(builder.getQuery(), builder.getParameters());
+        hibernateHelper.nativeTableUpdate(builder.getQuery(), builder.getParameters(), SPONSORS_TABLE);
     }
 
     @Override
@@ -77,7 +78,7 @@ public class HibernateSponsorDao implements SponsorDao {
         builder.append("AND studyId = :studyId ", "studyId", studyId);
         builder.append("AND orgId = :orgId", "orgId", orgId);
         
-        hibernateHelper.nativeQueryUpdate(builder.getQuery(), builder.getParameters());
+        hibernateHelper.nativeTableUpdate(builder.getQuery(), builder.getParameters(), SPONSORS_TABLE);
     }
     
     @Override
@@ -22,6 +22,8 @@ import javax.persistence.OrderColumn;
 import javax.persistence.Table;
 import javax.persistence.Version;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.Fetch;
 import org.hibernate.annotations.FetchMode;
 import org.joda.time.DateTime;
@@ -43,6 +45,7 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.databind.JsonNode;
 
 @Entity
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "studies")
 @Table(name = "Substudies")
 @IdClass(StudyId.class)
 @BridgeTypeName("Study")
@@ -93,6 +96,7 @@ public class HibernateStudy implements Study {
     // for collections that we might use in future queries; JSON for collections
     // that we'll never reference apart from the study object.
     
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "studies")
     @ElementCollection(fetch = FetchType.EAGER)
     @Fetch(value = FetchMode.SUBSELECT)
     @OrderColumn(name="pos") // can’t use 'position' in this case
@@ -101,6 +105,7 @@ public class HibernateStudy implements Study {
     })
     private List<Contact> contacts;
     
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "studies")
     @ElementCollection(fetch = FetchType.EAGER)
     @Fetch(value = FetchMode.SUBSELECT)
     @CollectionTable(name="StudyDiseases", 
@@ -108,6 +113,7 @@ public class HibernateStudy implements Study {
     @Column(name="disease")
     private Set<String> diseases;
     
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "studies")
     @ElementCollection(fetch = FetchType.EAGER)
     @Fetch(value = FetchMode.SUBSELECT)
     @CollectionTable(name="StudyDesignTypes", 
@@ -118,6 +124,7 @@ public class HibernateStudy implements Study {
     @Convert(converter = SignInTypeListConverter.class)
     private List<SignInType> signInTypes;
     
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "studies")
     @ElementCollection(fetch = FetchType.EAGER)
     @Fetch(value = FetchMode.SUBSELECT)
     @OrderColumn(name="pos") // can’t use 'position' in this case
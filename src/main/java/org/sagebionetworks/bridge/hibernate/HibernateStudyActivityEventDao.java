@@ -55,7 +55,7 @@ public class HibernateStudyActivityEventDao implements StudyActivityEventDao {
         query.append(DELETE_SQL, USER_ID_FIELD, event.getUserId(), 
                 STUDY_ID_FIELD, event.getStudyId(),
                 EVENT_ID_FIELD, event.getEventId());
-        helper.nativeQueryUpdate(query.getQuery(), query.getParameters());
+        helper.nativeQueryUpdate(query.getQuery(), query.getParameters(), StudyActivityEvent.class);
     }
 
     @Override
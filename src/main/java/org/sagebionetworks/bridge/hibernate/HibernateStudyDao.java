@@ -17,6 +17,7 @@ import org.sagebionetworks.bridge.models.PagedResourceList;
 import org.sagebionetworks.bridge.models.VersionHolder;
 import org.sagebionetworks.bridge.models.studies.Study;
 import org.sagebionetworks.bridge.models.studies.StudyId;
+import org.sagebionetworks.bridge.time.DateUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
@@ -58,12 +59,14 @@ public class HibernateStudyDao implements StudyDao {
         checkNotNull(scheduleGuid);
         
         QueryBuilder builder = new QueryBuilder();
-        builder.append("UPDATE Substudies SET scheduleGuid = NULL");
+        // Change modifiedOn too, so copies of these studies cached with the old schedule are seen as out of date.
+        builder.append("UPDATE Substudies SET scheduleGuid = NULL, modifiedOn = :modifiedOn", "modifiedOn",
+                DateUtils.getCurrentMillisFromEpoch());
         builder.append("WHERE studyId = :appId", "appId", appId);
         builder.append("AND scheduleGuid = :scheduleGuid", "scheduleGuid", scheduleGuid);
         builder.append("AND phase IN ('LEGACY','DESIGN')");
         
-        hibernateHelper.nativeQueryUpdate(builder.getQuery(), builder.getParameters());
+        hibernateHelper.nativeQueryUpdate(builder.getQuery(), builder.getParameters(), HibernateStudy.class);
     }
     
     @Override
@@ -149,6 +152,6 @@ public class HibernateStudyDao implements StudyDao {
         Map<String,Object> parameters = ImmutableMap.of("appId", appId);
         String query = "delete from HibernateStudy where appId = :appId";
 
-        hibernateHelper.queryUpdate(query, parameters);
+        hibernateHelper.queryUpdate(query, parameters, HibernateStudy.class);
     }
 }
@@ -9,6 +9,9 @@ import javax.persistence.IdClass;
 import javax.persistence.Table;
 import javax.persistence.Transient;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
 import org.joda.time.DateTime;
@@ -18,6 +21,7 @@ import org.sagebionetworks.bridge.models.templates.TemplateRevision;
 import org.sagebionetworks.bridge.models.templates.TemplateRevisionId;
 
 @Entity
+@Cache(usage = CacheConcurrencyStrategy.READ_ONLY, region = "templateRevisions")
 @IdClass(TemplateRevisionId.class)
 @Table(name = "TemplateRevisions")
 public class HibernateTemplateRevision implements TemplateRevision {
@@ -1,14 +1,23 @@
 package org.sagebionetworks.bridge.hibernate;
 
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 import javax.annotation.Resource;
 
+import org.hibernate.jdbc.Work;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
 import org.springframework.stereotype.Component;
 
 import org.sagebionetworks.bridge.BridgeConstants;
 import org.sagebionetworks.bridge.dao.UploadTableRowDao;
+import org.sagebionetworks.bridge.exceptions.BadRequestException;
+import org.sagebionetworks.bridge.models.ForwardCursorPagedResourceList;
 import org.sagebionetworks.bridge.models.PagedResourceList;
 import org.sagebionetworks.bridge.upload.UploadTableRow;
 import org.sagebionetworks.bridge.upload.UploadTableRowQuery;
@@ -16,6 +25,30 @@ import org.sagebionetworks.bridge.upload.UploadTableRowQuery;
 /** Hibernate implementation of UploadTableRowDao. */
 @Component
 public class HibernateUploadTableRowDao implements UploadTableRowDao {
+    // Rows are queried for export, which doesn't need the last minute of uploads. Package-scoped for unit tests.
+    static final int MAX_REPLICA_LAG_SECONDS = 60;
+
+    // recordId is unique within a study, so there's no need to count distinct records. Package-scoped for unit tests.
+    static final String COUNT_QUERY_PREFIX = "SELECT COUNT(*) ";
+    static final String ORDER_BY_CLAUSE = "ORDER BY createdOn, recordId";
+    static final String OFFSET_KEY_DELIMITER = ":";
+
+    // Streamed rows are read a page at a time, each in its own short transaction, so a slow client doesn't hold a
+    // database connection for the whole response. Package-scoped for unit tests.
+    static final int STREAM_PAGE_SIZE = 500;
+
+    // Rows are written in JDBC batches of this size. With rewriteBatchedStatements=true, the MySQL driver sends each
+    // batch as one multi-row statement. Package-scoped for unit tests.
+    static final int BATCH_SIZE = 100;
+    static final String UPSERT_ROW_QUERY = "INSERT INTO UploadTableRows (appId, studyId, recordId, assessmentGuid, "
+            + "createdOn, testData, healthCode, participantVersion, metadata, data) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?) "
+            + "ON DUPLICATE KEY UPDATE assessmentGuid = VALUES(assessmentGuid), createdOn = VALUES(createdOn), "
+            + "testData = VALUES(testData), healthCode = VALUES(healthCode), "
+            + "participantVersion = VALUES(participantVersion), metadata = VALUES(metadata), data = VALUES(data)";
+
+    private static final StringMapConverter STRING_MAP_CONVERTER = new StringMapConverter();
+
     private HibernateHelper hibernateHelper;
 
     @Resource(name = "basicHibernateHelper")
@@ -38,6 +71,105 @@ public class HibernateUploadTableRowDao implements UploadTableRowDao {
 
     @Override
     public PagedResourceList<UploadTableRow> queryUploadTableRows(UploadTableRowQuery query) {
+        QueryBuilder builder = makeFilteredQuery(query);
+
+        // Get total.
+        HibernateHelper readHelper = hibernateHelper.replica(MAX_REPLICA_LAG_SECONDS);
+        int total = readHelper.queryCount(COUNT_QUERY_PREFIX + builder.getQuery(), builder.getParameters());
+
+        // Start and count.
+        Integer start = query.getStart();
+        if (start == null) {
+            start = 0;
+        }
+        Integer pageSize = query.getPageSize();
+        if (pageSize == null) {
+            pageSize = BridgeConstants.API_DEFAULT_PAGE_SIZE;
+        }
+
+        // Query. Without an order, pages may overlap or skip rows.
+        builder.append(ORDER_BY_CLAUSE);
+        List<HibernateUploadTableRow> hibernateList = readHelper.queryGet(builder.getQuery(),
+                builder.getParameters(), start, pageSize, HibernateUploadTableRow.class);
+
+        // Because of Java generic typing issues, we need to convert this to a non-Hibernate UploadTableRow.
+        List<UploadTableRow> list = new ArrayList<>(hibernateList);
+        return new PagedResourceList<>(list, total)
+                .withRequestParam("assessmentGuid", query.getAssessmentGuid())
+                .withRequestParam("startTime", query.getStartTime())
+                .withRequestParam("endTime", query.getEndTime())
+                .withRequestParam("includeTestData", query.getIncludeTestData())
+                .withRequestParam("start", start)
+                .withRequestParam("pageSize", pageSize);
+    }
+
+    @Override
+    public ForwardCursorPagedResourceList<UploadTableRow> queryUploadTableRowsByCursor(UploadTableRowQuery query) {
+        QueryBuilder builder = makeFilteredQuery(query);
+
+        // Counting scans every row in the filter, so only do it if asked.
+        HibernateHelper readHelper = hibernateHelper.replica(MAX_REPLICA_LAG_SECONDS);
+        Integer total = null;
+        if (query.getIncludeTotal()) {
+            total = readHelper.queryCount(COUNT_QUERY_PREFIX + builder.getQuery(), builder.getParameters());
+        }
+
+        Integer pageSize = query.getPageSize();
+        if (pageSize == null) {
+            pageSize = BridgeConstants.API_DEFAULT_PAGE_SIZE;
+        }
+
+        // Get one more row than we need, to know if there's another page.
+        appendOffsetKey(builder, query.getOffsetKey());
+        builder.append(ORDER_BY_CLAUSE);
+        List<HibernateUploadTableRow> hibernateList = readHelper.queryGet(builder.getQuery(),
+                builder.getParameters(), null, pageSize + 1, HibernateUploadTableRow.class);
+
+        String nextPageOffsetKey = null;
+        if (hibernateList.size() > pageSize) {
+            hibernateList = hibernateList.subList(0, pageSize);
+            nextPageOffsetKey = makeOffsetKey(hibernateList.get(pageSize - 1));
+        }
+
+        // Because of Java generic typing issues, we need to convert this to a non-Hibernate UploadTableRow.
+        List<UploadTableRow> list = new ArrayList<>(hibernateList);
+        return new ForwardCursorPagedResourceList<>(list, nextPageOffsetKey, true)
+                .withRequestParam("assessmentGuid", query.getAssessmentGuid())
+                .withRequestParam("startTime", query.getStartTime())
+                .withRequestParam("endTime", query.getEndTime())
+                .withRequestParam("includeTestData", query.getIncludeTestData())
+                .withRequestParam("offsetKey", query.getOffsetKey())
+                .withRequestParam("pageSize", pageSize)
+                .withRequestParam("total", total);
+    }
+
+    @Override
+    public int streamUploadTableRows(UploadTableRowQuery query, Consumer<UploadTableRow> consumer) {
+        HibernateHelper readHelper = hibernateHelper.replica(MAX_REPLICA_LAG_SECONDS);
+
+        // Each page seeks past the last row of the previous page, the same as cursor queries. The rows are passed to
+        // the consumer after the page's transaction is done.
+        int count = 0;
+        String offsetKey = query.getOffsetKey();
+        while (true) {
+            QueryBuilder builder = makeFilteredQuery(query);
+            appendOffsetKey(builder, offsetKey);
+            builder.append(ORDER_BY_CLAUSE);
+            List<HibernateUploadTableRow> page = readHelper.queryGet(builder.getQuery(), builder.getParameters(),
+                    null, STREAM_PAGE_SIZE, HibernateUploadTableRow.class);
+            for (HibernateUploadTableRow row : page) {
+                consumer.accept(row);
+            }
+            count += page.size();
+            if (page.size() < STREAM_PAGE_SIZE) {
+                return count;
+            }
+            offsetKey = makeOffsetKey(page.get(page.size() - 1));
+        }
+    }
+
+    // Makes a query with the filters from the query object, but no ordering or paging.
+    private static QueryBuilder makeFilteredQuery(UploadTableRowQuery query) {
         QueryBuilder builder = new QueryBuilder();
         builder.append("FROM HibernateUploadTableRow");
 
@@ -66,38 +198,87 @@ public class HibernateUploadTableRowDao implements UploadTableRowDao {
         if (!query.getIncludeTestData()) {
             builder.append("AND testData = 0");
         }
+        return builder;
+    }
 
-        // Get total.
-        int total = hibernateHelper.queryCount("SELECT COUNT(DISTINCT recordId) " + builder.getQuery(),
-                builder.getParameters());
-
-        // Start and count.
-        Integer start = query.getStart();
-        if (start == null) {
-            start = 0;
+    // The offset key is the createdOn and recordId of the last row of the previous page. Rows are ordered by both, so
+    // the next page starts with the first row after that one. This uses the (appId, studyId, createdOn) index (which
+    // InnoDB extends with the primary key's recordId), instead of reading and skipping all the rows in previous pages.
+    private static void appendOffsetKey(QueryBuilder builder, String offsetKey) {
+        if (offsetKey == null) {
+            return;
         }
-        Integer pageSize = query.getPageSize();
-        if (pageSize == null) {
-            pageSize = BridgeConstants.API_DEFAULT_PAGE_SIZE;
+        String[] parts = offsetKey.split(OFFSET_KEY_DELIMITER, 2);
+        if (parts.length != 2 || parts[1].isEmpty()) {
+            throw new BadRequestException("Invalid offsetKey " + offsetKey);
         }
+        DateTime offsetCreatedOn;
+        try {
+            offsetCreatedOn = new DateTime(Long.parseLong(parts[0]), DateTimeZone.UTC);
+        } catch (NumberFormatException ex) {
+            throw new BadRequestException("Invalid offsetKey " + offsetKey);
+        }
+        builder.append("AND (createdOn > :offsetCreatedOn OR "
+                + "(createdOn = :offsetCreatedOn AND recordId > :offsetRecordId))");
+        builder.getParameters().put("offsetCreatedOn", offsetCreatedOn);
+        builder.getParameters().put("offsetRecordId", parts[1]);
+    }
 
-        // Query.
-        List<HibernateUploadTableRow> hibernateList = hibernateHelper.queryGet(builder.getQuery(),
-                builder.getParameters(), start, pageSize, HibernateUploadTableRow.class);
-
-        // Because of Java generic typing issues, we need to convert this to a non-Hibernate UploadTableRow.
-        List<UploadTableRow> list = new ArrayList<>(hibernateList);
-        return new PagedResourceList<>(list, total)
-                .withRequestParam("assessmentGuid", query.getAssessmentGuid())
-                .withRequestParam("startTime", query.getStartTime())
-                .withRequestParam("endTime", query.getEndTime())
-                .withRequestParam("includeTestData", query.getIncludeTestData())
-                .withRequestParam("start", start)
-                .withRequestParam("pageSize", pageSize);
+    // Package-scoped for unit tests.
+    static String makeOffsetKey(UploadTableRow row) {
+        return row.getCreatedOn().getMillis() + OFFSET_KEY_DELIMITER + row.getRecordId();
     }
 
     @Override
     public void saveUploadTableRow(UploadTableRow row) {
         hibernateHelper.saveOrUpdate(row);
     }
+
+    @Override
+    public void saveUploadTableRows(List<UploadTableRow> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        // saveOrUpdate() selects each row before inserting or updating it. Instead, upsert all rows with plain JDBC
+        // in a single transaction.
+        hibernateHelper.executeWithExceptionHandling(null, session -> {
+            session.doWork(upsertRowsInBatches(rows));
+            return null;
+        });
+    }
+
+    // Package-scoped for unit tests.
+    Work upsertRowsInBatches(List<UploadTableRow> rows) {
+        return (connection) -> {
+            try (PreparedStatement ps = connection.prepareStatement(UPSERT_ROW_QUERY)) {
+                for (int i = 0; i < rows.size(); i++) {
+                    addRowToBatch(ps, rows.get(i));
+                    if ((i + 1) % BATCH_SIZE == 0) {
+                        ps.executeBatch();
+                    }
+                }
+                if (rows.size() % BATCH_SIZE != 0) {
+                    ps.executeBatch();
+                }
+            }
+        };
+    }
+
+    private static void addRowToBatch(PreparedStatement ps, UploadTableRow row) throws SQLException {
+        ps.setString(1, row.getAppId());
+        ps.setString(2, row.getStudyId());
+        ps.setString(3, row.getRecordId());
+        ps.setString(4, row.getAssessmentGuid());
+        ps.setLong(5, row.getCreatedOn().getMillis());
+        ps.setBoolean(6, row.isTestData());
+        ps.setString(7, row.getHealthCode());
+        if (row.getParticipantVersion() == null) {
+            ps.setNull(8, Types.INTEGER);
+        } else {
+            ps.setInt(8, row.getParticipantVersion());
+        }
+        ps.setString(9, STRING_MAP_CONVERTER.convertToDatabaseColumn(row.getMetadata()));
+        ps.setString(10, STRING_MAP_CONVERTER.convertToDatabaseColumn(row.getData()));
+        ps.addBatch();
+    }
 }
@@ -0,0 +1,27 @@
+package org.sagebionetworks.bridge.hibernate;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import org.sagebionetworks.bridge.RequestContext;
+import org.sagebionetworks.bridge.models.Metrics;
+
+/**
+ * Counts the MySQL statements Hibernate prepares while serving a request, and records the counts in the request's
+ * {@link Metrics}. It's registered on the session factories, so it counts every statement Hibernate prepares,
+ * including the ones it makes on its own to load an entity's collections. A batch of inserts or updates is one
+ * statement. Statements run directly on a JDBC connection (Session.doWork) aren't counted, nor are statements
+ * prepared outside of a request.
+ */
+public class MySqlStatementCounter implements StatementInspector {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    public String inspect(String sql) {
+        Metrics metrics = RequestContext.get().getMetrics();
+        if (metrics != null) {
+            metrics.incrementBackendCallCount(Metrics.BACKEND_MYSQL);
+        }
+        // Returning the statement unchanged means Hibernate runs it as it is.
+        return sql;
+    }
+}
@@ -0,0 +1,117 @@
+package org.sagebionetworks.bridge.hibernate;
+
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A MySQL read replica, which can serve heavy read-only queries (reports, searches) so they don't compete with
+ * writes on the primary database. The replica's replication lag is checked periodically. Callers state how stale
+ * their data can be, and the replica is only used while it's reachable and its lag is within that tolerance.
+ * If no replica is configured, the replica is never available and all queries go to the primary.
+ */
+public class ReadReplica {
+    private static final Logger LOG = LoggerFactory.getLogger(ReadReplica.class);
+
+    // Package-scoped for unit tests.
+    static final String LAG_QUERY = "SHOW SLAVE STATUS";
+    static final String LAG_COLUMN = "Seconds_Behind_Master";
+
+    /** A replica that isn't configured, and so is never available. */
+    public static final ReadReplica NONE = new ReadReplica(null, 0);
+
+    private final SessionFactory sessionFactory;
+    private final int pollSeconds;
+    private ScheduledExecutorService executor;
+
+    // Replication lag in seconds. Null if the replica is unavailable, or replication has stopped.
+    private volatile Long lagSeconds;
+
+    /**
+     * Creates a replica with the given session factory, whose replication lag is checked every pollSeconds. The
+     * replica is not used until the first check succeeds. If the session factory is null, no replica is configured.
+     */
+    public ReadReplica(SessionFactory sessionFactory, int pollSeconds) {
+        this.sessionFactory = sessionFactory;
+        this.pollSeconds = pollSeconds;
+    }
+
+    public SessionFactory getSessionFactory() {
+        return sessionFactory;
+    }
+
+    /** Executor that checks the replication lag. Package-scoped for unit tests. */
+    final void setExecutor(ScheduledExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /** Starts checking the replication lag. Does nothing if no replica is configured. */
+    public void start() {
+        if (sessionFactory == null) {
+            return;
+        }
+        if (executor == null) {
+            executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                    .setNameFormat("read-replica-monitor-%d").setDaemon(true).build());
+        }
+        executor.scheduleWithFixedDelay(this::poll, 0, pollSeconds, TimeUnit.SECONDS);
+    }
+
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+        if (sessionFactory != null) {
+            sessionFactory.close();
+        }
+    }
+
+    /** True if the replica is reachable and is no more than maxLagSeconds behind the primary. */
+    public boolean isAvailable(int maxLagSeconds) {
+        Long lag = lagSeconds;
+        return sessionFactory != null && lag != null && lag <= maxLagSeconds;
+    }
+
+    /** Returns the last replication lag, or null if the replica is unavailable. */
+    public Long getLagSeconds() {
+        return lagSeconds;
+    }
+
+    /** Called when a query on the replica fails to connect. The replica isn't used again until the next check. */
+    public void markUnavailable() {
+        if (lagSeconds != null) {
+            LOG.warn("Read replica is unavailable, reading from the primary database");
+        }
+        lagSeconds = null;
+    }
+
+    /** Checks the replication lag. Package-scoped for unit tests. */
+    void poll() {
+        try (Session session = sessionFactory.openSession()) {
+            lagSeconds = session.doReturningWork(connection -> {
+                try (Statement statement = connection.createStatement();
+                        ResultSet resultSet = statement.executeQuery(LAG_QUERY)) {
+                    if (!resultSet.next()) {
+                        // Not a replica (e.g. the primary is used as its own replica in development), so there is
+                        // no lag.
+                        return 0L;
+                    }
+                    long lag = resultSet.getLong(LAG_COLUMN);
+                    // Null means replication isn't running, so the data could be arbitrarily stale.
+                    return resultSet.wasNull() ? null : lag;
+                }
+            });
+        } catch (RuntimeException ex) {
+            markUnavailable();
+            LOG.warn("Error checking read replica lag: " + ex.getMessage(), ex);
+        }
+    }
+}
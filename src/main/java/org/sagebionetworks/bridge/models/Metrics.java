@@ -3,11 +3,14 @@ package org.sagebionetworks.bridge.models;
 import static com.google.common.base.Preconditions.checkArgument;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 
+import java.util.Set;
+
 import com.google.common.collect.Multimap;
 import org.joda.time.DateTime;
 import org.sagebionetworks.bridge.time.DateUtils;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.sagebionetworks.bridge.json.JsonUtils;
 
@@ -19,6 +22,11 @@ public class Metrics {
     /** The version of the metrics schema. */
     private static final int VERSION = 1;
 
+    /** Backends whose calls are counted for each request. */
+    public static final String BACKEND_MYSQL = "mysql";
+    public static final String BACKEND_DYNAMODB = "dynamodb";
+    public static final String BACKEND_REDIS = "redis";
+
     private static final ObjectMapper MAPPER = new ObjectMapper();
 
     private final ObjectNode json;
@@ -121,6 +129,42 @@ public class Metrics {
         json.put("upload_size", uploadSize);
     }
 
+    /**
+     * Counts a DAO call made while serving this request, keyed by DAO and method (e.g. "AppDao.getApp"). Repeated
+     * loads of the same data show up as counts greater than one.
+     */
+    public void incrementDaoCallCount(String daoMethod) {
+        incrementCount("dao_calls", daoMethod);
+    }
+
+    /**
+     * Counts a lookup that was served from the request-scoped entity cache instead of the DAO, keyed by entity type.
+     */
+    public void incrementEntityCacheHitCount(String entityType) {
+        incrementCount("entity_cache_hits", entityType);
+    }
+
+    /**
+     * Counts a call to a backend (MySQL, DynamoDB or Redis) made while serving this request. Counts that grow with
+     * the size of a page or a list of results usually mean one call is being made per item.
+     */
+    public void incrementBackendCallCount(String backend) {
+        incrementCount("backend_calls", backend);
+    }
+
+    /** The number of calls made to the given backend while serving this request so far. */
+    public synchronized int getBackendCallCount(String backend) {
+        return json.path("backend_calls").path(backend).asInt();
+    }
+
+    /** The backends whose call budgets this request exceeded. */
+    public synchronized void setCallBudgetExceeded(Set<String> backends) {
+        if (backends != null && !backends.isEmpty()) {
+            ArrayNode array = json.putArray("call_budget_exceeded");
+            backends.forEach(array::add);
+        }
+    }
+
     /**
      * Set the query params from the url request to json.
      *
@@ -133,6 +177,13 @@ public class Metrics {
         }
     }
 
+    private synchronized void incrementCount(final String field, final String name) {
+        if (isNotBlank(name)) {
+            ObjectNode counts = json.with(field);
+            counts.put(name, counts.path(name).asInt() + 1);
+        }
+    }
+
     private void put(final String field, final String value) {
         if (isNotBlank(value)) {
             json.put(field, value);
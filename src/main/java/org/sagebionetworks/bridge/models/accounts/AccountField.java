@@ -0,0 +1,27 @@
+package org.sagebionetworks.bridge.models.accounts;
+
+/**
+ * Account fields that are frequently edited on their own, and that can be updated without rewriting the rest of the
+ * account.
+ *
+ * @see org.sagebionetworks.bridge.services.AccountService#editAccountField
+ */
+public enum AccountField {
+    CLIENT_TIME_ZONE(true),
+    LANGUAGES(true),
+    NOTIFY_BY_EMAIL(false),
+    SHARING_SCOPE(true),
+    TIME_ZONE(false);
+
+    private final boolean inParticipantVersion;
+
+    AccountField(boolean inParticipantVersion) {
+        this.inParticipantVersion = inParticipantVersion;
+    }
+    /**
+     * True if this field is copied into the participant version, so changing it requires a new participant version.
+     */
+    public boolean isInParticipantVersion() {
+        return inParticipantVersion;
+    }
+}
@@ -0,0 +1,80 @@
+package org.sagebionetworks.bridge.models.accounts;
+
+import javax.persistence.Convert;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import org.joda.time.DateTime;
+
+import org.sagebionetworks.bridge.hibernate.DateTimeToLongAttributeConverter;
+
+/**
+ * A deletion of a deleted account's data from DynamoDB, which runs in the background. The deletion runs one step
+ * (one kind of data) at a time, and records the next step after each finishes, so a deletion that is interrupted
+ * resumes from the step it was on.
+ */
+@Entity
+@Table(name = "ParticipantDataDeletions")
+public class ParticipantDataDeletion {
+    /** The steps of a deletion, in the order they run. */
+    public enum Step {
+        HEALTH_DATA,
+        HEALTH_DATA_EX3,
+        UPLOADS,
+        SCHEDULED_ACTIVITIES,
+        ACTIVITY_EVENTS,
+        PARTICIPANT_REPORTS;
+    }
+
+    @Id
+    private String userId;
+    private String appId;
+    private String healthCode;
+    @Enumerated(EnumType.STRING)
+    private Step nextStep;
+    @Convert(converter = DateTimeToLongAttributeConverter.class)
+    private DateTime requestedOn;
+    @Convert(converter = DateTimeToLongAttributeConverter.class)
+    private DateTime modifiedOn;
+
+    public String getUserId() {
+        return userId;
+    }
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+    public String getAppId() {
+        return appId;
+    }
+    public void setAppId(String appId) {
+        this.appId = appId;
+    }
+    public String getHealthCode() {
+        return healthCode;
+    }
+    public void setHealthCode(String healthCode) {
+        this.healthCode = healthCode;
+    }
+    public Step getNextStep() {
+        return nextStep;
+    }
+    public void setNextStep(Step nextStep) {
+        this.nextStep = nextStep;
+    }
+    public DateTime getRequestedOn() {
+        return requestedOn;
+    }
+    public void setRequestedOn(DateTime requestedOn) {
+        this.requestedOn = requestedOn;
+    }
+    /** When the deletion was started or last finished a step. */
+    public DateTime getModifiedOn() {
+        return modifiedOn;
+    }
+    public void setModifiedOn(DateTime modifiedOn) {
+        this.modifiedOn = modifiedOn;
+    }
+}
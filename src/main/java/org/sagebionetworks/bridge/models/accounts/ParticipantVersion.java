@@ -95,4 +95,13 @@ public interface ParticipantVersion extends BridgeEntity {
      */
     Map<String, Map<String, Demographic>> getStudyDemographics();
     void setStudyDemographics(Map<String, Map<String, Demographic>> studyDemographics);
+
+    /**
+     * Fingerprint of the contents of this participant version (every attribute except the keys, createdOn, and
+     * modifiedOn). Two participant versions with the same fingerprint are identical. This is used to detect when a
+     * participant hasn't changed, so we don't create a duplicate version. May be null for versions created before
+     * fingerprints were added.
+     */
+    String getFingerprint();
+    void setFingerprint(String fingerprint);
 }
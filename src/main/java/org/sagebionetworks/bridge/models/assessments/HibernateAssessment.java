@@ -25,6 +25,9 @@ import javax.persistence.ManyToMany;
 import javax.persistence.Table;
 import javax.persistence.Version;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 import org.joda.time.DateTime;
 
 import org.sagebionetworks.bridge.hibernate.DateTimeToLongAttributeConverter;
@@ -44,6 +47,7 @@ import com.fasterxml.jackson.databind.JsonNode;
  * the Bridge system.
  */
 @Entity
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "assessments")
 // This annotation is necessary so a constraint violation exception involving an 
 // assessment displays the correct message without exposing the Hibernate implementation.
 @BridgeTypeName("Assessment")
@@ -107,6 +111,7 @@ public class HibernateAssessment {
     // this is an appId, ":", and an organization ID (e.g. "appId:orgId").
     private String ownerId;
     
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "assessments")
     @ManyToMany(cascade = { MERGE, PERSIST }, fetch = EAGER)
     @JoinTable(name = "AssessmentTags",
         joinColumns = { @JoinColumn(name = "assessmentGuid") }, 
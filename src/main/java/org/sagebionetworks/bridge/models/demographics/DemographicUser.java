@@ -10,6 +10,8 @@ import javax.persistence.MapKey;
 import javax.persistence.OneToMany;
 import javax.persistence.Table;
 
+import org.hibernate.annotations.Fetch;
+import org.hibernate.annotations.FetchMode;
 import org.sagebionetworks.bridge.models.BridgeEntity;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
@@ -36,7 +38,10 @@ public class DemographicUser implements BridgeEntity {
     private String userId;
 
     // use Map for easy JSON serialization
+    // subselect so that loading several DemographicUsers loads their demographics
+    // in one query rather than one per DemographicUser
     @OneToMany(mappedBy = "demographicUser", fetch = FetchType.EAGER, cascade = CascadeType.ALL, orphanRemoval = true)
+    @Fetch(FetchMode.SUBSELECT)
     @MapKey(name = "categoryName")
     private Map<String, Demographic> demographics;
 
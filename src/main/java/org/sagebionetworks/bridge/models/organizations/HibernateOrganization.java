@@ -7,6 +7,9 @@ import javax.persistence.IdClass;
 import javax.persistence.Table;
 import javax.persistence.Version;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
 import org.joda.time.DateTime;
@@ -15,6 +18,7 @@ import org.sagebionetworks.bridge.hibernate.DateTimeToLongAttributeConverter;
 import org.sagebionetworks.bridge.json.BridgeTypeName;
 
 @Entity
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "organizations")
 @Table(name = "Organizations")
 @IdClass(OrganizationId.class)
 @BridgeTypeName("Organization")
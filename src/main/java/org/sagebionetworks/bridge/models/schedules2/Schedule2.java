@@ -19,6 +19,8 @@ import javax.persistence.Version;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.databind.JsonNode;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.Fetch;
 import org.hibernate.annotations.FetchMode;
 import org.joda.time.DateTime;
@@ -31,6 +33,7 @@ import org.sagebionetworks.bridge.json.BridgeTypeName;
 import org.sagebionetworks.bridge.models.BridgeEntity;
 
 @Entity
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "schedules")
 @Table(name = "Schedules")
 @BridgeTypeName("Schedule")
 public class Schedule2 implements BridgeEntity {
@@ -55,11 +58,13 @@ public class Schedule2 implements BridgeEntity {
     // sessions as entities so we can have embedded collections in them (embeddables
     // can't embed further embeddable collections). Deletion code in the DAO handles
     // cleanup of removed sessions. 
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "schedules")
     @OneToMany(mappedBy = "schedule", cascade = CascadeType.ALL,
             orphanRemoval = true, fetch = FetchType.EAGER)
     @OrderColumn(name = "position")
     private List<Session> sessions;
     
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "schedules")
     @ElementCollection(fetch = FetchType.EAGER)
     @Fetch(value = FetchMode.SUBSELECT)
     @OrderColumn(name="position")
@@ -17,6 +17,9 @@ import javax.persistence.ManyToOne;
 import javax.persistence.OrderColumn;
 import javax.persistence.Table;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
 import org.joda.time.Period;
@@ -29,6 +32,7 @@ import org.sagebionetworks.bridge.models.BridgeEntity;
 import org.sagebionetworks.bridge.models.Label;
 
 @Entity
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "schedules")
 @Table(name = "Sessions")
 @BridgeTypeName("Session")
 public class Session implements BridgeEntity, HasGuid {
@@ -53,18 +57,21 @@ public class Session implements BridgeEntity, HasGuid {
     private Period interval;
     @Enumerated(EnumType.STRING)
     private PerformanceOrder performanceOrder;
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "schedules")
     @ElementCollection(fetch = FetchType.EAGER)
     @CollectionTable(name = "SessionAssessments", 
         joinColumns = @JoinColumn(name = "sessionGuid", nullable = false))
     @OrderColumn(name = "position")
     private List<AssessmentReference> assessments;
     
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "schedules")
     @ElementCollection(fetch = FetchType.EAGER)
     @CollectionTable(name = "SessionTimeWindows", 
         joinColumns = @JoinColumn(name = "sessionGuid", nullable = false))
     @OrderColumn(name = "position")
     private List<TimeWindow> timeWindows;
 
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "schedules")
     @ElementCollection(fetch = FetchType.EAGER)
     @CollectionTable(name = "SessionNotifications", 
         joinColumns = @JoinColumn(name = "sessionGuid", nullable = false))
@@ -78,6 +85,7 @@ public class Session implements BridgeEntity, HasGuid {
     @Convert(converter = LabelListConverter.class)
     private List<Label> labels;
     
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "schedules")
     @ElementCollection(fetch = FetchType.EAGER)
     @CollectionTable(name = "SessionStartEvents", 
         joinColumns = @JoinColumn(name = "sessionGuid", nullable = false))
@@ -14,6 +14,7 @@ import org.joda.time.LocalDate;
 import org.sagebionetworks.bridge.models.activities.StudyActivityEvent;
 import org.sagebionetworks.bridge.models.schedules2.adherence.eventstream.EventStream;
 import org.sagebionetworks.bridge.models.schedules2.adherence.eventstream.EventStreamDay;
+import org.sagebionetworks.bridge.models.schedules2.timelines.ScheduleMetadataSnapshot;
 import org.sagebionetworks.bridge.models.schedules2.timelines.TimelineMetadata;
 
 import com.google.common.collect.ImmutableList;
@@ -23,7 +24,7 @@ public final class AdherenceState {
 
     private final DateTime now;
     private final String clientTimeZone;
-    private final List<TimelineMetadata> metadata;
+    private final ScheduleMetadataSnapshot metadata;
     private final List<StudyActivityEvent> events;
     private final List<AdherenceRecord> adherenceRecords;
     private final String studyStartEventId;
@@ -81,7 +82,7 @@ public final class AdherenceState {
                 .withStudyStartEventId(studyStartEventId);
     }
     
-    public List<TimelineMetadata> getMetadata() {
+    public ScheduleMetadataSnapshot getMetadata() {
         return metadata;
     }
     // for tests, and not visible from generators
@@ -111,23 +112,24 @@ public final class AdherenceState {
         }
         return stream;
     }
-    public EventStreamDay getEventStreamDayByKey(TimelineMetadata meta) {
-        String streamKey = String.format("%s:%s:%s", meta.getSessionGuid(), 
-                meta.getSessionStartEventId(), meta.getSessionInstanceStartDay());
+    /** Get the event stream day for the session window at the given index in the metadata. */
+    public EventStreamDay getEventStreamDayByKey(int metaIndex) {
+        String streamKey = metadata.getSessionGuid(metaIndex) + ":" + metadata.getSessionStartEventId(metaIndex)
+                + ":" + metadata.getSessionInstanceStartDay(metaIndex);
         EventStreamDay eventStreamDay = streamsByStreamKey.get(streamKey);
         
         if (eventStreamDay == null) {
-            int startDay = meta.getSessionInstanceStartDay();
-            String eventId = meta.getSessionStartEventId();
+            int startDay = metadata.getSessionInstanceStartDay(metaIndex);
+            String eventId = metadata.getSessionStartEventId(metaIndex);
             
             eventStreamDay = new EventStreamDay();
-            eventStreamDay.setSessionGuid(meta.getSessionGuid());
-            eventStreamDay.setSessionName(meta.getSessionName());
-            eventStreamDay.setSessionSymbol(meta.getSessionSymbol());
-            eventStreamDay.setStartEventId(meta.getSessionStartEventId());
+            eventStreamDay.setSessionGuid(metadata.getSessionGuid(metaIndex));
+            eventStreamDay.setSessionName(metadata.getSessionName(metaIndex));
+            eventStreamDay.setSessionSymbol(metadata.getSessionSymbol(metaIndex));
+            eventStreamDay.setStartEventId(eventId);
             eventStreamDay.setWeek(startDay / 7);
-            eventStreamDay.setStudyBurstId(meta.getStudyBurstId());
-            eventStreamDay.setStudyBurstNum(meta.getStudyBurstNum());
+            eventStreamDay.setStudyBurstId(metadata.getStudyBurstId(metaIndex));
+            eventStreamDay.setStudyBurstNum(metadata.getStudyBurstNum(metaIndex));
             streamsByStreamKey.put(streamKey, eventStreamDay);
             getEventStreamById(eventId).addEntry(startDay, eventStreamDay);
         }
@@ -161,7 +163,7 @@ public final class AdherenceState {
         return keysSorted;
     }
     public static class Builder {
-        private List<TimelineMetadata> metadata;
+        private ScheduleMetadataSnapshot metadata;
         private List<StudyActivityEvent> events;
         private List<AdherenceRecord> adherenceRecords;
         private DateTime now;
@@ -170,6 +172,10 @@ public final class AdherenceState {
         private String studyStartEventId;
 
         public Builder withMetadata(List<TimelineMetadata> metadata) {
+            this.metadata = (metadata == null) ? null : ScheduleMetadataSnapshot.create(null, null, metadata);
+            return this;
+        }
+        public Builder withMetadata(ScheduleMetadataSnapshot metadata) {
             this.metadata = metadata;
             return this;
         }
@@ -197,7 +203,7 @@ public final class AdherenceState {
             checkNotNull(now);
             
             if (metadata == null) {
-                metadata = ImmutableList.of();
+                metadata = ScheduleMetadataSnapshot.EMPTY;
             }
             if (events == null) {
                 events = ImmutableList.of();
@@ -15,7 +15,7 @@ import org.sagebionetworks.bridge.models.schedules2.TimeWindow;
 import org.sagebionetworks.bridge.models.schedules2.adherence.AdherenceRecord;
 import org.sagebionetworks.bridge.models.schedules2.adherence.AdherenceState;
 import org.sagebionetworks.bridge.models.schedules2.adherence.SessionCompletionState;
-import org.sagebionetworks.bridge.models.schedules2.timelines.TimelineMetadata;
+import org.sagebionetworks.bridge.models.schedules2.timelines.ScheduleMetadataSnapshot;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -42,13 +42,15 @@ public class EventStreamAdherenceReportGenerator {
         
         String earliestEventId = null;
 
-        for (TimelineMetadata meta : state.getMetadata()) {
-            if (meta.isTimeWindowPersistent()) {
+        // The metadata is shared by all reports on this version of the schedule, and is read by index.
+        ScheduleMetadataSnapshot metadata = state.getMetadata();
+        for (int i = 0; i < metadata.size(); i++) {
+            if (metadata.isTimeWindowPersistent(i)) {
                 continue;
             }
-            int startDay = meta.getSessionInstanceStartDay();
-            int endDay = meta.getSessionInstanceEndDay();
-            String eventId = meta.getSessionStartEventId();
+            int startDay = metadata.getSessionInstanceStartDay(i);
+            int endDay = metadata.getSessionInstanceEndDay(i);
+            String eventId = metadata.getSessionStartEventId(i);
             Integer daysSinceEvent = state.getDaysSinceEventById(eventId);
 
             DateTime timestamp = state.getEventTimestampById(eventId);
@@ -59,29 +61,29 @@ public class EventStreamAdherenceReportGenerator {
             // Produce one report for each event ID. Create them lazily as we find each eventId;
             EventStream stream = state.getEventStreamById(eventId);
             stream.setDaysSinceEvent(daysSinceEvent);
-            stream.setStudyBurstId(meta.getStudyBurstId());
-            stream.setStudyBurstNum(meta.getStudyBurstNum());
+            stream.setStudyBurstId(metadata.getStudyBurstId(i));
+            stream.setStudyBurstNum(metadata.getStudyBurstNum(i));
 
             // Get the adherence information for this session instance and derive the state of the session
-            AdherenceRecord record = state.getAdherenceRecordByGuid(meta.getSessionInstanceGuid());
+            AdherenceRecord record = state.getAdherenceRecordByGuid(metadata.getSessionInstanceGuid(i));
             SessionCompletionState sessionState = calculateSessionState(record, startDay, endDay, daysSinceEvent);
 
             // Retrieve the event stream. All items in this stream start on the same day, but can end on different days
-            EventStreamDay eventStreamDay = state.getEventStreamDayByKey(meta);
+            EventStreamDay eventStreamDay = state.getEventStreamDayByKey(i);
             eventStreamDay.setStartDay(startDay);
             eventStreamDay.setStartDate(startDate);
 
             // Create a window entry (windows are flattened in the list of timeline metadata records...all session
             // records in the metadata table are actually session window records)
             EventStreamWindow windowEntry = new EventStreamWindow();
-            windowEntry.setSessionInstanceGuid(meta.getSessionInstanceGuid());
-            windowEntry.setTimeWindowGuid(meta.getTimeWindowGuid());
+            windowEntry.setSessionInstanceGuid(metadata.getSessionInstanceGuid(i));
+            windowEntry.setTimeWindowGuid(metadata.getTimeWindowGuid(i));
             windowEntry.setStartDate(startDate);
             windowEntry.setEndDay(endDay);
             windowEntry.setEndDate(endDate);
             windowEntry.setState(sessionState);
             
-            TimeWindow timeWindow = timeWindowMap.get(meta.getTimeWindowGuid());
+            TimeWindow timeWindow = timeWindowMap.get(metadata.getTimeWindowGuid(i));
             
             if (timeWindow != null) {
                 LocalTime startTime = timeWindow.getStartTime();
@@ -95,7 +97,7 @@ public class EventStreamAdherenceReportGenerator {
             } else {
                 // This could only happen if a schedule updates without refreshing metadata
                 LOG.warn("Metadata time window does not exist in schedule. appId: " + schedule.getAppId() +
-                        ", sessionGuid: " + meta.getSessionGuid() + ", timeWindowGuid: " + meta.getTimeWindowGuid());
+                        ", sessionGuid: " + metadata.getSessionGuid(i) + ", timeWindowGuid: " + metadata.getTimeWindowGuid(i));
             }
             
             eventStreamDay.addTimeWindow(windowEntry);
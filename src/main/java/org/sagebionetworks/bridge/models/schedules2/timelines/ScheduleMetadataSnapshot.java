@@ -0,0 +1,141 @@
+package org.sagebionetworks.bridge.models.schedules2.timelines;
+
+import java.util.BitSet;
+import java.util.List;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import org.joda.time.DateTime;
+
+/**
+ * An immutable, compact copy of the session metadata of one version of a schedule (identified by the schedule's
+ * GUID and modifiedOn timestamp). It holds only the fields needed to calculate adherence, in parallel arrays
+ * indexed from 0 to size() - 1, rather than as one entity per session window. Strings that repeat across windows
+ * (session GUIDs, event IDs, names) are interned. This is the same for every participant in a study, so one
+ * snapshot can be shared by all the adherence reports generated for that study, on any thread.
+ */
+public final class ScheduleMetadataSnapshot {
+    private static final Interner<String> INTERNER = Interners.newWeakInterner();
+    private static final int NO_STUDY_BURST_NUM = Integer.MIN_VALUE;
+
+    public static final ScheduleMetadataSnapshot EMPTY = create(null, null, ImmutableList.of());
+
+    /**
+     * Create a snapshot of the given metadata records for the given version of a schedule. The records are
+     * copied, and can be discarded afterward.
+     */
+    public static ScheduleMetadataSnapshot create(String scheduleGuid, DateTime scheduleModifiedOn,
+            List<TimelineMetadata> metadata) {
+        return new ScheduleMetadataSnapshot(scheduleGuid, scheduleModifiedOn, metadata);
+    }
+
+    private final String scheduleGuid;
+    private final DateTime scheduleModifiedOn;
+    private final int size;
+    private final String[] sessionInstanceGuids;
+    private final String[] sessionGuids;
+    private final String[] sessionStartEventIds;
+    private final String[] sessionNames;
+    private final String[] sessionSymbols;
+    private final String[] timeWindowGuids;
+    private final String[] studyBurstIds;
+    private final int[] sessionInstanceStartDays;
+    private final int[] sessionInstanceEndDays;
+    private final int[] studyBurstNums;
+    private final BitSet timeWindowPersistent;
+
+    private ScheduleMetadataSnapshot(String scheduleGuid, DateTime scheduleModifiedOn,
+            List<TimelineMetadata> metadata) {
+        this.scheduleGuid = scheduleGuid;
+        this.scheduleModifiedOn = scheduleModifiedOn;
+        this.size = metadata.size();
+        this.sessionInstanceGuids = new String[size];
+        this.sessionGuids = new String[size];
+        this.sessionStartEventIds = new String[size];
+        this.sessionNames = new String[size];
+        this.sessionSymbols = new String[size];
+        this.timeWindowGuids = new String[size];
+        this.studyBurstIds = new String[size];
+        this.sessionInstanceStartDays = new int[size];
+        this.sessionInstanceEndDays = new int[size];
+        this.studyBurstNums = new int[size];
+        this.timeWindowPersistent = new BitSet(size);
+
+        int i = 0;
+        for (TimelineMetadata meta : metadata) {
+            // Instance GUIDs are unique to each window, so there is nothing to gain by interning them.
+            sessionInstanceGuids[i] = meta.getSessionInstanceGuid();
+            sessionGuids[i] = intern(meta.getSessionGuid());
+            sessionStartEventIds[i] = intern(meta.getSessionStartEventId());
+            sessionNames[i] = intern(meta.getSessionName());
+            sessionSymbols[i] = intern(meta.getSessionSymbol());
+            timeWindowGuids[i] = intern(meta.getTimeWindowGuid());
+            studyBurstIds[i] = intern(meta.getStudyBurstId());
+            // Session records always have start and end days.
+            sessionInstanceStartDays[i] = valueOrZero(meta.getSessionInstanceStartDay());
+            sessionInstanceEndDays[i] = valueOrZero(meta.getSessionInstanceEndDay());
+            studyBurstNums[i] = (meta.getStudyBurstNum() == null) ? NO_STUDY_BURST_NUM : meta.getStudyBurstNum();
+            timeWindowPersistent.set(i, meta.isTimeWindowPersistent());
+            i++;
+        }
+    }
+
+    private static String intern(String value) {
+        return (value == null) ? null : INTERNER.intern(value);
+    }
+
+    private static int valueOrZero(Integer value) {
+        return (value == null) ? 0 : value;
+    }
+
+    /** True if this is a snapshot of the given version of the schedule. */
+    public boolean isSnapshotOf(String scheduleGuid, DateTime scheduleModifiedOn) {
+        return this.scheduleGuid != null && this.scheduleGuid.equals(scheduleGuid)
+                && this.scheduleModifiedOn != null && scheduleModifiedOn != null
+                && this.scheduleModifiedOn.getMillis() == scheduleModifiedOn.getMillis();
+    }
+    public String getScheduleGuid() {
+        return scheduleGuid;
+    }
+    public DateTime getScheduleModifiedOn() {
+        return scheduleModifiedOn;
+    }
+    /** The number of session window records. */
+    public int size() {
+        return size;
+    }
+    public String getSessionInstanceGuid(int index) {
+        return sessionInstanceGuids[index];
+    }
+    public String getSessionGuid(int index) {
+        return sessionGuids[index];
+    }
+    public String getSessionStartEventId(int index) {
+        return sessionStartEventIds[index];
+    }
+    public String getSessionName(int index) {
+        return sessionNames[index];
+    }
+    public String getSessionSymbol(int index) {
+        return sessionSymbols[index];
+    }
+    public String getTimeWindowGuid(int index) {
+        return timeWindowGuids[index];
+    }
+    public boolean isTimeWindowPersistent(int index) {
+        return timeWindowPersistent.get(index);
+    }
+    public int getSessionInstanceStartDay(int index) {
+        return sessionInstanceStartDays[index];
+    }
+    public int getSessionInstanceEndDay(int index) {
+        return sessionInstanceEndDays[index];
+    }
+    public String getStudyBurstId(int index) {
+        return studyBurstIds[index];
+    }
+    public Integer getStudyBurstNum(int index) {
+        return (studyBurstNums[index] == NO_STUDY_BURST_NUM) ? null : studyBurstNums[index];
+    }
+}
@@ -8,6 +8,9 @@ import javax.persistence.Entity;
 import javax.persistence.Id;
 import javax.persistence.Table;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 import org.joda.time.DateTime;
 
 import org.sagebionetworks.bridge.hibernate.DateTimeToLongAttributeConverter;
@@ -17,9 +20,11 @@ import org.sagebionetworks.bridge.models.BridgeEntity;
  * The timeline metadata table allows us to take any instance GUID from a timeline
  * that is submitted by a mobile client, and map it back to the provenance we have 
  * as to when and how the data associated with that GUID was collected. We create 
- * these records the first time we create a timeline from a schedule.
+ * these records the first time we create a timeline from a schedule, and update them 
+ * when the schedule changes (for example, when it is published).
  */
 @Entity
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "timelineMetadata")
 @Table(name = "TimelineMetadata")
 public class TimelineMetadata implements BridgeEntity {
     
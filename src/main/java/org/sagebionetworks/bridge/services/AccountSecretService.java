@@ -0,0 +1,81 @@
+package org.sagebionetworks.bridge.services;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.security.spec.InvalidKeySpecException;
+import java.util.Optional;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import org.sagebionetworks.bridge.dao.AccountSecretDao;
+import org.sagebionetworks.bridge.models.accounts.AccountSecret;
+import org.sagebionetworks.bridge.models.accounts.AccountSecretType;
+
+/**
+ * Creates and verifies reauthentication tokens and other account secrets. The secrets are stored by the 
+ * {@link AccountSecretDao}; checking plaintext against their hashes is done by the 
+ * {@link PasswordVerificationService}, which bounds and caches the hashing.
+ */
+@Component
+public class AccountSecretService {
+    private static final Logger LOG = LoggerFactory.getLogger(AccountSecretService.class);
+    
+    private AccountSecretDao accountSecretDao;
+    private PasswordVerificationService passwordVerificationService;
+    
+    @Autowired
+    final void setAccountSecretDao(AccountSecretDao accountSecretDao) {
+        this.accountSecretDao = accountSecretDao;
+    }
+    
+    @Autowired
+    final void setPasswordVerificationService(PasswordVerificationService passwordVerificationService) {
+        this.passwordVerificationService = passwordVerificationService;
+    }
+    
+    /**
+     * Add a secret to the set of secrets. 
+     */
+    public void createSecret(AccountSecretType type, String accountId, String plaintext) {
+        accountSecretDao.createSecret(type, accountId, plaintext);
+    }
+    
+    /**
+     * Compare the provided secret against the most recent N secrets (indicated by rotations) of this type, 
+     * looking for a match. Return the record if a match is found, or an empty optional otherwise. Throws a 
+     * ServiceUnavailableException if the server is handling too many sign-ins to check the secret in time.
+     */
+    public Optional<AccountSecret> verifySecret(AccountSecretType type, String accountId, String plaintext,
+            int rotations) {
+        checkNotNull(type);
+        checkNotNull(accountId);
+        checkNotNull(plaintext);
+        
+        for (AccountSecret accountSecret : accountSecretDao.getSecrets(type, accountId, rotations)) {
+            try {
+                // It's not possible to cache the hashed plaintext, as it is being compared to a hash
+                // that has been seeded with a random salt (in the default algorithm's case). So we
+                // must extract and use that salt + iterations to compare the hashes.
+                if (passwordVerificationService.checkHash(accountSecret.getAlgorithm(), accountSecret.getHash(),
+                        plaintext)) {
+                    return Optional.of(accountSecret);
+                }
+            } catch (InvalidKeyException | InvalidKeySpecException | NoSuchAlgorithmException e) {
+                LOG.error("Error checking reauthentication token", e);
+            }
+        }
+        return Optional.empty();
+    }
+    
+    /**
+     * Delete all secrets for the indicated user, of the indicated type.
+     */
+    public void removeSecrets(AccountSecretType type, String accountId) {
+        accountSecretDao.removeSecrets(type, accountId);
+    }
+}
@@ -15,7 +15,6 @@ import static org.sagebionetworks.bridge.BridgeUtils.collectStudyIds;
 import static org.sagebionetworks.bridge.dao.AccountDao.MIGRATION_VERSION;
 import static org.sagebionetworks.bridge.models.activities.ActivityEventObjectType.ENROLLMENT;
 
-import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import java.util.function.Consumer;
@@ -27,6 +26,7 @@ import com.google.common.collect.Sets;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
 import org.sagebionetworks.bridge.RequestContext;
+import org.sagebionetworks.bridge.RequestEntityCache;
 import org.sagebionetworks.bridge.cache.CacheKey;
 import org.sagebionetworks.bridge.cache.CacheProvider;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -36,16 +36,16 @@ import org.sagebionetworks.bridge.BridgeUtils;
 import org.sagebionetworks.bridge.dao.AccountDao;
 import org.sagebionetworks.bridge.exceptions.EntityNotFoundException;
 import org.sagebionetworks.bridge.exceptions.UnauthorizedException;
+import org.sagebionetworks.bridge.hibernate.HibernateAccount;
 import org.sagebionetworks.bridge.models.AccountSummarySearch;
 import org.sagebionetworks.bridge.models.PagedResourceList;
 import org.sagebionetworks.bridge.models.accounts.Account;
+import org.sagebionetworks.bridge.models.accounts.AccountField;
 import org.sagebionetworks.bridge.models.accounts.AccountId;
 import org.sagebionetworks.bridge.models.accounts.AccountSummary;
 import org.sagebionetworks.bridge.models.accounts.ExternalIdentifierInfo;
 import org.sagebionetworks.bridge.models.activities.StudyActivityEvent;
 import org.sagebionetworks.bridge.models.apps.App;
-import org.sagebionetworks.bridge.models.reports.ReportIndex;
-import org.sagebionetworks.bridge.models.reports.ReportType;
 import org.sagebionetworks.bridge.models.studies.Alert;
 import org.sagebionetworks.bridge.models.studies.Enrollment;
 import org.sagebionetworks.bridge.time.DateUtils;
@@ -65,8 +65,6 @@ public class AccountService {
     @Autowired
     private ParticipantVersionService participantVersionService;
     @Autowired
-    private ReportService reportService;
-    @Autowired
     private StudyActivityEventService studyActivityEventService;
     @Autowired
     private AlertService alertService;
@@ -77,13 +75,7 @@ public class AccountService {
     @Autowired
     private NotificationsService notificationsService;
     @Autowired
-    private HealthDataService healthDataService;
-    @Autowired
-    private HealthDataEx3Service healthDataEx3Service;
-    @Autowired
-    private ScheduledActivityService scheduledActivityService;
-    @Autowired
-    private UploadService uploadService;
+    private ParticipantDataDeletionService participantDataDeletionService;
     @Autowired
     private RequestInfoService requestInfoService;
     
@@ -228,14 +220,9 @@ public class AccountService {
     public void editAccount(AccountId accountId, Consumer<Account> accountEdits) {
         checkNotNull(accountId);
         
-        Account account = accountDao.getAccount(accountId)
-                .orElseThrow(() -> new EntityNotFoundException(Account.class));
+        Account account = getAccountForEdit(accountId);
         
         String oldTimeZone = account.getClientTimeZone();
- 
-        if (CANNOT_ACCESS_PARTICIPANTS.check(USER_ID, account.getId()) && !account.getDataGroups().contains(TEST_USER_GROUP)) {
-            throw new UnauthorizedException();
-        }
         accountEdits.accept(account);
         
         String newTimeZone = account.getClientTimeZone();
@@ -251,6 +238,46 @@ public class AccountService {
         participantVersionService.createParticipantVersionFromAccount(account);
     }
     
+    /**
+     * Load an account, edit a single field, and save only that field. This has the same restrictions as 
+     * editAccount, but it is much cheaper for frequent, single-field edits: only the changed column (or 
+     * collection) is written, and a new participant version is only created if the field is part of the 
+     * participant version. Changes the edits make to any other field are not saved.
+     */
+    public void editAccountField(AccountId accountId, AccountField field, Consumer<Account> accountEdits) {
+        checkNotNull(accountId);
+        checkNotNull(field);
+        
+        Account account = getAccountForEdit(accountId);
+        
+        String oldTimeZone = account.getClientTimeZone();
+        accountEdits.accept(account);
+        
+        String newTimeZone = account.getClientTimeZone();
+        account.setModifiedOn(DateUtils.getCurrentDateTime());
+        
+        accountDao.updateAccountField(account, field);
+        
+        if (field == AccountField.CLIENT_TIME_ZONE && !ObjectUtils.nullSafeEquals(oldTimeZone, newTimeZone)) {
+            CacheKey cacheKey = CacheKey.etag(DateTimeZone.class, account.getId());
+            cacheProvider.setObject(cacheKey, account.getModifiedOn());
+        }
+        if (field.isInParticipantVersion()) {
+            participantVersionService.createParticipantVersionFromAccount(account);
+        }
+    }
+    
+    // Developers and study designers can only edit test accounts.
+    private Account getAccountForEdit(AccountId accountId) {
+        Account account = accountDao.getAccount(accountId)
+                .orElseThrow(() -> new EntityNotFoundException(Account.class));
+        
+        if (CANNOT_ACCESS_PARTICIPANTS.check(USER_ID, account.getId()) && !account.getDataGroups().contains(TEST_USER_GROUP)) {
+            throw new UnauthorizedException();
+        }
+        return account;
+    }
+    
     /**
      * Get an account in the context of a app by the user's ID, email address, health code,
      * or phone number. Returns null if the account cannot be found, or the caller does not have 
@@ -260,7 +287,22 @@ public class AccountService {
     public Optional<Account> getAccount(AccountId accountId) {
         checkNotNull(accountId);
 
-        Optional<Account> optional = accountDao.getAccount(accountId);
+        // Accounts are often loaded several times while serving a single request, so check the request's entity
+        // cache first. Keys use the unguarded account ID, so equivalent IDs map to the same entry. Callers change
+        // the accounts they get (and enrollments are filtered below), so the cache keeps its own copy, and each
+        // caller gets a separate copy of it.
+        RequestEntityCache entityCache = RequestContext.get().getEntityCache();
+        AccountId cacheKey = accountId.getUnguardedAccountId();
+        Account cachedAccount = entityCache.get(Account.class, cacheKey);
+        Optional<Account> optional;
+        if (cachedAccount != null) {
+            optional = Optional.of(copyAccount(cachedAccount));
+        } else {
+            optional = accountDao.getAccount(accountId);
+            if (optional.isPresent()) {
+                entityCache.put(Account.class, cacheKey, copyAccount(optional.get()));
+            }
+        }
         if (!optional.isPresent()) {
             return optional;
         }
@@ -281,6 +323,11 @@ public class AccountService {
         return optional;
     }
     
+    // Accounts from the DAO are always Hibernate accounts.
+    private static Account copyAccount(Account account) {
+        return HibernateAccount.copy((HibernateAccount) account);
+    }
+    
     /**
      * Delete an account along with the authentication credentials.
      */
@@ -299,20 +346,14 @@ public class AccountService {
             String appId = account.getAppId();
             String userId = account.getId();
             String healthCode = account.getHealthCode();
-            healthDataService.deleteRecordsForHealthCode(healthCode);
-            healthDataEx3Service.deleteRecordsForHealthCode(healthCode);
-            notificationsService.deleteAllRegistrations(account.getAppId(), healthCode);
+            notificationsService.deleteAllRegistrations(appId, healthCode);
             participantDataService.deleteAllParticipantData(userId);
             participantFileService.deleteAllFilesForParticipant(userId);
-            uploadService.deleteUploadsForHealthCode(healthCode);
-            scheduledActivityService.deleteActivitiesForUser(healthCode);
-            activityEventService.deleteActivityEvents(account.getAppId(), healthCode);
 
-            List<? extends ReportIndex> reportIndexList = reportService.getReportIndices(appId, ReportType.PARTICIPANT)
-                    .getItems();
-            for (ReportIndex reportIndex : reportIndexList) {
-                reportService.deleteParticipantReport(appId, userId, reportIndex.getIdentifier(), healthCode);
-            }
+            // Health data, uploads, activities, events and reports can take a long time to delete, so they are
+            // deleted in the background. The deletion is recorded before the account is deleted, so it isn't lost
+            // if this server stops.
+            participantDataDeletionService.startDeletion(appId, userId, healthCode);
 
             // AccountSecret records and Enrollment records are are deleted on a 
             // cascading delete from Account
@@ -368,6 +409,34 @@ public class AccountService {
         return accountDao.getPagedAccountSummaries(appId, search);
     }
     
+    /**
+     * Get a page of lightweight account summaries, as {@link #getPagedAccountSummaries}, but from the read replica 
+     * if it is available. The replica can lag a few seconds behind, so only use this to serve read-only API calls.
+     */
+    public PagedResourceList<AccountSummary> getPagedAccountSummariesFromReplica(String appId,
+            AccountSummarySearch search) {
+        checkNotNull(appId);
+        checkNotNull(search);
+        
+        return accountDao.getPagedAccountSummariesFromReplica(appId, search);
+    }
+    
+    /**
+     * Returns true if the app has an account limit, and the number of accounts in the app has met or exceeded it. 
+     * The maintained account count can drift slightly from the true count, so the accounts are recounted before 
+     * reporting that the limit has been reached.
+     */
+    public boolean isAccountLimitMetOrExceeded(App app) {
+        checkNotNull(app);
+        
+        int limit = app.getAccountLimit();
+        if (limit <= 0) {
+            return false;
+        }
+        return accountDao.getAccountCount(app.getIdentifier()) >= limit
+                && accountDao.reconcileAccountCount(app.getIdentifier()) >= limit;
+    }
+    
     /**
      * Get the health code for an account.
      */
@@ -329,6 +329,16 @@ public class ActivityEventService {
         updateEtagCache(appId, healthCode, getDateTime());
     }
 
+    /**
+     * Delete the activity events of a deleted account. The account no longer exists, so there is no etag to
+     * update (AccountService removes it when it deletes the account).
+     */
+    public void deleteActivityEventsForDeletedAccount(String healthCode) {
+        checkNotNull(healthCode);
+
+        activityEventDao.deleteActivityEvents(healthCode);
+    }
+
     /**
      * If the triggering event is mutable, it will succeed and these events must update as well, so they are 
      * always mutable when this function is called. 
@@ -86,6 +86,7 @@ import org.sagebionetworks.bridge.models.schedules2.adherence.study.StudyAdheren
 import org.sagebionetworks.bridge.models.schedules2.adherence.study.StudyReportWeek;
 import org.sagebionetworks.bridge.models.schedules2.adherence.weekly.WeeklyAdherenceReport;
 import org.sagebionetworks.bridge.models.schedules2.timelines.MetadataContainer;
+import org.sagebionetworks.bridge.models.schedules2.timelines.ScheduleMetadataSnapshot;
 import org.sagebionetworks.bridge.models.schedules2.timelines.SessionState;
 import org.sagebionetworks.bridge.models.schedules2.timelines.TimelineMetadata;
 import org.sagebionetworks.bridge.models.studies.Alert;
@@ -591,7 +592,7 @@ public class AdherenceService {
         }
         Schedule2 schedule = scheduleService.getScheduleForStudy(appId, studyId)
                 .orElseThrow(() -> new EntityNotFoundException(Schedule2.class));
-        List<TimelineMetadata> metadata = scheduleService.getScheduleMetadata(study.getScheduleGuid());
+        ScheduleMetadataSnapshot metadata = scheduleService.getScheduleMetadataSnapshot(schedule);
 
         List<StudyActivityEvent> events = studyActivityEventService.getRecentStudyActivityEvents(
                 appId, studyId, userId).getItems();
@@ -652,7 +653,7 @@ public class AdherenceService {
         
         Schedule2 schedule = scheduleService.getScheduleForStudy(appId, studyId)
                 .orElseThrow(() -> new EntityNotFoundException(Schedule2.class));
-        List<TimelineMetadata> metadata = scheduleService.getScheduleMetadata(study.getScheduleGuid());
+        ScheduleMetadataSnapshot metadata = scheduleService.getScheduleMetadataSnapshot(schedule);
         
         Timeline timeline = scheduleService.getTimelineForSchedule(appId, schedule.getGuid());
         
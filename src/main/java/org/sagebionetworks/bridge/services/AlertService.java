@@ -4,9 +4,15 @@ import static com.google.common.base.Preconditions.checkNotNull;
 
 import java.util.Arrays;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.joda.time.DateTime;
+
 import org.sagebionetworks.bridge.BridgeUtils;
+import org.sagebionetworks.bridge.config.BridgeConfig;
 import org.sagebionetworks.bridge.dao.AlertDao;
 import org.sagebionetworks.bridge.exceptions.EntityNotFoundException;
 import org.sagebionetworks.bridge.models.PagedResourceList;
@@ -27,8 +33,16 @@ import org.springframework.stereotype.Component;
 
 @Component
 public class AlertService {
+    // Package-scoped for unit tests.
+    static final String CONFIG_KEY_COALESCE_WINDOW_SECONDS = "alert.coalesce.window.seconds";
+    static final int DEFAULT_COALESCE_WINDOW_SECONDS = 3600;
+    static final int MAX_RECENT_ALERTS = 10000;
+
     private AlertDao alertDao;
     private AccountService accountService;
+    private int coalesceWindowSeconds = DEFAULT_COALESCE_WINDOW_SECONDS;
+    // Coalesced alerts that this server has written recently, so repeats can be skipped without a database call.
+    private Cache<String, Boolean> recentAlerts = newRecentAlertsCache(DEFAULT_COALESCE_WINDOW_SECONDS);
 
     @Autowired
     public final void setAlertDao(AlertDao alertDao) {
@@ -40,6 +54,18 @@ public class AlertService {
         this.accountService = accountService;
     }
 
+    /** A window of zero seconds turns off coalescing. */
+    @Autowired
+    public final void setConfig(BridgeConfig config) {
+        this.coalesceWindowSeconds = config.getPropertyAsInt(CONFIG_KEY_COALESCE_WINDOW_SECONDS);
+        this.recentAlerts = newRecentAlertsCache(coalesceWindowSeconds);
+    }
+
+    private static Cache<String, Boolean> newRecentAlertsCache(int windowSeconds) {
+        return CacheBuilder.newBuilder().maximumSize(MAX_RECENT_ALERTS)
+                .expireAfterWrite(Math.max(windowSeconds, 0), TimeUnit.SECONDS).build();
+    }
+
     /**
      * Creates an alert.
      * 
@@ -48,30 +74,58 @@ public class AlertService {
      * @param alert The alert to create.
      */
     public void createAlert(Alert alert) {
-        checkNotNull(alert.getStudyId());
-        checkNotNull(alert.getAppId());
-        checkNotNull(alert.getUserId());
-        checkNotNull(alert.getCategory());
+        checkAlert(alert);
 
-        // if account does not exist we cannot create an alert which references that
-        // account
-        //
-        // this can happen, for example, with the new enrollment alert, where
-        // enrollments can be added to the account before the account is created
+        // If the account does not exist (or the caller can't access it), we cannot create an alert which references 
+        // that account. This can happen, for example, with the new enrollment alert, where enrollments can be added 
+        // to the account before the account is created. The account is usually already cached for this request.
         if (!getAccount(alert.getAppId(), alert.getUserId()).isPresent()) {
             return;
         }
 
-        // alert already exists: overwrite
-        Optional<Alert> existingAlert = alertDao.getAlert(alert.getStudyId(), alert.getAppId(), alert.getUserId(),
-                alert.getCategory());
-        if (existingAlert.isPresent()) {
-            alertDao.deleteAlert(existingAlert.get());
-        }
-
+        // If an alert of this category already exists for the user, it is overwritten.
         alert.setId(generateGuid());
         alert.setCreatedOn(DateUtils.getCurrentDateTime());
-        alertDao.createAlert(alert);
+        alertDao.upsertAlert(alert, null);
+    }
+
+    /**
+     * Creates an alert, unless an alert of the same category was created for this user in this study within the 
+     * coalescing window. Use this for alerts that are raised over and over (like timeline access on every app 
+     * launch), where it's enough for researchers to know it happened recently. Repeats that this server has already 
+     * written within the window don't touch the database at all.
+     * 
+     * This is for INTERNAL USE ONLY. There is no validation.
+     * 
+     * @param alert The alert to create.
+     */
+    public void createCoalescedAlert(Alert alert) {
+        checkAlert(alert);
+
+        if (coalesceWindowSeconds <= 0) {
+            createAlert(alert);
+            return;
+        }
+        String key = alert.getAppId() + ":" + alert.getStudyId() + ":" + alert.getUserId() + ":" 
+                + alert.getCategory();
+        if (recentAlerts.getIfPresent(key) != null) {
+            return;
+        }
+        if (!getAccount(alert.getAppId(), alert.getUserId()).isPresent()) {
+            return;
+        }
+        DateTime now = DateUtils.getCurrentDateTime();
+        alert.setId(generateGuid());
+        alert.setCreatedOn(now);
+        alertDao.upsertAlert(alert, now.minusSeconds(coalesceWindowSeconds));
+        recentAlerts.put(key, Boolean.TRUE);
+    }
+
+    private void checkAlert(Alert alert) {
+        checkNotNull(alert.getStudyId());
+        checkNotNull(alert.getAppId());
+        checkNotNull(alert.getUserId());
+        checkNotNull(alert.getCategory());
     }
 
     /**
@@ -52,6 +52,8 @@ import org.springframework.context.annotation.PropertySource;
 import org.springframework.stereotype.Component;
 
 import org.sagebionetworks.bridge.BridgeUtils;
+import org.sagebionetworks.bridge.RequestContext;
+import org.sagebionetworks.bridge.RequestEntityCache;
 import org.sagebionetworks.bridge.SecureTokenGenerator;
 import org.sagebionetworks.bridge.cache.CacheProvider;
 import org.sagebionetworks.bridge.cache.CacheKey;
@@ -202,10 +204,16 @@ public class AppService {
     public App getApp(String identifier, boolean includeDeleted) {
         checkArgument(isNotBlank(identifier));
 
-        App app = cacheProvider.getApp(identifier);
+        // Apps are loaded many times while serving a single request, so check the request's entity cache first.
+        RequestEntityCache entityCache = RequestContext.get().getEntityCache();
+        App app = entityCache.get(App.class, identifier);
         if (app == null) {
-            app = appDao.getApp(identifier);
-            cacheProvider.setApp(app);
+            app = cacheProvider.getApp(identifier);
+            if (app == null) {
+                app = appDao.getApp(identifier);
+                cacheProvider.setApp(app);
+            }
+            entityCache.put(App.class, identifier, app);
         }
         if (app != null) {
             // If it it exists and has been deactivated, and this call is not supposed to retrieve deactivated
@@ -534,6 +542,7 @@ public class AppService {
         // is not updated in the cache. At least we can delete the app before this, so the next
         // time it should succeed. Have not figured out why they get out of sync.
         cacheProvider.removeApp(app.getIdentifier());
+        RequestContext.get().getEntityCache().remove(App.class, app.getIdentifier());
         App updatedApp = appDao.updateApp(app);
         cacheProvider.setApp(updatedApp);
         return updatedApp;
@@ -639,6 +648,7 @@ public class AppService {
         }
 
         cacheProvider.removeApp(identifier);
+        RequestContext.get().getEntityCache().remove(App.class, identifier);
     }
     
     /**
@@ -37,7 +37,6 @@ import org.sagebionetworks.bridge.cache.CacheKey;
 import org.sagebionetworks.bridge.cache.CacheProvider;
 import org.sagebionetworks.bridge.config.BridgeConfig;
 import org.sagebionetworks.bridge.dao.AccountDao;
-import org.sagebionetworks.bridge.dao.AccountSecretDao;
 import org.sagebionetworks.bridge.exceptions.AccountDisabledException;
 import org.sagebionetworks.bridge.exceptions.AuthenticationFailedException;
 import org.sagebionetworks.bridge.exceptions.BadRequestException;
@@ -100,10 +99,11 @@ public class AuthenticationService {
     private PasswordResetValidator passwordResetValidator;
     private AccountWorkflowService accountWorkflowService;
     private IntentService intentService;
-    private AccountSecretDao accountSecretDao;
+    private AccountSecretService accountSecretService;
     private OAuthProviderService oauthProviderService;
     private SponsorService sponsorService;
     private StudyService studyService;
+    private PasswordVerificationService passwordVerificationService;
     
     @Autowired
     final void setCacheProvider(CacheProvider cache) {
@@ -146,8 +146,8 @@ public class AuthenticationService {
         this.intentService = intentService;
     }
     @Autowired
-    final void setAccountSecretDao(AccountSecretDao accountSecretDao) {
-        this.accountSecretDao = accountSecretDao;
+    final void setAccountSecretService(AccountSecretService accountSecretService) {
+        this.accountSecretService = accountSecretService;
     }
     @Autowired
     final void setOAuthProviderService(OAuthProviderService oauthProviderService) {
@@ -161,6 +161,10 @@ public class AuthenticationService {
     final void setStudyService(StudyService studyService) {
         this.studyService = studyService;
     }
+    @Autowired
+    final void setPasswordVerificationService(PasswordVerificationService passwordVerificationService) {
+        this.passwordVerificationService = passwordVerificationService;
+    }
     
     // Provided to override in tests
     protected DateTime getModifiedOn() {
@@ -285,7 +289,7 @@ public class AuthenticationService {
         }
         Account account = accountDao.getAccount(signIn.getAccountId())
                 .orElseThrow(() -> new EntityNotFoundException(Account.class));
-        accountSecretDao.verifySecret(REAUTH, account.getId(), signIn.getReauthToken(), ROTATIONS)
+        accountSecretService.verifySecret(REAUTH, account.getId(), signIn.getReauthToken(), ROTATIONS)
             .orElseThrow(() -> new EntityNotFoundException(Account.class));
         checkStatusFlags(app, account, signIn);
         return account;
@@ -315,7 +319,7 @@ public class AuthenticationService {
 
         Account account = accountDao.getAccount(signIn.getAccountId())
                 .orElseThrow(() -> new EntityNotFoundException(Account.class));
-        accountSecretDao.verifySecret(REAUTH, account.getId(), signIn.getReauthToken(), ROTATIONS)
+        accountSecretService.verifySecret(REAUTH, account.getId(), signIn.getReauthToken(), ROTATIONS)
             .orElseThrow(() -> new EntityNotFoundException(Account.class));
         checkStatusFlags(app, account, signIn);        
         
@@ -365,7 +369,7 @@ public class AuthenticationService {
     }
     
     public void deleteReauthToken(String userId) {
-        accountSecretDao.removeSecrets(REAUTH, userId);
+        accountSecretService.removeSecrets(REAUTH, userId);
     }
 
     public IdentifierHolder signUp(App app, StudyParticipant participant) {
@@ -686,7 +690,7 @@ public class AuthenticationService {
                 account.setPhoneVerified(TRUE);
             }
             account.setModifiedOn(getModifiedOn());
-            accountDao.updateAccount(account);    
+            accountDao.updateAccount(account);
         }        
     }
 
@@ -739,7 +743,7 @@ public class AuthenticationService {
             account.setReauthToken(null);
         } else {
             String reauthToken = generateReauthToken();
-            accountSecretDao.createSecret(REAUTH, account.getId(), reauthToken);
+            accountSecretService.createSecret(REAUTH, account.getId(), reauthToken);
             session.setReauthToken(reauthToken);
         }
         
@@ -875,7 +879,10 @@ public class AuthenticationService {
             throw new EntityNotFoundException(Account.class);
         }
         try {
-            if (!account.getPasswordAlgorithm().checkHash(account.getPasswordHash(), plaintext)) {
+            // Hashing runs on a bounded pool of threads, and throws a 503 if the server is handling too many 
+            // sign-ins. 
+            if (!passwordVerificationService.checkHash(account.getPasswordAlgorithm(), account.getPasswordHash(),
+                    plaintext)) {
                 // To prevent enumeration attacks, if the credential doesn't match, throw 404 account not found.
                 throw new EntityNotFoundException(Account.class);
             }
@@ -0,0 +1,122 @@
+package org.sagebionetworks.bridge.services;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import org.sagebionetworks.bridge.config.BridgeConfig;
+import org.sagebionetworks.bridge.models.Metrics;
+
+/**
+ * Checks each request's MySQL, DynamoDB and Redis call counts against a budget, and logs a warning when a request
+ * goes over. Most requests make a handful of calls; a request that makes many more is usually making one call for
+ * each item in a list (an N+1 pattern). Each backend has a default budget, and routes that legitimately make more
+ * calls can have their own, keyed by HTTP method and the Spring handler's path pattern (e.g.
+ * "GET /v3/participants/{userId}").
+ */
+@Component
+public class CallBudgetService {
+    private static final Logger LOG = LoggerFactory.getLogger(CallBudgetService.class);
+
+    // Package-scoped for unit tests.
+    static final List<String> BACKENDS = ImmutableList.of(Metrics.BACKEND_MYSQL, Metrics.BACKEND_DYNAMODB,
+            Metrics.BACKEND_REDIS);
+    static final String CONFIG_KEY_PREFIX = "call.budget.";
+    static final String CONFIG_KEY_ROUTES = "call.budget.routes";
+
+    private static final Splitter WHITESPACE_SPLITTER = Splitter.on(' ').trimResults().omitEmptyStrings();
+    private static final Splitter BUDGET_SPLITTER = Splitter.on('=').trimResults();
+
+    private Map<String, Integer> defaultBudgets = ImmutableMap.of();
+    private Map<String, Map<String, Integer>> routeBudgets = ImmutableMap.of();
+
+    @Autowired
+    final void setConfig(BridgeConfig config) {
+        Map<String, Integer> defaultBudgets = new HashMap<>();
+        for (String backend : BACKENDS) {
+            defaultBudgets.put(backend, config.getPropertyAsInt(CONFIG_KEY_PREFIX + backend));
+        }
+        this.defaultBudgets = defaultBudgets;
+
+        Map<String, Map<String, Integer>> routeBudgets = new HashMap<>();
+        List<String> routeList = config.getPropertyAsList(CONFIG_KEY_ROUTES);
+        if (routeList != null) {
+            for (String oneRoute : routeList) {
+                parseRouteBudget(routeBudgets, oneRoute);
+            }
+        }
+        this.routeBudgets = routeBudgets;
+    }
+
+    // Each route's budget is "METHOD pattern backend=budget [backend=budget ...]". Backends without a budget here
+    // use the default.
+    private static void parseRouteBudget(Map<String, Map<String, Integer>> routeBudgets, String routeBudget) {
+        List<String> tokens = WHITESPACE_SPLITTER.splitToList(routeBudget);
+        if (tokens.size() < 3) {
+            if (!tokens.isEmpty()) {
+                LOG.warn("Ignoring call budget with no budgets: " + routeBudget);
+            }
+            return;
+        }
+        Map<String, Integer> budgets = new HashMap<>();
+        for (String oneBudget : tokens.subList(2, tokens.size())) {
+            List<String> parts = BUDGET_SPLITTER.splitToList(oneBudget);
+            if (parts.size() != 2 || !BACKENDS.contains(parts.get(0))) {
+                LOG.warn("Ignoring invalid call budget " + oneBudget + " for " + routeBudget);
+                continue;
+            }
+            try {
+                budgets.put(parts.get(0), Integer.parseInt(parts.get(1)));
+            } catch (NumberFormatException ex) {
+                LOG.warn("Ignoring invalid call budget " + oneBudget + " for " + routeBudget);
+            }
+        }
+        routeBudgets.put(routeKey(tokens.get(0), tokens.get(1)), budgets);
+    }
+
+    private static String routeKey(String method, String pattern) {
+        return method + " " + pattern;
+    }
+
+    /** The budget for calls to the given backend from the given route. 0 means there is no budget. */
+    public int getBudget(String method, String pattern, String backend) {
+        Map<String, Integer> budgets = routeBudgets.get(routeKey(method, pattern));
+        if (budgets != null && budgets.containsKey(backend)) {
+            return budgets.get(backend);
+        }
+        return defaultBudgets.getOrDefault(backend, 0);
+    }
+
+    /**
+     * Checks the calls counted in the request's metrics against the route's budgets. If any are over budget, logs a
+     * warning and records the backends in the metrics. Returns the backends that were over budget.
+     */
+    public Set<String> checkBudget(String method, String pattern, Metrics metrics) {
+        Set<String> exceeded = new TreeSet<>();
+        StringBuilder sb = new StringBuilder();
+        for (String backend : BACKENDS) {
+            int budget = getBudget(method, pattern, backend);
+            int count = metrics.getBackendCallCount(backend);
+            if (budget > 0 && count > budget) {
+                exceeded.add(backend);
+                sb.append(" ").append(backend).append("=").append(count).append("/").append(budget);
+            }
+        }
+        if (!exceeded.isEmpty()) {
+            metrics.setCallBudgetExceeded(exceeded);
+            LOG.warn("Request " + metrics.getJson().path("request_id").asText() + " to " + routeKey(method, pattern)
+                    + " exceeded its call budget:" + sb);
+        }
+        return exceeded;
+    }
+}
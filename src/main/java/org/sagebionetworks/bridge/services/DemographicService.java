@@ -5,6 +5,7 @@ import static org.sagebionetworks.bridge.BridgeConstants.API_MINIMUM_PAGE_SIZE;
 import static org.sagebionetworks.bridge.BridgeConstants.PAGE_SIZE_ERROR;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.Optional;
 
 import org.sagebionetworks.bridge.BridgeUtils;
@@ -212,6 +213,20 @@ public class DemographicService {
         return demographicDao.getDemographicUser(appId, studyId, userId);
     }
 
+    /**
+     * Fetches all of a user's DemographicUsers in an app, both app-level and
+     * study-level, in a single query.
+     * 
+     * @param appId  The appId of the app which contains the DemographicUsers to
+     *               fetch.
+     * @param userId The userId of the user to fetch demographics for.
+     * @return The fetched DemographicUsers. App-level DemographicUsers have a null
+     *         studyId.
+     */
+    public List<DemographicUser> getAllDemographicUsersForUser(String appId, String userId) {
+        return demographicDao.getAllDemographicUsersForUser(appId, userId);
+    }
+
     /**
      * Fetches all app-level DemographicUsers for an app or all study-level
      * DemographicUsers for a study.
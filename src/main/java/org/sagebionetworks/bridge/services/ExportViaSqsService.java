@@ -1,25 +1,18 @@
 package org.sagebionetworks.bridge.services;
 
-import com.amazonaws.services.sqs.AmazonSQS;
-import com.amazonaws.services.sqs.model.SendMessageResult;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.joda.time.DateTime;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import org.sagebionetworks.bridge.BridgeConstants;
-import org.sagebionetworks.bridge.config.BridgeConfig;
 
 /** Implementation of ExportService using SQS. */
 @Component
 public class ExportViaSqsService implements ExportService {
-    private static final Logger LOG = LoggerFactory.getLogger(ExportViaSqsService.class);
-
     private static final ObjectMapper JSON_OBJECT_MAPPER = new ObjectMapper();
 
     // constants - these are package scoped so unit tests can access them
@@ -30,19 +23,12 @@ public class ExportViaSqsService implements ExportService {
     static final String REQUEST_KEY_TAG = "tag";
     static final String REQUEST_KEY_USE_LAST_EXPORT_TIME = "useLastExportTime";
 
-    private AmazonSQS sqsClient;
-    private BridgeConfig config;
+    private SqsOutboxService sqsOutboxService;
 
-    /** Bridge config, used to get the SQS queue URL. */
+    /** SQS outbox, used to send the exporter request. */
     @Autowired
-    public final void setBridgeConfig(BridgeConfig bridgeConfig) {
-        this.config = bridgeConfig;
-    }
-
-    /** SQS client. */
-    @Autowired
-    public final void setSqsClient(AmazonSQS sqsClient) {
-        this.sqsClient = sqsClient;
+    public final void setSqsOutboxService(SqsOutboxService sqsOutboxService) {
+        this.sqsOutboxService = sqsOutboxService;
     }
 
     /** {@inheritDoc} */
@@ -68,11 +54,7 @@ public class ExportViaSqsService implements ExportService {
 
         String requestJsonText = JSON_OBJECT_MAPPER.writeValueAsString(requestNode);
 
-        // Note: SqsInitializer runs after Spring, so we need to grab the queue URL dynamically.
-        String sqsQueueUrl = config.getProperty(CONFIG_KEY_EXPORTER_SQS_QUEUE_URL);
-
         // send to SQS
-        SendMessageResult sqsResult = sqsClient.sendMessage(sqsQueueUrl, requestJsonText);
-        LOG.info("Sent request to SQS for " + tag + "; received message ID=" + sqsResult.getMessageId());
+        sqsOutboxService.sendMessage(CONFIG_KEY_EXPORTER_SQS_QUEUE_URL, requestJsonText, "request to SQS for " + tag);
     }
 }
@@ -20,8 +20,6 @@ import com.amazonaws.services.sns.model.CreateTopicResult;
 import com.amazonaws.services.sns.model.PublishResult;
 import com.amazonaws.services.sns.model.SubscribeRequest;
 import com.amazonaws.services.sns.model.SubscribeResult;
-import com.amazonaws.services.sqs.AmazonSQS;
-import com.amazonaws.services.sqs.model.SendMessageResult;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -274,13 +272,12 @@ public class Exporter3Service {
 
     private AccountService accountService;
     private AppService appService;
-    private BridgeConfig config;
     private HealthDataEx3Service healthDataEx3Service;
     private ParticipantVersionService participantVersionService;
     private RequestInfoService requestInfoService;
     private S3Helper s3Helper;
     private AmazonSNS snsClient;
-    private AmazonSQS sqsClient;
+    private SqsOutboxService sqsOutboxService;
     private StudyService studyService;
     private SynapseHelper synapseHelper;
     private Schedule2Service schedule2Service;
@@ -291,8 +288,6 @@ public class Exporter3Service {
 
     @Autowired
     public final void setConfig(BridgeConfig config) {
-        this.config = config;
-
         bridgeAdminTeamId = (long) config.getInt(CONFIG_KEY_TEAM_BRIDGE_ADMIN);
         bridgeStaffTeamId = (long) config.getInt(CONFIG_KEY_TEAM_BRIDGE_STAFF);
         exporterSynapseId = (long) config.getInt(CONFIG_KEY_EXPORTER_SYNAPSE_ID);
@@ -354,8 +349,8 @@ public class Exporter3Service {
     }
 
     @Autowired
-    final void setSqsClient(AmazonSQS sqsClient) {
-        this.sqsClient = sqsClient;
+    final void setSqsOutboxService(SqsOutboxService sqsOutboxService) {
+        this.sqsOutboxService = sqsOutboxService;
     }
 
     @Autowired
@@ -979,13 +974,9 @@ public class Exporter3Service {
                     ex);
         }
 
-        // Note: SqsInitializer runs after Spring, so we need to grab the queue URL dynamically.
-        String workerQueueUrl = config.getProperty(BridgeConstants.CONFIG_KEY_WORKER_SQS_URL);
-
-        // Sent to SQS.
-        SendMessageResult sqsResult = sqsClient.sendMessage(workerQueueUrl, requestJson);
-        LOG.info("Sent export request for app " + appId + " record " + recordId + "; received message ID=" +
-                sqsResult.getMessageId());
+        // Sent to SQS. This goes through the outbox, so upload completion doesn't wait on SQS.
+        sqsOutboxService.sendMessage(BridgeConstants.CONFIG_KEY_WORKER_SQS_URL, requestJson,
+                "export request for app " + appId + " record " + recordId);
     }
 
     // Export timeline from Bridge to Synapse (Some researchers only have access to Synapse, not Bridge,
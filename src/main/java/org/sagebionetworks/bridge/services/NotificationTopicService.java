@@ -7,17 +7,30 @@ import static org.sagebionetworks.bridge.models.CriteriaUtils.filterByCriteria;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
 import java.util.stream.Collectors;
 
+import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.Striped;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import org.sagebionetworks.bridge.async.AsyncHandler;
 import org.sagebionetworks.bridge.dao.NotificationRegistrationDao;
 import org.sagebionetworks.bridge.dao.NotificationTopicDao;
 import org.sagebionetworks.bridge.dao.TopicSubscriptionDao;
@@ -42,7 +55,39 @@ import com.google.common.collect.Sets;
 public class NotificationTopicService {
 
     private static final Logger LOG = LoggerFactory.getLogger(NotificationTopicService.class);
-    
+
+    // Criteria topics change rarely, but are read every time a participant's data groups change. Topic writes on this
+    // server invalidate the cache immediately; writes on other servers are picked up when the entry expires.
+    static final long CRITERIA_TOPIC_CACHE_EXPIRE_SECONDS = 60;
+
+    // Checking that a participant's stored subscriptions still exist in SNS costs one SNS call per subscription, so
+    // criteria-based reconciliation only does it once per interval for each health code. Package-scoped for unit tests.
+    static final long SUBSCRIPTION_CLEANUP_INTERVAL_SECONDS = 3600;
+    private static final long MAX_RECENT_CLEANUPS = 100000;
+
+    // Number of SNS subscribe/unsubscribe calls that can be in flight at once, across all participants.
+    private static final int SUBSCRIPTION_THREAD_COUNT = 10;
+
+    // Number of lock stripes used to make sure only one reconciliation runs at a time for a given health code.
+    private static final int HEALTH_CODE_LOCK_STRIPES = 64;
+
+    private final Cache<String, List<NotificationTopic>> criteriaTopicCache = CacheBuilder.newBuilder()
+            .expireAfterWrite(CRITERIA_TOPIC_CACHE_EXPIRE_SECONDS, TimeUnit.SECONDS).build();
+
+    // Health codes whose subscriptions were recently checked against SNS by criteria-based reconciliation.
+    private final Cache<String, Boolean> recentCleanupCache = CacheBuilder.newBuilder().maximumSize(MAX_RECENT_CLEANUPS)
+            .expireAfterWrite(SUBSCRIPTION_CLEANUP_INTERVAL_SECONDS, TimeUnit.SECONDS).build();
+
+    // Latest pending reconciliation request for each health code. Requests that arrive while one is already pending
+    // replace it, so rapid changes collapse into a single run with the most recent criteria context.
+    private final Map<String, PendingSubscriptionUpdate> pendingSubscriptionUpdateMap = new ConcurrentHashMap<>();
+    private final Striped<Lock> healthCodeLocks = Striped.lock(HEALTH_CODE_LOCK_STRIPES);
+
+    private ExecutorService asyncExecutorService;
+
+    private ExecutorService subscriptionExecutorService = Executors.newFixedThreadPool(SUBSCRIPTION_THREAD_COUNT,
+            new ThreadFactoryBuilder().setNameFormat("sns-subscription-%d").setDaemon(true).build());
+
     private NotificationRegistrationDao registrationDao;
     
     private NotificationTopicDao topicDao;
@@ -70,6 +115,21 @@ public class NotificationTopicService {
     final void setSnsClient(AmazonSNS snsClient) {
         this.snsClient = snsClient;
     }
+
+    @Resource(name = "asyncExecutorService")
+    final void setAsyncExecutorService(ExecutorService asyncExecutorService) {
+        this.asyncExecutorService = asyncExecutorService;
+    }
+
+    /** Executor that issues SNS subscribe and unsubscribe calls. Package-scoped so unit tests can run them inline. */
+    final void setSubscriptionExecutorService(ExecutorService subscriptionExecutorService) {
+        this.subscriptionExecutorService = subscriptionExecutorService;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        subscriptionExecutorService.shutdown();
+    }
     
     public List<NotificationTopic> listTopics(String appId, boolean includeDeleted) {
         checkNotNull(appId);
@@ -89,7 +149,9 @@ public class NotificationTopicService {
         
         Validate.entityThrowingException(NotificationTopicValidator.INSTANCE, topic);
         
-        return topicDao.createTopic(topic);
+        NotificationTopic createdTopic = topicDao.createTopic(topic);
+        criteriaTopicCache.invalidate(topic.getAppId());
+        return createdTopic;
     }
     
     public NotificationTopic updateTopic(NotificationTopic topic) {
@@ -97,7 +159,9 @@ public class NotificationTopicService {
         
         Validate.entityThrowingException(NotificationTopicValidator.INSTANCE, topic);
         
-        return topicDao.updateTopic(topic);
+        NotificationTopic updatedTopic = topicDao.updateTopic(topic);
+        criteriaTopicCache.invalidate(topic.getAppId());
+        return updatedTopic;
     }
     
     public void deleteTopic(String appId, String guid) {
@@ -105,6 +169,7 @@ public class NotificationTopicService {
         checkNotNull(guid);
         
         topicDao.deleteTopic(appId, guid);
+        criteriaTopicCache.invalidate(appId);
     }
     
     public void deleteTopicPermanently(String appId, String guid) {
@@ -112,6 +177,7 @@ public class NotificationTopicService {
         checkNotNull(guid);
         
         topicDao.deleteTopicPermanently(appId, guid);
+        criteriaTopicCache.invalidate(appId);
     }
     
     /**
@@ -121,6 +187,7 @@ public class NotificationTopicService {
         checkNotNull(appId);
         
         topicDao.deleteAllTopics(appId);
+        criteriaTopicCache.invalidate(appId);
     }
     
     public void sendNotification(String appId, String guid, NotificationMessage message) {
@@ -159,6 +226,24 @@ public class NotificationTopicService {
         return statuses;
     }
 
+    /**
+     * Schedules {@link #manageCriteriaBasedSubscriptions} to run asynchronously for the given participant. If an
+     * update is already pending for this health code, it is replaced with this one, so that a burst of changes results
+     * in a single reconciliation against the most recent criteria context.
+     */
+    public void manageCriteriaBasedSubscriptionsAsync(String appId, CriteriaContext context, String healthCode) {
+        checkNotNull(appId);
+        checkNotNull(context);
+        checkNotNull(healthCode);
+        checkArgument(isNotBlank(healthCode));
+
+        PendingSubscriptionUpdate previousUpdate = pendingSubscriptionUpdateMap.put(healthCode,
+                new PendingSubscriptionUpdate(appId, context));
+        if (previousUpdate == null) {
+            asyncExecutorService.execute(new AsyncSubscriptionHandler(healthCode));
+        }
+    }
+
     /**
      * Manages criteria-based subscriptions for the given participant with the given criteria context. All topics that
      * match the criteria context will be subscribed. All other topics will be unsubscribed. This only considers
@@ -172,9 +257,7 @@ public class NotificationTopicService {
 
         // Check app for topics. Only consider topics with criteria. Include logically deleted topics 
         // so that if they are undeleted, the user's subscription state is correct
-        List<NotificationTopic> allTopicList = topicDao.listTopics(appId, true);
-        List<NotificationTopic> criteriaTopicList = allTopicList.stream()
-                .filter(topic -> topic.getCriteria() != null).collect(Collectors.toList());
+        List<NotificationTopic> criteriaTopicList = getCriteriaTopics(appId);
         if (criteriaTopicList.isEmpty()) {
             // Short cut: No topics in the app means nothing to manage.
             return;
@@ -191,10 +274,48 @@ public class NotificationTopicService {
         Set<String> desiredTopicGuidSet = filterByCriteria(context, criteriaTopicList, null).stream()
                 .map(NotificationTopic::getGuid).collect(Collectors.toSet());
 
-        // Subscribe user to topics.
+        // Data groups can change many times in a session, so only repair orphaned subscriptions once per interval. 
+        // In between, diff against the stored subscriptions. Reconciliations for a health code run one at a time.
+        boolean cleanup = recentCleanupCache.getIfPresent(healthCode) == null;
+        if (cleanup) {
+            recentCleanupCache.put(healthCode, Boolean.TRUE);
+        }
+
+        // Diff against the current subscriptions of each registration, and only subscribe or unsubscribe the topics 
+        // that changed. These calls are independent, so issue them concurrently and wait for all of them to finish.
+        List<CompletableFuture<Boolean>> futureList = new ArrayList<>();
         for (NotificationRegistration oneRegistration : registrationList) {
-            setSubscriptionsForRegistration(oneRegistration, criteriaTopicList, desiredTopicGuidSet);
+            // Cleanup also repairs subscriptions whose SNS subscription is gone, so they're subscribed again.
+            Set<String> subscribedTopicGuidSet = cleanup ? cleanupSubscriptions(oneRegistration)
+                    : subscriptionDao.listSubscriptions(oneRegistration).stream()
+                            .map(TopicSubscription::getTopicGuid).collect(Collectors.toSet());
+            for (NotificationTopic oneTopic : criteriaTopicList) {
+                boolean wantsSubscription = desiredTopicGuidSet.contains(oneTopic.getGuid());
+                boolean isCurrentlySubscribed = subscribedTopicGuidSet.contains(oneTopic.getGuid());
+                if (wantsSubscription && !isCurrentlySubscribed) {
+                    futureList.add(CompletableFuture.supplyAsync(() -> doSubscribe(oneRegistration, oneTopic),
+                            subscriptionExecutorService));
+                } else if (!wantsSubscription && isCurrentlySubscribed) {
+                    futureList.add(CompletableFuture.supplyAsync(() -> doUnsubscribe(oneRegistration, oneTopic),
+                            subscriptionExecutorService));
+                }
+            }
         }
+        if (!futureList.isEmpty()) {
+            CompletableFuture.allOf(futureList.toArray(new CompletableFuture[0])).join();
+        }
+    }
+
+    // Helper method which returns the app's topics that have criteria, including logically deleted topics. This is
+    // cached per app, since it's read on every data group change and registration.
+    private List<NotificationTopic> getCriteriaTopics(String appId) {
+        List<NotificationTopic> criteriaTopicList = criteriaTopicCache.getIfPresent(appId);
+        if (criteriaTopicList == null) {
+            criteriaTopicList = topicDao.listTopics(appId, true).stream()
+                    .filter(topic -> topic.getCriteria() != null).collect(ImmutableList.toImmutableList());
+            criteriaTopicCache.put(appId, criteriaTopicList);
+        }
+        return criteriaTopicList;
     }
 
     /**
@@ -332,4 +453,44 @@ public class NotificationTopicService {
         }
         return subscribedTopicGuids;
     }
+
+    // The app ID and criteria context of a pending subscription update.
+    private static final class PendingSubscriptionUpdate {
+        private final String appId;
+        private final CriteriaContext context;
+
+        PendingSubscriptionUpdate(String appId, CriteriaContext context) {
+            this.appId = appId;
+            this.context = context;
+        }
+    }
+
+    /**
+     * Async handler that runs the latest pending subscription update for a health code. Holds the health code's lock
+     * so that at most one reconciliation runs per participant at a time. Package-scoped for unit tests.
+     */
+    class AsyncSubscriptionHandler extends AsyncHandler {
+        private final String healthCode;
+
+        /** Constructs the async handler with the health code to process. */
+        AsyncSubscriptionHandler(String healthCode) {
+            this.healthCode = healthCode;
+        }
+
+        @Override
+        protected void handle() {
+            Lock lock = healthCodeLocks.get(healthCode);
+            lock.lock();
+            try {
+                // Removing the update under the lock means any update that arrives after this point schedules a new
+                // handler, which waits for this one to finish.
+                PendingSubscriptionUpdate update = pendingSubscriptionUpdateMap.remove(healthCode);
+                if (update != null) {
+                    manageCriteriaBasedSubscriptions(update.appId, update.context, healthCode);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
 }
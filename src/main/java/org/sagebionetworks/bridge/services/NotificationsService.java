@@ -151,7 +151,7 @@ public class NotificationsService {
         }
 
         // Manage notifications, if necessary.
-        notificationTopicService.manageCriteriaBasedSubscriptions(context.getAppId(), context,
+        notificationTopicService.manageCriteriaBasedSubscriptionsAsync(context.getAppId(), context,
                 registration.getHealthCode());
 
         return createdRegistration;
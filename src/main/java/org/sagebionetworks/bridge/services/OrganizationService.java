@@ -207,7 +207,7 @@ public class OrganizationService {
                 .withAdminOnly(null) 
                 .withOrgMembership(identifier).build();
         
-        return accountService.getPagedAccountSummaries(appId, scopedSearch);
+        return accountService.getPagedAccountSummariesFromReplica(appId, scopedSearch);
     }
     
     public PagedResourceList<AccountSummary> getUnassignedAdmins(String appId, AccountSummarySearch search) {
@@ -218,7 +218,7 @@ public class OrganizationService {
             .withAdminOnly(true)
             .withOrgMembership("<none>").build();
 
-        return accountService.getPagedAccountSummaries(appId, scopedSearch);
+        return accountService.getPagedAccountSummariesFromReplica(appId, scopedSearch);
     }
     
     /**
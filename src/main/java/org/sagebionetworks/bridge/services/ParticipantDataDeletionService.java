@@ -0,0 +1,229 @@
+package org.sagebionetworks.bridge.services;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.joda.time.DateTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import org.sagebionetworks.bridge.config.BridgeConfig;
+import org.sagebionetworks.bridge.dao.ParticipantDataDeletionDao;
+import org.sagebionetworks.bridge.models.accounts.ParticipantDataDeletion;
+import org.sagebionetworks.bridge.models.accounts.ParticipantDataDeletion.Step;
+import org.sagebionetworks.bridge.time.DateUtils;
+
+/**
+ * Deletes a deleted account's data from DynamoDB (health data, uploads, activities, events and reports) in the
+ * background, so deleting an account doesn't hold a request thread for as long as it takes to delete all of it. A
+ * fixed number of deletions run at once, and each deletes from one table at a time at the DynamoBatchDeleter's
+ * per-table rate, so together they use a bounded share of each table's write capacity.
+ *
+ * Each deletion is recorded in MySQL, along with the step it is on, before it starts. If a server stops part-way
+ * through a deletion, the deletion stops making progress, and a server that finds it resumes it from the step it
+ * was on. Every step is idempotent, so it is safe to run a step again (or, rarely, on two servers at once).
+ */
+@Component
+public class ParticipantDataDeletionService {
+    private static final Logger LOG = LoggerFactory.getLogger(ParticipantDataDeletionService.class);
+
+    // Package-scoped for unit tests.
+    static final String CONFIG_KEY_THREADS = "participant.data.deletion.threads";
+    static final String CONFIG_KEY_RESUME_MINUTES = "participant.data.deletion.resume.minutes";
+    static final int DEFAULT_THREADS = 2;
+    static final int DEFAULT_RESUME_MINUTES = 30;
+    static final int RESUME_BATCH_SIZE = 100;
+
+    private ParticipantDataDeletionDao deletionDao;
+    private HealthDataService healthDataService;
+    private HealthDataEx3Service healthDataEx3Service;
+    private UploadService uploadService;
+    private ScheduledActivityService scheduledActivityService;
+    private ActivityEventService activityEventService;
+    private ReportService reportService;
+
+    private int resumeMinutes = DEFAULT_RESUME_MINUTES;
+    private ScheduledExecutorService executor = newExecutor(DEFAULT_THREADS);
+
+    // Deletions running on this server, so they aren't resumed while they run.
+    private final Set<String> runningUserIds = ConcurrentHashMap.newKeySet();
+
+    @Autowired
+    final void setConfig(BridgeConfig config) {
+        int threads = config.getPropertyAsInt(CONFIG_KEY_THREADS);
+        int resumeMinutes = config.getPropertyAsInt(CONFIG_KEY_RESUME_MINUTES);
+
+        this.resumeMinutes = resumeMinutes > 0 ? resumeMinutes : DEFAULT_RESUME_MINUTES;
+        setExecutor(newExecutor(threads > 0 ? threads : DEFAULT_THREADS));
+    }
+
+    @Autowired
+    final void setParticipantDataDeletionDao(ParticipantDataDeletionDao deletionDao) {
+        this.deletionDao = deletionDao;
+    }
+
+    @Autowired
+    final void setHealthDataService(HealthDataService healthDataService) {
+        this.healthDataService = healthDataService;
+    }
+
+    @Autowired
+    final void setHealthDataEx3Service(HealthDataEx3Service healthDataEx3Service) {
+        this.healthDataEx3Service = healthDataEx3Service;
+    }
+
+    @Autowired
+    final void setUploadService(UploadService uploadService) {
+        this.uploadService = uploadService;
+    }
+
+    @Autowired
+    final void setScheduledActivityService(ScheduledActivityService scheduledActivityService) {
+        this.scheduledActivityService = scheduledActivityService;
+    }
+
+    @Autowired
+    final void setActivityEventService(ActivityEventService activityEventService) {
+        this.activityEventService = activityEventService;
+    }
+
+    @Autowired
+    final void setReportService(ReportService reportService) {
+        this.reportService = reportService;
+    }
+
+    /** Executor that runs the deletions and looks for stalled ones. Package-scoped for unit tests. */
+    final void setExecutor(ScheduledExecutorService executor) {
+        this.executor.shutdown();
+        this.executor = executor;
+    }
+
+    private static ScheduledExecutorService newExecutor(int threads) {
+        return Executors.newScheduledThreadPool(threads,
+                new ThreadFactoryBuilder().setNameFormat("ParticipantDataDeletion-%d").setDaemon(true).build());
+    }
+
+    @PostConstruct
+    public void start() {
+        executor.scheduleWithFixedDelay(this::resumeStalledDeletions, resumeMinutes, resumeMinutes,
+                TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Records a deletion of the account's data and starts it in the background. Call this before deleting the
+     * account, so the deletion is recorded even if this server stops before it finishes.
+     */
+    public void startDeletion(String appId, String userId, String healthCode) {
+        checkNotNull(appId);
+        checkNotNull(userId);
+        checkNotNull(healthCode);
+
+        DateTime now = DateUtils.getCurrentDateTime();
+        ParticipantDataDeletion deletion = new ParticipantDataDeletion();
+        deletion.setAppId(appId);
+        deletion.setUserId(userId);
+        deletion.setHealthCode(healthCode);
+        deletion.setNextStep(Step.values()[0]);
+        deletion.setRequestedOn(now);
+        deletion.setModifiedOn(now);
+        deletionDao.saveDeletion(deletion);
+
+        executor.execute(() -> runDeletion(deletion));
+    }
+
+    /**
+     * Resumes deletions that haven't made progress in a while, because the server running them stopped. Each is
+     * marked as modified before it is resumed, so other servers don't resume it too. Package-scoped for unit tests.
+     */
+    void resumeStalledDeletions() {
+        // This runs on a schedule, which stops if it throws.
+        try {
+            DateTime now = DateUtils.getCurrentDateTime();
+            List<ParticipantDataDeletion> stalledList = deletionDao.getStalledDeletions(
+                    now.minusMinutes(resumeMinutes), RESUME_BATCH_SIZE);
+            for (ParticipantDataDeletion deletion : stalledList) {
+                if (runningUserIds.contains(deletion.getUserId())) {
+                    continue;
+                }
+                LOG.info("Resuming participant data deletion for user " + deletion.getUserId() + " at step "
+                        + deletion.getNextStep());
+                deletion.setModifiedOn(now);
+                deletionDao.saveDeletion(deletion);
+                executor.execute(() -> runDeletion(deletion));
+            }
+        } catch (RuntimeException ex) {
+            LOG.error("Error resuming stalled participant data deletions", ex);
+        }
+    }
+
+    /**
+     * Runs the deletion's steps, starting with its next step, recording progress after each. If a step fails, the
+     * deletion is left as it is, to be resumed later. Package-scoped for unit tests.
+     */
+    void runDeletion(ParticipantDataDeletion deletion) {
+        String userId = deletion.getUserId();
+        if (!runningUserIds.add(userId)) {
+            return;
+        }
+        try {
+            long startMillis = System.currentTimeMillis();
+            Step[] steps = Step.values();
+            for (int i = deletion.getNextStep().ordinal(); i < steps.length; i++) {
+                runStep(steps[i], deletion.getAppId(), deletion.getHealthCode());
+                if (i + 1 < steps.length) {
+                    deletion.setNextStep(steps[i + 1]);
+                    deletion.setModifiedOn(DateUtils.getCurrentDateTime());
+                    deletionDao.saveDeletion(deletion);
+                }
+            }
+            deletionDao.deleteDeletion(userId);
+            LOG.info("Deleted participant data for user " + userId + " in "
+                    + (System.currentTimeMillis() - startMillis) + " ms");
+        } catch (RuntimeException ex) {
+            LOG.error("Error deleting participant data for user " + userId + " at step " + deletion.getNextStep()
+                    + ", will resume later", ex);
+        } finally {
+            runningUserIds.remove(userId);
+        }
+    }
+
+    private void runStep(Step step, String appId, String healthCode) {
+        switch (step) {
+            case HEALTH_DATA:
+                healthDataService.deleteRecordsForHealthCode(healthCode);
+                break;
+            case HEALTH_DATA_EX3:
+                healthDataEx3Service.deleteRecordsForHealthCode(healthCode);
+                break;
+            case UPLOADS:
+                uploadService.deleteUploadsForHealthCode(healthCode);
+                break;
+            case SCHEDULED_ACTIVITIES:
+                scheduledActivityService.deleteActivitiesForUser(healthCode);
+                break;
+            case ACTIVITY_EVENTS:
+                activityEventService.deleteActivityEventsForDeletedAccount(healthCode);
+                break;
+            case PARTICIPANT_REPORTS:
+                reportService.deleteParticipantReportsForHealthCode(appId, healthCode);
+                break;
+        }
+    }
+}
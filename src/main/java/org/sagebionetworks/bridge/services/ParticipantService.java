@@ -366,7 +366,7 @@ public class ParticipantService {
             Set<String> newDataGroups = addToSet(search.getAllOfGroups(), TEST_USER_GROUP);
             search = search.toBuilder().withAllOfGroups(newDataGroups).build();
         }
-        return accountService.getPagedAccountSummaries(app.getIdentifier(), search);
+        return accountService.getPagedAccountSummariesFromReplica(app.getIdentifier(), search);
     }
 
     /**
@@ -410,8 +410,9 @@ public class ParticipantService {
             }
         }
 
-        if (app.getAccountLimit() > 0) {
-            throwExceptionIfLimitMetOrExceeded(app);
+        // The limit is on all of the app's accounts, not just the ones the caller can see.
+        if (accountService.isAccountLimitMetOrExceeded(app)) {
+            throw new LimitExceededException(String.format(BridgeConstants.MAX_USERS_ERROR, app.getAccountLimit()));
         }
         
         StudyParticipantValidator validator = new StudyParticipantValidator(studyService, app, true);
@@ -530,14 +531,6 @@ public class ParticipantService {
         accountService.updateAccount(account);
     }
 
-    private void throwExceptionIfLimitMetOrExceeded(App app) {
-        // It's sufficient to get minimum number of records, we're looking only at the total of all accounts
-        PagedResourceList<AccountSummary> summaries = getPagedAccountSummaries(app, AccountSummarySearch.EMPTY_SEARCH);
-        if (summaries.getTotal() >= app.getAccountLimit()) {
-            throw new LimitExceededException(String.format(BridgeConstants.MAX_USERS_ERROR, app.getAccountLimit()));
-        }
-    }
-    
     private void updateAccountAndRoles(App app, Account account, StudyParticipant participant, boolean isNew) {
         String targetAccountId = isNew ? null : account.getId();
         for (String studyId : participant.getExternalIds().keySet()) {
@@ -3,25 +3,28 @@ package org.sagebionetworks.bridge.services;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
-import com.amazonaws.services.sqs.AmazonSQS;
-import com.amazonaws.services.sqs.model.SendMessageResult;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import org.sagebionetworks.bridge.BridgeConstants;
 import org.sagebionetworks.bridge.BridgeUtils;
-import org.sagebionetworks.bridge.config.BridgeConfig;
 import org.sagebionetworks.bridge.dao.ParticipantVersionDao;
 import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
 import org.sagebionetworks.bridge.exceptions.EntityNotFoundException;
@@ -32,21 +35,21 @@ import org.sagebionetworks.bridge.models.accounts.SharingScope;
 import org.sagebionetworks.bridge.models.apps.App;
 import org.sagebionetworks.bridge.models.demographics.Demographic;
 import org.sagebionetworks.bridge.models.demographics.DemographicUser;
+import org.sagebionetworks.bridge.models.demographics.DemographicValue;
 import org.sagebionetworks.bridge.models.worker.Ex3ParticipantVersionRequest;
 import org.sagebionetworks.bridge.models.worker.WorkerRequest;
 import org.sagebionetworks.bridge.time.DateUtils;
 
 @Component
 public class ParticipantVersionService {
-    private static final Logger LOG = LoggerFactory.getLogger(ParticipantVersionService.class);
-
     static final String WORKER_NAME_EX_3_PARTICIPANT_VERSION = "Ex3ParticipantVersionWorker";
 
+    private static final HashFunction FINGERPRINT_HASH_FUNCTION = Hashing.sha256();
+
     private AppService appService;
     private DemographicService demographicService;
-    private BridgeConfig config;
     private ParticipantVersionDao participantVersionDao;
-    private AmazonSQS sqsClient;
+    private SqsOutboxService sqsOutboxService;
 
     @Autowired
     public final void setAppService(AppService appService) {
@@ -58,19 +61,14 @@ public class ParticipantVersionService {
         this.demographicService = demographicService;
     }
 
-    @Autowired
-    public final void setConfig(BridgeConfig config) {
-        this.config = config;
-    }
-
     @Autowired
     public final void setParticipantVersionDao(ParticipantVersionDao participantVersionDao) {
         this.participantVersionDao = participantVersionDao;
     }
 
     @Autowired
-    public final void setSqsClient(AmazonSQS sqsClient) {
-        this.sqsClient = sqsClient;
+    public final void setSqsOutboxService(SqsOutboxService sqsOutboxService) {
+        this.sqsOutboxService = sqsOutboxService;
     }
 
     /** Creates a participant version from an account. */
@@ -124,22 +122,18 @@ public class ParticipantVersionService {
         participantVersion.setStudyMemberships(BridgeUtils.mapStudyMemberships(account));
         participantVersion.setTimeZone(account.getClientTimeZone());
 
-        Map<String, Demographic> appDemographics = ImmutableMap.of();
-        Optional<DemographicUser> appDemographicUser = demographicService.getDemographicUser(account.getAppId(), null,
-                account.getId());
-        if (appDemographicUser.isPresent()) {
-            appDemographics = appDemographicUser.get().getDemographics();
+        // Fetch all of the user's demographics (app-level and every study) at once. App-level demographics have a
+        // null study ID.
+        Map<String, Map<String, Demographic>> demographicsByStudyId = new HashMap<>();
+        for (DemographicUser demographicUser : demographicService.getAllDemographicUsersForUser(account.getAppId(),
+                account.getId())) {
+            demographicsByStudyId.put(demographicUser.getStudyId(), demographicUser.getDemographics());
         }
-        participantVersion.setAppDemographics(appDemographics);
+
+        participantVersion.setAppDemographics(demographicsByStudyId.getOrDefault(null, ImmutableMap.of()));
         Map<String, Map<String, Demographic>> studyDemographics = new HashMap<>();
         for (String studyId : participantVersion.getStudyMemberships().keySet()) {
-            Map<String, Demographic> oneStudyDemographics = ImmutableMap.of();
-            Optional<DemographicUser> studyDemographicUser = demographicService.getDemographicUser(account.getAppId(),
-                    studyId, account.getId());
-            if (studyDemographicUser.isPresent()) {
-                oneStudyDemographics = studyDemographicUser.get().getDemographics();
-            }
-            studyDemographics.put(studyId, oneStudyDemographics);
+            studyDemographics.put(studyId, demographicsByStudyId.getOrDefault(studyId, ImmutableMap.of()));
         }
         participantVersion.setStudyDemographics(studyDemographics);
 
@@ -153,14 +147,18 @@ public class ParticipantVersionService {
         checkNotNull(participantVersion.getAppId());
         checkNotNull(participantVersion.getHealthCode());
 
-        // Get the old version, so we increment the version number.
+        participantVersion.setFingerprint(makeFingerprint(participantVersion));
+
+        // Get the old version, so we increment the version number. We only need the version number, createdOn, and
+        // fingerprint.
         long now = DateUtils.getCurrentMillisFromEpoch();
-        Optional<ParticipantVersion> existingOpt = getLatestParticipantVersionForHealthCode(
-                participantVersion.getAppId(), participantVersion.getHealthCode());
+        Optional<ParticipantVersion> existingOpt = participantVersionDao
+                .getLatestParticipantVersionSummaryForHealthCode(participantVersion.getAppId(),
+                        participantVersion.getHealthCode());
         if (existingOpt.isPresent()) {
             // Shortcut: If the participant version is unchanged, return early so we don't create a duplicate version.
             ParticipantVersion existing = existingOpt.get();
-            if (isIdenticalParticipantVersion(existing, participantVersion)) {
+            if (isUnchanged(existing, participantVersion)) {
                 return;
             }
 
@@ -189,6 +187,94 @@ public class ParticipantVersionService {
                 participantVersion.getParticipantVersion());
     }
 
+    // Returns true if the new participant version is the same as the existing (latest) version. The existing version
+    // only needs its version number and fingerprint. Versions created before fingerprints were added don't have one,
+    // so for those, we load the full version and compare attributes.
+    private boolean isUnchanged(ParticipantVersion existing, ParticipantVersion newVersion) {
+        if (existing.getFingerprint() != null) {
+            return existing.getFingerprint().equals(newVersion.getFingerprint());
+        }
+        Optional<ParticipantVersion> fullExisting = participantVersionDao.getParticipantVersion(
+                newVersion.getAppId(), newVersion.getHealthCode(), existing.getParticipantVersion());
+        return fullExisting.isPresent() && isIdenticalParticipantVersion(fullExisting.get(), newVersion);
+    }
+
+    // Makes a fingerprint of the non-key attributes of the participant version. This covers the same attributes as
+    // getParticipantVersionAttributes(), and ignores the same demographic fields (id, parent, and categoryName). Sets
+    // and maps are hashed in sorted order, so the fingerprint doesn't depend on iteration order. Null and empty
+    // collections are treated the same, since DDB can't store empty collections.
+    // Package-scoped for unit tests.
+    static String makeFingerprint(ParticipantVersion participantVersion) {
+        Hasher hasher = FINGERPRINT_HASH_FUNCTION.newHasher();
+
+        Set<String> dataGroups = participantVersion.getDataGroups();
+        putStrings(hasher, dataGroups != null ? new TreeSet<>(dataGroups) : null);
+        putStrings(hasher, participantVersion.getLanguages());
+        SharingScope sharingScope = participantVersion.getSharingScope();
+        putString(hasher, sharingScope != null ? sharingScope.name() : null);
+
+        Map<String, String> studyMemberships = sortedOrEmpty(participantVersion.getStudyMemberships());
+        hasher.putInt(studyMemberships.size());
+        for (Map.Entry<String, String> entry : studyMemberships.entrySet()) {
+            putString(hasher, entry.getKey());
+            putString(hasher, entry.getValue());
+        }
+        putString(hasher, participantVersion.getTimeZone());
+
+        putDemographics(hasher, participantVersion.getAppDemographics());
+        Map<String, Map<String, Demographic>> studyDemographics = sortedOrEmpty(
+                participantVersion.getStudyDemographics());
+        hasher.putInt(studyDemographics.size());
+        for (Map.Entry<String, Map<String, Demographic>> entry : studyDemographics.entrySet()) {
+            putString(hasher, entry.getKey());
+            putDemographics(hasher, entry.getValue());
+        }
+        return hasher.hash().toString();
+    }
+
+    private static void putDemographics(Hasher hasher, Map<String, Demographic> demographics) {
+        Map<String, Demographic> sortedDemographics = sortedOrEmpty(demographics);
+        hasher.putInt(sortedDemographics.size());
+        for (Map.Entry<String, Demographic> entry : sortedDemographics.entrySet()) {
+            putString(hasher, entry.getKey());
+            Demographic demographic = entry.getValue();
+            hasher.putBoolean(demographic.isMultipleSelect());
+            putString(hasher, demographic.getUnits());
+            List<DemographicValue> values = demographic.getValues();
+            hasher.putInt(values != null ? values.size() : -1);
+            if (values != null) {
+                for (DemographicValue value : values) {
+                    putString(hasher, value.getValue());
+                    putString(hasher, value.getInvalidity());
+                }
+            }
+        }
+    }
+
+    private static void putStrings(Hasher hasher, Collection<String> strings) {
+        if (strings == null || strings.isEmpty()) {
+            hasher.putInt(0);
+            return;
+        }
+        hasher.putInt(strings.size());
+        for (String string : strings) {
+            putString(hasher, string);
+        }
+    }
+
+    // Strings are length-prefixed, so that adjacent strings can't run together. Null is distinct from empty.
+    private static void putString(Hasher hasher, String string) {
+        if (string == null) {
+            hasher.putInt(-1);
+        } else {
+            hasher.putInt(string.length()).putString(string, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static <V> Map<String, V> sortedOrEmpty(Map<String, V> map) {
+        return map != null ? new TreeMap<>(map) : ImmutableMap.of();
+    }
+
     // Compares non-key attributes for participant versions. Returns true if they are the same, false if they are
     // different.
     // Package-scoped for unit tests.
@@ -277,13 +363,10 @@ public class ParticipantVersionService {
                     " healthcode " + healthCode + " version " + versionNum, ex);
         }
 
-        // Note: SqsInitializer runs after Spring, so we need to grab the queue URL dynamically.
-        String workerQueueUrl = config.getProperty(BridgeConstants.CONFIG_KEY_WORKER_SQS_URL);
-
         // Sent to SQS.
-        SendMessageResult sqsResult = sqsClient.sendMessage(workerQueueUrl, requestJson);
-        LOG.info("Sent export participant version request for app " + appId + " healthCode " + healthCode +
-                " version " + versionNum + "; received message ID=" + sqsResult.getMessageId());
+        sqsOutboxService.sendMessage(BridgeConstants.CONFIG_KEY_WORKER_SQS_URL, requestJson,
+                "export participant version request for app " + appId + " healthCode " + healthCode +
+                        " version " + versionNum);
     }
 
     /** Delete all participant versions for the given health code. This is called by integration tests. */
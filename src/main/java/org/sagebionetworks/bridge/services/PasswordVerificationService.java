@@ -0,0 +1,204 @@
+package org.sagebionetworks.bridge.services;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.security.spec.InvalidKeySpecException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PreDestroy;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import org.sagebionetworks.bridge.config.BridgeConfig;
+import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
+import org.sagebionetworks.bridge.exceptions.ServiceUnavailableException;
+import org.sagebionetworks.bridge.json.BridgeObjectMapper;
+import org.sagebionetworks.bridge.models.accounts.PasswordAlgorithm;
+import org.sagebionetworks.bridge.util.LatencyHistogram;
+
+/**
+ * Checks passwords and other secrets against their stored hashes. Hashing is deliberately expensive, so it runs on a
+ * small, dedicated pool of threads rather than on the request thread. This bounds the CPU that a sign-in storm (or a
+ * credential-stuffing attack) can take from other requests. Requests wait in a FIFO queue; when the queue is full, or
+ * a request waits too long, the caller gets a 503 and can retry.
+ *
+ * The outcome of each check is remembered for a few minutes, so a client that repeats a sign-in with the same
+ * credentials doesn't cost another hash. Entries are keyed by a keyed hash (with a random key that is never stored) of
+ * the stored hash and the plaintext, so neither the plaintext nor anything that can be used to test guesses offline
+ * is kept, and changing the password invalidates the entry.
+ */
+@Component
+public class PasswordVerificationService {
+    // Package-scoped for unit tests.
+    static final String CONFIG_KEY_THREADS = "password.hashing.threads";
+    static final String CONFIG_KEY_MAX_QUEUE = "password.hashing.max.queue";
+    static final String CONFIG_KEY_MAX_WAIT_SECONDS = "password.hashing.max.wait.seconds";
+    static final String CONFIG_KEY_CACHE_SECONDS = "password.verification.cache.seconds";
+    static final int DEFAULT_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    static final int DEFAULT_MAX_QUEUE = 64;
+    static final int DEFAULT_MAX_WAIT_SECONDS = 10;
+    static final int DEFAULT_CACHE_SECONDS = 300;
+    static final int MAX_CACHED_CREDENTIALS = 10000;
+    static final int RETRY_AFTER_SECONDS = 5;
+    static final String TOO_BUSY_ERROR = "The server is handling too many sign-in requests. Please try again.";
+
+    private final HashFunction credentialHash = newCredentialHash();
+    private final LatencyHistogram queueTime = new LatencyHistogram();
+    private final LatencyHistogram hashTime = new LatencyHistogram();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+    private int threads = DEFAULT_THREADS;
+    private int maxWaitSeconds = DEFAULT_MAX_WAIT_SECONDS;
+    private ExecutorService executor = newExecutor(DEFAULT_THREADS, DEFAULT_MAX_QUEUE);
+    private Cache<String, Boolean> checkedCredentials = newCache(DEFAULT_CACHE_SECONDS);
+
+    @Autowired
+    final void setConfig(BridgeConfig config) {
+        int configThreads = config.getPropertyAsInt(CONFIG_KEY_THREADS);
+        int maxQueue = config.getPropertyAsInt(CONFIG_KEY_MAX_QUEUE);
+        int configMaxWait = config.getPropertyAsInt(CONFIG_KEY_MAX_WAIT_SECONDS);
+        int cacheSeconds = config.getPropertyAsInt(CONFIG_KEY_CACHE_SECONDS);
+
+        this.threads = configThreads > 0 ? configThreads : DEFAULT_THREADS;
+        this.maxWaitSeconds = configMaxWait > 0 ? configMaxWait : DEFAULT_MAX_WAIT_SECONDS;
+        this.checkedCredentials = newCache(cacheSeconds);
+        setExecutor(newExecutor(threads, maxQueue > 0 ? maxQueue : DEFAULT_MAX_QUEUE));
+    }
+
+    /** Executor that computes the hashes. Package-scoped for unit tests. */
+    final void setExecutor(ExecutorService executor) {
+        this.executor.shutdown();
+        this.executor = executor;
+    }
+
+    private static ExecutorService newExecutor(int threads, int maxQueue) {
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(maxQueue, true),
+                new ThreadFactoryBuilder().setNameFormat("password-hashing-%d").setDaemon(true).build());
+    }
+
+    private static Cache<String, Boolean> newCache(int cacheSeconds) {
+        // A zero-second cache turns off caching.
+        return CacheBuilder.newBuilder().maximumSize(cacheSeconds > 0 ? MAX_CACHED_CREDENTIALS : 0)
+                .expireAfterWrite(Math.max(cacheSeconds, 0), TimeUnit.SECONDS).build();
+    }
+
+    private static HashFunction newCredentialHash() {
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        return Hashing.hmacSha256(key);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Returns true if the plaintext matches the hash, which was generated by the given algorithm.
+     *
+     * @throws ServiceUnavailableException
+     *      if the server is handling too many sign-ins to check the hash in time
+     */
+    public boolean checkHash(PasswordAlgorithm algorithm, String hash, String plaintext)
+            throws InvalidKeyException, InvalidKeySpecException, NoSuchAlgorithmException {
+        String cacheKey = credentialHash.newHasher().putString(algorithm.name(), UTF_8).putByte((byte) 0)
+                .putString(hash, UTF_8).putByte((byte) 0).putString(plaintext, UTF_8).hash().toString();
+        Boolean cachedResult = checkedCredentials.getIfPresent(cacheKey);
+        if (cachedResult != null) {
+            cacheHits.increment();
+            return cachedResult;
+        }
+
+        long submittedNanos = System.nanoTime();
+        Future<Boolean> future;
+        try {
+            future = executor.submit(() -> {
+                long startNanos = System.nanoTime();
+                queueTime.record(startNanos - submittedNanos, TimeUnit.NANOSECONDS);
+                try {
+                    return algorithm.checkHash(hash, plaintext);
+                } finally {
+                    hashTime.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            rejected.increment();
+            throw new ServiceUnavailableException(TOO_BUSY_ERROR, RETRY_AFTER_SECONDS);
+        }
+
+        boolean result;
+        try {
+            result = future.get(maxWaitSeconds, TimeUnit.SECONDS);
+        } catch (TimeoutException ex) {
+            future.cancel(true);
+            timedOut.increment();
+            throw new ServiceUnavailableException(TOO_BUSY_ERROR, RETRY_AFTER_SECONDS);
+        } catch (InterruptedException ex) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new BridgeServiceException("Interrupted while checking password", ex);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof InvalidKeyException) {
+                throw (InvalidKeyException) cause;
+            } else if (cause instanceof InvalidKeySpecException) {
+                throw (InvalidKeySpecException) cause;
+            } else if (cause instanceof NoSuchAlgorithmException) {
+                throw (NoSuchAlgorithmException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new BridgeServiceException(cause);
+        }
+        checkedCredentials.put(cacheKey, result);
+        return result;
+    }
+
+    /**
+     * Returns a snapshot of the hashing pool: its size, the number of checks waiting for a thread, how long checks
+     * waited and how long hashing took, and counts of cache hits and of checks rejected or timed out.
+     */
+    public ObjectNode getMetrics() {
+        ObjectNode node = BridgeObjectMapper.get().createObjectNode();
+        node.put("threads", threads);
+        if (executor instanceof ThreadPoolExecutor) {
+            ThreadPoolExecutor pool = (ThreadPoolExecutor) executor;
+            node.put("activeThreads", pool.getActiveCount());
+            node.put("queueDepth", pool.getQueue().size());
+        }
+        node.put("cacheHits", cacheHits.sum());
+        node.put("rejected", rejected.sum());
+        node.put("timedOut", timedOut.sum());
+        addLatency(node.putObject("queueTime"), queueTime);
+        addLatency(node.putObject("hashTime"), hashTime);
+        return node;
+    }
+
+    private static void addLatency(ObjectNode node, LatencyHistogram histogram) {
+        node.put("count", histogram.getCount());
+        node.put("meanMillis", histogram.getMeanMillis());
+        node.put("p50Millis", histogram.getPercentileMillis(0.5));
+        node.put("p99Millis", histogram.getPercentileMillis(0.99));
+        node.put("maxMillis", histogram.getMaxMillis());
+    }
+}
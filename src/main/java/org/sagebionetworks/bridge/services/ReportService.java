@@ -322,9 +322,28 @@ public class ReportService {
         
         reportDataDao.deleteReportData(key);
     }
-    
+
+    /**
+     * Delete all records of all of a participant's reports, when their account is deleted. This runs in the
+     * background, outside of any request, so the caller's access isn't checked.
+     */
+    public void deleteParticipantReportsForHealthCode(String appId, String healthCode) {
+        checkNotNull(appId);
+        checkNotNull(healthCode);
+
+        List<? extends ReportIndex> indices = reportIndexDao.getIndices(appId, ReportType.PARTICIPANT).getItems();
+        for (ReportIndex index : indices) {
+            ReportDataKey key = new ReportDataKey.Builder()
+                    .withHealthCode(healthCode)
+                    .withReportType(ReportType.PARTICIPANT)
+                    .withIdentifier(index.getIdentifier())
+                    .withAppId(appId).build();
+            reportDataDao.deleteReportData(key);
+        }
+    }
+
     /**
-     * Delete one record of a participant report. Study memberships are enforced. 
+     * Delete one record of a participant report. Study memberships are enforced.
      */
     public void deleteParticipantReportRecord(String appId, String userId, String identifier, String date,
             String healthCode) {
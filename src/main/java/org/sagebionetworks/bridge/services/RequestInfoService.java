@@ -1,21 +1,69 @@
 package org.sagebionetworks.bridge.services;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.stream.Collectors.toList;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.PreDestroy;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import org.sagebionetworks.bridge.cache.CacheProvider;
+import org.sagebionetworks.bridge.config.BridgeConfig;
 import org.sagebionetworks.bridge.dao.RequestInfoDao;
 import org.sagebionetworks.bridge.models.RequestInfo;
 
+/**
+ * Request info is updated by many participant-facing calls. Updates are buffered in memory, coalesced per user, and
+ * written to the database in batches on a short interval (and on shutdown), so callers don't pay for a read and a
+ * write on every request. Reads merge any pending update over the persisted record, so they always see the latest
+ * value. If the buffer is full, the update is written synchronously on the caller's thread.
+ */
 @Component
 public class RequestInfoService {
-    
+    private static final Logger LOG = LoggerFactory.getLogger(RequestInfoService.class);
+
+    // Package-scoped for unit tests.
+    static final String CONFIG_KEY_BUFFER_ENABLED = "request.info.buffer.enabled";
+    static final String CONFIG_KEY_FLUSH_MILLIS = "request.info.buffer.flush.millis";
+    static final String CONFIG_KEY_MAX_BUFFERED_USERS = "request.info.buffer.max.users";
+    static final int DEFAULT_FLUSH_MILLIS = 1000;
+    static final int DEFAULT_MAX_BUFFERED_USERS = 10000;
+    static final int MAX_BATCH_SIZE = 100;
+
     private CacheProvider cacheProvider;
     private RequestInfoDao requestInfoDao;
-    
+
+    private boolean bufferEnabled = true;
+    private int flushMillis = DEFAULT_FLUSH_MILLIS;
+    private int maxBufferedUsers = DEFAULT_MAX_BUFFERED_USERS;
+    private ScheduledExecutorService flushExecutor = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("request-info-flush-%d").setDaemon(true).build());
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+    // Set while an immediate flush of a full batch is queued, so that only one is queued at a time.
+    private final AtomicBoolean flushPending = new AtomicBoolean(false);
+
+    // Updates that have not been written yet, keyed by user ID.
+    private final Map<String, RequestInfo> pendingUpdates = new ConcurrentHashMap<>();
+    // Updates that are being written by the current flush. Reads still need to see these until the write completes.
+    private final Map<String, RequestInfo> inFlightUpdates = new ConcurrentHashMap<>();
+
     @Autowired
     final void setCacheProvider(CacheProvider cacheProvider) {
         this.cacheProvider = cacheProvider;
@@ -24,30 +72,150 @@ public class RequestInfoService {
     final void setRequestInfoDao(RequestInfoDao requestInfoDao) {
         this.requestInfoDao = requestInfoDao;
     }
-    
+    @Autowired
+    final void setConfig(BridgeConfig config) {
+        // If unset, the buffer is enabled.
+        String enabledStr = config.getProperty(CONFIG_KEY_BUFFER_ENABLED);
+        this.bufferEnabled = enabledStr == null || Boolean.parseBoolean(enabledStr);
+
+        int flushMillis = config.getPropertyAsInt(CONFIG_KEY_FLUSH_MILLIS);
+        this.flushMillis = flushMillis > 0 ? flushMillis : DEFAULT_FLUSH_MILLIS;
+
+        int maxBufferedUsers = config.getPropertyAsInt(CONFIG_KEY_MAX_BUFFERED_USERS);
+        this.maxBufferedUsers = maxBufferedUsers > 0 ? maxBufferedUsers : DEFAULT_MAX_BUFFERED_USERS;
+    }
+    /** Executor that runs the flushes. Package-scoped so unit tests can control when flushes happen. */
+    final void setFlushExecutor(ScheduledExecutorService flushExecutor) {
+        this.flushExecutor = flushExecutor;
+    }
+
     public void updateRequestInfo(RequestInfo requestInfo) {
         checkNotNull(requestInfo);
-        
-        requestInfoDao.updateRequestInfo(requestInfo);
+
+        String userId = requestInfo.getUserId();
+        // After shutdown, nothing would ever flush the buffer.
+        if (!bufferEnabled || userId == null || flushExecutor.isShutdown() ||
+                (pendingUpdates.size() >= maxBufferedUsers && !pendingUpdates.containsKey(userId))) {
+            requestInfoDao.updateRequestInfo(requestInfo);
+            return;
+        }
+        pendingUpdates.merge(userId, requestInfo, RequestInfoService::merge);
+
+        try {
+            if (pendingUpdates.size() >= MAX_BATCH_SIZE) {
+                // We have a full batch. Don't wait for the interval. Updates that arrive before that flush runs are 
+                // picked up by it, so they don't need to queue their own.
+                if (flushPending.compareAndSet(false, true)) {
+                    flushExecutor.execute(this::flush);
+                }
+            } else if (flushScheduled.compareAndSet(false, true)) {
+                flushExecutor.schedule(this::flush, flushMillis, TimeUnit.MILLISECONDS);
+            }
+        } catch (RejectedExecutionException ex) {
+            // We're shutting down. Write what's pending on the caller's thread.
+            flush();
+        }
     }
-    
+
     public RequestInfo getRequestInfo(String userId) {
         isNotBlank(userId);
-        
+
+        RequestInfo pending = merge(inFlightUpdates.get(userId), pendingUpdates.get(userId));
         RequestInfo requestInfo = requestInfoDao.getRequestInfo(userId);
-        if (requestInfo == null) {
+        if (requestInfo == null && pending == null) {
             requestInfo = cacheProvider.getRequestInfo(userId);
             if (requestInfo != null) {
                 requestInfoDao.updateRequestInfo(requestInfo);
             }
         }
-        return requestInfo;
+        return merge(requestInfo, pending);
     }
-    
+
     public void removeRequestInfo(String userId) {
         isNotBlank(userId);
-        
+
+        // If a flush is writing this user's update, removing it from the in-flight map tells the flush not to write
+        // it, or to delete it again if the write has already started (see writeBatch).
+        pendingUpdates.remove(userId);
+        inFlightUpdates.remove(userId);
         requestInfoDao.removeRequestInfo(userId);
         cacheProvider.removeRequestInfo(userId);
     }
+
+    /** Writes all pending updates to the database. Package-scoped for unit tests. */
+    void flush() {
+        // Clear the flags before draining, so that updates that arrive after the drain schedule their own flush.
+        flushScheduled.set(false);
+        flushPending.set(false);
+
+        List<RequestInfo> updateList = new ArrayList<>();
+        for (String userId : pendingUpdates.keySet()) {
+            // Move the update to the in-flight map before removing it, so reads never miss it.
+            RequestInfo update = pendingUpdates.get(userId);
+            if (update != null) {
+                inFlightUpdates.put(userId, update);
+                if (pendingUpdates.remove(userId, update)) {
+                    updateList.add(update);
+                } else {
+                    // It changed while we were moving it. Leave the newer update for the next flush.
+                    inFlightUpdates.remove(userId);
+                }
+            }
+        }
+        for (List<RequestInfo> batch : Lists.partition(updateList, MAX_BATCH_SIZE)) {
+            writeBatch(batch);
+        }
+    }
+
+    private void writeBatch(List<RequestInfo> inFlightBatch) {
+        // Skip the users whose request info was removed after the update was moved to the in-flight map.
+        List<RequestInfo> batch = inFlightBatch.stream()
+                .filter(requestInfo -> inFlightUpdates.get(requestInfo.getUserId()) == requestInfo)
+                .collect(toList());
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            requestInfoDao.upsertRequestInfos(batch);
+        } catch (RuntimeException ex) {
+            // One bad row (for example, an account that was deleted in the meantime) fails the whole statement.
+            // Retry each row on its own so the rest are still written.
+            LOG.warn("Error writing batch of " + batch.size() + " request infos, retrying individually: " +
+                    ex.getMessage(), ex);
+            for (RequestInfo requestInfo : batch) {
+                try {
+                    requestInfoDao.upsertRequestInfos(ImmutableList.of(requestInfo));
+                } catch (RuntimeException rowEx) {
+                    LOG.error("Error writing request info for user " + requestInfo.getUserId() + ": " +
+                            rowEx.getMessage(), rowEx);
+                }
+            }
+        } finally {
+            for (RequestInfo requestInfo : batch) {
+                String userId = requestInfo.getUserId();
+                // If the request info was removed while it was being written, the write may have put it back.
+                if (!inFlightUpdates.remove(userId, requestInfo) && !inFlightUpdates.containsKey(userId)
+                        && !pendingUpdates.containsKey(userId)) {
+                    requestInfoDao.removeRequestInfo(userId);
+                }
+            }
+        }
+    }
+
+    // Merges the fields of the update over the existing request info, the same way the DAO does.
+    private static RequestInfo merge(RequestInfo existing, RequestInfo update) {
+        if (existing == null) {
+            return update;
+        } else if (update == null) {
+            return existing;
+        }
+        return new RequestInfo.Builder().copyOf(existing).copyOf(update).build();
+    }
+
+    /** On shutdown, write whatever is still buffered. */
+    @PreDestroy
+    public void shutdown() {
+        flushExecutor.shutdown();
+        flush();
+    }
 }
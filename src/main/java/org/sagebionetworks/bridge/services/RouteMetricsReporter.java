@@ -0,0 +1,12 @@
+package org.sagebionetworks.bridge.services;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Receives periodic snapshots of the per-route request metrics gathered by {@link RouteMetricsService}. Register an
+ * implementation as a Spring bean to send these metrics somewhere other than the server log.
+ */
+public interface RouteMetricsReporter {
+    /** Called with the output of {@link RouteMetricsService#getMetrics()}. Should not block for long. */
+    void report(ObjectNode metrics);
+}
@@ -0,0 +1,152 @@
+package org.sagebionetworks.bridge.services;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import org.sagebionetworks.bridge.config.BridgeConfig;
+import org.sagebionetworks.bridge.json.BridgeObjectMapper;
+import org.sagebionetworks.bridge.util.LatencyHistogram;
+
+/**
+ * Aggregates request latency, error and payload metrics in memory, keyed by HTTP method, the Spring handler's path 
+ * pattern (e.g. "/v3/participants/{userId}", never the actual path), and the status class (e.g. "2xx"). Metrics are 
+ * recorded by the MetricsFilter, are returned by the admin metrics API, and are periodically passed to any 
+ * {@link RouteMetricsReporter} beans (or logged, if there are none). The number of routes is capped, and requests 
+ * for routes beyond the cap are counted together, so memory is bounded no matter how many URLs are requested.
+ */
+@Component
+public class RouteMetricsService {
+    private static final Logger LOG = LoggerFactory.getLogger(RouteMetricsService.class);
+
+    // Package-scoped for unit tests.
+    static final String CONFIG_KEY_MAX_ROUTES = "route.metrics.max.routes";
+    static final String CONFIG_KEY_REPORT_INTERVAL_SECONDS = "route.metrics.report.interval.seconds";
+    static final int DEFAULT_MAX_ROUTES = 1000;
+    static final String OTHER_ROUTE = "other";
+    static final String UNMATCHED_PATTERN = "unmatched";
+
+    private final Map<String, RouteMetrics> routes = new ConcurrentHashMap<>();
+    private List<RouteMetricsReporter> reporters = ImmutableList.of();
+    private int maxRoutes = DEFAULT_MAX_ROUTES;
+    private int reportIntervalSeconds;
+    private ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("route-metrics-reporter-%d").setDaemon(true).build());
+
+    @Autowired
+    final void setConfig(BridgeConfig config) {
+        int maxRoutes = config.getPropertyAsInt(CONFIG_KEY_MAX_ROUTES);
+        this.maxRoutes = maxRoutes > 0 ? maxRoutes : DEFAULT_MAX_ROUTES;
+        this.reportIntervalSeconds = config.getPropertyAsInt(CONFIG_KEY_REPORT_INTERVAL_SECONDS);
+    }
+
+    @Autowired(required = false)
+    final void setReporters(List<RouteMetricsReporter> reporters) {
+        this.reporters = reporters;
+    }
+
+    /** Executor that reports the metrics. Package-scoped for unit tests. */
+    final void setExecutor(ScheduledExecutorService executor) {
+        this.executor = executor;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (reportIntervalSeconds > 0) {
+            executor.scheduleWithFixedDelay(this::report, reportIntervalSeconds, reportIntervalSeconds,
+                    TimeUnit.SECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Records a completed request. The pattern is the handler's path pattern, or null if no handler matched the 
+     * request. Payload sizes are -1 if they aren't known.
+     */
+    public void record(String method, String pattern, int status, long elapsedNanos, long requestBytes,
+            long responseBytes) {
+        String key = method + " " + (pattern == null ? UNMATCHED_PATTERN : pattern) + " " + (status / 100) + "xx";
+        RouteMetrics route = routes.get(key);
+        if (route == null) {
+            if (routes.size() >= maxRoutes) {
+                key = OTHER_ROUTE;
+            }
+            route = routes.computeIfAbsent(key, k -> new RouteMetrics());
+        }
+        route.latency.record(elapsedNanos, TimeUnit.NANOSECONDS);
+        if (status >= 500) {
+            route.errorCount.increment();
+        }
+        if (requestBytes > 0) {
+            route.requestBytes.add(requestBytes);
+        }
+        if (responseBytes > 0) {
+            route.responseBytes.add(responseBytes);
+        }
+    }
+
+    /**
+     * Returns, for each route, the request count, server error count, mean/p50/p90/p99/max latency in milliseconds, 
+     * and the total request and response payload sizes in bytes (where the size was known). These are totals since 
+     * the server started.
+     */
+    public ObjectNode getMetrics() {
+        ObjectNode node = BridgeObjectMapper.get().createObjectNode();
+        for (Map.Entry<String, RouteMetrics> entry : routes.entrySet()) {
+            LatencyHistogram latency = entry.getValue().latency;
+            ObjectNode routeNode = node.putObject(entry.getKey());
+            routeNode.put("count", latency.getCount());
+            routeNode.put("errorCount", entry.getValue().errorCount.sum());
+            routeNode.put("meanMillis", latency.getMeanMillis());
+            routeNode.put("p50Millis", latency.getPercentileMillis(0.5));
+            routeNode.put("p90Millis", latency.getPercentileMillis(0.9));
+            routeNode.put("p99Millis", latency.getPercentileMillis(0.99));
+            routeNode.put("maxMillis", latency.getMaxMillis());
+            routeNode.put("requestBytes", entry.getValue().requestBytes.sum());
+            routeNode.put("responseBytes", entry.getValue().responseBytes.sum());
+        }
+        return node;
+    }
+
+    /** Passes the current metrics to each reporter. Package-scoped for unit tests. */
+    void report() {
+        try {
+            ObjectNode metrics = getMetrics();
+            if (reporters.isEmpty()) {
+                LOG.info("Route metrics=" + metrics);
+            }
+            for (RouteMetricsReporter reporter : reporters) {
+                reporter.report(metrics);
+            }
+        } catch (RuntimeException ex) {
+            // Don't let an error stop the scheduled task.
+            LOG.error("Error reporting route metrics: " + ex.getMessage(), ex);
+        }
+    }
+
+    private static class RouteMetrics {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder errorCount = new LongAdder();
+        private final LongAdder requestBytes = new LongAdder();
+        private final LongAdder responseBytes = new LongAdder();
+    }
+}
@@ -31,6 +31,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import com.google.common.base.Stopwatch;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 
 import org.sagebionetworks.bridge.BridgeUtils;
 import org.sagebionetworks.bridge.RequestContext;
@@ -49,6 +51,7 @@ import org.sagebionetworks.bridge.models.schedules2.TimeWindow;
 import org.sagebionetworks.bridge.models.schedules2.adherence.AdherenceState;
 import org.sagebionetworks.bridge.models.schedules2.participantschedules.ParticipantSchedule;
 import org.sagebionetworks.bridge.models.schedules2.participantschedules.ParticipantScheduleGenerator;
+import org.sagebionetworks.bridge.models.schedules2.timelines.ScheduleMetadataSnapshot;
 import org.sagebionetworks.bridge.models.schedules2.timelines.Scheduler;
 import org.sagebionetworks.bridge.models.schedules2.timelines.Timeline;
 import org.sagebionetworks.bridge.models.schedules2.timelines.TimelineMetadata;
@@ -66,6 +69,8 @@ import org.slf4j.LoggerFactory;
 @Component
 public class Schedule2Service {
     private static final Logger LOG = LoggerFactory.getLogger(Schedule2Service.class);
+    
+    static final int MAX_METADATA_SNAPSHOTS = 500;
 
     @Autowired
     private OrganizationService organizationService;
@@ -76,6 +81,11 @@ public class Schedule2Service {
     @Autowired
     private Schedule2Dao dao;
     
+    // Session metadata snapshots for adherence reports, by schedule GUID. Each is checked against the schedule's 
+    // modifiedOn timestamp before it is used, so a schedule changed on another server is never served stale.
+    private final Cache<String, ScheduleMetadataSnapshot> metadataSnapshots = CacheBuilder.newBuilder()
+            .maximumSize(MAX_METADATA_SNAPSHOTS).expireAfterAccess(1, TimeUnit.HOURS).build();
+    
     DateTime getCreatedOn() {
         return DateTime.now();
     }
@@ -276,6 +286,7 @@ public class Schedule2Service {
 
         Validate.entityThrowingException(INSTANCE, schedule);
         
+        metadataSnapshots.invalidate(schedule.getGuid());
         return dao.updateSchedule(schedule);
     }
     
@@ -299,6 +310,7 @@ public class Schedule2Service {
         
         studyService.updateStudyEtags(appId, guid, existing.getModifiedOn());
         
+        metadataSnapshots.invalidate(guid);
         return dao.updateSchedule(existing);
     }
     
@@ -319,6 +331,7 @@ public class Schedule2Service {
         
         studyService.removeStudyEtags(appId, guid);
         
+        metadataSnapshots.invalidate(guid);
         dao.deleteSchedule(existing);
     }
     
@@ -338,6 +351,7 @@ public class Schedule2Service {
         
         studyService.removeStudyEtags(appId, guid);
         
+        metadataSnapshots.invalidate(guid);
         dao.deleteSchedulePermanently(existing);
     }
     
@@ -355,6 +369,24 @@ public class Schedule2Service {
         return dao.getScheduleMetadata(guid);
     }
     
+    /**
+     * Get an immutable snapshot of the session metadata for this version of the schedule. Adherence reports for 
+     * every participant in a study use the same metadata, so the snapshot is loaded once per version of the 
+     * schedule and shared, rather than queried for each report.
+     */
+    public ScheduleMetadataSnapshot getScheduleMetadataSnapshot(Schedule2 schedule) {
+        checkNotNull(schedule);
+        checkNotNull(schedule.getGuid());
+        
+        ScheduleMetadataSnapshot snapshot = metadataSnapshots.getIfPresent(schedule.getGuid());
+        if (snapshot == null || !snapshot.isSnapshotOf(schedule.getGuid(), schedule.getModifiedOn())) {
+            snapshot = ScheduleMetadataSnapshot.create(schedule.getGuid(), schedule.getModifiedOn(),
+                    dao.getScheduleMetadata(schedule.getGuid()));
+            metadataSnapshots.put(schedule.getGuid(), snapshot);
+        }
+        return snapshot;
+    }
+    
     public Optional<TimelineMetadata> getTimelineMetadata(String instanceGuid) {
         checkNotNull(instanceGuid);
         return dao.getTimelineMetadata(instanceGuid);
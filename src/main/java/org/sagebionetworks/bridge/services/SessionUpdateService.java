@@ -82,7 +82,7 @@ public class SessionUpdateService {
         cacheProvider.setUserSession(session);
 
         // Manage notifications, if necessary.
-        notificationTopicService.manageCriteriaBasedSubscriptions(context.getAppId(), context,
+        notificationTopicService.manageCriteriaBasedSubscriptionsAsync(context.getAppId(), context,
                 participant.getHealthCode());
     }
     
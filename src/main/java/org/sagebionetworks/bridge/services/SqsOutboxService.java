@@ -0,0 +1,333 @@
+package org.sagebionetworks.bridge.services;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PreDestroy;
+
+import com.amazonaws.services.sqs.AmazonSQS;
+import com.amazonaws.services.sqs.model.BatchResultErrorEntry;
+import com.amazonaws.services.sqs.model.SendMessageBatchRequest;
+import com.amazonaws.services.sqs.model.SendMessageBatchRequestEntry;
+import com.amazonaws.services.sqs.model.SendMessageBatchResult;
+import com.amazonaws.services.sqs.model.SendMessageBatchResultEntry;
+import com.amazonaws.services.sqs.model.SendMessageResult;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.base.Stopwatch;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.joda.time.DateTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import org.sagebionetworks.bridge.BridgeUtils;
+import org.sagebionetworks.bridge.config.BridgeConfig;
+import org.sagebionetworks.bridge.json.BridgeObjectMapper;
+import org.sagebionetworks.bridge.s3.S3Helper;
+
+/**
+ * Outbox for SQS messages (generally worker requests). Messages are buffered in memory for a short linger period and
+ * then sent to SQS with SendMessageBatch, up to 10 messages per call, so callers on the request path don't pay a
+ * synchronous SQS round trip for each message.
+ *
+ * The buffer is bounded. If it's full, the message is sent synchronously on the caller's thread. Messages that can't
+ * be delivered even after an individual retry are written to S3 (in the backfill bucket) so they can be redriven.
+ */
+@Component
+public class SqsOutboxService {
+    private static final Logger LOG = LoggerFactory.getLogger(SqsOutboxService.class);
+
+    // Package-scoped for unit tests.
+    static final String CONFIG_KEY_ENABLED = "sqs.outbox.enabled";
+    static final String CONFIG_KEY_FALLBACK_BUCKET = "backfill.bucket";
+    static final String CONFIG_KEY_LINGER_MILLIS = "sqs.outbox.linger.millis";
+    static final String CONFIG_KEY_MAX_BUFFERED_MESSAGES = "sqs.outbox.max.buffered.messages";
+    static final int DEFAULT_LINGER_MILLIS = 100;
+    static final int DEFAULT_MAX_BUFFERED_MESSAGES = 1000;
+    static final String FALLBACK_KEY_PREFIX = "sqs-outbox-undelivered/";
+
+    // SQS limits: 10 messages per batch and 256 KB total payload per batch.
+    static final int MAX_BATCH_MESSAGES = 10;
+    static final int MAX_BATCH_BYTES = 256 * 1024;
+
+    private BridgeConfig config;
+    private AmazonSQS sqsClient;
+    private S3Helper s3Helper;
+
+    private boolean enabled;
+    private int lingerMillis;
+    private String fallbackBucket;
+    private BlockingQueue<OutboxMessage> buffer = new LinkedBlockingQueue<>(DEFAULT_MAX_BUFFERED_MESSAGES);
+    private ScheduledExecutorService flushExecutor = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("sqs-outbox-%d").setDaemon(true).build());
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+
+    // SqsInitializer runs after Spring, so queue URLs are resolved lazily, then remembered.
+    private final Map<String, String> queueUrlsByConfigKey = new ConcurrentHashMap<>();
+
+    // Metrics.
+    private final AtomicLong batchCount = new AtomicLong();
+    private final AtomicLong sentMessageCount = new AtomicLong();
+    private final AtomicLong totalSendLatencyMillis = new AtomicLong();
+    private final AtomicLong maxSendLatencyMillis = new AtomicLong();
+    private final AtomicLong overflowCount = new AtomicLong();
+    private final AtomicLong retriedMessageCount = new AtomicLong();
+    private final AtomicLong undeliveredMessageCount = new AtomicLong();
+
+    /** Bridge config, used to get the queue URLs and outbox settings. */
+    @Autowired
+    public final void setConfig(BridgeConfig config) {
+        this.config = config;
+
+        // If unset, the outbox is enabled.
+        String enabledStr = config.getProperty(CONFIG_KEY_ENABLED);
+        this.enabled = enabledStr == null || Boolean.parseBoolean(enabledStr);
+
+        int lingerMillis = config.getPropertyAsInt(CONFIG_KEY_LINGER_MILLIS);
+        this.lingerMillis = lingerMillis > 0 ? lingerMillis : DEFAULT_LINGER_MILLIS;
+
+        int maxBufferedMessages = config.getPropertyAsInt(CONFIG_KEY_MAX_BUFFERED_MESSAGES);
+        this.buffer = new LinkedBlockingQueue<>(maxBufferedMessages > 0 ? maxBufferedMessages :
+                DEFAULT_MAX_BUFFERED_MESSAGES);
+
+        this.fallbackBucket = config.getProperty(CONFIG_KEY_FALLBACK_BUCKET);
+    }
+
+    /** SQS client. */
+    @Autowired
+    public final void setSqsClient(AmazonSQS sqsClient) {
+        this.sqsClient = sqsClient;
+    }
+
+    /** S3 helper, used to persist undeliverable messages. */
+    @Autowired
+    public final void setS3Helper(S3Helper s3Helper) {
+        this.s3Helper = s3Helper;
+    }
+
+    /** Executor that runs the flushes. Package-scoped so unit tests can control when flushes happen. */
+    final void setFlushExecutor(ScheduledExecutorService flushExecutor) {
+        this.flushExecutor = flushExecutor;
+    }
+
+    /**
+     * Queues a message to be sent to the SQS queue whose URL is stored in the given config key. The description is
+     * only used for logging.
+     */
+    public void sendMessage(String queueUrlConfigKey, String messageBody, String description) {
+        checkNotNull(queueUrlConfigKey);
+        checkNotNull(messageBody);
+
+        OutboxMessage message = new OutboxMessage(getQueueUrl(queueUrlConfigKey), messageBody, description);
+        if (!enabled || flushExecutor.isShutdown()) {
+            // After shutdown, nothing would ever flush the buffer.
+            sendSynchronously(message);
+            return;
+        }
+        if (!buffer.offer(message)) {
+            // Buffer is full. Apply back-pressure on the caller rather than drop the message.
+            overflowCount.incrementAndGet();
+            sendSynchronously(message);
+            return;
+        }
+
+        try {
+            if (buffer.size() >= MAX_BATCH_MESSAGES) {
+                // We have a full batch. Don't wait for the linger.
+                flushExecutor.execute(this::flush);
+            } else if (flushScheduled.compareAndSet(false, true)) {
+                flushExecutor.schedule(this::flush, lingerMillis, TimeUnit.MILLISECONDS);
+            }
+        } catch (RejectedExecutionException ex) {
+            // We're shutting down. If the shutdown flush hasn't already taken the message, send it ourselves.
+            if (buffer.remove(message)) {
+                sendSynchronously(message);
+            }
+        }
+    }
+
+    /** Sends everything currently in the buffer. Package-scoped for unit tests. */
+    void flush() {
+        // Clear the flag before draining, so that messages that arrive after the drain schedule their own flush.
+        flushScheduled.set(false);
+
+        List<OutboxMessage> messageList = new ArrayList<>();
+        buffer.drainTo(messageList);
+        if (messageList.isEmpty()) {
+            return;
+        }
+
+        // Batches can only go to a single queue.
+        Map<String, List<OutboxMessage>> messagesByQueueUrl = new LinkedHashMap<>();
+        for (OutboxMessage message : messageList) {
+            messagesByQueueUrl.computeIfAbsent(message.queueUrl, k -> new ArrayList<>()).add(message);
+        }
+
+        List<OutboxMessage> undeliveredList = new ArrayList<>();
+        for (Map.Entry<String, List<OutboxMessage>> entry : messagesByQueueUrl.entrySet()) {
+            List<OutboxMessage> batch = new ArrayList<>();
+            int batchBytes = 0;
+            for (OutboxMessage message : entry.getValue()) {
+                int messageBytes = message.body.getBytes(StandardCharsets.UTF_8).length;
+                if (batch.size() >= MAX_BATCH_MESSAGES || (!batch.isEmpty() &&
+                        batchBytes + messageBytes > MAX_BATCH_BYTES)) {
+                    undeliveredList.addAll(sendBatch(entry.getKey(), batch));
+                    batch = new ArrayList<>();
+                    batchBytes = 0;
+                }
+                batch.add(message);
+                batchBytes += messageBytes;
+            }
+            undeliveredList.addAll(sendBatch(entry.getKey(), batch));
+        }
+
+        if (!undeliveredList.isEmpty()) {
+            persistUndelivered(undeliveredList);
+        }
+    }
+
+    // Sends a single batch. Failed entries are retried once individually. Returns the messages that still couldn't be
+    // delivered.
+    private List<OutboxMessage> sendBatch(String queueUrl, List<OutboxMessage> batch) {
+        List<SendMessageBatchRequestEntry> entryList = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            entryList.add(new SendMessageBatchRequestEntry(String.valueOf(i), batch.get(i).body));
+        }
+
+        List<OutboxMessage> failedList = new ArrayList<>();
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        try {
+            SendMessageBatchResult result = sqsClient.sendMessageBatch(new SendMessageBatchRequest(queueUrl,
+                    entryList));
+            recordBatch(batch.size(), stopwatch.elapsed(TimeUnit.MILLISECONDS));
+
+            for (SendMessageBatchResultEntry resultEntry : result.getSuccessful()) {
+                OutboxMessage message = batch.get(Integer.parseInt(resultEntry.getId()));
+                LOG.info("Sent " + message.description + "; received message ID=" + resultEntry.getMessageId());
+            }
+            for (BatchResultErrorEntry errorEntry : result.getFailed()) {
+                OutboxMessage message = batch.get(Integer.parseInt(errorEntry.getId()));
+                LOG.warn("Error sending " + message.description + " in batch: " + errorEntry.getCode() + " " +
+                        errorEntry.getMessage());
+                failedList.add(message);
+            }
+        } catch (RuntimeException ex) {
+            LOG.error("Error sending batch of " + batch.size() + " messages to SQS queue " + queueUrl + ": " +
+                    ex.getMessage(), ex);
+            failedList.addAll(batch);
+        }
+
+        List<OutboxMessage> undeliveredList = new ArrayList<>();
+        for (OutboxMessage message : failedList) {
+            retriedMessageCount.incrementAndGet();
+            try {
+                sendSynchronously(message);
+            } catch (RuntimeException ex) {
+                LOG.error("Error retrying " + message.description + ": " + ex.getMessage(), ex);
+                undeliveredList.add(message);
+            }
+        }
+        return undeliveredList;
+    }
+
+    private void sendSynchronously(OutboxMessage message) {
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        SendMessageResult sqsResult = sqsClient.sendMessage(message.queueUrl, message.body);
+        recordBatch(1, stopwatch.elapsed(TimeUnit.MILLISECONDS));
+        LOG.info("Sent " + message.description + "; received message ID=" + sqsResult.getMessageId());
+    }
+
+    // Writes undeliverable messages to S3, one JSON object per line, so they can be redriven.
+    private void persistUndelivered(List<OutboxMessage> undeliveredList) {
+        undeliveredMessageCount.addAndGet(undeliveredList.size());
+
+        List<String> lineList = new ArrayList<>();
+        for (OutboxMessage message : undeliveredList) {
+            ObjectNode node = BridgeObjectMapper.get().createObjectNode();
+            node.put("queueUrl", message.queueUrl);
+            node.put("body", message.body);
+            lineList.add(node.toString());
+        }
+
+        String s3Key = FALLBACK_KEY_PREFIX + DateTime.now().toString() + "-" + BridgeUtils.generateGuid();
+        try {
+            s3Helper.writeLinesToS3(fallbackBucket, s3Key, lineList);
+            LOG.error("Wrote " + undeliveredList.size() + " undelivered SQS messages to s3://" + fallbackBucket +
+                    "/" + s3Key);
+        } catch (Exception ex) {
+            // Last resort. Log the messages so they can be recovered by hand.
+            LOG.error("Error writing undelivered SQS messages to S3, messages=" + lineList + ": " +
+                    ex.getMessage(), ex);
+        }
+    }
+
+    private void recordBatch(int batchSize, long latencyMillis) {
+        batchCount.incrementAndGet();
+        sentMessageCount.addAndGet(batchSize);
+        totalSendLatencyMillis.addAndGet(latencyMillis);
+        maxSendLatencyMillis.accumulateAndGet(latencyMillis, Math::max);
+    }
+
+    private String getQueueUrl(String queueUrlConfigKey) {
+        String queueUrl = queueUrlsByConfigKey.get(queueUrlConfigKey);
+        if (queueUrl == null) {
+            queueUrl = config.getProperty(queueUrlConfigKey);
+            checkNotNull(queueUrl, "No SQS queue URL for " + queueUrlConfigKey);
+            queueUrlsByConfigKey.put(queueUrlConfigKey, queueUrl);
+        }
+        return queueUrl;
+    }
+
+    /** Returns a snapshot of outbox metrics, including batch sizes and send latency. */
+    public ObjectNode getMetrics() {
+        long batches = batchCount.get();
+        long messages = sentMessageCount.get();
+
+        ObjectNode node = BridgeObjectMapper.get().createObjectNode();
+        node.put("bufferedMessages", buffer.size());
+        node.put("batchCount", batches);
+        node.put("sentMessageCount", messages);
+        node.put("averageBatchSize", batches > 0 ? (double) messages / batches : 0.0);
+        node.put("averageSendLatencyMillis", batches > 0 ? (double) totalSendLatencyMillis.get() / batches : 0.0);
+        node.put("maxSendLatencyMillis", maxSendLatencyMillis.get());
+        node.put("overflowCount", overflowCount.get());
+        node.put("retriedMessageCount", retriedMessageCount.get());
+        node.put("undeliveredMessageCount", undeliveredMessageCount.get());
+        return node;
+    }
+
+    /** On shutdown, send whatever is still buffered. */
+    @PreDestroy
+    public void shutdown() {
+        flushExecutor.shutdown();
+        flush();
+        LOG.info("SQS outbox shut down, metrics=" + getMetrics());
+    }
+
+    private static final class OutboxMessage {
+        private final String queueUrl;
+        private final String body;
+        private final String description;
+
+        private OutboxMessage(String queueUrl, String body, String description) {
+            this.queueUrl = queueUrl;
+            this.body = body;
+            this.description = description;
+        }
+    }
+}
@@ -200,9 +200,9 @@ public class StudyActivityEventService {
             dao.publishEvent(event);
 
             if (event.getEventId().equals(ActivityEventObjectType.TIMELINE_RETRIEVED_ID)) {
-                // trigger alert for timeline retrieval
-                alertService
-                        .createAlert(Alert.timelineAccessed(event.getStudyId(), event.getAppId(), event.getUserId()));
+                // trigger alert for timeline retrieval. This happens on every app launch, so repeats are coalesced.
+                alertService.createCoalescedAlert(
+                        Alert.timelineAccessed(event.getStudyId(), event.getAppId(), event.getUserId()));
             }
 
             CacheKey cacheKey = CacheKey.etag(StudyActivityEvent.class, event.getUserId());
@@ -29,12 +29,14 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
 import org.sagebionetworks.bridge.RequestContext;
+import org.sagebionetworks.bridge.RequestEntityCache;
 import org.sagebionetworks.bridge.cache.CacheKey;
 import org.sagebionetworks.bridge.cache.CacheProvider;
 import org.sagebionetworks.bridge.dao.StudyDao;
@@ -42,6 +44,7 @@ import org.sagebionetworks.bridge.exceptions.BadRequestException;
 import org.sagebionetworks.bridge.exceptions.EntityAlreadyExistsException;
 import org.sagebionetworks.bridge.exceptions.EntityNotFoundException;
 import org.sagebionetworks.bridge.exceptions.UnauthorizedException;
+import org.sagebionetworks.bridge.json.BridgeObjectMapper;
 import org.sagebionetworks.bridge.models.PagedResourceList;
 import org.sagebionetworks.bridge.models.VersionHolder;
 import org.sagebionetworks.bridge.models.activities.StudyActivityEventIdsMap;
@@ -54,13 +57,30 @@ import org.sagebionetworks.bridge.models.studies.Study;
 import org.sagebionetworks.bridge.models.studies.StudyPhase;
 import org.sagebionetworks.bridge.validators.StudyValidator;
 import org.sagebionetworks.bridge.validators.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableMap;
 
 @Component
 public class StudyService {
+    private static final Logger LOG = LoggerFactory.getLogger(StudyService.class);
+    
+    // Studies are read far more often than they are written, so they are cached in-process. The study's etag in
+    // Redis serves as its version: a cached study is only used while its modifiedOn matches the etag, so writes on
+    // other servers (which update or remove the etag) are picked up on the next read. Package-scoped for unit tests.
+    static final int STUDY_CACHE_MAXIMUM_SIZE = 1000;
+    static final long STUDY_CACHE_EXPIRE_MINUTES = 10;
+    
+    // Studies are cached as JSON snapshots, so every caller gets its own copy that it can safely modify.
+    private final Cache<String, CachedStudy> studyCache = CacheBuilder.newBuilder()
+            .maximumSize(STUDY_CACHE_MAXIMUM_SIZE)
+            .expireAfterWrite(STUDY_CACHE_EXPIRE_MINUTES, TimeUnit.MINUTES).build();
     
     @Autowired
     private StudyDao studyDao;
@@ -114,6 +134,11 @@ public class StudyService {
             cacheProvider.removeObject(cacheKey);
         }
         studyDao.removeScheduleFromStudies(appId, scheduleGuid);
+        // The studies changed, so their etags are removed after the update. The next read sets them again.
+        for (String studyId : studyIds) {
+            cacheProvider.removeObject(CacheKey.etag(Study.class, appId, studyId));
+            invalidateCachedStudy(appId, studyId);
+        }
     }
     
     public void updateStudyEtags(String appId, String scheduleGuid, DateTime timestamp) {
@@ -132,17 +157,85 @@ public class StudyService {
         checkNotNull(appId);
         checkNotNull(studyId);
         
-        Study study = studyDao.getStudy(appId, studyId);
-        if (throwsException && study == null) {
-            throw new EntityNotFoundException(Study.class);
+        // Studies are often loaded several times while serving a single request (e.g. for the study and then for 
+        // its time zone), so check the request's entity cache first.
+        RequestEntityCache entityCache = RequestContext.get().getEntityCache();
+        String studyCacheKey = getStudyCacheKey(appId, studyId);
+        Study study = entityCache.get(Study.class, studyCacheKey);
+        if (study != null) {
+            return study;
+        }
+        
+        CacheKey etagKey = CacheKey.etag(Study.class, appId, studyId);
+        DateTime etag = cacheProvider.getObject(etagKey, DateTime.class);
+        study = getCachedStudy(studyCacheKey, etag);
+        if (study == null) {
+            study = studyDao.getStudy(appId, studyId);
+            if (throwsException && study == null) {
+                throw new EntityNotFoundException(Study.class);
+            }
+            if (study != null && study.getModifiedOn() != null) {
+                // The etag is written when the study changes. If it's missing (e.g. it has expired from Redis), set 
+                // it, but only if it's still missing: a write that finished after our read owns the etag, and 
+                // overwriting it with our older timestamp would make stale copies look current.
+                if (etag == null) {
+                    cacheProvider.setObjectIfAbsent(etagKey, study.getModifiedOn());
+                }
+                cacheStudy(studyCacheKey, study);
+            }
         }
         if (study != null) {
-            CacheKey cacheKey = CacheKey.etag(Study.class, appId, studyId);
-            cacheProvider.setObject(cacheKey, study.getModifiedOn());
+            entityCache.put(Study.class, studyCacheKey, study);
         }
         return study;
     }
     
+    private static String getStudyCacheKey(String appId, String studyId) {
+        return appId + ":" + studyId;
+    }
+    
+    private static boolean isSameTimestamp(DateTime etag, DateTime modifiedOn) {
+        // Compare instants, the time zone of the deserialized etag may differ.
+        return etag != null && modifiedOn != null && etag.getMillis() == modifiedOn.getMillis();
+    }
+    
+    // Returns a copy of the cached study, or null if it isn't cached or it is older than the current etag.
+    private Study getCachedStudy(String studyCacheKey, DateTime etag) {
+        CachedStudy cachedStudy = studyCache.getIfPresent(studyCacheKey);
+        if (cachedStudy == null || !isSameTimestamp(etag, cachedStudy.modifiedOn)) {
+            return null;
+        }
+        try {
+            Study study = BridgeObjectMapper.get().readValue(cachedStudy.json, Study.class);
+            // These fields are not part of the study's JSON.
+            study.setAppId(cachedStudy.appId);
+            study.setLogoGuid(cachedStudy.logoGuid);
+            return study;
+        } catch (JsonProcessingException e) {
+            LOG.warn("Could not read cached study " + studyCacheKey + ", loading from database", e);
+            studyCache.invalidate(studyCacheKey);
+            return null;
+        }
+    }
+    
+    private void cacheStudy(String studyCacheKey, Study study) {
+        try {
+            String json = BridgeObjectMapper.get().writeValueAsString(study);
+            studyCache.put(studyCacheKey, new CachedStudy(json, study.getAppId(), study.getLogoGuid(),
+                    study.getModifiedOn()));
+        } catch (JsonProcessingException e) {
+            LOG.warn("Could not cache study " + studyCacheKey, e);
+        }
+    }
+    
+    // Removes the study from the request's entity cache and the in-process cache, so the next getStudy() call loads 
+    // it from the database.
+    private void invalidateCachedStudy(String appId, String studyId) {
+        String studyCacheKey = getStudyCacheKey(appId, studyId);
+        RequestContext.get().getEntityCache().remove(Study.class, studyCacheKey);
+        studyCache.invalidate(studyCacheKey);
+    }
+    
     /**
      * Get the list of active study IDs for this app (used to validate criteria 
      * objects throughout the system). Calling this method is preferred to getStudies() 
@@ -227,6 +320,7 @@ public class StudyService {
             throw new EntityAlreadyExistsException(Study.class, ImmutableMap.of("id", existing.getIdentifier()));
         }
         VersionHolder version = studyDao.createStudy(study);
+        invalidateCachedStudy(appId, study.getIdentifier());
         // You cannot do this when creating an app because it will fail: the caller's organization will not 
         // yet exist. After initial app creation when accounts are established in the app, it should be 
         // possible to create studies that are associated to the caller's organization (so the study 
@@ -244,6 +338,8 @@ public class StudyService {
         checkNotNull(appId);
         checkNotNull(study);
 
+        // The submitted study may be the instance in the request's entity cache, so reload the persisted state.
+        invalidateCachedStudy(appId, study.getIdentifier());
         Study existing = getStudy(appId, study.getIdentifier(), true);
         if (study.isDeleted() && existing.isDeleted()) {
             throw new EntityNotFoundException(Study.class);
@@ -269,6 +365,7 @@ public class StudyService {
         Validate.entityThrowingException(validator, study);
         
         VersionHolder keys = studyDao.updateStudy(study);
+        invalidateCachedStudy(appId, study.getIdentifier());
         
         CacheKey cacheKey = CacheKey.publicStudy(appId, study.getIdentifier());
         cacheProvider.removeObject(cacheKey);
@@ -293,6 +390,7 @@ public class StudyService {
         existing.setDeleted(true);
         existing.setModifiedOn(DateTime.now());
         studyDao.updateStudy(existing);
+        invalidateCachedStudy(appId, studyId);
         
         CacheKey cacheKey = CacheKey.publicStudy(appId, studyId);
         cacheProvider.removeObject(cacheKey);
@@ -318,6 +416,7 @@ public class StudyService {
         String scheduleGuid = existing.getScheduleGuid();
         
         studyDao.deleteStudyPermanently(appId, studyId);
+        invalidateCachedStudy(appId, studyId);
         if (scheduleGuid != null) {
             scheduleService.deleteSchedulePermanently(appId, scheduleGuid);    
         }
@@ -334,6 +433,9 @@ public class StudyService {
         checkNotNull(appId);
 
         studyDao.deleteAllStudies(appId);
+        RequestContext.get().getEntityCache().removeAll(Study.class);
+        String appKeyPrefix = getStudyCacheKey(appId, "");
+        studyCache.asMap().keySet().removeIf(key -> key.startsWith(appKeyPrefix));
     }
     
     public Study transitionToDesign(String appId, String studyId) {
@@ -416,6 +518,7 @@ public class StudyService {
         study.setPhase(DESIGN);
         study.setModifiedOn(getDateTime());
         studyDao.updateStudy(study);
+        invalidateCachedStudy(appId, studyId);
     
         CacheKey cacheKey = CacheKey.publicStudy(appId, studyId);
         cacheProvider.removeObject(cacheKey);
@@ -451,6 +554,7 @@ public class StudyService {
         study.setPhase(targetPhase);
         study.setModifiedOn(getDateTime());
         studyDao.updateStudy(study);
+        invalidateCachedStudy(appId, studyId);
         
         CacheKey cacheKey = CacheKey.publicStudy(appId, studyId);
         cacheProvider.removeObject(cacheKey);
@@ -2,19 +2,19 @@ package org.sagebionetworks.bridge.services;
 
 import static org.sagebionetworks.bridge.AuthUtils.CAN_READ_UPLOADS;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 import com.amazonaws.HttpMethod;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.model.GeneratePresignedUrlRequest;
-import com.amazonaws.services.sqs.AmazonSQS;
-import com.amazonaws.services.sqs.model.SendMessageResult;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
@@ -27,7 +27,9 @@ import org.sagebionetworks.bridge.dao.UploadTableRowDao;
 import org.sagebionetworks.bridge.exceptions.BadRequestException;
 import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
 import org.sagebionetworks.bridge.exceptions.EntityNotFoundException;
+import org.sagebionetworks.bridge.exceptions.InvalidEntityException;
 import org.sagebionetworks.bridge.json.BridgeObjectMapper;
+import org.sagebionetworks.bridge.models.ForwardCursorPagedResourceList;
 import org.sagebionetworks.bridge.models.PagedResourceList;
 import org.sagebionetworks.bridge.models.upload.UploadView;
 import org.sagebionetworks.bridge.models.worker.WorkerRequest;
@@ -36,6 +38,7 @@ import org.sagebionetworks.bridge.upload.UploadTableJob;
 import org.sagebionetworks.bridge.upload.UploadTableJobGuidHolder;
 import org.sagebionetworks.bridge.upload.UploadTableJobResult;
 import org.sagebionetworks.bridge.upload.UploadTableRow;
+import org.sagebionetworks.bridge.upload.UploadTableRowBatchResult;
 import org.sagebionetworks.bridge.upload.UploadTableRowQuery;
 import org.sagebionetworks.bridge.validators.UploadTableRowQueryValidator;
 import org.sagebionetworks.bridge.validators.UploadTableRowValidator;
@@ -44,18 +47,17 @@ import org.sagebionetworks.bridge.validators.Validate;
 /** Service handler for upload table rows. */
 @Component
 public class UploadTableService {
-    private static final Logger LOG = LoggerFactory.getLogger(Exporter3Service.class);
-
     // Package-scoped for unit tests.
     static final String CONFIG_KEY_RAW_HEALTH_DATA_BUCKET = "health.data.bucket.raw";
     static final int DEDUPE_WINDOW_MINUTES = 5;
     static final int EXPIRATION_IN_DAYS = 7;
+    static final int MAX_ROWS_PER_BATCH = 5000;
+    static final String TOO_MANY_ROWS_ERROR = "Cannot save more than " + MAX_ROWS_PER_BATCH + " rows at once";
     static final String WORKER_NAME_UPLOAD_CSV = "UploadCsvWorker";
 
-    private BridgeConfig config;
     private String rawHealthDataBucket;
     private AmazonS3 s3Client;
-    private AmazonSQS sqsClient;
+    private SqsOutboxService sqsOutboxService;
     private StudyService studyService;
     private UploadService uploadService;
     private UploadTableJobDao uploadTableJobDao;
@@ -63,7 +65,6 @@ public class UploadTableService {
 
     @Autowired
     public final void setConfig(BridgeConfig config) {
-        this.config = config;
         this.rawHealthDataBucket = config.getProperty(CONFIG_KEY_RAW_HEALTH_DATA_BUCKET);
     }
 
@@ -73,8 +74,8 @@ public class UploadTableService {
     }
 
     @Autowired
-    public final void setSqsClient(AmazonSQS sqsClient) {
-        this.sqsClient = sqsClient;
+    public final void setSqsOutboxService(SqsOutboxService sqsOutboxService) {
+        this.sqsOutboxService = sqsOutboxService;
     }
 
     @Autowired
@@ -213,13 +214,9 @@ public class UploadTableService {
             throw new BridgeServiceException("Error creating CSV request for app " + appId + " study " + studyId, ex);
         }
 
-        // Note: SqsInitializer runs after Spring, so we need to grab the queue URL dynamically.
-        String workerQueueUrl = config.getProperty(BridgeConstants.CONFIG_KEY_WORKER_SQS_URL);
-
         // Sent to SQS.
-        SendMessageResult sqsResult = sqsClient.sendMessage(workerQueueUrl, requestJson);
-        LOG.info("Sent CSV request for app " + appId + " study " + studyId + "; received message ID=" +
-                sqsResult.getMessageId());
+        sqsOutboxService.sendMessage(BridgeConstants.CONFIG_KEY_WORKER_SQS_URL, requestJson,
+                "CSV request for app " + appId + " study " + studyId);
 
         return new UploadTableJobGuidHolder(jobGuid);
     }
@@ -279,6 +276,31 @@ public class UploadTableService {
     /** Query for upload table rows. */
     public PagedResourceList<UploadTableRow> queryUploadTableRows(String appId, String studyId,
             UploadTableRowQuery query) {
+        validateRowQuery(appId, studyId, query);
+        return uploadTableRowDao.queryUploadTableRows(query);
+    }
+
+    /**
+     * Query for a page of upload table rows, using the offset key from the previous page. Unlike offset queries,
+     * pages are stable while rows are being added, and later pages are as fast as the first.
+     */
+    public ForwardCursorPagedResourceList<UploadTableRow> queryUploadTableRowsByCursor(String appId, String studyId,
+            UploadTableRowQuery query) {
+        validateRowQuery(appId, studyId, query);
+        return uploadTableRowDao.queryUploadTableRowsByCursor(query);
+    }
+
+    /**
+     * Passes all upload table rows matching the query to the consumer, one at a time, as they are read from the
+     * database in pages. The query is validated before any rows are passed to the consumer. Returns the number of rows.
+     */
+    public int streamUploadTableRows(String appId, String studyId, UploadTableRowQuery query,
+            Consumer<UploadTableRow> consumer) {
+        validateRowQuery(appId, studyId, query);
+        return uploadTableRowDao.streamUploadTableRows(query, consumer);
+    }
+
+    private void validateRowQuery(String appId, String studyId, UploadTableRowQuery query) {
         // Verify study exists, by passing in throwsException = true.
         studyService.getStudy(appId, studyId, true);
 
@@ -288,8 +310,6 @@ public class UploadTableService {
 
         // Validate the query.
         Validate.entityThrowingException(UploadTableRowQueryValidator.INSTANCE, query);
-
-        return uploadTableRowDao.queryUploadTableRows(query);
     }
 
     /** Create a new upload table row, or overwrite it if the row already exists. */
@@ -312,6 +332,55 @@ public class UploadTableService {
         uploadTableRowDao.saveUploadTableRow(row);
     }
 
+    /**
+     * Create or overwrite a batch of upload table rows. Each row is validated separately. Valid rows are saved in a
+     * single transaction, and invalid rows are skipped and reported in the result.
+     */
+    public UploadTableRowBatchResult saveUploadTableRows(String appId, String studyId, List<UploadTableRow> rows) {
+        if (rows == null || rows.isEmpty()) {
+            throw new BadRequestException("Rows must be specified");
+        }
+        if (rows.size() > MAX_ROWS_PER_BATCH) {
+            throw new BadRequestException(TOO_MANY_ROWS_ERROR);
+        }
+
+        // Verify study exists, by passing in throwsException = true.
+        studyService.getStudy(appId, studyId, true);
+
+        UploadTableRowBatchResult result = new UploadTableRowBatchResult();
+        List<UploadTableRow> validRows = new ArrayList<>();
+        DateTime now = DateTime.now();
+        for (int i = 0; i < rows.size(); i++) {
+            UploadTableRow row = rows.get(i);
+            if (row == null) {
+                result.getErrors().put(String.valueOf(i), ImmutableMap.of("uploadTableRow",
+                        ImmutableList.of("uploadTableRow cannot be null")));
+                continue;
+            }
+
+            // appId and studyId are required and come from the URL path.
+            row.setAppId(appId);
+            row.setStudyId(studyId);
+
+            // CreatedOn defaults to the current time.
+            if (row.getCreatedOn() == null) {
+                row.setCreatedOn(now);
+            }
+
+            // Validate the row.
+            try {
+                Validate.entityThrowingException(UploadTableRowValidator.INSTANCE, row);
+                validRows.add(row);
+            } catch (InvalidEntityException ex) {
+                result.getErrors().put(String.valueOf(i), ex.getErrors());
+            }
+        }
+
+        uploadTableRowDao.saveUploadTableRows(validRows);
+        result.setSavedCount(validRows.size());
+        return result;
+    }
+
     // Package-scoped so unit tests can mock this.
     String generateGuid() {
         return BridgeUtils.generateGuid();
@@ -1,16 +1,11 @@
 package org.sagebionetworks.bridge.services;
 
-import com.amazonaws.services.sqs.AmazonSQS;
-import com.amazonaws.services.sqs.model.SendMessageResult;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import org.sagebionetworks.bridge.config.BridgeConfig;
 import org.sagebionetworks.bridge.models.DateRange;
 
 /**
@@ -18,8 +13,6 @@ import org.sagebionetworks.bridge.models.DateRange;
  */
 @Component
 public class UserDataDownloadViaSqsService implements UserDataDownloadService {
-    private static final Logger logger = LoggerFactory.getLogger(UserDataDownloadViaSqsService.class);
-
     private static final ObjectMapper JSON_OBJECT_MAPPER = new ObjectMapper();
     // constants - these are package scoped so unit tests can access them
     static final String CONFIG_KEY_UDD_SQS_QUEUE_URL = "workerPlatform.request.sqs.queue.url";
@@ -32,19 +25,12 @@ public class UserDataDownloadViaSqsService implements UserDataDownloadService {
     static final String REQUEST_KEY_USER_ID = "userId";
     static final String UDD_SERVICE_TITLE = "UDD";
 
-    private BridgeConfig bridgeConfig;
-    private AmazonSQS sqsClient;
-
-    /** Bridge config, used to get the SQS queue URL. */
-    @Autowired
-    public final void setBridgeConfig(BridgeConfig bridgeConfig) {
-        this.bridgeConfig = bridgeConfig;
-    }
+    private SqsOutboxService sqsOutboxService;
 
-    /** SQS client. */
+    /** SQS outbox, used to send the UDD request. */
     @Autowired
-    public final void setSqsClient(AmazonSQS sqsClient) {
-        this.sqsClient = sqsClient;
+    public final void setSqsOutboxService(SqsOutboxService sqsOutboxService) {
+        this.sqsOutboxService = sqsOutboxService;
     }
 
     /** {@inheritDoc} */
@@ -69,10 +55,7 @@ public class UserDataDownloadViaSqsService implements UserDataDownloadService {
         String requestJson = JSON_OBJECT_MAPPER.writeValueAsString(requestMsg);
 
         // send to SQS
-        String queueUrl = bridgeConfig.getProperty(CONFIG_KEY_UDD_SQS_QUEUE_URL);
-        SendMessageResult sqsResult = sqsClient.sendMessage(queueUrl, requestJson);
-        logger.info("Sent request to SQS for userId=" + userId + ", app=" + appId +
-                ", startDate=" + startDateStr + ", endDate=" + endDateStr + "; received message ID=" +
-                sqsResult.getMessageId());
+        sqsOutboxService.sendMessage(CONFIG_KEY_UDD_SQS_QUEUE_URL, requestJson, "request to SQS for userId=" +
+                userId + ", app=" + appId + ", startDate=" + startDateStr + ", endDate=" + endDateStr);
     }
 }
@@ -4,6 +4,7 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import static org.sagebionetworks.bridge.BridgeConstants.BRIDGE_SESSION_EXPIRE_IN_SECONDS;
 import static org.sagebionetworks.bridge.BridgeConstants.SESSION_TOKEN_HEADER;
 import static org.sagebionetworks.bridge.Roles.ADMINISTRATIVE_ROLES;
+import static org.sagebionetworks.bridge.models.accounts.AccountField.LANGUAGES;
 import static org.springframework.http.HttpHeaders.USER_AGENT;
 
 import java.util.List;
@@ -289,7 +290,7 @@ public abstract class BaseController {
         List<String> languages = reqContext.getCallerLanguages();
         if (!languages.isEmpty()) {
             AccountId accountId = AccountId.forHealthCode(session.getAppId(), session.getHealthCode());
-            accountService.editAccount(accountId, account -> account.setLanguages(languages));
+            accountService.editAccountField(accountId, LANGUAGES, account -> account.setLanguages(languages));
 
             CriteriaContext newContext = new CriteriaContext.Builder()
                 .withLanguages(languages)
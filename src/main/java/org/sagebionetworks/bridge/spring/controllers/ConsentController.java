@@ -1,5 +1,6 @@
 package org.sagebionetworks.bridge.spring.controllers;
 
+import static org.sagebionetworks.bridge.models.accounts.AccountField.SHARING_SCOPE;
 import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
 
 import java.util.Map;
@@ -173,7 +174,7 @@ public class ConsentController extends BaseController {
         UserSession session = getAuthenticatedAndConsentedSession();
         
         AccountId accountId = AccountId.forHealthCode(session.getAppId(), session.getHealthCode());
-        accountService.editAccount(accountId, account -> account.setSharingScope(sharingScope));
+        accountService.editAccountField(accountId, SHARING_SCOPE, account -> account.setSharingScope(sharingScope));
 
         sessionUpdateService.updateSharingScope(session, sharingScope);
         
@@ -2,6 +2,7 @@ package org.sagebionetworks.bridge.spring.controllers;
 
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 import static org.apache.http.HttpStatus.SC_UNAUTHORIZED;
+import static org.sagebionetworks.bridge.models.accounts.AccountField.NOTIFY_BY_EMAIL;
 import static org.springframework.web.bind.annotation.RequestMethod.GET;
 import static org.springframework.web.bind.annotation.RequestMethod.POST;
 
@@ -60,7 +61,8 @@ public class EmailController extends BaseController {
             }
             
             AccountId accountId = AccountId.forEmail(app.getIdentifier(), email);
-            accountService.editAccount(accountId, account -> account.setNotifyByEmail(false));
+            accountService.editAccountField(accountId, NOTIFY_BY_EMAIL,
+                    account -> account.setNotifyByEmail(false));
             
             return "You have been unsubscribed from future email.";
         } catch(Throwable throwable) {
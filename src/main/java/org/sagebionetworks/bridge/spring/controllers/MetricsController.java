@@ -0,0 +1,80 @@
+package org.sagebionetworks.bridge.spring.controllers;
+
+import static org.sagebionetworks.bridge.Roles.ADMIN;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import org.sagebionetworks.bridge.hibernate.ConnectionPoolMonitor;
+import org.sagebionetworks.bridge.hibernate.HibernateCacheInvalidator;
+import org.sagebionetworks.bridge.json.BridgeObjectMapper;
+import org.sagebionetworks.bridge.services.PasswordVerificationService;
+import org.sagebionetworks.bridge.services.RouteMetricsService;
+import org.sagebionetworks.bridge.services.SqsOutboxService;
+import org.sagebionetworks.bridge.spring.filters.AdmissionControlFilter;
+
+/** Reports the in-process metrics of this server instance (not of the cluster as a whole). */
+@CrossOrigin
+@RestController
+public class MetricsController extends BaseController {
+
+    private RouteMetricsService routeMetricsService;
+
+    private ConnectionPoolMonitor connectionPoolMonitor;
+
+    private HibernateCacheInvalidator hibernateCacheInvalidator;
+
+    private SqsOutboxService sqsOutboxService;
+
+    private PasswordVerificationService passwordVerificationService;
+
+    private AdmissionControlFilter admissionControlFilter;
+
+    @Autowired
+    final void setRouteMetricsService(RouteMetricsService routeMetricsService) {
+        this.routeMetricsService = routeMetricsService;
+    }
+
+    @Autowired
+    final void setConnectionPoolMonitor(ConnectionPoolMonitor connectionPoolMonitor) {
+        this.connectionPoolMonitor = connectionPoolMonitor;
+    }
+
+    @Autowired
+    final void setHibernateCacheInvalidator(HibernateCacheInvalidator hibernateCacheInvalidator) {
+        this.hibernateCacheInvalidator = hibernateCacheInvalidator;
+    }
+
+    @Autowired
+    final void setSqsOutboxService(SqsOutboxService sqsOutboxService) {
+        this.sqsOutboxService = sqsOutboxService;
+    }
+
+    @Autowired
+    final void setPasswordVerificationService(PasswordVerificationService passwordVerificationService) {
+        this.passwordVerificationService = passwordVerificationService;
+    }
+
+    @Autowired
+    final void setAdmissionControlFilter(AdmissionControlFilter admissionControlFilter) {
+        this.admissionControlFilter = admissionControlFilter;
+    }
+
+    @GetMapping("/v3/metrics")
+    public JsonNode getMetrics() {
+        getAuthenticatedSession(ADMIN);
+
+        ObjectNode node = BridgeObjectMapper.get().createObjectNode();
+        node.set("routes", routeMetricsService.getMetrics());
+        node.set("connectionPool", connectionPoolMonitor.getMetrics());
+        node.set("hibernateCache", hibernateCacheInvalidator.getMetrics());
+        node.set("sqsOutbox", sqsOutboxService.getMetrics());
+        node.set("passwordHashing", passwordVerificationService.getMetrics());
+        node.set("admission", admissionControlFilter.getMetrics());
+        return node;
+    }
+}
@@ -5,6 +5,7 @@ import static org.sagebionetworks.bridge.BridgeConstants.API_DEFAULT_PAGE_SIZE;
 import static org.sagebionetworks.bridge.BridgeUtils.getDateTimeOrDefault;
 import static org.sagebionetworks.bridge.BridgeUtils.getIntOrDefault;
 import static org.sagebionetworks.bridge.models.ResourceList.OFFSET_BY;
+import static org.sagebionetworks.bridge.models.accounts.AccountField.TIME_ZONE;
 import static org.sagebionetworks.bridge.models.schedules.ScheduledActivity.SCHEDULED_ACTIVITY_WRITER;
 import static org.sagebionetworks.bridge.time.DateUtils.parseZoneFromOffsetString;
 import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
@@ -263,7 +264,7 @@ public class ScheduledActivityController extends BaseController {
 
     DateTimeZone persistTimeZone(UserSession session, DateTimeZone timeZone) {
         AccountId accountId = AccountId.forHealthCode(session.getAppId(), session.getHealthCode());
-        accountService.editAccount(accountId, account -> account.setTimeZone(timeZone));
+        accountService.editAccountField(accountId, TIME_ZONE, account -> account.setTimeZone(timeZone));
         sessionUpdateService.updateTimeZone(session, timeZone);
         return timeZone;
     }
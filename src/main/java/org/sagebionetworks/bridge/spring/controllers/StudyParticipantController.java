@@ -16,6 +16,7 @@ import static org.sagebionetworks.bridge.Roles.STUDY_COORDINATOR;
 import static org.sagebionetworks.bridge.Roles.STUDY_DESIGNER;
 import static org.sagebionetworks.bridge.cache.CacheKey.scheduleModificationTimestamp;
 import static org.sagebionetworks.bridge.models.RequestInfo.REQUEST_INFO_WRITER;
+import static org.sagebionetworks.bridge.models.accounts.AccountField.CLIENT_TIME_ZONE;
 import static org.sagebionetworks.bridge.models.activities.ActivityEventObjectType.TIMELINE_RETRIEVED;
 import static org.sagebionetworks.bridge.models.reports.ReportType.PARTICIPANT;
 import static org.sagebionetworks.bridge.models.schedules2.timelines.Scheduler.INSTANCE;
@@ -304,7 +305,8 @@ public class StudyParticipantController extends BaseController {
                 .orElseThrow(() -> new EntityNotFoundException(Account.class));
 
         if (!clientTimeZone.equals(session.getParticipant().getClientTimeZone())) {
-            accountService.editAccount(accountId, (acct) -> acct.setClientTimeZone(clientTimeZone));
+            accountService.editAccountField(accountId, CLIENT_TIME_ZONE,
+                    (acct) -> acct.setClientTimeZone(clientTimeZone));
             sessionUpdateService.updateClientTimeZone(session, clientTimeZone);
         }
         account.setClientTimeZone(clientTimeZone);
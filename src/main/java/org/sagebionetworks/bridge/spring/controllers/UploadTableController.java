@@ -1,6 +1,7 @@
 package org.sagebionetworks.bridge.spring.controllers;
 
 import static org.sagebionetworks.bridge.BridgeConstants.API_DEFAULT_PAGE_SIZE;
+import static org.sagebionetworks.bridge.BridgeConstants.JSON_MIME_TYPE;
 import static org.sagebionetworks.bridge.Roles.DEVELOPER;
 import static org.sagebionetworks.bridge.Roles.RESEARCHER;
 import static org.sagebionetworks.bridge.Roles.STUDY_COORDINATOR;
@@ -8,6 +9,15 @@ import static org.sagebionetworks.bridge.Roles.STUDY_DESIGNER;
 import static org.sagebionetworks.bridge.Roles.SUPERADMIN;
 import static org.sagebionetworks.bridge.Roles.WORKER;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import javax.servlet.http.HttpServletResponse;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -18,6 +28,8 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import org.sagebionetworks.bridge.BridgeUtils;
+import org.sagebionetworks.bridge.json.BridgeObjectMapper;
+import org.sagebionetworks.bridge.models.ForwardCursorPagedResourceList;
 import org.sagebionetworks.bridge.models.PagedResourceList;
 import org.sagebionetworks.bridge.models.StatusMessage;
 import org.sagebionetworks.bridge.models.accounts.UserSession;
@@ -26,12 +38,19 @@ import org.sagebionetworks.bridge.upload.UploadTableJob;
 import org.sagebionetworks.bridge.upload.UploadTableJobGuidHolder;
 import org.sagebionetworks.bridge.upload.UploadTableJobResult;
 import org.sagebionetworks.bridge.upload.UploadTableRow;
+import org.sagebionetworks.bridge.upload.UploadTableRowBatchResult;
 import org.sagebionetworks.bridge.upload.UploadTableRowQuery;
 
 /** Controller for upload table rows. */
 @CrossOrigin
 @RestController
 public class UploadTableController extends BaseController {
+    private static final TypeReference<List<UploadTableRow>> ROW_LIST_TYPE =
+            new TypeReference<List<UploadTableRow>>() {};
+    // Don't flush the response after every row.
+    private static final ObjectWriter ROW_STREAM_WRITER = BridgeObjectMapper.get().writer()
+            .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
     private static final StatusMessage CREATED_MSG = new StatusMessage("Upload table row created.");
     private static final StatusMessage DELETED_MSG = new StatusMessage("Upload table row deleted.");
     private static final StatusMessage UPDATED_JOB_MSG = new StatusMessage("Upload table job updated.");
@@ -113,6 +132,44 @@ public class UploadTableController extends BaseController {
         return uploadTableService.queryUploadTableRows(appId, studyId, query);
     }
 
+    /**
+     * Query for a page of upload table rows, ordered by createdOn and recordId. Pass the nextPageOffsetKey from each
+     * page as the offsetKey for the next. The total is only included if includeTotal is true. This is used by the
+     * worker to generate a CSV.
+     */
+    @PostMapping("/v1/apps/{appId}/studies/{studyId}/uploadtable/query/cursor")
+    public ForwardCursorPagedResourceList<UploadTableRow> queryUploadTableRowsByCursorForWorker(
+            @PathVariable String appId, @PathVariable String studyId) {
+        getAuthenticatedSession(WORKER);
+        UploadTableRowQuery query = parseJson(UploadTableRowQuery.class);
+        return uploadTableService.queryUploadTableRowsByCursor(appId, studyId, query);
+    }
+
+    /**
+     * Returns all upload table rows matching the query as a JSON array, in the same order as cursor queries. Rows are
+     * written as they are read from the database, so the worker can generate a CSV for a whole study in one request.
+     * The offset key can be used to resume after the last row received. Start and pageSize are ignored.
+     */
+    @PostMapping("/v1/apps/{appId}/studies/{studyId}/uploadtable/query/stream")
+    public void streamUploadTableRowsForWorker(@PathVariable String appId, @PathVariable String studyId,
+            HttpServletResponse response) throws IOException {
+        getAuthenticatedSession(WORKER);
+        UploadTableRowQuery query = parseJson(UploadTableRowQuery.class);
+
+        // Rows are buffered until there's enough to send. The service validates the query before reading any rows,
+        // so if it throws, nothing has been sent and the error is returned as usual.
+        response.setContentType(JSON_MIME_TYPE);
+        SequenceWriter writer = ROW_STREAM_WRITER.writeValuesAsArray(response.getOutputStream());
+        uploadTableService.streamUploadTableRows(appId, studyId, query, row -> {
+            try {
+                writer.write(row);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        });
+        writer.close();
+    }
+
     /**
      * Create a new upload table row, or overwrite it if the row already exists. This is called by the
      * Exporter3Worker to write rows for each upload.
@@ -124,4 +181,17 @@ public class UploadTableController extends BaseController {
         uploadTableService.saveUploadTableRow(appId, studyId, row);
         return CREATED_MSG;
     }
+
+    /**
+     * Create or overwrite a batch of upload table rows (up to 5000 at a time). This is called by the Exporter3Worker
+     * to write many rows at once, such as when backfilling a study's upload table. Invalid rows are skipped and
+     * reported in the result.
+     */
+    @PostMapping("/v1/apps/{appId}/studies/{studyId}/uploadtable/batch")
+    public UploadTableRowBatchResult saveUploadTableRowsForWorker(@PathVariable String appId,
+            @PathVariable String studyId) {
+        getAuthenticatedSession(WORKER);
+        List<UploadTableRow> rows = parseJson(ROW_LIST_TYPE);
+        return uploadTableService.saveUploadTableRows(appId, studyId, rows);
+    }
 }
@@ -0,0 +1,257 @@
+package org.sagebionetworks.bridge.spring.filters;
+
+import static org.sagebionetworks.bridge.BridgeConstants.JSON_MIME_TYPE;
+import static org.springframework.http.HttpHeaders.RETRY_AFTER;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.RateLimiter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import org.sagebionetworks.bridge.config.BridgeConfig;
+import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
+import org.sagebionetworks.bridge.json.BridgeObjectMapper;
+import org.sagebionetworks.bridge.util.AdaptiveConcurrencyLimiter;
+
+/**
+ * Limits how many requests of each priority the server handles at once, so that slow, expensive requests (such as
+ * researcher reports) can't take every worker thread from the cheap requests participants' apps depend on (such as
+ * signing in). Requests are classified by path. Each priority has its own {@link AdaptiveConcurrencyLimiter}, whose
+ * limit shrinks when that priority's requests get slow. When a priority is at its limit, a few requests wait a short
+ * time for a slot; the rest get a 503 with a Retry-After header right away.
+ *
+ * A request holds one of the server's request threads while it runs or waits here, so the priorities are sized to
+ * fit in the server's threads. Critical requests get the threads they're configured with, and normal and bulk
+ * requests share what's left, scaled down if they're configured with more. That way, however busy the other
+ * priorities are, there are always threads left for critical requests.
+ */
+@Component
+public class AdmissionControlFilter implements Filter {
+    private static final Logger LOG = LoggerFactory.getLogger(AdmissionControlFilter.class);
+
+    public enum Priority {
+        /** Requests participants' apps need to keep working: authentication, and the participant's own data. */
+        CRITICAL,
+        /** Everything else. */
+        NORMAL,
+        /** Expensive reports and queries across many participants. */
+        BULK;
+
+        String configPrefix() {
+            return "admission." + name().toLowerCase() + ".";
+        }
+    }
+
+    // Package-scoped for unit tests.
+    static final String CONFIG_KEY_ENABLED = "admission.control.enabled";
+    static final String CONFIG_SUFFIX_MIN_CONCURRENT = "min.concurrent";
+    static final String CONFIG_SUFFIX_MAX_CONCURRENT = "max.concurrent";
+    static final String CONFIG_SUFFIX_MAX_QUEUE = "max.queue";
+    static final String CONFIG_SUFFIX_MAX_WAIT_MILLIS = "max.wait.millis";
+    static final String CONFIG_SUFFIX_TARGET_LATENCY_MILLIS = "target.latency.millis";
+    static final int DEFAULT_SERVER_THREADS = 200;
+    static final double SHED_LOGS_PER_SECOND = 1.0;
+    static final int RETRY_AFTER_SECONDS = 5;
+    static final String TOO_BUSY_ERROR = "The server is handling too many requests. Please try again.";
+    static final String TOO_BUSY_PAYLOAD = "{\"statusCode\":503,\"message\":\"" + TOO_BUSY_ERROR
+            + "\",\"type\":\"ServiceUnavailableException\"}";
+
+    // Paths are checked against the critical patterns first, so a participant's own adherence records are critical
+    // even though researchers' adherence reports are bulk.
+    static final List<Pattern> CRITICAL_PATHS = ImmutableList.of(
+            Pattern.compile("^/(v3|v4|api/v1)/auth/.*"),
+            Pattern.compile("^/v[34]/users/self(/.*)?$"),
+            Pattern.compile("^/v[34]/activities(/.*)?$"),
+            Pattern.compile("^/v3/uploads(/.*)?$"),
+            Pattern.compile("^/v5/studies/[^/]+/participants/self(/.*)?$"));
+    static final List<Pattern> BULK_PATHS = ImmutableList.of(
+            Pattern.compile("^/v5/studies/[^/]+/adherence/.*"),
+            Pattern.compile("^/v5/studies/[^/]+/participants/[^/]+/adherence/(eventstream|study|weekly|detail)$"),
+            Pattern.compile("^/v1/apps/[^/]+/studies/[^/]+/participants/[^/]+/adherence/weekly$"),
+            Pattern.compile("^/v[34]/reports(/.*)?$"),
+            Pattern.compile("^/v3/participants/reports(/.*)?$"),
+            Pattern.compile("^/v[34]/participants/[^/]+/reports/.*"),
+            Pattern.compile("^/v[12]/apps/[^/]+/(participants/[^/]+/)?reports/.*"),
+            Pattern.compile("^/v3/studies/[^/]+/reports/.*"),
+            Pattern.compile(".*/uploadtable/query(/.*)?$"));
+
+    private final Map<Priority, AdaptiveConcurrencyLimiter> limiters = new EnumMap<>(Priority.class);
+    private final Map<Priority, Long> maxWaitMillis = new EnumMap<>(Priority.class);
+    // Shed requests are counted in the metrics; this only keeps a flood of them from flooding the logs.
+    private final RateLimiter shedLogLimiter = RateLimiter.create(SHED_LOGS_PER_SECOND);
+    private BridgeConfig config;
+    private int serverThreads = DEFAULT_SERVER_THREADS;
+    private boolean enabled;
+
+    @Autowired
+    final void setBridgeConfig(BridgeConfig config) {
+        this.config = config;
+        this.enabled = Boolean.parseBoolean(config.getProperty(CONFIG_KEY_ENABLED));
+        makeLimiters();
+    }
+
+    /** The server's request threads, which the priorities' limits and queues must fit in. */
+    @Value("${server.tomcat.max-threads:" + DEFAULT_SERVER_THREADS + "}")
+    final void setServerThreads(int serverThreads) {
+        this.serverThreads = serverThreads > 0 ? serverThreads : DEFAULT_SERVER_THREADS;
+        makeLimiters();
+    }
+
+    private void makeLimiters() {
+        if (config == null) {
+            return;
+        }
+        // Critical requests can have every thread.
+        String criticalPrefix = Priority.CRITICAL.configPrefix();
+        int criticalThreads = config.getPropertyAsInt(criticalPrefix + CONFIG_SUFFIX_MAX_CONCURRENT)
+                + config.getPropertyAsInt(criticalPrefix + CONFIG_SUFFIX_MAX_QUEUE);
+        double criticalScale = fitScale(serverThreads, criticalThreads);
+        makeLimiter(Priority.CRITICAL, criticalScale);
+
+        // The rest share what critical requests can't use.
+        int otherThreads = 0;
+        for (Priority priority : ImmutableList.of(Priority.NORMAL, Priority.BULK)) {
+            String prefix = priority.configPrefix();
+            otherThreads += config.getPropertyAsInt(prefix + CONFIG_SUFFIX_MAX_CONCURRENT)
+                    + config.getPropertyAsInt(prefix + CONFIG_SUFFIX_MAX_QUEUE);
+        }
+        int sharedThreads = serverThreads - Math.min(serverThreads, criticalThreads);
+        double otherScale = fitScale(sharedThreads, otherThreads);
+        if (criticalScale < 1.0 || otherScale < 1.0) {
+            LOG.warn("Admission control is configured for more requests than the server's " + serverThreads
+                    + " threads; scaling critical requests by " + criticalScale + " and other requests by "
+                    + otherScale);
+        }
+        makeLimiter(Priority.NORMAL, otherScale);
+        makeLimiter(Priority.BULK, otherScale);
+    }
+
+    // How much to scale the wanted threads by to fit in the available threads.
+    private static double fitScale(int availableThreads, int wantedThreads) {
+        return wantedThreads <= availableThreads ? 1.0 : (double) availableThreads / wantedThreads;
+    }
+
+    private void makeLimiter(Priority priority, double scale) {
+        String prefix = priority.configPrefix();
+        // Every priority can run at least one request.
+        int maxConcurrent = Math.max(1, (int) (config.getPropertyAsInt(prefix + CONFIG_SUFFIX_MAX_CONCURRENT)
+                * scale));
+        int maxQueue = (int) (config.getPropertyAsInt(prefix + CONFIG_SUFFIX_MAX_QUEUE) * scale);
+        limiters.put(priority, new AdaptiveConcurrencyLimiter(
+                config.getPropertyAsInt(prefix + CONFIG_SUFFIX_MIN_CONCURRENT), maxConcurrent, maxQueue,
+                config.getPropertyAsInt(prefix + CONFIG_SUFFIX_TARGET_LATENCY_MILLIS)));
+        maxWaitMillis.put(priority, (long) config.getPropertyAsInt(prefix + CONFIG_SUFFIX_MAX_WAIT_MILLIS));
+    }
+
+    /** Returns the priority of requests to the given path. Package-scoped for unit tests. */
+    static Priority classify(String path) {
+        if (path == null) {
+            return Priority.NORMAL;
+        }
+        for (Pattern pattern : CRITICAL_PATHS) {
+            if (pattern.matcher(path).matches()) {
+                return Priority.CRITICAL;
+            }
+        }
+        for (Pattern pattern : BULK_PATHS) {
+            if (pattern.matcher(path).matches()) {
+                return Priority.BULK;
+            }
+        }
+        return Priority.NORMAL;
+    }
+
+    @Override
+    public void doFilter(ServletRequest req, ServletResponse res, FilterChain chain)
+            throws IOException, ServletException {
+        // CORS pre-flight requests are cheap, and shouldn't count against any priority.
+        HttpServletRequest request = (HttpServletRequest) req;
+        if (!enabled || "OPTIONS".equals(request.getMethod())) {
+            chain.doFilter(req, res);
+            return;
+        }
+
+        Priority priority = classify(request.getServletPath());
+        AdaptiveConcurrencyLimiter limiter = limiters.get(priority);
+        boolean admitted;
+        try {
+            admitted = limiter.tryAcquire(maxWaitMillis.get(priority));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new BridgeServiceException(ex);
+        }
+        if (!admitted) {
+            if (shedLogLimiter.tryAcquire()) {
+                LOG.warn("Shedding " + priority + " request " + request.getMethod() + " " + request.getServletPath()
+                        + " (" + (limiter.getRejected() + limiter.getTimedOut()) + " " + priority
+                        + " requests shed since startup)");
+            }
+            writeTooBusy((HttpServletResponse) res);
+            return;
+        }
+
+        long startNanos = System.nanoTime();
+        try {
+            chain.doFilter(req, res);
+        } finally {
+            limiter.release(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static void writeTooBusy(HttpServletResponse response) throws IOException {
+        response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        response.setHeader(RETRY_AFTER, String.valueOf(RETRY_AFTER_SECONDS));
+        response.setContentType(JSON_MIME_TYPE);
+        response.getWriter().write(TOO_BUSY_PAYLOAD);
+    }
+
+    /**
+     * Returns a snapshot of each priority's limiter: its current limit, the requests running and waiting, how many
+     * can wait, and the counts of requests turned away.
+     */
+    public ObjectNode getMetrics() {
+        ObjectNode node = BridgeObjectMapper.get().createObjectNode();
+        node.put("enabled", enabled);
+        for (Map.Entry<Priority, AdaptiveConcurrencyLimiter> entry : limiters.entrySet()) {
+            AdaptiveConcurrencyLimiter limiter = entry.getValue();
+            ObjectNode limiterNode = node.putObject(entry.getKey().name().toLowerCase());
+            limiterNode.put("limit", limiter.getLimit());
+            limiterNode.put("inFlight", limiter.getInFlight());
+            limiterNode.put("queued", limiter.getQueued());
+            limiterNode.put("maxQueue", limiter.getMaxQueue());
+            limiterNode.put("rejected", limiter.getRejected());
+            limiterNode.put("timedOut", limiter.getTimedOut());
+        }
+        return node;
+    }
+
+    @Override
+    public void init(FilterConfig filterConfig) {
+        // no-op
+    }
+
+    @Override
+    public void destroy() {
+        // no-op
+    }
+}
@@ -1,5 +1,6 @@
 package org.sagebionetworks.bridge.spring.filters;
 
+import static org.apache.http.HttpHeaders.CONTENT_LENGTH;
 import static org.apache.http.HttpHeaders.USER_AGENT;
 import static org.sagebionetworks.bridge.BridgeConstants.X_FORWARDED_FOR_HEADER;
 
@@ -24,10 +25,14 @@ import org.sagebionetworks.bridge.config.BridgeConfigFactory;
 import org.sagebionetworks.bridge.models.accounts.UserSession;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerMapping;
 
 import org.sagebionetworks.bridge.RequestContext;
 import org.sagebionetworks.bridge.models.Metrics;
+import org.sagebionetworks.bridge.services.CallBudgetService;
+import org.sagebionetworks.bridge.services.RouteMetricsService;
 
 @Component
 public class MetricsFilter implements Filter {
@@ -40,9 +45,24 @@ public class MetricsFilter implements Filter {
     private static final List<String> ALLOW_LIST =
             BridgeConfigFactory.getConfig().getList("query.param.allowlist");
     
+    private RouteMetricsService routeMetricsService;
+
+    private CallBudgetService callBudgetService;
+    
+    @Autowired
+    final void setRouteMetricsService(RouteMetricsService routeMetricsService) {
+        this.routeMetricsService = routeMetricsService;
+    }
+
+    @Autowired
+    final void setCallBudgetService(CallBudgetService callBudgetService) {
+        this.callBudgetService = callBudgetService;
+    }
+    
     @Override
     public void doFilter(ServletRequest req, ServletResponse res, FilterChain chain)
             throws IOException, ServletException {
+        final long startNanos = System.nanoTime();
         final Metrics metrics = RequestContext.get().getMetrics();
         
         HttpServletRequest request = (HttpServletRequest)req;
@@ -62,10 +82,19 @@ public class MetricsFilter implements Filter {
 
         metrics.setQueryParams(paramsMap);
 
+        // If the chain throws, the container will return a 500.
+        int status = 500;
         try {
             chain.doFilter(req, res);
-            metrics.setStatus(response.getStatus());
+            status = response.getStatus();
+            metrics.setStatus(status);
         } finally {
+            // The handler's path pattern is only known once the request has been dispatched.
+            String pattern = (String) request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            routeMetricsService.record(request.getMethod(), pattern, status, System.nanoTime() - startNanos,
+                    request.getContentLengthLong(), contentLength(response));
+            callBudgetService.checkBudget(request.getMethod(), pattern, metrics);
+
             // Log session info when a session is present
             UserSession session = (UserSession) request.getAttribute("CreatedUserSession");
             if (session != null) {
@@ -79,6 +108,19 @@ public class MetricsFilter implements Filter {
         }
     }
 
+    // Only known if the response set a Content-Length header (streamed responses don't).
+    private long contentLength(HttpServletResponse response) {
+        String value = response.getHeader(CONTENT_LENGTH);
+        if (value != null) {
+            try {
+                return Long.parseLong(value);
+            } catch (NumberFormatException e) {
+                // Fall through.
+            }
+        }
+        return -1L;
+    }
+
     private String header(HttpServletRequest request, String name, String defaultVal) {
         final String value = request.getHeader(name);
         return (value != null) ? value : defaultVal;
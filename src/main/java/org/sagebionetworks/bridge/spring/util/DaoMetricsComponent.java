@@ -0,0 +1,30 @@
+package org.sagebionetworks.bridge.spring.util;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.Signature;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+
+import org.sagebionetworks.bridge.RequestContext;
+import org.sagebionetworks.bridge.models.Metrics;
+
+/**
+ * Counts every call to a DAO (any interface in the org.sagebionetworks.bridge.dao package) made while serving a
+ * request, and records the counts in the request's {@link Metrics}. Calls made outside of a request (async threads,
+ * startup) have no metrics and are not counted.
+ */
+@Aspect
+@Component
+public class DaoMetricsComponent {
+
+    @Around("execution(* org.sagebionetworks.bridge.dao.*.*(..))")
+    public Object countDaoCall(ProceedingJoinPoint joinPoint) throws Throwable {
+        Metrics metrics = RequestContext.get().getMetrics();
+        if (metrics != null) {
+            Signature signature = joinPoint.getSignature();
+            metrics.incrementDaoCallCount(signature.getDeclaringType().getSimpleName() + "." + signature.getName());
+        }
+        return joinPoint.proceed();
+    }
+}
@@ -0,0 +1,28 @@
+package org.sagebionetworks.bridge.spring.util;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+
+import org.sagebionetworks.bridge.RequestContext;
+import org.sagebionetworks.bridge.models.Metrics;
+
+/**
+ * Counts the Redis calls (any public method of JedisOps) made while serving a request, and records the counts in
+ * the request's {@link Metrics}. A transaction is counted once, when it is opened. Calls made outside of a request
+ * have no metrics and are not counted.
+ */
+@Aspect
+@Component
+public class RedisMetricsComponent {
+
+    @Around("execution(public * org.sagebionetworks.bridge.redis.JedisOps.*(..))")
+    public Object countRedisCall(ProceedingJoinPoint joinPoint) throws Throwable {
+        Metrics metrics = RequestContext.get().getMetrics();
+        if (metrics != null) {
+            metrics.incrementBackendCallCount(Metrics.BACKEND_REDIS);
+        }
+        return joinPoint.proceed();
+    }
+}
@@ -0,0 +1,34 @@
+package org.sagebionetworks.bridge.upload;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.sagebionetworks.bridge.models.BridgeEntity;
+
+/** The result of saving a batch of upload table rows. */
+public class UploadTableRowBatchResult implements BridgeEntity {
+    private int savedCount;
+    private Map<String, Map<String, List<String>>> errors = new HashMap<>();
+
+    /** Number of rows that were valid and were saved. */
+    public int getSavedCount() {
+        return savedCount;
+    }
+
+    public void setSavedCount(int savedCount) {
+        this.savedCount = savedCount;
+    }
+
+    /**
+     * Validation errors for rows that were not saved. The key is the row's index in the request (starting at 0), since
+     * an invalid row might not have a record ID. The value maps each invalid field to its error messages.
+     */
+    public Map<String, Map<String, List<String>>> getErrors() {
+        return errors;
+    }
+
+    public void setErrors(Map<String, Map<String, List<String>>> errors) {
+        this.errors = errors != null ? errors : new HashMap<>();
+    }
+}
@@ -13,7 +13,9 @@ public class UploadTableRowQuery implements BridgeEntity {
     private DateTime endTime;
     private boolean includeTestData;
     private Integer start;
+    private String offsetKey;
     private Integer pageSize;
+    private boolean includeTotal;
 
     /**
      * App ID to query for. This never needs to be specified as part of the request and is automatically determined by
@@ -84,6 +86,18 @@ public class UploadTableRowQuery implements BridgeEntity {
         this.start = start;
     }
 
+    /**
+     * Offset key for the next page, from the nextPageOffsetKey of the previous page. Only used by cursor queries and
+     * streams (and by streams, to resume an interrupted stream). Cannot be specified with start.
+     */
+    public String getOffsetKey() {
+        return offsetKey;
+    }
+
+    public void setOffsetKey(String offsetKey) {
+        this.offsetKey = offsetKey;
+    }
+
     /**
      * Requested page size of the result set. Cannot be less than 5 or more than 100. If not specified, defaults to 50.
      * If there are fewer rows than requested, this will return all rows.
@@ -95,4 +109,16 @@ public class UploadTableRowQuery implements BridgeEntity {
     public void setPageSize(Integer pageSize) {
         this.pageSize = pageSize;
     }
+
+    /**
+     * Whether cursor queries should count the total number of matching rows. Counting is expensive for large studies,
+     * so this defaults to false. (Offset queries always include the total.)
+     */
+    public boolean getIncludeTotal() {
+        return includeTotal;
+    }
+
+    public void setIncludeTotal(boolean includeTotal) {
+        this.includeTotal = includeTotal;
+    }
 }
@@ -0,0 +1,137 @@
+package org.sagebionetworks.bridge.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Limits how many calls run at once, and adapts the limit to observed latency: a call that finishes slower than the
+ * target latency shrinks the limit by 10%, down to the minimum, and each call that finishes in time while the
+ * limiter is full grows it by about one per round trip, up to the maximum. Only calls that started after the last
+ * decrease can shrink the limit again, so a burst of slow calls that were all running under the old limit shrinks it
+ * once, rather than once per call. When the limit is reached, a few callers can wait (up to a deadline) for a call to
+ * finish; the rest are turned away at once.
+ *
+ * Callers must call {@link #release} once for each successful {@link #tryAcquire}.
+ */
+public class AdaptiveConcurrencyLimiter {
+    // Package-scoped for unit tests.
+    static final double DECREASE_FACTOR = 0.9;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final int maxQueue;
+    private final long targetLatencyNanos;
+
+    private LongSupplier nanoClock = System::nanoTime;
+    private long lastDecreaseNanos;
+    private double limit;
+    private int inFlight;
+    private int queued;
+    private long rejected;
+    private long timedOut;
+
+    /**
+     * @param minLimit
+     *         the limit never shrinks below this
+     * @param maxLimit
+     *         the limit starts at, and never grows above, this
+     * @param maxQueue
+     *         how many callers can wait for a call to finish
+     * @param targetLatencyMillis
+     *         calls slower than this shrink the limit; 0 keeps the limit fixed at the maximum
+     */
+    public AdaptiveConcurrencyLimiter(int minLimit, int maxLimit, int maxQueue, long targetLatencyMillis) {
+        this.minLimit = Math.max(1, Math.min(minLimit, maxLimit));
+        this.maxLimit = Math.max(1, maxLimit);
+        this.maxQueue = Math.max(0, maxQueue);
+        this.targetLatencyNanos = TimeUnit.MILLISECONDS.toNanos(targetLatencyMillis);
+        this.limit = this.maxLimit;
+        this.lastDecreaseNanos = nanoClock.getAsLong();
+    }
+
+    /** Clock used to tell when calls started, relative to the last decrease. Package-scoped for unit tests. */
+    final synchronized void setNanoClock(LongSupplier nanoClock) {
+        this.nanoClock = nanoClock;
+        this.lastDecreaseNanos = nanoClock.getAsLong();
+    }
+
+    /**
+     * Returns true if the call can run. If the limit has been reached, waits up to maxWaitMillis for a call to
+     * finish, unless the queue is already full. Returns false if the call should be turned away.
+     */
+    public synchronized boolean tryAcquire(long maxWaitMillis) throws InterruptedException {
+        if (inFlight < (int) limit) {
+            inFlight++;
+            return true;
+        }
+        if (queued >= maxQueue || maxWaitMillis <= 0) {
+            rejected++;
+            return false;
+        }
+        long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        queued++;
+        try {
+            while (inFlight >= (int) limit) {
+                long remainingNanos = deadlineNanos - System.nanoTime();
+                if (remainingNanos <= 0) {
+                    timedOut++;
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remainingNanos);
+            }
+            inFlight++;
+            return true;
+        } finally {
+            queued--;
+        }
+    }
+
+    /** Ends a call that was allowed to run, and adjusts the limit based on how long the call took. */
+    public synchronized void release(long latency, TimeUnit unit) {
+        boolean wasFull = inFlight >= (int) limit;
+        inFlight--;
+        if (targetLatencyNanos > 0) {
+            long latencyNanos = unit.toNanos(latency);
+            if (latencyNanos > targetLatencyNanos) {
+                // Calls that started before the last decrease ran under the old limit, so they say nothing about the
+                // new one.
+                long nowNanos = nanoClock.getAsLong();
+                if (nowNanos - latencyNanos - lastDecreaseNanos >= 0) {
+                    limit = Math.max(minLimit, limit * DECREASE_FACTOR);
+                    lastDecreaseNanos = nowNanos;
+                }
+            } else if (wasFull) {
+                limit = Math.min(maxLimit, limit + 1.0 / limit);
+            }
+        }
+        notifyAll();
+    }
+
+    /** The number of calls that can currently run at once. */
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    public synchronized int getQueued() {
+        return queued;
+    }
+
+    /** The most callers that can wait for a call to finish. */
+    public int getMaxQueue() {
+        return maxQueue;
+    }
+
+    /** The number of calls turned away because the queue was full. */
+    public synchronized long getRejected() {
+        return rejected;
+    }
+
+    /** The number of calls turned away because they waited too long. */
+    public synchronized long getTimedOut() {
+        return timedOut;
+    }
+}
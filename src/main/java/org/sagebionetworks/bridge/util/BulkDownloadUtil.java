@@ -1,17 +1,32 @@
 package org.sagebionetworks.bridge.util;
 
-import static org.sagebionetworks.bridge.BridgeUtils.COMMA_SPACE_JOINER;
+import static java.nio.charset.StandardCharsets.UTF_8;
 
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig;
 
 import org.joda.time.format.ISODateTimeFormat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.context.support.AbstractApplicationContext;
 import org.springframework.context.support.ClassPathXmlApplicationContext;
 import org.sagebionetworks.bridge.dynamodb.DynamoUpload2;
@@ -27,23 +42,65 @@ import org.sagebionetworks.bridge.upload.UploadValidationContext;
  * list of S3 files instead of a date range.
  * </p>
  * <p>
- * Usage: play "run-main org.sagebionetworks.bridge.util.BulkDownloadUtil [S3 key1] [[S3 key2] [S3 key3] ...]"
+ * Usage: play "run-main org.sagebionetworks.bridge.util.BulkDownloadUtil [options] [S3 key1] [[S3 key2] ...]"
+ * </p>
+ * <p>
+ * Options:
+ * <ul>
+ *     <li>--threads [n] - number of uploads to process concurrently (default 1)</li>
+ *     <li>--max-in-flight-bytes [n] - upper bound on the total size of uploads being processed at once (default
+ *     256 MB)</li>
+ *     <li>--checkpoint [file] - file of completed upload IDs. Uploads in this file are skipped, and uploads are
+ *     appended as they complete, so that a rerun picks up where the last run left off.</li>
+ *     <li>--keys-file [file] - file with one S3 key per line, in addition to any keys on the command line</li>
+ * </ul>
  * </p>
  * <p>
  * You'll also need to override the upload bucket, the CMS cert bucket, and CMS priv key bucket in your configs.
  * </p>
  */
 public class BulkDownloadUtil {
+    private static final Logger LOG = LoggerFactory.getLogger(BulkDownloadUtil.class);
+
+    // Package-scoped for unit tests.
+    static final int DEFAULT_THREADS = 1;
+    static final long DEFAULT_MAX_IN_FLIGHT_BYTES = 256L * 1024 * 1024;
+    static final int PROGRESS_INTERVAL = 100;
+
+    // Semaphore permits are ints, so the byte budget is tracked in kilobytes.
+    private static final int BYTES_PER_PERMIT = 1024;
+
     @SuppressWarnings("resource")
-    public static void main(String[] args) {
-        if (args.length == 0) {
+    public static void main(String[] args) throws Exception {
+        Options options;
+        try {
+            options = Options.parse(args);
+        } catch (IllegalArgumentException ex) {
+            System.out.println(ex.getMessage());
+            options = null;
+        }
+        if (options == null || options.s3Keys.isEmpty()) {
             System.out.println(
-                    "Usage: play \"run-main org.sagebionetworks.bridge.util.BulkDownloadUtil [S3 key1] [[S3 key2] [S3" +
-                            " key3] ...]\"");
+                    "Usage: play \"run-main org.sagebionetworks.bridge.util.BulkDownloadUtil [--threads n] " +
+                            "[--max-in-flight-bytes n] [--checkpoint file] [--keys-file file] [S3 key1] " +
+                            "[[S3 key2] [S3 key3] ...]\"");
             System.exit(1);
             return;
         }
-        String[] s3KeyArr = args;
+
+        // Skip uploads that completed in a previous run.
+        Set<String> completedUploadIds = readCheckpoint(options.checkpointFile);
+        List<String> s3KeyList = new ArrayList<>();
+        for (String s3Key : options.s3Keys) {
+            if (!completedUploadIds.contains(s3Key)) {
+                s3KeyList.add(s3Key);
+            }
+        }
+        System.out.println(String.format("Downloading %s files (%s skipped from checkpoint) with %s threads",
+                s3KeyList.size(), options.s3Keys.size() - s3KeyList.size(), options.threads));
+        if (s3KeyList.isEmpty()) {
+            return;
+        }
 
         // Make tmp directory (if it doesn't exist). This has to be in the source root, since we're probably running
         // this script in Vagrant.
@@ -55,9 +112,6 @@ public class BulkDownloadUtil {
             }
         }
 
-        System.out.println(String.format("Downloading %s files for S3 keys (%s)", s3KeyArr.length,
-                COMMA_SPACE_JOINER.join(s3KeyArr)));
-
         // spring beans
         AbstractApplicationContext springCtx = new ClassPathXmlApplicationContext("application-context.xml");
         springCtx.registerShutdownHook();
@@ -74,69 +128,101 @@ public class BulkDownloadUtil {
                 .withTableNameOverride(new DynamoDBMapperConfig.TableNameOverride("prod-heroku-Upload2")).build();
         DynamoDBMapper uploadMapper = new DynamoDBMapper(ddbClient, uploadMapperConfig);
 
-        DynamoDBMapperConfig healthCodeMapperConfig = new DynamoDBMapperConfig.Builder().withSaveBehavior(
-                DynamoDBMapperConfig.SaveBehavior.UPDATE)
-                .withConsistentReads(DynamoDBMapperConfig.ConsistentReads.CONSISTENT)
-                .withTableNameOverride(new DynamoDBMapperConfig.TableNameOverride("prod-heroku-HealthCode")).build();
-        DynamoDBMapper healthCodeMapper = new DynamoDBMapper(ddbClient, healthCodeMapperConfig);
-
         // get uploads
-        List<UploadObject> uploads = getUploads(uploadMapper, healthCodeMapper, s3KeyArr);
+        List<UploadObject> uploads = getUploads(uploadMapper, s3KeyList);
         System.out.println("Found " + uploads.size() + " uploads.");
 
-        // process uploads
-        for (UploadObject uploadObj : uploads) {
-            UploadValidationContext ctx = new UploadValidationContext();
-            ctx.setAppId(uploadObj.appId);
-            ctx.setUpload(uploadObj.metadata);
-
-            // Make temp dir within temp dir.
-            File uploadTmpDir = new File(tmpDir, uploadObj.metadata.getUploadId());
-            ctx.setTempDir(uploadTmpDir);
+        // Process uploads. Each upload reserves its size from the byte budget before it starts, so that a handful of
+        // very large uploads can't fill up the disk or the heap. (An upload larger than the whole budget reserves the
+        // whole budget, so it runs by itself.)
+        int totalPermits = (int) Math.max(1, Math.min(Integer.MAX_VALUE,
+                options.maxInFlightBytes / BYTES_PER_PERMIT));
+        Semaphore byteBudget = new Semaphore(totalPermits, true);
+        Progress progress = new Progress(uploads.size());
 
-            // use handlers to process uploads
-            try {
-                s3DownloadHandler.handle(ctx);
-            } catch (Exception ex) {
-                System.out.println(String.format(
-                        "Error downloading file %s from S3 with uploadId %s from app %s, healthCode %s, timestamp " +
-                                "%s: %s",
-                        uploadObj.metadata.getFilename(), uploadObj.metadata.getUploadId(), uploadObj.appId,
-                        uploadObj.metadata.getHealthCode(),
-                        uploadObj.metadata.getUploadDate().toString(ISODateTimeFormat.date()), ex.getMessage()));
-                continue;
+        try (CheckpointWriter checkpointWriter = new CheckpointWriter(options.checkpointFile)) {
+            ExecutorService executor = Executors.newFixedThreadPool(options.threads);
+            for (UploadObject uploadObj : uploads) {
+                int permits = (int) Math.max(1, Math.min(totalPermits,
+                        uploadObj.metadata.getContentLength() / BYTES_PER_PERMIT));
+                byteBudget.acquire(permits);
+                executor.execute(() -> {
+                    try {
+                        boolean success = processUpload(tmpDir, uploadObj, s3DownloadHandler, decryptHandler,
+                                unzipHandler);
+                        if (success) {
+                            checkpointWriter.markCompleted(uploadObj.metadata.getUploadId());
+                        }
+                        progress.record(success, uploadObj.metadata.getContentLength());
+                    } catch (RuntimeException ex) {
+                        LOG.error("Unexpected error processing uploadId " + uploadObj.metadata.getUploadId() +
+                                ": " + ex.getMessage(), ex);
+                        progress.record(false, uploadObj.metadata.getContentLength());
+                    } finally {
+                        byteBudget.release(permits);
+                    }
+                });
             }
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        }
 
-            try {
-                decryptHandler.handle(ctx);
-            } catch (Exception ex) {
-                System.out.println(String.format(
-                        "Error decrypting file %s with uploadId %s from app %s, healthCode %s, timestamp %s: %s",
-                        uploadObj.metadata.getFilename(), uploadObj.metadata.getUploadId(), uploadObj.appId,
-                        uploadObj.metadata.getHealthCode(),
-                        uploadObj.metadata.getUploadDate().toString(ISODateTimeFormat.date()), ex.getMessage()));
-                System.out.println("Falling back to non-decrypted data.");
-                ctx.setDecryptedDataFile(ctx.getDataFile());
-            }
+        System.out.println(progress.summary());
+    }
 
-            try {
-                unzipHandler.handle(ctx);
-            } catch (Exception ex) {
-                System.out.println(String.format(
-                        "Error unzipping file %s with uploadId %s from app %s, healthCode %s, timestamp %s: %s",
-                        uploadObj.metadata.getFilename(), uploadObj.metadata.getUploadId(), uploadObj.appId,
-                        uploadObj.metadata.getHealthCode(),
-                        uploadObj.metadata.getUploadDate().toString(ISODateTimeFormat.date()), ex.getMessage()));
-                System.out.println("Will write zipped file to disk.");
-            }
+    // Runs the upload through the same handlers as upload validation. Returns true if the upload was downloaded.
+    // Decrypt and unzip errors fall back to writing the raw or zipped file to disk, as before.
+    private static boolean processUpload(File tmpDir, UploadObject uploadObj, S3DownloadHandler s3DownloadHandler,
+            DecryptHandler decryptHandler, UnzipHandler unzipHandler) {
+        UploadValidationContext ctx = new UploadValidationContext();
+        ctx.setAppId(uploadObj.appId);
+        ctx.setUpload(uploadObj.metadata);
+
+        // Make temp dir within temp dir.
+        File uploadTmpDir = new File(tmpDir, uploadObj.metadata.getUploadId());
+        ctx.setTempDir(uploadTmpDir);
+
+        // use handlers to process uploads
+        try {
+            s3DownloadHandler.handle(ctx);
+        } catch (Exception ex) {
+            LOG.error(String.format(
+                    "Error downloading file %s from S3 with uploadId %s from app %s, healthCode %s, timestamp %s: %s",
+                    uploadObj.metadata.getFilename(), uploadObj.metadata.getUploadId(), uploadObj.appId,
+                    uploadObj.metadata.getHealthCode(),
+                    uploadObj.metadata.getUploadDate().toString(ISODateTimeFormat.date()), ex.getMessage()), ex);
+            return false;
+        }
+
+        try {
+            decryptHandler.handle(ctx);
+        } catch (Exception ex) {
+            LOG.warn(String.format(
+                    "Error decrypting file %s with uploadId %s from app %s, healthCode %s, timestamp %s: %s. " +
+                            "Falling back to non-decrypted data.",
+                    uploadObj.metadata.getFilename(), uploadObj.metadata.getUploadId(), uploadObj.appId,
+                    uploadObj.metadata.getHealthCode(),
+                    uploadObj.metadata.getUploadDate().toString(ISODateTimeFormat.date()), ex.getMessage()));
+            ctx.setDecryptedDataFile(ctx.getDataFile());
         }
+
+        try {
+            unzipHandler.handle(ctx);
+        } catch (Exception ex) {
+            LOG.warn(String.format(
+                    "Error unzipping file %s with uploadId %s from app %s, healthCode %s, timestamp %s: %s. " +
+                            "Will write zipped file to disk.",
+                    uploadObj.metadata.getFilename(), uploadObj.metadata.getUploadId(), uploadObj.appId,
+                    uploadObj.metadata.getHealthCode(),
+                    uploadObj.metadata.getUploadDate().toString(ISODateTimeFormat.date()), ex.getMessage()));
+        }
+        return true;
     }
 
-    private static List<UploadObject> getUploads(DynamoDBMapper uploadMapper, DynamoDBMapper healthCodeMapper,
-            String[] s3KeyArr) {
+    private static List<UploadObject> getUploads(DynamoDBMapper uploadMapper, List<String> s3KeyList) {
         // S3 keys are Upload IDs
         List<Object> uploadKeyList = new ArrayList<>();
-        for (String oneS3Key : s3KeyArr) {
+        for (String oneS3Key : s3KeyList) {
             DynamoUpload2 oneUploadKey = new DynamoUpload2();
             oneUploadKey.setUploadId(oneS3Key);
             uploadKeyList.add(oneUploadKey);
@@ -148,7 +234,7 @@ public class BulkDownloadUtil {
         for (List<Object> oneResultList : batchLoadResultMap.values()) {
             for (Object oneResult : oneResultList) {
                 if (!(oneResult instanceof DynamoUpload2)) {
-                    System.out.println(String.format("DDB returned object of type %s instead of DynamoUpload2",
+                    LOG.error(String.format("DDB returned object of type %s instead of DynamoUpload2",
                             oneResult.getClass().getName()));
                     continue;
                 }
@@ -157,7 +243,6 @@ public class BulkDownloadUtil {
         }
         System.out.println(String.format("Got %s results from DDB Upload table", uploadMetadataList.size()));
 
-        System.out.println("Downloading files from S3 and cross-referencing app ID from health code...");
         List<UploadObject> uploads = new ArrayList<>();
         for (DynamoUpload2 oneUploadMetadata : uploadMetadataList) {
             String appId = oneUploadMetadata.getAppId();
@@ -167,6 +252,135 @@ public class BulkDownloadUtil {
         return uploads;
     }
 
+    /** Reads the upload IDs already completed in a previous run. Package-scoped for unit tests. */
+    static Set<String> readCheckpoint(File checkpointFile) throws IOException {
+        Set<String> completedUploadIds = new HashSet<>();
+        if (checkpointFile != null && checkpointFile.exists()) {
+            for (String line : Files.readAllLines(checkpointFile.toPath(), UTF_8)) {
+                String uploadId = line.trim();
+                if (!uploadId.isEmpty()) {
+                    completedUploadIds.add(uploadId);
+                }
+            }
+        }
+        return completedUploadIds;
+    }
+
+    /** Command-line options. Package-scoped for unit tests. */
+    static class Options {
+        int threads = DEFAULT_THREADS;
+        long maxInFlightBytes = DEFAULT_MAX_IN_FLIGHT_BYTES;
+        File checkpointFile;
+        final Set<String> s3Keys = new LinkedHashSet<>();
+
+        static Options parse(String[] args) throws IOException {
+            Options options = new Options();
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                if (arg.startsWith("--")) {
+                    if (i + 1 >= args.length) {
+                        throw new IllegalArgumentException("Missing value for " + arg);
+                    }
+                    String value = args[++i];
+                    switch (arg) {
+                        case "--threads":
+                            options.threads = Integer.parseInt(value);
+                            if (options.threads < 1) {
+                                throw new IllegalArgumentException("--threads must be at least 1");
+                            }
+                            break;
+                        case "--max-in-flight-bytes":
+                            options.maxInFlightBytes = Long.parseLong(value);
+                            if (options.maxInFlightBytes < 1) {
+                                throw new IllegalArgumentException("--max-in-flight-bytes must be positive");
+                            }
+                            break;
+                        case "--checkpoint":
+                            options.checkpointFile = new File(value);
+                            break;
+                        case "--keys-file":
+                            for (String line : Files.readAllLines(new File(value).toPath(), UTF_8)) {
+                                if (!line.trim().isEmpty()) {
+                                    options.s3Keys.add(line.trim());
+                                }
+                            }
+                            break;
+                        default:
+                            throw new IllegalArgumentException("Unknown option " + arg);
+                    }
+                } else {
+                    options.s3Keys.add(arg);
+                }
+            }
+            return options;
+        }
+    }
+
+    // Appends completed upload IDs to the checkpoint file. Each ID is flushed as soon as it's written, so that an
+    // interrupted run loses at most the uploads that were in flight.
+    private static class CheckpointWriter implements AutoCloseable {
+        private final BufferedWriter writer;
+
+        private CheckpointWriter(File checkpointFile) throws IOException {
+            this.writer = checkpointFile == null ? null : Files.newBufferedWriter(checkpointFile.toPath(), UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+
+        synchronized void markCompleted(String uploadId) {
+            if (writer == null) {
+                return;
+            }
+            try {
+                writer.write(uploadId);
+                writer.newLine();
+                writer.flush();
+            } catch (IOException ex) {
+                LOG.error("Error writing uploadId " + uploadId + " to checkpoint: " + ex.getMessage(), ex);
+            }
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            if (writer != null) {
+                writer.close();
+            }
+        }
+    }
+
+    /** Tracks progress and throughput across worker threads. Package-scoped for unit tests. */
+    static class Progress {
+        private final int total;
+        private final long startMillis = System.currentTimeMillis();
+        private final AtomicInteger succeeded = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private final AtomicLong bytes = new AtomicLong();
+
+        Progress(int total) {
+            this.total = total;
+        }
+
+        void record(boolean success, long contentLength) {
+            int done;
+            if (success) {
+                bytes.addAndGet(contentLength);
+                done = succeeded.incrementAndGet() + failed.get();
+            } else {
+                done = failed.incrementAndGet() + succeeded.get();
+            }
+            if (done % PROGRESS_INTERVAL == 0) {
+                System.out.println(summary());
+            }
+        }
+
+        String summary() {
+            double elapsedSeconds = Math.max(1L, System.currentTimeMillis() - startMillis) / 1000.0;
+            int done = succeeded.get() + failed.get();
+            return String.format("Processed %d/%d uploads (%d succeeded, %d failed) in %.1fs: %.1f uploads/s, " +
+                            "%.2f MB/s", done, total, succeeded.get(), failed.get(), elapsedSeconds,
+                    done / elapsedSeconds, bytes.get() / (1024.0 * 1024.0) / elapsedSeconds);
+        }
+    }
+
     private static class UploadObject {
         private final DynamoUpload2 metadata;
         private final String appId;
@@ -45,6 +45,9 @@ public class UploadTableRowQueryValidator implements Validator {
             if (query.getStart() != null && query.getStart() < 0) {
                 errors.rejectValue("start", "must be non-negative");
             }
+            if (query.getStart() != null && query.getOffsetKey() != null) {
+                errors.rejectValue("offsetKey", "cannot be specified with start");
+            }
             if (query.getPageSize() != null) {
                 if (query.getPageSize() < BridgeConstants.API_MINIMUM_PAGE_SIZE) {
                     errors.rejectValue("pageSize", "must at least 5");
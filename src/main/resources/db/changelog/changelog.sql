@@ -1137,3 +1137,25 @@ CREATE TABLE IF NOT EXISTS `UploadTableJobs` (
     CONSTRAINT `UploadTableJobs-Study-Constraint` FOREIGN KEY (`studyId`, `appId`) REFERENCES `Substudies` (`id`, `studyId`) ON DELETE CASCADE ON UPDATE CASCADE,
     INDEX (`appId`, `studyId`, `requestedOn`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8 COLLATE=utf8_unicode_ci;
+
+-- changeset bridge:84
+
+CREATE TABLE IF NOT EXISTS `AppAccountCounts` (
+    `appId` varchar(60) NOT NULL,
+    `accountCount` int(10) NOT NULL DEFAULT 0,
+    `reconciledOn` bigint(20) NOT NULL,
+    PRIMARY KEY (`appId`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8 COLLATE=utf8_unicode_ci;
+
+-- changeset bridge:85
+
+CREATE TABLE IF NOT EXISTS `ParticipantDataDeletions` (
+    `userId` varchar(255) NOT NULL,
+    `appId` varchar(60) NOT NULL,
+    `healthCode` varchar(255) NOT NULL,
+    `nextStep` enum('HEALTH_DATA','HEALTH_DATA_EX3','UPLOADS','SCHEDULED_ACTIVITIES','ACTIVITY_EVENTS','PARTICIPANT_REPORTS') NOT NULL,
+    `requestedOn` bigint(20) NOT NULL,
+    `modifiedOn` bigint(20) NOT NULL,
+    PRIMARY KEY (`userId`),
+    INDEX (`modifiedOn`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8 COLLATE=utf8_unicode_ci;
@@ -15,6 +15,7 @@ import static org.sagebionetworks.bridge.models.ClientInfo.UNKNOWN_CLIENT;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNotSame;
 import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
@@ -99,6 +100,7 @@ public class RequestContextTest extends Mockito {
         assertTrue(NULL_INSTANCE.getOrgSponsoredStudies().isEmpty());
         assertEquals(NULL_INSTANCE.getCallerClientInfo(), UNKNOWN_CLIENT);
         assertNull(NULL_INSTANCE.getUserAgent());
+        assertSame(NULL_INSTANCE.getEntityCache(), RequestEntityCache.DISABLED);
     }
 
     @Test
@@ -124,6 +126,8 @@ public class RequestContextTest extends Mockito {
         assertEquals(context.getCallerOrgMembership(), TEST_ORG_ID);
         assertEquals(context.getOrgSponsoredStudies(), USER_STUDY_IDS);
         assertEquals(context.getUserAgent(), userAgent);
+        assertNotNull(context.getEntityCache());
+        assertNotSame(context.getEntityCache(), RequestEntityCache.DISABLED);
     }
     
     @Test
@@ -151,6 +155,8 @@ public class RequestContextTest extends Mockito {
         assertEquals(copy.getCallerOrgMembership(), TEST_ORG_ID);
         assertEquals(copy.getOrgSponsoredStudies(), USER_STUDY_IDS);
         assertEquals(copy.getUserAgent(), userAgent);
+        // The copy is the same request, so it shares the same entity cache.
+        assertSame(copy.getEntityCache(), context.getEntityCache());
     }
     
     @Test
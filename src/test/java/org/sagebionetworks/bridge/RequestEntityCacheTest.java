@@ -0,0 +1,73 @@
+package org.sagebionetworks.bridge;
+
+import static org.sagebionetworks.bridge.TestConstants.TEST_APP_ID;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+
+import org.testng.annotations.Test;
+
+import org.sagebionetworks.bridge.models.Metrics;
+import org.sagebionetworks.bridge.models.apps.App;
+import org.sagebionetworks.bridge.models.studies.Study;
+
+public class RequestEntityCacheTest {
+
+    @Test
+    public void putAndGet() {
+        Metrics metrics = new Metrics("request-id");
+        RequestEntityCache cache = new RequestEntityCache(metrics);
+
+        App app = App.create();
+        cache.put(App.class, TEST_APP_ID, app);
+
+        assertSame(cache.get(App.class, TEST_APP_ID), app);
+        assertSame(cache.get(App.class, TEST_APP_ID), app);
+        assertNull(cache.get(App.class, "other-app"));
+        assertNull(cache.get(Study.class, TEST_APP_ID));
+
+        assertEquals(metrics.getJson().get("entity_cache_hits").get("App").intValue(), 2);
+    }
+
+    @Test
+    public void nullEntityNotStored() {
+        RequestEntityCache cache = new RequestEntityCache(null);
+        cache.put(App.class, TEST_APP_ID, null);
+        assertNull(cache.get(App.class, TEST_APP_ID));
+    }
+
+    @Test
+    public void remove() {
+        RequestEntityCache cache = new RequestEntityCache(null);
+        cache.put(App.class, TEST_APP_ID, App.create());
+        cache.put(App.class, "other-app", App.create());
+
+        cache.remove(App.class, TEST_APP_ID);
+        assertNull(cache.get(App.class, TEST_APP_ID));
+        assertNotNull(cache.get(App.class, "other-app"));
+
+        // Removing an entity that isn't there is a no-op.
+        cache.remove(Study.class, TEST_APP_ID);
+    }
+
+    @Test
+    public void removeAll() {
+        RequestEntityCache cache = new RequestEntityCache(null);
+        cache.put(App.class, TEST_APP_ID, App.create());
+        cache.put(App.class, "other-app", App.create());
+        Study study = Study.create();
+        cache.put(Study.class, "study-id", study);
+
+        cache.removeAll(App.class);
+        assertNull(cache.get(App.class, TEST_APP_ID));
+        assertNull(cache.get(App.class, "other-app"));
+        assertSame(cache.get(Study.class, "study-id"), study);
+    }
+
+    @Test
+    public void disabledCacheStoresNothing() {
+        RequestEntityCache.DISABLED.put(App.class, TEST_APP_ID, App.create());
+        assertNull(RequestEntityCache.DISABLED.get(App.class, TEST_APP_ID));
+    }
+}
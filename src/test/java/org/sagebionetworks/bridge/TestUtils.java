@@ -102,6 +102,7 @@ import org.sagebionetworks.bridge.models.templates.TemplateType;
 import org.sagebionetworks.bridge.dynamodb.DynamoApp;
 import org.sagebionetworks.bridge.exceptions.InvalidEntityException;
 import org.sagebionetworks.bridge.models.Criteria;
+import org.sagebionetworks.bridge.models.Metrics;
 import org.sagebionetworks.bridge.models.OperatingSystem;
 import org.sagebionetworks.bridge.models.upload.UploadValidationStrictness;
 import org.sagebionetworks.bridge.services.AccountService;
@@ -273,6 +274,24 @@ public class TestUtils {
         fail("Should have thrown exception: " + cls.getName() + ", message: '" + message + "'");
     }
 
+    /**
+     * Starts a request on this thread with new metrics, so that the MySQL, DynamoDB and Redis calls made by the code
+     * under test are counted as they would be in a real request. Check the counts with
+     * {@link #assertBackendCallCount}, so that a change that makes one call per item (an N+1 pattern) fails the
+     * test. Clear the request afterward with RequestContext.set(null).
+     */
+    public static Metrics countBackendCalls() {
+        Metrics metrics = new Metrics("test-request");
+        RequestContext.set(new RequestContext.Builder().withRequestId("test-request").withMetrics(metrics).build());
+        return metrics;
+    }
+
+    /** Verifies the number of calls to a backend counted since {@link #countBackendCalls} was called. */
+    public static void assertBackendCallCount(String backend, int expected) {
+        assertEquals(RequestContext.get().getMetrics().getBackendCallCount(backend), expected,
+                "Unexpected number of " + backend + " calls");
+    }
+
     /**
      * Mocks this DAO method behavior so that you can verify that AccountDao.editAccount() was called, and
      * that your mock account was correctly edited.
@@ -292,6 +311,19 @@ public class TestUtils {
         }).when(mockAccountService).editAccount(any(), any());
     }
 
+    /**
+     * Mocks AccountService.editAccountField() so that you can verify that it was called, and that your mock account
+     * was correctly edited.
+     */
+    @SuppressWarnings("unchecked")
+    public static void mockEditAccountField(AccountService mockAccountService, Account mockAccount) {
+        doAnswer(invocation -> {
+            Consumer<Account> accountEdits = (Consumer<Account>)invocation.getArgument(2);
+            accountEdits.accept(mockAccount);
+            return null;
+        }).when(mockAccountService).editAccountField(any(), any(), any());
+    }
+
     public static void assertDatesWithTimeZoneEqual(DateTime date1, DateTime date2) {
         // I don't know of a one line test for this... maybe just comparing ISO string formats of the date.
         assertTrue(date1.isEqual(date2));
@@ -49,6 +49,11 @@ public class CacheKeyTest {
                 "test-org-id:test-app:OrgSponsoredStudies");
     }
     
+    @Test
+    public void hibernateCacheVersion() {
+        assertEquals(CacheKey.hibernateCacheVersion().toString(), "HibernateCacheVersion");
+    }
+    
     @Test
     public void tagList() { 
         assertEquals(CacheKey.tagList().toString(), "TagList");
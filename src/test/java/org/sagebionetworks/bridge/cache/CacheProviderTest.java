@@ -481,6 +481,22 @@ public class CacheProviderTest {
         verify(jedisOps).setex(CACHE_KEY.toString(), 100, ser);
     }
     
+    @Test
+    public void setObjectIfAbsent() {
+        when(jedisOps.setnx(CACHE_KEY.toString(), "\"test\"")).thenReturn(1L);
+        
+        assertTrue(cacheProvider.setObjectIfAbsent(CACHE_KEY, "test"));
+        verify(jedisOps).setnx(CACHE_KEY.toString(), "\"test\"");
+    }
+    
+    @Test
+    public void setObjectIfAbsentWhenPresent() {
+        when(jedisOps.setnx(CACHE_KEY.toString(), "\"test\"")).thenReturn(0L);
+        
+        assertFalse(cacheProvider.setObjectIfAbsent(CACHE_KEY, "test"));
+        verify(jedisOps, never()).set(anyString(), anyString());
+    }
+    
     @Test
     public void testGetUserSessionByUserId() throws Exception {
         CacheProvider mockCacheProvider = spy(cacheProvider);
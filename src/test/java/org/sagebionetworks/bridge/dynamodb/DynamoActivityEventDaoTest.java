@@ -65,15 +65,15 @@ public class DynamoActivityEventDaoTest extends Mockito {
     @Mock
     PaginatedQueryList<DynamoActivityEvent> queryResults;
     
+    @Mock
+    DynamoBatchDeleter mockBatchDeleter;
+    
     @Captor
     ArgumentCaptor<DynamoActivityEvent> eventCaptor;
     
     @Captor
     ArgumentCaptor<DynamoDBQueryExpression<DynamoActivityEvent>> queryCaptor;
     
-    @Captor
-    ArgumentCaptor<List<DynamoActivityEvent>> listCaptor;
-    
     @BeforeMethod
     public void before() {
         MockitoAnnotations.initMocks(this);
@@ -342,16 +342,11 @@ public class DynamoActivityEventDaoTest extends Mockito {
     
     @Test
     public void deleteActivityEventsGlobal() {
-        List<DynamoActivityEvent> savedEvents = ImmutableList.of(ENROLLMENT_EVENT, SURVEY_FINISHED_EVENT,
-                QUESTION_ANSWERED_EVENT, ACTIVITY_FINISHED_EVENT);
-        when(queryResults.toArray()).thenReturn(savedEvents.toArray());
-        when(mockMapper.query(eq(DynamoActivityEvent.class), any())).thenReturn(queryResults);
-        
         dao.deleteActivityEvents(HEALTH_CODE);
         
-        verify(mockMapper).batchDelete(listCaptor.capture());
-        List<DynamoActivityEvent> eventsToDelete = listCaptor.getValue();
-        assertEquals(eventsToDelete, savedEvents);
+        verify(mockBatchDeleter).deleteQueryResults(same(mockMapper), eq(DynamoActivityEvent.class),
+                queryCaptor.capture());
+        assertEquals(queryCaptor.getValue().getHashKeyValues().getHealthCode(), HEALTH_CODE);
     }    
     
     @Test
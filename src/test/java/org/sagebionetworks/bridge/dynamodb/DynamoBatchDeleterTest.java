@@ -0,0 +1,187 @@
+package org.sagebionetworks.bridge.dynamodb;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper.FailedBatch;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBQueryExpression;
+import com.amazonaws.services.dynamodbv2.datamodeling.QueryResultPage;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.MoreExecutors;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import org.sagebionetworks.bridge.config.BridgeConfig;
+import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
+
+@SuppressWarnings("unchecked")
+public class DynamoBatchDeleterTest extends Mockito {
+    private static final Map<String, AttributeValue> LAST_KEY = ImmutableMap.of("healthCode",
+            new AttributeValue("lastKey"));
+
+    @Mock
+    DynamoDBMapper mockMapper;
+
+    @Mock
+    BridgeConfig mockConfig;
+
+    DynamoBatchDeleter deleter;
+
+    List<Integer> batchSizes;
+
+    @BeforeMethod
+    public void beforeMethod() {
+        MockitoAnnotations.initMocks(this);
+
+        deleter = new DynamoBatchDeleter();
+        deleter.setExecutor(MoreExecutors.newDirectExecutorService());
+        deleter.setRetryBackoffMillis(0L);
+
+        batchSizes = new ArrayList<>();
+        when(mockMapper.batchDelete(any(List.class))).thenAnswer(invocation -> {
+            batchSizes.add(((List<?>) invocation.getArgument(0)).size());
+            return ImmutableList.of();
+        });
+    }
+
+    @AfterMethod
+    public void afterMethod() {
+        deleter.shutdown();
+    }
+
+    @Test
+    public void deleteQueryResults() {
+        List<Map<String, AttributeValue>> startKeys = new ArrayList<>();
+        when(mockMapper.queryPage(eq(DynamoActivityEvent.class), any())).thenAnswer(invocation -> {
+            DynamoDBQueryExpression<DynamoActivityEvent> query = invocation.getArgument(1);
+            startKeys.add(query.getExclusiveStartKey());
+            return startKeys.size() == 1 ? makePage(30, LAST_KEY) : makePage(5, null);
+        });
+
+        DynamoDBQueryExpression<DynamoActivityEvent> query = new DynamoDBQueryExpression<>();
+        int deleted = deleter.deleteQueryResults(mockMapper, DynamoActivityEvent.class, query);
+        assertEquals(deleted, 35);
+
+        // Each page is read after the one before it is deleted, starting where the last one stopped.
+        assertEquals(startKeys.size(), 2);
+        assertNull(startKeys.get(0));
+        assertSame(startKeys.get(1), LAST_KEY);
+        assertEquals(batchSizes, ImmutableList.of(25, 5, 5));
+    }
+
+    @Test
+    public void deleteQueryResultsNoResults() {
+        when(mockMapper.queryPage(eq(DynamoActivityEvent.class), any())).thenReturn(makePage(0, null));
+
+        int deleted = deleter.deleteQueryResults(mockMapper, DynamoActivityEvent.class,
+                new DynamoDBQueryExpression<>());
+        assertEquals(deleted, 0);
+
+        verify(mockMapper, never()).batchDelete(any(List.class));
+    }
+
+    @Test
+    public void deleteKeys() {
+        // With the default 4 threads, keys are deleted 100 at a time.
+        int deleted = deleter.deleteKeys(mockMapper, makeEvents(130));
+        assertEquals(deleted, 130);
+        assertEquals(batchSizes, ImmutableList.of(25, 25, 25, 25, 25, 5));
+    }
+
+    @Test
+    public void deleteKeysNoKeys() {
+        int deleted = deleter.deleteKeys(mockMapper, ImmutableList.of());
+        assertEquals(deleted, 0);
+
+        verify(mockMapper, never()).batchDelete(any(List.class));
+    }
+
+    @Test
+    public void failedBatchIsRetried() {
+        when(mockMapper.batchDelete(any(List.class))).thenReturn(ImmutableList.of(makeFailedBatch()))
+                .thenReturn(ImmutableList.of());
+
+        int deleted = deleter.deleteKeys(mockMapper, makeEvents(3));
+        assertEquals(deleted, 3);
+
+        verify(mockMapper, times(2)).batchDelete(any(List.class));
+    }
+
+    @Test
+    public void failedBatchThrowsAfterMaxAttempts() {
+        when(mockMapper.batchDelete(any(List.class))).thenReturn(ImmutableList.of(makeFailedBatch()));
+
+        try {
+            deleter.deleteKeys(mockMapper, makeEvents(3));
+            fail("Should have thrown exception");
+        } catch (BridgeServiceException ex) {
+            assertEquals(ex.getMessage(), "Throttled, ");
+        }
+        verify(mockMapper, times(DynamoBatchDeleter.MAX_ATTEMPTS)).batchDelete(any(List.class));
+    }
+
+    @Test
+    public void exceptionIsRethrownAfterOtherBatches() {
+        IllegalStateException exception = new IllegalStateException();
+        when(mockMapper.batchDelete(any(List.class))).thenThrow(exception).thenReturn(ImmutableList.of());
+
+        try {
+            deleter.deleteKeys(mockMapper, makeEvents(50));
+            fail("Should have thrown exception");
+        } catch (IllegalStateException ex) {
+            assertSame(ex, exception);
+        }
+        // The second batch was still deleted.
+        verify(mockMapper, times(2)).batchDelete(any(List.class));
+    }
+
+    @Test
+    public void configuredThreadsSetChunkSize() {
+        when(mockConfig.getPropertyAsInt(DynamoBatchDeleter.CONFIG_KEY_THREADS)).thenReturn(1);
+        when(mockConfig.getPropertyAsInt(DynamoBatchDeleter.CONFIG_KEY_ITEMS_PER_SECOND)).thenReturn(1000);
+        deleter.setConfig(mockConfig);
+        deleter.setExecutor(MoreExecutors.newDirectExecutorService());
+
+        int deleted = deleter.deleteKeys(mockMapper, makeEvents(30));
+        assertEquals(deleted, 30);
+        assertEquals(batchSizes, ImmutableList.of(25, 5));
+    }
+
+    private static List<DynamoActivityEvent> makeEvents(int count) {
+        List<DynamoActivityEvent> eventList = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            DynamoActivityEvent event = new DynamoActivityEvent();
+            event.setHealthCode("healthCode");
+            event.setEventId("event" + i);
+            eventList.add(event);
+        }
+        return eventList;
+    }
+
+    private static QueryResultPage<DynamoActivityEvent> makePage(int count, Map<String, AttributeValue> lastKey) {
+        QueryResultPage<DynamoActivityEvent> page = new QueryResultPage<>();
+        page.setResults(makeEvents(count));
+        page.setLastEvaluatedKey(lastKey);
+        return page;
+    }
+
+    private static FailedBatch makeFailedBatch() {
+        FailedBatch failure = new FailedBatch();
+        failure.setException(new Exception("Throttled"));
+        failure.setUnprocessedItems(ImmutableMap.of());
+        return failure;
+    }
+}
@@ -0,0 +1,39 @@
+package org.sagebionetworks.bridge.dynamodb;
+
+import static org.sagebionetworks.bridge.RequestContext.NULL_INSTANCE;
+import static org.sagebionetworks.bridge.models.Metrics.BACKEND_DYNAMODB;
+import static org.testng.Assert.assertSame;
+
+import com.amazonaws.services.dynamodbv2.model.GetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.QueryRequest;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import org.sagebionetworks.bridge.RequestContext;
+import org.sagebionetworks.bridge.TestUtils;
+
+public class DynamoCallCounterTest {
+
+    @AfterMethod
+    public void afterMethod() {
+        RequestContext.set(NULL_INSTANCE);
+    }
+
+    @Test
+    public void countsDynamoCalls() {
+        TestUtils.countBackendCalls();
+        DynamoCallCounter counter = new DynamoCallCounter();
+
+        GetItemRequest getRequest = new GetItemRequest();
+        assertSame(counter.beforeExecution(getRequest), getRequest);
+        counter.beforeExecution(new QueryRequest());
+
+        TestUtils.assertBackendCallCount(BACKEND_DYNAMODB, 2);
+    }
+
+    @Test
+    public void noMetricsOutsideOfRequest() {
+        GetItemRequest request = new GetItemRequest();
+        assertSame(new DynamoCallCounter().beforeExecution(request), request);
+    }
+}
@@ -24,6 +24,7 @@ import com.amazonaws.services.dynamodbv2.document.internal.IteratorSupport;
 import com.amazonaws.services.dynamodbv2.model.ComparisonOperator;
 import com.amazonaws.services.dynamodbv2.model.Condition;
 import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.MoreExecutors;
 import org.mockito.ArgumentCaptor;
 import org.testng.annotations.Test;
 
@@ -80,6 +81,7 @@ public class DynamoHealthDataDaoTest {
         DynamoHealthDataDao dao = new DynamoHealthDataDao();
         dao.setMapper(mockMapper);
         dao.setHealthCodeIndex(mockIndexHelper);
+        dao.setBatchDeleter(createBatchDeleter());
         int numDeleted = dao.deleteRecordsForHealthCode("test health code");
         assertEquals(numDeleted, 1);
 
@@ -121,6 +123,7 @@ public class DynamoHealthDataDaoTest {
         DynamoHealthDataDao dao = new DynamoHealthDataDao();
         dao.setMapper(mockMapper);
         dao.setHealthCodeIndex(mockIndexHelper);
+        dao.setBatchDeleter(createBatchDeleter());
 
         // execute and validate exception
         Exception thrownEx = null;
@@ -191,4 +194,12 @@ public class DynamoHealthDataDaoTest {
         assertEquals(rangeKeyCondition.getAttributeValueList().get(0).getN(), String.valueOf(TEST_CREATED_ON));
         assertEquals(rangeKeyCondition.getAttributeValueList().get(1).getN(), String.valueOf(TEST_CREATED_ON_END));
     }
+
+    // Deletes on the calling thread, and retries without waiting.
+    private static DynamoBatchDeleter createBatchDeleter() {
+        DynamoBatchDeleter batchDeleter = new DynamoBatchDeleter();
+        batchDeleter.setExecutor(MoreExecutors.newDirectExecutorService());
+        batchDeleter.setRetryBackoffMillis(0L);
+        return batchDeleter;
+    }
 }
@@ -1,10 +1,9 @@
 package org.sagebionetworks.bridge.dynamodb;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.same;
-import static org.mockito.Mockito.doReturn;
-import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.testng.Assert.assertEquals;
@@ -12,15 +11,23 @@ import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBQueryExpression;
+import com.amazonaws.services.dynamodbv2.datamodeling.QueryResultPage;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
 import com.amazonaws.services.dynamodbv2.model.ComparisonOperator;
 import com.amazonaws.services.dynamodbv2.model.Condition;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.BaseEncoding;
 import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
@@ -45,6 +52,9 @@ public class DynamoHealthDataEx3DaoTest {
     @Mock
     private DynamoDBMapper mockMapper;
 
+    @Mock
+    private DynamoBatchDeleter mockBatchDeleter;
+
     @InjectMocks
     @Spy
     private DynamoHealthDataEx3Dao dao;
@@ -79,37 +89,20 @@ public class DynamoHealthDataEx3DaoTest {
 
     @Test
     public void deleteRecordsForHealthCode() {
-        // Mock dependencies.
-        List<DynamoHealthDataRecordEx3> recordList = ImmutableList.of(new DynamoHealthDataRecordEx3());
-        doReturn(recordList).when(dao).queryHelper(any());
-
         // Execute.
         dao.deleteRecordsForHealthCode(TestConstants.HEALTH_CODE);
 
         // Validate.
         ArgumentCaptor<DynamoDBQueryExpression<DynamoHealthDataRecordEx3>> queryCaptor = ArgumentCaptor.forClass(
                 DynamoDBQueryExpression.class);
-        verify(dao).queryHelper(queryCaptor.capture());
+        verify(mockBatchDeleter).deleteQueryResults(same(mockMapper), eq(DynamoHealthDataRecordEx3.class),
+                queryCaptor.capture());
 
         DynamoDBQueryExpression<DynamoHealthDataRecordEx3> query = queryCaptor.getValue();
         assertFalse(query.isConsistentRead());
         assertEquals(query.getIndexName(), DynamoHealthDataRecordEx3.HEALTHCODE_CREATEDON_INDEX);
         assertEquals(query.getHashKeyValues().getHealthCode(), TestConstants.HEALTH_CODE);
         assertNull(query.getRangeKeyConditions());
-
-        verify(mockMapper).batchDelete(same(recordList));
-    }
-
-    @Test
-    public void deleteRecordsForHealthCode_NoRecords() {
-        // Mock dependencies.
-        doReturn(ImmutableList.of()).when(dao).queryHelper(any());
-
-        // Execute.
-        dao.deleteRecordsForHealthCode(TestConstants.HEALTH_CODE);
-
-        // Query is already validated. Just validate that we don't call batchDelete().
-        verify(mockMapper, never()).batchDelete(anyList());
     }
 
     @Test
@@ -133,7 +126,7 @@ public class DynamoHealthDataEx3DaoTest {
     public void getRecordsForHealthCode() {
         // Mock dependencies.
         DynamoHealthDataRecordEx3 record = new DynamoHealthDataRecordEx3();
-        doReturn(ImmutableList.of(record)).when(dao).queryHelper(any());
+        mockQueryPage(ImmutableList.of(record), null);
 
         // Execute.
         ForwardCursorPagedResourceList<HealthDataRecordEx3> resultList = dao.getRecordsForHealthCode(
@@ -146,7 +139,7 @@ public class DynamoHealthDataEx3DaoTest {
         // Validate.
         ArgumentCaptor<DynamoDBQueryExpression<DynamoHealthDataRecordEx3>> queryCaptor = ArgumentCaptor.forClass(
                 DynamoDBQueryExpression.class);
-        verify(dao).queryHelper(queryCaptor.capture());
+        verify(mockMapper).queryPage(eq(DynamoHealthDataRecordEx3.class), queryCaptor.capture());
 
         DynamoDBQueryExpression<DynamoHealthDataRecordEx3> query = queryCaptor.getValue();
         assertFalse(query.isConsistentRead());
@@ -166,7 +159,7 @@ public class DynamoHealthDataEx3DaoTest {
     public void getRecordsForHealthCode_offsetKeyBeforeCreatedOnStart() {
         // Mock dependencies.
         DynamoHealthDataRecordEx3 record = new DynamoHealthDataRecordEx3();
-        doReturn(ImmutableList.of(record)).when(dao).queryHelper(any());
+        mockQueryPage(ImmutableList.of(record), null);
 
         // Execute.
         dao.getRecordsForHealthCode(TestConstants.HEALTH_CODE, CREATED_ON_START, CREATED_ON_END,
@@ -175,7 +168,7 @@ public class DynamoHealthDataEx3DaoTest {
         // Validate.
         ArgumentCaptor<DynamoDBQueryExpression<DynamoHealthDataRecordEx3>> queryCaptor = ArgumentCaptor.forClass(
                 DynamoDBQueryExpression.class);
-        verify(dao).queryHelper(queryCaptor.capture());
+        verify(mockMapper).queryPage(eq(DynamoHealthDataRecordEx3.class), queryCaptor.capture());
 
         DynamoDBQueryExpression<DynamoHealthDataRecordEx3> query = queryCaptor.getValue();
         Condition rangeKeyCondition = query.getRangeKeyConditions().get("createdOn");
@@ -186,7 +179,7 @@ public class DynamoHealthDataEx3DaoTest {
     public void getRecordsForHealthCode_offsetKeyAfterCreatedOnStart() {
         // Mock dependencies.
         DynamoHealthDataRecordEx3 record = new DynamoHealthDataRecordEx3();
-        doReturn(ImmutableList.of(record)).when(dao).queryHelper(any());
+        mockQueryPage(ImmutableList.of(record), null);
 
         // Execute.
         dao.getRecordsForHealthCode(TestConstants.HEALTH_CODE, CREATED_ON_START, CREATED_ON_END,
@@ -195,7 +188,7 @@ public class DynamoHealthDataEx3DaoTest {
         // Validate.
         ArgumentCaptor<DynamoDBQueryExpression<DynamoHealthDataRecordEx3>> queryCaptor = ArgumentCaptor.forClass(
                 DynamoDBQueryExpression.class);
-        verify(dao).queryHelper(queryCaptor.capture());
+        verify(mockMapper).queryPage(eq(DynamoHealthDataRecordEx3.class), queryCaptor.capture());
 
         DynamoDBQueryExpression<DynamoHealthDataRecordEx3> query = queryCaptor.getValue();
         Condition rangeKeyCondition = query.getRangeKeyConditions().get("createdOn");
@@ -214,9 +207,10 @@ public class DynamoHealthDataEx3DaoTest {
         // Mock dependencies.
         DynamoHealthDataRecordEx3 record0 = new DynamoHealthDataRecordEx3();
         DynamoHealthDataRecordEx3 record1 = new DynamoHealthDataRecordEx3();
+        record1.setId(RECORD_ID);
+        record1.setCreatedOn(CREATED_ON_START + 10000);
         DynamoHealthDataRecordEx3 record2 = new DynamoHealthDataRecordEx3();
-        record2.setCreatedOn(CREATED_ON_START + 10000);
-        doReturn(ImmutableList.of(record0, record1, record2)).when(dao).queryHelper(any());
+        mockQueryPage(ImmutableList.of(record0, record1, record2), null);
 
         // Execute.
         ForwardCursorPagedResourceList<HealthDataRecordEx3> resultList = dao.getRecordsForHealthCode(
@@ -224,14 +218,130 @@ public class DynamoHealthDataEx3DaoTest {
         assertEquals(resultList.getItems().size(), 2);
         assertSame(resultList.getItems().get(0), record0);
         assertSame(resultList.getItems().get(1), record1);
-        assertEquals(resultList.getNextPageOffsetKey(), String.valueOf(CREATED_ON_START + 10000));
+        assertEquals(resultList.getNextPageOffsetKey(), DynamoHealthDataEx3Dao.encodeOffsetKey(record1));
+    }
+
+    @Test
+    public void getRecordsForHealthCode_stoppedEarly() {
+        // DynamoDB stops at 1MB even if it hasn't reached the limit. There's still a next page.
+        DynamoHealthDataRecordEx3 record = new DynamoHealthDataRecordEx3();
+        record.setId(RECORD_ID);
+        record.setCreatedOn(CREATED_ON_START + 10000);
+        mockQueryPage(ImmutableList.of(record), ImmutableMap.of("id", new AttributeValue().withS(RECORD_ID)));
+
+        ForwardCursorPagedResourceList<HealthDataRecordEx3> resultList = dao.getRecordsForHealthCode(
+                TestConstants.HEALTH_CODE, CREATED_ON_START, CREATED_ON_END, 2, null);
+        assertEquals(resultList.getItems().size(), 1);
+        assertEquals(resultList.getNextPageOffsetKey(), DynamoHealthDataEx3Dao.encodeOffsetKey(record));
+    }
+
+    @Test
+    public void getRecordsForHealthCode_offsetKeyIsExclusiveStartKey() {
+        DynamoHealthDataRecordEx3 lastRecord = new DynamoHealthDataRecordEx3();
+        lastRecord.setId(RECORD_ID);
+        lastRecord.setCreatedOn(CREATED_ON_START + 10000);
+        mockQueryPage(ImmutableList.of(), null);
+
+        dao.getRecordsForHealthCode(TestConstants.HEALTH_CODE, CREATED_ON_START, CREATED_ON_END,
+                BridgeConstants.API_DEFAULT_PAGE_SIZE, DynamoHealthDataEx3Dao.encodeOffsetKey(lastRecord));
+
+        ArgumentCaptor<DynamoDBQueryExpression<DynamoHealthDataRecordEx3>> queryCaptor = ArgumentCaptor.forClass(
+                DynamoDBQueryExpression.class);
+        verify(mockMapper).queryPage(eq(DynamoHealthDataRecordEx3.class), queryCaptor.capture());
+
+        DynamoDBQueryExpression<DynamoHealthDataRecordEx3> query = queryCaptor.getValue();
+        Map<String, AttributeValue> startKey = query.getExclusiveStartKey();
+        assertEquals(startKey.size(), 3);
+        assertEquals(startKey.get("id").getS(), RECORD_ID);
+        assertEquals(startKey.get("healthCode").getS(), TestConstants.HEALTH_CODE);
+        assertEquals(startKey.get("createdOn").getN(), String.valueOf(CREATED_ON_START + 10000));
+
+        // The range condition is unchanged. The start key does the work.
+        Condition rangeKeyCondition = query.getRangeKeyConditions().get("createdOn");
+        assertEquals(rangeKeyCondition.getAttributeValueList().get(0).getN(), String.valueOf(CREATED_ON_START));
+    }
+
+    @Test(expectedExceptions = BadRequestException.class)
+    public void getRecordsForHealthCode_offsetKeyOutsideRange() {
+        DynamoHealthDataRecordEx3 lastRecord = new DynamoHealthDataRecordEx3();
+        lastRecord.setId(RECORD_ID);
+        lastRecord.setCreatedOn(CREATED_ON_END + 10000);
+
+        dao.getRecordsForHealthCode(TestConstants.HEALTH_CODE, CREATED_ON_START, CREATED_ON_END,
+                BridgeConstants.API_DEFAULT_PAGE_SIZE, DynamoHealthDataEx3Dao.encodeOffsetKey(lastRecord));
+    }
+
+    @Test(expectedExceptions = BadRequestException.class)
+    public void getRecordsForHealthCode_offsetKeyWithoutId() {
+        String offsetKey = BaseEncoding.base64Url().omitPadding().encode(
+                String.valueOf(CREATED_ON_START).getBytes(UTF_8));
+
+        dao.getRecordsForHealthCode(TestConstants.HEALTH_CODE, CREATED_ON_START, CREATED_ON_END,
+                BridgeConstants.API_DEFAULT_PAGE_SIZE, offsetKey);
+    }
+
+    @Test
+    public void getRecordsForApp_readsAreBoundedByPageSize() {
+        // Stand-in for the app index: 25 records, several of which share a createdOn. The stand-in honors the limit
+        // and the exclusive start key the way DynamoDB does, and counts the records it reads.
+        List<DynamoHealthDataRecordEx3> index = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            DynamoHealthDataRecordEx3 record = new DynamoHealthDataRecordEx3();
+            record.setId(String.format("record-%02d", i));
+            record.setAppId(TestConstants.TEST_APP_ID);
+            record.setCreatedOn(CREATED_ON_START + (i / 4) * 1000L);
+            index.add(record);
+        }
+        AtomicInteger recordsRead = new AtomicInteger();
+        List<Integer> readsPerCall = new ArrayList<>();
+        when(mockMapper.queryPage(eq(DynamoHealthDataRecordEx3.class), any())).thenAnswer(invocation -> {
+            DynamoDBQueryExpression<DynamoHealthDataRecordEx3> query = invocation.getArgument(1);
+            Map<String, AttributeValue> startKey = query.getExclusiveStartKey();
+            int from = 0;
+            if (startKey != null) {
+                String startId = startKey.get("id").getS();
+                while (!index.get(from).getId().equals(startId)) {
+                    from++;
+                }
+                from++;
+            }
+            int to = Math.min(index.size(), from + query.getLimit());
+            readsPerCall.add(to - from);
+            recordsRead.addAndGet(to - from);
+
+            QueryResultPage<DynamoHealthDataRecordEx3> page = new QueryResultPage<>();
+            page.setResults(new ArrayList<>(index.subList(from, to)));
+            if (to < index.size()) {
+                page.setLastEvaluatedKey(ImmutableMap.of("id", new AttributeValue().withS(index.get(to - 1).getId())));
+            }
+            return page;
+        });
+
+        List<HealthDataRecordEx3> allRecords = new ArrayList<>();
+        String offsetKey = null;
+        do {
+            ForwardCursorPagedResourceList<HealthDataRecordEx3> resultList = dao.getRecordsForApp(
+                    TestConstants.TEST_APP_ID, CREATED_ON_START, CREATED_ON_END, 5, offsetKey);
+            assertTrue(resultList.getItems().size() <= 5);
+            allRecords.addAll(resultList.getItems());
+            offsetKey = resultList.getNextPageOffsetKey();
+        } while (offsetKey != null);
+
+        // Every record exactly once, in order, even where pages split records with the same createdOn.
+        assertEquals(allRecords, index);
+        // No call reads more than one record past the page.
+        for (int reads : readsPerCall) {
+            assertTrue(reads <= 6);
+        }
+        assertEquals(readsPerCall.size(), 5);
+        assertEquals(recordsRead.get(), 29);
     }
 
     @Test
     public void getRecordsForApp() {
         // Mock dependencies.
         DynamoHealthDataRecordEx3 record = new DynamoHealthDataRecordEx3();
-        doReturn(ImmutableList.of(record)).when(dao).queryHelper(any());
+        mockQueryPage(ImmutableList.of(record), null);
 
         // Execute.
         ForwardCursorPagedResourceList<HealthDataRecordEx3> resultList = dao.getRecordsForApp(
@@ -244,7 +354,7 @@ public class DynamoHealthDataEx3DaoTest {
         // Validate.
         ArgumentCaptor<DynamoDBQueryExpression<DynamoHealthDataRecordEx3>> queryCaptor = ArgumentCaptor.forClass(
                 DynamoDBQueryExpression.class);
-        verify(dao).queryHelper(queryCaptor.capture());
+        verify(mockMapper).queryPage(eq(DynamoHealthDataRecordEx3.class), queryCaptor.capture());
 
         DynamoDBQueryExpression<DynamoHealthDataRecordEx3> query = queryCaptor.getValue();
         assertFalse(query.isConsistentRead());
@@ -264,7 +374,7 @@ public class DynamoHealthDataEx3DaoTest {
     public void getRecordsForAppAndStudy() {
         // Mock dependencies.
         DynamoHealthDataRecordEx3 record = new DynamoHealthDataRecordEx3();
-        doReturn(ImmutableList.of(record)).when(dao).queryHelper(any());
+        mockQueryPage(ImmutableList.of(record), null);
 
         // Execute.
         ForwardCursorPagedResourceList<HealthDataRecordEx3> resultList = dao.getRecordsForAppAndStudy(
@@ -277,7 +387,7 @@ public class DynamoHealthDataEx3DaoTest {
         // Validate.
         ArgumentCaptor<DynamoDBQueryExpression<DynamoHealthDataRecordEx3>> queryCaptor = ArgumentCaptor.forClass(
                 DynamoDBQueryExpression.class);
-        verify(dao).queryHelper(queryCaptor.capture());
+        verify(mockMapper).queryPage(eq(DynamoHealthDataRecordEx3.class), queryCaptor.capture());
 
         DynamoDBQueryExpression<DynamoHealthDataRecordEx3> query = queryCaptor.getValue();
         assertFalse(query.isConsistentRead());
@@ -293,4 +403,11 @@ public class DynamoHealthDataEx3DaoTest {
         assertEquals(rangeKeyCondition.getAttributeValueList().get(0).getN(), String.valueOf(CREATED_ON_START));
         assertEquals(rangeKeyCondition.getAttributeValueList().get(1).getN(), String.valueOf(CREATED_ON_END));
     }
+
+    private void mockQueryPage(List<DynamoHealthDataRecordEx3> results, Map<String, AttributeValue> lastEvaluatedKey) {
+        QueryResultPage<DynamoHealthDataRecordEx3> page = new QueryResultPage<>();
+        page.setResults(results);
+        page.setLastEvaluatedKey(lastEvaluatedKey);
+        when(mockMapper.queryPage(eq(DynamoHealthDataRecordEx3.class), any())).thenReturn(page);
+    }
 }
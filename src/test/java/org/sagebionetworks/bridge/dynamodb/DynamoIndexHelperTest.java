@@ -1,13 +1,19 @@
 package org.sagebionetworks.bridge.dynamodb;
 
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
 
 import javax.annotation.Nonnull;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -20,9 +26,16 @@ import com.amazonaws.services.dynamodbv2.document.Page;
 import com.amazonaws.services.dynamodbv2.document.QueryOutcome;
 import com.amazonaws.services.dynamodbv2.document.RangeKeyCondition;
 import com.amazonaws.services.dynamodbv2.document.spec.QuerySpec;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ProjectionType;
+import com.amazonaws.services.dynamodbv2.model.ProvisionedThroughputExceededException;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableMultiset;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.MoreExecutors;
 
 import org.mockito.ArgumentCaptor;
 import org.testng.annotations.Test;
@@ -139,6 +152,108 @@ public class DynamoIndexHelperTest {
         assertEquals(thingMap.get("jkl; key"), "jkl; value");
     }
     
+    @Test
+    public void queryIndexProjectingAllAttributes() {
+        mockResultsOfQuery(null);
+        helper.setProjectionType(ProjectionType.ALL);
+
+        // The mapper converts the items directly. They aren't re-loaded from the table.
+        DynamoDBMapper mockMapper = mock(DynamoDBMapper.class);
+        when(mockMapper.marshallIntoObject(eq(Thing.class), any(Map.class))).thenAnswer(invocation -> {
+            Map<String, AttributeValue> attributes = invocation.getArgument(1);
+            return new Thing(attributes.get("key").getS(), "full value");
+        });
+        helper.setMapper(mockMapper);
+
+        List<Thing> resultList = helper.query(Thing.class, "test key", "test value", null);
+        assertEquals(resultList.size(), 4);
+        assertEquals(resultList.get(0).key, "foo key");
+        assertEquals(resultList.get(0).value, "full value");
+        assertEquals(resultList.get(3).key, "jkl; key");
+        verify(mockMapper, never()).batchLoad(any(List.class));
+    }
+
+    @Test
+    public void loadFullObjectsInChunks() {
+        helper = new DynamoIndexHelper();
+        helper.setBatchLoadExecutor(MoreExecutors.newDirectExecutorService());
+
+        // The mapper "loads" each key object as itself.
+        DynamoDBMapper mockMapper = mock(DynamoDBMapper.class);
+        when(mockMapper.batchLoad(any(List.class))).thenAnswer(invocation -> ImmutableMap.of("table",
+                new ArrayList<Object>((List) invocation.getArgument(0))));
+        helper.setMapper(mockMapper);
+
+        List<Thing> keyList = new ArrayList<>();
+        for (int i = 0; i < DynamoIndexHelper.MAX_BATCH_LOAD_SIZE * 2 + 50; i++) {
+            keyList.add(new Thing("key" + i));
+        }
+        List<Thing> resultList = helper.loadFullObjects(Thing.class, keyList);
+        assertEquals(resultList.size(), keyList.size());
+        assertEquals(ImmutableSet.copyOf(resultList), ImmutableSet.copyOf(keyList));
+
+        // Two full chunks and one partial chunk.
+        ArgumentCaptor<List> chunkCaptor = ArgumentCaptor.forClass(List.class);
+        verify(mockMapper, times(3)).batchLoad(chunkCaptor.capture());
+        List<Integer> chunkSizes = new ArrayList<>();
+        for (List chunk : chunkCaptor.getAllValues()) {
+            chunkSizes.add(chunk.size());
+        }
+        assertEquals(ImmutableMultiset.copyOf(chunkSizes), ImmutableMultiset.of(DynamoIndexHelper.MAX_BATCH_LOAD_SIZE,
+                DynamoIndexHelper.MAX_BATCH_LOAD_SIZE, 50));
+    }
+
+    @Test(expectedExceptions = ProvisionedThroughputExceededException.class)
+    public void loadFullObjectsRethrowsChunkException() {
+        helper = new DynamoIndexHelper();
+        helper.setBatchLoadExecutor(MoreExecutors.newDirectExecutorService());
+
+        DynamoDBMapper mockMapper = mock(DynamoDBMapper.class);
+        // The second chunk is submitted (and, with a direct executor, loaded) before the first.
+        when(mockMapper.batchLoad(any(List.class))).thenThrow(new ProvisionedThroughputExceededException("too fast"))
+                .thenReturn(ImmutableMap.of());
+        helper.setMapper(mockMapper);
+
+        List<Thing> keyList = new ArrayList<>();
+        for (int i = 0; i < DynamoIndexHelper.MAX_BATCH_LOAD_SIZE + 1; i++) {
+            keyList.add(new Thing("key" + i));
+        }
+        helper.loadFullObjects(Thing.class, keyList);
+    }
+
+    @Test
+    public void loadFullObjectsEmpty() {
+        helper = new DynamoIndexHelper();
+        DynamoDBMapper mockMapper = mock(DynamoDBMapper.class);
+        helper.setMapper(mockMapper);
+
+        assertTrue(helper.loadFullObjects(Thing.class, ImmutableList.of()).isEmpty());
+        verify(mockMapper, never()).batchLoad(any(List.class));
+    }
+
+    @Test
+    public void loadFullObjectsIndexProjectingAllAttributes() {
+        helper = new DynamoIndexHelper();
+        helper.setProjectionType(ProjectionType.ALL);
+        DynamoDBMapper mockMapper = mock(DynamoDBMapper.class);
+        helper.setMapper(mockMapper);
+
+        List<Thing> objectList = ImmutableList.of(new Thing("foo key", "foo value"));
+        assertEquals(helper.loadFullObjects(Thing.class, objectList), objectList);
+        verify(mockMapper, never()).batchLoad(any(List.class));
+    }
+
+    @Test
+    public void getProjectionType() {
+        assertEquals(DynamoIndexHelper.getProjectionType(DynamoHealthDataRecord.class, "healthCode-createdOn-index"),
+                ProjectionType.ALL);
+        assertEquals(DynamoIndexHelper.getProjectionType(DynamoScheduledActivity.class, "schedulePlanGuid-index"),
+                ProjectionType.KEYS_ONLY);
+        // No declared projection.
+        assertEquals(DynamoIndexHelper.getProjectionType(DynamoUpload2.class, "healthCode-requestedOn-index"),
+                ProjectionType.KEYS_ONLY);
+    }
+
     @Test
     public void testCount() {
         mockResultsOfQuery(null);
@@ -38,6 +38,9 @@ public class DynamoParticipantVersionDaoTest {
     @Mock
     private DynamoDBMapper mockMapper;
 
+    @Mock
+    private DynamoBatchDeleter mockBatchDeleter;
+
     @InjectMocks
     @Spy
     private DynamoParticipantVersionDao dao;
@@ -61,23 +64,23 @@ public class DynamoParticipantVersionDaoTest {
 
     @Test
     public void deleteAllForHealthCode() {
-        // Mock dependencies.
-        List<DynamoParticipantVersion> participantVersionList = ImmutableList.of(new DynamoParticipantVersion());
-        doReturn(participantVersionList).when(dao).queryHelper(any());
-
-        // Execute and validate.
+        // Execute.
         dao.deleteParticipantVersionsForHealthCode(TestConstants.TEST_APP_ID, TestConstants.HEALTH_CODE);
-        verify(mockMapper).batchDelete(same(participantVersionList));
-    }
 
-    @Test
-    public void deleteAllForHealthCode_NoVersions() {
-        // Mock dependencies.
-        doReturn(ImmutableList.of()).when(dao).queryHelper(any());
+        // Validate.
+        ArgumentCaptor<DynamoDBQueryExpression<DynamoParticipantVersion>> queryCaptor = ArgumentCaptor.forClass(
+                DynamoDBQueryExpression.class);
+        verify(mockBatchDeleter).deleteQueryResults(same(mockMapper), eq(DynamoParticipantVersion.class),
+                queryCaptor.capture());
 
-        // Execute and validate.
-        dao.deleteParticipantVersionsForHealthCode(TestConstants.TEST_APP_ID, TestConstants.HEALTH_CODE);
-        verify(mockMapper, never()).batchDelete(any(Iterable.class));
+        DynamoDBQueryExpression<DynamoParticipantVersion> query = queryCaptor.getValue();
+        ParticipantVersion queryHashKey = query.getHashKeyValues();
+        assertEquals(queryHashKey.getAppId(), TestConstants.TEST_APP_ID);
+        assertEquals(queryHashKey.getHealthCode(), TestConstants.HEALTH_CODE);
+        assertEquals(query.getProjectionExpression(), DynamoParticipantVersionDao.KEYS_PROJECTION);
+        assertEquals(query.getExpressionAttributeNames(), DynamoParticipantVersionDao.KEYS_PROJECTION_NAMES);
+
+        verify(mockMapper, never()).query(any(), any());
     }
 
     @Test
@@ -123,6 +126,35 @@ public class DynamoParticipantVersionDaoTest {
         DynamoDBQueryExpression<DynamoParticipantVersion> query = queryCaptor.getValue();
         assertFalse(query.isScanIndexForward());
         assertEquals(query.getLimit().intValue(), 1);
+        assertNull(query.getProjectionExpression());
+
+        ParticipantVersion queryHashKey = query.getHashKeyValues();
+        assertEquals(queryHashKey.getAppId(), TestConstants.TEST_APP_ID);
+        assertEquals(queryHashKey.getHealthCode(), TestConstants.HEALTH_CODE);
+    }
+
+    @Test
+    public void getLatestSummaryForHealthCode() {
+        // Mock dependencies.
+        DynamoParticipantVersion participantVersion = new DynamoParticipantVersion();
+        QueryResultPage<DynamoParticipantVersion> queryResultPage = new QueryResultPage<>();
+        queryResultPage.setResults(ImmutableList.of(participantVersion));
+        when(mockMapper.queryPage(eq(DynamoParticipantVersion.class), any())).thenReturn(queryResultPage);
+
+        // Execute and validate.
+        Optional<ParticipantVersion> resultOpt = dao.getLatestParticipantVersionSummaryForHealthCode(
+                TestConstants.TEST_APP_ID, TestConstants.HEALTH_CODE);
+        assertTrue(resultOpt.isPresent());
+        assertSame(resultOpt.get(), participantVersion);
+
+        ArgumentCaptor<DynamoDBQueryExpression<DynamoParticipantVersion>> queryCaptor = ArgumentCaptor.forClass(
+                DynamoDBQueryExpression.class);
+        verify(mockMapper).queryPage(eq(DynamoParticipantVersion.class), queryCaptor.capture());
+
+        DynamoDBQueryExpression<DynamoParticipantVersion> query = queryCaptor.getValue();
+        assertFalse(query.isScanIndexForward());
+        assertEquals(query.getLimit().intValue(), 1);
+        assertEquals(query.getProjectionExpression(), DynamoParticipantVersionDao.SUMMARY_PROJECTION);
 
         ParticipantVersion queryHashKey = query.getHashKeyValues();
         assertEquals(queryHashKey.getAppId(), TestConstants.TEST_APP_ID);
@@ -68,15 +68,15 @@ public class DynamoReportDataDaoTest extends Mockito {
     @Mock
     QueryResultPage<DynamoReportData> mockQueryPage; 
     
+    @Mock
+    DynamoBatchDeleter mockBatchDeleter;
+    
     @Captor
     ArgumentCaptor<DynamoDBQueryExpression<DynamoReportData>> queryCaptor;
     
     @Captor
     ArgumentCaptor<ReportData> reportDataCaptor;
     
-    @Captor
-    ArgumentCaptor<List<DynamoReportData>> dataListCaptor;
-    
     @InjectMocks
     DynamoReportDataDao dao;
     
@@ -195,29 +195,16 @@ public class DynamoReportDataDaoTest extends Mockito {
     
     @Test
     public void deleteReportData() {
-        when(mockMapper.query(eq(DynamoReportData.class), any())).thenReturn(mockQueryList);
-        
         dao.deleteReportData(report0.getReportDataKey());
         
-        verify(mockMapper).query(eq(DynamoReportData.class), queryCaptor.capture());
+        verify(mockBatchDeleter).deleteQueryResults(same(mockMapper), eq(DynamoReportData.class),
+                queryCaptor.capture());
         DynamoDBQueryExpression<DynamoReportData> query = queryCaptor.getValue();
         assertEquals(query.getHashKeyValues().getKey(), report0.getReportDataKey().getKeyString());
-        
-        verify(mockMapper).batchDelete(dataListCaptor.capture());
-        
-        assertEquals(dataListCaptor.getValue(), mockQueryList);
+        assertEquals(query.getProjectionExpression(), DynamoReportDataDao.KEYS_PROJECTION);
+        assertEquals(query.getExpressionAttributeNames(), DynamoReportDataDao.KEYS_PROJECTION_NAMES);
     }
     
-    @Test
-    public void deleteReportDataNoReports() {
-        when(mockMapper.query(eq(DynamoReportData.class), any())).thenReturn(mockQueryList);
-        when(mockQueryList.isEmpty()).thenReturn(true);
-        
-        dao.deleteReportData(report0.getReportDataKey());
-        
-        verify(mockMapper, never()).batchDelete(dataListCaptor.capture());
-    }    
-    
     @Test
     public void deleteReportDataRecord() {
         when(mockMapper.load(any())).thenReturn(report0);
@@ -5,6 +5,7 @@ import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.same;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
@@ -226,15 +227,16 @@ public class DynamoScheduledActivityDaoTest {
     @SuppressWarnings({"unchecked","rawtypes"})
     @Test
     public void canDeleteActivities() {
-        mockMapperResults(Lists.newArrayList(new DynamoScheduledActivity(), new DynamoScheduledActivity()));
-        ArgumentCaptor<List> argument = ArgumentCaptor.forClass(List.class);
+        DynamoBatchDeleter batchDeleter = mock(DynamoBatchDeleter.class);
+        activityDao.setBatchDeleter(batchDeleter);
+        ArgumentCaptor<DynamoDBQueryExpression> argument = ArgumentCaptor.forClass(DynamoDBQueryExpression.class);
         
         activityDao.deleteActivitiesForUser("AAA");
         
-        verify(mapper).queryPage(eq(DynamoScheduledActivity.class), any(DynamoDBQueryExpression.class));
-        verify(mapper).batchDelete(argument.capture());
+        verify(batchDeleter).deleteQueryResults(same(mapper), eq(DynamoScheduledActivity.class), argument.capture());
         
-        assertEquals(argument.getValue().size(), 2);
+        DynamoScheduledActivity hashKey = (DynamoScheduledActivity) argument.getValue().getHashKeyValues();
+        assertEquals(hashKey.getHealthCode(), "AAA");
     }
 
     @SuppressWarnings({"unchecked","rawtypes"})
@@ -71,6 +71,9 @@ public class DynamoUploadDaoTest {
     @Mock
     private DynamoIndexHelper mockIndexHelper;
 
+    @Mock
+    private DynamoIndexHelper mockStudyIdIndexHelper;
+
     @Mock
     private Index mockIndex;
 
@@ -107,6 +110,9 @@ public class DynamoUploadDaoTest {
     @Mock
     HealthCodeDao healthCodeDao;
 
+    @Mock
+    DynamoBatchDeleter mockBatchDeleter;
+
     @Captor
     private ArgumentCaptor<QuerySpec> querySpecCaptor;
 
@@ -114,7 +120,7 @@ public class DynamoUploadDaoTest {
     private ArgumentCaptor<DynamoUpload2> uploadCaptor;
 
     @Captor
-    private ArgumentCaptor<List<Upload>> uploadListCaptor;
+    private ArgumentCaptor<List<Item>> itemListCaptor;
 
     private DynamoUploadDao dao;
 
@@ -125,6 +131,8 @@ public class DynamoUploadDaoTest {
         dao.setDdbMapper(mockMapper);
         dao.setHealthCodeDao(healthCodeDao);
         dao.setHealthCodeRequestedOnIndex(mockIndexHelper);
+        dao.setStudyIdRequestedOnIndex(mockStudyIdIndexHelper);
+        dao.setBatchDeleter(mockBatchDeleter);
     }
 
     @Test
@@ -321,10 +329,8 @@ public class DynamoUploadDaoTest {
         when(mockIndexHelper.query(any(QuerySpec.class))).thenReturn(lastQueryOutcome);
         when(lastQueryOutcome.getItems()).thenReturn(Lists.newArrayList(mockItem1, mockItem2));
 
-        Map<String, List<Object>> batchLoadMap = new ImmutableMap.Builder<String, List<Object>>()
-                .put(UPLOAD_ID, Lists.newArrayList(upload1)).put(UPLOAD_ID_2, Lists.newArrayList(upload2)).build();
-
-        when(mockMapper.batchLoad(any(List.class))).thenReturn(batchLoadMap);
+        when(mockIndexHelper.<Upload>loadItems(eq(DynamoUpload2.class), any())).thenReturn(
+                Lists.newArrayList(upload1, upload2));
 
         ForwardCursorPagedResourceList<Upload> page = dao.getUploads(healthCode, startTime, endTime, pageSize, null);
 
@@ -333,9 +339,8 @@ public class DynamoUploadDaoTest {
         assertEquals(mockSpec.getMaxPageSize(), new Integer(51));
         assertEquals(mockSpec.getHashKey().getValue(), healthCode);
 
-        verify(mockMapper).batchLoad(uploadListCaptor.capture());
-        List<Upload> uploads = uploadListCaptor.getValue();
-        assertEquals(uploads.size(), 2);
+        verify(mockIndexHelper).loadItems(eq(DynamoUpload2.class), itemListCaptor.capture());
+        assertEquals(itemListCaptor.getValue(), ImmutableList.of(mockItem1, mockItem2));
 
         // These have been sorted.
         assertEquals(page.getItems().size(), 2);
@@ -389,14 +394,8 @@ public class DynamoUploadDaoTest {
         when(lastQueryOutcome.getItems()).thenReturn(Lists.newArrayList(mockItem1, mockItem2),
                 Lists.newArrayList(mockItem3, mockItem4));
 
-        Map<String, List<Object>> batchLoadMap1 = new ImmutableMap.Builder<String, List<Object>>()
-                .put(UPLOAD_ID, Lists.newArrayList(upload1)).put(UPLOAD_ID_2, Lists.newArrayList(upload2))
-                .put(UPLOAD_ID_3, Lists.newArrayList(upload3)).build();
-
-        Map<String, List<Object>> batchLoadMap2 = new ImmutableMap.Builder<String, List<Object>>()
-                .put(UPLOAD_ID_3, Lists.newArrayList(upload3)).put(UPLOAD_ID_4, Lists.newArrayList(upload4)).build();
-
-        when(mockMapper.batchLoad(any(List.class))).thenReturn(batchLoadMap1, batchLoadMap2);
+        when(mockIndexHelper.<Upload>loadItems(eq(DynamoUpload2.class), any())).thenReturn(
+                Lists.newArrayList(upload3, upload1, upload2), Lists.newArrayList(upload4, upload3));
 
         ForwardCursorPagedResourceList<Upload> page1 = dao.getUploads(healthCode, startTime, endTime, pageSize, null);
         assertEquals(page1.getNextPageOffsetKey(), "30000");
@@ -441,14 +440,12 @@ public class DynamoUploadDaoTest {
 
         when(queryPage2.getResults()).thenReturn(Lists.newArrayList(upload3, upload4));
 
-        Map<String, List<Object>> batchLoadMap1 = new ImmutableMap.Builder<String, List<Object>>()
-                .put(UPLOAD_ID, Lists.newArrayList(upload1)).put(UPLOAD_ID_2, Lists.newArrayList(upload2))
-                .put(UPLOAD_ID_3, Lists.newArrayList(upload3)).build();
-
-        Map<String, List<Object>> batchLoadMap2 = new ImmutableMap.Builder<String, List<Object>>()
-                .put(UPLOAD_ID_3, Lists.newArrayList(upload3)).put(UPLOAD_ID_4, Lists.newArrayList(upload4)).build();
-
-        when(mockMapper.batchLoad(any(List.class))).thenReturn(batchLoadMap1, batchLoadMap2);
+        // Uploads re-loaded from the table are out of order.
+        when(upload1.getRequestedOn()).thenReturn(50000L);
+        when(upload2.getRequestedOn()).thenReturn(40000L);
+        when(upload4.getRequestedOn()).thenReturn(20000L);
+        when(mockStudyIdIndexHelper.<Upload>loadFullObjects(eq(DynamoUpload2.class), any())).thenReturn(
+                Lists.newArrayList(upload2, upload1), Lists.newArrayList(upload4, upload3));
 
         ForwardCursorPagedResourceList<Upload> page1 = dao.getAppUploads(TEST_APP_ID, startTime, endTime, pageSize, null);
         assertEquals(page1.getNextPageOffsetKey(), "uploadId3");
@@ -457,8 +454,13 @@ public class DynamoUploadDaoTest {
         assertEquals(page1.getRequestParams().get("startTime"), startTime.toString());
         assertEquals(page1.getRequestParams().get("endTime"), endTime.toString());
 
+        // Most recent first.
+        assertEquals(page1.getItems(), ImmutableList.of(upload1, upload2));
+        verify(mockStudyIdIndexHelper).loadFullObjects(DynamoUpload2.class, ImmutableList.of(upload1, upload2));
+
         ForwardCursorPagedResourceList<Upload> page2 = dao.getAppUploads(TEST_APP_ID, startTime, endTime, pageSize,
                 page1.getNextPageOffsetKey());
+        assertEquals(page2.getItems(), ImmutableList.of(upload3, upload4));
         assertNull(page2.getNextPageOffsetKey());
         assertEquals(page2.getRequestParams().get("offsetKey"), "uploadId3");
         assertEquals(page1.getRequestParams().get("pageSize"), pageSize);
@@ -514,16 +516,16 @@ public class DynamoUploadDaoTest {
 
         // Verify dependencies.
         verify(mockIndexHelper).queryKeys(DynamoUpload2.class, INDEX_NAME_HEALTH_CODE, TestConstants.HEALTH_CODE, null);
-        verify(mockMapper).batchDelete(uploads);
+        verify(mockBatchDeleter).deleteKeys(mockMapper, uploads);
     }
 
-    @SuppressWarnings("unchecked")
     @Test
     public void deleteUploadsForHealthCodeFailsSilently() {
         when(mockIndexHelper.queryKeys(DynamoUpload2.class, "healthCode", "oneHealthCode", null))
                 .thenReturn(ImmutableList.of());
 
-        dao.deleteUploadsForHealthCode("oneHealthCode");
+        List<String> uploadIdList = dao.deleteUploadsForHealthCode("oneHealthCode");
+        assertTrue(uploadIdList.isEmpty());
         
         verify(mockIndexHelper).queryKeys(DynamoUpload2.class, "healthCode", "oneHealthCode", null);
         verify(mockMapper, never()).batchDelete(any(List.class));
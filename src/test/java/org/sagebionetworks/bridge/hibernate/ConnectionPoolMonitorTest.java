@@ -0,0 +1,117 @@
+package org.sagebionetworks.bridge.hibernate;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.collect.ImmutableMap;
+import com.mchange.v2.c3p0.PooledDataSource;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import org.sagebionetworks.bridge.config.BridgeConfig;
+import org.sagebionetworks.bridge.json.BridgeObjectMapper;
+
+public class ConnectionPoolMonitorTest extends Mockito {
+
+    @Mock
+    BridgeConfig mockConfig;
+
+    @Mock
+    ScheduledExecutorService mockExecutor;
+
+    @Mock
+    PooledDataSource mockDataSource;
+
+    @Mock
+    HibernateHelper mockHelper;
+
+    ConnectionPoolMonitor monitor;
+
+    @BeforeMethod
+    public void beforeMethod() throws Exception {
+        MockitoAnnotations.initMocks(this);
+
+        when(mockConfig.getPropertyAsInt(ConnectionPoolMonitor.CONFIG_KEY_INTERVAL_SECONDS)).thenReturn(60);
+        when(mockHelper.getMetrics()).thenReturn(BridgeObjectMapper.get().createObjectNode()
+                .put("transactionCount", 10L));
+
+        when(mockDataSource.getNumBusyConnectionsDefaultUser()).thenReturn(3);
+        when(mockDataSource.getNumIdleConnectionsDefaultUser()).thenReturn(2);
+        when(mockDataSource.getNumConnectionsDefaultUser()).thenReturn(5);
+        when(mockDataSource.getNumThreadsAwaitingCheckoutDefaultUser()).thenReturn(1);
+        when(mockDataSource.getStatementCacheNumStatementsDefaultUser()).thenReturn(42);
+
+        monitor = spy(new ConnectionPoolMonitor());
+        monitor.setConfig(mockConfig);
+        monitor.setExecutor(mockExecutor);
+        monitor.setHibernateHelpers(ImmutableMap.of("basicHibernateHelper", mockHelper));
+        doReturn(mockDataSource).when(monitor).getPooledDataSource(ConnectionPoolMonitor.POOL_NAME);
+    }
+
+    @Test
+    public void getMetrics() {
+        JsonNode metrics = monitor.getMetrics();
+
+        JsonNode pool = metrics.get("pool");
+        assertEquals(pool.get("busyConnections").intValue(), 3);
+        assertEquals(pool.get("idleConnections").intValue(), 2);
+        assertEquals(pool.get("totalConnections").intValue(), 5);
+        assertEquals(pool.get("threadsAwaitingCheckout").intValue(), 1);
+        assertEquals(pool.get("cachedStatements").intValue(), 42);
+
+        assertEquals(metrics.get("helpers").get("basicHibernateHelper").get("transactionCount").longValue(), 10L);
+        assertFalse(metrics.has("replicaPool"));
+    }
+
+    @Test
+    public void getMetricsWithReplica() {
+        doReturn(mockDataSource).when(monitor).getPooledDataSource(ConnectionPoolMonitor.REPLICA_POOL_NAME);
+
+        JsonNode metrics = monitor.getMetrics();
+        assertEquals(metrics.get("replicaPool").get("busyConnections").intValue(), 3);
+    }
+
+    @Test
+    public void getMetricsNoPool() {
+        doReturn(null).when(monitor).getPooledDataSource(ConnectionPoolMonitor.POOL_NAME);
+
+        JsonNode metrics = monitor.getMetrics();
+        assertFalse(metrics.has("pool"));
+        assertEquals(metrics.get("helpers").size(), 1);
+    }
+
+    @Test
+    public void start() {
+        monitor.start();
+        verify(mockExecutor).scheduleWithFixedDelay(any(Runnable.class), eq(60L), eq(60L), eq(TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void startDisabled() {
+        when(mockConfig.getPropertyAsInt(ConnectionPoolMonitor.CONFIG_KEY_INTERVAL_SECONDS)).thenReturn(0);
+        monitor.setConfig(mockConfig);
+
+        monitor.start();
+        verifyZeroInteractions(mockExecutor);
+    }
+
+    @Test
+    public void logMetricsDoesNotThrow() throws Exception {
+        when(mockDataSource.getNumBusyConnectionsDefaultUser()).thenThrow(new RuntimeException());
+
+        monitor.logMetrics();
+    }
+
+    @Test
+    public void shutdown() {
+        monitor.shutdown();
+        verify(mockExecutor).shutdown();
+    }
+}
@@ -1,6 +1,7 @@
 package org.sagebionetworks.bridge.hibernate;
 
 import static java.lang.Boolean.TRUE;
+import static org.sagebionetworks.bridge.BridgeConstants.API_MAXIMUM_PAGE_SIZE;
 import static org.sagebionetworks.bridge.Roles.ADMIN;
 import static org.sagebionetworks.bridge.Roles.RESEARCHER;
 import static org.sagebionetworks.bridge.Roles.STUDY_COORDINATOR;
@@ -15,10 +16,26 @@ import static org.sagebionetworks.bridge.TestConstants.USER_DATA_GROUPS;
 import static org.sagebionetworks.bridge.TestConstants.TEST_NOTE;
 import static org.sagebionetworks.bridge.dao.AccountDao.MIGRATION_VERSION;
 import static org.sagebionetworks.bridge.hibernate.HibernateAccountDao.APP_IDS_FOR_USER_QUERY;
+import static org.sagebionetworks.bridge.hibernate.HibernateAccountDao.ACCOUNT_COUNTS_TABLE;
+import static org.sagebionetworks.bridge.hibernate.HibernateAccountDao.ACCOUNT_COUNT_RECONCILE_INTERVAL_MILLIS;
+import static org.sagebionetworks.bridge.hibernate.HibernateAccountDao.DECREMENT_ACCOUNT_COUNT_QUERY;
+import static org.sagebionetworks.bridge.hibernate.HibernateAccountDao.DELETE_ACCOUNT_COUNT_QUERY;
 import static org.sagebionetworks.bridge.hibernate.HibernateAccountDao.DELETE_ALL_ACCOUNTS_QUERY;
+import static org.sagebionetworks.bridge.hibernate.HibernateAccountDao.DELETE_LANGUAGES_QUERY;
+import static org.sagebionetworks.bridge.hibernate.HibernateAccountDao.GET_ACCOUNT_COUNT_QUERY;
+import static org.sagebionetworks.bridge.hibernate.HibernateAccountDao.INCREMENT_ACCOUNT_COUNT_QUERY;
+import static org.sagebionetworks.bridge.hibernate.HibernateAccountDao.INSERT_LANGUAGES_QUERY;
+import static org.sagebionetworks.bridge.hibernate.HibernateAccountDao.PAGE_QUERY;
+import static org.sagebionetworks.bridge.hibernate.HibernateAccountDao.RECOUNT_ACCOUNTS_QUERY;
+import static org.sagebionetworks.bridge.hibernate.HibernateAccountDao.UPDATE_ACCOUNT_FIELD_QUERY;
+import static org.sagebionetworks.bridge.hibernate.HibernateAccountDao.UPSERT_ACCOUNT_COUNT_QUERY;
 import static org.sagebionetworks.bridge.hibernate.HibernateAccountDao.FULL_QUERY;
 import static org.sagebionetworks.bridge.models.SearchTermPredicate.AND;
 import static org.sagebionetworks.bridge.models.StringSearchPosition.INFIX;
+import static org.sagebionetworks.bridge.models.accounts.AccountField.CLIENT_TIME_ZONE;
+import static org.sagebionetworks.bridge.models.accounts.AccountField.LANGUAGES;
+import static org.sagebionetworks.bridge.models.accounts.AccountField.SHARING_SCOPE;
+import static org.sagebionetworks.bridge.models.accounts.AccountField.TIME_ZONE;
 import static org.sagebionetworks.bridge.models.accounts.AccountStatus.ENABLED;
 import static org.sagebionetworks.bridge.models.accounts.AccountStatus.UNVERIFIED;
 import static org.sagebionetworks.bridge.models.accounts.PasswordAlgorithm.DEFAULT_PASSWORD_ALGORITHM;
@@ -29,23 +46,30 @@ import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.function.Consumer;
+import java.util.function.Function;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Sets;
 
+import org.hibernate.Session;
+import org.hibernate.query.NativeQuery;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeUtils;
+import org.joda.time.DateTimeZone;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
@@ -56,7 +80,9 @@ import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import org.sagebionetworks.bridge.RequestContext;
+import org.sagebionetworks.bridge.RequestEntityCache;
 import org.sagebionetworks.bridge.Roles;
+import org.sagebionetworks.bridge.exceptions.ConcurrentModificationException;
 import org.sagebionetworks.bridge.models.AccountSummarySearch;
 import org.sagebionetworks.bridge.models.PagedResourceList;
 import org.sagebionetworks.bridge.models.ResourceList;
@@ -66,6 +92,7 @@ import org.sagebionetworks.bridge.models.accounts.AccountStatus;
 import org.sagebionetworks.bridge.models.accounts.AccountSummary;
 import org.sagebionetworks.bridge.models.accounts.ExternalIdentifierInfo;
 import org.sagebionetworks.bridge.models.accounts.Phone;
+import org.sagebionetworks.bridge.models.accounts.SharingScope;
 import org.sagebionetworks.bridge.models.apps.App;
 import org.sagebionetworks.bridge.models.studies.Enrollment;
 import org.sagebionetworks.bridge.models.studies.EnrollmentFilter;
@@ -122,6 +149,9 @@ public class HibernateAccountDaoTest extends Mockito {
     @Mock
     private HibernateHelper mockHibernateHelper;
 
+    @Mock
+    private Session mockSession;
+
     private App app;
     
     @InjectMocks
@@ -169,12 +199,20 @@ public class HibernateAccountDaoTest extends Mockito {
 
     @Test
     public void createAccountSuccess() {
+        NativeQuery<?> mockQuery = mockNativeQueries(1);
         Account account = makeValidGenericAccount();
 
         // execute - We generate a new account ID.
         dao.createAccount(account);
         
-        verify(mockHibernateHelper).create(account);
+        // The account and its counter are written in the same session.
+        InOrder inOrder = inOrder(mockSession);
+        inOrder.verify(mockSession).save(account);
+        inOrder.verify(mockSession).createNativeQuery(INCREMENT_ACCOUNT_COUNT_QUERY);
+        verify(mockQuery).addSynchronizedQuerySpace(ACCOUNT_COUNTS_TABLE);
+        verify(mockQuery).setParameter("appId", TEST_APP_ID);
+        verify(mockQuery).executeUpdate();
+        verify(mockHibernateHelper, times(1)).executeWithExceptionHandling(any(), any());
     }
 
     @Test
@@ -186,6 +224,97 @@ public class HibernateAccountDaoTest extends Mockito {
         verify(mockHibernateHelper).update(account);
     }
 
+    @Test
+    public void updateAccountField() {
+        NativeQuery<?> mockQuery = mockNativeQueries(1);
+        Account account = Account.create();
+        account.setId(ACCOUNT_ID);
+        account.setVersion(2);
+        account.setModifiedOn(MODIFIED_ON);
+        account.setClientTimeZone("America/Los_Angeles");
+        
+        dao.updateAccountField(account, CLIENT_TIME_ZONE);
+        
+        assertEquals(account.getVersion(), 3);
+        verify(mockSession).createNativeQuery(String.format(UPDATE_ACCOUNT_FIELD_QUERY, "clientTimeZone = :value,"));
+        verify(mockSession, times(1)).createNativeQuery(anyString());
+        verify(mockQuery).setParameter("id", ACCOUNT_ID);
+        verify(mockQuery).setParameter("version", 2);
+        verify(mockQuery).setParameter("modifiedOn", MODIFIED_ON.getMillis());
+        verify(mockQuery).setParameter("value", "America/Los_Angeles");
+        verify(mockQuery).addSynchronizedEntityClass(HibernateAccount.class);
+        verify(mockHibernateHelper, never()).update(any());
+    }
+    
+    @Test
+    public void updateAccountFieldConvertsValues() {
+        NativeQuery<?> mockQuery = mockNativeQueries(1);
+        Account account = Account.create();
+        account.setId(ACCOUNT_ID);
+        account.setTimeZone(DateTimeZone.forOffsetHours(-7));
+        
+        dao.updateAccountField(account, TIME_ZONE);
+        
+        verify(mockSession).createNativeQuery(String.format(UPDATE_ACCOUNT_FIELD_QUERY, "timeZone = :value,"));
+        verify(mockQuery).setParameter("value", "-07:00");
+        
+        account.setSharingScope(SharingScope.ALL_QUALIFIED_RESEARCHERS);
+        dao.updateAccountField(account, SHARING_SCOPE);
+        
+        verify(mockSession).createNativeQuery(String.format(UPDATE_ACCOUNT_FIELD_QUERY, "sharingScope = :value,"));
+        verify(mockQuery).setParameter("value", "ALL_QUALIFIED_RESEARCHERS");
+    }
+    
+    @Test
+    public void updateAccountFieldReplacesLanguages() {
+        NativeQuery<?> mockQuery = mockNativeQueries(1);
+        Account account = Account.create();
+        account.setId(ACCOUNT_ID);
+        account.setLanguages(ImmutableList.of("en", "fr"));
+        
+        dao.updateAccountField(account, LANGUAGES);
+        
+        InOrder inOrder = inOrder(mockSession);
+        inOrder.verify(mockSession).createNativeQuery(String.format(UPDATE_ACCOUNT_FIELD_QUERY, ""));
+        inOrder.verify(mockSession).createNativeQuery(DELETE_LANGUAGES_QUERY);
+        inOrder.verify(mockSession).createNativeQuery(INSERT_LANGUAGES_QUERY
+                + "(:id, :language0, 0), (:id, :language1, 1)");
+        verify(mockQuery).setParameter("language0", "en");
+        verify(mockQuery).setParameter("language1", "fr");
+        verify(mockQuery, never()).setParameter(eq("value"), any());
+    }
+    
+    @Test
+    public void updateAccountFieldClearsLanguages() {
+        mockNativeQueries(1);
+        Account account = Account.create();
+        account.setId(ACCOUNT_ID);
+        
+        dao.updateAccountField(account, LANGUAGES);
+        
+        verify(mockSession).createNativeQuery(DELETE_LANGUAGES_QUERY);
+        verify(mockSession, times(2)).createNativeQuery(anyString());
+    }
+    
+    @Test
+    public void updateAccountFieldWrongVersion() {
+        mockNativeQueries(0);
+        Account account = Account.create();
+        account.setId(ACCOUNT_ID);
+        account.setVersion(2);
+        account.setLanguages(ImmutableList.of("en"));
+        
+        try {
+            dao.updateAccountField(account, LANGUAGES);
+            fail("Should have thrown exception");
+        } catch (ConcurrentModificationException e) {
+            // expected
+        }
+        // The languages are not touched, and the version is not changed.
+        verify(mockSession, times(1)).createNativeQuery(anyString());
+        assertEquals(account.getVersion(), 2);
+    }
+    
     @Test
     public void updateAccountAllowsIdentifierUpdate() {
         // This call will allow identifiers/verification status to be updated.
@@ -450,13 +579,66 @@ public class HibernateAccountDaoTest extends Mockito {
 
     @Test
     public void deleteWithId() throws Exception {
+        NativeQuery<?> mockQuery = mockNativeQueries(1);
         HibernateAccount hibernateAccount = makeValidHibernateAccount(false);
-        when(mockHibernateHelper.getById(HibernateAccount.class, ACCOUNT_ID)).thenReturn(hibernateAccount);
+        when(mockSession.get(HibernateAccount.class, ACCOUNT_ID)).thenReturn(hibernateAccount);
 
-        // Directly deletes with the ID it has
         dao.deleteAccount(ACCOUNT_ID);
 
-        verify(mockHibernateHelper).deleteById(HibernateAccount.class, ACCOUNT_ID);
+        // The counter is decremented and the account deleted in the same session.
+        InOrder inOrder = inOrder(mockSession);
+        inOrder.verify(mockSession).createNativeQuery(DECREMENT_ACCOUNT_COUNT_QUERY);
+        inOrder.verify(mockSession).delete(hibernateAccount);
+        verify(mockQuery).addSynchronizedQuerySpace(ACCOUNT_COUNTS_TABLE);
+        verify(mockQuery).setParameter("appId", TEST_APP_ID);
+        verify(mockHibernateHelper, times(1)).executeWithExceptionHandling(any(), any());
+    }
+
+    @Test
+    public void deleteMissingAccount() {
+        mockNativeQueries(1);
+
+        dao.deleteAccount(ACCOUNT_ID);
+
+        verify(mockSession, never()).createNativeQuery(anyString());
+        verify(mockSession, never()).delete(any());
+    }
+
+    @Test
+    public void getAccountCount() {
+        Object[] row = new Object[] { 7, MOCK_DATETIME.getMillis() - 1000L };
+        when(mockHibernateHelper.nativeQuery(eq(GET_ACCOUNT_COUNT_QUERY), any())).thenReturn(ImmutableList.of(row));
+
+        assertEquals(dao.getAccountCount(TEST_APP_ID), 7);
+
+        // The count is recent, so it isn't recounted.
+        verify(mockHibernateHelper, never()).nativeQueryCount(any(), any());
+    }
+
+    @Test
+    public void getAccountCountMissingIsRecounted() {
+        when(mockHibernateHelper.nativeQuery(eq(GET_ACCOUNT_COUNT_QUERY), any())).thenReturn(ImmutableList.of());
+        when(mockHibernateHelper.nativeQueryCount(eq(RECOUNT_ACCOUNTS_QUERY), any())).thenReturn(12);
+
+        assertEquals(dao.getAccountCount(TEST_APP_ID), 12);
+
+        verify(mockHibernateHelper).nativeTableUpdate(eq(UPSERT_ACCOUNT_COUNT_QUERY), paramCaptor.capture(),
+                eq(ACCOUNT_COUNTS_TABLE));
+        Map<String, Object> params = paramCaptor.getValue();
+        assertEquals(params.get("appId"), TEST_APP_ID);
+        assertEquals(params.get("accountCount"), 12);
+        assertEquals(params.get("reconciledOn"), MOCK_DATETIME.getMillis());
+    }
+
+    @Test
+    public void getAccountCountStaleIsRecounted() {
+        Object[] row = new Object[] { 7, MOCK_DATETIME.getMillis() - ACCOUNT_COUNT_RECONCILE_INTERVAL_MILLIS };
+        when(mockHibernateHelper.nativeQuery(eq(GET_ACCOUNT_COUNT_QUERY), any())).thenReturn(ImmutableList.of(row));
+        when(mockHibernateHelper.nativeQueryCount(eq(RECOUNT_ACCOUNTS_QUERY), any())).thenReturn(8);
+
+        assertEquals(dao.getAccountCount(TEST_APP_ID), 8);
+
+        verify(mockHibernateHelper).nativeTableUpdate(eq(UPSERT_ACCOUNT_COUNT_QUERY), any(), eq(ACCOUNT_COUNTS_TABLE));
     }
 
     @Test
@@ -491,8 +673,7 @@ public class HibernateAccountDaoTest extends Mockito {
 
         when(mockHibernateHelper.queryGet(expQuery, APP_QUERY_PARAMS, 10, 5, String.class))
                 .thenReturn(ImmutableList.of("account-1", "account-2"));
-        when(mockHibernateHelper.getById(HibernateAccount.class, "account-1")).thenReturn(hibernateAccount1);        
-        when(mockHibernateHelper.getById(HibernateAccount.class, "account-2")).thenReturn(hibernateAccount2);
+        mockPage(hibernateAccount2, hibernateAccount1);
         when(mockHibernateHelper.queryCount(eq(expCountQuery), any())).thenReturn(12);
 
         // execute and validate
@@ -528,11 +709,59 @@ public class HibernateAccountDaoTest extends Mockito {
 
         // verify hibernate calls
         verify(mockHibernateHelper).queryGet(eq(expQuery), eq(APP_QUERY_PARAMS), eq(10), eq(5), eq(String.class));
-        verify(mockHibernateHelper).getById(HibernateAccount.class, "account-1");
-        verify(mockHibernateHelper).getById(HibernateAccount.class, "account-2");
+        verify(mockHibernateHelper).queryGet(PAGE_QUERY, ImmutableMap.of("ids", ImmutableList.of("account-1",
+                "account-2")), null, null, HibernateAccount.class);
+        verify(mockHibernateHelper, never()).getById(any(), any());
         verify(mockHibernateHelper).queryCount(expCountQuery, APP_QUERY_PARAMS);
     }
     
+    @Test
+    public void getPagedAccountSummariesFromReplica() throws Exception {
+        // Without a replica, the replica helper is the primary's.
+        HibernateAccount hibernateAccount = makeValidHibernateAccount(false);
+        when(mockHibernateHelper.queryGet(any(), any(), any(), any(), eq(String.class)))
+                .thenReturn(ImmutableList.of(ACCOUNT_ID));
+        mockPage(hibernateAccount);
+        when(mockHibernateHelper.queryCount(any(), any())).thenReturn(1);
+
+        PagedResourceList<AccountSummary> retValue = dao.getPagedAccountSummariesFromReplica(TEST_APP_ID,
+                AccountSummarySearch.EMPTY_SEARCH);
+        assertEquals(retValue.getItems().size(), 1);
+        assertEquals(retValue.getItems().get(0).getId(), ACCOUNT_ID);
+        assertEquals(retValue.getTotal(), (Integer) 1);
+    }
+
+    @Test
+    public void getPagedSkipsAccountsDeletedAfterIdQuery() throws Exception {
+        HibernateAccount hibernateAccount = makeValidHibernateAccount(false);
+        hibernateAccount.setId("account-2");
+        when(mockHibernateHelper.queryGet(any(), any(), any(), any(), eq(String.class)))
+                .thenReturn(ImmutableList.of("account-1", "account-2"));
+        mockPage(hibernateAccount);
+
+        PagedResourceList<AccountSummary> retValue = dao.getPagedAccountSummaries(TEST_APP_ID,
+                AccountSummarySearch.EMPTY_SEARCH);
+        assertEquals(retValue.getItems().size(), 1);
+        assertEquals(retValue.getItems().get(0).getId(), "account-2");
+    }
+
+    @Test
+    public void getPagedWithNoIdsDoesNotLoadAccounts() throws Exception {
+        PagedResourceList<AccountSummary> retValue = dao.getPagedAccountSummaries(TEST_APP_ID,
+                AccountSummarySearch.EMPTY_SEARCH);
+        assertTrue(retValue.getItems().isEmpty());
+        verify(mockHibernateHelper, never()).queryGet(eq(PAGE_QUERY), any(), any(), any(), any());
+    }
+
+    @Test
+    public void getPagedAccountSummariesHelperCallsDoNotGrowWithPageSize() throws Exception {
+        // The IDs, the accounts and the total, however many accounts are on the page. This counts calls to the 
+        // helper, not SQL statements (MySqlStatementCounter counts those against a real session).
+        assertEquals(countHelperCallsForPage(5), 3);
+        assertEquals(countHelperCallsForPage(50), 3);
+        assertEquals(countHelperCallsForPage(API_MAXIMUM_PAGE_SIZE), 3);
+    }
+
     @Test
     public void getPagedReturnsQueryParams() throws Exception {
         AccountSummarySearch search = new AccountSummarySearch.Builder()
@@ -596,8 +825,7 @@ public class HibernateAccountDaoTest extends Mockito {
         hibernateAccount2.setEnrollments(set);
         when(mockHibernateHelper.queryGet(any(), any(), any(), any(), any()))
                 .thenReturn(ImmutableList.of("account-1", "account-2"));
-        when(mockHibernateHelper.getById(HibernateAccount.class, "account-1")).thenReturn(hibernateAccount1);
-        when(mockHibernateHelper.getById(HibernateAccount.class, "account-2")).thenReturn(hibernateAccount2);
+        mockPage(hibernateAccount1, hibernateAccount2);
 
         AccountSummarySearch search = new AccountSummarySearch.Builder().build();
         PagedResourceList<AccountSummary> accountSummaryResourceList = dao.getPagedAccountSummaries(TEST_APP_ID, search);
@@ -628,8 +856,7 @@ public class HibernateAccountDaoTest extends Mockito {
         // mock hibernate
         when(mockHibernateHelper.queryGet(eq(expQuery), any(), any(), any(), any()))
                 .thenReturn(ImmutableList.of(ACCOUNT_ID));
-        when(mockHibernateHelper.getById(HibernateAccount.class, ACCOUNT_ID))
-                .thenReturn(makeValidHibernateAccount(false));
+        mockPage(makeValidHibernateAccount(false));
         when(mockHibernateHelper.queryCount(eq(expCountQuery), any())).thenReturn(11);
 
         // execute and validate - Just validate filters and query, since everything else is tested in getPaged().
@@ -676,7 +903,8 @@ public class HibernateAccountDaoTest extends Mockito {
         params.put("orgId", TEST_ORG_ID);
 
         verify(mockHibernateHelper).queryGet(eq(expQuery), paramCaptor.capture(), eq(10), eq(5), eq(String.class));
-        verify(mockHibernateHelper).getById(HibernateAccount.class, ACCOUNT_ID);
+        verify(mockHibernateHelper).queryGet(PAGE_QUERY, ImmutableMap.of("ids", ImmutableList.of(ACCOUNT_ID)),
+                null, null, HibernateAccount.class);
         verify(mockHibernateHelper).queryCount(eq(expCountQuery), paramCaptor.capture());
 
         Map<String, Object> capturedParams = paramCaptor.getAllValues().get(0);
@@ -749,8 +977,7 @@ public class HibernateAccountDaoTest extends Mockito {
         // mock hibernate
         when(mockHibernateHelper.queryGet(eq(expQuery), any(), any(), any(), any()))
                 .thenReturn(ImmutableList.of(ACCOUNT_ID));
-        when(mockHibernateHelper.getById(HibernateAccount.class, ACCOUNT_ID))
-            .thenReturn(makeValidHibernateAccount(false));
+        mockPage(makeValidHibernateAccount(false));
         when(mockHibernateHelper.queryCount(any(), any())).thenReturn(11);
 
         // execute and validate - Just validate filters and query, since everything else is tested in getPaged().
@@ -786,7 +1013,8 @@ public class HibernateAccountDaoTest extends Mockito {
         params.put("language", "de");
 
         verify(mockHibernateHelper).queryGet(eq(expQuery), paramCaptor.capture(), eq(10), eq(5), eq(String.class));
-        verify(mockHibernateHelper).getById(HibernateAccount.class, ACCOUNT_ID);
+        verify(mockHibernateHelper).queryGet(PAGE_QUERY, ImmutableMap.of("ids", ImmutableList.of(ACCOUNT_ID)),
+                null, null, HibernateAccount.class);
         verify(mockHibernateHelper).queryCount(eq(expCountQuery), paramCaptor.capture());
 
         Map<String, Object> capturedParams = paramCaptor.getAllValues().get(0);
@@ -1341,10 +1569,54 @@ public class HibernateAccountDaoTest extends Mockito {
     public void deleteAllAccounts() {
         dao.deleteAllAccounts(TEST_APP_ID);
         
-        verify(mockHibernateHelper).nativeQueryUpdate(eq(DELETE_ALL_ACCOUNTS_QUERY), paramCaptor.capture());
+        verify(mockHibernateHelper).nativeQueryUpdate(eq(DELETE_ALL_ACCOUNTS_QUERY), paramCaptor.capture(),
+                eq(HibernateAccount.class));
+        assertEquals(paramCaptor.getValue().get("appId"), TEST_APP_ID);
+        
+        verify(mockHibernateHelper).nativeTableUpdate(eq(DELETE_ACCOUNT_COUNT_QUERY), paramCaptor.capture(),
+                eq(ACCOUNT_COUNTS_TABLE));
         assertEquals(paramCaptor.getValue().get("appId"), TEST_APP_ID);
     }
 
+    @Test
+    public void writesRemoveMemoizedAccounts() {
+        doReturn(1).when(mockHibernateHelper).executeWithExceptionHandling(any(), any());
+        HibernateAccount account = makeValidHibernateAccount(false);
+        
+        assertWriteRemovesMemoizedAccounts(() -> dao.createAccount(account));
+        assertWriteRemovesMemoizedAccounts(() -> dao.updateAccount(account));
+        assertWriteRemovesMemoizedAccounts(() -> dao.updateAccountField(account, SHARING_SCOPE));
+        assertWriteRemovesMemoizedAccounts(() -> dao.deleteAccount(ACCOUNT_ID));
+        assertWriteRemovesMemoizedAccounts(() -> dao.deleteAllAccounts(TEST_APP_ID));
+    }
+    
+    @Test
+    public void failedWriteRemovesMemoizedAccounts() {
+        when(mockHibernateHelper.update(any())).thenThrow(new ConcurrentModificationException("Conflict"));
+        
+        assertWriteRemovesMemoizedAccounts(() -> {
+            try {
+                dao.updateAccount(makeValidHibernateAccount(false));
+                fail("Should have thrown exception");
+            } catch (ConcurrentModificationException e) {
+                // expected
+            }
+        });
+    }
+    
+    // Accounts memoized under any key are removed by the write.
+    private void assertWriteRemovesMemoizedAccounts(Runnable write) {
+        RequestContext.set(new RequestContext.Builder().build());
+        RequestEntityCache entityCache = RequestContext.get().getEntityCache();
+        entityCache.put(Account.class, AccountId.forId(TEST_APP_ID, ACCOUNT_ID), new HibernateAccount());
+        entityCache.put(Account.class, AccountId.forHealthCode(TEST_APP_ID, HEALTH_CODE), new HibernateAccount());
+        
+        write.run();
+        
+        assertNull(entityCache.get(Account.class, AccountId.forId(TEST_APP_ID, ACCOUNT_ID)));
+        assertNull(entityCache.get(Account.class, AccountId.forHealthCode(TEST_APP_ID, HEALTH_CODE)));
+    }
+    
     private void verifyCreatedHealthCode() {
         ArgumentCaptor<HibernateAccount> updatedAccountCaptor = ArgumentCaptor.forClass(HibernateAccount.class);
         verify(mockHibernateHelper).update(updatedAccountCaptor.capture());
@@ -1386,4 +1658,44 @@ public class HibernateAccountDaoTest extends Mockito {
         }
         return hibernateAccount;
     }
-}
\ No newline at end of file
+    
+    // The number of calls the DAO makes to the Hibernate helper to load a full page of the given size.
+    private int countHelperCallsForPage(int pageSize) throws Exception {
+        List<String> ids = new ArrayList<>();
+        List<HibernateAccount> accounts = new ArrayList<>();
+        for (int i = 0; i < pageSize; i++) {
+            HibernateAccount account = makeValidHibernateAccount(false);
+            account.setId("account-" + i);
+            ids.add(account.getId());
+            accounts.add(account);
+        }
+        when(mockHibernateHelper.queryGet(any(), any(), any(), any(), eq(String.class))).thenReturn(ids);
+        mockPage(accounts.toArray(new HibernateAccount[0]));
+        when(mockHibernateHelper.queryCount(any(), any())).thenReturn(1000);
+        clearInvocations(mockHibernateHelper);
+
+        AccountSummarySearch search = new AccountSummarySearch.Builder().withPageSize(pageSize).build();
+        PagedResourceList<AccountSummary> page = dao.getPagedAccountSummaries(TEST_APP_ID, search);
+        assertEquals(page.getItems().size(), pageSize);
+
+        return mockingDetails(mockHibernateHelper).getInvocations().size();
+    }
+
+    // Each native query updates the given number of rows.
+    // The page's accounts are loaded with one query, in whatever order the database returns them.
+    private void mockPage(HibernateAccount... accounts) {
+        when(mockHibernateHelper.queryGet(eq(PAGE_QUERY), any(), any(), any(), eq(HibernateAccount.class)))
+                .thenReturn(ImmutableList.copyOf(accounts));
+    }
+
+    private NativeQuery<?> mockNativeQueries(int rowsUpdated) {
+        NativeQuery<?> mockQuery = mock(NativeQuery.class);
+        when(mockQuery.executeUpdate()).thenReturn(rowsUpdated);
+        doReturn(mockQuery).when(mockSession).createNativeQuery(anyString());
+        when(mockHibernateHelper.executeWithExceptionHandling(any(), any())).thenAnswer(invocation -> {
+            Function<Session, Integer> function = invocation.getArgument(1);
+            return function.apply(mockSession);
+        });
+        return mockQuery;
+    }
+}
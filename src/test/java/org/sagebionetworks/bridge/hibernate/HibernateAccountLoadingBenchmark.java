@@ -0,0 +1,273 @@
+package org.sagebionetworks.bridge.hibernate;
+
+import static org.sagebionetworks.bridge.models.accounts.AccountStatus.ENABLED;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.hibernate.boot.MetadataSources;
+import org.hibernate.boot.registry.StandardServiceRegistry;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.stat.Statistics;
+import org.joda.time.DateTime;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import org.sagebionetworks.bridge.BridgeUtils;
+import org.sagebionetworks.bridge.Roles;
+import org.sagebionetworks.bridge.config.BridgeConfig;
+import org.sagebionetworks.bridge.config.BridgeConfigFactory;
+
+/**
+ * Compares two ways of loading an account with many consents and enrollments:
+ *
+ * - loadWithJoin loads the account and all of its collections with one outer join, which is how Hibernate loaded
+ *   accounts by ID before the collections were mapped with FetchMode.SUBSELECT.
+ * - loadWithSelects loads the account the way HibernateAccountDao does now, with one select for the account and one
+ *   for each collection.
+ *
+ * It also compares two ways of loading a page of account summaries:
+ *
+ * - loadPageById loads each account of the page by ID in its own session, which is how HibernateAccountDao loaded
+ *   pages before, at seven statements per account.
+ * - loadPageWithQuery loads the page with one query, as HibernateAccountDao does now. Its collections are fetched by
+ *   subselect, so the page takes seven statements however many accounts it has.
+ *
+ * On setup, it prints the number of rows each strategy reads from MySQL; after each run, the number of statements
+ * it executed. This needs the MySQL database from your Bridge configuration. It creates its own account and studies,
+ * and deletes them afterward. It isn't run with the unit tests. To run it:
+ *
+ * mvn test-compile exec:java -Dexec.classpathScope=test
+ *     -Dexec.mainClass=org.sagebionetworks.bridge.hibernate.HibernateAccountLoadingBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HibernateAccountLoadingBenchmark {
+    private static final String APP_ID = "account-loading-benchmark";
+    private static final String JOIN_QUERY = "SELECT DISTINCT acct FROM HibernateAccount AS acct "
+            + "LEFT JOIN FETCH acct.attributes LEFT JOIN FETCH acct.consents LEFT JOIN FETCH acct.roles "
+            + "LEFT JOIN FETCH acct.dataGroups LEFT JOIN FETCH acct.languages LEFT JOIN FETCH acct.enrollments "
+            + "WHERE acct.id = :id";
+    private static final String JOIN_ROW_COUNT_QUERY = "SELECT COUNT(*) FROM Accounts a "
+            + "LEFT JOIN AccountAttributes aa ON aa.accountId = a.id "
+            + "LEFT JOIN AccountConsents ac ON ac.accountId = a.id "
+            + "LEFT JOIN AccountRoles ar ON ar.accountId = a.id "
+            + "LEFT JOIN AccountDataGroups ad ON ad.accountId = a.id "
+            + "LEFT JOIN AccountLanguages al ON al.accountId = a.id "
+            + "LEFT JOIN AccountsSubstudies en ON en.accountId = a.id "
+            + "WHERE a.id = :id";
+    private static final int PAGE_SIZE = 50;
+    private static final String[] COLLECTION_TABLES = { "AccountAttributes", "AccountConsents", "AccountRoles",
+            "AccountDataGroups", "AccountLanguages", "AccountsSubstudies" };
+
+    @Param({ "5", "25" })
+    private int consentCount;
+
+    @Param({ "5", "25" })
+    private int enrollmentCount;
+
+    private SessionFactory sessionFactory;
+    private String accountId;
+    private List<String> pageIds;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        sessionFactory = buildSessionFactory();
+        accountId = BridgeUtils.generateGuid();
+
+        HibernateAccount account = new HibernateAccount();
+        account.setId(accountId);
+        account.setAppId(APP_ID);
+        account.setHealthCode(BridgeUtils.generateGuid());
+        account.setStatus(ENABLED);
+        account.setCreatedOn(DateTime.now());
+        account.setModifiedOn(DateTime.now());
+        for (int i = 0; i < 5; i++) {
+            account.getAttributes().put("attribute" + i, "value" + i);
+            account.getDataGroups().add("group" + i);
+        }
+        account.getRoles().add(Roles.DEVELOPER);
+        account.getRoles().add(Roles.RESEARCHER);
+        account.getLanguages().add("en");
+        account.getLanguages().add("fr");
+        for (int i = 0; i < consentCount; i++) {
+            HibernateAccountConsent consent = new HibernateAccountConsent();
+            consent.setName("Benchmark User");
+            consent.setBirthdate("1970-01-01");
+            consent.setConsentCreatedOn(i);
+            account.getConsents().put(new HibernateAccountConsentKey("subpop" + i, i), consent);
+        }
+
+        try (Session session = sessionFactory.openSession()) {
+            Transaction transaction = session.beginTransaction();
+            for (int i = 0; i < enrollmentCount; i++) {
+                HibernateStudy study = new HibernateStudy();
+                study.setAppId(APP_ID);
+                study.setIdentifier("study" + i);
+                study.setName("Study " + i);
+                study.setCreatedOn(DateTime.now());
+                study.setModifiedOn(DateTime.now());
+                session.save(study);
+
+                HibernateEnrollment enrollment = new HibernateEnrollment();
+                enrollment.setAppId(APP_ID);
+                enrollment.setStudyId("study" + i);
+                enrollment.setAccountId(accountId);
+                enrollment.setEnrolledOn(DateTime.now());
+                account.getEnrollments().add(enrollment);
+            }
+            session.save(account);
+
+            // The rest of the page is made of plainer accounts.
+            pageIds = new ArrayList<>();
+            pageIds.add(accountId);
+            for (int i = 1; i < PAGE_SIZE; i++) {
+                HibernateAccount pageAccount = new HibernateAccount();
+                pageAccount.setId(BridgeUtils.generateGuid());
+                pageAccount.setAppId(APP_ID);
+                pageAccount.setHealthCode(BridgeUtils.generateGuid());
+                pageAccount.setStatus(ENABLED);
+                pageAccount.setCreatedOn(DateTime.now());
+                pageAccount.setModifiedOn(DateTime.now());
+                pageAccount.getDataGroups().add("group" + i);
+                pageAccount.getLanguages().add("en");
+                session.save(pageAccount);
+                pageIds.add(pageAccount.getId());
+            }
+            transaction.commit();
+        }
+
+        try (Session session = sessionFactory.openSession()) {
+            long joinRows = ((Number) session.createNativeQuery(JOIN_ROW_COUNT_QUERY).setParameter("id", accountId)
+                    .getSingleResult()).longValue();
+            long selectRows = 1L;
+            for (String table : COLLECTION_TABLES) {
+                selectRows += ((Number) session
+                        .createNativeQuery("SELECT COUNT(*) FROM " + table + " WHERE accountId = :id")
+                        .setParameter("id", accountId).getSingleResult()).longValue();
+            }
+            System.out.println("Rows read with one join: " + joinRows + ", with one select per collection: "
+                    + selectRows);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        try (Session session = sessionFactory.openSession()) {
+            Transaction transaction = session.beginTransaction();
+            for (String pageId : pageIds) {
+                session.delete(session.get(HibernateAccount.class, pageId));
+            }
+            session.createQuery("DELETE FROM HibernateStudy WHERE appId = :appId").setParameter("appId", APP_ID)
+                    .executeUpdate();
+            transaction.commit();
+        }
+        sessionFactory.close();
+    }
+
+    @Setup(Level.Iteration)
+    public void clearStatistics() {
+        sessionFactory.getStatistics().clear();
+    }
+
+    @TearDown(Level.Iteration)
+    public void printStatistics() {
+        Statistics stats = sessionFactory.getStatistics();
+        System.out.println(" statements: " + stats.getPrepareStatementCount() + ", sessions: "
+                + stats.getSessionOpenCount());
+    }
+
+    @Benchmark
+    public void loadWithJoin(Blackhole blackhole) {
+        try (Session session = sessionFactory.openSession()) {
+            HibernateAccount account = session.createQuery(JOIN_QUERY, HibernateAccount.class)
+                    .setParameter("id", accountId).getSingleResult();
+            consume(blackhole, account);
+        }
+    }
+
+    @Benchmark
+    public void loadWithSelects(Blackhole blackhole) {
+        try (Session session = sessionFactory.openSession()) {
+            HibernateAccount account = session.get(HibernateAccount.class, accountId);
+            consume(blackhole, account);
+        }
+    }
+
+    @Benchmark
+    public void loadPageById(Blackhole blackhole) {
+        for (String pageId : pageIds) {
+            try (Session session = sessionFactory.openSession()) {
+                consume(blackhole, session.get(HibernateAccount.class, pageId));
+            }
+        }
+    }
+
+    @Benchmark
+    public void loadPageWithQuery(Blackhole blackhole) {
+        try (Session session = sessionFactory.openSession()) {
+            List<HibernateAccount> accounts = session
+                    .createQuery(HibernateAccountDao.PAGE_QUERY, HibernateAccount.class)
+                    .setParameterList("ids", pageIds).list();
+            for (HibernateAccount account : accounts) {
+                consume(blackhole, account);
+            }
+        }
+    }
+
+    private static void consume(Blackhole blackhole, HibernateAccount account) {
+        blackhole.consume(account.getAttributes().size());
+        blackhole.consume(account.getConsents().size());
+        blackhole.consume(account.getRoles().size());
+        blackhole.consume(account.getDataGroups().size());
+        blackhole.consume(account.getLanguages().size());
+        blackhole.consume(account.getEnrollments().size());
+    }
+
+    private static SessionFactory buildSessionFactory() {
+        BridgeConfig config = BridgeConfigFactory.getConfig();
+        Properties props = new Properties();
+        props.put("hibernate.dialect", "org.hibernate.dialect.MySQLDialect");
+        props.put("hibernate.connection.url", config.get("hibernate.connection.url")
+                + "?serverTimezone=UTC&useSSL=false");
+        props.put("hibernate.connection.username", config.get("hibernate.connection.username"));
+        props.put("hibernate.connection.password", config.get("hibernate.connection.password"));
+        props.put("hibernate.generate_statistics", true);
+
+        StandardServiceRegistry reg = new StandardServiceRegistryBuilder().applySettings(props).build();
+        MetadataSources metadataSources = new MetadataSources(reg);
+        metadataSources.addAnnotatedClass(HibernateAccount.class);
+        metadataSources.addAnnotatedClass(HibernateEnrollment.class);
+        metadataSources.addAnnotatedClass(HibernateStudy.class);
+        return metadataSources.buildMetadata().buildSessionFactory();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(HibernateAccountLoadingBenchmark.class.getSimpleName()).build())
+                .run();
+    }
+}
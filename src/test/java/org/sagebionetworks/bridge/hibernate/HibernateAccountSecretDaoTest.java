@@ -5,10 +5,7 @@ import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.testng.Assert.assertEquals;
-import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNotEquals;
-import static org.testng.Assert.assertNotNull;
-import static org.testng.Assert.assertTrue;
 
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
@@ -17,8 +14,6 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
-import com.google.common.collect.ImmutableList;
-
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeUtils;
 import org.mockito.ArgumentCaptor;
@@ -83,12 +78,11 @@ public class HibernateAccountSecretDaoTest {
     }
     
     @Test
-    public void verifySecret() throws Exception {
-        makeResults(TOKEN);
+    public void getSecrets() throws Exception {
+        List<HibernateAccountSecret> results = makeResults(TOKEN, "ABC");
         
-        AccountSecret secret = dao.verifySecret(AccountSecretType.REAUTH, ACCOUNT_ID, TOKEN, ROTATIONS).get();
-        assertNotEquals(secret.getHash(), TOKEN); // it is encrypted but matches
-        assertNotNull(secret);
+        List<HibernateAccountSecret> secrets = dao.getSecrets(AccountSecretType.REAUTH, ACCOUNT_ID, ROTATIONS);
+        assertEquals(secrets, results);
         
         verify(helper).queryGet(eq(HibernateAccountSecretDao.GET_QUERY), paramsCaptor.capture(), 
                 eq(0), eq(ROTATIONS), eq(HibernateAccountSecret.class));
@@ -97,43 +91,6 @@ public class HibernateAccountSecretDaoTest {
         assertEquals(params.get("type"), AccountSecretType.REAUTH);
     }
     
-    @Test
-    public void verifySecretSucceedsAfterRotation() throws Exception {
-        makeResults("ABC", TOKEN, "DEF");
-        
-        assertTrue(dao.verifySecret(AccountSecretType.REAUTH, ACCOUNT_ID, TOKEN, ROTATIONS).isPresent());
-    }
-    
-    @Test
-    public void verifySecretFailsOnEmpty() throws Exception {
-        makeResults();
-        
-        assertFalse(dao.verifySecret(AccountSecretType.REAUTH, ACCOUNT_ID, TOKEN, ROTATIONS).isPresent());
-    }
-    
-    @Test
-    public void verifySecretFailsWhenNoMatch() throws Exception {
-        makeResults("ABC", "DEF");
-        
-        assertFalse(dao.verifySecret(AccountSecretType.REAUTH, ACCOUNT_ID, TOKEN, ROTATIONS).isPresent());
-    }
-    
-    @Test
-    public void verifySecretExceptionIsSuppressed() throws Exception {
-        PasswordAlgorithm algorithm = Mockito.mock(PasswordAlgorithm.class);
-        
-        HibernateAccountSecret secret = Mockito.mock(HibernateAccountSecret.class);
-        when(secret.getAlgorithm()).thenReturn(algorithm);
-        
-        when(algorithm.checkHash(any(), any())).thenThrow(new InvalidKeyException());
-        
-        when(helper.queryGet(eq(HibernateAccountSecretDao.GET_QUERY), any(), 
-                eq(0), eq(ROTATIONS), eq(HibernateAccountSecret.class)))
-            .thenReturn(ImmutableList.of(secret));
-        
-        assertFalse(dao.verifySecret(AccountSecretType.REAUTH, ACCOUNT_ID, TOKEN, ROTATIONS).isPresent());
-    }
-    
     @Test
     public void removeSecrets() {
         dao.removeSecrets(AccountSecretType.REAUTH, ACCOUNT_ID);
@@ -31,6 +31,7 @@ import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
 
+import java.lang.reflect.Method;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -38,6 +39,12 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import javax.persistence.ElementCollection;
+import javax.persistence.FetchType;
+import javax.persistence.OneToMany;
+
+import org.hibernate.annotations.Fetch;
+import org.hibernate.annotations.FetchMode;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
 import org.testng.annotations.Test;
@@ -51,6 +58,7 @@ import org.sagebionetworks.bridge.models.subpopulations.ConsentSignature;
 import org.sagebionetworks.bridge.models.subpopulations.SubpopulationGuid;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
@@ -526,6 +534,136 @@ public class HibernateAccountTest {
         return consent;
     }
     
+    @Test
+    public void eagerCollectionsAreNotJoined() {
+        // Joining more than one collection multiplies the rows returned for each account. Every eagerly loaded
+        // collection should be loaded with a separate select.
+        int eagerCollections = 0;
+        for (Method method : HibernateAccount.class.getMethods()) {
+            ElementCollection elementCollection = method.getAnnotation(ElementCollection.class);
+            OneToMany oneToMany = method.getAnnotation(OneToMany.class);
+            boolean eager = (elementCollection != null && elementCollection.fetch() == FetchType.EAGER)
+                    || (oneToMany != null && oneToMany.fetch() == FetchType.EAGER);
+            if (eager) {
+                eagerCollections++;
+                Fetch fetch = method.getAnnotation(Fetch.class);
+                assertNotNull(fetch, method.getName());
+                assertEquals(fetch.value(), FetchMode.SUBSELECT, method.getName());
+            }
+        }
+        assertEquals(eagerCollections, 6);
+    }
+    
+    @Test
+    public void copy() {
+        HibernateAccount account = new HibernateAccount();
+        account.setId("id");
+        account.setAppId(TEST_APP_ID);
+        account.setOrgMembership(TEST_ORG_ID);
+        account.setEmail(EMAIL);
+        account.setSynapseUserId(SYNAPSE_USER_ID);
+        account.setPhone(PHONE);
+        account.setEmailVerified(true);
+        account.setPhoneVerified(false);
+        account.setAttributes(new HashMap<>(ImmutableMap.of("a", "b")));
+        account.setCreatedOn(CREATED_ON);
+        account.setModifiedOn(MODIFIED_ON);
+        account.setFirstName("firstName");
+        account.setLastName("lastName");
+        account.setRoles(EnumSet.of(DEVELOPER));
+        account.setStatus(DISABLED);
+        account.setClientData(TestUtils.getClientData());
+        account.setVersion(2);
+        account.setTimeZone(UTC);
+        account.setDataGroups(new HashSet<>(USER_DATA_GROUPS));
+        account.setLanguages(Lists.newArrayList(LANGUAGES));
+        account.setReauthToken("reauthToken");
+        account.setHealthCode("healthCode");
+        account.setPasswordAlgorithm(BCRYPT);
+        account.setPasswordHash("hash");
+        account.setPasswordModifiedOn(MODIFIED_ON);
+        account.setSharingScope(ALL_QUALIFIED_RESEARCHERS);
+        account.setNotifyByEmail(false);
+        account.setMigrationVersion(3);
+        account.setNote(TEST_NOTE);
+        account.setClientTimeZone(TEST_CLIENT_TIME_ZONE);
+        account.setAdmin(TRUE);
+        account.setPassword("password");
+        account.setEnrollments(new HashSet<>(ENROLLMENTS));
+        addConsentHistories(account);
+        
+        HibernateAccount copy = HibernateAccount.copy(account);
+        assertEquals(copy.getId(), "id");
+        assertEquals(copy.getAppId(), TEST_APP_ID);
+        assertEquals(copy.getOrgMembership(), TEST_ORG_ID);
+        assertEquals(copy.getEmail(), EMAIL);
+        assertEquals(copy.getSynapseUserId(), SYNAPSE_USER_ID);
+        assertEquals(copy.getPhone(), PHONE);
+        assertEquals(copy.getEmailVerified(), Boolean.TRUE);
+        assertEquals(copy.getPhoneVerified(), Boolean.FALSE);
+        assertEquals(copy.getAttributes(), ImmutableMap.of("a", "b"));
+        assertEquals(copy.getCreatedOn(), CREATED_ON);
+        assertEquals(copy.getModifiedOn(), MODIFIED_ON);
+        assertEquals(copy.getFirstName(), "firstName");
+        assertEquals(copy.getLastName(), "lastName");
+        assertEquals(copy.getRoles(), ImmutableSet.of(DEVELOPER));
+        assertEquals(copy.getStatus(), DISABLED);
+        assertEquals(copy.getClientData(), TestUtils.getClientData());
+        assertEquals(copy.getVersion(), 2);
+        assertEquals(copy.getTimeZone(), UTC);
+        assertEquals(copy.getDataGroups(), USER_DATA_GROUPS);
+        assertEquals(copy.getLanguages(), LANGUAGES);
+        assertEquals(copy.getReauthToken(), "reauthToken");
+        assertEquals(copy.getHealthCode(), "healthCode");
+        assertEquals(copy.getPasswordAlgorithm(), BCRYPT);
+        assertEquals(copy.getPasswordHash(), "hash");
+        assertEquals(copy.getPasswordModifiedOn(), MODIFIED_ON);
+        assertEquals(copy.getSharingScope(), ALL_QUALIFIED_RESEARCHERS);
+        assertEquals(copy.getNotifyByEmail(), Boolean.FALSE);
+        assertEquals(copy.getMigrationVersion(), 3);
+        assertEquals(copy.getNote(), TEST_NOTE);
+        assertEquals(copy.getClientTimeZone(), TEST_CLIENT_TIME_ZONE);
+        assertEquals(copy.isAdmin(), TRUE);
+        assertEquals(copy.getPassword(), "password");
+        assertEquals(copy.getEnrollments(), ENROLLMENTS);
+        assertEquals(copy.getConsentSignatureHistory(GUID1), account.getConsentSignatureHistory(GUID1));
+        assertEquals(copy.getConsentSignatureHistory(GUID2), account.getConsentSignatureHistory(GUID2));
+        
+        // Changing the account doesn't change the copy.
+        List<ConsentSignature> history = account.getConsentSignatureHistory(GUID2);
+        account.getAttributes().put("c", "d");
+        account.getRoles().add(ADMIN);
+        ((ObjectNode) account.getClientData()).put("changed", true);
+        account.getDataGroups().add("changed");
+        account.getLanguages().add("changed");
+        account.getEnrollments().iterator().next().setWithdrawnOn(MODIFIED_ON);
+        account.getConsents().get(new HibernateAccountConsentKey(GUID2.getGuid(), TIME4)).setWithdrewOn(TIME5);
+        account.getConsents().clear();
+        
+        assertEquals(copy.getAttributes(), ImmutableMap.of("a", "b"));
+        assertEquals(copy.getRoles(), ImmutableSet.of(DEVELOPER));
+        assertEquals(copy.getClientData(), TestUtils.getClientData());
+        assertEquals(copy.getDataGroups(), USER_DATA_GROUPS);
+        assertEquals(copy.getLanguages(), LANGUAGES);
+        assertNull(copy.getEnrollments().iterator().next().getWithdrawnOn());
+        assertEquals(copy.getConsents().size(), 5);
+        assertEquals(copy.getConsentSignatureHistory(GUID2), history);
+    }
+    
+    @Test
+    public void copyEmptyAccount() {
+        HibernateAccount copy = HibernateAccount.copy(new HibernateAccount());
+        assertNull(copy.getId());
+        assertNull(copy.getPhone());
+        assertNull(copy.getClientData());
+        assertTrue(copy.getAttributes().isEmpty());
+        assertTrue(copy.getConsents().isEmpty());
+        assertTrue(copy.getRoles().isEmpty());
+        assertTrue(copy.getDataGroups().isEmpty());
+        assertTrue(copy.getLanguages().isEmpty());
+        assertTrue(copy.getEnrollments().isEmpty());
+    }
+    
     private void addConsentHistories(Account account) {
         HibernateAccountConsentKey key1A = new HibernateAccountConsentKey(GUID1.getGuid(), TIME1);
         HibernateAccountConsentKey key1B = new HibernateAccountConsentKey(GUID1.getGuid(), TIME2);
@@ -13,9 +13,13 @@ import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 
+import org.joda.time.DateTime;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
@@ -34,10 +38,14 @@ import com.google.common.collect.ImmutableSet;
 
 public class HibernateAlertDaoTest {
     private static final String ALERT_ID = "test-alert-id";
+    private static final DateTime CREATED_ON = DateTime.parse("2022-05-01T10:00:00.000Z");
 
     @Mock
     HibernateHelper hibernateHelper;
 
+    @Captor
+    ArgumentCaptor<Map<String, Object>> paramsCaptor;
+
     @InjectMocks
     HibernateAlertDao hibernateAlertDao;
 
@@ -58,6 +66,37 @@ public class HibernateAlertDaoTest {
         verify(hibernateHelper).create(alert);
     }
 
+    @Test
+    public void upsertAlert() {
+        alert.setCreatedOn(CREATED_ON);
+
+        hibernateAlertDao.upsertAlert(alert, CREATED_ON.minusHours(1));
+
+        verify(hibernateHelper).nativeQueryUpdate(eq(HibernateAlertDao.UPSERT_ALERT), paramsCaptor.capture(),
+                eq(Alert.class));
+        Map<String, Object> params = paramsCaptor.getValue();
+        assertEquals(params.get("id"), ALERT_ID);
+        assertEquals(params.get("createdOn"), CREATED_ON.getMillis());
+        assertEquals(params.get("studyId"), TEST_STUDY_ID);
+        assertEquals(params.get("appId"), TEST_APP_ID);
+        assertEquals(params.get("userId"), TEST_USER_ID);
+        assertEquals(params.get("category"), "NEW_ENROLLMENT");
+        assertEquals(params.get("data"), "null");
+        assertEquals(params.get("isRead"), false);
+        assertEquals(params.get("replaceBefore"), CREATED_ON.minusHours(1).getMillis());
+    }
+
+    @Test
+    public void upsertAlert_alwaysReplace() {
+        alert.setCreatedOn(CREATED_ON);
+
+        hibernateAlertDao.upsertAlert(alert, null);
+
+        verify(hibernateHelper).nativeQueryUpdate(eq(HibernateAlertDao.UPSERT_ALERT), paramsCaptor.capture(),
+                eq(Alert.class));
+        assertEquals(paramsCaptor.getValue().get("replaceBefore"), Long.MAX_VALUE);
+    }
+
     @Test
     public void deleteAlert() {
         hibernateAlertDao.deleteAlert(alert);
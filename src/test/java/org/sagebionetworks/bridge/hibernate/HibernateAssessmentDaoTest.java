@@ -249,7 +249,7 @@ public class HibernateAssessmentDaoTest extends Mockito {
     
     @Test
     public void getAssessmentByGuid_withOwnerId() {
-        when(mockHelper.queryGet(queryCaptor.capture(), paramsCaptor.capture(), eq(null), eq(null), eq(HibernateAssessment.class)))
+        when(mockHelper.cacheableQueryGet(queryCaptor.capture(), paramsCaptor.capture(), eq(null), eq(null), eq(HibernateAssessment.class)))
             .thenReturn(ImmutableList.of(HIBERNATE_ASSESSMENT));
         
         Optional<Assessment> retValue = dao.getAssessment(TEST_APP_ID, TEST_ORG_ID, GUID_VALUE);
@@ -265,7 +265,7 @@ public class HibernateAssessmentDaoTest extends Mockito {
 
     @Test
     public void getAssessmentByGuid_withoutOwnerId() {
-        when(mockHelper.queryGet(queryCaptor.capture(), paramsCaptor.capture(), eq(null), eq(null), eq(HibernateAssessment.class)))
+        when(mockHelper.cacheableQueryGet(queryCaptor.capture(), paramsCaptor.capture(), eq(null), eq(null), eq(HibernateAssessment.class)))
             .thenReturn(ImmutableList.of(HIBERNATE_ASSESSMENT));
         
         Optional<Assessment> retValue = dao.getAssessment(TEST_APP_ID, null, GUID_VALUE);
@@ -280,7 +280,7 @@ public class HibernateAssessmentDaoTest extends Mockito {
     
     @Test
     public void getAssessmentByGuidNoEntity() {
-        when(mockHelper.queryGet(queryCaptor.capture(), paramsCaptor.capture(), eq(null), eq(null), eq(HibernateAssessment.class)))
+        when(mockHelper.cacheableQueryGet(queryCaptor.capture(), paramsCaptor.capture(), eq(null), eq(null), eq(HibernateAssessment.class)))
             .thenReturn(ImmutableList.of());
     
         Optional<Assessment> retValue = dao.getAssessment(TEST_APP_ID, null, GUID_VALUE);
@@ -289,7 +289,7 @@ public class HibernateAssessmentDaoTest extends Mockito {
 
     @Test
     public void getAssessmentByIdAndRevision_withoutOwnerId() {
-        when(mockHelper.queryGet(queryCaptor.capture(), paramsCaptor.capture(), eq(null), eq(null), eq(HibernateAssessment.class)))
+        when(mockHelper.cacheableQueryGet(queryCaptor.capture(), paramsCaptor.capture(), eq(null), eq(null), eq(HibernateAssessment.class)))
             .thenReturn(ImmutableList.of(HIBERNATE_ASSESSMENT));
         
         Optional<Assessment> retValue = dao.getAssessment(TEST_APP_ID, null, ID_VALUE, REV_VALUE);
@@ -305,7 +305,7 @@ public class HibernateAssessmentDaoTest extends Mockito {
     
     @Test
     public void getAssessmentByIdAndRevision_withOwnerId() {
-        when(mockHelper.queryGet(queryCaptor.capture(), paramsCaptor.capture(), eq(null), eq(null), eq(HibernateAssessment.class)))
+        when(mockHelper.cacheableQueryGet(queryCaptor.capture(), paramsCaptor.capture(), eq(null), eq(null), eq(HibernateAssessment.class)))
             .thenReturn(ImmutableList.of(HIBERNATE_ASSESSMENT));
         
         Optional<Assessment> retValue = dao.getAssessment(TEST_APP_ID, TEST_ORG_ID, ID_VALUE, REV_VALUE);
@@ -322,7 +322,7 @@ public class HibernateAssessmentDaoTest extends Mockito {
     
     @Test
     public void getAssessmentByIdAndRevisionNoEntity() {
-        when(mockHelper.queryGet(queryCaptor.capture(), paramsCaptor.capture(), eq(null), eq(null), eq(HibernateAssessment.class)))
+        when(mockHelper.cacheableQueryGet(queryCaptor.capture(), paramsCaptor.capture(), eq(null), eq(null), eq(HibernateAssessment.class)))
             .thenReturn(ImmutableList.of());
         
         Optional<Assessment> retValue = dao.getAssessment(TEST_APP_ID, null, ID_VALUE, REV_VALUE);
@@ -486,7 +486,8 @@ public class HibernateAssessmentDaoTest extends Mockito {
     public void deleteAllAssessments() {
         dao.deleteAllAssessments(TEST_APP_ID);
         
-        verify(mockHelper).nativeQueryUpdate(eq(DELETE_ALL_ASSESSMENTS_SQL), paramsCaptor.capture());
+        verify(mockHelper).nativeQueryUpdate(eq(DELETE_ALL_ASSESSMENTS_SQL), paramsCaptor.capture(),
+                eq(HibernateAssessment.class));
         assertEquals(paramsCaptor.getValue().get("appId"), TEST_APP_ID);
     }
 }
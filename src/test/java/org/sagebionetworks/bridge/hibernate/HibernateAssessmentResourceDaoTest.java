@@ -218,7 +218,8 @@ public class HibernateAssessmentResourceDaoTest extends Mockito {
     public void deleteAllAssessmentResources() {
         dao.deleteAllAssessmentResources(TEST_APP_ID);
         
-        verify(mockHelper).nativeQueryUpdate(eq(DELETE_ALL_QUERY), paramsCaptor.capture());
+        verify(mockHelper).nativeQueryUpdate(eq(DELETE_ALL_QUERY), paramsCaptor.capture(),
+                eq(HibernateAssessmentResource.class));
         assertEquals(paramsCaptor.getValue().get("appId"), TEST_APP_ID);
     }
 }
@@ -0,0 +1,245 @@
+package org.sagebionetworks.bridge.hibernate;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import org.sagebionetworks.bridge.cache.CacheKey;
+import org.sagebionetworks.bridge.cache.CacheProvider;
+import org.sagebionetworks.bridge.config.BridgeConfig;
+import org.sagebionetworks.bridge.models.RequestInfo;
+import org.sagebionetworks.bridge.models.schedules2.Schedule2;
+
+public class HibernateCacheInvalidatorTest extends Mockito {
+
+    @Mock
+    CacheProvider mockCacheProvider;
+
+    @Mock
+    BridgeConfig mockConfig;
+
+    @Mock
+    SessionFactory mockSessionFactory;
+
+    @Mock
+    Cache mockCache;
+
+    @Mock
+    ScheduledExecutorService mockExecutor;
+
+    @Captor
+    ArgumentCaptor<String> versionCaptor;
+
+    @InjectMocks
+    HibernateCacheInvalidator invalidator;
+
+    @BeforeMethod
+    public void beforeMethod() {
+        MockitoAnnotations.initMocks(this);
+
+        when(mockConfig.getPropertyAsInt(HibernateCacheInvalidator.CONFIG_KEY_POLL_SECONDS)).thenReturn(10);
+        when(mockSessionFactory.getCache()).thenReturn(mockCache);
+
+        invalidator.setConfig(mockConfig);
+        invalidator.setExecutor(mockExecutor);
+        invalidator.setSessionFactory(mockSessionFactory);
+    }
+
+    @Test
+    public void start() {
+        invalidator.start();
+
+        verify(mockCacheProvider).getObject(CacheKey.hibernateCacheVersion(), String.class);
+        verify(mockExecutor).scheduleWithFixedDelay(any(Runnable.class), eq(10L), eq(10L), eq(TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void startUsesDefaultPollInterval() {
+        when(mockConfig.getPropertyAsInt(HibernateCacheInvalidator.CONFIG_KEY_POLL_SECONDS)).thenReturn(0);
+        invalidator.setConfig(mockConfig);
+
+        invalidator.start();
+
+        long pollSeconds = HibernateCacheInvalidator.DEFAULT_POLL_SECONDS;
+        verify(mockExecutor).scheduleWithFixedDelay(any(Runnable.class), eq(pollSeconds), eq(pollSeconds),
+                eq(TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void startSucceedsWhenRedisFails() {
+        when(mockCacheProvider.getObject(CacheKey.hibernateCacheVersion(), String.class))
+                .thenThrow(new RuntimeException());
+
+        invalidator.start();
+
+        verify(mockExecutor).scheduleWithFixedDelay(any(Runnable.class), eq(10L), eq(10L), eq(TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void invalidate() {
+        invalidator.invalidate();
+        invalidator.invalidate();
+
+        verify(mockCacheProvider, times(2)).setObject(eq(CacheKey.hibernateCacheVersion()),
+                versionCaptor.capture());
+        assertFalse(versionCaptor.getAllValues().get(0).equals(versionCaptor.getAllValues().get(1)));
+    }
+
+    @Test
+    public void invalidateDoesNotThrow() {
+        doThrow(new RuntimeException()).when(mockCacheProvider).setObject(any(), any());
+
+        invalidator.invalidate();
+    }
+
+    @Test
+    public void invalidateCachedEntity() {
+        invalidator.invalidate(Schedule2.class);
+
+        verify(mockCacheProvider).setObject(eq(CacheKey.hibernateCacheVersion()), any());
+    }
+
+    @Test
+    public void invalidateUnknownEntity() {
+        invalidator.invalidate((Class<?>) null);
+
+        verify(mockCacheProvider).setObject(eq(CacheKey.hibernateCacheVersion()), any());
+    }
+
+    @Test
+    public void invalidateUncachedEntityDoesNothing() {
+        invalidator.invalidate(RequestInfo.class);
+
+        verify(mockCacheProvider, never()).setObject(any(), any());
+    }
+
+    @Test
+    public void pollEvictsWhenVersionChanges() {
+        when(mockCacheProvider.getObject(CacheKey.hibernateCacheVersion(), String.class)).thenReturn("v1", "v2");
+        invalidator.start();
+
+        invalidator.poll();
+
+        verify(mockCache).evictAllRegions();
+    }
+
+    @Test
+    public void pollDoesNotEvictWhenVersionUnchanged() {
+        when(mockCacheProvider.getObject(CacheKey.hibernateCacheVersion(), String.class)).thenReturn("v1");
+        invalidator.start();
+
+        invalidator.poll();
+        invalidator.poll();
+
+        verify(mockCache, never()).evictAllRegions();
+    }
+
+    @Test
+    public void pollEvictsOncePerChange() {
+        when(mockCacheProvider.getObject(CacheKey.hibernateCacheVersion(), String.class)).thenReturn(null, "v1");
+        invalidator.start();
+
+        invalidator.poll();
+        invalidator.poll();
+
+        verify(mockCache, times(1)).evictAllRegions();
+    }
+
+    @Test
+    public void pollDoesNotThrow() {
+        when(mockCacheProvider.getObject(CacheKey.hibernateCacheVersion(), String.class))
+                .thenThrow(new RuntimeException());
+
+        invalidator.poll();
+
+        verify(mockCache, never()).evictAllRegions();
+    }
+
+    @Test
+    public void onlyCachedEntitiesRequirePostCommitHandling() {
+        EntityPersister mockPersister = mock(EntityPersister.class);
+        when(mockPersister.canWriteToCache()).thenReturn(true);
+        assertTrue(invalidator.requiresPostCommitHanding(mockPersister));
+
+        when(mockPersister.canWriteToCache()).thenReturn(false);
+        assertFalse(invalidator.requiresPostCommitHanding(mockPersister));
+    }
+
+    @Test
+    public void writesInvalidate() {
+        invalidator.onPostInsert(null);
+        invalidator.onPostUpdate(null);
+        invalidator.onPostDelete(null);
+
+        verify(mockCacheProvider, times(3)).setObject(eq(CacheKey.hibernateCacheVersion()), any());
+    }
+
+    @Test
+    public void failedWritesDoNotInvalidate() {
+        invalidator.onPostInsertCommitFailed(null);
+        invalidator.onPostUpdateCommitFailed(null);
+        invalidator.onPostDeleteCommitFailed(null);
+
+        verify(mockCacheProvider, never()).setObject(any(), any());
+    }
+
+    @Test
+    public void getMetrics() {
+        Statistics mockStats = mock(Statistics.class);
+        when(mockSessionFactory.getStatistics()).thenReturn(mockStats);
+        when(mockStats.getSecondLevelCacheHitCount()).thenReturn(75L);
+        when(mockStats.getSecondLevelCacheMissCount()).thenReturn(25L);
+        when(mockStats.getSecondLevelCachePutCount()).thenReturn(25L);
+        when(mockStats.getQueryCacheHitCount()).thenReturn(0L);
+        when(mockStats.getQueryCacheMissCount()).thenReturn(0L);
+        when(mockStats.getSecondLevelCacheRegionNames()).thenReturn(new String[] { "schedules" });
+
+        CacheRegionStatistics mockRegionStats = mock(CacheRegionStatistics.class);
+        when(mockRegionStats.getHitCount()).thenReturn(9L);
+        when(mockRegionStats.getMissCount()).thenReturn(1L);
+        when(mockRegionStats.getPutCount()).thenReturn(1L);
+        when(mockRegionStats.getElementCountInMemory()).thenReturn(1L);
+        when(mockStats.getDomainDataRegionStatistics("schedules")).thenReturn(mockRegionStats);
+
+        JsonNode metrics = invalidator.getMetrics();
+        assertEquals(metrics.get("secondLevelCache").get("hitCount").longValue(), 75L);
+        assertEquals(metrics.get("secondLevelCache").get("missCount").longValue(), 25L);
+        assertEquals(metrics.get("secondLevelCache").get("hitRatio").doubleValue(), 0.75);
+        assertEquals(metrics.get("queryCache").get("hitRatio").doubleValue(), 0.0);
+
+        JsonNode regionNode = metrics.get("regions").get("schedules");
+        assertEquals(regionNode.get("hitRatio").doubleValue(), 0.9);
+        assertEquals(regionNode.get("elementCount").longValue(), 1L);
+    }
+
+    @Test
+    public void getMetricsNoSessionFactory() {
+        invalidator.setSessionFactory(null);
+
+        assertEquals(invalidator.getMetrics().size(), 0);
+    }
+
+    @Test
+    public void shutdown() {
+        invalidator.shutdown();
+        verify(mockExecutor).shutdown();
+    }
+}
@@ -256,6 +256,25 @@ public class HibernateDemographicDaoTest {
         assertTrue(!returnedDemographicUser.isPresent());
     }
 
+    /**
+     * Tests whether all of a user's DemographicUsers are fetched in one query.
+     */
+    @Test
+    public void getAllDemographicUsersForUser() {
+        DemographicUser demographicUser1 = new DemographicUser();
+        DemographicUser demographicUser2 = new DemographicUser();
+        List<DemographicUser> demographicUsers = ImmutableList.of(demographicUser1, demographicUser2);
+        when(hibernateHelper.queryGet(any(), any(), any(), any(), eq(DemographicUser.class)))
+                .thenReturn(demographicUsers);
+
+        List<DemographicUser> returnedDemographicUsers = hibernateDemographicDao
+                .getAllDemographicUsersForUser(TEST_APP_ID, TEST_USER_ID);
+
+        verify(hibernateHelper).queryGet("FROM DemographicUser du WHERE du.appId = :appId AND du.userId = :userId",
+                ImmutableMap.of("userId", TEST_USER_ID, "appId", TEST_APP_ID), null, null, DemographicUser.class);
+        assertSame(returnedDemographicUsers, demographicUsers);
+    }
+
     /**
      * Tests whether multiple DemographicUsers are fetched correctly.
      */
@@ -1,6 +1,7 @@
 package org.sagebionetworks.bridge.hibernate;
 
 import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyBoolean;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.inOrder;
@@ -8,15 +9,20 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.sagebionetworks.bridge.TestConstants.TEST_APP_ID;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
 import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
 
 import java.lang.reflect.Method;
 import java.math.BigInteger;
+import java.sql.Connection;
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -27,14 +33,20 @@ import javax.persistence.OptimisticLockException;
 import javax.persistence.PersistenceException;
 import javax.persistence.RollbackException;
 
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.mchange.v2.resourcepool.TimeoutException;
 
+import org.hibernate.Cache;
+import org.hibernate.FlushMode;
 import org.hibernate.NonUniqueResultException;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.Transaction;
 import org.hibernate.exception.ConstraintViolationException;
+import org.hibernate.exception.JDBCConnectionException;
+import org.hibernate.jdbc.Work;
 import org.hibernate.query.NativeQuery;
 import org.hibernate.query.Query;
 import org.mockito.InOrder;
@@ -45,6 +57,7 @@ import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
+import org.sagebionetworks.bridge.models.RequestInfo;
 import org.sagebionetworks.bridge.models.accounts.Account;
 
 @SuppressWarnings("unchecked")
@@ -63,10 +76,19 @@ public class HibernateHelperTest {
     private PersistenceExceptionConverter mockExceptionConverter;
     @Mock
     private Transaction mockTransaction;
+    @Mock
+    private HibernateCacheInvalidator mockCacheInvalidator;
+    @Mock
+    private Connection mockConnection;
     
     @BeforeMethod
     public void setup(Method method) {
         MockitoAnnotations.initMocks(this);
+        doAnswer(invocation -> {
+            Work work = invocation.getArgument(0);
+            work.execute(mockConnection);
+            return null;
+        }).when(mockSession).doWork(any());
         // Spy Hibernate helper. This allows us to mock execute() and test it
         // independently later.
         helper = spy(new HibernateHelper(mockSessionFactory, mockExceptionConverter));
@@ -147,7 +169,7 @@ public class HibernateHelperTest {
     }
 
     @Test
-    public void getById() {
+    public void getById() throws Exception {
         // set up
         Object hibernateOutput = new Object();
         when(mockSession.get(Object.class, "test-id")).thenReturn(hibernateOutput);
@@ -155,6 +177,32 @@ public class HibernateHelperTest {
         // execute and validate
         Object helperOutput = helper.getById(Object.class, "test-id");
         assertSame(helperOutput, hibernateOutput);
+        
+        // Reads are executed read-only.
+        verify(mockSession).setDefaultReadOnly(true);
+        verify(mockSession).setHibernateFlushMode(FlushMode.MANUAL);
+        
+        // The connection is read-only for the query, and is reset before it's returned to the pool.
+        InOrder inOrder = inOrder(mockConnection, mockSession);
+        inOrder.verify(mockConnection).setReadOnly(true);
+        inOrder.verify(mockSession).get(Object.class, "test-id");
+        inOrder.verify(mockConnection).setReadOnly(false);
+    }
+    
+    @Test
+    public void readOnlyResetsConnectionWhenQueryFails() throws Exception {
+        PersistenceException ex = new PersistenceException();
+        when(mockSession.get(Object.class, "test-id")).thenThrow(ex);
+        when(mockExceptionConverter.convert(ex, null)).thenReturn(TEST_EXCEPTION);
+        
+        try {
+            helper.getById(Object.class, "test-id");
+            fail("Should have thrown exception");
+        } catch (RuntimeException e) {
+            assertSame(e, TEST_EXCEPTION);
+        }
+        verify(mockConnection).setReadOnly(true);
+        verify(mockConnection).setReadOnly(false);
     }
 
     @Test
@@ -244,6 +292,31 @@ public class HibernateHelperTest {
         verify(mockQuery).setParameter("id", 10L);
     }
 
+    @Test
+    public void cacheableQueryGet() {
+        List<Object> hibernateOutputList = ImmutableList.of();
+        Query<Object> mockQuery = mock(Query.class);
+        when(mockQuery.list()).thenReturn(hibernateOutputList);
+
+        when(mockSession.createQuery(QUERY, Object.class)).thenReturn(mockQuery);
+
+        List<Object> helperOutputList = helper.cacheableQueryGet(QUERY, PARAMETERS, null, null, Object.class);
+        assertSame(helperOutputList, hibernateOutputList);
+        
+        verify(mockQuery).setCacheable(true);
+        verify(mockQuery).setParameter("appId", TEST_APP_ID);
+        verify(mockQuery).setParameter("id", 10L);
+    }
+
+    @Test
+    public void queryGetNotCacheable() {
+        Query<Object> mockQuery = mock(Query.class);
+        when(mockSession.createQuery(QUERY, Object.class)).thenReturn(mockQuery);
+
+        helper.queryGet(QUERY, PARAMETERS, null, null, Object.class);
+        verify(mockQuery, never()).setCacheable(anyBoolean());
+    }
+
     @Test
     public void queryGetOne() {
         // mock query
@@ -658,6 +731,119 @@ public class HibernateHelperTest {
         verify(mockQuery).setParameter("a", "b");
         verify(mockQuery).setParameter("c", "d");
         verify(mockQuery).executeUpdate();
+        verify(mockQuery, never()).addSynchronizedEntityClass(any());
+    }
+    
+    @Test
+    public void evictFromCache() {
+        Cache mockCache = mock(Cache.class);
+        when(mockSessionFactory.getCache()).thenReturn(mockCache);
+        
+        helper.evictFromCache(RequestInfo.class, ImmutableList.of("id1", "id2"));
+        
+        verify(mockCache).evictEntityData(RequestInfo.class, "id1");
+        verify(mockCache).evictEntityData(RequestInfo.class, "id2");
+        verify(mockSessionFactory, never()).openSession();
+    }
+    
+    @Test
+    public void nativeQueryUpdateWithEntityClass() {
+        helper.setCacheInvalidator(mockCacheInvalidator);
+        
+        NativeQuery<Object> mockQuery = mock(NativeQuery.class);
+        when(mockSession.createNativeQuery(QUERY)).thenReturn(mockQuery);
+        when(mockQuery.executeUpdate()).thenReturn(3);
+        
+        int retValue = helper.nativeQueryUpdate(QUERY, ImmutableMap.of("a", "b"), RequestInfo.class);
+        assertEquals(retValue, 3);
+        
+        verify(mockQuery).addSynchronizedEntityClass(RequestInfo.class);
+        verify(mockQuery).setParameter("a", "b");
+        verify(mockCacheInvalidator).invalidate(RequestInfo.class);
+    }
+    
+    @Test
+    public void nativeQueryUpdateInvalidatesCache() {
+        helper.setCacheInvalidator(mockCacheInvalidator);
+        
+        NativeQuery<Object> mockQuery = mock(NativeQuery.class);
+        when(mockSession.createNativeQuery(QUERY)).thenReturn(mockQuery);
+        
+        helper.nativeQueryUpdate(QUERY, ImmutableMap.of());
+        
+        verify(mockCacheInvalidator).invalidate((Class<?>)null);
+    }
+    
+    @Test
+    public void queryUpdateInvalidatesCache() {
+        helper.setCacheInvalidator(mockCacheInvalidator);
+        
+        Query<Object> mockQuery = mock(Query.class);
+        when(mockSession.createQuery(QUERY)).thenReturn(mockQuery);
+        
+        helper.queryUpdate(QUERY, PARAMETERS);
+        
+        verify(mockCacheInvalidator).invalidate((Class<?>)null);
+    }
+    
+    @Test
+    public void queryUpdateWithEntityClassInvalidatesOnlyThatClass() {
+        helper.setCacheInvalidator(mockCacheInvalidator);
+        
+        Query<Object> mockQuery = mock(Query.class);
+        when(mockSession.createQuery(QUERY)).thenReturn(mockQuery);
+        
+        helper.queryUpdate(QUERY, PARAMETERS, HibernateStudy.class);
+        
+        verify(mockCacheInvalidator).invalidate(HibernateStudy.class);
+        verify(mockCacheInvalidator, never()).invalidate((Class<?>)null);
+    }
+    
+    @Test
+    public void queryDoesNotInvalidateCache() {
+        helper.setCacheInvalidator(mockCacheInvalidator);
+        
+        Query<Object> mockQuery = mock(Query.class);
+        when(mockSession.createQuery(QUERY)).thenReturn(mockQuery);
+        
+        helper.query(QUERY, PARAMETERS);
+        
+        verify(mockCacheInvalidator, never()).invalidate(any());
+    }
+    
+    @Test
+    public void nativeTableUpdate() {
+        helper.setCacheInvalidator(mockCacheInvalidator);
+        
+        NativeQuery<Object> mockQuery = mock(NativeQuery.class);
+        when(mockSession.createNativeQuery(QUERY)).thenReturn(mockQuery);
+        when(mockQuery.executeUpdate()).thenReturn(1);
+        
+        int retValue = helper.nativeTableUpdate(QUERY, ImmutableMap.of("a", "b"), "AppAccountCounts");
+        assertEquals(retValue, 1);
+        
+        verify(mockQuery).addSynchronizedQuerySpace("AppAccountCounts");
+        verify(mockQuery).setParameter("a", "b");
+        verify(mockQuery, never()).addSynchronizedEntityClass(any());
+        verify(mockCacheInvalidator, never()).invalidate(any());
+    }
+    
+    @Test
+    public void failedUpdateDoesNotInvalidateCache() {
+        helper.setCacheInvalidator(mockCacheInvalidator);
+        when(mockExceptionConverter.convert(any(), any())).thenAnswer((invocation) -> invocation.getArgument(0));
+        
+        Query<Object> mockQuery = mock(Query.class);
+        when(mockQuery.executeUpdate()).thenThrow(new PersistenceException());
+        when(mockSession.createQuery(QUERY)).thenReturn(mockQuery);
+        
+        try {
+            helper.queryUpdate(QUERY, PARAMETERS);
+            fail("Should have thrown exception");
+        } catch (BridgeServiceException e) {
+            // expected
+        }
+        verify(mockCacheInvalidator, never()).invalidate(any());
     }
     
     @Test
@@ -693,4 +879,142 @@ public class HibernateHelperTest {
 
         verify(mockTransaction).rollback();
     }
+    
+    @Test
+    public void updateIsNotReadOnly() {
+        helper.update(new Object());
+        verify(mockSession, never()).setDefaultReadOnly(true);
+        verify(mockSession, never()).setHibernateFlushMode(any());
+        verify(mockSession, never()).doWork(any());
+    }
+    
+    @Test
+    public void metricsNoSetup() {
+        when(mockSession.beginTransaction()).thenReturn(mockTransaction);
+        when(mockSessionFactory.openSession()).thenReturn(mockSession);
+        
+        helper.getById(Object.class, "test-id");
+        helper.update(new Object());
+        
+        ObjectNode metrics = helper.getMetrics();
+        assertEquals(metrics.get("transactionCount").longValue(), 2L);
+        assertEquals(metrics.get("readOnlyTransactionCount").longValue(), 1L);
+        assertEquals(metrics.get("acquireTimeoutCount").longValue(), 0L);
+        assertTrue(metrics.has("averageAcquireMillis"));
+        assertTrue(metrics.has("maxAcquireMillis"));
+    }
+    
+    @Test
+    public void metricsCountAcquireTimeoutNoSetup() {
+        JDBCConnectionException ex = new JDBCConnectionException("Unable to acquire JDBC Connection", 
+                new SQLException("An attempt by a client to checkout a Connection has timed out.", 
+                        new TimeoutException("timed out")));
+        when(mockSession.beginTransaction()).thenThrow(ex);
+        when(mockSessionFactory.openSession()).thenReturn(mockSession);
+        when(mockExceptionConverter.convert(any(), any())).thenReturn(ex);
+        
+        for (int i = 0; i < 2; i++) {
+            try {
+                helper.getById(Object.class, "test-id");
+                fail("expected exception");
+            } catch (BridgeServiceException e) {
+                // expected
+            }
+        }
+        assertEquals(helper.getMetrics().get("acquireTimeoutCount").longValue(), 2L);
+        verify(mockSession, times(2)).close();
+    }
+    
+    @Test
+    public void replicaWithoutReplicaReturnsPrimary() {
+        assertSame(helper.replica(60), helper);
+    }
+    
+    @Test
+    public void replicaUnavailableReturnsPrimary() {
+        ReadReplica mockReplica = mock(ReadReplica.class);
+        when(mockReplica.isAvailable(60)).thenReturn(false);
+        helper.setReadReplica(mockReplica);
+        
+        assertSame(helper.replica(60), helper);
+    }
+    
+    @Test
+    public void replicaAvailableReturnsReplicaHelper() {
+        ReadReplica mockReplica = mock(ReadReplica.class);
+        when(mockReplica.isAvailable(60)).thenReturn(true);
+        helper.setReadReplica(mockReplica);
+        
+        HibernateHelper replicaHelper = helper.replica(60);
+        assertNotSame(replicaHelper, helper);
+        assertSame(helper.replica(60), replicaHelper);
+    }
+    
+    @Test
+    public void replicaQueriesReplicaNoSetup() {
+        SessionFactory mockReplicaSessionFactory = mock(SessionFactory.class);
+        Session mockReplicaSession = mock(Session.class);
+        when(mockReplicaSessionFactory.openSession()).thenReturn(mockReplicaSession);
+        when(mockReplicaSession.beginTransaction()).thenReturn(mockTransaction);
+        when(mockReplicaSession.get(Object.class, "test-id")).thenReturn("replica");
+        
+        ReadReplica mockReplica = mock(ReadReplica.class);
+        when(mockReplica.isAvailable(60)).thenReturn(true);
+        when(mockReplica.getSessionFactory()).thenReturn(mockReplicaSessionFactory);
+        helper.setReadReplica(mockReplica);
+        
+        assertEquals(helper.replica(60).getById(Object.class, "test-id"), "replica");
+        verify(mockSessionFactory, never()).openSession();
+        verify(mockReplica, never()).markUnavailable();
+    }
+    
+    @Test
+    public void replicaConnectionFailureFallsBackToPrimaryNoSetup() {
+        JDBCConnectionException ex = new JDBCConnectionException("Unable to acquire JDBC Connection", 
+                new SQLException("Communications link failure"));
+        SessionFactory mockReplicaSessionFactory = mock(SessionFactory.class);
+        Session mockReplicaSession = mock(Session.class);
+        when(mockReplicaSessionFactory.openSession()).thenReturn(mockReplicaSession);
+        when(mockReplicaSession.beginTransaction()).thenThrow(ex);
+        
+        when(mockSessionFactory.openSession()).thenReturn(mockSession);
+        when(mockSession.beginTransaction()).thenReturn(mockTransaction);
+        when(mockSession.get(Object.class, "test-id")).thenReturn("primary");
+        
+        ReadReplica mockReplica = mock(ReadReplica.class);
+        when(mockReplica.isAvailable(60)).thenReturn(true);
+        when(mockReplica.getSessionFactory()).thenReturn(mockReplicaSessionFactory);
+        helper.setReadReplica(mockReplica);
+        
+        HibernateHelper replicaHelper = helper.replica(60);
+        assertEquals(replicaHelper.getById(Object.class, "test-id"), "primary");
+        verify(mockReplica).markUnavailable();
+        assertEquals(replicaHelper.getMetrics().get("replicaFallbackCount").longValue(), 1L);
+        assertTrue(helper.getMetrics().has("replica"));
+    }
+    
+    @Test
+    public void replicaQueryErrorIsNotRetriedNoSetup() {
+        SessionFactory mockReplicaSessionFactory = mock(SessionFactory.class);
+        Session mockReplicaSession = mock(Session.class);
+        when(mockReplicaSessionFactory.openSession()).thenReturn(mockReplicaSession);
+        when(mockReplicaSession.beginTransaction()).thenReturn(mockTransaction);
+        PersistenceException ex = new PersistenceException();
+        when(mockReplicaSession.get(Object.class, "test-id")).thenThrow(ex);
+        when(mockExceptionConverter.convert(any(), any())).thenReturn(TEST_EXCEPTION);
+        
+        ReadReplica mockReplica = mock(ReadReplica.class);
+        when(mockReplica.isAvailable(60)).thenReturn(true);
+        when(mockReplica.getSessionFactory()).thenReturn(mockReplicaSessionFactory);
+        helper.setReadReplica(mockReplica);
+        
+        try {
+            helper.replica(60).getById(Object.class, "test-id");
+            fail("Should have thrown exception");
+        } catch (RuntimeException e) {
+            assertSame(e, TEST_EXCEPTION);
+        }
+        verify(mockReplica, never()).markUnavailable();
+        verify(mockSessionFactory, never()).openSession();
+    }
 }
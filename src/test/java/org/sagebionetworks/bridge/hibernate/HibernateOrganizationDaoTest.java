@@ -107,7 +107,7 @@ public class HibernateOrganizationDaoTest extends Mockito {
     public void deleteAllOrganizations() {
         dao.deleteAllOrganizations(TEST_APP_ID);
         
-        verify(mockHelper).queryUpdate(queryCaptor.capture(), paramsCaptor.capture());
+        verify(mockHelper).queryUpdate(queryCaptor.capture(), paramsCaptor.capture(), eq(HibernateOrganization.class));
         assertEquals(queryCaptor.getValue(), "delete from HibernateOrganization where appId=:appId");
         assertEquals(paramsCaptor.getValue().get("appId"), TEST_APP_ID);
     }
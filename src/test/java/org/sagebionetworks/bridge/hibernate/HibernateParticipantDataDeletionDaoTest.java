@@ -0,0 +1,69 @@
+package org.sagebionetworks.bridge.hibernate;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.sagebionetworks.bridge.TestConstants.TEST_USER_ID;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.ImmutableList;
+import org.joda.time.DateTime;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import org.sagebionetworks.bridge.models.accounts.ParticipantDataDeletion;
+
+public class HibernateParticipantDataDeletionDaoTest {
+    private static final DateTime MODIFIED_BEFORE = DateTime.parse("2026-10-19T10:00:00.000Z");
+
+    @Mock
+    private HibernateHelper mockHibernateHelper;
+
+    @InjectMocks
+    private HibernateParticipantDataDeletionDao dao;
+
+    @BeforeMethod
+    public void before() {
+        MockitoAnnotations.initMocks(this);
+    }
+
+    @Test
+    public void saveDeletion() {
+        ParticipantDataDeletion deletion = new ParticipantDataDeletion();
+        dao.saveDeletion(deletion);
+        verify(mockHibernateHelper).saveOrUpdate(deletion);
+    }
+
+    @Test
+    public void deleteDeletion() {
+        dao.deleteDeletion(TEST_USER_ID);
+        verify(mockHibernateHelper).deleteById(ParticipantDataDeletion.class, TEST_USER_ID);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void getStalledDeletions() {
+        ParticipantDataDeletion deletion = new ParticipantDataDeletion();
+        when(mockHibernateHelper.queryGet(eq(HibernateParticipantDataDeletionDao.STALLED_QUERY), any(), isNull(),
+                eq(10), eq(ParticipantDataDeletion.class))).thenReturn(ImmutableList.of(deletion));
+
+        List<ParticipantDataDeletion> result = dao.getStalledDeletions(MODIFIED_BEFORE, 10);
+        assertEquals(result.size(), 1);
+        assertSame(result.get(0), deletion);
+
+        ArgumentCaptor<Map<String, Object>> paramsCaptor = ArgumentCaptor.forClass(Map.class);
+        verify(mockHibernateHelper).queryGet(eq(HibernateParticipantDataDeletionDao.STALLED_QUERY),
+                paramsCaptor.capture(), isNull(), eq(10), eq(ParticipantDataDeletion.class));
+        assertEquals(paramsCaptor.getValue().get("modifiedBefore"), MODIFIED_BEFORE.getMillis());
+    }
+}
@@ -1,8 +1,16 @@
 package org.sagebionetworks.bridge.hibernate;
 
+import static org.sagebionetworks.bridge.TestConstants.TEST_APP_ID;
 import static org.sagebionetworks.bridge.TestConstants.TEST_USER_ID;
+import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
 
+import java.util.Map;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import org.joda.time.DateTime;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
@@ -26,6 +34,12 @@ public class HibernateRequestInfoDaoTest extends Mockito {
     @Captor
     ArgumentCaptor<RequestInfo> requestInfoCaptor;
     
+    @Captor
+    ArgumentCaptor<String> queryCaptor;
+    
+    @Captor
+    ArgumentCaptor<Map<String, Object>> paramsCaptor;
+    
     @BeforeMethod
     public void beforeMethod() { 
         MockitoAnnotations.initMocks(this);
@@ -58,6 +72,40 @@ public class HibernateRequestInfoDaoTest extends Mockito {
         assertNotNull(captured.getSignedInOn());
     }
 
+    @Test
+    public void upsertRequestInfos() {
+        DateTime signedInOn = DateTime.parse("2022-05-01T10:00:00.000Z");
+        RequestInfo info1 = new RequestInfo.Builder().withUserId(TEST_USER_ID).withAppId(TEST_APP_ID)
+                .withSignedInOn(signedInOn).withUserDataGroups(ImmutableSet.of("group1")).build();
+        RequestInfo info2 = new RequestInfo.Builder().withUserId("other-user-id").withAppId(TEST_APP_ID)
+                .withUserAgent("Asthma/26").build();
+        
+        dao.upsertRequestInfos(ImmutableList.of(info1, info2));
+        
+        verify(mockHelper).nativeQueryUpdate(queryCaptor.capture(), paramsCaptor.capture(), eq(RequestInfo.class));
+        String query = queryCaptor.getValue();
+        assertTrue(query.startsWith(HibernateRequestInfoDao.UPSERT_INSERT));
+        assertTrue(query.contains(String.format(HibernateRequestInfoDao.UPSERT_VALUES, 0) + ", " + 
+                String.format(HibernateRequestInfoDao.UPSERT_VALUES, 1)));
+        assertTrue(query.endsWith(HibernateRequestInfoDao.UPSERT_ON_DUPLICATE));
+        
+        Map<String, Object> params = paramsCaptor.getValue();
+        assertEquals(params.get("userId0"), TEST_USER_ID);
+        assertEquals(params.get("appId0"), TEST_APP_ID);
+        assertEquals(params.get("signedInOn0"), signedInOn.getMillis());
+        assertEquals(params.get("userDataGroups0"), "[\"group1\"]");
+        assertNull(params.get("userAgent0"));
+        assertEquals(params.get("userId1"), "other-user-id");
+        assertEquals(params.get("userAgent1"), "Asthma/26");
+        assertNull(params.get("signedInOn1"));
+    }
+    
+    @Test
+    public void upsertRequestInfosEmptyList() {
+        dao.upsertRequestInfos(ImmutableList.of());
+        verify(mockHelper, never()).nativeQueryUpdate(any(), any(), any());
+    }
+
     @Test
     public void getRequestInfo() {
         dao.getRequestInfo(TEST_USER_ID);
@@ -11,7 +11,7 @@ import static org.sagebionetworks.bridge.hibernate.HibernateSchedule2Dao.BATCH_S
 import static org.sagebionetworks.bridge.hibernate.HibernateSchedule2Dao.DELETE_ALL_SCHEDULES;
 import static org.sagebionetworks.bridge.hibernate.HibernateSchedule2Dao.DELETE_ORPHANED_SESSIONS;
 import static org.sagebionetworks.bridge.hibernate.HibernateSchedule2Dao.DELETE_SESSIONS;
-import static org.sagebionetworks.bridge.hibernate.HibernateSchedule2Dao.DELETE_TIMELINE_RECORDS;
+import static org.sagebionetworks.bridge.hibernate.HibernateSchedule2Dao.DELETE_TIMELINE_RECORDS_BY_GUID;
 import static org.sagebionetworks.bridge.hibernate.HibernateSchedule2Dao.GET_ALL_SCHEDULES;
 import static org.sagebionetworks.bridge.hibernate.HibernateSchedule2Dao.GET_ORG_SCHEDULES;
 import static org.sagebionetworks.bridge.hibernate.HibernateSchedule2Dao.GET_SCHEDULE;
@@ -20,6 +20,8 @@ import static org.sagebionetworks.bridge.hibernate.HibernateSchedule2Dao.INSTANC
 import static org.sagebionetworks.bridge.hibernate.HibernateSchedule2Dao.SELECT_ASSESSMENTS_FOR_SESSION_INSTANCE;
 import static org.sagebionetworks.bridge.hibernate.HibernateSchedule2Dao.SELECT_COUNT;
 import static org.sagebionetworks.bridge.hibernate.HibernateSchedule2Dao.SELECT_SESSION_METADATA_FOR_SCHEDULE;
+import static org.sagebionetworks.bridge.hibernate.HibernateSchedule2Dao.SELECT_TIMELINE_RECORDS;
+import static org.sagebionetworks.bridge.hibernate.HibernateSchedule2Dao.UPSERT;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertSame;
@@ -29,6 +31,7 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Types;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -37,11 +40,13 @@ import java.util.function.Function;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 
+import org.hibernate.CacheMode;
 import org.hibernate.Session;
 import org.hibernate.jdbc.Work;
 import org.hibernate.query.NativeQuery;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
@@ -49,6 +54,8 @@ import org.mockito.MockitoAnnotations;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import org.joda.time.DateTime;
+
 import org.sagebionetworks.bridge.config.BridgeConfig;
 import org.sagebionetworks.bridge.models.PagedResourceList;
 import org.sagebionetworks.bridge.models.schedules2.Schedule2;
@@ -69,6 +76,9 @@ public class HibernateSchedule2DaoTest extends Mockito {
     @Mock
     NativeQuery<Schedule2> mockQuery;
 
+    @Mock
+    NativeQuery<TimelineMetadata> mockMetadataQuery;
+
     @Mock
     BridgeConfig mockConfig;
 
@@ -81,6 +91,9 @@ public class HibernateSchedule2DaoTest extends Mockito {
     @Captor
     ArgumentCaptor<Map<String, Object>> paramsCaptor;
 
+    @Captor
+    ArgumentCaptor<Work> workCaptor;
+
     @BeforeMethod
     public void beforeMethod() {
         MockitoAnnotations.initMocks(this);
@@ -90,6 +103,8 @@ public class HibernateSchedule2DaoTest extends Mockito {
         dao.setBridgeConfig(mockConfig);
 
         when(mockSession.createNativeQuery(any())).thenReturn(mockQuery);
+        when(mockSession.createNativeQuery(SELECT_TIMELINE_RECORDS, TimelineMetadata.class))
+                .thenReturn(mockMetadataQuery);
 
         when(mockHibernateHelper.executeWithExceptionHandling(any(), any())).thenAnswer(args -> {
             Function<Session, Schedule2> func = args.getArgument(1);
@@ -210,7 +225,7 @@ public class HibernateSchedule2DaoTest extends Mockito {
     @Test
     public void getScheduleSucceeds() {
         Schedule2 schedule = new Schedule2();
-        when(mockHibernateHelper.queryGet(any(), any(), any(), any(), eq(Schedule2.class)))
+        when(mockHibernateHelper.cacheableQueryGet(any(), any(), any(), any(), eq(Schedule2.class)))
                 .thenReturn(ImmutableList.of(schedule));
 
         Optional<Schedule2> retValue = dao.getSchedule(TEST_APP_ID, GUID);
@@ -226,7 +241,7 @@ public class HibernateSchedule2DaoTest extends Mockito {
 
     @Test
     public void getScheduleFails() {
-        when(mockHibernateHelper.queryGet(any(), any(), any(), any(), eq(Schedule2.class)))
+        when(mockHibernateHelper.cacheableQueryGet(any(), any(), any(), any(), eq(Schedule2.class)))
                 .thenReturn(ImmutableList.of());
 
         Optional<Schedule2> retValue = dao.getSchedule(TEST_APP_ID, GUID);
@@ -237,8 +252,6 @@ public class HibernateSchedule2DaoTest extends Mockito {
     public void createSchedule() {
         Schedule2 schedule = Schedule2Test.createValidSchedule();
 
-        when(mockSession.createNativeQuery(DELETE_TIMELINE_RECORDS)).thenReturn(mockQuery);
-
         Schedule2 retValue = dao.createSchedule(schedule);
         assertEquals(retValue, schedule);
 
@@ -261,14 +274,110 @@ public class HibernateSchedule2DaoTest extends Mockito {
         Schedule2 retValue = dao.updateSchedule(schedule);
         assertEquals(retValue, schedule);
 
-        verify(mockSession, times(2)).createNativeQuery(queryCaptor.capture());
-        assertEquals(queryCaptor.getAllValues().get(0), DELETE_ORPHANED_SESSIONS);
-        assertEquals(queryCaptor.getAllValues().get(1), DELETE_TIMELINE_RECORDS);
+        verify(mockSession).createNativeQuery(queryCaptor.capture());
+        assertEquals(queryCaptor.getValue(), DELETE_ORPHANED_SESSIONS);
         verify(mockQuery).setParameter("guid", SCHEDULE_GUID);
         verify(mockQuery).setParameter("guids", ImmutableSet.of(SESSION_GUID_1, SESSION_GUID_2));
-        verify(mockQuery, times(2)).executeUpdate();
+        verify(mockQuery).executeUpdate();
         verify(mockSession).update(schedule);
+
+        // There are no existing records, so they are all inserted.
+        verify(mockMetadataQuery).setParameter(HibernateSchedule2Dao.SCHEDULE_GUID, SCHEDULE_GUID);
+        verify(mockMetadataQuery).setReadOnly(true);
+        verify(mockMetadataQuery).setCacheMode(CacheMode.IGNORE);
+        verify(mockSession).setJdbcBatchSize(10);
         verify(mockSession).doWork(any());
+
+        // The inserted records are evicted from the cache after the transaction commits.
+        List<String> guids = new ArrayList<>();
+        for (TimelineMetadata meta : Scheduler.INSTANCE.calculateTimeline(schedule).getMetadata()) {
+            guids.add(meta.getGuid());
+        }
+        InOrder inOrder = inOrder(mockHibernateHelper);
+        inOrder.verify(mockHibernateHelper).executeWithExceptionHandling(eq(schedule), any());
+        inOrder.verify(mockHibernateHelper).evictFromCache(TimelineMetadata.class, guids);
+    }
+
+    @Test
+    public void updateScheduleOnlyWritesChangedTimelineMetadata() throws SQLException {
+        Schedule2 schedule = Schedule2Test.createValidSchedule();
+        List<TimelineMetadata> metadata = Scheduler.INSTANCE.calculateTimeline(schedule).getMetadata();
+
+        // Existing records are from a prior version of the schedule, so their modifiedOn value is different.
+        List<TimelineMetadata> existingRecords = new ArrayList<>();
+        for (TimelineMetadata meta : metadata) {
+            TimelineMetadata existing = TimelineMetadata.copy(meta);
+            existing.setScheduleModifiedOn(new DateTime(0L));
+            existingRecords.add(existing);
+        }
+        // One record has changed,
+        existingRecords.get(0).setSessionName("Old name");
+        // one record is new,
+        existingRecords.remove(1);
+        // and one record is no longer in the timeline.
+        TimelineMetadata removed = TimelineMetadata.copy(metadata.get(2));
+        removed.setGuid("removedGuid");
+        existingRecords.add(removed);
+        when(mockMetadataQuery.list()).thenReturn(existingRecords);
+
+        dao.updateSchedule(schedule);
+
+        verify(mockSession).createNativeQuery(DELETE_TIMELINE_RECORDS_BY_GUID);
+        verify(mockQuery).setParameter("guids", ImmutableList.of("removedGuid"));
+        verify(mockQuery).addSynchronizedEntityClass(TimelineMetadata.class);
+
+        verify(mockSession).doWork(workCaptor.capture());
+        Connection mockConnection = mock(Connection.class);
+        PreparedStatement mockStatement = mock(PreparedStatement.class);
+        when(mockConnection.prepareStatement(UPSERT)).thenReturn(mockStatement);
+        workCaptor.getValue().execute(mockConnection);
+
+        verify(mockStatement).setString(16, metadata.get(0).getGuid());
+        verify(mockStatement).setString(16, metadata.get(1).getGuid());
+        verify(mockStatement, times(2)).addBatch();
+
+        // Deleted records and written records are evicted from the cache.
+        verify(mockHibernateHelper).evictFromCache(TimelineMetadata.class,
+                ImmutableList.of("removedGuid", metadata.get(0).getGuid(), metadata.get(1).getGuid()));
+    }
+
+    @Test
+    public void updateScheduleWithUnchangedTimelineMetadata() {
+        Schedule2 schedule = Schedule2Test.createValidSchedule();
+        List<TimelineMetadata> existingRecords = new ArrayList<>();
+        for (TimelineMetadata meta : Scheduler.INSTANCE.calculateTimeline(schedule).getMetadata()) {
+            existingRecords.add(TimelineMetadata.copy(meta));
+        }
+        when(mockMetadataQuery.list()).thenReturn(existingRecords);
+
+        dao.updateSchedule(schedule);
+
+        verify(mockSession, never()).createNativeQuery(DELETE_TIMELINE_RECORDS_BY_GUID);
+        verify(mockSession, never()).doWork(any());
+        verify(mockHibernateHelper).evictFromCache(TimelineMetadata.class, ImmutableList.of());
+    }
+
+    @Test
+    public void isChanged() {
+        Schedule2 schedule = Schedule2Test.createValidSchedule();
+        TimelineMetadata meta = Scheduler.INSTANCE.calculateTimeline(schedule).getMetadata().get(1);
+
+        TimelineMetadata existing = TimelineMetadata.copy(meta);
+        assertFalse(HibernateSchedule2Dao.isChanged(existing, meta));
+
+        existing.setScheduleModifiedOn(new DateTime(0L));
+        assertFalse(HibernateSchedule2Dao.isChanged(existing, meta));
+
+        existing.setAssessmentRevision(meta.getAssessmentRevision() + 1);
+        assertTrue(HibernateSchedule2Dao.isChanged(existing, meta));
+
+        existing = TimelineMetadata.copy(meta);
+        existing.setSchedulePublished(!meta.isSchedulePublished());
+        assertTrue(HibernateSchedule2Dao.isChanged(existing, meta));
+
+        existing = TimelineMetadata.copy(meta);
+        existing.setSessionSymbol("other");
+        assertTrue(HibernateSchedule2Dao.isChanged(existing, meta));
     }
 
     @Test
@@ -348,11 +457,11 @@ public class HibernateSchedule2DaoTest extends Mockito {
         Schedule2 retValue = dao.updateSchedule(schedule);
         assertEquals(retValue, schedule);
 
-        verify(mockSession).createNativeQuery(DELETE_TIMELINE_RECORDS);
         verify(mockSession).createNativeQuery(DELETE_SESSIONS);
         verify(mockQuery).setParameter("guid", "ScheduleGuid");
-        verify(mockQuery, times(2)).executeUpdate();
+        verify(mockQuery).executeUpdate();
         verify(mockSession).update(schedule);
+        verify(mockSession, never()).doWork(any());
     }
 
     @Test
@@ -432,7 +541,8 @@ public class HibernateSchedule2DaoTest extends Mockito {
     public void deleteAllSchedules() {
         dao.deleteAllSchedules(TEST_APP_ID);
         
-        verify(mockHibernateHelper).nativeQueryUpdate(eq(DELETE_ALL_SCHEDULES), paramsCaptor.capture());
+        verify(mockHibernateHelper).nativeQueryUpdate(eq(DELETE_ALL_SCHEDULES), paramsCaptor.capture(),
+                eq(Schedule2.class));
         assertEquals(paramsCaptor.getValue().get("appId"), TEST_APP_ID);
     }
 }
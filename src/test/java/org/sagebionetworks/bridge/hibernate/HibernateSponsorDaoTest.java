@@ -99,7 +99,8 @@ public class HibernateSponsorDaoTest extends Mockito {
     public void addStudySponsor() {
         dao.addStudySponsor(TEST_APP_ID, TEST_STUDY_ID, TEST_ORG_ID);
         
-        verify(mockHelper).nativeQueryUpdate(queryCaptor.capture(), paramsCaptor.capture());
+        verify(mockHelper).nativeTableUpdate(queryCaptor.capture(), paramsCaptor.capture(),
+                eq(HibernateSponsorDao.SPONSORS_TABLE));
         
         assertEquals(queryCaptor.getValue(), 
                 "INSERT INTO OrganizationsStudies (appId, studyId, orgId) VALUES (:appId, :studyId, :orgId)");
@@ -112,7 +113,8 @@ public class HibernateSponsorDaoTest extends Mockito {
     public void removeStudySponsor() {
         dao.removeStudySponsor(TEST_APP_ID, TEST_STUDY_ID, TEST_ORG_ID);
         
-        verify(mockHelper).nativeQueryUpdate(queryCaptor.capture(), paramsCaptor.capture());
+        verify(mockHelper).nativeTableUpdate(queryCaptor.capture(), paramsCaptor.capture(),
+                eq(HibernateSponsorDao.SPONSORS_TABLE));
         
         assertEquals(queryCaptor.getValue(), 
             "DELETE FROM OrganizationsStudies WHERE appId = :appId  AND studyId = :studyId  AND orgId = :orgId");
@@ -60,7 +60,7 @@ public class HibernateStudyActivityEventDaoTest extends Mockito {
         
         dao.deleteEvent(event);
         
-        verify(mockHelper).nativeQueryUpdate(eq(DELETE_SQL), paramsCaptor.capture());
+        verify(mockHelper).nativeQueryUpdate(eq(DELETE_SQL), paramsCaptor.capture(), eq(StudyActivityEvent.class));
         Map<String,Object> params = paramsCaptor.getValue();
         assertEquals(params.get(USER_ID_FIELD), TEST_USER_ID);
         assertEquals(params.get(STUDY_ID_FIELD), TEST_STUDY_ID);
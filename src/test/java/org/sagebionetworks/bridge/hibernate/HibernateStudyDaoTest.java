@@ -7,6 +7,7 @@ import static org.sagebionetworks.bridge.hibernate.HibernateStudyDao.FROM_PHRASE
 import static org.sagebionetworks.bridge.hibernate.HibernateStudyDao.SELECT_PHRASE;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
 
 import java.util.List;
 import java.util.Map;
@@ -74,13 +75,15 @@ public class HibernateStudyDaoTest extends Mockito {
     public void removeScheduleFromStudies() {
         dao.removeScheduleFromStudies(TEST_APP_ID, SCHEDULE_GUID);
         
-        verify(hibernateHelper).nativeQueryUpdate(queryCaptor.capture(), paramsCaptor.capture());
+        verify(hibernateHelper).nativeQueryUpdate(queryCaptor.capture(), paramsCaptor.capture(),
+                eq(HibernateStudy.class));
         
-        assertEquals(queryCaptor.getValue(), "UPDATE Substudies SET scheduleGuid = NULL "
+        assertEquals(queryCaptor.getValue(), "UPDATE Substudies SET scheduleGuid = NULL, modifiedOn = :modifiedOn "
                 + "WHERE studyId = :appId AND scheduleGuid = :scheduleGuid AND phase IN ('LEGACY','DESIGN')");
 
         assertEquals(paramsCaptor.getValue().get("appId"), TEST_APP_ID);
         assertEquals(paramsCaptor.getValue().get("scheduleGuid"), SCHEDULE_GUID);
+        assertTrue(paramsCaptor.getValue().get("modifiedOn") instanceof Long);
     }
     
     @Test
@@ -223,7 +226,7 @@ public class HibernateStudyDaoTest extends Mockito {
     public void deleteAllStudies() {
         dao.deleteAllStudies(TEST_APP_ID);
         
-        verify(hibernateHelper).queryUpdate(queryCaptor.capture(), paramsCaptor.capture());
+        verify(hibernateHelper).queryUpdate(queryCaptor.capture(), paramsCaptor.capture(), eq(HibernateStudy.class));
         assertEquals(queryCaptor.getValue(), "delete from HibernateStudy where appId = :appId");
         assertEquals(paramsCaptor.getValue().get("appId"), TEST_APP_ID);
     }
@@ -2,7 +2,11 @@ package org.sagebionetworks.bridge.hibernate;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
@@ -10,12 +14,21 @@ import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.Function;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import org.hibernate.Session;
+import org.hibernate.jdbc.Work;
 import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
 import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
@@ -25,6 +38,8 @@ import org.testng.annotations.Test;
 
 import org.sagebionetworks.bridge.BridgeConstants;
 import org.sagebionetworks.bridge.TestConstants;
+import org.sagebionetworks.bridge.exceptions.BadRequestException;
+import org.sagebionetworks.bridge.models.ForwardCursorPagedResourceList;
 import org.sagebionetworks.bridge.models.PagedResourceList;
 import org.sagebionetworks.bridge.upload.UploadTableRow;
 import org.sagebionetworks.bridge.upload.UploadTableRowQuery;
@@ -119,14 +134,14 @@ public class HibernateUploadTableRowDaoTest {
 
         // Verify call to hibernate.
         String expectedQuery = "FROM HibernateUploadTableRow WHERE appId = :appId AND studyId = :studyId AND testData = 0";
-        String expectedCountQuery = "SELECT COUNT(DISTINCT recordId) " + expectedQuery;
+        String expectedCountQuery = "SELECT COUNT(*) " + expectedQuery;
         Map<String, Object> paramMap = ImmutableMap.<String, Object>builder()
                 .put("appId", TestConstants.TEST_APP_ID)
                 .put("studyId", TestConstants.TEST_STUDY_ID).build();
 
         verify(mockHibernateHelper).queryCount(expectedCountQuery, paramMap);
-        verify(mockHibernateHelper).queryGet(expectedQuery, paramMap, 0, BridgeConstants.API_DEFAULT_PAGE_SIZE,
-                HibernateUploadTableRow.class);
+        verify(mockHibernateHelper).queryGet(expectedQuery + " ORDER BY createdOn, recordId", paramMap, 0,
+                BridgeConstants.API_DEFAULT_PAGE_SIZE, HibernateUploadTableRow.class);
     }
 
 
@@ -164,7 +179,7 @@ public class HibernateUploadTableRowDaoTest {
         // Verify call to hibernate.
         String expectedQuery = "FROM HibernateUploadTableRow WHERE appId = :appId AND studyId = :studyId "
                 + "AND assessmentGuid = :assessmentGuid AND createdOn >= :startDate AND createdOn < :endDate";
-        String expectedCountQuery = "SELECT COUNT(DISTINCT recordId) " + expectedQuery;
+        String expectedCountQuery = "SELECT COUNT(*) " + expectedQuery;
         Map<String, Object> paramMap = ImmutableMap.<String, Object>builder()
                 .put("appId", TestConstants.TEST_APP_ID)
                 .put("studyId", TestConstants.TEST_STUDY_ID)
@@ -173,10 +188,174 @@ public class HibernateUploadTableRowDaoTest {
                 .put("endDate", END_TIME).build();
 
         verify(mockHibernateHelper).queryCount(expectedCountQuery, paramMap);
-        verify(mockHibernateHelper).queryGet(expectedQuery, paramMap, 10, 20,
+        verify(mockHibernateHelper).queryGet(expectedQuery + " ORDER BY createdOn, recordId", paramMap, 10, 20,
                 HibernateUploadTableRow.class);
     }
 
+    @Test
+    public void queryUploadTableRowsByCursor_firstPage() {
+        // Set up mock. Return one more row than the page size, so there's a next page.
+        List<HibernateUploadTableRow> rows = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            rows.add((HibernateUploadTableRow) makeRow(RECORD_ID + i));
+        }
+        when(mockHibernateHelper.queryGet(any(), any(), any(), any(), any())).thenReturn(rows);
+
+        // Execute.
+        UploadTableRowQuery query = new UploadTableRowQuery();
+        query.setAppId(TestConstants.TEST_APP_ID);
+        query.setStudyId(TestConstants.TEST_STUDY_ID);
+        query.setPageSize(5);
+
+        ForwardCursorPagedResourceList<UploadTableRow> resourceList = dao.queryUploadTableRowsByCursor(query);
+        assertEquals(resourceList.getItems().size(), 5);
+        assertSame(resourceList.getItems().get(4), rows.get(4));
+        assertEquals(resourceList.getNextPageOffsetKey(), TestConstants.CREATED_ON.getMillis() + ":" + RECORD_ID + 4);
+
+        Map<String, Object> queryParamMap = resourceList.getRequestParams();
+        assertEquals(queryParamMap.get("pageSize"), 5);
+        assertNull(queryParamMap.get("offsetKey"));
+        assertNull(queryParamMap.get("total"));
+
+        // Verify call to hibernate. The total isn't counted unless asked for.
+        String expectedQuery = "FROM HibernateUploadTableRow WHERE appId = :appId AND studyId = :studyId "
+                + "AND testData = 0 ORDER BY createdOn, recordId";
+        Map<String, Object> paramMap = ImmutableMap.<String, Object>builder()
+                .put("appId", TestConstants.TEST_APP_ID)
+                .put("studyId", TestConstants.TEST_STUDY_ID).build();
+        verify(mockHibernateHelper).queryGet(expectedQuery, paramMap, null, 6, HibernateUploadTableRow.class);
+        verify(mockHibernateHelper, never()).queryCount(any(), any());
+    }
+
+    @Test
+    public void queryUploadTableRowsByCursor_lastPageWithTotal() {
+        // Set up mocks.
+        HibernateUploadTableRow row = (HibernateUploadTableRow) makeRow(RECORD_ID);
+        when(mockHibernateHelper.queryCount(any(), any())).thenReturn(51);
+        when(mockHibernateHelper.queryGet(any(), any(), any(), any(), any())).thenReturn(ImmutableList.of(row));
+
+        // Execute.
+        UploadTableRowQuery query = new UploadTableRowQuery();
+        query.setAppId(TestConstants.TEST_APP_ID);
+        query.setStudyId(TestConstants.TEST_STUDY_ID);
+        query.setAssessmentGuid(TestConstants.ASSESSMENT_1_GUID);
+        query.setIncludeTestData(true);
+        query.setOffsetKey("1000:" + RECORD_ID);
+        query.setIncludeTotal(true);
+
+        ForwardCursorPagedResourceList<UploadTableRow> resourceList = dao.queryUploadTableRowsByCursor(query);
+        assertEquals(resourceList.getItems().size(), 1);
+        assertSame(resourceList.getItems().get(0), row);
+        assertNull(resourceList.getNextPageOffsetKey());
+
+        Map<String, Object> queryParamMap = resourceList.getRequestParams();
+        assertEquals(queryParamMap.get("assessmentGuid"), TestConstants.ASSESSMENT_1_GUID);
+        assertEquals(queryParamMap.get("offsetKey"), "1000:" + RECORD_ID);
+        assertEquals(queryParamMap.get("pageSize"), BridgeConstants.API_DEFAULT_PAGE_SIZE);
+        assertEquals(queryParamMap.get("total"), 51);
+
+        // Verify calls to hibernate. The count doesn't include the offset key.
+        String expectedFilter = "FROM HibernateUploadTableRow WHERE appId = :appId AND studyId = :studyId "
+                + "AND assessmentGuid = :assessmentGuid";
+        Map<String, Object> countParamMap = ImmutableMap.<String, Object>builder()
+                .put("appId", TestConstants.TEST_APP_ID)
+                .put("studyId", TestConstants.TEST_STUDY_ID)
+                .put("assessmentGuid", TestConstants.ASSESSMENT_1_GUID).build();
+        verify(mockHibernateHelper).queryCount("SELECT COUNT(*) " + expectedFilter, countParamMap);
+
+        String expectedQuery = expectedFilter + " AND (createdOn > :offsetCreatedOn OR "
+                + "(createdOn = :offsetCreatedOn AND recordId > :offsetRecordId)) ORDER BY createdOn, recordId";
+        Map<String, Object> paramMap = ImmutableMap.<String, Object>builder()
+                .putAll(countParamMap)
+                .put("offsetCreatedOn", new DateTime(1000L, DateTimeZone.UTC))
+                .put("offsetRecordId", RECORD_ID).build();
+        verify(mockHibernateHelper).queryGet(expectedQuery, paramMap, null, BridgeConstants.API_DEFAULT_PAGE_SIZE + 1,
+                HibernateUploadTableRow.class);
+    }
+
+    @Test(expectedExceptions = BadRequestException.class)
+    public void queryUploadTableRowsByCursor_offsetKeyWithoutRecordId() {
+        UploadTableRowQuery query = new UploadTableRowQuery();
+        query.setOffsetKey("1000");
+        dao.queryUploadTableRowsByCursor(query);
+    }
+
+    @Test(expectedExceptions = BadRequestException.class)
+    public void queryUploadTableRowsByCursor_offsetKeyWithInvalidTimestamp() {
+        UploadTableRowQuery query = new UploadTableRowQuery();
+        query.setOffsetKey("not-a-timestamp:" + RECORD_ID);
+        dao.queryUploadTableRowsByCursor(query);
+    }
+
+    @Test
+    public void streamUploadTableRows() {
+        // Set up mock. The first page is full, so there's a second page, which seeks past the last row of the first.
+        List<HibernateUploadTableRow> firstPage = new ArrayList<>();
+        for (int i = 0; i < HibernateUploadTableRowDao.STREAM_PAGE_SIZE; i++) {
+            firstPage.add((HibernateUploadTableRow) makeRow(RECORD_ID + i));
+        }
+        HibernateUploadTableRow lastRow = (HibernateUploadTableRow) makeRow(RECORD_ID);
+        when(mockHibernateHelper.queryGet(any(), any(), any(), any(), eq(HibernateUploadTableRow.class)))
+                .thenReturn(firstPage, ImmutableList.of(lastRow));
+
+        // Execute.
+        UploadTableRowQuery query = new UploadTableRowQuery();
+        query.setAppId(TestConstants.TEST_APP_ID);
+        query.setStudyId(TestConstants.TEST_STUDY_ID);
+        query.setIncludeTestData(true);
+        query.setOffsetKey("1000:" + RECORD_ID);
+        // Paging params are ignored.
+        query.setPageSize(5);
+
+        List<UploadTableRow> consumed = new ArrayList<>();
+        int count = dao.streamUploadTableRows(query, consumed::add);
+        assertEquals(count, HibernateUploadTableRowDao.STREAM_PAGE_SIZE + 1);
+        assertEquals(consumed.size(), HibernateUploadTableRowDao.STREAM_PAGE_SIZE + 1);
+        assertSame(consumed.get(0), firstPage.get(0));
+        assertSame(consumed.get(HibernateUploadTableRowDao.STREAM_PAGE_SIZE), lastRow);
+
+        // Verify calls to hibernate. Each page is its own query.
+        String expectedQuery = "FROM HibernateUploadTableRow WHERE appId = :appId AND studyId = :studyId "
+                + "AND (createdOn > :offsetCreatedOn OR (createdOn = :offsetCreatedOn AND recordId > :offsetRecordId)) "
+                + "ORDER BY createdOn, recordId";
+        Map<String, Object> firstParamMap = ImmutableMap.<String, Object>builder()
+                .put("appId", TestConstants.TEST_APP_ID)
+                .put("studyId", TestConstants.TEST_STUDY_ID)
+                .put("offsetCreatedOn", new DateTime(1000L, DateTimeZone.UTC))
+                .put("offsetRecordId", RECORD_ID).build();
+        Map<String, Object> secondParamMap = ImmutableMap.<String, Object>builder()
+                .put("appId", TestConstants.TEST_APP_ID)
+                .put("studyId", TestConstants.TEST_STUDY_ID)
+                .put("offsetCreatedOn", new DateTime(TestConstants.CREATED_ON.getMillis(), DateTimeZone.UTC))
+                .put("offsetRecordId", RECORD_ID + (HibernateUploadTableRowDao.STREAM_PAGE_SIZE - 1)).build();
+        verify(mockHibernateHelper).queryGet(expectedQuery, firstParamMap, null,
+                HibernateUploadTableRowDao.STREAM_PAGE_SIZE, HibernateUploadTableRow.class);
+        verify(mockHibernateHelper).queryGet(expectedQuery, secondParamMap, null,
+                HibernateUploadTableRowDao.STREAM_PAGE_SIZE, HibernateUploadTableRow.class);
+        verify(mockHibernateHelper, never()).queryCount(any(), any());
+    }
+
+    @Test
+    public void streamUploadTableRows_noRows() {
+        UploadTableRowQuery query = new UploadTableRowQuery();
+        query.setAppId(TestConstants.TEST_APP_ID);
+        query.setStudyId(TestConstants.TEST_STUDY_ID);
+
+        List<UploadTableRow> consumed = new ArrayList<>();
+        int count = dao.streamUploadTableRows(query, consumed::add);
+        assertEquals(count, 0);
+        assertTrue(consumed.isEmpty());
+        verify(mockHibernateHelper, times(1)).queryGet(any(), any(), any(), any(),
+                eq(HibernateUploadTableRow.class));
+    }
+
+    @Test
+    public void makeOffsetKey() {
+        UploadTableRow row = makeRow(RECORD_ID);
+        assertEquals(HibernateUploadTableRowDao.makeOffsetKey(row), TestConstants.CREATED_ON.getMillis() + ":"
+                + RECORD_ID);
+    }
+
     @Test
     public void saveUploadTableRow() {
         // Execute.
@@ -186,4 +365,82 @@ public class HibernateUploadTableRowDaoTest {
         // Verify call to hibernate.
         verify(mockHibernateHelper).saveOrUpdate(row);
     }
+
+    @Test
+    public void saveUploadTableRows() throws Exception {
+        // Mock hibernate helper and session. Capture the JDBC work.
+        Session mockSession = mock(Session.class);
+        when(mockHibernateHelper.executeWithExceptionHandling(any(), any())).thenAnswer(invocation -> {
+            Function<Session, Object> function = invocation.getArgument(1);
+            return function.apply(mockSession);
+        });
+
+        List<UploadTableRow> rows = new ArrayList<>();
+        for (int i = 0; i < HibernateUploadTableRowDao.BATCH_SIZE + 1; i++) {
+            rows.add(makeRow(RECORD_ID + i));
+        }
+
+        // Execute.
+        dao.saveUploadTableRows(rows);
+
+        // Verify that the rows are written in one transaction, without saveOrUpdate().
+        ArgumentCaptor<Work> workCaptor = ArgumentCaptor.forClass(Work.class);
+        verify(mockSession).doWork(workCaptor.capture());
+        verify(mockHibernateHelper, never()).saveOrUpdate(any());
+
+        // Run the work against a mock connection.
+        Connection mockConnection = mock(Connection.class);
+        PreparedStatement mockStatement = mock(PreparedStatement.class);
+        when(mockConnection.prepareStatement(HibernateUploadTableRowDao.UPSERT_ROW_QUERY)).thenReturn(mockStatement);
+        workCaptor.getValue().execute(mockConnection);
+
+        // One full batch and one partial batch.
+        verify(mockStatement, times(HibernateUploadTableRowDao.BATCH_SIZE + 1)).addBatch();
+        verify(mockStatement, times(2)).executeBatch();
+
+        // Spot check the parameters.
+        verify(mockStatement, times(rows.size())).setString(1, TestConstants.TEST_APP_ID);
+        verify(mockStatement).setString(3, RECORD_ID + 0);
+        verify(mockStatement, times(rows.size())).setLong(5, TestConstants.CREATED_ON.getMillis());
+        verify(mockStatement, times(rows.size())).setNull(8, Types.INTEGER);
+        verify(mockStatement, times(rows.size())).setString(9, "{\"foo\":\"bar\"}");
+        verify(mockStatement, times(rows.size())).setString(10, "{}");
+        verify(mockStatement).close();
+    }
+
+    @Test
+    public void saveUploadTableRows_fullBatches() throws Exception {
+        List<UploadTableRow> rows = new ArrayList<>();
+        for (int i = 0; i < HibernateUploadTableRowDao.BATCH_SIZE * 2; i++) {
+            rows.add(makeRow(RECORD_ID + i));
+        }
+        rows.get(0).setParticipantVersion(3);
+
+        Connection mockConnection = mock(Connection.class);
+        PreparedStatement mockStatement = mock(PreparedStatement.class);
+        when(mockConnection.prepareStatement(HibernateUploadTableRowDao.UPSERT_ROW_QUERY)).thenReturn(mockStatement);
+        dao.upsertRowsInBatches(rows).execute(mockConnection);
+
+        // No empty batch at the end.
+        verify(mockStatement, times(2)).executeBatch();
+        verify(mockStatement).setInt(8, 3);
+    }
+
+    @Test
+    public void saveUploadTableRows_noRows() {
+        dao.saveUploadTableRows(ImmutableList.of());
+        verifyZeroInteractions(mockHibernateHelper);
+    }
+
+    private static UploadTableRow makeRow(String recordId) {
+        UploadTableRow row = UploadTableRow.create();
+        row.setAppId(TestConstants.TEST_APP_ID);
+        row.setStudyId(TestConstants.TEST_STUDY_ID);
+        row.setRecordId(recordId);
+        row.setAssessmentGuid(TestConstants.ASSESSMENT_1_GUID);
+        row.setCreatedOn(TestConstants.CREATED_ON);
+        row.setHealthCode(TestConstants.HEALTH_CODE);
+        row.setMetadata(ImmutableMap.of("foo", "bar"));
+        return row;
+    }
 }
@@ -0,0 +1,38 @@
+package org.sagebionetworks.bridge.hibernate;
+
+import static org.sagebionetworks.bridge.RequestContext.NULL_INSTANCE;
+import static org.sagebionetworks.bridge.models.Metrics.BACKEND_DYNAMODB;
+import static org.sagebionetworks.bridge.models.Metrics.BACKEND_MYSQL;
+import static org.testng.Assert.assertEquals;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import org.sagebionetworks.bridge.RequestContext;
+import org.sagebionetworks.bridge.TestUtils;
+
+public class MySqlStatementCounterTest {
+    private static final String SQL = "select * from Accounts where id=?";
+
+    @AfterMethod
+    public void afterMethod() {
+        RequestContext.set(NULL_INSTANCE);
+    }
+
+    @Test
+    public void countsStatements() {
+        TestUtils.countBackendCalls();
+        MySqlStatementCounter counter = new MySqlStatementCounter();
+
+        assertEquals(counter.inspect(SQL), SQL);
+        counter.inspect("select * from AccountRoles where accountId in (select id from Accounts where id=?)");
+
+        TestUtils.assertBackendCallCount(BACKEND_MYSQL, 2);
+        TestUtils.assertBackendCallCount(BACKEND_DYNAMODB, 0);
+    }
+
+    @Test
+    public void noMetricsOutsideOfRequest() {
+        assertEquals(new MySqlStatementCounter().inspect(SQL), SQL);
+    }
+}
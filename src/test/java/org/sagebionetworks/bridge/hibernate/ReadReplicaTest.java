@@ -0,0 +1,153 @@
+package org.sagebionetworks.bridge.hibernate;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.exception.JDBCConnectionException;
+import org.hibernate.jdbc.ReturningWork;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class ReadReplicaTest extends Mockito {
+
+    @Mock
+    SessionFactory mockSessionFactory;
+
+    @Mock
+    Session mockSession;
+
+    @Mock
+    Connection mockConnection;
+
+    @Mock
+    Statement mockStatement;
+
+    @Mock
+    ResultSet mockResultSet;
+
+    @Mock
+    ScheduledExecutorService mockExecutor;
+
+    ReadReplica replica;
+
+    @BeforeMethod
+    public void beforeMethod() throws SQLException {
+        MockitoAnnotations.initMocks(this);
+
+        when(mockSessionFactory.openSession()).thenReturn(mockSession);
+        when(mockSession.doReturningWork(any())).thenAnswer(invocation -> {
+            ReturningWork<?> work = invocation.getArgument(0);
+            return work.execute(mockConnection);
+        });
+        when(mockConnection.createStatement()).thenReturn(mockStatement);
+        when(mockStatement.executeQuery(ReadReplica.LAG_QUERY)).thenReturn(mockResultSet);
+
+        replica = new ReadReplica(mockSessionFactory, 10);
+        replica.setExecutor(mockExecutor);
+    }
+
+    @Test
+    public void notAvailableUntilPolled() {
+        assertFalse(replica.isAvailable(Integer.MAX_VALUE));
+        assertNull(replica.getLagSeconds());
+    }
+
+    @Test
+    public void availableWithinLag() throws SQLException {
+        when(mockResultSet.next()).thenReturn(true);
+        when(mockResultSet.getLong(ReadReplica.LAG_COLUMN)).thenReturn(5L);
+
+        replica.poll();
+
+        assertEquals(replica.getLagSeconds(), Long.valueOf(5L));
+        assertTrue(replica.isAvailable(5));
+        assertTrue(replica.isAvailable(60));
+        assertFalse(replica.isAvailable(4));
+        verify(mockSession).close();
+    }
+
+    @Test
+    public void notAReplicaHasNoLag() throws SQLException {
+        when(mockResultSet.next()).thenReturn(false);
+
+        replica.poll();
+
+        assertEquals(replica.getLagSeconds(), Long.valueOf(0L));
+        assertTrue(replica.isAvailable(0));
+    }
+
+    @Test
+    public void replicationStoppedIsUnavailable() throws SQLException {
+        when(mockResultSet.next()).thenReturn(true);
+        when(mockResultSet.getLong(ReadReplica.LAG_COLUMN)).thenReturn(0L);
+        when(mockResultSet.wasNull()).thenReturn(true);
+
+        replica.poll();
+
+        assertNull(replica.getLagSeconds());
+        assertFalse(replica.isAvailable(Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void pollErrorIsUnavailable() throws SQLException {
+        when(mockResultSet.next()).thenReturn(false);
+        replica.poll();
+        assertTrue(replica.isAvailable(0));
+
+        when(mockSession.doReturningWork(any())).thenThrow(new JDBCConnectionException("Communications link failure",
+                new SQLException()));
+        replica.poll();
+
+        assertFalse(replica.isAvailable(Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void markUnavailable() throws SQLException {
+        when(mockResultSet.next()).thenReturn(false);
+        replica.poll();
+        assertTrue(replica.isAvailable(0));
+
+        replica.markUnavailable();
+
+        assertFalse(replica.isAvailable(Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void noneIsNeverAvailable() {
+        assertFalse(ReadReplica.NONE.isAvailable(Integer.MAX_VALUE));
+
+        // Starting and stopping an unconfigured replica does nothing.
+        ReadReplica.NONE.start();
+        ReadReplica.NONE.shutdown();
+        assertFalse(ReadReplica.NONE.isAvailable(Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void start() {
+        replica.start();
+
+        verify(mockExecutor).scheduleWithFixedDelay(any(Runnable.class), eq(0L), eq(10L), eq(TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void shutdown() {
+        replica.shutdown();
+
+        verify(mockExecutor).shutdown();
+        verify(mockSessionFactory).close();
+    }
+}
@@ -7,6 +7,7 @@ import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.assertTrue;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.MultimapBuilder;
 import org.joda.time.DateTime;
@@ -64,6 +65,45 @@ public class MetricsTest {
         assertEquals(metrics.getJson().get("elapsedMillis").longValue(), EXPECTED_ELAPSED_MILLIS);
     }
 
+    @Test
+    public void testCallCounts() {
+        Metrics metrics = new Metrics("12345");
+        metrics.incrementDaoCallCount("AppDao.getApp");
+        metrics.incrementDaoCallCount("AppDao.getApp");
+        metrics.incrementDaoCallCount("StudyDao.getStudy");
+        metrics.incrementEntityCacheHitCount("App");
+
+        JsonNode daoCalls = metrics.getJson().get("dao_calls");
+        assertEquals(daoCalls.get("AppDao.getApp").intValue(), 2);
+        assertEquals(daoCalls.get("StudyDao.getStudy").intValue(), 1);
+        assertEquals(metrics.getJson().get("entity_cache_hits").get("App").intValue(), 1);
+    }
+
+    @Test
+    public void testBackendCallCounts() {
+        Metrics metrics = new Metrics("12345");
+        assertEquals(metrics.getBackendCallCount(Metrics.BACKEND_MYSQL), 0);
+
+        metrics.incrementBackendCallCount(Metrics.BACKEND_MYSQL);
+        metrics.incrementBackendCallCount(Metrics.BACKEND_MYSQL);
+        metrics.incrementBackendCallCount(Metrics.BACKEND_REDIS);
+
+        assertEquals(metrics.getBackendCallCount(Metrics.BACKEND_MYSQL), 2);
+        assertEquals(metrics.getBackendCallCount(Metrics.BACKEND_REDIS), 1);
+        assertEquals(metrics.getBackendCallCount(Metrics.BACKEND_DYNAMODB), 0);
+        assertEquals(metrics.getJson().get("backend_calls").get("mysql").intValue(), 2);
+    }
+
+    @Test
+    public void testCallBudgetExceeded() {
+        Metrics metrics = new Metrics("12345");
+        metrics.setCallBudgetExceeded(ImmutableSet.of());
+        assertFalse(metrics.getJson().has("call_budget_exceeded"));
+
+        metrics.setCallBudgetExceeded(ImmutableSet.of(Metrics.BACKEND_MYSQL));
+        assertEquals(metrics.getJson().get("call_budget_exceeded").get(0).textValue(), "mysql");
+    }
+
     @Test
     public void testElapsedWithNoStart() {
         // This should never happen, but if it does, don't throw.
@@ -0,0 +1,95 @@
+package org.sagebionetworks.bridge.models.schedules2.timelines;
+
+import static org.sagebionetworks.bridge.TestConstants.CREATED_ON;
+import static org.sagebionetworks.bridge.TestConstants.MODIFIED_ON;
+import static org.sagebionetworks.bridge.TestConstants.SCHEDULE_GUID;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableList;
+
+import org.testng.annotations.Test;
+
+public class ScheduleMetadataSnapshotTest {
+
+    @Test
+    public void create() {
+        TimelineMetadata meta1 = createMetadata("instanceGuid1", 0, 2);
+        meta1.setStudyBurstId("burst");
+        meta1.setStudyBurstNum(1);
+        TimelineMetadata meta2 = createMetadata("instanceGuid2", 7, 9);
+        meta2.setTimeWindowPersistent(true);
+
+        ScheduleMetadataSnapshot snapshot = ScheduleMetadataSnapshot.create(SCHEDULE_GUID, MODIFIED_ON,
+                ImmutableList.of(meta1, meta2));
+
+        assertEquals(snapshot.getScheduleGuid(), SCHEDULE_GUID);
+        assertEquals(snapshot.getScheduleModifiedOn(), MODIFIED_ON);
+        assertEquals(snapshot.size(), 2);
+
+        assertEquals(snapshot.getSessionInstanceGuid(0), "instanceGuid1");
+        assertEquals(snapshot.getSessionGuid(0), "sessionGuid");
+        assertEquals(snapshot.getSessionStartEventId(0), "enrollment");
+        assertEquals(snapshot.getSessionName(0), "Session");
+        assertEquals(snapshot.getSessionSymbol(0), "*");
+        assertEquals(snapshot.getTimeWindowGuid(0), "windowGuid");
+        assertEquals(snapshot.getSessionInstanceStartDay(0), 0);
+        assertEquals(snapshot.getSessionInstanceEndDay(0), 2);
+        assertEquals(snapshot.getStudyBurstId(0), "burst");
+        assertEquals(snapshot.getStudyBurstNum(0), Integer.valueOf(1));
+        assertFalse(snapshot.isTimeWindowPersistent(0));
+
+        assertEquals(snapshot.getSessionInstanceGuid(1), "instanceGuid2");
+        assertEquals(snapshot.getSessionInstanceStartDay(1), 7);
+        assertEquals(snapshot.getSessionInstanceEndDay(1), 9);
+        assertNull(snapshot.getStudyBurstId(1));
+        assertNull(snapshot.getStudyBurstNum(1));
+        assertTrue(snapshot.isTimeWindowPersistent(1));
+    }
+
+    @Test
+    public void repeatedStringsAreShared() {
+        TimelineMetadata meta1 = createMetadata("instanceGuid1", 0, 2);
+        TimelineMetadata meta2 = createMetadata("instanceGuid2", 7, 9);
+        // Equal, but not the same instance.
+        meta2.setSessionGuid(new String("sessionGuid"));
+
+        ScheduleMetadataSnapshot snapshot = ScheduleMetadataSnapshot.create(SCHEDULE_GUID, MODIFIED_ON,
+                ImmutableList.of(meta1, meta2));
+
+        assertSame(snapshot.getSessionGuid(0), snapshot.getSessionGuid(1));
+    }
+
+    @Test
+    public void isSnapshotOf() {
+        ScheduleMetadataSnapshot snapshot = ScheduleMetadataSnapshot.create(SCHEDULE_GUID, MODIFIED_ON,
+                ImmutableList.of());
+
+        assertTrue(snapshot.isSnapshotOf(SCHEDULE_GUID, MODIFIED_ON));
+        assertFalse(snapshot.isSnapshotOf(SCHEDULE_GUID, CREATED_ON));
+        assertFalse(snapshot.isSnapshotOf(SCHEDULE_GUID, null));
+        assertFalse(snapshot.isSnapshotOf("otherGuid", MODIFIED_ON));
+    }
+
+    @Test
+    public void empty() {
+        assertEquals(ScheduleMetadataSnapshot.EMPTY.size(), 0);
+        assertFalse(ScheduleMetadataSnapshot.EMPTY.isSnapshotOf(SCHEDULE_GUID, MODIFIED_ON));
+    }
+
+    private static TimelineMetadata createMetadata(String instanceGuid, int startDay, int endDay) {
+        TimelineMetadata meta = new TimelineMetadata();
+        meta.setSessionInstanceGuid(instanceGuid);
+        meta.setSessionGuid("sessionGuid");
+        meta.setSessionStartEventId("enrollment");
+        meta.setSessionName("Session");
+        meta.setSessionSymbol("*");
+        meta.setTimeWindowGuid("windowGuid");
+        meta.setSessionInstanceStartDay(startDay);
+        meta.setSessionInstanceEndDay(endDay);
+        return meta;
+    }
+}
@@ -0,0 +1,120 @@
+package org.sagebionetworks.bridge.services;
+
+import static org.sagebionetworks.bridge.models.accounts.AccountSecretType.REAUTH;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.security.InvalidKeyException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import org.sagebionetworks.bridge.dao.AccountSecretDao;
+import org.sagebionetworks.bridge.exceptions.ServiceUnavailableException;
+import org.sagebionetworks.bridge.models.accounts.AccountSecret;
+import org.sagebionetworks.bridge.models.accounts.PasswordAlgorithm;
+
+public class AccountSecretServiceTest extends Mockito {
+    private static final String ACCOUNT_ID = "id";
+    private static final String TOKEN = "token";
+    private static final int ROTATIONS = 4;
+    
+    @Mock
+    AccountSecretDao mockDao;
+    
+    @Spy
+    PasswordVerificationService passwordVerificationService = new PasswordVerificationService();
+    
+    @InjectMocks
+    AccountSecretService service;
+    
+    @BeforeMethod
+    public void beforeMethod() {
+        MockitoAnnotations.initMocks(this);
+    }
+    
+    @Test
+    public void createSecret() {
+        service.createSecret(REAUTH, ACCOUNT_ID, TOKEN);
+        
+        verify(mockDao).createSecret(REAUTH, ACCOUNT_ID, TOKEN);
+    }
+    
+    @Test
+    public void verifySecret() throws Exception {
+        List<AccountSecret> results = makeResults(TOKEN);
+        
+        Optional<AccountSecret> secret = service.verifySecret(REAUTH, ACCOUNT_ID, TOKEN, ROTATIONS);
+        assertSame(secret.get(), results.get(0));
+        
+        verify(mockDao).getSecrets(REAUTH, ACCOUNT_ID, ROTATIONS);
+        verify(passwordVerificationService).checkHash(PasswordAlgorithm.DEFAULT_PASSWORD_ALGORITHM,
+                results.get(0).getHash(), TOKEN);
+    }
+    
+    @Test
+    public void verifySecretSucceedsAfterRotation() throws Exception {
+        makeResults("ABC", TOKEN, "DEF");
+        
+        assertTrue(service.verifySecret(REAUTH, ACCOUNT_ID, TOKEN, ROTATIONS).isPresent());
+    }
+    
+    @Test
+    public void verifySecretFailsOnEmpty() throws Exception {
+        makeResults();
+        
+        assertFalse(service.verifySecret(REAUTH, ACCOUNT_ID, TOKEN, ROTATIONS).isPresent());
+    }
+    
+    @Test
+    public void verifySecretFailsWhenNoMatch() throws Exception {
+        makeResults("ABC", "DEF");
+        
+        assertFalse(service.verifySecret(REAUTH, ACCOUNT_ID, TOKEN, ROTATIONS).isPresent());
+    }
+    
+    @Test
+    public void verifySecretExceptionIsSuppressed() throws Exception {
+        makeResults(TOKEN);
+        doThrow(new InvalidKeyException()).when(passwordVerificationService).checkHash(any(), any(), any());
+        
+        assertFalse(service.verifySecret(REAUTH, ACCOUNT_ID, TOKEN, ROTATIONS).isPresent());
+    }
+    
+    @Test(expectedExceptions = ServiceUnavailableException.class)
+    public void verifySecretWhenTooBusy() throws Exception {
+        makeResults(TOKEN);
+        doThrow(new ServiceUnavailableException("Too busy", 5)).when(passwordVerificationService)
+                .checkHash(any(), any(), any());
+        
+        service.verifySecret(REAUTH, ACCOUNT_ID, TOKEN, ROTATIONS);
+    }
+    
+    @Test
+    public void removeSecrets() {
+        service.removeSecrets(REAUTH, ACCOUNT_ID);
+        
+        verify(mockDao).removeSecrets(REAUTH, ACCOUNT_ID);
+    }
+    
+    private List<AccountSecret> makeResults(String... plaintexts) throws Exception {
+        List<AccountSecret> results = new ArrayList<>();
+        for (String plaintext : plaintexts) {
+            AccountSecret secret = AccountSecret.create();
+            secret.setAlgorithm(PasswordAlgorithm.DEFAULT_PASSWORD_ALGORITHM);
+            secret.setHash(PasswordAlgorithm.DEFAULT_PASSWORD_ALGORITHM.generateHash(plaintext));
+            results.add(secret);
+        }
+        doReturn(results).when(mockDao).getSecrets(REAUTH, ACCOUNT_ID, ROTATIONS);
+        return results;
+    }
+}
@@ -25,12 +25,16 @@ import static org.sagebionetworks.bridge.TestConstants.TEST_NOTE;
 import static org.sagebionetworks.bridge.TestConstants.TEST_CLIENT_TIME_ZONE;
 import static org.sagebionetworks.bridge.dao.AccountDao.MIGRATION_VERSION;
 import static org.sagebionetworks.bridge.models.AccountSummarySearch.EMPTY_SEARCH;
+import static org.sagebionetworks.bridge.models.accounts.AccountField.CLIENT_TIME_ZONE;
+import static org.sagebionetworks.bridge.models.accounts.AccountField.NOTIFY_BY_EMAIL;
+import static org.sagebionetworks.bridge.models.accounts.AccountField.SHARING_SCOPE;
 import static org.sagebionetworks.bridge.models.accounts.AccountStatus.UNVERIFIED;
 import static org.sagebionetworks.bridge.models.accounts.PasswordAlgorithm.DEFAULT_PASSWORD_ALGORITHM;
 import static org.sagebionetworks.bridge.models.accounts.PasswordAlgorithm.STORMPATH_HMAC_SHA_256;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNotSame;
 import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
@@ -48,6 +52,7 @@ import org.joda.time.DateTimeUtils;
 import org.joda.time.DateTimeZone;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
@@ -67,7 +72,6 @@ import org.sagebionetworks.bridge.exceptions.EntityNotFoundException;
 import org.sagebionetworks.bridge.exceptions.UnauthorizedException;
 import org.sagebionetworks.bridge.models.AccountSummarySearch;
 import org.sagebionetworks.bridge.models.PagedResourceList;
-import org.sagebionetworks.bridge.models.ReportTypeResourceList;
 import org.sagebionetworks.bridge.models.accounts.Account;
 import org.sagebionetworks.bridge.models.accounts.AccountId;
 import org.sagebionetworks.bridge.models.accounts.AccountSecret;
@@ -76,8 +80,6 @@ import org.sagebionetworks.bridge.models.accounts.ExternalIdentifierInfo;
 import org.sagebionetworks.bridge.models.accounts.Phone;
 import org.sagebionetworks.bridge.models.activities.StudyActivityEvent;
 import org.sagebionetworks.bridge.models.apps.App;
-import org.sagebionetworks.bridge.models.reports.ReportIndex;
-import org.sagebionetworks.bridge.models.reports.ReportType;
 import org.sagebionetworks.bridge.models.studies.Alert;
 import org.sagebionetworks.bridge.models.studies.Enrollment;
 import org.sagebionetworks.bridge.models.studies.Alert.AlertCategory;
@@ -90,8 +92,6 @@ public class AccountServiceTest extends Mockito {
     private static final String OTHER_EMAIL = "other-email@example.com";
     private static final String OTHER_USER_ID = "other-user-id";
     private static final String OTHER_CLIENT_TIME_ZONE = "Africa/Sao_Tome";
-    private static final String REPORT_ID_1 = "report1";
-    private static final String REPORT_ID_2 = "report2";
     private static final String STUDY_A = "studyA";
     private static final String STUDY_B = "studyB";
     private static final Set<Enrollment> ACCOUNT_ENROLLMENTS = ImmutableSet
@@ -112,9 +112,6 @@ public class AccountServiceTest extends Mockito {
     @Mock
     ParticipantFileService mockParticipantFileService;
 
-    @Mock
-    ReportService mockReportService;
-
     @Mock
     StudyActivityEventService mockStudyActivityEventService;
 
@@ -136,20 +133,11 @@ public class AccountServiceTest extends Mockito {
     @Mock
     RequestInfoService mockRequestInfoService;
 
-    @Mock
-    HealthDataService mockHealthDataService;
-    
-    @Mock
-    HealthDataEx3Service mockHealthDataEx3Service;
-    
     @Mock
     NotificationsService mockNotificationsService;
     
     @Mock
-    UploadService mockUploadService;
-    
-    @Mock
-    ScheduledActivityService mockScheduledActivityService;
+    ParticipantDataDeletionService mockParticipantDataDeletionService;
     
     @Mock
     ActivityEventService mockActivityEventService;
@@ -477,6 +465,49 @@ public class AccountServiceTest extends Mockito {
         service.editAccount(ACCOUNT_ID, mockConsumer);
     }
     
+    @Test
+    public void editAccountField() throws Exception {
+        Account account = mockGetAccountById(ACCOUNT_ID, false);
+        
+        service.editAccountField(ACCOUNT_ID, CLIENT_TIME_ZONE,
+                (acct) -> acct.setClientTimeZone("America/Los_Angeles"));
+        
+        assertEquals(account.getClientTimeZone(), "America/Los_Angeles");
+        assertEquals(account.getModifiedOn(), MOCK_DATETIME);
+        verify(mockAccountDao).updateAccountField(account, CLIENT_TIME_ZONE);
+        verify(mockAccountDao, never()).updateAccount(any());
+        verify(mockCacheProvider).setObject(CacheKey.etag(DateTimeZone.class, TEST_USER_ID), MOCK_DATETIME);
+        verify(mockParticipantVersionService).createParticipantVersionFromAccount(same(account));
+    }
+    
+    @Test
+    public void editAccountField_notInParticipantVersion() throws Exception {
+        Account account = mockGetAccountById(ACCOUNT_ID, false);
+        
+        service.editAccountField(ACCOUNT_ID, NOTIFY_BY_EMAIL, (acct) -> acct.setNotifyByEmail(false));
+        
+        assertFalse(account.getNotifyByEmail());
+        verify(mockAccountDao).updateAccountField(account, NOTIFY_BY_EMAIL);
+        verify(mockCacheProvider, never()).setObject(any(), any());
+        verify(mockParticipantVersionService, never()).createParticipantVersionFromAccount(any());
+    }
+    
+    @Test(expectedExceptions = EntityNotFoundException.class)
+    public void editAccountFieldWhenAccountNotFound() throws Exception {
+        AccountId accountId = AccountId.forHealthCode(TEST_APP_ID, "bad-health-code");
+        service.editAccountField(accountId, SHARING_SCOPE, mockConsumer);
+    }
+    
+    @Test(expectedExceptions = UnauthorizedException.class)
+    public void editAccountFieldFailsForDevelopersOperatingOnProdAccounts() throws Exception {
+        RequestContext.set(new RequestContext.Builder()
+                .withCallerUserId("adminId")
+                .withCallerRoles(ImmutableSet.of(DEVELOPER)).build());
+        mockGetAccountById(ACCOUNT_ID, false);
+
+        service.editAccountField(ACCOUNT_ID, SHARING_SCOPE, mockConsumer);
+    }
+    
     @Test
     public void getAccount() throws Exception {
         Account account = mockGetAccountById(ACCOUNT_ID, false);
@@ -486,6 +517,57 @@ public class AccountServiceTest extends Mockito {
         verify(mockAccountDao).getAccount(ACCOUNT_ID);
     }
 
+    @Test
+    public void getAccountIsMemoizedForRequest() throws Exception {
+        Account account = mockGetAccountById(ACCOUNT_ID, false);
+
+        assertSame(service.getAccount(ACCOUNT_ID).get(), account);
+        Account memoized = service.getAccount(ACCOUNT_ID).get();
+        assertNotSame(memoized, account);
+        assertEquals(memoized.getId(), TEST_USER_ID);
+        assertEquals(memoized.getEmail(), EMAIL);
+        assertEquals(memoized.getHealthCode(), HEALTH_CODE);
+        verify(mockAccountDao, times(1)).getAccount(ACCOUNT_ID);
+    }
+
+    @Test
+    public void getAccountChangesDoNotChangeMemoizedAccount() throws Exception {
+        Account account = mockGetAccountById(ACCOUNT_ID, false);
+        account.setEnrollments(Sets.newHashSet(ACCOUNT_ENROLLMENTS));
+
+        Account first = service.getAccount(ACCOUNT_ID).get();
+        first.setEmail("changed@example.com");
+        first.getEnrollments().clear();
+        Account second = service.getAccount(ACCOUNT_ID).get();
+        second.getDataGroups().add("changed");
+        Account third = service.getAccount(ACCOUNT_ID).get();
+
+        assertEquals(third.getEmail(), EMAIL);
+        assertEquals(third.getEnrollments(), ACCOUNT_ENROLLMENTS);
+        assertTrue(third.getDataGroups().isEmpty());
+        verify(mockAccountDao, times(1)).getAccount(ACCOUNT_ID);
+    }
+
+    @Test
+    public void getAccountFilteredEnrollmentsAreNotMemoized() throws Exception {
+        Account persistedAccount = mockGetAccountById(ACCOUNT_ID, false);
+        Set<Enrollment> enrollments = ImmutableSet.of(Enrollment.create(TEST_APP_ID, STUDY_A, TEST_USER_ID),
+                Enrollment.create(TEST_APP_ID, STUDY_B, TEST_USER_ID));
+        persistedAccount.setEnrollments(Sets.newHashSet(enrollments));
+        RequestContext.set(new RequestContext.Builder()
+                .withCallerRoles(ImmutableSet.of(STUDY_COORDINATOR))
+                .withOrgSponsoredStudies(ImmutableSet.of(STUDY_A)).build());
+
+        // Both lookups are filtered to the caller's studies...
+        assertEquals(service.getAccount(ACCOUNT_ID).get().getEnrollments().size(), 1);
+        assertEquals(service.getAccount(ACCOUNT_ID).get().getEnrollments().size(), 1);
+
+        // ...but the memoized account isn't.
+        Account memoized = RequestContext.get().getEntityCache().get(Account.class,
+                ACCOUNT_ID.getUnguardedAccountId());
+        assertEquals(memoized.getEnrollments(), enrollments);
+    }
+
     @Test
     public void getPagedAccountSummaries() {
         when(mockAccountDao.getPagedAccountSummaries(TEST_APP_ID, EMPTY_SEARCH)).thenReturn(mockAccountSummaries);
@@ -495,6 +577,60 @@ public class AccountServiceTest extends Mockito {
         verify(mockAccountDao).getPagedAccountSummaries(TEST_APP_ID, EMPTY_SEARCH);
     }
 
+    @Test
+    public void getPagedAccountSummariesFromReplica() {
+        when(mockAccountDao.getPagedAccountSummariesFromReplica(TEST_APP_ID, EMPTY_SEARCH))
+                .thenReturn(mockAccountSummaries);
+
+        PagedResourceList<AccountSummary> returnVal = service.getPagedAccountSummariesFromReplica(TEST_APP_ID,
+                EMPTY_SEARCH);
+        assertEquals(returnVal, mockAccountSummaries);
+        verify(mockAccountDao, never()).getPagedAccountSummaries(any(), any());
+    }
+
+    @Test
+    public void isAccountLimitMetOrExceeded_NoLimit() {
+        App app = App.create();
+        app.setIdentifier(TEST_APP_ID);
+        app.setAccountLimit(0);
+
+        assertFalse(service.isAccountLimitMetOrExceeded(app));
+        verify(mockAccountDao, never()).getAccountCount(any());
+    }
+
+    @Test
+    public void isAccountLimitMetOrExceeded_UnderLimit() {
+        App app = App.create();
+        app.setIdentifier(TEST_APP_ID);
+        app.setAccountLimit(10);
+        when(mockAccountDao.getAccountCount(TEST_APP_ID)).thenReturn(9);
+
+        assertFalse(service.isAccountLimitMetOrExceeded(app));
+        verify(mockAccountDao, never()).reconcileAccountCount(any());
+    }
+
+    @Test
+    public void isAccountLimitMetOrExceeded_LimitMet() {
+        App app = App.create();
+        app.setIdentifier(TEST_APP_ID);
+        app.setAccountLimit(10);
+        when(mockAccountDao.getAccountCount(TEST_APP_ID)).thenReturn(10);
+        when(mockAccountDao.reconcileAccountCount(TEST_APP_ID)).thenReturn(10);
+
+        assertTrue(service.isAccountLimitMetOrExceeded(app));
+    }
+
+    @Test
+    public void isAccountLimitMetOrExceeded_CountHasDrifted() {
+        App app = App.create();
+        app.setIdentifier(TEST_APP_ID);
+        app.setAccountLimit(10);
+        when(mockAccountDao.getAccountCount(TEST_APP_ID)).thenReturn(10);
+        when(mockAccountDao.reconcileAccountCount(TEST_APP_ID)).thenReturn(8);
+
+        assertFalse(service.isAccountLimitMetOrExceeded(app));
+    }
+
     @Test
     public void getAccountHealthCode() throws Exception {
         Account account = mockGetAccountById(ACCOUNT_ID, false);
@@ -1000,13 +1136,6 @@ public class AccountServiceTest extends Mockito {
         
         when(mockAccountDao.getAccount(accountId)).thenReturn(Optional.of(account));
 
-        ReportIndex reportIndex1 = ReportIndex.create();
-        reportIndex1.setIdentifier(REPORT_ID_1);
-        ReportIndex reportIndex2 = ReportIndex.create();
-        reportIndex2.setIdentifier(REPORT_ID_2);
-        doReturn(new ReportTypeResourceList<>(ImmutableList.of(reportIndex1, reportIndex2))).when(mockReportService)
-                .getReportIndices(TEST_APP_ID, ReportType.PARTICIPANT);
-
         // Delete account.
         service.deleteAccount(accountId);
         
@@ -1015,21 +1144,16 @@ public class AccountServiceTest extends Mockito {
         // Verify a lot of stuff is deleted or removed
         verify(mockCacheProvider).removeSessionByUserId(TEST_USER_ID);
         verify(mockRequestInfoService).removeRequestInfo(TEST_USER_ID);
-        verify(mockHealthDataService).deleteRecordsForHealthCode(HEALTH_CODE);
-        verify(mockHealthDataEx3Service).deleteRecordsForHealthCode(HEALTH_CODE);
         verify(mockNotificationsService).deleteAllRegistrations(TEST_APP_ID, HEALTH_CODE);
         verify(mockParticipantDataService).deleteAllParticipantData(TEST_USER_ID);
         verify(mockParticipantFileService).deleteAllFilesForParticipant(TEST_USER_ID);
-        verify(mockUploadService).deleteUploadsForHealthCode(HEALTH_CODE);
-        verify(mockScheduledActivityService).deleteActivitiesForUser(HEALTH_CODE);
-        verify(mockActivityEventService, atLeastOnce()).deleteActivityEvents(TEST_APP_ID, HEALTH_CODE);
-        verify(mockAccountDao).deleteAccount(TEST_USER_ID);
         verify(mockCacheProvider).removeObject(CacheKey.etag(DateTimeZone.class, TEST_USER_ID));
         verify(mockCacheProvider).removeObject(CacheKey.etag(StudyActivityEvent.class, TEST_USER_ID));
 
-        verify(mockReportService).getReportIndices(TEST_APP_ID, ReportType.PARTICIPANT);
-        verify(mockReportService).deleteParticipantReport(TEST_APP_ID, TEST_USER_ID, REPORT_ID_1, HEALTH_CODE);
-        verify(mockReportService).deleteParticipantReport(TEST_APP_ID, TEST_USER_ID, REPORT_ID_2, HEALTH_CODE);
+        // The DynamoDB data is deleted in the background, which is recorded before the account is deleted.
+        InOrder inOrder = inOrder(mockParticipantDataDeletionService, mockAccountDao);
+        inOrder.verify(mockParticipantDataDeletionService).startDeletion(TEST_APP_ID, TEST_USER_ID, HEALTH_CODE);
+        inOrder.verify(mockAccountDao).deleteAccount(TEST_USER_ID);
     }
     
     @Test
@@ -1039,12 +1163,8 @@ public class AccountServiceTest extends Mockito {
         // (it very quietly does nothing)
         verify(mockCacheProvider, never()).removeSessionByUserId(any());
         verify(mockRequestInfoService, never()).removeRequestInfo(any());
-        verify(mockHealthDataService, never()).deleteRecordsForHealthCode(any());
-        verify(mockHealthDataEx3Service, never()).deleteRecordsForHealthCode(any());
         verify(mockNotificationsService, never()).deleteAllRegistrations(any(), any());
-        verify(mockUploadService, never()).deleteUploadsForHealthCode(any());
-        verify(mockScheduledActivityService, never()).deleteActivitiesForUser(any());
-        verify(mockActivityEventService, never()).deleteActivityEvents(any(), any());
+        verify(mockParticipantDataDeletionService, never()).startDeletion(any(), any(), any());
         verify(mockAccountDao, never()).deleteAccount(any());
         verify(mockCacheProvider, never()).removeObject(any());
     }
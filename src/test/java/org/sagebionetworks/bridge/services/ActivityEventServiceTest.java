@@ -296,6 +296,16 @@ public class ActivityEventServiceTest {
         verifyNoMoreInteractions(activityEventDao);
     }
     
+    @Test
+    public void deleteActivityEventsForDeletedAccount() {
+        activityEventService.deleteActivityEventsForDeletedAccount(HEALTH_CODE);
+
+        verify(activityEventDao).deleteActivityEvents(HEALTH_CODE);
+        verifyNoMoreInteractions(activityEventDao);
+        // The account is gone, so it isn't looked up to update its etag.
+        verify(mockCacheProvider, never()).setObject(any(), any());
+    }
+
     @Test
     public void getActivityEventMap_doesNotCallDaoOnError() {
         try {
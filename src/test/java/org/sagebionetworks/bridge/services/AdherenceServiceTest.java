@@ -117,6 +117,7 @@ import org.sagebionetworks.bridge.models.schedules2.adherence.study.StudyAdheren
 import org.sagebionetworks.bridge.models.schedules2.adherence.weekly.NextActivity;
 import org.sagebionetworks.bridge.models.schedules2.adherence.weekly.WeeklyAdherenceReport;
 import org.sagebionetworks.bridge.models.schedules2.timelines.MetadataContainer;
+import org.sagebionetworks.bridge.models.schedules2.timelines.ScheduleMetadataSnapshot;
 import org.sagebionetworks.bridge.models.schedules2.timelines.Scheduler;
 import org.sagebionetworks.bridge.models.schedules2.timelines.Timeline;
 import org.sagebionetworks.bridge.models.schedules2.timelines.TimelineMetadata;
@@ -1068,7 +1069,8 @@ public class AdherenceServiceTest extends Mockito {
         when(mockScheduleService.getScheduleForStudy(TEST_APP_ID, TEST_STUDY_ID)).thenReturn(Optional.of(schedule));
         
         List<TimelineMetadata> metadata = Scheduler.INSTANCE.calculateTimeline(schedule).getMetadata();
-        when(mockScheduleService.getScheduleMetadata(SCHEDULE_GUID)).thenReturn(metadata);
+        when(mockScheduleService.getScheduleMetadataSnapshot(schedule))
+            .thenReturn(ScheduleMetadataSnapshot.create(SCHEDULE_GUID, null, metadata));
         
         ResourceList<StudyActivityEvent> events = new ResourceList<>(ImmutableList.of(), true);
         when(mockStudyActivityEventService.getRecentStudyActivityEvents(
@@ -1119,8 +1121,9 @@ public class AdherenceServiceTest extends Mockito {
         when(mockRecordDao.getAdherenceRecords(any())).thenReturn(page2);
 
         Schedule2 schedule = createValidSchedule();
-        when(mockScheduleService.getScheduleMetadata(SCHEDULE_GUID))
-            .thenReturn(Scheduler.INSTANCE.calculateTimeline(schedule).getMetadata());
+        when(mockScheduleService.getScheduleMetadataSnapshot(schedule))
+            .thenReturn(ScheduleMetadataSnapshot.create(SCHEDULE_GUID, null,
+                Scheduler.INSTANCE.calculateTimeline(schedule).getMetadata()));
         when(mockScheduleService.getScheduleForStudy(TEST_APP_ID, TEST_STUDY_ID)).thenReturn(Optional.of(schedule));
         
         WeeklyAdherenceReport retValue = service.getWeeklyAdherenceReport(
@@ -1161,8 +1164,9 @@ public class AdherenceServiceTest extends Mockito {
         when(mockStudyService.getZoneId(TEST_APP_ID, TEST_STUDY_ID, null)).thenReturn(TEST_CLIENT_TIME_ZONE);
         
         Schedule2 schedule = createValidSchedule();
-        when(mockScheduleService.getScheduleMetadata(SCHEDULE_GUID))
-            .thenReturn(Scheduler.INSTANCE.calculateTimeline(schedule).getMetadata());
+        when(mockScheduleService.getScheduleMetadataSnapshot(schedule))
+            .thenReturn(ScheduleMetadataSnapshot.create(SCHEDULE_GUID, null,
+                Scheduler.INSTANCE.calculateTimeline(schedule).getMetadata()));
         when(mockScheduleService.getScheduleForStudy(TEST_APP_ID, TEST_STUDY_ID)).thenReturn(Optional.of(schedule));
         
         List<StudyActivityEvent> events = ImmutableList.of();
@@ -1240,7 +1244,8 @@ public class AdherenceServiceTest extends Mockito {
         // Add a schedule so we can see "UNSTARTED" as the state of this report
         Schedule2 schedule = createValidSchedule();
         Timeline timeline = Scheduler.INSTANCE.calculateTimeline(schedule);
-        when(mockScheduleService.getScheduleMetadata(SCHEDULE_GUID)).thenReturn(timeline.getMetadata());
+        when(mockScheduleService.getScheduleMetadataSnapshot(schedule))
+            .thenReturn(ScheduleMetadataSnapshot.create(SCHEDULE_GUID, null, timeline.getMetadata()));
         when(mockScheduleService.getScheduleForStudy(TEST_APP_ID, TEST_STUDY_ID)).thenReturn(Optional.of(schedule));
         
         WeeklyAdherenceReport retValue = service.getWeeklyAdherenceReport(
@@ -1277,8 +1282,8 @@ public class AdherenceServiceTest extends Mockito {
         }
         Timeline timeline = Scheduler.INSTANCE.calculateTimeline(schedule);
         
-        when(mockScheduleService.getScheduleMetadata(SCHEDULE_GUID))
-            .thenReturn(timeline.getMetadata());
+        when(mockScheduleService.getScheduleMetadataSnapshot(schedule))
+            .thenReturn(ScheduleMetadataSnapshot.create(SCHEDULE_GUID, null, timeline.getMetadata()));
         when(mockScheduleService.getScheduleForStudy(TEST_APP_ID, TEST_STUDY_ID)).thenReturn(Optional.of(schedule));
         
         RequestInfo info = new RequestInfo.Builder().withSignedInOn(CREATED_ON).build();
@@ -1476,8 +1481,9 @@ public class AdherenceServiceTest extends Mockito {
         when(mockStudyService.getStudy(TEST_APP_ID, TEST_STUDY_ID, true)).thenReturn(study);
         when(mockStudyService.getZoneId(TEST_APP_ID, TEST_STUDY_ID, null)).thenReturn("America/Chicago");
         
-        when(mockScheduleService.getScheduleMetadata(SCHEDULE_GUID))
-            .thenReturn(StudyAdherenceReportGeneratorTest.createTimelineMetadata());        
+        when(mockScheduleService.getScheduleMetadataSnapshot(any()))
+            .thenReturn(ScheduleMetadataSnapshot.create(SCHEDULE_GUID, null,
+                StudyAdherenceReportGeneratorTest.createTimelineMetadata()));        
         
         RequestInfo info = new RequestInfo.Builder().withSignedInOn(CREATED_ON).build();
         when(mockRequestInfoService.getRequestInfo(TEST_USER_ID)).thenReturn(info);
@@ -51,11 +51,9 @@ import org.sagebionetworks.bridge.exceptions.BadRequestException;
 import org.sagebionetworks.bridge.exceptions.EntityNotFoundException;
 import org.sagebionetworks.bridge.exceptions.InvalidEntityException;
 import org.sagebionetworks.bridge.exceptions.LimitExceededException;
-import org.sagebionetworks.bridge.models.PagedResourceList;
 import org.sagebionetworks.bridge.models.accounts.Account;
 import org.sagebionetworks.bridge.models.accounts.AccountId;
 import org.sagebionetworks.bridge.models.accounts.AccountStatus;
-import org.sagebionetworks.bridge.models.accounts.AccountSummary;
 import org.sagebionetworks.bridge.models.accounts.Phone;
 import org.sagebionetworks.bridge.models.apps.App;
 import org.sagebionetworks.bridge.models.apps.PasswordPolicy;
@@ -80,6 +78,9 @@ public class AdminAccountServiceTest extends Mockito {
     @Mock
     AccountDao mockAccountDao;
     
+    @Mock
+    AccountService mockAccountService;
+    
     @Mock
     CacheProvider mockCacheProvider;
     
@@ -373,8 +374,7 @@ public class AdminAccountServiceTest extends Mockito {
         app.setAccountLimit(10);
         when(mockAppService.getApp(TEST_APP_ID)).thenReturn(app);
         
-        PagedResourceList<AccountSummary> page = new PagedResourceList<>(ImmutableList.of(), 10);
-        when(mockAccountDao.getPagedAccountSummaries(eq(TEST_APP_ID), any())).thenReturn(page);
+        when(mockAccountService.isAccountLimitMetOrExceeded(app)).thenReturn(true);
 
         Account account = Account.create();
         
@@ -388,14 +388,14 @@ public class AdminAccountServiceTest extends Mockito {
         app.setAccountLimit(20);
         when(mockAppService.getApp(TEST_APP_ID)).thenReturn(app);
         
-        PagedResourceList<AccountSummary> page = new PagedResourceList<>(ImmutableList.of(), 10);
-        when(mockAccountDao.getPagedAccountSummaries(eq(TEST_APP_ID), any())).thenReturn(page);
+        when(mockAccountService.isAccountLimitMetOrExceeded(app)).thenReturn(false);
 
         Account account = Account.create();
         account.setEmail(EMAIL);
         
         service.createAccount(TEST_APP_ID, account);
         
+        verify(mockAccountService).isAccountLimitMetOrExceeded(app);
         verify(mockAccountDao).createAccount(any());
     }
     
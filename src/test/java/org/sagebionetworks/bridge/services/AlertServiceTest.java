@@ -2,6 +2,8 @@ package org.sagebionetworks.bridge.services;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
@@ -18,12 +20,14 @@ import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
 
+import org.joda.time.DateTime;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.sagebionetworks.bridge.BridgeUtils;
+import org.sagebionetworks.bridge.config.BridgeConfig;
 import org.sagebionetworks.bridge.dao.AlertDao;
 import org.sagebionetworks.bridge.exceptions.EntityNotFoundException;
 import org.sagebionetworks.bridge.exceptions.InvalidEntityException;
@@ -51,9 +55,15 @@ public class AlertServiceTest {
     @Mock
     AccountService accountService;
 
+    @Mock
+    BridgeConfig mockConfig;
+
     @Captor
     ArgumentCaptor<Alert> alertCaptor;
 
+    @Captor
+    ArgumentCaptor<DateTime> dateTimeCaptor;
+
     @InjectMocks
     AlertService alertService;
 
@@ -63,48 +73,113 @@ public class AlertServiceTest {
     public void beforeMethod() {
         MockitoAnnotations.initMocks(this);
 
-        alert = new Alert(null, null, TEST_STUDY_ID, TEST_APP_ID, TEST_USER_ID, null, AlertCategory.NEW_ENROLLMENT,
+        alert = makeAlert(AlertCategory.NEW_ENROLLMENT);
+        when(accountService.getAccount(any())).thenReturn(Optional.of(Account.create()));
+    }
+
+    private static Alert makeAlert(AlertCategory category) {
+        return new Alert(null, null, TEST_STUDY_ID, TEST_APP_ID, TEST_USER_ID, null, category,
                 BridgeObjectMapper.get().nullNode(), false);
     }
 
     @Test
     public void createAlert() {
-        when(accountService.getAccount(any())).thenReturn(Optional.of(Account.create()));
-        when(alertDao.getAlert(TEST_STUDY_ID, TEST_APP_ID, TEST_USER_ID, AlertCategory.NEW_ENROLLMENT)).thenReturn(Optional.empty());
-
         alertService.createAlert(alert);
 
-        verify(alertDao).getAlert(TEST_STUDY_ID, TEST_APP_ID, TEST_USER_ID, AlertCategory.NEW_ENROLLMENT);
-        verify(alertDao).createAlert(alertCaptor.capture());
+        verify(alertDao).upsertAlert(alertCaptor.capture(), isNull());
         assertSame(alertCaptor.getValue(), alert);
         assertNotNull(alert.getId());
         assertNotNull(alert.getCreatedOn());
+        verify(accountService).getAccount(BridgeUtils.parseAccountId(TEST_APP_ID, TEST_USER_ID));
     }
 
     @Test
-    public void createAlert_alertAlreadyExists() {
-        when(accountService.getAccount(any())).thenReturn(Optional.of(Account.create()));
-        Alert existingAlert = new Alert();
-        when(alertDao.getAlert(TEST_STUDY_ID, TEST_APP_ID, TEST_USER_ID, AlertCategory.NEW_ENROLLMENT))
-                .thenReturn(Optional.of(existingAlert));
+    public void createAlert_accountNotAccessible() {
+        when(accountService.getAccount(any())).thenReturn(Optional.empty());
 
         alertService.createAlert(alert);
 
-        verify(alertDao).getAlert(TEST_STUDY_ID, TEST_APP_ID, TEST_USER_ID, AlertCategory.NEW_ENROLLMENT);
-        verify(alertDao).deleteAlert(existingAlert);
-        verify(alertDao).createAlert(alertCaptor.capture());
-        assertSame(alertCaptor.getValue(), alert);
+        verifyZeroInteractions(alertDao);
+    }
+
+    @Test
+    public void createAlert_repeatedAlertsAreAllWritten() {
+        alertService.createAlert(alert);
+        alertService.createAlert(alert);
+
+        verify(alertDao, times(2)).upsertAlert(alert, null);
+    }
+
+    @Test
+    public void createCoalescedAlert() {
+        alertService.createCoalescedAlert(alert);
+
+        verify(alertDao).upsertAlert(eq(alert), dateTimeCaptor.capture());
         assertNotNull(alert.getId());
-        assertNotNull(alert.getCreatedOn());
+        assertEquals(dateTimeCaptor.getValue(),
+                alert.getCreatedOn().minusSeconds(AlertService.DEFAULT_COALESCE_WINDOW_SECONDS));
     }
 
     @Test
-    public void createAlert_accountDoesNotExist() {
-        when(accountService.getAccount(any())).thenReturn(Optional.empty());
+    public void createCoalescedAlert_repeatIsSkipped() {
+        alertService.createCoalescedAlert(alert);
+        alertService.createCoalescedAlert(makeAlert(AlertCategory.NEW_ENROLLMENT));
 
-        alertService.createAlert(alert);
+        verify(alertDao, times(1)).upsertAlert(any(), any());
+        // The repeat doesn't look up the account either.
+        verify(accountService, times(1)).getAccount(any());
+    }
+
+    @Test
+    public void createCoalescedAlert_accountNotAccessible() {
+        when(accountService.getAccount(any())).thenReturn(Optional.empty(), Optional.of(Account.create()));
 
+        alertService.createCoalescedAlert(alert);
         verifyZeroInteractions(alertDao);
+
+        // Nothing was written, so a later alert isn't skipped.
+        alertService.createCoalescedAlert(alert);
+        verify(alertDao).upsertAlert(eq(alert), any());
+    }
+
+    @Test
+    public void createCoalescedAlert_otherCategoryIsWritten() {
+        Alert otherAlert = makeAlert(AlertCategory.TIMELINE_ACCESSED);
+
+        alertService.createCoalescedAlert(alert);
+        alertService.createCoalescedAlert(otherAlert);
+
+        verify(alertDao).upsertAlert(eq(alert), any());
+        verify(alertDao).upsertAlert(eq(otherAlert), any());
+    }
+
+    @Test
+    public void createCoalescedAlert_disabled() {
+        when(mockConfig.getPropertyAsInt(AlertService.CONFIG_KEY_COALESCE_WINDOW_SECONDS)).thenReturn(0);
+        alertService.setConfig(mockConfig);
+
+        alertService.createCoalescedAlert(alert);
+        alertService.createCoalescedAlert(alert);
+
+        verify(alertDao, times(2)).upsertAlert(alert, null);
+    }
+
+    @Test
+    public void createCoalescedAlert_configuredWindow() {
+        when(mockConfig.getPropertyAsInt(AlertService.CONFIG_KEY_COALESCE_WINDOW_SECONDS)).thenReturn(60);
+        alertService.setConfig(mockConfig);
+
+        alertService.createCoalescedAlert(alert);
+
+        verify(alertDao).upsertAlert(eq(alert), dateTimeCaptor.capture());
+        assertEquals(dateTimeCaptor.getValue(), alert.getCreatedOn().minusSeconds(60));
+    }
+
+    @Test(expectedExceptions = NullPointerException.class)
+    public void createCoalescedAlert_nullCategory() {
+        alert.setCategory(null);
+
+        alertService.createCoalescedAlert(alert);
     }
 
     @Test(expectedExceptions = NullPointerException.class)
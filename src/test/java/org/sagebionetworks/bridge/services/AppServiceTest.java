@@ -3,6 +3,7 @@ package org.sagebionetworks.bridge.services;
 import static org.mockito.AdditionalMatchers.not;
 import static org.sagebionetworks.bridge.BridgeConstants.API_APP_ID;
 import static org.sagebionetworks.bridge.BridgeConstants.TEST_USER_GROUP;
+import static org.sagebionetworks.bridge.RequestContext.NULL_INSTANCE;
 import static org.sagebionetworks.bridge.Roles.ADMIN;
 import static org.sagebionetworks.bridge.Roles.DEVELOPER;
 import static org.sagebionetworks.bridge.Roles.SUPERADMIN;
@@ -58,6 +59,7 @@ import org.sagebionetworks.repo.model.util.ModelConstants;
 
 import org.springframework.core.io.ByteArrayResource;
 import org.springframework.core.io.Resource;
+import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
@@ -221,6 +223,7 @@ public class AppServiceTest extends Mockito {
     @BeforeMethod
     public void before() throws Exception {
         MockitoAnnotations.initMocks(this);
+        RequestContext.set(NULL_INSTANCE);
         // Mock config.
         when(mockBridgeConfig.get(AppService.CONFIG_KEY_SUPPORT_EMAIL_PLAIN)).thenReturn(SUPPORT_EMAIL);
         when(mockBridgeConfig.get(AppService.CONFIG_KEY_TEAM_BRIDGE_ADMIN))
@@ -277,12 +280,47 @@ public class AppServiceTest extends Mockito {
         teamMemberInvitation.setTeamId(TEST_TEAM_ID);
     }
 
+    @AfterMethod
+    public void afterMethod() {
+        RequestContext.set(NULL_INSTANCE);
+    }
+
     private App getTestApp() {
         App app = TestUtils.getValidApp(AppServiceTest.class);
         app.setIdentifier(TEST_APP_ID);
         return app;
     }
     
+    @Test
+    public void getAppIsMemoizedForRequest() {
+        RequestContext.set(new RequestContext.Builder().withRequestId("request-id").build());
+
+        assertSame(service.getApp(TEST_APP_ID), app);
+        assertSame(service.getApp(TEST_APP_ID), app);
+
+        verify(mockCacheProvider, times(1)).getApp(TEST_APP_ID);
+        verify(mockAppDao, times(1)).getApp(TEST_APP_ID);
+    }
+
+    @Test
+    public void getAppNotMemoizedOutsideOfRequest() {
+        service.getApp(TEST_APP_ID);
+        service.getApp(TEST_APP_ID);
+
+        verify(mockAppDao, times(2)).getApp(TEST_APP_ID);
+    }
+
+    @Test
+    public void updateAppRemovesMemoizedApp() {
+        RequestContext.set(new RequestContext.Builder().withRequestId("request-id").build());
+        service.getApp(TEST_APP_ID);
+
+        service.updateApp(app, true);
+        service.getApp(TEST_APP_ID);
+
+        verify(mockCacheProvider, times(2)).getApp(TEST_APP_ID);
+    }
+
     @Test(expectedExceptions = EntityNotFoundException.class)
     public void getAppExcludeDeleted() {
         app.setActive(false);
@@ -65,7 +65,6 @@ import org.sagebionetworks.bridge.cache.CacheProvider;
 import org.sagebionetworks.bridge.config.BridgeConfig;
 import org.sagebionetworks.bridge.config.Environment;
 import org.sagebionetworks.bridge.dao.AccountDao;
-import org.sagebionetworks.bridge.dao.AccountSecretDao;
 import org.sagebionetworks.bridge.exceptions.AccountDisabledException;
 import org.sagebionetworks.bridge.exceptions.AuthenticationFailedException;
 import org.sagebionetworks.bridge.exceptions.BadRequestException;
@@ -73,6 +72,7 @@ import org.sagebionetworks.bridge.exceptions.ConsentRequiredException;
 import org.sagebionetworks.bridge.exceptions.EntityAlreadyExistsException;
 import org.sagebionetworks.bridge.exceptions.EntityNotFoundException;
 import org.sagebionetworks.bridge.exceptions.InvalidEntityException;
+import org.sagebionetworks.bridge.exceptions.ServiceUnavailableException;
 import org.sagebionetworks.bridge.exceptions.UnauthorizedException;
 import org.sagebionetworks.bridge.models.ClientInfo;
 import org.sagebionetworks.bridge.models.CriteriaContext;
@@ -189,7 +189,7 @@ public class AuthenticationServiceTest extends Mockito {
     @Mock
     private SponsorService sponsorService;
     @Mock
-    private AccountSecretDao accountSecretDao;
+    private AccountSecretService accountSecretService;
     @Mock 
     private StudyService studyService;
     @Mock
@@ -198,6 +198,8 @@ public class AuthenticationServiceTest extends Mockito {
     private Account mockAccount;
     @Mock
     private ActivityEventService activityEventService;
+    @Spy
+    private PasswordVerificationService passwordVerificationService = new PasswordVerificationService();
     @Captor
     private ArgumentCaptor<UserSession> sessionCaptor;
     @Captor
@@ -273,8 +275,8 @@ public class AuthenticationServiceTest extends Mockito {
         
         UserSession session = service.signIn(app, context, EMAIL_PASSWORD_SIGN_IN);
         
-        InOrder inOrder = Mockito.inOrder(cacheProvider, accountSecretDao);
-        inOrder.verify(accountSecretDao).removeSecrets(REAUTH, TEST_USER_ID);
+        InOrder inOrder = Mockito.inOrder(cacheProvider, accountSecretService);
+        inOrder.verify(accountSecretService).removeSecrets(REAUTH, TEST_USER_ID);
         inOrder.verify(cacheProvider).removeSessionByUserId(TEST_USER_ID);
         inOrder.verify(cacheProvider).setUserSession(session);
         
@@ -296,7 +298,7 @@ public class AuthenticationServiceTest extends Mockito {
         assertEquals(updatedContext.getUserStudyIds(), TestConstants.USER_STUDY_IDS);
         assertEquals(updatedContext.getUserId(), TEST_USER_ID);
         
-        verify(accountSecretDao).createSecret(AccountSecretType.REAUTH, TEST_USER_ID, REAUTH_TOKEN);
+        verify(accountSecretService).createSecret(AccountSecretType.REAUTH, TEST_USER_ID, REAUTH_TOKEN);
     }
     
     @Test
@@ -313,7 +315,7 @@ public class AuthenticationServiceTest extends Mockito {
         
         // Do not change anything about the session, don't rotate the reauth keys, etc.
         verifyNoMoreInteractions(cacheProvider);
-        verifyNoMoreInteractions(accountSecretDao);
+        verifyNoMoreInteractions(accountSecretService);
         verifyNoMoreInteractions(accountService);
     }
     
@@ -356,8 +358,8 @@ public class AuthenticationServiceTest extends Mockito {
         } catch(ConsentRequiredException e) {
             session = e.getUserSession();
         }
-        InOrder inOrder = Mockito.inOrder(cacheProvider, accountSecretDao);
-        inOrder.verify(accountSecretDao).removeSecrets(REAUTH, TEST_USER_ID);
+        InOrder inOrder = Mockito.inOrder(cacheProvider, accountSecretService);
+        inOrder.verify(accountSecretService).removeSecrets(REAUTH, TEST_USER_ID);
         inOrder.verify(cacheProvider).removeSessionByUserId(TEST_USER_ID);
         inOrder.verify(cacheProvider).setUserSession(session);
         
@@ -378,7 +380,7 @@ public class AuthenticationServiceTest extends Mockito {
         assertEquals(updatedContext.getUserStudyIds(), TestConstants.USER_STUDY_IDS);
         assertEquals(updatedContext.getUserId(), TEST_USER_ID);
         
-        verify(accountSecretDao).createSecret(AccountSecretType.REAUTH, TEST_USER_ID, REAUTH_TOKEN);
+        verify(accountSecretService).createSecret(AccountSecretType.REAUTH, TEST_USER_ID, REAUTH_TOKEN);
     }
     
     @Test
@@ -488,7 +490,7 @@ public class AuthenticationServiceTest extends Mockito {
         
         service.signOut(session);
         
-        verify(accountSecretDao).removeSecrets(REAUTH, TEST_USER_ID);
+        verify(accountSecretService).removeSecrets(REAUTH, TEST_USER_ID);
         verify(cacheProvider).removeSession(session);
     }
     
@@ -496,7 +498,7 @@ public class AuthenticationServiceTest extends Mockito {
     public void signOutNoSessionToken() {
         service.signOut(null);
         
-        verify(accountSecretDao, never()).removeSecrets(any(), any());
+        verify(accountSecretService, never()).removeSecrets(any(), any());
         verify(cacheProvider, never()).removeSession(any());
     }
     
@@ -511,7 +513,7 @@ public class AuthenticationServiceTest extends Mockito {
         
         service.signOut(session);
 
-        verify(accountSecretDao, never()).removeSecrets(any(), any());
+        verify(accountSecretService, never()).removeSecrets(any(), any());
         verify(cacheProvider, never()).removeSession(any());
     }
 
@@ -690,7 +692,7 @@ public class AuthenticationServiceTest extends Mockito {
         doReturn(CONSENTED_STATUS_MAP).when(consentService).getConsentStatuses(any(), any());
         
         doReturn(Optional.of(account)).when(accountDao).getAccount(any());
-        doReturn(Optional.of(AccountSecret.create())).when(accountSecretDao)
+        doReturn(Optional.of(AccountSecret.create())).when(accountSecretService)
             .verifySecret(REAUTH, TEST_USER_ID, REAUTH_SIGN_IN.getReauthToken(), ROTATIONS);
         doReturn(participant).when(participantService).getParticipant(app, account, false);
         
@@ -704,7 +706,7 @@ public class AuthenticationServiceTest extends Mockito {
         assertEquals(captured.getParticipant().getEmail(), EMAIL);
         assertEquals(captured.getReauthToken(), REAUTH_TOKEN);
         
-        verify(accountSecretDao).createSecret(REAUTH, TEST_USER_ID, REAUTH_TOKEN);
+        verify(accountSecretService).createSecret(REAUTH, TEST_USER_ID, REAUTH_TOKEN);
     }
     
     @Test(expectedExceptions = ConsentRequiredException.class)
@@ -714,7 +716,7 @@ public class AuthenticationServiceTest extends Mockito {
         StudyParticipant participant = new StudyParticipant.Builder().withId(TEST_USER_ID).withEmail(EMAIL).build();
         doReturn(UNCONSENTED_STATUS_MAP).when(consentService).getConsentStatuses(any(), any());
         doReturn(Optional.of(account)).when(accountDao).getAccount(any());
-        doReturn(Optional.of(AccountSecret.create())).when(accountSecretDao)
+        doReturn(Optional.of(AccountSecret.create())).when(accountSecretService)
             .verifySecret(REAUTH, TEST_USER_ID, REAUTH_SIGN_IN.getReauthToken(), ROTATIONS);
         doReturn(participant).when(participantService).getParticipant(app, account, false);
         
@@ -730,7 +732,7 @@ public class AuthenticationServiceTest extends Mockito {
         doReturn(UNCONSENTED_STATUS_MAP).when(consentService).getConsentStatuses(any(), any());
         
         doReturn(Optional.of(account)).when(accountDao).getAccount(any());
-        doReturn(Optional.of(AccountSecret.create())).when(accountSecretDao)
+        doReturn(Optional.of(AccountSecret.create())).when(accountSecretService)
             .verifySecret(REAUTH, TEST_USER_ID, REAUTH_SIGN_IN.getReauthToken(), ROTATIONS);
 
         doReturn(participant).when(participantService).getParticipant(app, account, false);
@@ -751,7 +753,7 @@ public class AuthenticationServiceTest extends Mockito {
         doReturn(CONSENTED_STATUS_MAP).when(consentService).getConsentStatuses(any(), any());
         
         doReturn(Optional.of(account)).when(accountDao).getAccount(any());
-        doReturn(Optional.of(AccountSecret.create())).when(accountSecretDao)
+        doReturn(Optional.of(AccountSecret.create())).when(accountSecretService)
             .verifySecret(REAUTH, TEST_USER_ID, REAUTH_SIGN_IN.getReauthToken(), ROTATIONS);
         
         doReturn(participant).when(participantService).getParticipant(app, account, false);
@@ -776,7 +778,7 @@ public class AuthenticationServiceTest extends Mockito {
         app.setReauthenticationEnabled(true);
         
         doReturn(Optional.of(account)).when(accountDao).getAccount(any());
-        doReturn(Optional.of(AccountSecret.create())).when(accountSecretDao)
+        doReturn(Optional.of(AccountSecret.create())).when(accountSecretService)
             .verifySecret(AccountSecretType.REAUTH, TEST_USER_ID, REAUTH_SIGN_IN.getReauthToken(), ROTATIONS);
         
         doReturn(participant).when(participantService).getParticipant(app, account, false);
@@ -1371,7 +1373,7 @@ public class AuthenticationServiceTest extends Mockito {
         assertEquals(session.getReauthToken(), REAUTH_TOKEN);
         assertEquals(session.getConsentStatuses(), CONSENTED_STATUS_MAP);
         
-        verify(accountSecretDao).createSecret(AccountSecretType.REAUTH, TEST_USER_ID, REAUTH_TOKEN);
+        verify(accountSecretService).createSecret(AccountSecretType.REAUTH, TEST_USER_ID, REAUTH_TOKEN);
         
         RequestContext retValue = RequestContext.updateFromSession(session, sponsorService);
         assertEquals(retValue.getCallerAppId(), TEST_APP_ID);
@@ -1402,7 +1404,7 @@ public class AuthenticationServiceTest extends Mockito {
         assertNull(session.getReauthToken());
         
         verify(service, never()).generateReauthToken();
-        verify(accountSecretDao, never()).createSecret(any(), any(), any());
+        verify(accountSecretService, never()).createSecret(any(), any(), any());
     }
 
     // branch coverage
@@ -1428,7 +1430,7 @@ public class AuthenticationServiceTest extends Mockito {
         assertNull(session.getReauthToken());
 
         verify(service, never()).generateReauthToken();
-        verify(accountSecretDao, never()).createSecret(any(), any(), any());
+        verify(accountSecretService, never()).createSecret(any(), any(), any());
     }
 
     @Test
@@ -1550,7 +1552,7 @@ public class AuthenticationServiceTest extends Mockito {
        
        assertEquals(session.getParticipant().getSynapseUserId(), "12345");
        assertTrue(session.isSynapseAuthenticated());
-       verify(accountSecretDao).removeSecrets(REAUTH, TEST_USER_ID);
+       verify(accountSecretService).removeSecrets(REAUTH, TEST_USER_ID);
        verify(cacheProvider).removeSessionByUserId(TEST_USER_ID);
        verify(cacheProvider).setUserSession(session);
    }
@@ -1821,7 +1823,7 @@ public class AuthenticationServiceTest extends Mockito {
        app.setReauthenticationEnabled(true);
        
        Account account = mockGetAccountById(ACCOUNT_ID_WITH_EMAIL, false);
-       when(accountSecretDao.verifySecret(REAUTH, TEST_USER_ID, REAUTH_TOKEN, ROTATIONS))
+       when(accountSecretService.verifySecret(REAUTH, TEST_USER_ID, REAUTH_TOKEN, ROTATIONS))
                .thenReturn(Optional.of(mockSecret));
 
        Account returnVal = service.reauthenticate(app, REAUTH_SIGN_IN);
@@ -1935,12 +1937,23 @@ public class AuthenticationServiceTest extends Mockito {
                .withPassword("wrong password").build());
    }
 
+   @Test(expectedExceptions = ServiceUnavailableException.class)
+   public void authenticateWhenPasswordHashingIsOverloaded() throws Exception {
+       mockGetAccountById(ACCOUNT_ID_WITH_EMAIL, true);
+       doThrow(new ServiceUnavailableException("Too busy", 5)).when(passwordVerificationService)
+               .checkHash(any(), any(), any());
+
+       App app = App.create();
+
+       service.authenticate(app, EMAIL_PASSWORD_SIGN_IN);
+   }
+
    @Test
    public void reauthenticateSuccess() throws Exception {
        mockGetAccountById(ACCOUNT_ID_WITH_EMAIL, false);
 
        AccountSecret secret = AccountSecret.create();
-       when(accountSecretDao.verifySecret(REAUTH, TEST_USER_ID, REAUTH_TOKEN, ROTATIONS))
+       when(accountSecretService.verifySecret(REAUTH, TEST_USER_ID, REAUTH_TOKEN, ROTATIONS))
                .thenReturn(Optional.of(secret));
 
        App app = App.create();
@@ -1958,7 +1971,7 @@ public class AuthenticationServiceTest extends Mockito {
        verify(accountDao, never()).updateAccount(any());
 
        // verify token verification
-       verify(accountSecretDao).verifySecret(REAUTH, TEST_USER_ID, REAUTH_TOKEN, 3);
+       verify(accountSecretService).verifySecret(REAUTH, TEST_USER_ID, REAUTH_TOKEN, 3);
    }
 
    @Test
@@ -2008,7 +2021,7 @@ public class AuthenticationServiceTest extends Mockito {
        persistedAccount.setEmailVerified(false);
 
        AccountSecret secret = AccountSecret.create();
-       when(accountSecretDao.verifySecret(REAUTH, TEST_USER_ID, REAUTH_TOKEN, ROTATIONS))
+       when(accountSecretService.verifySecret(REAUTH, TEST_USER_ID, REAUTH_TOKEN, ROTATIONS))
                .thenReturn(Optional.of(secret));
 
        App app = App.create();
@@ -2024,7 +2037,7 @@ public class AuthenticationServiceTest extends Mockito {
        persistedAccount.setEmailVerified(false);
 
        AccountSecret secret = AccountSecret.create();
-       when(accountSecretDao.verifySecret(REAUTH, TEST_USER_ID, REAUTH_TOKEN, ROTATIONS))
+       when(accountSecretService.verifySecret(REAUTH, TEST_USER_ID, REAUTH_TOKEN, ROTATIONS))
                .thenReturn(Optional.of(secret));
 
        App app = App.create();
@@ -2040,7 +2053,7 @@ public class AuthenticationServiceTest extends Mockito {
        persistedAccount.setStatus(DISABLED);
 
        AccountSecret secret = AccountSecret.create();
-       when(accountSecretDao.verifySecret(REAUTH, TEST_USER_ID, REAUTH_TOKEN, ROTATIONS))
+       when(accountSecretService.verifySecret(REAUTH, TEST_USER_ID, REAUTH_TOKEN, ROTATIONS))
                .thenReturn(Optional.of(secret));
 
        App app = App.create();
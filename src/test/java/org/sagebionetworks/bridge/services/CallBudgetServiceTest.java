@@ -0,0 +1,112 @@
+package org.sagebionetworks.bridge.services;
+
+import static org.sagebionetworks.bridge.models.Metrics.BACKEND_DYNAMODB;
+import static org.sagebionetworks.bridge.models.Metrics.BACKEND_MYSQL;
+import static org.sagebionetworks.bridge.models.Metrics.BACKEND_REDIS;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Set;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import org.sagebionetworks.bridge.config.BridgeConfig;
+import org.sagebionetworks.bridge.models.Metrics;
+
+public class CallBudgetServiceTest extends Mockito {
+    private static final String ROUTE_PATTERN = "/v3/participants/search";
+
+    @Mock
+    BridgeConfig mockConfig;
+
+    CallBudgetService service;
+
+    @BeforeMethod
+    public void beforeMethod() {
+        MockitoAnnotations.initMocks(this);
+        when(mockConfig.getPropertyAsInt("call.budget.mysql")).thenReturn(5);
+        when(mockConfig.getPropertyAsInt("call.budget.dynamodb")).thenReturn(5);
+        when(mockConfig.getPropertyAsInt("call.budget.redis")).thenReturn(0);
+        when(mockConfig.getPropertyAsList(CallBudgetService.CONFIG_KEY_ROUTES)).thenReturn(ImmutableList.of(
+                "POST " + ROUTE_PATTERN + " mysql=100",
+                "GET /v3/bad",
+                "GET /v3/invalid mysql=lots cassandra=3 dynamodb=1"));
+
+        service = new CallBudgetService();
+        service.setConfig(mockConfig);
+    }
+
+    @Test
+    public void getBudget() {
+        // Default budgets.
+        assertEquals(service.getBudget("GET", "/v3/participants/{userId}", BACKEND_MYSQL), 5);
+        assertEquals(service.getBudget("GET", null, BACKEND_DYNAMODB), 5);
+        assertEquals(service.getBudget("GET", null, BACKEND_REDIS), 0);
+
+        // The route's budget overrides the default, for that method only.
+        assertEquals(service.getBudget("POST", ROUTE_PATTERN, BACKEND_MYSQL), 100);
+        assertEquals(service.getBudget("POST", ROUTE_PATTERN, BACKEND_DYNAMODB), 5);
+        assertEquals(service.getBudget("GET", ROUTE_PATTERN, BACKEND_MYSQL), 5);
+
+        // Invalid budgets are ignored.
+        assertEquals(service.getBudget("GET", "/v3/bad", BACKEND_MYSQL), 5);
+        assertEquals(service.getBudget("GET", "/v3/invalid", BACKEND_MYSQL), 5);
+        assertEquals(service.getBudget("GET", "/v3/invalid", BACKEND_DYNAMODB), 1);
+    }
+
+    @Test
+    public void withinBudget() {
+        Metrics metrics = makeMetrics(5, 5, 50);
+
+        Set<String> exceeded = service.checkBudget("GET", "/v3/participants/{userId}", metrics);
+        assertTrue(exceeded.isEmpty());
+        assertFalse(metrics.getJson().has("call_budget_exceeded"));
+    }
+
+    @Test
+    public void overBudget() {
+        Metrics metrics = makeMetrics(6, 6, 50);
+
+        Set<String> exceeded = service.checkBudget("GET", "/v3/participants/{userId}", metrics);
+        assertEquals(exceeded, ImmutableSet.of(BACKEND_MYSQL, BACKEND_DYNAMODB));
+        assertEquals(metrics.getJson().get("call_budget_exceeded").size(), 2);
+    }
+
+    @Test
+    public void routeBudget() {
+        Metrics metrics = makeMetrics(100, 0, 0);
+        assertTrue(service.checkBudget("POST", ROUTE_PATTERN, metrics).isEmpty());
+
+        metrics.incrementBackendCallCount(BACKEND_MYSQL);
+        assertEquals(service.checkBudget("POST", ROUTE_PATTERN, metrics), ImmutableSet.of(BACKEND_MYSQL));
+    }
+
+    @Test
+    public void noRoutesConfigured() {
+        when(mockConfig.getPropertyAsList(CallBudgetService.CONFIG_KEY_ROUTES)).thenReturn(null);
+        service.setConfig(mockConfig);
+
+        assertEquals(service.getBudget("POST", ROUTE_PATTERN, BACKEND_MYSQL), 5);
+    }
+
+    private static Metrics makeMetrics(int mysqlCalls, int dynamoCalls, int redisCalls) {
+        Metrics metrics = new Metrics("request-id");
+        for (int i = 0; i < mysqlCalls; i++) {
+            metrics.incrementBackendCallCount(BACKEND_MYSQL);
+        }
+        for (int i = 0; i < dynamoCalls; i++) {
+            metrics.incrementBackendCallCount(BACKEND_DYNAMODB);
+        }
+        for (int i = 0; i < redisCalls; i++) {
+            metrics.incrementBackendCallCount(BACKEND_REDIS);
+        }
+        return metrics;
+    }
+}
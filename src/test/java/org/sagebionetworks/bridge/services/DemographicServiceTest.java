@@ -561,6 +561,21 @@ public class DemographicServiceTest {
         assertSame(returnedDemographicUser.get(), demographicUser);
     }
 
+    /**
+     * Tests fetching all of a user's DemographicUsers.
+     */
+    @Test
+    public void getAllDemographicUsersForUser() {
+        List<DemographicUser> demographicUsers = ImmutableList.of(new DemographicUser(), new DemographicUser());
+        when(demographicDao.getAllDemographicUsersForUser(TEST_APP_ID, TEST_USER_ID)).thenReturn(demographicUsers);
+
+        List<DemographicUser> returnedDemographicUsers = demographicService.getAllDemographicUsersForUser(TEST_APP_ID,
+                TEST_USER_ID);
+
+        verify(demographicDao).getAllDemographicUsersForUser(TEST_APP_ID, TEST_USER_ID);
+        assertSame(returnedDemographicUsers, demographicUsers);
+    }
+
     /**
      * Tests that attempting to fetch a DemographicUser that does not exist results
      * in an Optional.empty.
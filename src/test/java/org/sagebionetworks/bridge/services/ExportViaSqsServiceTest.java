@@ -1,14 +1,13 @@
 package org.sagebionetworks.bridge.services;
 
-import static org.mockito.Mockito.eq;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.verify;
 import static org.sagebionetworks.bridge.TestConstants.TEST_APP_ID;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertTrue;
 
-import com.amazonaws.services.sqs.AmazonSQS;
-import com.amazonaws.services.sqs.model.SendMessageResult;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.joda.time.DateTime;
@@ -18,15 +17,11 @@ import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
-import org.sagebionetworks.bridge.config.BridgeConfig;
-
 public class ExportViaSqsServiceTest {
     private static final String EXPECTED_END_DATE_TIME_STRING = "2017-08-10T15:53:24.769-07:00";
 
     private static final ObjectMapper JSON_OBJECT_MAPPER = new ObjectMapper();
     private static final long MOCK_NOW = DateTime.parse("2017-08-10T15:53:29.769-07:00").getMillis();
-    private static final String SQS_MESSAGE_ID = "dummy-message-id";
-    private static final String SQS_URL = "dummy-sqs-url";
 
     @BeforeMethod
     public void mockNow() {
@@ -40,24 +35,19 @@ public class ExportViaSqsServiceTest {
 
     @Test
     public void test() throws Exception {
-        // mock config
-        BridgeConfig mockConfig = mock(BridgeConfig.class);
-        when(mockConfig.getProperty(ExportViaSqsService.CONFIG_KEY_EXPORTER_SQS_QUEUE_URL)).thenReturn(SQS_URL);
-
-        // mock SQS
-        AmazonSQS mockSqsClient = mock(AmazonSQS.class);
-        SendMessageResult mockSqsResult = new SendMessageResult().withMessageId(SQS_MESSAGE_ID);
-        ArgumentCaptor<String> sqsMessageCaptor = ArgumentCaptor.forClass(String.class);
-        when(mockSqsClient.sendMessage(eq(SQS_URL), sqsMessageCaptor.capture())).thenReturn(mockSqsResult);
+        // mock SQS outbox
+        SqsOutboxService mockSqsOutboxService = mock(SqsOutboxService.class);
 
         // set up test service
         ExportViaSqsService service = new ExportViaSqsService();
-        service.setBridgeConfig(mockConfig);
-        service.setSqsClient(mockSqsClient);
+        service.setSqsOutboxService(mockSqsOutboxService);
 
         // execute and validate
         service.startOnDemandExport(TEST_APP_ID);
 
+        ArgumentCaptor<String> sqsMessageCaptor = ArgumentCaptor.forClass(String.class);
+        verify(mockSqsOutboxService).sendMessage(eq(ExportViaSqsService.CONFIG_KEY_EXPORTER_SQS_QUEUE_URL),
+                sqsMessageCaptor.capture(), anyString());
         String sqsMessageText = sqsMessageCaptor.getValue();
         JsonNode sqsMessageNode = JSON_OBJECT_MAPPER.readTree(sqsMessageText);
         assertEquals(sqsMessageNode.size(), 5);
@@ -13,12 +13,15 @@ import static org.testng.Assert.fail;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.MoreExecutors;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
 import org.mockito.Mock;
@@ -41,6 +44,7 @@ import org.sagebionetworks.bridge.models.notifications.NotificationTopic;
 import org.sagebionetworks.bridge.models.notifications.TopicSubscription;
 
 import com.amazonaws.services.sns.AmazonSNS;
+import com.amazonaws.services.sns.model.NotFoundException;
 import com.amazonaws.services.sns.model.PublishRequest;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
@@ -53,6 +57,7 @@ public class NotificationTopicServiceTest {
     private static final CriteriaContext EMPTY_CONTEXT = new CriteriaContext.Builder()
             .withAppId(TEST_APP_ID).build();
     private static final String HEALTH_CODE = "health-code";
+    private static final String SUBSCRIPTION_ARN = "arn:aws:sns:us-east-1:111111111111:topic:subscription";
 
     private static final NotificationTopic CRITERIA_TOPIC_1;
     static {
@@ -136,6 +141,9 @@ public class NotificationTopicServiceTest {
     
     @Mock
     private NotificationRegistration mockNotificationRegistration;
+
+    @Mock
+    private ExecutorService mockAsyncExecutorService;
     
     @Captor
     private ArgumentCaptor<PublishRequest> publishRequestCaptor;
@@ -151,6 +159,8 @@ public class NotificationTopicServiceTest {
         service.setSnsClient(mockSnsClient);
         service.setNotificationRegistrationDao(mockRegistrationDao);
         service.setTopicSubscriptionDao(mockSubscriptionDao);
+        service.setAsyncExecutorService(mockAsyncExecutorService);
+        service.setSubscriptionExecutorService(MoreExecutors.newDirectExecutorService());
     }
     
     @Test
@@ -268,6 +278,7 @@ public class NotificationTopicServiceTest {
     private TopicSubscription getSub(String topicGuid) {
         TopicSubscription sub = TopicSubscription.create();
         sub.setTopicGuid(topicGuid);
+        sub.setSubscriptionARN(SUBSCRIPTION_ARN);
         return sub;
     }
     
@@ -365,6 +376,107 @@ public class NotificationTopicServiceTest {
         verify(mockSubscriptionDao, never()).subscribe(any(), eq(MANUAL_TOPIC_2));
     }
 
+    @Test
+    public void manageCriteriaBasedSubscriptions_NoChanges() {
+        when(mockTopicDao.listTopics(TEST_APP_ID, true)).thenReturn(ImmutableList.of(CRITERIA_TOPIC_1,
+                CRITERIA_TOPIC_2));
+        when(mockRegistrationDao.listRegistrations(HEALTH_CODE)).thenReturn(ImmutableList.of(PUSH_REGISTRATION));
+        when(mockSubscriptionDao.listSubscriptions(PUSH_REGISTRATION)).thenReturn((List)ImmutableList.of(
+                getSub(CRITERIA_TOPIC_2.getGuid())));
+
+        CriteriaContext context = new CriteriaContext.Builder().withContext(EMPTY_CONTEXT).withUserDataGroups(
+                ImmutableSet.of(CRITERIA_GROUP_2)).build();
+        service.manageCriteriaBasedSubscriptions(TEST_APP_ID, context, HEALTH_CODE);
+
+        // Subscriptions already match, so we only check that the subscription still exists in SNS.
+        verify(mockSubscriptionDao, never()).subscribe(any(), any());
+        verify(mockSubscriptionDao, never()).unsubscribe(any(), any());
+        verify(mockSnsClient).getSubscriptionAttributes(SUBSCRIPTION_ARN);
+        verify(mockSubscriptionDao, never()).removeOrphanedSubscription(any());
+    }
+
+    @Test
+    public void manageCriteriaBasedSubscriptions_RepairsOrphanedSubscription() {
+        when(mockTopicDao.listTopics(TEST_APP_ID, true)).thenReturn(ImmutableList.of(CRITERIA_TOPIC_2));
+        when(mockRegistrationDao.listRegistrations(HEALTH_CODE)).thenReturn(ImmutableList.of(PUSH_REGISTRATION));
+        TopicSubscription orphan = getSub(CRITERIA_TOPIC_2.getGuid());
+        when(mockSubscriptionDao.listSubscriptions(PUSH_REGISTRATION)).thenReturn((List)ImmutableList.of(orphan));
+        when(mockSnsClient.getSubscriptionAttributes(SUBSCRIPTION_ARN)).thenThrow(
+                new NotFoundException("subscription not found"));
+
+        CriteriaContext context = new CriteriaContext.Builder().withContext(EMPTY_CONTEXT).withUserDataGroups(
+                ImmutableSet.of(CRITERIA_GROUP_2)).build();
+        service.manageCriteriaBasedSubscriptions(TEST_APP_ID, context, HEALTH_CODE);
+
+        // The stored subscription has no SNS subscription, so it's removed and the topic is subscribed again.
+        verify(mockSubscriptionDao).removeOrphanedSubscription(orphan);
+        verify(mockSubscriptionDao).subscribe(PUSH_REGISTRATION, CRITERIA_TOPIC_2);
+    }
+
+    @Test
+    public void manageCriteriaBasedSubscriptions_CleansUpOncePerInterval() {
+        when(mockTopicDao.listTopics(TEST_APP_ID, true)).thenReturn(ImmutableList.of(CRITERIA_TOPIC_2));
+        when(mockRegistrationDao.listRegistrations(HEALTH_CODE)).thenReturn(ImmutableList.of(PUSH_REGISTRATION));
+        when(mockSubscriptionDao.listSubscriptions(PUSH_REGISTRATION)).thenReturn((List)ImmutableList.of(
+                getSub(CRITERIA_TOPIC_2.getGuid())));
+
+        CriteriaContext context = new CriteriaContext.Builder().withContext(EMPTY_CONTEXT).withUserDataGroups(
+                ImmutableSet.of(CRITERIA_GROUP_2)).build();
+        service.manageCriteriaBasedSubscriptions(TEST_APP_ID, context, HEALTH_CODE);
+        service.manageCriteriaBasedSubscriptions(TEST_APP_ID, context, HEALTH_CODE);
+
+        // Both runs diff against the stored subscriptions, but only the first checks them against SNS.
+        verify(mockSubscriptionDao, times(2)).listSubscriptions(PUSH_REGISTRATION);
+        verify(mockSnsClient, times(1)).getSubscriptionAttributes(SUBSCRIPTION_ARN);
+        verify(mockSubscriptionDao, never()).subscribe(any(), any());
+        verify(mockSubscriptionDao, never()).unsubscribe(any(), any());
+    }
+
+    @Test
+    public void manageCriteriaBasedSubscriptions_CachesTopics() {
+        when(mockTopicDao.listTopics(TEST_APP_ID, true)).thenReturn(ImmutableList.of(CRITERIA_TOPIC_1));
+        when(mockRegistrationDao.listRegistrations(HEALTH_CODE)).thenReturn(ImmutableList.of());
+
+        service.manageCriteriaBasedSubscriptions(TEST_APP_ID, EMPTY_CONTEXT, HEALTH_CODE);
+        service.manageCriteriaBasedSubscriptions(TEST_APP_ID, EMPTY_CONTEXT, HEALTH_CODE);
+        verify(mockTopicDao, times(1)).listTopics(TEST_APP_ID, true);
+
+        // Modifying a topic invalidates the cache.
+        service.deleteTopic(TEST_APP_ID, CRITERIA_TOPIC_1.getGuid());
+        service.manageCriteriaBasedSubscriptions(TEST_APP_ID, EMPTY_CONTEXT, HEALTH_CODE);
+        verify(mockTopicDao, times(2)).listTopics(TEST_APP_ID, true);
+    }
+
+    @Test
+    public void manageCriteriaBasedSubscriptionsAsync_CoalescesUpdates() {
+        when(mockTopicDao.listTopics(TEST_APP_ID, true)).thenReturn(ImmutableList.of(CRITERIA_TOPIC_1,
+                CRITERIA_TOPIC_2));
+        when(mockRegistrationDao.listRegistrations(HEALTH_CODE)).thenReturn(ImmutableList.of(PUSH_REGISTRATION));
+        when(mockSubscriptionDao.listSubscriptions(PUSH_REGISTRATION)).thenReturn(ImmutableList.of());
+
+        CriteriaContext context1 = new CriteriaContext.Builder().withContext(EMPTY_CONTEXT).withUserDataGroups(
+                ImmutableSet.of(CRITERIA_GROUP_1)).build();
+        CriteriaContext context2 = new CriteriaContext.Builder().withContext(EMPTY_CONTEXT).withUserDataGroups(
+                ImmutableSet.of(CRITERIA_GROUP_2)).build();
+
+        // Two updates before the handler runs only schedule one handler.
+        service.manageCriteriaBasedSubscriptionsAsync(TEST_APP_ID, context1, HEALTH_CODE);
+        service.manageCriteriaBasedSubscriptionsAsync(TEST_APP_ID, context2, HEALTH_CODE);
+
+        ArgumentCaptor<Runnable> handlerCaptor = ArgumentCaptor.forClass(Runnable.class);
+        verify(mockAsyncExecutorService).execute(handlerCaptor.capture());
+        verifyZeroInteractions(mockSubscriptionDao);
+
+        // Running the handler applies only the latest context.
+        handlerCaptor.getValue().run();
+        verify(mockSubscriptionDao).subscribe(PUSH_REGISTRATION, CRITERIA_TOPIC_2);
+        verify(mockSubscriptionDao, never()).subscribe(PUSH_REGISTRATION, CRITERIA_TOPIC_1);
+
+        // Once the handler has run, the next update schedules a new handler.
+        service.manageCriteriaBasedSubscriptionsAsync(TEST_APP_ID, context1, HEALTH_CODE);
+        verify(mockAsyncExecutorService, times(2)).execute(any(Runnable.class));
+    }
+
     @Test
     public void unsubscribeAll_NoSubscriptions() {
         // Mock dependencies.
@@ -132,7 +132,7 @@ public class NotificationsServiceTest {
         assertEquals(result, registration);
 
         // We also manage criteria-based topics.
-        verify(mockNotificationTopicService).manageCriteriaBasedSubscriptions(TEST_APP_ID, DUMMY_CONTEXT, HEALTH_CODE);
+        verify(mockNotificationTopicService).manageCriteriaBasedSubscriptionsAsync(TEST_APP_ID, DUMMY_CONTEXT, HEALTH_CODE);
     }
 
     @Test
@@ -152,7 +152,7 @@ public class NotificationsServiceTest {
         assertEquals(result, registration);
 
         // We also manage criteria-based topics.
-        verify(mockNotificationTopicService).manageCriteriaBasedSubscriptions(TEST_APP_ID, DUMMY_CONTEXT, HEALTH_CODE);
+        verify(mockNotificationTopicService).manageCriteriaBasedSubscriptionsAsync(TEST_APP_ID, DUMMY_CONTEXT, HEALTH_CODE);
     }
 
     @Test(expectedExceptions = BadRequestException.class)
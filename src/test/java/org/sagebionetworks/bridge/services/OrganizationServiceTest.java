@@ -349,14 +349,14 @@ public class OrganizationServiceTest extends Mockito {
         when(mockOrgDao.getOrganization(TEST_APP_ID, IDENTIFIER)).thenReturn(Optional.of(Organization.create()));
         
         PagedResourceList<AccountSummary> page = new PagedResourceList<>(ImmutableList.of(), 0); 
-        when(mockAccountService.getPagedAccountSummaries(eq(TEST_APP_ID), any())).thenReturn(page);
+        when(mockAccountService.getPagedAccountSummariesFromReplica(eq(TEST_APP_ID), any())).thenReturn(page);
         
         AccountSummarySearch search = new AccountSummarySearch.Builder().withLanguage("en").build();        
         
         PagedResourceList<AccountSummary> retValue =  service.getMembers(TEST_APP_ID, IDENTIFIER, search);
         assertSame(retValue, page);
         
-        verify(mockAccountService).getPagedAccountSummaries(eq(TEST_APP_ID), searchCaptor.capture());
+        verify(mockAccountService).getPagedAccountSummariesFromReplica(eq(TEST_APP_ID), searchCaptor.capture());
         assertEquals(searchCaptor.getValue().getLanguage(), "en");
         assertEquals(searchCaptor.getValue().getOrgMembership(), IDENTIFIER);
         assertNull(searchCaptor.getValue().isAdminOnly());
@@ -370,7 +370,7 @@ public class OrganizationServiceTest extends Mockito {
         when(mockOrgDao.getOrganization(TEST_APP_ID, IDENTIFIER)).thenReturn(Optional.of(Organization.create()));
         
         PagedResourceList<AccountSummary> page = new PagedResourceList<>(ImmutableList.of(), 0); 
-        when(mockAccountService.getPagedAccountSummaries(eq(TEST_APP_ID), any())).thenReturn(page);
+        when(mockAccountService.getPagedAccountSummariesFromReplica(eq(TEST_APP_ID), any())).thenReturn(page);
         
         AccountSummarySearch search = new AccountSummarySearch.Builder().withLanguage("en").build();        
         
@@ -460,7 +460,7 @@ public class OrganizationServiceTest extends Mockito {
         
         service.getUnassignedAdmins(TEST_APP_ID, search);
         
-        verify(mockAccountService).getPagedAccountSummaries(eq(TEST_APP_ID), searchCaptor.capture());
+        verify(mockAccountService).getPagedAccountSummariesFromReplica(eq(TEST_APP_ID), searchCaptor.capture());
         
         AccountSummarySearch captured = searchCaptor.getValue(); 
         assertTrue(captured.isAdminOnly());
@@ -0,0 +1,223 @@
+package org.sagebionetworks.bridge.services;
+
+import static org.sagebionetworks.bridge.TestConstants.TEST_APP_ID;
+import static org.sagebionetworks.bridge.TestConstants.TEST_USER_ID;
+import static org.testng.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.ImmutableList;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeUtils;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import org.sagebionetworks.bridge.config.BridgeConfig;
+import org.sagebionetworks.bridge.dao.ParticipantDataDeletionDao;
+import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
+import org.sagebionetworks.bridge.models.accounts.ParticipantDataDeletion;
+import org.sagebionetworks.bridge.models.accounts.ParticipantDataDeletion.Step;
+
+public class ParticipantDataDeletionServiceTest extends Mockito {
+    private static final String HEALTH_CODE = "healthCode";
+    private static final DateTime NOW = DateTime.parse("2026-10-19T10:00:00.000Z");
+    private static final DateTime REQUESTED_ON = NOW.minusHours(1);
+
+    @Mock
+    ParticipantDataDeletionDao mockDao;
+
+    @Mock
+    HealthDataService mockHealthDataService;
+
+    @Mock
+    HealthDataEx3Service mockHealthDataEx3Service;
+
+    @Mock
+    UploadService mockUploadService;
+
+    @Mock
+    ScheduledActivityService mockScheduledActivityService;
+
+    @Mock
+    ActivityEventService mockActivityEventService;
+
+    @Mock
+    ReportService mockReportService;
+
+    @Mock
+    ScheduledExecutorService mockExecutor;
+
+    @Mock
+    BridgeConfig mockConfig;
+
+    @InjectMocks
+    ParticipantDataDeletionService service;
+
+    // The next step of the deletion each time it's saved, since the same deletion is saved after each step.
+    List<Step> savedSteps;
+
+    @BeforeMethod
+    public void beforeMethod() {
+        MockitoAnnotations.initMocks(this);
+        DateTimeUtils.setCurrentMillisFixed(NOW.getMillis());
+
+        service.setExecutor(mockExecutor);
+        // Run deletions as soon as they're started.
+        doAnswer(invocation -> {
+            ((Runnable) invocation.getArgument(0)).run();
+            return null;
+        }).when(mockExecutor).execute(any());
+
+        savedSteps = new ArrayList<>();
+        doAnswer(invocation -> {
+            savedSteps.add(((ParticipantDataDeletion) invocation.getArgument(0)).getNextStep());
+            return null;
+        }).when(mockDao).saveDeletion(any());
+    }
+
+    @AfterMethod
+    public void afterMethod() {
+        DateTimeUtils.setCurrentMillisSystem();
+    }
+
+    @Test
+    public void startDeletion() {
+        service.startDeletion(TEST_APP_ID, TEST_USER_ID, HEALTH_CODE);
+
+        ArgumentCaptor<ParticipantDataDeletion> deletionCaptor = ArgumentCaptor.forClass(ParticipantDataDeletion.class);
+        verify(mockDao, times(Step.values().length)).saveDeletion(deletionCaptor.capture());
+        ParticipantDataDeletion deletion = deletionCaptor.getValue();
+        assertEquals(deletion.getAppId(), TEST_APP_ID);
+        assertEquals(deletion.getUserId(), TEST_USER_ID);
+        assertEquals(deletion.getHealthCode(), HEALTH_CODE);
+        assertEquals(deletion.getRequestedOn(), NOW);
+        assertEquals(deletion.getModifiedOn(), NOW);
+
+        // The deletion is saved before it starts, then after each step but the last.
+        assertEquals(savedSteps, ImmutableList.copyOf(Step.values()));
+
+        InOrder inOrder = inOrder(mockDao, mockHealthDataService, mockHealthDataEx3Service, mockUploadService,
+                mockScheduledActivityService, mockActivityEventService, mockReportService);
+        inOrder.verify(mockDao).saveDeletion(deletion);
+        inOrder.verify(mockHealthDataService).deleteRecordsForHealthCode(HEALTH_CODE);
+        inOrder.verify(mockHealthDataEx3Service).deleteRecordsForHealthCode(HEALTH_CODE);
+        inOrder.verify(mockUploadService).deleteUploadsForHealthCode(HEALTH_CODE);
+        inOrder.verify(mockScheduledActivityService).deleteActivitiesForUser(HEALTH_CODE);
+        inOrder.verify(mockActivityEventService).deleteActivityEventsForDeletedAccount(HEALTH_CODE);
+        inOrder.verify(mockReportService).deleteParticipantReportsForHealthCode(TEST_APP_ID, HEALTH_CODE);
+        inOrder.verify(mockDao).deleteDeletion(TEST_USER_ID);
+    }
+
+    @Test
+    public void runDeletionResumesAtNextStep() {
+        ParticipantDataDeletion deletion = makeDeletion(Step.ACTIVITY_EVENTS);
+
+        service.runDeletion(deletion);
+
+        verify(mockHealthDataService, never()).deleteRecordsForHealthCode(any());
+        verify(mockHealthDataEx3Service, never()).deleteRecordsForHealthCode(any());
+        verify(mockUploadService, never()).deleteUploadsForHealthCode(any());
+        verify(mockScheduledActivityService, never()).deleteActivitiesForUser(any());
+        verify(mockActivityEventService).deleteActivityEventsForDeletedAccount(HEALTH_CODE);
+        verify(mockReportService).deleteParticipantReportsForHealthCode(TEST_APP_ID, HEALTH_CODE);
+
+        assertEquals(savedSteps, ImmutableList.of(Step.PARTICIPANT_REPORTS));
+        verify(mockDao).deleteDeletion(TEST_USER_ID);
+    }
+
+    @Test
+    public void failedStepLeavesDeletionToResume() {
+        doThrow(new BridgeServiceException("Throttled")).when(mockUploadService)
+                .deleteUploadsForHealthCode(HEALTH_CODE);
+        ParticipantDataDeletion deletion = makeDeletion(Step.HEALTH_DATA);
+
+        // Doesn't throw.
+        service.runDeletion(deletion);
+
+        assertEquals(savedSteps, ImmutableList.of(Step.HEALTH_DATA_EX3, Step.UPLOADS));
+        assertEquals(deletion.getNextStep(), Step.UPLOADS);
+        verify(mockScheduledActivityService, never()).deleteActivitiesForUser(any());
+        verify(mockDao, never()).deleteDeletion(any());
+
+        // It can run again once the failure clears.
+        doNothing().when(mockUploadService).deleteUploadsForHealthCode(HEALTH_CODE);
+        service.runDeletion(deletion);
+        verify(mockHealthDataService).deleteRecordsForHealthCode(HEALTH_CODE);
+        verify(mockUploadService, times(2)).deleteUploadsForHealthCode(HEALTH_CODE);
+        verify(mockDao).deleteDeletion(TEST_USER_ID);
+    }
+
+    @Test
+    public void resumeStalledDeletions() {
+        ParticipantDataDeletion deletion = makeDeletion(Step.SCHEDULED_ACTIVITIES);
+        when(mockDao.getStalledDeletions(any(), anyInt())).thenReturn(ImmutableList.of(deletion));
+
+        service.resumeStalledDeletions();
+
+        verify(mockDao).getStalledDeletions(NOW.minusMinutes(ParticipantDataDeletionService.DEFAULT_RESUME_MINUTES),
+                ParticipantDataDeletionService.RESUME_BATCH_SIZE);
+        // It's marked as modified before it resumes, so other servers don't resume it too.
+        assertEquals(savedSteps.get(0), Step.SCHEDULED_ACTIVITIES);
+        verify(mockScheduledActivityService).deleteActivitiesForUser(HEALTH_CODE);
+        verify(mockHealthDataService, never()).deleteRecordsForHealthCode(any());
+        verify(mockDao).deleteDeletion(TEST_USER_ID);
+    }
+
+    @Test
+    public void resumeStalledDeletionsSkipsDeletionsRunningHere() {
+        ParticipantDataDeletion deletion = makeDeletion(Step.HEALTH_DATA);
+        when(mockDao.getStalledDeletions(any(), anyInt())).thenReturn(ImmutableList.of(deletion));
+
+        // While the deletion is running, the sweeper finds it (because its first step is slow).
+        doAnswer(invocation -> {
+            service.resumeStalledDeletions();
+            return 0;
+        }).when(mockHealthDataService).deleteRecordsForHealthCode(HEALTH_CODE);
+
+        service.runDeletion(deletion);
+
+        verify(mockHealthDataService, times(1)).deleteRecordsForHealthCode(HEALTH_CODE);
+        verify(mockDao, times(1)).deleteDeletion(TEST_USER_ID);
+    }
+
+    @Test
+    public void resumeStalledDeletionsSwallowsErrors() {
+        when(mockDao.getStalledDeletions(any(), anyInt())).thenThrow(new IllegalStateException());
+
+        // Doesn't throw, so the schedule keeps running.
+        service.resumeStalledDeletions();
+    }
+
+    @Test
+    public void startSchedulesResume() {
+        when(mockConfig.getPropertyAsInt(ParticipantDataDeletionService.CONFIG_KEY_THREADS)).thenReturn(1);
+        when(mockConfig.getPropertyAsInt(ParticipantDataDeletionService.CONFIG_KEY_RESUME_MINUTES)).thenReturn(5);
+        service.setConfig(mockConfig);
+        service.setExecutor(mockExecutor);
+
+        service.start();
+
+        verify(mockExecutor).scheduleWithFixedDelay(any(), eq(5L), eq(5L), eq(TimeUnit.MINUTES));
+    }
+
+    private static ParticipantDataDeletion makeDeletion(Step nextStep) {
+        ParticipantDataDeletion deletion = new ParticipantDataDeletion();
+        deletion.setAppId(TEST_APP_ID);
+        deletion.setUserId(TEST_USER_ID);
+        deletion.setHealthCode(HEALTH_CODE);
+        deletion.setNextStep(nextStep);
+        deletion.setRequestedOn(REQUESTED_ON);
+        deletion.setModifiedOn(REQUESTED_ON);
+        return deletion;
+    }
+}
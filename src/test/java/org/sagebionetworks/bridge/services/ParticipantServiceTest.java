@@ -16,7 +16,6 @@ import static org.sagebionetworks.bridge.TestConstants.TEST_USER_ID;
 import static org.sagebionetworks.bridge.TestConstants.USER_STUDY_IDS;
 import static org.sagebionetworks.bridge.TestConstants.TEST_NOTE;
 import static org.sagebionetworks.bridge.TestConstants.TEST_CLIENT_TIME_ZONE;
-import static org.sagebionetworks.bridge.models.AccountSummarySearch.EMPTY_SEARCH;
 import static org.sagebionetworks.bridge.models.accounts.AccountStatus.DISABLED;
 import static org.sagebionetworks.bridge.models.accounts.AccountStatus.UNVERIFIED;
 import static org.sagebionetworks.bridge.models.accounts.SharingScope.ALL_QUALIFIED_RESEARCHERS;
@@ -84,12 +83,10 @@ import org.sagebionetworks.bridge.exceptions.UnauthorizedException;
 import org.sagebionetworks.bridge.models.AccountSummarySearch;
 import org.sagebionetworks.bridge.models.ClientInfo;
 import org.sagebionetworks.bridge.models.CriteriaContext;
-import org.sagebionetworks.bridge.models.PagedResourceList;
 import org.sagebionetworks.bridge.models.RequestInfo;
 import org.sagebionetworks.bridge.models.accounts.Account;
 import org.sagebionetworks.bridge.models.accounts.AccountId;
 import org.sagebionetworks.bridge.models.accounts.AccountStatus;
-import org.sagebionetworks.bridge.models.accounts.AccountSummary;
 import org.sagebionetworks.bridge.models.accounts.ConsentStatus;
 import org.sagebionetworks.bridge.models.accounts.ExternalIdentifier;
 import org.sagebionetworks.bridge.models.accounts.IdentifierHolder;
@@ -233,9 +230,6 @@ public class ParticipantServiceTest extends Mockito {
     @Mock
     private ScheduledActivityService scheduledActivityService;
     
-    @Mock
-    private PagedResourceList<AccountSummary> accountSummaries;
-    
     @Mock
     private EnrollmentService enrollmentService;
     
@@ -841,7 +835,7 @@ public class ParticipantServiceTest extends Mockito {
         
         participantService.getPagedAccountSummaries(APP, search);
         
-        verify(accountService).getPagedAccountSummaries(TEST_APP_ID, search); 
+        verify(accountService).getPagedAccountSummariesFromReplica(TEST_APP_ID, search); 
     }
     
     @Test(expectedExceptions = NullPointerException.class)
@@ -877,7 +871,7 @@ public class ParticipantServiceTest extends Mockito {
         
         participantService.getPagedAccountSummaries(APP, search);
         
-        verify(accountService).getPagedAccountSummaries(TEST_APP_ID, search); 
+        verify(accountService).getPagedAccountSummariesFromReplica(TEST_APP_ID, search); 
     }
     
     @Test(expectedExceptions = InvalidEntityException.class)
@@ -917,7 +911,7 @@ public class ParticipantServiceTest extends Mockito {
         
         participantService.getPagedAccountSummaries(APP, search);
         
-        verify(accountService).getPagedAccountSummaries(
+        verify(accountService).getPagedAccountSummariesFromReplica(
                 eq(TEST_APP_ID), searchCaptor.capture());
         assertEquals(searchCaptor.getValue().getAllOfGroups(), ImmutableSet.of(TEST_USER_GROUP));
     }
@@ -932,7 +926,7 @@ public class ParticipantServiceTest extends Mockito {
         
         participantService.getPagedAccountSummaries(APP, search);
         
-        verify(accountService).getPagedAccountSummaries(
+        verify(accountService).getPagedAccountSummariesFromReplica(
                 eq(TEST_APP_ID), searchCaptor.capture());
         assertEquals(searchCaptor.getValue().getAllOfGroups(), ImmutableSet.of(TEST_USER_GROUP));
     }
@@ -947,7 +941,7 @@ public class ParticipantServiceTest extends Mockito {
         
         participantService.getPagedAccountSummaries(APP, search);
         
-        verify(accountService).getPagedAccountSummaries(
+        verify(accountService).getPagedAccountSummariesFromReplica(
                 eq(TEST_APP_ID), searchCaptor.capture());
         assertEquals(searchCaptor.getValue().getAllOfGroups(), ImmutableSet.of(TEST_USER_GROUP));
     }
@@ -1665,18 +1659,18 @@ public class ParticipantServiceTest extends Mockito {
     public void limitNotExceededException() {
         mockHealthCodeAndAccountRetrieval();
         APP.setAccountLimit(10);
-        when(accountSummaries.getTotal()).thenReturn(9);
-        when(accountService.getPagedAccountSummaries(TEST_APP_ID, EMPTY_SEARCH))
-                .thenReturn(accountSummaries);
+        when(accountService.isAccountLimitMetOrExceeded(APP)).thenReturn(false);
         
         participantService.createParticipant(APP, PARTICIPANT, false);
+        
+        verify(accountService).isAccountLimitMetOrExceeded(APP);
+        verify(accountService, never()).getPagedAccountSummariesFromReplica(any(), any());
     }
     
     @Test
     public void throwLimitExceededExactlyException() {
         APP.setAccountLimit(10);
-        when(accountSummaries.getTotal()).thenReturn(10);
-        when(accountService.getPagedAccountSummaries(TEST_APP_ID, EMPTY_SEARCH)).thenReturn(accountSummaries);
+        when(accountService.isAccountLimitMetOrExceeded(APP)).thenReturn(true);
         
         try {
             participantService.createParticipant(APP, PARTICIPANT, false);
@@ -1689,8 +1683,7 @@ public class ParticipantServiceTest extends Mockito {
     @Test(expectedExceptions = LimitExceededException.class)
     public void throwLimitExceededException() {
         APP.setAccountLimit(10);
-        when(accountSummaries.getTotal()).thenReturn(13);
-        when(accountService.getPagedAccountSummaries(TEST_APP_ID, EMPTY_SEARCH)).thenReturn(accountSummaries);
+        when(accountService.isAccountLimitMetOrExceeded(APP)).thenReturn(true);
         
         participantService.createParticipant(APP, PARTICIPANT, false);
     }
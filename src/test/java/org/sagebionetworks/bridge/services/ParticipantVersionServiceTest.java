@@ -1,15 +1,16 @@
 package org.sagebionetworks.bridge.services;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
-import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotEquals;
 import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
 
@@ -29,7 +30,6 @@ import org.sagebionetworks.bridge.BridgeConstants;
 import org.sagebionetworks.bridge.Roles;
 import org.sagebionetworks.bridge.TestConstants;
 import org.sagebionetworks.bridge.TestUtils;
-import org.sagebionetworks.bridge.config.BridgeConfig;
 import org.sagebionetworks.bridge.dao.ParticipantVersionDao;
 import org.sagebionetworks.bridge.exceptions.EntityNotFoundException;
 import org.sagebionetworks.bridge.json.BridgeObjectMapper;
@@ -48,8 +48,6 @@ import org.testng.annotations.BeforeClass;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
-import com.amazonaws.services.sqs.AmazonSQS;
-import com.amazonaws.services.sqs.model.SendMessageResult;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
@@ -75,7 +73,6 @@ public class ParticipantVersionServiceTest {
                             new DemographicValue("-4"), new DemographicValue("true"),
                             new DemographicValue("k", "v")),
                     null)));
-    private static final String WORKER_QUEUE_URL = "http://example.com/dummy-sqs-url";
 
     @Mock
     private AppService mockAppService;
@@ -87,7 +84,7 @@ public class ParticipantVersionServiceTest {
     private ParticipantVersionDao mockParticipantVersionDao;
 
     @Mock
-    private AmazonSQS mockSqsClient;
+    private SqsOutboxService mockSqsOutboxService;
 
     @InjectMocks
     private ParticipantVersionService participantVersionService;
@@ -103,11 +100,6 @@ public class ParticipantVersionServiceTest {
     public void before() {
         MockitoAnnotations.initMocks(this);
 
-        // Mock config. This is done separately because we need to set mock config params.
-        BridgeConfig mockConfig = mock(BridgeConfig.class);
-        when(mockConfig.getProperty(BridgeConstants.CONFIG_KEY_WORKER_SQS_URL)).thenReturn(WORKER_QUEUE_URL);
-        participantVersionService.setConfig(mockConfig);
-
         // Mock app service.
         app = TestUtils.getValidApp(ParticipantVersionServiceTest.class);
         app.setExporter3Enabled(true);
@@ -123,17 +115,16 @@ public class ParticipantVersionServiceTest {
     public void createParticipantVersionFromAccount() {
         // Mock dependencies. DAO doesn't return anything to make create() logic simpler. We test more of this logic
         // in later tests.
-        when(mockParticipantVersionDao.getLatestParticipantVersionForHealthCode(TestConstants.TEST_APP_ID,
+        when(mockParticipantVersionDao.getLatestParticipantVersionSummaryForHealthCode(TestConstants.TEST_APP_ID,
                 TestConstants.HEALTH_CODE)).thenReturn(Optional.empty());
-        when(mockSqsClient.sendMessage(anyString(), anyString())).thenReturn(new SendMessageResult());
         DemographicUser appDemographicUser = new DemographicUser();
         appDemographicUser.setDemographics(APP_DEMOGRAPHICS);
-        when(demographicService.getDemographicUser(TestConstants.TEST_APP_ID, null, ACCOUNT_ID)).thenReturn(Optional.of(appDemographicUser));
         DemographicUser study1DemographicUser = new DemographicUser();
+        study1DemographicUser.setStudyId(STUDY_ID_1);
         study1DemographicUser.setDemographics(STUDY_DEMOGRAPHICS.get(STUDY_ID_1));
-        when(demographicService.getDemographicUser(TestConstants.TEST_APP_ID, STUDY_ID_1, ACCOUNT_ID)).thenReturn(Optional.of(study1DemographicUser));
-        // account is in this study but does not have demographics in it
-        when(demographicService.getDemographicUser(TestConstants.TEST_APP_ID, STUDY_ID_2, ACCOUNT_ID)).thenReturn(Optional.empty());
+        // account is in study2 but does not have demographics in it
+        when(demographicService.getAllDemographicUsersForUser(TestConstants.TEST_APP_ID, ACCOUNT_ID))
+                .thenReturn(ImmutableList.of(appDemographicUser, study1DemographicUser));
 
         // Make Account. Populate it with attributes we care about for Participant Versions.
         Account account = Account.create();
@@ -156,9 +147,9 @@ public class ParticipantVersionServiceTest {
         ArgumentCaptor<ParticipantVersion> participantVersionCaptor = ArgumentCaptor.forClass(
                 ParticipantVersion.class);
         verify(mockParticipantVersionDao).createParticipantVersion(participantVersionCaptor.capture());
-        verify(demographicService).getDemographicUser(TestConstants.TEST_APP_ID, null, ACCOUNT_ID);
-        verify(demographicService).getDemographicUser(TestConstants.TEST_APP_ID, STUDY_ID_1, ACCOUNT_ID);
-        verify(demographicService).getDemographicUser(TestConstants.TEST_APP_ID, STUDY_ID_2, ACCOUNT_ID);
+        // All demographics are fetched at once.
+        verify(demographicService).getAllDemographicUsersForUser(TestConstants.TEST_APP_ID, ACCOUNT_ID);
+        verify(demographicService, never()).getDemographicUser(any(), any(), any());
 
         ParticipantVersion participantVersion = participantVersionCaptor.getValue();
         assertEquals(participantVersion.getAppId(), TestConstants.TEST_APP_ID);
@@ -174,6 +165,8 @@ public class ParticipantVersionServiceTest {
         Map<String, Map<String, Demographic>> expectedStudyDemographics = new HashMap<>(STUDY_DEMOGRAPHICS);
         expectedStudyDemographics.put(STUDY_ID_2, ImmutableMap.of());
         assertEquals(participantVersion.getStudyDemographics(), expectedStudyDemographics);
+        assertEquals(participantVersion.getFingerprint(), ParticipantVersionService.makeFingerprint(
+                participantVersion));
 
         Map<String, String> studyMembershipMap = participantVersion.getStudyMemberships();
         assertEquals(studyMembershipMap.size(), 2);
@@ -239,9 +232,8 @@ public class ParticipantVersionServiceTest {
 
     @Test
     public void createParticipantVersionFromAccount_noAppDemographics() {
-        when(mockSqsClient.sendMessage(anyString(), anyString())).thenReturn(new SendMessageResult());
-        when(demographicService.getDemographicUser(TestConstants.TEST_APP_ID, null, ACCOUNT_ID))
-                .thenReturn(Optional.empty());
+        when(demographicService.getAllDemographicUsersForUser(TestConstants.TEST_APP_ID, ACCOUNT_ID))
+                .thenReturn(ImmutableList.of());
 
         Account account = Account.create();
         account.setId(ACCOUNT_ID);
@@ -261,19 +253,19 @@ public class ParticipantVersionServiceTest {
         ArgumentCaptor<ParticipantVersion> participantVersionCaptor = ArgumentCaptor.forClass(
                 ParticipantVersion.class);
         verify(mockParticipantVersionDao).createParticipantVersion(participantVersionCaptor.capture());
-        verify(demographicService).getDemographicUser(TestConstants.TEST_APP_ID, null, ACCOUNT_ID);
+        verify(demographicService).getAllDemographicUsersForUser(TestConstants.TEST_APP_ID, ACCOUNT_ID);
 
         ParticipantVersion participantVersion = participantVersionCaptor.getValue();
         assertEquals(participantVersion.getAppDemographics(), null);
+        assertEquals(participantVersion.getStudyDemographics(), ImmutableMap.of(STUDY_ID_1, ImmutableMap.of()));
     }
 
     // branch coverage: initial version with no createdOn
     @Test
     public void createParticipantVersion_NoCreatedOn() throws Exception {
         // Mock dependencies.
-        when(mockParticipantVersionDao.getLatestParticipantVersionForHealthCode(TestConstants.TEST_APP_ID,
+        when(mockParticipantVersionDao.getLatestParticipantVersionSummaryForHealthCode(TestConstants.TEST_APP_ID,
                 TestConstants.HEALTH_CODE)).thenReturn(Optional.empty());
-        when(mockSqsClient.sendMessage(anyString(), anyString())).thenReturn(new SendMessageResult());
 
         // Make input.
         ParticipantVersion toCreate = ParticipantVersion.create();
@@ -293,7 +285,8 @@ public class ParticipantVersionServiceTest {
 
         // Verify call to SQS.
         ArgumentCaptor<String> requestJsonTextCaptor = ArgumentCaptor.forClass(String.class);
-        verify(mockSqsClient).sendMessage(eq(WORKER_QUEUE_URL), requestJsonTextCaptor.capture());
+        verify(mockSqsOutboxService).sendMessage(eq(BridgeConstants.CONFIG_KEY_WORKER_SQS_URL),
+                requestJsonTextCaptor.capture(), anyString());
 
         String requestJsonText = requestJsonTextCaptor.getValue();
         WorkerRequest workerRequest = BridgeObjectMapper.get().readValue(requestJsonText, WorkerRequest.class);
@@ -316,10 +309,10 @@ public class ParticipantVersionServiceTest {
         existing.setHealthCode(TestConstants.HEALTH_CODE);
         existing.setCreatedOn(CREATED_ON.getMillis());
         existing.setParticipantVersion(1);
+        existing.setFingerprint(ParticipantVersionService.makeFingerprint(existing));
 
-        when(mockParticipantVersionDao.getLatestParticipantVersionForHealthCode(TestConstants.TEST_APP_ID,
+        when(mockParticipantVersionDao.getLatestParticipantVersionSummaryForHealthCode(TestConstants.TEST_APP_ID,
                 TestConstants.HEALTH_CODE)).thenReturn(Optional.of(existing));
-        when(mockSqsClient.sendMessage(anyString(), anyString())).thenReturn(new SendMessageResult());
 
         // Make input.
         // Set createdOn to make sure we can't overwrite existing.
@@ -340,26 +333,144 @@ public class ParticipantVersionServiceTest {
         assertEquals(created.getCreatedOn(), CREATED_ON.getMillis());
         assertEquals(created.getModifiedOn(), MOCK_NOW_MILLIS);
         assertEquals(created.getParticipantVersion(), 2);
+        assertEquals(created.getFingerprint(), ParticipantVersionService.makeFingerprint(toCreate));
+
+        // The existing version has a fingerprint, so we don't need to load all of it.
+        verify(mockParticipantVersionDao, never()).getLatestParticipantVersionForHealthCode(any(), any());
+        verify(mockParticipantVersionDao, never()).getParticipantVersion(any(), any(), anyInt());
     }
 
     @Test
     public void createParticipantVersion_IdenticalVersion() {
-        // Mock dependencies. Create existing version.
+        // Mock dependencies. Create existing version. The summary only has the version number, createdOn, and
+        // fingerprint.
         ParticipantVersion existing = ParticipantVersion.create();
-        existing.setAppId(TestConstants.TEST_APP_ID);
-        existing.setHealthCode(TestConstants.HEALTH_CODE);
+        existing.setParticipantVersion(1);
+        existing.setFingerprint(ParticipantVersionService.makeFingerprint(makeParticipantVersion()));
 
-        when(mockParticipantVersionDao.getLatestParticipantVersionForHealthCode(TestConstants.TEST_APP_ID,
+        when(mockParticipantVersionDao.getLatestParticipantVersionSummaryForHealthCode(TestConstants.TEST_APP_ID,
                 TestConstants.HEALTH_CODE)).thenReturn(Optional.of(existing));
 
         // Make input. These have identical fields as existing.
-        ParticipantVersion toCreate = ParticipantVersion.create();
-        toCreate.setAppId(TestConstants.TEST_APP_ID);
-        toCreate.setHealthCode(TestConstants.HEALTH_CODE);
+        ParticipantVersion toCreate = makeParticipantVersion();
 
         // Execute and validate. We never save the participant version.
         participantVersionService.createParticipantVersion(toCreate);
         verify(mockParticipantVersionDao, never()).createParticipantVersion(any());
+        verify(mockParticipantVersionDao, never()).getParticipantVersion(any(), any(), anyInt());
+    }
+
+    @Test
+    public void createParticipantVersion_IdenticalVersionWithoutFingerprint() {
+        // Mock dependencies. The existing version was created before fingerprints, so we load the full version.
+        ParticipantVersion existingSummary = ParticipantVersion.create();
+        existingSummary.setParticipantVersion(PARTICIPANT_VERSION);
+        when(mockParticipantVersionDao.getLatestParticipantVersionSummaryForHealthCode(TestConstants.TEST_APP_ID,
+                TestConstants.HEALTH_CODE)).thenReturn(Optional.of(existingSummary));
+        when(mockParticipantVersionDao.getParticipantVersion(TestConstants.TEST_APP_ID, TestConstants.HEALTH_CODE,
+                PARTICIPANT_VERSION)).thenReturn(Optional.of(makeParticipantVersion()));
+
+        // Execute and validate. We never save the participant version.
+        participantVersionService.createParticipantVersion(makeParticipantVersion());
+        verify(mockParticipantVersionDao, never()).createParticipantVersion(any());
+    }
+
+    @Test
+    public void createParticipantVersion_ChangedVersionWithoutFingerprint() {
+        // Mock dependencies. The existing version was created before fingerprints, so we load the full version.
+        ParticipantVersion existingSummary = ParticipantVersion.create();
+        existingSummary.setParticipantVersion(PARTICIPANT_VERSION);
+        existingSummary.setCreatedOn(CREATED_ON.getMillis());
+        when(mockParticipantVersionDao.getLatestParticipantVersionSummaryForHealthCode(TestConstants.TEST_APP_ID,
+                TestConstants.HEALTH_CODE)).thenReturn(Optional.of(existingSummary));
+        when(mockParticipantVersionDao.getParticipantVersion(TestConstants.TEST_APP_ID, TestConstants.HEALTH_CODE,
+                PARTICIPANT_VERSION)).thenReturn(Optional.of(makeParticipantVersion()));
+
+        ParticipantVersion toCreate = makeParticipantVersion();
+        toCreate.setTimeZone("America/New_York");
+
+        // Execute and validate.
+        participantVersionService.createParticipantVersion(toCreate);
+
+        ArgumentCaptor<ParticipantVersion> createdCaptor = ArgumentCaptor.forClass(ParticipantVersion.class);
+        verify(mockParticipantVersionDao).createParticipantVersion(createdCaptor.capture());
+
+        ParticipantVersion created = createdCaptor.getValue();
+        assertEquals(created.getParticipantVersion(), PARTICIPANT_VERSION + 1);
+        assertEquals(created.getFingerprint(), ParticipantVersionService.makeFingerprint(toCreate));
+    }
+
+    @Test
+    public void makeFingerprint_Identical() {
+        // Keys and timestamps aren't part of the fingerprint.
+        ParticipantVersion participantVersion1 = makeParticipantVersion();
+        participantVersion1.setParticipantVersion(1);
+        participantVersion1.setCreatedOn(1111L);
+        participantVersion1.setModifiedOn(2222L);
+
+        // Demographic id, parent, and categoryName aren't part of the fingerprint either. Sets and maps are compared
+        // regardless of order.
+        ParticipantVersion participantVersion2 = makeParticipantVersion();
+        participantVersion2.setParticipantVersion(2);
+        participantVersion2.setCreatedOn(3333L);
+        participantVersion2.setModifiedOn(4444L);
+        participantVersion2.setAppDemographics(ImmutableMap.of("category1", new Demographic(null,
+                new DemographicUser(), null, false, ImmutableList.of(new DemographicValue("value1")), "units")));
+
+        assertEquals(ParticipantVersionService.makeFingerprint(participantVersion1),
+                ParticipantVersionService.makeFingerprint(participantVersion2));
+
+        participantVersion1.setDataGroups(ImmutableSet.of("a", "b"));
+        participantVersion2.setDataGroups(ImmutableSet.of("b", "a"));
+        participantVersion1.setStudyMemberships(ImmutableMap.of(STUDY_ID_1, "ext1", STUDY_ID_2, "ext2"));
+        participantVersion2.setStudyMemberships(ImmutableMap.of(STUDY_ID_2, "ext2", STUDY_ID_1, "ext1"));
+        assertEquals(ParticipantVersionService.makeFingerprint(participantVersion1),
+                ParticipantVersionService.makeFingerprint(participantVersion2));
+    }
+
+    @Test
+    public void makeFingerprint_NullAndEmptyAreSame() {
+        // DDB stores empty collections as null.
+        ParticipantVersion participantVersion1 = makeParticipantVersion();
+        participantVersion1.setAppDemographics(null);
+
+        ParticipantVersion participantVersion2 = makeParticipantVersion();
+        participantVersion2.setAppDemographics(ImmutableMap.of());
+
+        assertEquals(ParticipantVersionService.makeFingerprint(participantVersion1),
+                ParticipantVersionService.makeFingerprint(participantVersion2));
+    }
+
+    @Test
+    public void makeFingerprint_Different() {
+        String fingerprint = ParticipantVersionService.makeFingerprint(makeParticipantVersion());
+
+        ParticipantVersion participantVersion = makeParticipantVersion();
+        participantVersion.setLanguages(ImmutableList.of("en-gb"));
+        assertNotEquals(ParticipantVersionService.makeFingerprint(participantVersion), fingerprint);
+
+        participantVersion = makeParticipantVersion();
+        participantVersion.setSharingScope(SharingScope.SPONSORS_AND_PARTNERS);
+        assertNotEquals(ParticipantVersionService.makeFingerprint(participantVersion), fingerprint);
+
+        participantVersion = makeParticipantVersion();
+        participantVersion.setStudyDemographics(ImmutableMap.<String, Map<String, Demographic>>builder()
+                .putAll(STUDY_DEMOGRAPHICS).put(STUDY_ID_2, ImmutableMap.of()).build());
+        assertNotEquals(ParticipantVersionService.makeFingerprint(participantVersion), fingerprint);
+
+        participantVersion = makeParticipantVersion();
+        participantVersion.setAppDemographics(ImmutableMap.of("category1", new Demographic("id1", null,
+                "category1", false, ImmutableList.of(new DemographicValue("value1").withInvalidity("invalid")),
+                "units")));
+        assertNotEquals(ParticipantVersionService.makeFingerprint(participantVersion), fingerprint);
+
+        // Adjacent strings can't run together.
+        ParticipantVersion participantVersion1 = makeParticipantVersion();
+        participantVersion1.setLanguages(ImmutableList.of("ab", "c"));
+        ParticipantVersion participantVersion2 = makeParticipantVersion();
+        participantVersion2.setLanguages(ImmutableList.of("a", "bc"));
+        assertNotEquals(ParticipantVersionService.makeFingerprint(participantVersion1),
+                ParticipantVersionService.makeFingerprint(participantVersion2));
     }
 
     @Test
@@ -0,0 +1,190 @@
+package org.sagebionetworks.bridge.services;
+
+import static org.sagebionetworks.bridge.models.accounts.PasswordAlgorithm.DEFAULT_PASSWORD_ALGORITHM;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.security.InvalidKeyException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.util.concurrent.MoreExecutors;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import org.sagebionetworks.bridge.config.BridgeConfig;
+import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
+import org.sagebionetworks.bridge.exceptions.ServiceUnavailableException;
+
+public class PasswordVerificationServiceTest extends Mockito {
+    private static final String PASSWORD = "P@ssword1";
+
+    @Mock
+    BridgeConfig mockConfig;
+
+    @Mock
+    ExecutorService mockExecutor;
+
+    @Mock
+    Future<Boolean> mockFuture;
+
+    PasswordVerificationService service;
+
+    String hash;
+
+    @BeforeMethod
+    public void beforeMethod() throws Exception {
+        MockitoAnnotations.initMocks(this);
+
+        when(mockConfig.getPropertyAsInt(PasswordVerificationService.CONFIG_KEY_THREADS)).thenReturn(2);
+        when(mockConfig.getPropertyAsInt(PasswordVerificationService.CONFIG_KEY_MAX_QUEUE)).thenReturn(10);
+        when(mockConfig.getPropertyAsInt(PasswordVerificationService.CONFIG_KEY_MAX_WAIT_SECONDS)).thenReturn(5);
+        when(mockConfig.getPropertyAsInt(PasswordVerificationService.CONFIG_KEY_CACHE_SECONDS)).thenReturn(300);
+
+        service = new PasswordVerificationService();
+        service.setConfig(mockConfig);
+
+        hash = DEFAULT_PASSWORD_ALGORITHM.generateHash(PASSWORD);
+    }
+
+    @AfterMethod
+    public void afterMethod() {
+        service.shutdown();
+    }
+
+    @Test
+    public void checkHash() throws Exception {
+        assertTrue(service.checkHash(DEFAULT_PASSWORD_ALGORITHM, hash, PASSWORD));
+        assertFalse(service.checkHash(DEFAULT_PASSWORD_ALGORITHM, hash, "wrong password"));
+
+        JsonNode metrics = service.getMetrics();
+        assertEquals(metrics.get("threads").intValue(), 2);
+        assertEquals(metrics.get("queueTime").get("count").longValue(), 2L);
+        assertEquals(metrics.get("hashTime").get("count").longValue(), 2L);
+        assertEquals(metrics.get("cacheHits").longValue(), 0L);
+    }
+
+    @Test
+    public void repeatedCheckIsCached() throws Exception {
+        service.setExecutor(MoreExecutors.newDirectExecutorService());
+
+        assertTrue(service.checkHash(DEFAULT_PASSWORD_ALGORITHM, hash, PASSWORD));
+        assertTrue(service.checkHash(DEFAULT_PASSWORD_ALGORITHM, hash, PASSWORD));
+        assertFalse(service.checkHash(DEFAULT_PASSWORD_ALGORITHM, hash, "wrong password"));
+        assertFalse(service.checkHash(DEFAULT_PASSWORD_ALGORITHM, hash, "wrong password"));
+
+        assertEquals(service.getMetrics().get("cacheHits").longValue(), 2L);
+        assertEquals(service.getMetrics().get("hashTime").get("count").longValue(), 2L);
+    }
+
+    @Test
+    public void changedHashIsNotCached() throws Exception {
+        service.setExecutor(MoreExecutors.newDirectExecutorService());
+        String otherHash = DEFAULT_PASSWORD_ALGORITHM.generateHash("other password");
+
+        assertTrue(service.checkHash(DEFAULT_PASSWORD_ALGORITHM, hash, PASSWORD));
+        assertFalse(service.checkHash(DEFAULT_PASSWORD_ALGORITHM, otherHash, PASSWORD));
+
+        assertEquals(service.getMetrics().get("cacheHits").longValue(), 0L);
+    }
+
+    @Test
+    public void cachingCanBeDisabled() throws Exception {
+        when(mockConfig.getPropertyAsInt(PasswordVerificationService.CONFIG_KEY_CACHE_SECONDS)).thenReturn(0);
+        service.setConfig(mockConfig);
+        service.setExecutor(MoreExecutors.newDirectExecutorService());
+
+        assertTrue(service.checkHash(DEFAULT_PASSWORD_ALGORITHM, hash, PASSWORD));
+        assertTrue(service.checkHash(DEFAULT_PASSWORD_ALGORITHM, hash, PASSWORD));
+
+        assertEquals(service.getMetrics().get("cacheHits").longValue(), 0L);
+        assertEquals(service.getMetrics().get("hashTime").get("count").longValue(), 2L);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void fullQueueIsRejected() throws Exception {
+        when(mockExecutor.submit(any(Callable.class))).thenThrow(new RejectedExecutionException());
+        service.setExecutor(mockExecutor);
+
+        try {
+            service.checkHash(DEFAULT_PASSWORD_ALGORITHM, hash, PASSWORD);
+            fail("Should have thrown exception");
+        } catch (ServiceUnavailableException ex) {
+            assertEquals(ex.getMessage(), PasswordVerificationService.TOO_BUSY_ERROR);
+            assertEquals(ex.getRetryAfterSeconds(), Integer.valueOf(PasswordVerificationService.RETRY_AFTER_SECONDS));
+        }
+        assertEquals(service.getMetrics().get("rejected").longValue(), 1L);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void slowCheckTimesOut() throws Exception {
+        when(mockExecutor.submit(any(Callable.class))).thenReturn(mockFuture);
+        when(mockFuture.get(5L, TimeUnit.SECONDS)).thenThrow(new TimeoutException());
+        service.setExecutor(mockExecutor);
+
+        try {
+            service.checkHash(DEFAULT_PASSWORD_ALGORITHM, hash, PASSWORD);
+            fail("Should have thrown exception");
+        } catch (ServiceUnavailableException ex) {
+            assertEquals(ex.getRetryAfterSeconds(), Integer.valueOf(PasswordVerificationService.RETRY_AFTER_SECONDS));
+        }
+        verify(mockFuture).cancel(true);
+        assertEquals(service.getMetrics().get("timedOut").longValue(), 1L);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test(expectedExceptions = InvalidKeyException.class)
+    public void checkedExceptionIsRethrown() throws Exception {
+        when(mockExecutor.submit(any(Callable.class))).thenReturn(mockFuture);
+        when(mockFuture.get(5L, TimeUnit.SECONDS)).thenThrow(new ExecutionException(new InvalidKeyException()));
+        service.setExecutor(mockExecutor);
+
+        service.checkHash(DEFAULT_PASSWORD_ALGORITHM, hash, PASSWORD);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test(expectedExceptions = BridgeServiceException.class)
+    public void interruptedCheckThrows() throws Exception {
+        when(mockExecutor.submit(any(Callable.class))).thenReturn(mockFuture);
+        when(mockFuture.get(5L, TimeUnit.SECONDS)).thenThrow(new InterruptedException());
+        service.setExecutor(mockExecutor);
+
+        try {
+            service.checkHash(DEFAULT_PASSWORD_ALGORITHM, hash, PASSWORD);
+        } finally {
+            // Clear the interrupt flag so it doesn't leak into other tests.
+            assertTrue(Thread.interrupted());
+        }
+    }
+
+    @Test
+    public void defaultsUsedWhenNotConfigured() {
+        when(mockConfig.getPropertyAsInt(any())).thenReturn(0);
+        service.setConfig(mockConfig);
+
+        assertEquals(service.getMetrics().get("threads").intValue(), PasswordVerificationService.DEFAULT_THREADS);
+    }
+
+    @Test
+    public void shutdown() {
+        service.setExecutor(mockExecutor);
+
+        service.shutdown();
+
+        verify(mockExecutor).shutdown();
+    }
+}
@@ -358,7 +358,31 @@ public class ReportServiceTest extends Mockito {
         verify(mockReportIndexDao).getIndex(any());
         verify(mockReportDataDao).deleteReportData(PARTICIPANT_REPORT_DATA_KEY);
     }
-    
+
+    @Test
+    public void deleteParticipantReportsForHealthCode() {
+        // There's no caller, as when the account's data is deleted in the background.
+        RequestContext.set(NULL_INSTANCE);
+
+        // These reports are restricted to studies the (missing) caller isn't in.
+        ReportIndex index = ReportIndex.create();
+        index.setIdentifier(IDENTIFIER);
+        index.setStudyIds(USER_STUDY_IDS);
+        ReportIndex otherIndex = ReportIndex.create();
+        otherIndex.setIdentifier("otherReport");
+        otherIndex.setStudyIds(USER_STUDY_IDS);
+        ReportTypeResourceList<? extends ReportIndex> participantIndices = new ReportTypeResourceList<>(
+                Lists.newArrayList(index, otherIndex));
+        doReturn(participantIndices).when(mockReportIndexDao).getIndices(TEST_APP_ID, ReportType.PARTICIPANT);
+
+        service.deleteParticipantReportsForHealthCode(TEST_APP_ID, HEALTH_CODE);
+
+        verify(mockReportDataDao).deleteReportData(PARTICIPANT_REPORT_DATA_KEY);
+        verify(mockReportDataDao).deleteReportData(new ReportDataKey.Builder().withReportType(ReportType.PARTICIPANT)
+                .withAppId(TEST_APP_ID).withHealthCode(HEALTH_CODE).withIdentifier("otherReport").build());
+        verify(mockReportIndexDao, never()).getIndex(any());
+    }
+
     @Test
     public void deleteParticipantReportIndex() {
         service.deleteParticipantReportIndex(TEST_APP_ID, TEST_USER_ID, IDENTIFIER);
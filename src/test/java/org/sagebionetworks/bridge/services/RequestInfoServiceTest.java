@@ -1,9 +1,19 @@
 package org.sagebionetworks.bridge.services;
 
 import static org.sagebionetworks.bridge.TestConstants.TEST_USER_ID;
+import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertSame;
 
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.ImmutableList;
+import org.joda.time.DateTime;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
@@ -12,10 +22,14 @@ import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import org.sagebionetworks.bridge.cache.CacheProvider;
+import org.sagebionetworks.bridge.config.BridgeConfig;
 import org.sagebionetworks.bridge.dao.RequestInfoDao;
 import org.sagebionetworks.bridge.models.RequestInfo;
 
 public class RequestInfoServiceTest extends Mockito {
+    private static final DateTime SIGNED_IN_ON = DateTime.parse("2022-05-01T10:00:00.000Z");
+    private static final DateTime UPLOADED_ON = DateTime.parse("2022-05-01T10:05:00.000Z");
+    private static final String OTHER_USER_ID = "other-user-id";
     
     @InjectMocks
     RequestInfoService service;
@@ -26,9 +40,19 @@ public class RequestInfoServiceTest extends Mockito {
     @Mock
     RequestInfoDao mockRequestInfoDao;
     
+    @Mock
+    BridgeConfig mockConfig;
+    
+    @Mock
+    ScheduledExecutorService mockExecutor;
+    
+    @Captor
+    ArgumentCaptor<List<RequestInfo>> requestInfoListCaptor;
+    
     @BeforeMethod
     public void beforeMethod() {
         MockitoAnnotations.initMocks(this);
+        service.setFlushExecutor(mockExecutor);
     }
 
     @Test
@@ -77,4 +101,212 @@ public class RequestInfoServiceTest extends Mockito {
         verify(mockRequestInfoDao).removeRequestInfo(TEST_USER_ID);
         verify(mockCacheProvider).removeRequestInfo(TEST_USER_ID);
     }
+    
+    @Test
+    public void updateRequestInfoIsBufferedAndCoalesced() {
+        service.updateRequestInfo(new RequestInfo.Builder().withUserId(TEST_USER_ID)
+                .withSignedInOn(SIGNED_IN_ON).build());
+        service.updateRequestInfo(new RequestInfo.Builder().withUserId(TEST_USER_ID)
+                .withUploadedOn(UPLOADED_ON).build());
+        service.updateRequestInfo(new RequestInfo.Builder().withUserId(OTHER_USER_ID)
+                .withSignedInOn(SIGNED_IN_ON).build());
+        
+        // Nothing is written until the flush. Flush is only scheduled once.
+        verifyZeroInteractions(mockRequestInfoDao);
+        verify(mockExecutor, times(1)).schedule(any(Runnable.class), 
+                eq((long) RequestInfoService.DEFAULT_FLUSH_MILLIS), eq(TimeUnit.MILLISECONDS));
+        
+        service.flush();
+        
+        verify(mockRequestInfoDao).upsertRequestInfos(requestInfoListCaptor.capture());
+        List<RequestInfo> infos = requestInfoListCaptor.getValue();
+        assertEquals(infos.size(), 2);
+        
+        RequestInfo info = infos.stream().filter(i -> i.getUserId().equals(TEST_USER_ID)).findFirst().get();
+        assertEquals(info.getSignedInOn(), SIGNED_IN_ON);
+        assertEquals(info.getUploadedOn(), UPLOADED_ON);
+        verify(mockRequestInfoDao, never()).updateRequestInfo(any());
+        
+        // The buffer is empty after the flush.
+        service.flush();
+        verify(mockRequestInfoDao, times(1)).upsertRequestInfos(any());
+    }
+    
+    @Test
+    public void fullBatchQueuesOneImmediateFlush() {
+        int updateCount = RequestInfoService.MAX_BATCH_SIZE + 50;
+        for (int i = 0; i < updateCount; i++) {
+            service.updateRequestInfo(new RequestInfo.Builder().withUserId("user-" + i).build());
+        }
+        
+        // Once the batch is full, only one flush is queued, however many more updates arrive before it runs.
+        verify(mockExecutor, times(1)).execute(any(Runnable.class));
+        
+        service.flush();
+        verify(mockRequestInfoDao, times(2)).upsertRequestInfos(any());
+        
+        // After the flush, the next full batch queues another.
+        for (int i = 0; i < RequestInfoService.MAX_BATCH_SIZE; i++) {
+            service.updateRequestInfo(new RequestInfo.Builder().withUserId("user-" + i).build());
+        }
+        verify(mockExecutor, times(2)).execute(any(Runnable.class));
+    }
+    
+    @Test
+    public void getRequestInfoIncludesPendingUpdate() {
+        RequestInfo persisted = new RequestInfo.Builder().withUserId(TEST_USER_ID)
+                .withSignedInOn(SIGNED_IN_ON).build();
+        when(mockRequestInfoDao.getRequestInfo(TEST_USER_ID)).thenReturn(persisted);
+        
+        service.updateRequestInfo(new RequestInfo.Builder().withUserId(TEST_USER_ID)
+                .withUploadedOn(UPLOADED_ON).build());
+        
+        RequestInfo retrieved = service.getRequestInfo(TEST_USER_ID);
+        assertEquals(retrieved.getSignedInOn(), SIGNED_IN_ON);
+        assertEquals(retrieved.getUploadedOn(), UPLOADED_ON);
+        verify(mockCacheProvider, never()).getRequestInfo(any());
+    }
+    
+    @Test
+    public void getRequestInfoOnlyPendingUpdate() {
+        RequestInfo info = new RequestInfo.Builder().withUserId(TEST_USER_ID).withUploadedOn(UPLOADED_ON).build();
+        service.updateRequestInfo(info);
+        
+        RequestInfo retrieved = service.getRequestInfo(TEST_USER_ID);
+        assertSame(retrieved, info);
+        verify(mockCacheProvider, never()).getRequestInfo(any());
+    }
+    
+    @Test
+    public void updateRequestInfoBufferDisabled() {
+        when(mockConfig.getProperty(RequestInfoService.CONFIG_KEY_BUFFER_ENABLED)).thenReturn("false");
+        service.setConfig(mockConfig);
+        
+        RequestInfo info = new RequestInfo.Builder().withUserId(TEST_USER_ID).build();
+        service.updateRequestInfo(info);
+        
+        verify(mockRequestInfoDao).updateRequestInfo(info);
+        verifyZeroInteractions(mockExecutor);
+    }
+    
+    @Test
+    public void updateRequestInfoBufferFull() {
+        when(mockConfig.getPropertyAsInt(RequestInfoService.CONFIG_KEY_MAX_BUFFERED_USERS)).thenReturn(1);
+        service.setConfig(mockConfig);
+        
+        RequestInfo info1 = new RequestInfo.Builder().withUserId(TEST_USER_ID).build();
+        RequestInfo info2 = new RequestInfo.Builder().withUserId(TEST_USER_ID).withSignedInOn(SIGNED_IN_ON).build();
+        RequestInfo info3 = new RequestInfo.Builder().withUserId(OTHER_USER_ID).build();
+        service.updateRequestInfo(info1);
+        service.updateRequestInfo(info2);
+        service.updateRequestInfo(info3);
+        
+        // Users already in the buffer are still coalesced; new users are written synchronously.
+        verify(mockRequestInfoDao, never()).updateRequestInfo(info1);
+        verify(mockRequestInfoDao, never()).updateRequestInfo(info2);
+        verify(mockRequestInfoDao).updateRequestInfo(info3);
+    }
+    
+    @Test
+    public void flushRetriesFailedBatchIndividually() {
+        RequestInfo info1 = new RequestInfo.Builder().withUserId(TEST_USER_ID).build();
+        RequestInfo info2 = new RequestInfo.Builder().withUserId(OTHER_USER_ID).build();
+        doThrow(new RuntimeException()).when(mockRequestInfoDao).upsertRequestInfos(argThat(list -> list.size() > 1));
+        doThrow(new RuntimeException()).when(mockRequestInfoDao).upsertRequestInfos(ImmutableList.of(info1));
+        
+        service.updateRequestInfo(info1);
+        service.updateRequestInfo(info2);
+        service.flush();
+        
+        verify(mockRequestInfoDao).upsertRequestInfos(ImmutableList.of(info1));
+        verify(mockRequestInfoDao).upsertRequestInfos(ImmutableList.of(info2));
+        
+        // Failed updates are not kept in memory.
+        assertNull(service.getRequestInfo(TEST_USER_ID));
+    }
+    
+    @Test
+    public void removeRequestInfoRemovesPendingUpdate() {
+        service.updateRequestInfo(new RequestInfo.Builder().withUserId(TEST_USER_ID).build());
+        service.removeRequestInfo(TEST_USER_ID);
+        service.flush();
+        
+        verify(mockRequestInfoDao, never()).upsertRequestInfos(any());
+    }
+    
+    @Test
+    public void removeRequestInfoDuringWriteDeletesItAgain() {
+        service.updateRequestInfo(new RequestInfo.Builder().withUserId(TEST_USER_ID).build());
+        doAnswer(invocation -> {
+            // The account is deleted while the flush is writing its request info.
+            service.removeRequestInfo(TEST_USER_ID);
+            assertNull(service.getRequestInfo(TEST_USER_ID));
+            return null;
+        }).when(mockRequestInfoDao).upsertRequestInfos(any());
+        
+        service.flush();
+        
+        // The write may have happened after the delete, so it's deleted again.
+        verify(mockRequestInfoDao, times(2)).removeRequestInfo(TEST_USER_ID);
+    }
+    
+    @Test
+    public void removeRequestInfoDuringFlushSkipsLaterBatch() {
+        for (int i = 0; i < RequestInfoService.MAX_BATCH_SIZE + 1; i++) {
+            service.updateRequestInfo(new RequestInfo.Builder().withUserId("user-" + i).build());
+        }
+        // While the first batch is written, remove a user in the second batch.
+        String[] removedUserId = new String[1];
+        doAnswer(invocation -> {
+            if (removedUserId[0] == null) {
+                List<RequestInfo> batch = invocation.getArgument(0);
+                for (int i = 0; removedUserId[0] == null; i++) {
+                    String userId = "user-" + i;
+                    if (batch.stream().noneMatch(info -> info.getUserId().equals(userId))) {
+                        removedUserId[0] = userId;
+                    }
+                }
+                service.removeRequestInfo(removedUserId[0]);
+            }
+            return null;
+        }).when(mockRequestInfoDao).upsertRequestInfos(any());
+        
+        service.flush();
+        
+        verify(mockRequestInfoDao, times(1)).upsertRequestInfos(requestInfoListCaptor.capture());
+        assertEquals(requestInfoListCaptor.getValue().size(), RequestInfoService.MAX_BATCH_SIZE);
+        // The second batch only had the removed user, so it was skipped, and the user was only deleted once.
+        verify(mockRequestInfoDao, times(1)).removeRequestInfo(removedUserId[0]);
+    }
+    
+    @Test
+    public void shutdownFlushesBuffer() {
+        service.updateRequestInfo(new RequestInfo.Builder().withUserId(TEST_USER_ID).build());
+        service.shutdown();
+        
+        verify(mockExecutor).shutdown();
+        verify(mockRequestInfoDao).upsertRequestInfos(any());
+    }
+    
+    @Test
+    public void updateRequestInfoAfterShutdownWritesSynchronously() {
+        when(mockExecutor.isShutdown()).thenReturn(true);
+        
+        RequestInfo info = new RequestInfo.Builder().withUserId(TEST_USER_ID).build();
+        service.updateRequestInfo(info);
+        
+        verify(mockRequestInfoDao).updateRequestInfo(info);
+        verify(mockExecutor, never()).schedule(any(Runnable.class), anyLong(), any());
+    }
+    
+    @Test
+    public void rejectedFlushWritesSynchronously() {
+        when(mockExecutor.schedule(any(Runnable.class), anyLong(), any())).thenThrow(
+                new RejectedExecutionException());
+        
+        RequestInfo info = new RequestInfo.Builder().withUserId(TEST_USER_ID).build();
+        service.updateRequestInfo(info);
+        
+        verify(mockRequestInfoDao).upsertRequestInfos(ImmutableList.of(info));
+    }
 }
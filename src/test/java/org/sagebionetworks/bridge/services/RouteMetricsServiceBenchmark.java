@@ -0,0 +1,64 @@
+package org.sagebionetworks.bridge.services;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures what the MetricsFilter adds to each request to record route metrics: two calls to System.nanoTime() and
+ * a call to RouteMetricsService.record(), from several threads at once, spread over a realistic number of routes.
+ * This should stay well under a microsecond per request. It isn't run with the unit tests. To run it:
+ *
+ * mvn test-compile exec:java -Dexec.classpathScope=test
+ *     -Dexec.mainClass=org.sagebionetworks.bridge.services.RouteMetricsServiceBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class RouteMetricsServiceBenchmark {
+    private static final String[] METHODS = { "GET", "POST", "DELETE" };
+    private static final int[] STATUSES = { 200, 201, 400, 404, 500 };
+    private static final int PATTERN_COUNT = 200;
+
+    private RouteMetricsService service;
+    private String[] patterns;
+
+    @Setup
+    public void setup() {
+        service = new RouteMetricsService();
+        patterns = new String[PATTERN_COUNT];
+        for (int i = 0; i < PATTERN_COUNT; i++) {
+            patterns[i] = "/v3/resource" + i + "/{guid}";
+        }
+    }
+
+    @Benchmark
+    public void recordRequest() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long startNanos = System.nanoTime();
+        service.record(METHODS[random.nextInt(METHODS.length)], patterns[random.nextInt(PATTERN_COUNT)],
+                STATUSES[random.nextInt(STATUSES.length)], System.nanoTime() - startNanos, 512L, 2048L);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(RouteMetricsServiceBenchmark.class.getSimpleName()).build()).run();
+    }
+}
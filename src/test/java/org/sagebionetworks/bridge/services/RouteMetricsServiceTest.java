@@ -0,0 +1,141 @@
+package org.sagebionetworks.bridge.services;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.collect.ImmutableList;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import org.sagebionetworks.bridge.config.BridgeConfig;
+
+public class RouteMetricsServiceTest extends Mockito {
+    private static final String PATTERN = "/v3/participants/{userId}";
+
+    @Mock
+    BridgeConfig mockConfig;
+
+    @Mock
+    ScheduledExecutorService mockExecutor;
+
+    @Mock
+    RouteMetricsReporter mockReporter;
+
+    RouteMetricsService service;
+
+    @BeforeMethod
+    public void beforeMethod() {
+        MockitoAnnotations.initMocks(this);
+
+        when(mockConfig.getPropertyAsInt(RouteMetricsService.CONFIG_KEY_MAX_ROUTES)).thenReturn(3);
+        when(mockConfig.getPropertyAsInt(RouteMetricsService.CONFIG_KEY_REPORT_INTERVAL_SECONDS)).thenReturn(60);
+
+        service = new RouteMetricsService();
+        service.setConfig(mockConfig);
+        service.setExecutor(mockExecutor);
+    }
+
+    @Test
+    public void record() {
+        service.record("GET", PATTERN, 200, TimeUnit.MILLISECONDS.toNanos(10), -1L, 100L);
+        service.record("GET", PATTERN, 201, TimeUnit.MILLISECONDS.toNanos(20), 50L, 100L);
+        service.record("GET", PATTERN, 503, TimeUnit.MILLISECONDS.toNanos(30), -1L, -1L);
+
+        JsonNode metrics = service.getMetrics();
+        JsonNode successNode = metrics.get("GET " + PATTERN + " 2xx");
+        assertEquals(successNode.get("count").longValue(), 2L);
+        assertEquals(successNode.get("errorCount").longValue(), 0L);
+        assertEquals(successNode.get("meanMillis").doubleValue(), 15.0);
+        assertEquals(successNode.get("maxMillis").doubleValue(), 20.0);
+        assertTrue(successNode.get("p50Millis").doubleValue() >= 10.0);
+        assertEquals(successNode.get("p99Millis").doubleValue(), 20.0);
+        assertEquals(successNode.get("requestBytes").longValue(), 50L);
+        assertEquals(successNode.get("responseBytes").longValue(), 200L);
+
+        JsonNode errorNode = metrics.get("GET " + PATTERN + " 5xx");
+        assertEquals(errorNode.get("count").longValue(), 1L);
+        assertEquals(errorNode.get("errorCount").longValue(), 1L);
+    }
+
+    @Test
+    public void recordUnmatchedRoute() {
+        service.record("GET", null, 404, 1000L, -1L, -1L);
+
+        assertTrue(service.getMetrics().has("GET " + RouteMetricsService.UNMATCHED_PATTERN + " 4xx"));
+    }
+
+    @Test
+    public void routesAreBounded() {
+        service.record("GET", "/a", 200, 1000L, -1L, -1L);
+        service.record("GET", "/b", 200, 1000L, -1L, -1L);
+        service.record("GET", "/c", 200, 1000L, -1L, -1L);
+        service.record("GET", "/d", 200, 1000L, -1L, -1L);
+        service.record("GET", "/e", 200, 1000L, -1L, -1L);
+        // Known routes are still recorded separately.
+        service.record("GET", "/a", 200, 1000L, -1L, -1L);
+
+        JsonNode metrics = service.getMetrics();
+        assertEquals(metrics.size(), 4);
+        assertEquals(metrics.get("GET /a 2xx").get("count").longValue(), 2L);
+        assertEquals(metrics.get(RouteMetricsService.OTHER_ROUTE).get("count").longValue(), 2L);
+        assertFalse(metrics.has("GET /e 2xx"));
+    }
+
+    @Test
+    public void start() {
+        service.start();
+
+        verify(mockExecutor).scheduleWithFixedDelay(any(Runnable.class), eq(60L), eq(60L), eq(TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void startDisabled() {
+        when(mockConfig.getPropertyAsInt(RouteMetricsService.CONFIG_KEY_REPORT_INTERVAL_SECONDS)).thenReturn(0);
+        service.setConfig(mockConfig);
+
+        service.start();
+
+        verify(mockExecutor, never()).scheduleWithFixedDelay(any(), anyLong(), anyLong(), any());
+    }
+
+    @Test
+    public void report() {
+        service.setReporters(ImmutableList.of(mockReporter));
+        service.record("GET", PATTERN, 200, 1000L, -1L, -1L);
+
+        service.report();
+
+        verify(mockReporter).report(any(ObjectNode.class));
+    }
+
+    @Test
+    public void reportDoesNotThrow() {
+        doThrow(new RuntimeException()).when(mockReporter).report(any());
+        service.setReporters(ImmutableList.of(mockReporter));
+
+        service.report();
+    }
+
+    @Test
+    public void reportWithoutReportersDoesNotThrow() {
+        service.record("GET", PATTERN, 200, 1000L, -1L, -1L);
+
+        service.report();
+    }
+
+    @Test
+    public void shutdown() {
+        service.shutdown();
+
+        verify(mockExecutor).shutdown();
+    }
+}
@@ -22,6 +22,7 @@ import static org.sagebionetworks.bridge.models.studies.StudyPhase.DESIGN;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNotSame;
 import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
@@ -66,6 +67,7 @@ import org.sagebionetworks.bridge.models.schedules2.Session;
 import org.sagebionetworks.bridge.models.schedules2.SessionTest;
 import org.sagebionetworks.bridge.models.schedules2.TimeWindow;
 import org.sagebionetworks.bridge.models.schedules2.participantschedules.ParticipantSchedule;
+import org.sagebionetworks.bridge.models.schedules2.timelines.ScheduleMetadataSnapshot;
 import org.sagebionetworks.bridge.models.schedules2.timelines.Timeline;
 import org.sagebionetworks.bridge.models.schedules2.timelines.TimelineMetadata;
 import org.sagebionetworks.bridge.models.studies.Study;
@@ -1064,6 +1066,65 @@ public class Schedule2ServiceTest extends Mockito {
         assertSame(retValue, list);
     }
     
+    @Test
+    public void getScheduleMetadataSnapshot() {
+        Schedule2 schedule = new Schedule2();
+        schedule.setGuid(SCHEDULE_GUID);
+        schedule.setModifiedOn(MODIFIED_ON);
+        
+        TimelineMetadata meta = new TimelineMetadata();
+        meta.setSessionInstanceGuid(GUID);
+        meta.setSessionInstanceStartDay(2);
+        meta.setSessionInstanceEndDay(4);
+        when(mockDao.getScheduleMetadata(SCHEDULE_GUID)).thenReturn(ImmutableList.of(meta));
+        
+        ScheduleMetadataSnapshot snapshot = service.getScheduleMetadataSnapshot(schedule);
+        assertEquals(snapshot.size(), 1);
+        assertEquals(snapshot.getSessionInstanceGuid(0), GUID);
+        assertEquals(snapshot.getSessionInstanceStartDay(0), 2);
+        assertEquals(snapshot.getSessionInstanceEndDay(0), 4);
+        assertTrue(snapshot.isSnapshotOf(SCHEDULE_GUID, MODIFIED_ON));
+        
+        // The same snapshot is shared until the schedule changes.
+        assertSame(service.getScheduleMetadataSnapshot(schedule), snapshot);
+        verify(mockDao, times(1)).getScheduleMetadata(SCHEDULE_GUID);
+    }
+    
+    @Test
+    public void getScheduleMetadataSnapshotReloadsModifiedSchedule() {
+        Schedule2 schedule = new Schedule2();
+        schedule.setGuid(SCHEDULE_GUID);
+        schedule.setModifiedOn(CREATED_ON);
+        when(mockDao.getScheduleMetadata(SCHEDULE_GUID)).thenReturn(ImmutableList.of());
+        
+        ScheduleMetadataSnapshot snapshot = service.getScheduleMetadataSnapshot(schedule);
+        
+        // For example, the schedule was changed on another server.
+        schedule.setModifiedOn(MODIFIED_ON);
+        ScheduleMetadataSnapshot updated = service.getScheduleMetadataSnapshot(schedule);
+        
+        assertNotSame(updated, snapshot);
+        assertTrue(updated.isSnapshotOf(SCHEDULE_GUID, MODIFIED_ON));
+        verify(mockDao, times(2)).getScheduleMetadata(SCHEDULE_GUID);
+    }
+    
+    @Test
+    public void publishScheduleInvalidatesMetadataSnapshot() {
+        permitToAccess();
+        
+        Schedule2 schedule = new Schedule2();
+        schedule.setGuid(SCHEDULE_GUID);
+        schedule.setModifiedOn(CREATED_ON);
+        when(mockDao.getScheduleMetadata(SCHEDULE_GUID)).thenReturn(ImmutableList.of());
+        when(mockDao.getSchedule(TEST_APP_ID, SCHEDULE_GUID)).thenReturn(Optional.of(new Schedule2()));
+        
+        service.getScheduleMetadataSnapshot(schedule);
+        service.publishSchedule(TEST_APP_ID, SCHEDULE_GUID);
+        service.getScheduleMetadataSnapshot(schedule);
+        
+        verify(mockDao, times(2)).getScheduleMetadata(SCHEDULE_GUID);
+    }
+    
     @Test
     public void getSessionAssessmentMetadata() {
         List<TimelineMetadata> results = ImmutableList.of();
@@ -116,7 +116,7 @@ public class SessionUpdateServiceTest {
         assertSame(session.getConsentStatuses(), CONSENT_STATUS_MAP);
 
         // Verify notification service.
-        verify(mockNotificationTopicService).manageCriteriaBasedSubscriptions(TEST_APP_ID, context, HEALTH_CODE);
+        verify(mockNotificationTopicService).manageCriteriaBasedSubscriptionsAsync(TEST_APP_ID, context, HEALTH_CODE);
     }
 
     @Test
@@ -153,7 +153,7 @@ public class SessionUpdateServiceTest {
         assertSame(session.getConsentStatuses(), CONSENT_STATUS_MAP);
 
         // Verify notification service.
-        verify(mockNotificationTopicService).manageCriteriaBasedSubscriptions(TEST_APP_ID, context, HEALTH_CODE);
+        verify(mockNotificationTopicService).manageCriteriaBasedSubscriptionsAsync(TEST_APP_ID, context, HEALTH_CODE);
     }
     
     @Test
@@ -198,7 +198,7 @@ public class SessionUpdateServiceTest {
         assertSame(session.getConsentStatuses(), CONSENT_STATUS_MAP);
 
         // Verify notification service.
-        verify(mockNotificationTopicService).manageCriteriaBasedSubscriptions(TEST_APP_ID, context, HEALTH_CODE);
+        verify(mockNotificationTopicService).manageCriteriaBasedSubscriptionsAsync(TEST_APP_ID, context, HEALTH_CODE);
     }
 
     @Test
@@ -0,0 +1,269 @@
+package org.sagebionetworks.bridge.services;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.amazonaws.services.sqs.AmazonSQS;
+import com.amazonaws.services.sqs.model.AmazonSQSException;
+import com.amazonaws.services.sqs.model.BatchResultErrorEntry;
+import com.amazonaws.services.sqs.model.SendMessageBatchRequest;
+import com.amazonaws.services.sqs.model.SendMessageBatchResult;
+import com.amazonaws.services.sqs.model.SendMessageBatchResultEntry;
+import com.amazonaws.services.sqs.model.SendMessageResult;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import org.sagebionetworks.bridge.config.BridgeConfig;
+import org.sagebionetworks.bridge.json.BridgeObjectMapper;
+import org.sagebionetworks.bridge.s3.S3Helper;
+
+public class SqsOutboxServiceTest {
+    private static final String FALLBACK_BUCKET = "fallback-bucket";
+    private static final String QUEUE_KEY = "test.queue.url";
+    private static final String QUEUE_URL = "http://example.com/test-queue";
+    private static final String OTHER_QUEUE_KEY = "other.queue.url";
+    private static final String OTHER_QUEUE_URL = "http://example.com/other-queue";
+    private static final int LINGER_MILLIS = 250;
+    private static final int MAX_BUFFERED_MESSAGES = 20;
+
+    @Mock
+    private BridgeConfig mockConfig;
+
+    @Mock
+    private ScheduledExecutorService mockExecutor;
+
+    @Mock
+    private S3Helper mockS3Helper;
+
+    @Mock
+    private AmazonSQS mockSqsClient;
+
+    private SqsOutboxService service;
+
+    @BeforeMethod
+    public void before() {
+        MockitoAnnotations.initMocks(this);
+
+        when(mockConfig.getProperty(QUEUE_KEY)).thenReturn(QUEUE_URL);
+        when(mockConfig.getProperty(OTHER_QUEUE_KEY)).thenReturn(OTHER_QUEUE_URL);
+        when(mockConfig.getProperty(SqsOutboxService.CONFIG_KEY_FALLBACK_BUCKET)).thenReturn(FALLBACK_BUCKET);
+        when(mockConfig.getPropertyAsInt(SqsOutboxService.CONFIG_KEY_LINGER_MILLIS)).thenReturn(LINGER_MILLIS);
+        when(mockConfig.getPropertyAsInt(SqsOutboxService.CONFIG_KEY_MAX_BUFFERED_MESSAGES))
+                .thenReturn(MAX_BUFFERED_MESSAGES);
+
+        when(mockSqsClient.sendMessage(any(), any())).thenReturn(new SendMessageResult().withMessageId("id"));
+        when(mockSqsClient.sendMessageBatch(any(SendMessageBatchRequest.class))).thenAnswer(invocation -> {
+            SendMessageBatchRequest request = invocation.getArgument(0);
+            SendMessageBatchResult result = new SendMessageBatchResult();
+            request.getEntries().forEach(entry -> result.withSuccessful(new SendMessageBatchResultEntry()
+                    .withId(entry.getId()).withMessageId("id-" + entry.getId())));
+            return result;
+        });
+
+        service = new SqsOutboxService();
+        service.setConfig(mockConfig);
+        service.setFlushExecutor(mockExecutor);
+        service.setS3Helper(mockS3Helper);
+        service.setSqsClient(mockSqsClient);
+    }
+
+    @Test
+    public void messagesAreBufferedAndBatched() {
+        service.sendMessage(QUEUE_KEY, "message-1", "test message 1");
+        service.sendMessage(QUEUE_KEY, "message-2", "test message 2");
+        service.sendMessage(QUEUE_KEY, "message-3", "test message 3");
+
+        // Nothing is sent until the flush. Flush is only scheduled once.
+        verifyZeroInteractions(mockSqsClient);
+        verify(mockExecutor, times(1)).schedule(any(Runnable.class), eq((long) LINGER_MILLIS),
+                eq(TimeUnit.MILLISECONDS));
+
+        service.flush();
+
+        ArgumentCaptor<SendMessageBatchRequest> requestCaptor = ArgumentCaptor.forClass(
+                SendMessageBatchRequest.class);
+        verify(mockSqsClient).sendMessageBatch(requestCaptor.capture());
+        SendMessageBatchRequest request = requestCaptor.getValue();
+        assertEquals(request.getQueueUrl(), QUEUE_URL);
+        assertEquals(request.getEntries().size(), 3);
+        assertEquals(request.getEntries().get(0).getMessageBody(), "message-1");
+        assertEquals(request.getEntries().get(1).getMessageBody(), "message-2");
+        assertEquals(request.getEntries().get(2).getMessageBody(), "message-3");
+        verify(mockSqsClient, never()).sendMessage(any(), any());
+
+        ObjectNode metrics = service.getMetrics();
+        assertEquals(metrics.get("batchCount").longValue(), 1L);
+        assertEquals(metrics.get("sentMessageCount").longValue(), 3L);
+        assertEquals(metrics.get("averageBatchSize").doubleValue(), 3.0, 0.001);
+        assertEquals(metrics.get("bufferedMessages").intValue(), 0);
+
+        // Queue URL is only read from config once.
+        verify(mockConfig, times(1)).getProperty(QUEUE_KEY);
+
+        // After a flush, the next message schedules a new flush.
+        service.sendMessage(QUEUE_KEY, "message-4", "test message 4");
+        verify(mockExecutor, times(2)).schedule(any(Runnable.class), anyLong(), any());
+    }
+
+    @Test
+    public void fullBatchFlushesImmediately() {
+        for (int i = 0; i < 12; i++) {
+            service.sendMessage(QUEUE_KEY, "message-" + i, "test message " + i);
+        }
+        verify(mockExecutor, times(3)).execute(any(Runnable.class));
+
+        service.flush();
+
+        ArgumentCaptor<SendMessageBatchRequest> requestCaptor = ArgumentCaptor.forClass(
+                SendMessageBatchRequest.class);
+        verify(mockSqsClient, times(2)).sendMessageBatch(requestCaptor.capture());
+        List<SendMessageBatchRequest> requestList = requestCaptor.getAllValues();
+        assertEquals(requestList.get(0).getEntries().size(), SqsOutboxService.MAX_BATCH_MESSAGES);
+        assertEquals(requestList.get(1).getEntries().size(), 2);
+    }
+
+    @Test
+    public void batchesAreSeparatedByQueue() {
+        service.sendMessage(QUEUE_KEY, "message-1", "test message 1");
+        service.sendMessage(OTHER_QUEUE_KEY, "message-2", "test message 2");
+        service.sendMessage(QUEUE_KEY, "message-3", "test message 3");
+        service.flush();
+
+        ArgumentCaptor<SendMessageBatchRequest> requestCaptor = ArgumentCaptor.forClass(
+                SendMessageBatchRequest.class);
+        verify(mockSqsClient, times(2)).sendMessageBatch(requestCaptor.capture());
+        List<SendMessageBatchRequest> requestList = requestCaptor.getAllValues();
+        assertEquals(requestList.get(0).getQueueUrl(), QUEUE_URL);
+        assertEquals(requestList.get(0).getEntries().size(), 2);
+        assertEquals(requestList.get(1).getQueueUrl(), OTHER_QUEUE_URL);
+        assertEquals(requestList.get(1).getEntries().size(), 1);
+    }
+
+    @Test
+    public void flushWithEmptyBuffer() {
+        service.flush();
+        verifyZeroInteractions(mockSqsClient, mockS3Helper);
+    }
+
+    @Test
+    public void disabledSendsSynchronously() {
+        when(mockConfig.getProperty(SqsOutboxService.CONFIG_KEY_ENABLED)).thenReturn("false");
+        service.setConfig(mockConfig);
+
+        service.sendMessage(QUEUE_KEY, "message-1", "test message 1");
+        verify(mockSqsClient).sendMessage(QUEUE_URL, "message-1");
+        verifyZeroInteractions(mockExecutor);
+    }
+
+    @Test
+    public void fullBufferSendsSynchronously() {
+        for (int i = 0; i < MAX_BUFFERED_MESSAGES + 1; i++) {
+            service.sendMessage(QUEUE_KEY, "message-" + i, "test message " + i);
+        }
+
+        // The last message didn't fit in the buffer.
+        verify(mockSqsClient).sendMessage(QUEUE_URL, "message-" + MAX_BUFFERED_MESSAGES);
+        assertEquals(service.getMetrics().get("overflowCount").longValue(), 1L);
+        assertEquals(service.getMetrics().get("bufferedMessages").intValue(), MAX_BUFFERED_MESSAGES);
+    }
+
+    @Test
+    public void failedEntriesAreRetriedIndividually() {
+        when(mockSqsClient.sendMessageBatch(any(SendMessageBatchRequest.class))).thenReturn(
+                new SendMessageBatchResult()
+                        .withSuccessful(new SendMessageBatchResultEntry().withId("0").withMessageId("id-0"))
+                        .withFailed(new BatchResultErrorEntry().withId("1").withCode("InternalError")
+                                .withSenderFault(false)));
+
+        service.sendMessage(QUEUE_KEY, "message-1", "test message 1");
+        service.sendMessage(QUEUE_KEY, "message-2", "test message 2");
+        service.flush();
+
+        verify(mockSqsClient).sendMessage(QUEUE_URL, "message-2");
+        verify(mockSqsClient, never()).sendMessage(QUEUE_URL, "message-1");
+        verifyZeroInteractions(mockS3Helper);
+        assertEquals(service.getMetrics().get("retriedMessageCount").longValue(), 1L);
+    }
+
+    @Test
+    public void undeliveredMessagesAreWrittenToS3() throws Exception {
+        when(mockSqsClient.sendMessageBatch(any(SendMessageBatchRequest.class))).thenThrow(
+                new AmazonSQSException("test exception"));
+        when(mockSqsClient.sendMessage(any(), any())).thenThrow(new AmazonSQSException("test exception"));
+
+        service.sendMessage(QUEUE_KEY, "message-1", "test message 1");
+        service.sendMessage(QUEUE_KEY, "message-2", "test message 2");
+        service.flush();
+
+        verify(mockSqsClient, times(2)).sendMessage(eq(QUEUE_URL), any());
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<String>> linesCaptor = ArgumentCaptor.forClass(List.class);
+        ArgumentCaptor<String> keyCaptor = ArgumentCaptor.forClass(String.class);
+        verify(mockS3Helper).writeLinesToS3(eq(FALLBACK_BUCKET), keyCaptor.capture(), linesCaptor.capture());
+        assertTrue(keyCaptor.getValue().startsWith(SqsOutboxService.FALLBACK_KEY_PREFIX));
+
+        List<String> lineList = linesCaptor.getValue();
+        assertEquals(lineList.size(), 2);
+        JsonNode line = BridgeObjectMapper.get().readTree(lineList.get(0));
+        assertEquals(line.get("queueUrl").textValue(), QUEUE_URL);
+        assertEquals(line.get("body").textValue(), "message-1");
+
+        assertEquals(service.getMetrics().get("undeliveredMessageCount").longValue(), 2L);
+    }
+
+    @Test
+    public void shutdownFlushesBuffer() {
+        service.sendMessage(QUEUE_KEY, "message-1", "test message 1");
+        service.shutdown();
+
+        verify(mockExecutor).shutdown();
+        verify(mockSqsClient).sendMessageBatch(any(SendMessageBatchRequest.class));
+    }
+
+    @Test
+    public void afterShutdownSendsSynchronously() {
+        when(mockExecutor.isShutdown()).thenReturn(true);
+
+        service.sendMessage(QUEUE_KEY, "message-1", "test message 1");
+
+        verify(mockSqsClient).sendMessage(QUEUE_URL, "message-1");
+        assertEquals(service.getMetrics().get("bufferedMessages").intValue(), 0);
+    }
+
+    @Test
+    public void rejectedFlushSendsSynchronously() {
+        when(mockExecutor.schedule(any(Runnable.class), anyLong(), any())).thenThrow(
+                new RejectedExecutionException());
+
+        service.sendMessage(QUEUE_KEY, "message-1", "test message 1");
+
+        verify(mockSqsClient).sendMessage(QUEUE_URL, "message-1");
+        verify(mockSqsClient, never()).sendMessageBatch(any(SendMessageBatchRequest.class));
+        assertEquals(service.getMetrics().get("bufferedMessages").intValue(), 0);
+    }
+
+    @Test(expectedExceptions = NullPointerException.class)
+    public void unknownQueue() {
+        service.sendMessage("unknown.queue.url", "message-1", "test message 1");
+    }
+}
@@ -291,7 +291,7 @@ public class StudyActivityEventServiceTest extends Mockito {
         verify(mockCacheProvider).setObject(ETAG_KEY, CREATED_ON);
 
         // verify alert for timeline retrieved
-        verify(alertService).createAlert(alertCaptor.capture());
+        verify(alertService).createCoalescedAlert(alertCaptor.capture());
         assertEquals(alertCaptor.getValue().getAppId(), TEST_APP_ID);
         assertEquals(alertCaptor.getValue().getStudyId(), TEST_STUDY_ID);
         assertEquals(alertCaptor.getValue().getUserId(), TEST_USER_ID);
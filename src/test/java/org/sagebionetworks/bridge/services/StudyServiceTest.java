@@ -22,6 +22,7 @@ import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNotEquals;
 import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNotSame;
 import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
@@ -35,6 +36,7 @@ import com.google.common.collect.Sets;
 import org.joda.time.DateTime;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
@@ -149,10 +151,119 @@ public class StudyServiceTest extends Mockito {
         
         verify(mockStudyDao).getStudy(TEST_APP_ID, TEST_STUDY_ID);
         
+        // The etag is missing, so it's set, but only if it's still missing.
         CacheKey cacheKey = CacheKey.etag(Study.class, TEST_APP_ID, TEST_STUDY_ID);
-        verify(mockCacheProvider).setObject(cacheKey, MODIFIED_ON);
+        verify(mockCacheProvider).setObjectIfAbsent(cacheKey, MODIFIED_ON);
+        verify(mockCacheProvider, never()).setObject(any(), any());
+    }
+    
+    @Test
+    public void getStudyIsMemoizedForRequest() {
+        Study study = Study.create();
+        study.setModifiedOn(MODIFIED_ON);
+        when(mockStudyDao.getStudy(TEST_APP_ID, TEST_STUDY_ID)).thenReturn(study);
+
+        assertSame(service.getStudy(TEST_APP_ID, TEST_STUDY_ID, true), study);
+        assertSame(service.getStudy(TEST_APP_ID, TEST_STUDY_ID, true), study);
+
+        verify(mockStudyDao, times(1)).getStudy(TEST_APP_ID, TEST_STUDY_ID);
+        verify(mockCacheProvider, times(1)).setObjectIfAbsent(any(), any());
+    }
+
+    @Test
+    public void getStudyUsesCachedStudyAcrossRequests() {
+        Study study = Study.create();
+        study.setAppId(TEST_APP_ID);
+        study.setIdentifier(TEST_STUDY_ID);
+        study.setName("Study name");
+        study.setPhase(DESIGN);
+        study.setLogoGuid("logo-guid");
+        study.setModifiedOn(MODIFIED_ON);
+        when(mockStudyDao.getStudy(TEST_APP_ID, TEST_STUDY_ID)).thenReturn(study);
+        
+        CacheKey cacheKey = CacheKey.etag(Study.class, TEST_APP_ID, TEST_STUDY_ID);
+        when(mockCacheProvider.getObject(cacheKey, DateTime.class)).thenReturn(MODIFIED_ON);
+        
+        service.getStudy(TEST_APP_ID, TEST_STUDY_ID, true);
+        
+        // A new request gets a copy of the cached study, and the etag is not rewritten.
+        RequestContext.set(new RequestContext.Builder().withCallerOrgMembership(TEST_ORG_ID).build());
+        Study cachedStudy = service.getStudy(TEST_APP_ID, TEST_STUDY_ID, true);
+        assertNotSame(cachedStudy, study);
+        assertEquals(cachedStudy.getAppId(), TEST_APP_ID);
+        assertEquals(cachedStudy.getIdentifier(), TEST_STUDY_ID);
+        assertEquals(cachedStudy.getName(), "Study name");
+        assertEquals(cachedStudy.getPhase(), DESIGN);
+        assertEquals(cachedStudy.getLogoGuid(), "logo-guid");
+        assertEquals(cachedStudy.getModifiedOn().getMillis(), MODIFIED_ON.getMillis());
+        
+        verify(mockStudyDao, times(1)).getStudy(TEST_APP_ID, TEST_STUDY_ID);
+        verify(mockCacheProvider, never()).setObject(any(), any());
+        verify(mockCacheProvider, never()).setObjectIfAbsent(any(), any());
+    }
+    
+    @Test
+    public void getStudyReloadsCachedStudyWhenEtagChanges() {
+        Study study = Study.create();
+        study.setIdentifier(TEST_STUDY_ID);
+        study.setModifiedOn(MODIFIED_ON);
+        when(mockStudyDao.getStudy(TEST_APP_ID, TEST_STUDY_ID)).thenReturn(study);
+        
+        CacheKey cacheKey = CacheKey.etag(Study.class, TEST_APP_ID, TEST_STUDY_ID);
+        when(mockCacheProvider.getObject(cacheKey, DateTime.class)).thenReturn(MODIFIED_ON, 
+                MODIFIED_ON.plusHours(1));
+        
+        service.getStudy(TEST_APP_ID, TEST_STUDY_ID, true);
+        
+        // The study was changed on another server.
+        RequestContext.set(new RequestContext.Builder().withCallerOrgMembership(TEST_ORG_ID).build());
+        service.getStudy(TEST_APP_ID, TEST_STUDY_ID, true);
+        
+        verify(mockStudyDao, times(2)).getStudy(TEST_APP_ID, TEST_STUDY_ID);
+        // The newer etag belongs to the write on the other server; a read never overwrites it.
+        verify(mockCacheProvider, never()).setObject(any(), any());
+        verify(mockCacheProvider, never()).setObjectIfAbsent(any(), any());
+    }
+    
+    @Test
+    public void updateStudyRemovesCachedStudy() {
+        Study existing = Study.create();
+        existing.setIdentifier(TEST_STUDY_ID);
+        existing.setName("oldName");
+        existing.setPhase(DESIGN);
+        existing.setModifiedOn(MODIFIED_ON);
+        when(mockStudyDao.getStudy(TEST_APP_ID, TEST_STUDY_ID)).thenReturn(existing);
+        
+        CacheKey cacheKey = CacheKey.etag(Study.class, TEST_APP_ID, TEST_STUDY_ID);
+        when(mockCacheProvider.getObject(cacheKey, DateTime.class)).thenReturn(MODIFIED_ON);
+        service.getStudy(TEST_APP_ID, TEST_STUDY_ID, true);
+        
+        Study study = Study.create();
+        study.setIdentifier(TEST_STUDY_ID);
+        study.setName("newName");
+        service.updateStudy(TEST_APP_ID, study);
+        
+        RequestContext.set(new RequestContext.Builder().withCallerOrgMembership(TEST_ORG_ID).build());
+        service.getStudy(TEST_APP_ID, TEST_STUDY_ID, true);
+        
+        // Initial read, the persisted study in the update, and the read after the update.
+        verify(mockStudyDao, times(3)).getStudy(TEST_APP_ID, TEST_STUDY_ID);
     }
     
+    @Test
+    public void deleteStudyRemovesMemoizedStudy() {
+        Study study = Study.create();
+        study.setPhase(DESIGN);
+        when(mockStudyDao.getStudy(TEST_APP_ID, TEST_STUDY_ID)).thenReturn(study);
+        service.getStudy(TEST_APP_ID, TEST_STUDY_ID, true);
+
+        // The delete uses the memoized study, but the next read goes back to the DAO.
+        service.deleteStudy(TEST_APP_ID, TEST_STUDY_ID);
+        service.getStudy(TEST_APP_ID, TEST_STUDY_ID, false);
+
+        verify(mockStudyDao, times(2)).getStudy(TEST_APP_ID, TEST_STUDY_ID);
+    }
+
     @Test
     public void getZoneId_clientTimeZoneReturned() {
         String retValue = service.getZoneId(TEST_APP_ID, TEST_STUDY_ID, TEST_CLIENT_TIME_ZONE);
@@ -1053,6 +1164,12 @@ public class StudyServiceTest extends Mockito {
         
         verify(mockCacheProvider).removeObject(CacheKey.etag(Schedule2.class, TEST_APP_ID, "studyA"));
         verify(mockCacheProvider).removeObject(CacheKey.etag(Schedule2.class, TEST_APP_ID, "studyB"));
+        
+        // The studies' own etags are removed after the schedule is removed from them.
+        InOrder inOrder = inOrder(mockStudyDao, mockCacheProvider);
+        inOrder.verify(mockStudyDao).removeScheduleFromStudies(TEST_APP_ID, SCHEDULE_GUID);
+        inOrder.verify(mockCacheProvider).removeObject(CacheKey.etag(Study.class, TEST_APP_ID, "studyA"));
+        inOrder.verify(mockCacheProvider).removeObject(CacheKey.etag(Study.class, TEST_APP_ID, "studyB"));
     }
     
     @Test
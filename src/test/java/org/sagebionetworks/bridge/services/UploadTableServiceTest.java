@@ -1,11 +1,13 @@
 package org.sagebionetworks.bridge.services;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.same;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
@@ -20,14 +22,14 @@ import static org.testng.Assert.fail;
 
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 import com.amazonaws.HttpMethod;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.model.GeneratePresignedUrlRequest;
-import com.amazonaws.services.sqs.AmazonSQS;
-import com.amazonaws.services.sqs.model.SendMessageResult;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
@@ -65,6 +67,7 @@ import org.sagebionetworks.bridge.upload.UploadTableJob;
 import org.sagebionetworks.bridge.upload.UploadTableJobGuidHolder;
 import org.sagebionetworks.bridge.upload.UploadTableJobResult;
 import org.sagebionetworks.bridge.upload.UploadTableRow;
+import org.sagebionetworks.bridge.upload.UploadTableRowBatchResult;
 import org.sagebionetworks.bridge.upload.UploadTableRowQuery;
 
 public class UploadTableServiceTest {
@@ -76,13 +79,12 @@ public class UploadTableServiceTest {
     private static final String RECORD_ID = "test-record";
     private static final String S3_KEY = "dummy-s3-key";
     private static final String S3_URL = "https://example.com/dummy-s3-bucket/dummy-s3-key";
-    private static final String WORKER_QUEUE_URL = "http://example.com/dummy-sqs-url";
 
     @Mock
     private AmazonS3 mockS3Client;
 
     @Mock
-    private AmazonSQS mockSqsClient;
+    private SqsOutboxService mockSqsOutboxService;
 
     @Mock
     private StudyService mockStudyService;
@@ -113,7 +115,6 @@ public class UploadTableServiceTest {
 
         BridgeConfig mockConfig = mock(BridgeConfig.class);
         when(mockConfig.getProperty(UploadTableService.CONFIG_KEY_RAW_HEALTH_DATA_BUCKET)).thenReturn(RAW_DATA_BUCKET);
-        when(mockConfig.getProperty(BridgeConstants.CONFIG_KEY_WORKER_SQS_URL)).thenReturn(WORKER_QUEUE_URL);
         service.setConfig(mockConfig);
     }
 
@@ -314,8 +315,6 @@ public class UploadTableServiceTest {
         when(mockUploadTableJobDao.listUploadTableJobsForStudy(TestConstants.TEST_APP_ID,
                 TestConstants.TEST_STUDY_ID, 0, 1)).thenReturn(jobList);
 
-        // Mock SQS. Return type doesn't actually matter except for logs, but we don't want it to be null.
-        when(mockSqsClient.sendMessage(any(), any())).thenReturn(new SendMessageResult());
 
         // Execute and verify.
         UploadTableJobGuidHolder jobGuidHolder = service.requestUploadTableForStudy(TestConstants.TEST_APP_ID,
@@ -334,7 +333,8 @@ public class UploadTableServiceTest {
 
         // Verify call to SQS.
         ArgumentCaptor<String> requestJsonTextCaptor = ArgumentCaptor.forClass(String.class);
-        verify(mockSqsClient).sendMessage(eq(WORKER_QUEUE_URL), requestJsonTextCaptor.capture());
+        verify(mockSqsOutboxService).sendMessage(eq(BridgeConstants.CONFIG_KEY_WORKER_SQS_URL),
+                requestJsonTextCaptor.capture(), anyString());
 
         String requestJsonText = requestJsonTextCaptor.getValue();
         WorkerRequest workerRequest = BridgeObjectMapper.get().readValue(requestJsonText, WorkerRequest.class);
@@ -364,8 +364,6 @@ public class UploadTableServiceTest {
         when(mockUploadService.getAppUploads(TestConstants.TEST_APP_ID, job.getRequestedOn(), MOCK_NOW, 1, null))
                 .thenReturn(new ForwardCursorPagedResourceList<>(ImmutableList.of(new UploadView.Builder().build()), null));
 
-        // Mock SQS. Return type doesn't actually matter except for logs, but we don't want it to be null.
-        when(mockSqsClient.sendMessage(any(), any())).thenReturn(new SendMessageResult());
 
         // Execute and verify.
         UploadTableJobGuidHolder jobGuidHolder = service.requestUploadTableForStudy(TestConstants.TEST_APP_ID,
@@ -374,7 +372,7 @@ public class UploadTableServiceTest {
 
         // Verify call to back-ends. We don't care about the parameters. This was tested in the previous test.
         verify(mockUploadTableJobDao).saveUploadTableJob(any());
-        verify(mockSqsClient).sendMessage(eq(WORKER_QUEUE_URL), any());
+        verify(mockSqsOutboxService).sendMessage(eq(BridgeConstants.CONFIG_KEY_WORKER_SQS_URL), any(), anyString());
     }
 
     @Test(expectedExceptions = EntityNotFoundException.class)
@@ -581,6 +579,58 @@ public class UploadTableServiceTest {
         }
     }
 
+    @Test
+    public void queryUploadTableRowsByCursor() {
+        // Set up mocks.
+        ForwardCursorPagedResourceList<UploadTableRow> page = new ForwardCursorPagedResourceList<>(ImmutableList.of(),
+                null, true);
+        when(mockUploadTableRowDao.queryUploadTableRowsByCursor(any())).thenReturn(page);
+
+        // Execute and verify.
+        UploadTableRowQuery query = new UploadTableRowQuery();
+        ForwardCursorPagedResourceList<UploadTableRow> result = service.queryUploadTableRowsByCursor(
+                TestConstants.TEST_APP_ID, TestConstants.TEST_STUDY_ID, query);
+        assertSame(result, page);
+        verify(mockUploadTableRowDao).queryUploadTableRowsByCursor(same(query));
+
+        // Verify that the query was updated with appId and studyId.
+        assertEquals(query.getAppId(), TestConstants.TEST_APP_ID);
+        assertEquals(query.getStudyId(), TestConstants.TEST_STUDY_ID);
+    }
+
+    @Test
+    public void streamUploadTableRows() {
+        // Set up mocks.
+        when(mockUploadTableRowDao.streamUploadTableRows(any(), any())).thenReturn(3);
+
+        // Execute and verify.
+        UploadTableRowQuery query = new UploadTableRowQuery();
+        Consumer<UploadTableRow> consumer = row -> {};
+        int count = service.streamUploadTableRows(TestConstants.TEST_APP_ID, TestConstants.TEST_STUDY_ID, query,
+                consumer);
+        assertEquals(count, 3);
+        verify(mockUploadTableRowDao).streamUploadTableRows(same(query), same(consumer));
+        assertEquals(query.getAppId(), TestConstants.TEST_APP_ID);
+        assertEquals(query.getStudyId(), TestConstants.TEST_STUDY_ID);
+    }
+
+    @Test
+    public void streamUploadTableRows_invalidQuery() {
+        // Offset key and start can't both be specified.
+        UploadTableRowQuery query = new UploadTableRowQuery();
+        query.setStart(0);
+        query.setOffsetKey("1525132800000:test-record");
+
+        // Execute - This throws before reading any rows.
+        try {
+            service.streamUploadTableRows(TestConstants.TEST_APP_ID, TestConstants.TEST_STUDY_ID, query, row -> {});
+            fail("expected exception");
+        } catch (InvalidEntityException ex) {
+            // expected exception
+        }
+        verify(mockUploadTableRowDao, never()).streamUploadTableRows(any(), any());
+    }
+
     @Test
     public void saveUploadTableRow() {
         // Execute and verify.
@@ -638,6 +688,93 @@ public class UploadTableServiceTest {
         }
     }
 
+    @Test
+    public void saveUploadTableRows() {
+        UploadTableRow row1 = makeValidRow();
+        UploadTableRow row2 = makeValidRow();
+        row2.setRecordId("other-record");
+        row2.setCreatedOn(TestConstants.CREATED_ON);
+
+        // Execute and verify.
+        UploadTableRowBatchResult result = service.saveUploadTableRows(TestConstants.TEST_APP_ID,
+                TestConstants.TEST_STUDY_ID, ImmutableList.of(row1, row2));
+        assertEquals(result.getSavedCount(), 2);
+        assertTrue(result.getErrors().isEmpty());
+
+        verify(mockStudyService).getStudy(TestConstants.TEST_APP_ID, TestConstants.TEST_STUDY_ID, true);
+        verify(mockUploadTableRowDao).saveUploadTableRows(ImmutableList.of(row1, row2));
+        verify(mockUploadTableRowDao, never()).saveUploadTableRow(any());
+
+        // Rows are updated with appId and studyId, and createdOn defaults to now.
+        assertEquals(row1.getAppId(), TestConstants.TEST_APP_ID);
+        assertEquals(row1.getStudyId(), TestConstants.TEST_STUDY_ID);
+        assertEquals(row1.getCreatedOn().getMillis(), MOCK_NOW.getMillis());
+        assertEquals(row2.getAppId(), TestConstants.TEST_APP_ID);
+        assertEquals(row2.getStudyId(), TestConstants.TEST_STUDY_ID);
+        assertEquals(row2.getCreatedOn(), TestConstants.CREATED_ON);
+    }
+
+    @Test
+    public void saveUploadTableRows_invalidRowsAreReported() {
+        UploadTableRow validRow = makeValidRow();
+        UploadTableRow invalidRow = makeValidRow();
+        invalidRow.setRecordId("   ");
+        List<UploadTableRow> rows = new ArrayList<>();
+        rows.add(invalidRow);
+        rows.add(validRow);
+        rows.add(null);
+
+        // Execute and verify.
+        UploadTableRowBatchResult result = service.saveUploadTableRows(TestConstants.TEST_APP_ID,
+                TestConstants.TEST_STUDY_ID, rows);
+        assertEquals(result.getSavedCount(), 1);
+        assertEquals(result.getErrors().size(), 2);
+        assertEquals(result.getErrors().get("0").get("recordId"), ImmutableList.of("recordId is required"));
+        assertTrue(result.getErrors().containsKey("2"));
+
+        // Only the valid row is saved.
+        verify(mockUploadTableRowDao).saveUploadTableRows(ImmutableList.of(validRow));
+    }
+
+    @Test(expectedExceptions = BadRequestException.class)
+    public void saveUploadTableRows_noRows() {
+        service.saveUploadTableRows(TestConstants.TEST_APP_ID, TestConstants.TEST_STUDY_ID, ImmutableList.of());
+    }
+
+    @Test
+    public void saveUploadTableRows_tooManyRows() {
+        List<UploadTableRow> rows = new ArrayList<>();
+        for (int i = 0; i <= UploadTableService.MAX_ROWS_PER_BATCH; i++) {
+            rows.add(makeValidRow());
+        }
+
+        // Execute - This throws.
+        try {
+            service.saveUploadTableRows(TestConstants.TEST_APP_ID, TestConstants.TEST_STUDY_ID, rows);
+            fail("expected exception");
+        } catch (BadRequestException ex) {
+            assertEquals(ex.getMessage(), UploadTableService.TOO_MANY_ROWS_ERROR);
+        }
+        verifyZeroInteractions(mockUploadTableRowDao);
+    }
+
+    @Test
+    public void saveUploadTableRows_studyDoesntExist() {
+        // Set up mocks.
+        doThrow(new EntityNotFoundException(Study.class)).when(mockStudyService).getStudy(TestConstants.TEST_APP_ID,
+                TestConstants.TEST_STUDY_ID, true);
+
+        // Execute - This throws.
+        try {
+            service.saveUploadTableRows(TestConstants.TEST_APP_ID, TestConstants.TEST_STUDY_ID,
+                    ImmutableList.of(makeValidRow()));
+            fail("expected exception");
+        } catch (EntityNotFoundException ex) {
+            assertEquals(ex.getEntityClass(), "Study");
+        }
+        verifyZeroInteractions(mockUploadTableRowDao);
+    }
+
     private static UploadTableRow makeValidRow() {
         UploadTableRow row = UploadTableRow.create();
         row.setRecordId(RECORD_ID);
@@ -79,6 +79,7 @@ import org.sagebionetworks.bridge.models.Metrics;
 import org.sagebionetworks.bridge.models.OperatingSystem;
 import org.sagebionetworks.bridge.models.RequestInfo;
 import org.sagebionetworks.bridge.models.accounts.Account;
+import org.sagebionetworks.bridge.models.accounts.AccountField;
 import org.sagebionetworks.bridge.models.accounts.StudyParticipant;
 import org.sagebionetworks.bridge.models.accounts.UserSession;
 import org.sagebionetworks.bridge.models.activities.CustomActivityEventRequest;
@@ -369,7 +370,7 @@ public class BaseControllerTest extends Mockito {
         
         controller.getLanguages(session);
         
-        verify(mockAccountService).editAccount(eq(ACCOUNT_ID_WITH_HEALTHCODE), any());
+        verify(mockAccountService).editAccountField(eq(ACCOUNT_ID_WITH_HEALTHCODE), eq(AccountField.LANGUAGES), any());
         verify(mockSessionUpdateService).updateLanguage(eq(session), contextCaptor.capture());
         
         CriteriaContext context = contextCaptor.getValue();
@@ -387,7 +388,7 @@ public class BaseControllerTest extends Mockito {
         List<String> returnedLangs = controller.getLanguages(session);
         assertEquals(returnedLangs, ImmutableList.of("fr"));
         
-        verify(mockAccountService, never()).editAccount(any(), any());
+        verify(mockAccountService, never()).editAccountField(any(), any(), any());
         verify(mockSessionUpdateService, never()).updateLanguage(any(), any());
     }
 
@@ -625,10 +626,10 @@ public class BaseControllerTest extends Mockito {
     public void canGetLanguagesWhenInHeader() throws Exception {
         Account account = Account.create();
         doAnswer(invocation -> {
-            Consumer<Account> consumer = invocation.getArgument(1);
+            Consumer<Account> consumer = invocation.getArgument(2);
             consumer.accept(account);
             return null;
-        }).when(mockAccountService).editAccount(any(), any());
+        }).when(mockAccountService).editAccountField(any(), any(), any());
         
         // Set up mocks.
         when(mockRequest.getHeader(ACCEPT_LANGUAGE)).thenReturn("en,fr");
@@ -642,7 +643,7 @@ public class BaseControllerTest extends Mockito {
         assertEquals(LANGUAGES, languages);
 
         // Verify we saved the language to the account.
-        verify(mockAccountService).editAccount(eq(ACCOUNT_ID_WITH_HEALTHCODE), any());
+        verify(mockAccountService).editAccountField(eq(ACCOUNT_ID_WITH_HEALTHCODE), eq(AccountField.LANGUAGES), any());
         assertEquals(account.getLanguages(), LANGUAGES);
 
         // Verify we call through to the session update service. (This updates both the cache and the participant, as
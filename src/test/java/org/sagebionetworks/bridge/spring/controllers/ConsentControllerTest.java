@@ -15,6 +15,7 @@ import static org.sagebionetworks.bridge.TestUtils.assertGet;
 import static org.sagebionetworks.bridge.TestUtils.assertPost;
 import static org.sagebionetworks.bridge.TestUtils.createJson;
 import static org.sagebionetworks.bridge.TestUtils.mockRequestBody;
+import static org.sagebionetworks.bridge.models.accounts.AccountField.SHARING_SCOPE;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertTrue;
@@ -164,7 +165,8 @@ public class ConsentControllerTest extends Mockito {
         UserSession retrievedSession = BridgeObjectMapper.get().treeToValue(result, UserSession.class);
         assertEquals(retrievedSession.getSessionToken(), ORIGINAL_SESSION_TOKEN);
         
-        verify(mockAccountService).editAccount(eq(ACCOUNT_ID_WITH_HEALTHCODE), accountConsumerCaptor.capture());
+        verify(mockAccountService).editAccountField(eq(ACCOUNT_ID_WITH_HEALTHCODE), eq(SHARING_SCOPE),
+                accountConsumerCaptor.capture());
         verify(mockSessionUpdateService).updateSharingScope(session, SharingScope.ALL_QUALIFIED_RESEARCHERS);
         
         // This works as a verification because the lambda carries a closure that includes the correct sharing 
@@ -384,7 +386,7 @@ public class ConsentControllerTest extends Mockito {
     @SuppressWarnings("deprecation")
     public void dataSharingSuspendedUpdatesSession() throws Exception {
         Account account = Mockito.mock(Account.class);
-        TestUtils.mockEditAccount(mockAccountService, account);
+        TestUtils.mockEditAccountField(mockAccountService, account);
         
         doAnswer((InvocationOnMock invocation) -> {
             session.setParticipant(new StudyParticipant.Builder().copyOf(session.getParticipant())
@@ -399,14 +401,14 @@ public class ConsentControllerTest extends Mockito {
 
         verify(account).setSharingScope(SharingScope.NO_SHARING);
         
-        verify(mockAccountService).editAccount(eq(ACCOUNT_ID_WITH_HEALTHCODE), any());
+        verify(mockAccountService).editAccountField(eq(ACCOUNT_ID_WITH_HEALTHCODE), eq(SHARING_SCOPE), any());
     }
     
     @Test
     @SuppressWarnings("deprecation")
     public void dataSharingResumedUpdatesSession() throws Exception {
         Account account = Mockito.mock(Account.class);
-        TestUtils.mockEditAccount(mockAccountService, account);
+        TestUtils.mockEditAccountField(mockAccountService, account);
 
         doAnswer((InvocationOnMock invocation) -> {
             session.setParticipant(new StudyParticipant.Builder().copyOf(session.getParticipant())
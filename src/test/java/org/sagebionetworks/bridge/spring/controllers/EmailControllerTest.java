@@ -2,7 +2,7 @@ package org.sagebionetworks.bridge.spring.controllers;
 
 import static org.sagebionetworks.bridge.TestConstants.TEST_APP_ID;
 import static org.sagebionetworks.bridge.TestConstants.TEST_USER_ID;
-import static org.sagebionetworks.bridge.TestUtils.mockEditAccount;
+import static org.sagebionetworks.bridge.TestUtils.mockEditAccountField;
 import static org.testng.Assert.assertEquals;
 
 import java.util.Map;
@@ -69,7 +69,7 @@ public class EmailControllerTest extends Mockito {
             .thenReturn(Optional.of(TEST_USER_ID));
         doReturn(mockRequest).when(controller).request();
         doReturn(mockResponse).when(controller).response();
-        mockEditAccount(mockAccountService, mockAccount);
+        mockEditAccountField(mockAccountService, mockAccount);
         
         app = App.create();
         app.setIdentifier(TEST_APP_ID);
@@ -130,7 +130,7 @@ public class EmailControllerTest extends Mockito {
         assertEquals(result, "Email not found.");
     }
 
-    // noAccountThrowsException is now handled by the call to editAccount
+    // noAccountThrowsException is now handled by the call to editAccountField
 
     @Test
     public void missingTokenThrowsException() throws Exception {
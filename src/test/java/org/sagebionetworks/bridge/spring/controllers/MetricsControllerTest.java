@@ -0,0 +1,97 @@
+package org.sagebionetworks.bridge.spring.controllers;
+
+import static org.sagebionetworks.bridge.Roles.ADMIN;
+import static org.sagebionetworks.bridge.TestUtils.assertCrossOrigin;
+import static org.sagebionetworks.bridge.TestUtils.assertGet;
+import static org.testng.Assert.assertEquals;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import org.sagebionetworks.bridge.exceptions.UnauthorizedException;
+import org.sagebionetworks.bridge.hibernate.ConnectionPoolMonitor;
+import org.sagebionetworks.bridge.hibernate.HibernateCacheInvalidator;
+import org.sagebionetworks.bridge.json.BridgeObjectMapper;
+import org.sagebionetworks.bridge.models.accounts.UserSession;
+import org.sagebionetworks.bridge.services.PasswordVerificationService;
+import org.sagebionetworks.bridge.services.RouteMetricsService;
+import org.sagebionetworks.bridge.services.SqsOutboxService;
+import org.sagebionetworks.bridge.spring.filters.AdmissionControlFilter;
+
+public class MetricsControllerTest extends Mockito {
+
+    @Mock
+    RouteMetricsService mockRouteMetricsService;
+
+    @Mock
+    ConnectionPoolMonitor mockConnectionPoolMonitor;
+
+    @Mock
+    HibernateCacheInvalidator mockHibernateCacheInvalidator;
+
+    @Mock
+    SqsOutboxService mockSqsOutboxService;
+
+    @Mock
+    PasswordVerificationService mockPasswordVerificationService;
+
+    @Mock
+    AdmissionControlFilter mockAdmissionControlFilter;
+
+    @InjectMocks
+    @Spy
+    MetricsController controller = new MetricsController();
+
+    @BeforeMethod
+    public void beforeMethod() {
+        MockitoAnnotations.initMocks(this);
+
+        doReturn(new UserSession()).when(controller).getAuthenticatedSession(ADMIN);
+    }
+
+    @Test
+    public void verifyAnnotations() throws Exception {
+        assertCrossOrigin(MetricsController.class);
+        assertGet(MetricsController.class, "getMetrics");
+    }
+
+    @Test
+    public void getMetrics() {
+        when(mockRouteMetricsService.getMetrics()).thenReturn(metricsNode("routeCount"));
+        when(mockConnectionPoolMonitor.getMetrics()).thenReturn(metricsNode("poolCount"));
+        when(mockHibernateCacheInvalidator.getMetrics()).thenReturn(metricsNode("cacheCount"));
+        when(mockSqsOutboxService.getMetrics()).thenReturn(metricsNode("outboxCount"));
+        when(mockPasswordVerificationService.getMetrics()).thenReturn(metricsNode("hashCount"));
+        when(mockAdmissionControlFilter.getMetrics()).thenReturn(metricsNode("admissionCount"));
+
+        JsonNode node = controller.getMetrics();
+
+        assertEquals(node.get("routes").get("routeCount").intValue(), 1);
+        assertEquals(node.get("connectionPool").get("poolCount").intValue(), 1);
+        assertEquals(node.get("hibernateCache").get("cacheCount").intValue(), 1);
+        assertEquals(node.get("sqsOutbox").get("outboxCount").intValue(), 1);
+        assertEquals(node.get("passwordHashing").get("hashCount").intValue(), 1);
+        assertEquals(node.get("admission").get("admissionCount").intValue(), 1);
+        verify(controller).getAuthenticatedSession(ADMIN);
+    }
+
+    @Test(expectedExceptions = UnauthorizedException.class)
+    public void getMetricsRequiresAdmin() {
+        doThrow(new UnauthorizedException()).when(controller).getAuthenticatedSession(ADMIN);
+
+        controller.getMetrics();
+    }
+
+    private static ObjectNode metricsNode(String field) {
+        ObjectNode node = BridgeObjectMapper.get().createObjectNode();
+        node.put(field, 1);
+        return node;
+    }
+}
@@ -11,7 +11,7 @@ import static org.sagebionetworks.bridge.TestConstants.USER_STUDY_IDS;
 import static org.sagebionetworks.bridge.TestUtils.assertCrossOrigin;
 import static org.sagebionetworks.bridge.TestUtils.assertGet;
 import static org.sagebionetworks.bridge.TestUtils.assertPost;
-import static org.sagebionetworks.bridge.TestUtils.mockEditAccount;
+import static org.sagebionetworks.bridge.TestUtils.mockEditAccountField;
 import static org.sagebionetworks.bridge.TestUtils.mockRequestBody;
 import static org.sagebionetworks.bridge.config.Environment.UAT;
 import static org.testng.Assert.assertEquals;
@@ -220,7 +220,7 @@ public class ScheduledActivityControllerTest extends Mockito {
     @SuppressWarnings("deprecation")
     @Test
     public void timeZoneCapturedFirstTime() throws Exception {
-        mockEditAccount(mockAccountService, mockAccount);
+        mockEditAccountField(mockAccountService, mockAccount);
         
         DateTimeZone MSK = DateTimeZone.forOffsetHours(3);
         controller.getScheduledActivities(null, "+03:00", "3", "5");
@@ -262,7 +262,7 @@ public class ScheduledActivityControllerTest extends Mockito {
     @SuppressWarnings("deprecation")
     @Test
     public void getScheduledActivtiesAssemblesCorrectContext() throws Exception {
-        mockEditAccount(mockAccountService, mockAccount);
+        mockEditAccountField(mockAccountService, mockAccount);
         DateTimeZone MSK = DateTimeZone.forOffsetHours(3);
         List<ScheduledActivity> list = ImmutableList.of();
         when(mockScheduledActivityService.getScheduledActivities(eq(APP), any(ScheduleContext.class))).thenReturn(list);
@@ -520,7 +520,7 @@ public class ScheduledActivityControllerTest extends Mockito {
         DateTime startsOn = DateTime.now(zone).minusMinutes(1);
         DateTime endsOn = DateTime.now(zone).plusDays(7);
 
-        mockEditAccount(mockAccountService, mockAccount);
+        mockEditAccountField(mockAccountService, mockAccount);
         
         String result = controller.getScheduledActivitiesByDateRange(startsOn.toString(), endsOn.toString());
         
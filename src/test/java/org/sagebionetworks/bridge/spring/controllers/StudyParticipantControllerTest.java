@@ -31,6 +31,7 @@ import static org.sagebionetworks.bridge.TestUtils.assertPost;
 import static org.sagebionetworks.bridge.TestUtils.createJson;
 import static org.sagebionetworks.bridge.TestUtils.mockRequestBody;
 import static org.sagebionetworks.bridge.cache.CacheKey.scheduleModificationTimestamp;
+import static org.sagebionetworks.bridge.models.accounts.AccountField.CLIENT_TIME_ZONE;
 import static org.sagebionetworks.bridge.models.activities.ActivityEventObjectType.TIMELINE_RETRIEVED;
 import static org.sagebionetworks.bridge.models.activities.ActivityEventUpdateType.IMMUTABLE;
 import static org.sagebionetworks.bridge.models.activities.ActivityEventUpdateType.MUTABLE;
@@ -1980,12 +1981,12 @@ public class StudyParticipantControllerTest extends Mockito {
                 eq(TEST_APP_ID), eq(TEST_STUDY_ID), any())).thenReturn(schedule);
         
         Account mockAccount = mock(Account.class);
-        TestUtils.mockEditAccount(mockAccountService, mockAccount);
+        TestUtils.mockEditAccountField(mockAccountService, mockAccount);
         
         ParticipantSchedule retValue = controller.getParticipantScheduleForSelf(TEST_STUDY_ID, TEST_CLIENT_TIME_ZONE);
         assertSame(retValue, schedule);
 
-        ordered.verify(mockAccountService).editAccount(eq(ACCOUNT_ID), any());
+        ordered.verify(mockAccountService).editAccountField(eq(ACCOUNT_ID), eq(CLIENT_TIME_ZONE), any());
         ordered.verify(mockSessionUpdateService).updateClientTimeZone(session, TEST_CLIENT_TIME_ZONE);
         assertEquals(account.getClientTimeZone(), TEST_CLIENT_TIME_ZONE);
         verify(mockAccount).setClientTimeZone(TEST_CLIENT_TIME_ZONE);
@@ -2020,11 +2021,11 @@ public class StudyParticipantControllerTest extends Mockito {
                 eq(TEST_APP_ID), eq(TEST_STUDY_ID), any())).thenReturn(schedule);
         
         Account mockAccount = mock(Account.class);
-        TestUtils.mockEditAccount(mockAccountService, mockAccount);
+        TestUtils.mockEditAccountField(mockAccountService, mockAccount);
         
         controller.getParticipantScheduleForSelf(TEST_STUDY_ID, TEST_CLIENT_TIME_ZONE);
         
-        verify(mockAccountService).editAccount(eq(ACCOUNT_ID), any());
+        verify(mockAccountService).editAccountField(eq(ACCOUNT_ID), eq(CLIENT_TIME_ZONE), any());
         verify(mockSessionUpdateService).updateClientTimeZone(session, TEST_CLIENT_TIME_ZONE);
         assertEquals(account.getClientTimeZone(), TEST_CLIENT_TIME_ZONE);
         verify(mockAccount).setClientTimeZone(TEST_CLIENT_TIME_ZONE);
@@ -2046,7 +2047,7 @@ public class StudyParticipantControllerTest extends Mockito {
         
         controller.getParticipantScheduleForSelf(TEST_STUDY_ID, TEST_CLIENT_TIME_ZONE);
         
-        verify(mockAccountService, never()).editAccount(any(), any());
+        verify(mockAccountService, never()).editAccountField(any(), any(), any());
         verify(mockSessionUpdateService, never()).updateClientTimeZone(any(), any());
         assertEquals(account.getClientTimeZone(), TEST_CLIENT_TIME_ZONE);
     }
@@ -2,7 +2,9 @@ package org.sagebionetworks.bridge.spring.controllers;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.verify;
 import static org.sagebionetworks.bridge.TestUtils.assertCrossOrigin;
 import static org.sagebionetworks.bridge.TestUtils.assertDelete;
@@ -10,24 +12,33 @@ import static org.sagebionetworks.bridge.TestUtils.assertGet;
 import static org.sagebionetworks.bridge.TestUtils.assertPost;
 import static org.sagebionetworks.bridge.TestUtils.mockRequestBody;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
 
 import java.util.List;
+import java.util.function.Consumer;
 import javax.servlet.http.HttpServletRequest;
 
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.google.common.collect.ImmutableList;
 import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.mockito.Spy;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import org.sagebionetworks.bridge.BridgeConstants;
 import org.sagebionetworks.bridge.Roles;
 import org.sagebionetworks.bridge.TestConstants;
+import org.sagebionetworks.bridge.exceptions.BadRequestException;
+import org.sagebionetworks.bridge.json.BridgeObjectMapper;
+import org.sagebionetworks.bridge.models.ForwardCursorPagedResourceList;
 import org.sagebionetworks.bridge.models.PagedResourceList;
 import org.sagebionetworks.bridge.models.StatusMessage;
 import org.sagebionetworks.bridge.models.accounts.UserSession;
@@ -36,6 +47,7 @@ import org.sagebionetworks.bridge.upload.UploadTableJob;
 import org.sagebionetworks.bridge.upload.UploadTableJobGuidHolder;
 import org.sagebionetworks.bridge.upload.UploadTableJobResult;
 import org.sagebionetworks.bridge.upload.UploadTableRow;
+import org.sagebionetworks.bridge.upload.UploadTableRowBatchResult;
 import org.sagebionetworks.bridge.upload.UploadTableRowQuery;
 
 public class UploadTableControllerTest {
@@ -77,7 +89,10 @@ public class UploadTableControllerTest {
         assertDelete(UploadTableController.class, "deleteUploadTableRowForSuperadmin");
         assertGet(UploadTableController.class, "getUploadTableRowForSuperadmin");
         assertPost(UploadTableController.class, "queryUploadTableRowsForWorker");
+        assertPost(UploadTableController.class, "queryUploadTableRowsByCursorForWorker");
+        assertPost(UploadTableController.class, "streamUploadTableRowsForWorker");
         assertPost(UploadTableController.class, "saveUploadTableRowForWorker");
+        assertPost(UploadTableController.class, "saveUploadTableRowsForWorker");
     }
 
     @Test
@@ -221,6 +236,96 @@ public class UploadTableControllerTest {
         assertEquals(capturedQuery.getAssessmentGuid(), TestConstants.ASSESSMENT_1_GUID);
     }
 
+    @Test
+    public void queryByCursor() throws Exception {
+        // Mock request.
+        UploadTableRowQuery query = new UploadTableRowQuery();
+        query.setOffsetKey("1525132800000:test-record");
+        query.setIncludeTotal(true);
+        mockRequestBody(mockRequest, query);
+
+        // Mock service.
+        ForwardCursorPagedResourceList<UploadTableRow> page = new ForwardCursorPagedResourceList<>(
+                ImmutableList.of(UploadTableRow.create()), null, true);
+        doReturn(page).when(mockSvc).queryUploadTableRowsByCursor(eq(TestConstants.TEST_APP_ID),
+                eq(TestConstants.TEST_STUDY_ID), any());
+
+        // Execute and verify.
+        ForwardCursorPagedResourceList<UploadTableRow> result = controller.queryUploadTableRowsByCursorForWorker(
+                TestConstants.TEST_APP_ID, TestConstants.TEST_STUDY_ID);
+        assertSame(result, page);
+        verify(controller).getAuthenticatedSession(Roles.WORKER);
+
+        ArgumentCaptor<UploadTableRowQuery> queryCaptor = ArgumentCaptor.forClass(UploadTableRowQuery.class);
+        verify(mockSvc).queryUploadTableRowsByCursor(eq(TestConstants.TEST_APP_ID), eq(TestConstants.TEST_STUDY_ID),
+                queryCaptor.capture());
+        UploadTableRowQuery capturedQuery = queryCaptor.getValue();
+        assertEquals(capturedQuery.getOffsetKey(), "1525132800000:test-record");
+        assertTrue(capturedQuery.getIncludeTotal());
+    }
+
+    @Test
+    public void stream() throws Exception {
+        // Mock request.
+        UploadTableRowQuery query = new UploadTableRowQuery();
+        query.setAssessmentGuid(TestConstants.ASSESSMENT_1_GUID);
+        mockRequestBody(mockRequest, query);
+
+        // Mock service. Pass two rows to the consumer.
+        doAnswer(invocation -> {
+            Consumer<UploadTableRow> consumer = invocation.getArgument(3);
+            consumer.accept(makeRow(RECORD_ID + 1));
+            consumer.accept(makeRow(RECORD_ID + 2));
+            return 2;
+        }).when(mockSvc).streamUploadTableRows(eq(TestConstants.TEST_APP_ID), eq(TestConstants.TEST_STUDY_ID), any(),
+                any());
+
+        // Execute and verify.
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        controller.streamUploadTableRowsForWorker(TestConstants.TEST_APP_ID, TestConstants.TEST_STUDY_ID, response);
+        verify(controller).getAuthenticatedSession(Roles.WORKER);
+        assertEquals(response.getContentType(), BridgeConstants.JSON_MIME_TYPE);
+
+        List<UploadTableRow> rows = BridgeObjectMapper.get().readValue(response.getContentAsString(),
+                new TypeReference<List<UploadTableRow>>() {});
+        assertEquals(rows.size(), 2);
+        assertEquals(rows.get(0).getRecordId(), RECORD_ID + 1);
+        assertEquals(rows.get(1).getRecordId(), RECORD_ID + 2);
+
+        ArgumentCaptor<UploadTableRowQuery> queryCaptor = ArgumentCaptor.forClass(UploadTableRowQuery.class);
+        verify(mockSvc).streamUploadTableRows(eq(TestConstants.TEST_APP_ID), eq(TestConstants.TEST_STUDY_ID),
+                queryCaptor.capture(), any());
+        assertEquals(queryCaptor.getValue().getAssessmentGuid(), TestConstants.ASSESSMENT_1_GUID);
+    }
+
+    @Test
+    public void stream_noRows() throws Exception {
+        mockRequestBody(mockRequest, new UploadTableRowQuery());
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        controller.streamUploadTableRowsForWorker(TestConstants.TEST_APP_ID, TestConstants.TEST_STUDY_ID, response);
+        assertEquals(response.getContentAsString(), "[]");
+    }
+
+    @Test
+    public void stream_invalidQuery() throws Exception {
+        mockRequestBody(mockRequest, new UploadTableRowQuery());
+        doThrow(new BadRequestException("Invalid offsetKey")).when(mockSvc).streamUploadTableRows(any(), any(),
+                any(), any());
+
+        // Nothing is written, so the error can be returned as usual.
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        try {
+            controller.streamUploadTableRowsForWorker(TestConstants.TEST_APP_ID, TestConstants.TEST_STUDY_ID,
+                    response);
+            fail("expected exception");
+        } catch (BadRequestException ex) {
+            // expected exception
+        }
+        assertEquals(response.getContentAsByteArray().length, 0);
+        assertFalse(response.isCommitted());
+    }
+
     @Test
     public void save() throws Exception {
         // Mock request. Since this is parsed from JSON, set one of the fields so we can verify it later.
@@ -240,4 +345,40 @@ public class UploadTableControllerTest {
         UploadTableRow capturedRow = rowCaptor.getValue();
         assertEquals(capturedRow.getAssessmentGuid(), TestConstants.ASSESSMENT_1_GUID);
     }
+
+    @Test
+    public void saveBatch() throws Exception {
+        // Mock request. Since this is parsed from JSON, set one of the fields so we can verify it later.
+        UploadTableRow row1 = UploadTableRow.create();
+        row1.setAssessmentGuid(TestConstants.ASSESSMENT_1_GUID);
+        UploadTableRow row2 = UploadTableRow.create();
+        row2.setAssessmentGuid(TestConstants.ASSESSMENT_2_GUID);
+        mockRequestBody(mockRequest, ImmutableList.of(row1, row2));
+
+        // Mock service.
+        UploadTableRowBatchResult svcResult = new UploadTableRowBatchResult();
+        doReturn(svcResult).when(mockSvc).saveUploadTableRows(eq(TestConstants.TEST_APP_ID),
+                eq(TestConstants.TEST_STUDY_ID), any());
+
+        // Execute and verify.
+        UploadTableRowBatchResult result = controller.saveUploadTableRowsForWorker(TestConstants.TEST_APP_ID,
+                TestConstants.TEST_STUDY_ID);
+        assertSame(result, svcResult);
+        verify(controller).getAuthenticatedSession(Roles.WORKER);
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<UploadTableRow>> rowsCaptor = ArgumentCaptor.forClass(List.class);
+        verify(mockSvc).saveUploadTableRows(eq(TestConstants.TEST_APP_ID), eq(TestConstants.TEST_STUDY_ID),
+                rowsCaptor.capture());
+        List<UploadTableRow> capturedRows = rowsCaptor.getValue();
+        assertEquals(capturedRows.size(), 2);
+        assertEquals(capturedRows.get(0).getAssessmentGuid(), TestConstants.ASSESSMENT_1_GUID);
+        assertEquals(capturedRows.get(1).getAssessmentGuid(), TestConstants.ASSESSMENT_2_GUID);
+    }
+
+    private static UploadTableRow makeRow(String recordId) {
+        UploadTableRow row = UploadTableRow.create();
+        row.setRecordId(recordId);
+        return row;
+    }
 }
@@ -0,0 +1,291 @@
+package org.sagebionetworks.bridge.spring.filters;
+
+import static org.sagebionetworks.bridge.BridgeConstants.JSON_MIME_TYPE;
+import static org.sagebionetworks.bridge.spring.filters.AdmissionControlFilter.CONFIG_KEY_ENABLED;
+import static org.sagebionetworks.bridge.spring.filters.AdmissionControlFilter.CONFIG_SUFFIX_MAX_CONCURRENT;
+import static org.sagebionetworks.bridge.spring.filters.AdmissionControlFilter.CONFIG_SUFFIX_MAX_QUEUE;
+import static org.sagebionetworks.bridge.spring.filters.AdmissionControlFilter.CONFIG_SUFFIX_MAX_WAIT_MILLIS;
+import static org.sagebionetworks.bridge.spring.filters.AdmissionControlFilter.CONFIG_SUFFIX_MIN_CONCURRENT;
+import static org.sagebionetworks.bridge.spring.filters.AdmissionControlFilter.CONFIG_SUFFIX_TARGET_LATENCY_MILLIS;
+import static org.sagebionetworks.bridge.spring.filters.AdmissionControlFilter.Priority.BULK;
+import static org.sagebionetworks.bridge.spring.filters.AdmissionControlFilter.Priority.CRITICAL;
+import static org.sagebionetworks.bridge.spring.filters.AdmissionControlFilter.Priority.NORMAL;
+import static org.sagebionetworks.bridge.spring.filters.AdmissionControlFilter.classify;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import javax.servlet.FilterChain;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import org.sagebionetworks.bridge.config.BridgeConfig;
+import org.sagebionetworks.bridge.json.BridgeObjectMapper;
+import org.sagebionetworks.bridge.spring.filters.AdmissionControlFilter.Priority;
+
+public class AdmissionControlFilterTest extends Mockito {
+
+    @Mock
+    BridgeConfig mockConfig;
+
+    @Mock
+    FilterChain mockFilterChain;
+
+    AdmissionControlFilter filter;
+
+    @BeforeMethod
+    public void beforeMethod() {
+        MockitoAnnotations.initMocks(this);
+
+        when(mockConfig.getProperty(CONFIG_KEY_ENABLED)).thenReturn("true");
+        for (Priority priority : Priority.values()) {
+            String prefix = priority.configPrefix();
+            when(mockConfig.getPropertyAsInt(prefix + CONFIG_SUFFIX_MIN_CONCURRENT)).thenReturn(1);
+            when(mockConfig.getPropertyAsInt(prefix + CONFIG_SUFFIX_MAX_CONCURRENT)).thenReturn(1);
+            when(mockConfig.getPropertyAsInt(prefix + CONFIG_SUFFIX_MAX_QUEUE)).thenReturn(0);
+            when(mockConfig.getPropertyAsInt(prefix + CONFIG_SUFFIX_MAX_WAIT_MILLIS)).thenReturn(0);
+            when(mockConfig.getPropertyAsInt(prefix + CONFIG_SUFFIX_TARGET_LATENCY_MILLIS)).thenReturn(0);
+        }
+
+        filter = new AdmissionControlFilter();
+        filter.setBridgeConfig(mockConfig);
+    }
+
+    @Test
+    public void classifyCriticalPaths() {
+        assertEquals(classify("/v3/auth/signIn"), CRITICAL);
+        assertEquals(classify("/v4/auth/signIn"), CRITICAL);
+        assertEquals(classify("/api/v1/auth/signIn"), CRITICAL);
+        assertEquals(classify("/v3/users/self"), CRITICAL);
+        assertEquals(classify("/v4/users/self/reports/foo"), CRITICAL);
+        assertEquals(classify("/v4/activities"), CRITICAL);
+        assertEquals(classify("/v3/uploads/uploadId/complete"), CRITICAL);
+        assertEquals(classify("/v5/studies/studyId/participants/self/timeline"), CRITICAL);
+        // A participant's own adherence records aren't a bulk report.
+        assertEquals(classify("/v5/studies/studyId/participants/self/adherence"), CRITICAL);
+    }
+
+    @Test
+    public void classifyBulkPaths() {
+        assertEquals(classify("/v5/studies/studyId/adherence/weekly"), BULK);
+        assertEquals(classify("/v5/studies/studyId/participants/userId/adherence/weekly"), BULK);
+        assertEquals(classify("/v1/apps/appId/studies/studyId/participants/userId/adherence/weekly"), BULK);
+        assertEquals(classify("/v3/reports/reportId"), BULK);
+        assertEquals(classify("/v3/participants/reports/reportId"), BULK);
+        assertEquals(classify("/v3/participants/userId/reports/reportId"), BULK);
+        assertEquals(classify("/v1/apps/appId/participants/userId/reports/reportId"), BULK);
+        assertEquals(classify("/v3/studies/studyId/reports/reportId"), BULK);
+        assertEquals(classify("/v1/apps/appId/studies/studyId/uploadtable/query"), BULK);
+    }
+
+    @Test
+    public void classifyNormalPaths() {
+        assertEquals(classify("/v3/participants"), NORMAL);
+        assertEquals(classify("/v5/studies/studyId/participants/userId/adherence"), NORMAL);
+        assertEquals(classify("/v1/apps/appId"), NORMAL);
+        assertEquals(classify(null), NORMAL);
+    }
+
+    @Test
+    public void admittedRequestRunsChain() throws Exception {
+        MockHttpServletRequest request = makeRequest("GET", "/v3/auth/signIn");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request, response, mockFilterChain);
+
+        verify(mockFilterChain).doFilter(request, response);
+        assertEquals(response.getStatus(), 200);
+
+        // The slot was released, so another request can run.
+        filter.doFilter(request, new MockHttpServletResponse(), mockFilterChain);
+        verify(mockFilterChain, times(2)).doFilter(eq(request), any());
+    }
+
+    @Test
+    public void slotIsReleasedWhenChainThrows() throws Exception {
+        MockHttpServletRequest request = makeRequest("GET", "/v3/auth/signIn");
+        doThrow(new IllegalStateException()).when(mockFilterChain).doFilter(any(), any());
+
+        try {
+            filter.doFilter(request, new MockHttpServletResponse(), mockFilterChain);
+        } catch (IllegalStateException ex) {
+            // expected
+        }
+
+        JsonNode metrics = filter.getMetrics();
+        assertEquals(metrics.get("critical").get("inFlight").intValue(), 0);
+    }
+
+    @Test
+    public void saturatedPriorityReturns503() throws Exception {
+        MockHttpServletRequest bulkRequest = makeRequest("GET", "/v3/reports/reportId");
+        MockHttpServletResponse secondResponse = new MockHttpServletResponse();
+
+        // While the first bulk request runs, a second one is turned away.
+        doAnswer(invocation -> {
+            filter.doFilter(bulkRequest, secondResponse, mock(FilterChain.class));
+            return null;
+        }).when(mockFilterChain).doFilter(any(), any());
+        filter.doFilter(bulkRequest, new MockHttpServletResponse(), mockFilterChain);
+
+        assertEquals(secondResponse.getStatus(), 503);
+        assertEquals(secondResponse.getHeader("Retry-After"),
+                String.valueOf(AdmissionControlFilter.RETRY_AFTER_SECONDS));
+        assertEquals(secondResponse.getContentType(), JSON_MIME_TYPE);
+
+        JsonNode payload = BridgeObjectMapper.get().readTree(secondResponse.getContentAsString());
+        assertEquals(payload.get("statusCode").intValue(), 503);
+        assertEquals(payload.get("message").textValue(), AdmissionControlFilter.TOO_BUSY_ERROR);
+        assertEquals(payload.get("type").textValue(), "ServiceUnavailableException");
+
+        JsonNode metrics = filter.getMetrics();
+        assertEquals(metrics.get("bulk").get("rejected").intValue(), 1);
+        assertEquals(metrics.get("bulk").get("inFlight").intValue(), 0);
+    }
+
+    @Test
+    public void saturatedPriorityDoesNotBlockOtherPriorities() throws Exception {
+        MockHttpServletRequest bulkRequest = makeRequest("GET", "/v3/reports/reportId");
+        MockHttpServletRequest criticalRequest = makeRequest("POST", "/v3/auth/signIn");
+        MockHttpServletResponse criticalResponse = new MockHttpServletResponse();
+        FilterChain criticalChain = mock(FilterChain.class);
+
+        doAnswer(invocation -> {
+            filter.doFilter(criticalRequest, criticalResponse, criticalChain);
+            return null;
+        }).when(mockFilterChain).doFilter(any(), any());
+        filter.doFilter(bulkRequest, new MockHttpServletResponse(), mockFilterChain);
+
+        verify(criticalChain).doFilter(criticalRequest, criticalResponse);
+        assertEquals(criticalResponse.getStatus(), 200);
+    }
+
+    @Test
+    public void optionsRequestsAreNotLimited() throws Exception {
+        MockHttpServletRequest request = makeRequest("OPTIONS", "/v3/reports/reportId");
+        MockHttpServletResponse secondResponse = new MockHttpServletResponse();
+        FilterChain secondChain = mock(FilterChain.class);
+
+        doAnswer(invocation -> {
+            filter.doFilter(request, secondResponse, secondChain);
+            return null;
+        }).when(mockFilterChain).doFilter(any(), any());
+        filter.doFilter(request, new MockHttpServletResponse(), mockFilterChain);
+
+        verify(secondChain).doFilter(request, secondResponse);
+        assertEquals(filter.getMetrics().get("bulk").get("rejected").intValue(), 0);
+    }
+
+    @Test
+    public void disabledFilterPassesThrough() throws Exception {
+        when(mockConfig.getProperty(CONFIG_KEY_ENABLED)).thenReturn("false");
+        filter.setBridgeConfig(mockConfig);
+
+        MockHttpServletRequest request = makeRequest("GET", "/v3/reports/reportId");
+        MockHttpServletResponse secondResponse = new MockHttpServletResponse();
+        FilterChain secondChain = mock(FilterChain.class);
+
+        doAnswer(invocation -> {
+            filter.doFilter(request, secondResponse, secondChain);
+            return null;
+        }).when(mockFilterChain).doFilter(any(), any());
+        filter.doFilter(request, new MockHttpServletResponse(), mockFilterChain);
+
+        verify(secondChain).doFilter(request, secondResponse);
+        assertNull(secondResponse.getHeader("Retry-After"));
+    }
+
+    @Test
+    public void getMetrics() {
+        JsonNode metrics = filter.getMetrics();
+
+        assertTrue(metrics.get("enabled").booleanValue());
+        for (String priority : new String[] { "critical", "normal", "bulk" }) {
+            JsonNode limiterNode = metrics.get(priority);
+            assertEquals(limiterNode.get("limit").intValue(), 1);
+            assertEquals(limiterNode.get("inFlight").intValue(), 0);
+            assertEquals(limiterNode.get("queued").intValue(), 0);
+            assertEquals(limiterNode.get("maxQueue").intValue(), 0);
+            assertEquals(limiterNode.get("rejected").intValue(), 0);
+            assertEquals(limiterNode.get("timedOut").intValue(), 0);
+        }
+    }
+
+    @Test
+    public void otherPrioritiesShareThreadsCriticalCannotUse() {
+        setLimits(CRITICAL, 40, 10);
+        setLimits(NORMAL, 60, 20);
+        setLimits(BULK, 20, 10);
+        filter.setBridgeConfig(mockConfig);
+        filter.setServerThreads(100);
+
+        // Critical requests keep all 50 of their threads. Normal and bulk requests want 110, so they're scaled down
+        // to fit in the other 50.
+        JsonNode metrics = filter.getMetrics();
+        assertLimits(metrics.get("critical"), 40, 10);
+        assertLimits(metrics.get("normal"), 27, 9);
+        assertLimits(metrics.get("bulk"), 9, 4);
+    }
+
+    @Test
+    public void criticalPriorityIsScaledToServerThreads() {
+        setLimits(CRITICAL, 40, 10);
+        setLimits(NORMAL, 60, 20);
+        setLimits(BULK, 20, 10);
+        filter.setBridgeConfig(mockConfig);
+        filter.setServerThreads(40);
+
+        // Critical requests get every thread. The others can still run one request each.
+        JsonNode metrics = filter.getMetrics();
+        assertLimits(metrics.get("critical"), 32, 8);
+        assertLimits(metrics.get("normal"), 1, 0);
+        assertLimits(metrics.get("bulk"), 1, 0);
+    }
+
+    @Test
+    public void prioritiesThatFitAreNotScaled() {
+        setLimits(CRITICAL, 60, 20);
+        setLimits(NORMAL, 50, 30);
+        setLimits(BULK, 20, 10);
+        filter.setBridgeConfig(mockConfig);
+        filter.setServerThreads(200);
+
+        JsonNode metrics = filter.getMetrics();
+        assertLimits(metrics.get("critical"), 60, 20);
+        assertLimits(metrics.get("normal"), 50, 30);
+        assertLimits(metrics.get("bulk"), 20, 10);
+    }
+
+    @Test
+    public void getMetricsDisabled() {
+        when(mockConfig.getProperty(CONFIG_KEY_ENABLED)).thenReturn(null);
+        filter.setBridgeConfig(mockConfig);
+
+        assertFalse(filter.getMetrics().get("enabled").booleanValue());
+    }
+
+    private void setLimits(Priority priority, int maxConcurrent, int maxQueue) {
+        String prefix = priority.configPrefix();
+        when(mockConfig.getPropertyAsInt(prefix + CONFIG_SUFFIX_MAX_CONCURRENT)).thenReturn(maxConcurrent);
+        when(mockConfig.getPropertyAsInt(prefix + CONFIG_SUFFIX_MAX_QUEUE)).thenReturn(maxQueue);
+    }
+
+    private static void assertLimits(JsonNode limiterNode, int limit, int maxQueue) {
+        assertEquals(limiterNode.get("limit").intValue(), limit);
+        assertEquals(limiterNode.get("maxQueue").intValue(), maxQueue);
+    }
+
+    private static MockHttpServletRequest makeRequest(String method, String path) {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, path);
+        request.setServletPath(path);
+        return request;
+    }
+}
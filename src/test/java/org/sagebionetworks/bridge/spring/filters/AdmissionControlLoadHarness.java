@@ -0,0 +1,154 @@
+package org.sagebionetworks.bridge.spring.filters;
+
+import static org.sagebionetworks.bridge.spring.filters.AdmissionControlFilter.CONFIG_KEY_ENABLED;
+import static org.sagebionetworks.bridge.spring.filters.AdmissionControlFilter.CONFIG_SUFFIX_MAX_CONCURRENT;
+import static org.sagebionetworks.bridge.spring.filters.AdmissionControlFilter.CONFIG_SUFFIX_MAX_QUEUE;
+import static org.sagebionetworks.bridge.spring.filters.AdmissionControlFilter.CONFIG_SUFFIX_MAX_WAIT_MILLIS;
+import static org.sagebionetworks.bridge.spring.filters.AdmissionControlFilter.CONFIG_SUFFIX_MIN_CONCURRENT;
+import static org.sagebionetworks.bridge.spring.filters.AdmissionControlFilter.CONFIG_SUFFIX_TARGET_LATENCY_MILLIS;
+import static org.sagebionetworks.bridge.spring.filters.AdmissionControlFilter.Priority.BULK;
+import static org.sagebionetworks.bridge.spring.filters.AdmissionControlFilter.Priority.CRITICAL;
+import static org.sagebionetworks.bridge.spring.filters.AdmissionControlFilter.Priority.NORMAL;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.servlet.FilterChain;
+
+import org.mockito.Mockito;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import org.sagebionetworks.bridge.config.BridgeConfig;
+import org.sagebionetworks.bridge.spring.filters.AdmissionControlFilter.Priority;
+import org.sagebionetworks.bridge.util.LatencyHistogram;
+
+/**
+ * Shows that participants' sign ins keep their latency while researchers overload the server with reports. It
+ * simulates a server with a fixed number of request threads (like Tomcat's), shared by:
+ *
+ * - many researcher clients, each requesting a slow report over and over, backing off briefly when turned away; and
+ * - a few participant clients, each signing in over and over.
+ *
+ * Every request goes through an {@link AdmissionControlFilter}; the reports and sign ins themselves just sleep. It
+ * runs once with admission control disabled and once enabled, and prints each kind of request's latency (including
+ * the time spent waiting for a request thread) and how many were turned away. It needs no database or network, and
+ * isn't run with the unit tests. To run it:
+ *
+ * mvn test-compile exec:java -Dexec.classpathScope=test
+ *     -Dexec.mainClass=org.sagebionetworks.bridge.spring.filters.AdmissionControlLoadHarness
+ */
+public class AdmissionControlLoadHarness {
+    private static final int SERVER_THREADS = 40;
+    private static final int RESEARCHER_CLIENTS = 200;
+    private static final int PARTICIPANT_CLIENTS = 10;
+    private static final long REPORT_MILLIS = 500L;
+    private static final long SIGN_IN_MILLIS = 10L;
+    private static final long BACKOFF_MILLIS = 100L;
+    private static final long RUN_MILLIS = 15_000L;
+
+    private static final String REPORT_PATH = "/v5/studies/studyId/adherence/weekly";
+    private static final String SIGN_IN_PATH = "/v3/auth/signIn";
+
+    public static void main(String[] args) throws Exception {
+        run(false);
+        run(true);
+    }
+
+    private static void run(boolean enabled) throws Exception {
+        AdmissionControlFilter filter = new AdmissionControlFilter();
+        filter.setBridgeConfig(makeConfig(enabled));
+        filter.setServerThreads(SERVER_THREADS);
+
+        // The server's request threads. Requests wait in this executor's queue the way they wait in Tomcat's.
+        ExecutorService server = Executors.newFixedThreadPool(SERVER_THREADS);
+        ExecutorService clients = Executors.newFixedThreadPool(RESEARCHER_CLIENTS + PARTICIPANT_CLIENTS);
+
+        LatencyHistogram reportLatency = new LatencyHistogram();
+        LatencyHistogram signInLatency = new LatencyHistogram();
+        AtomicLong reportsShed = new AtomicLong();
+        AtomicLong signInsShed = new AtomicLong();
+
+        long endMillis = System.currentTimeMillis() + RUN_MILLIS;
+        List<Future<?>> clientFutures = new ArrayList<>();
+        for (int i = 0; i < RESEARCHER_CLIENTS; i++) {
+            clientFutures.add(clients.submit(() -> runClient(filter, server, REPORT_PATH, REPORT_MILLIS, endMillis,
+                    reportLatency, reportsShed)));
+        }
+        for (int i = 0; i < PARTICIPANT_CLIENTS; i++) {
+            clientFutures.add(clients.submit(() -> runClient(filter, server, SIGN_IN_PATH, SIGN_IN_MILLIS, endMillis,
+                    signInLatency, signInsShed)));
+        }
+        for (Future<?> oneFuture : clientFutures) {
+            oneFuture.get();
+        }
+        clients.shutdown();
+        server.shutdown();
+
+        System.out.println("Admission control " + (enabled ? "enabled" : "disabled") + ":");
+        print("  sign in", signInLatency, signInsShed.get());
+        print("  report ", reportLatency, reportsShed.get());
+    }
+
+    private static Void runClient(AdmissionControlFilter filter, ExecutorService server, String path,
+            long workMillis, long endMillis, LatencyHistogram latency, AtomicLong shed) throws Exception {
+        FilterChain chain = (request, response) -> sleep(workMillis);
+        while (System.currentTimeMillis() < endMillis) {
+            MockHttpServletRequest request = new MockHttpServletRequest("GET", path);
+            request.setServletPath(path);
+            MockHttpServletResponse response = new MockHttpServletResponse();
+
+            long startNanos = System.nanoTime();
+            server.submit(() -> {
+                filter.doFilter(request, response, chain);
+                return null;
+            }).get();
+            if (response.getStatus() == 503) {
+                shed.incrementAndGet();
+                sleep(BACKOFF_MILLIS);
+            } else {
+                latency.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+        return null;
+    }
+
+    private static BridgeConfig makeConfig(boolean enabled) {
+        BridgeConfig config = Mockito.mock(BridgeConfig.class);
+        Mockito.when(config.getProperty(CONFIG_KEY_ENABLED)).thenReturn(String.valueOf(enabled));
+        // Scaled down from BridgeServer2.conf to fit the simulated server's threads.
+        setLimits(config, CRITICAL, 5, 10, 5, 2000, 0);
+        setLimits(config, NORMAL, 5, 10, 5, 1000, 2000);
+        setLimits(config, BULK, 2, 6, 4, 500, 1000);
+        return config;
+    }
+
+    private static void setLimits(BridgeConfig config, Priority priority, int min, int max, int queue,
+            int waitMillis, int targetMillis) {
+        String prefix = priority.configPrefix();
+        Mockito.when(config.getPropertyAsInt(prefix + CONFIG_SUFFIX_MIN_CONCURRENT)).thenReturn(min);
+        Mockito.when(config.getPropertyAsInt(prefix + CONFIG_SUFFIX_MAX_CONCURRENT)).thenReturn(max);
+        Mockito.when(config.getPropertyAsInt(prefix + CONFIG_SUFFIX_MAX_QUEUE)).thenReturn(queue);
+        Mockito.when(config.getPropertyAsInt(prefix + CONFIG_SUFFIX_MAX_WAIT_MILLIS)).thenReturn(waitMillis);
+        Mockito.when(config.getPropertyAsInt(prefix + CONFIG_SUFFIX_TARGET_LATENCY_MILLIS)).thenReturn(targetMillis);
+    }
+
+    private static void print(String label, LatencyHistogram latency, long shed) {
+        System.out.println(String.format("%s: %,d served (p50 %.1f ms, p99 %.1f ms, max %.1f ms), %,d turned away",
+                label, latency.getCount(), latency.getPercentileMillis(0.5), latency.getPercentileMillis(0.99),
+                latency.getMaxMillis(), shed));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
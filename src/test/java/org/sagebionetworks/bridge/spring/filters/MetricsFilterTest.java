@@ -7,8 +7,10 @@ import static org.sagebionetworks.bridge.TestConstants.TIMESTAMP;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
 
 import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
@@ -24,10 +26,13 @@ import org.sagebionetworks.bridge.models.accounts.UserSession;
 import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
+import org.springframework.web.servlet.HandlerMapping;
 
 import org.sagebionetworks.bridge.RequestContext;
 import org.sagebionetworks.bridge.TestConstants;
 import org.sagebionetworks.bridge.models.Metrics;
+import org.sagebionetworks.bridge.services.CallBudgetService;
+import org.sagebionetworks.bridge.services.RouteMetricsService;
 
 public class MetricsFilterTest extends Mockito {
 
@@ -40,6 +45,12 @@ public class MetricsFilterTest extends Mockito {
     @Mock
     private FilterChain mockFilterChain;
     
+    @Mock
+    private RouteMetricsService mockRouteMetricsService;
+
+    @Mock
+    private CallBudgetService mockCallBudgetService;
+    
     @InjectMocks
     private MetricsFilter filter = new MetricsFilter();
 
@@ -123,4 +134,47 @@ public class MetricsFilterTest extends Mockito {
         
         assertEquals("5.6.7.8", node.get("remote_address").textValue());
     }
+
+    @Test
+    public void recordsRouteMetrics() throws Exception {
+        when(mockRequest.getMethod()).thenReturn("GET");
+        when(mockRequest.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE))
+                .thenReturn("/v3/participants/{userId}");
+        when(mockRequest.getContentLengthLong()).thenReturn(-1L);
+        when(mockResponse.getHeader("Content-Length")).thenReturn("1024");
+        when(mockResponse.getStatus()).thenReturn(200);
+        
+        filter.doFilter(mockRequest, mockResponse, mockFilterChain);
+        
+        verify(mockRouteMetricsService).record(eq("GET"), eq("/v3/participants/{userId}"), eq(200), anyLong(),
+                eq(-1L), eq(1024L));
+    }
+    
+    @Test
+    public void recordsRouteMetricsOnException() throws Exception {
+        when(mockRequest.getMethod()).thenReturn("POST");
+        doThrow(new ServletException()).when(mockFilterChain).doFilter(mockRequest, mockResponse);
+        
+        try {
+            filter.doFilter(mockRequest, mockResponse, mockFilterChain);
+            fail("Should have thrown exception");
+        } catch (ServletException e) {
+            // expected
+        }
+        
+        verify(mockRouteMetricsService).record(eq("POST"), isNull(), eq(500), anyLong(), eq(0L), eq(-1L));
+        verify(mockCallBudgetService).checkBudget(eq("POST"), isNull(), any());
+    }
+
+    @Test
+    public void checksCallBudget() throws Exception {
+        when(mockRequest.getMethod()).thenReturn("GET");
+        when(mockRequest.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE))
+                .thenReturn("/v3/participants/{userId}");
+
+        filter.doFilter(mockRequest, mockResponse, mockFilterChain);
+
+        verify(mockCallBudgetService).checkBudget("GET", "/v3/participants/{userId}",
+                RequestContext.get().getMetrics());
+    }
 }
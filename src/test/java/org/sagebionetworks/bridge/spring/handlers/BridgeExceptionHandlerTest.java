@@ -44,6 +44,7 @@ import org.sagebionetworks.bridge.dynamodb.DynamoApp;
 import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
 import org.sagebionetworks.bridge.exceptions.ConsentRequiredException;
 import org.sagebionetworks.bridge.exceptions.InvalidEntityException;
+import org.sagebionetworks.bridge.exceptions.ServiceUnavailableException;
 import org.sagebionetworks.bridge.models.accounts.SharingScope;
 import org.sagebionetworks.bridge.models.accounts.StudyParticipant;
 import org.sagebionetworks.bridge.models.accounts.UserSession;
@@ -282,4 +283,29 @@ public class BridgeExceptionHandlerTest extends Mockito {
         assertEquals(node.get("message").textValue(), "Required request parameter 'myParam' is missing");
         assertEquals(node.get("type").textValue(), "BadRequestException");
     }
+
+    @Test
+    public void serviceUnavailableExceptionReportsRetryAfter() throws Throwable {
+        ServiceUnavailableException ex = new ServiceUnavailableException("Too busy", 5);
+
+        ResponseEntity<String> response = handler.handleException(mockRequest, ex);
+        JsonNode node = new ObjectMapper().readTree(response.getBody());
+
+        assertEquals(response.getStatusCodeValue(), 503);
+        assertEquals(response.getHeaders().getFirst("Retry-After"), "5");
+        assertEquals(node.get("statusCode").intValue(), 503);
+        assertEquals(node.get("message").textValue(), "Too busy");
+        assertEquals(node.get("type").textValue(), "ServiceUnavailableException");
+        verify(logger).info(contains(ex.getMessage()));
+    }
+
+    @Test
+    public void serviceUnavailableExceptionWithoutRetryAfter() throws Throwable {
+        ServiceUnavailableException ex = new ServiceUnavailableException("Down");
+
+        ResponseEntity<String> response = handler.handleException(mockRequest, ex);
+
+        assertEquals(response.getStatusCodeValue(), 503);
+        assertFalse(response.getHeaders().containsKey("Retry-After"));
+    }
 }
@@ -0,0 +1,61 @@
+package org.sagebionetworks.bridge.spring.util;
+
+import static org.sagebionetworks.bridge.RequestContext.NULL_INSTANCE;
+import static org.testng.Assert.assertEquals;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.Signature;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import org.sagebionetworks.bridge.RequestContext;
+import org.sagebionetworks.bridge.dao.AppDao;
+import org.sagebionetworks.bridge.models.Metrics;
+
+public class DaoMetricsComponentTest extends Mockito {
+
+    @Mock
+    ProceedingJoinPoint mockJoinPoint;
+
+    @Mock
+    Signature mockSignature;
+
+    DaoMetricsComponent component;
+
+    @BeforeMethod
+    public void beforeMethod() throws Throwable {
+        MockitoAnnotations.initMocks(this);
+        when(mockJoinPoint.getSignature()).thenReturn(mockSignature);
+        when(mockSignature.getDeclaringType()).thenReturn(AppDao.class);
+        when(mockSignature.getName()).thenReturn("getApp");
+        when(mockJoinPoint.proceed()).thenReturn("result");
+
+        component = new DaoMetricsComponent();
+    }
+
+    @AfterMethod
+    public void afterMethod() {
+        RequestContext.set(NULL_INSTANCE);
+    }
+
+    @Test
+    public void countsDaoCalls() throws Throwable {
+        Metrics metrics = new Metrics("request-id");
+        RequestContext.set(new RequestContext.Builder().withMetrics(metrics).build());
+
+        assertEquals(component.countDaoCall(mockJoinPoint), "result");
+        assertEquals(component.countDaoCall(mockJoinPoint), "result");
+
+        assertEquals(metrics.getJson().get("dao_calls").get("AppDao.getApp").intValue(), 2);
+    }
+
+    @Test
+    public void noMetricsOutsideOfRequest() throws Throwable {
+        assertEquals(component.countDaoCall(mockJoinPoint), "result");
+        verify(mockJoinPoint, never()).getSignature();
+    }
+}
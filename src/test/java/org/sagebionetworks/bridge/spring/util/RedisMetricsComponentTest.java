@@ -0,0 +1,53 @@
+package org.sagebionetworks.bridge.spring.util;
+
+import static org.sagebionetworks.bridge.RequestContext.NULL_INSTANCE;
+import static org.sagebionetworks.bridge.models.Metrics.BACKEND_REDIS;
+import static org.testng.Assert.assertEquals;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import org.sagebionetworks.bridge.RequestContext;
+import org.sagebionetworks.bridge.TestUtils;
+
+public class RedisMetricsComponentTest extends Mockito {
+
+    @Mock
+    ProceedingJoinPoint mockJoinPoint;
+
+    RedisMetricsComponent component;
+
+    @BeforeMethod
+    public void beforeMethod() throws Throwable {
+        MockitoAnnotations.initMocks(this);
+        when(mockJoinPoint.proceed()).thenReturn("result");
+
+        component = new RedisMetricsComponent();
+    }
+
+    @AfterMethod
+    public void afterMethod() {
+        RequestContext.set(NULL_INSTANCE);
+    }
+
+    @Test
+    public void countsRedisCalls() throws Throwable {
+        TestUtils.countBackendCalls();
+
+        assertEquals(component.countRedisCall(mockJoinPoint), "result");
+        assertEquals(component.countRedisCall(mockJoinPoint), "result");
+
+        TestUtils.assertBackendCallCount(BACKEND_REDIS, 2);
+    }
+
+    @Test
+    public void noMetricsOutsideOfRequest() throws Throwable {
+        assertEquals(component.countRedisCall(mockJoinPoint), "result");
+        verify(mockJoinPoint).proceed();
+    }
+}
@@ -0,0 +1,37 @@
+package org.sagebionetworks.bridge.upload;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.testng.annotations.Test;
+
+import org.sagebionetworks.bridge.json.BridgeObjectMapper;
+
+public class UploadTableRowBatchResultTest {
+    @Test
+    public void serialize() {
+        // Start with Java object.
+        UploadTableRowBatchResult result = new UploadTableRowBatchResult();
+        result.setSavedCount(2);
+        result.setErrors(ImmutableMap.of("1", ImmutableMap.of("recordId", ImmutableList.of("recordId is required"))));
+
+        // Convert to JSON.
+        JsonNode jsonNode = BridgeObjectMapper.get().convertValue(result, JsonNode.class);
+        assertEquals(jsonNode.size(), 3);
+        assertEquals(jsonNode.get("savedCount").intValue(), 2);
+        assertEquals(jsonNode.get("errors").get("1").get("recordId").get(0).textValue(), "recordId is required");
+        assertEquals(jsonNode.get("type").textValue(), "UploadTableRowBatchResult");
+
+        // We never parse this from JSON, so we don't need to test deserialization.
+    }
+
+    @Test
+    public void nullErrorsAreEmpty() {
+        UploadTableRowBatchResult result = new UploadTableRowBatchResult();
+        result.setErrors(null);
+        assertTrue(result.getErrors().isEmpty());
+    }
+}
@@ -20,7 +20,9 @@ public class UploadTableRowQueryTest {
                 "   \"endTime\":\"2018-05-02T00:00:00.000Z\",\n" +
                 "   \"includeTestData\":true,\n" +
                 "   \"start\":10,\n" +
-                "   \"pageSize\":50\n" +
+                "   \"offsetKey\":\"1525132800000:test-record\",\n" +
+                "   \"pageSize\":50,\n" +
+                "   \"includeTotal\":true\n" +
                 "}";
 
         UploadTableRowQuery query = BridgeObjectMapper.get().readValue(jsonText, UploadTableRowQuery.class);
@@ -31,6 +33,8 @@ public class UploadTableRowQueryTest {
         assertEquals(query.getEndTime().toString(), "2018-05-02T00:00:00.000Z");
         assertTrue(query.getIncludeTestData());
         assertEquals(query.getStart().intValue(), 10);
+        assertEquals(query.getOffsetKey(), "1525132800000:test-record");
         assertEquals(query.getPageSize().intValue(), 50);
+        assertTrue(query.getIncludeTotal());
     }
 }
@@ -0,0 +1,185 @@
+package org.sagebionetworks.bridge.util;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class AdaptiveConcurrencyLimiterTest {
+    // Fake clock for limiters whose limit changes, so tests control when calls start and finish.
+    AtomicLong nanos;
+
+    @BeforeMethod
+    public void beforeMethod() {
+        nanos = new AtomicLong();
+    }
+
+    @Test
+    public void acquiresUpToLimit() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 2, 0, 1000);
+
+        assertTrue(limiter.tryAcquire(0));
+        assertTrue(limiter.tryAcquire(0));
+        assertFalse(limiter.tryAcquire(0));
+        assertEquals(limiter.getInFlight(), 2);
+        assertEquals(limiter.getRejected(), 1L);
+
+        limiter.release(10, MILLISECONDS);
+        assertTrue(limiter.tryAcquire(0));
+    }
+
+    @Test
+    public void rejectsWhenQueueIsFull() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 1, 0, 1000);
+        assertTrue(limiter.tryAcquire(0));
+
+        // No room to wait, so the call is turned away without waiting.
+        long startMillis = System.currentTimeMillis();
+        assertFalse(limiter.tryAcquire(10_000));
+        assertTrue(System.currentTimeMillis() - startMillis < 5_000);
+        assertEquals(limiter.getRejected(), 1L);
+        assertEquals(limiter.getTimedOut(), 0L);
+    }
+
+    @Test
+    public void timesOutAtDeadline() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 1, 1, 1000);
+        assertTrue(limiter.tryAcquire(0));
+
+        assertFalse(limiter.tryAcquire(20));
+        assertEquals(limiter.getTimedOut(), 1L);
+        assertEquals(limiter.getRejected(), 0L);
+        assertEquals(limiter.getQueued(), 0);
+    }
+
+    @Test
+    public void waiterIsAdmittedWhenCallFinishes() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 1, 1, 1000);
+        assertTrue(limiter.tryAcquire(0));
+
+        Thread releaser = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            limiter.release(10, MILLISECONDS);
+        });
+        releaser.start();
+
+        assertTrue(limiter.tryAcquire(10_000));
+        releaser.join();
+        assertEquals(limiter.getInFlight(), 1);
+        assertEquals(limiter.getQueued(), 0);
+    }
+
+    @Test
+    public void slowCallsShrinkLimitToMinimum() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = makeLimiter(5, 10, 0, 100);
+
+        assertTrue(limiter.tryAcquire(0));
+        releaseAfter(limiter, 200);
+        assertEquals(limiter.getLimit(), (int) (10 * AdaptiveConcurrencyLimiter.DECREASE_FACTOR));
+
+        // Each of these calls starts after the last decrease.
+        for (int i = 0; i < 20; i++) {
+            assertTrue(limiter.tryAcquire(0));
+            releaseAfter(limiter, 200);
+        }
+        assertEquals(limiter.getLimit(), 5);
+    }
+
+    @Test
+    public void slowCallsFromBeforeDecreaseShrinkLimitOnce() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = makeLimiter(1, 10, 0, 100);
+
+        // Five calls run at once and are all slow.
+        for (int i = 0; i < 5; i++) {
+            assertTrue(limiter.tryAcquire(0));
+        }
+        nanos.addAndGet(MILLISECONDS.toNanos(200));
+        for (int i = 0; i < 5; i++) {
+            limiter.release(200, MILLISECONDS);
+        }
+        assertEquals(limiter.getLimit(), 9);
+
+        // A call that starts after the decrease and is still slow shrinks it again.
+        assertTrue(limiter.tryAcquire(0));
+        releaseAfter(limiter, 200);
+        assertEquals(limiter.getLimit(), 8);
+    }
+
+    @Test
+    public void fastCallsWhileFullGrowLimitToMaximum() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = makeLimiter(1, 3, 0, 100);
+        // Shrink the limit to 1.
+        for (int i = 0; i < 20; i++) {
+            assertTrue(limiter.tryAcquire(0));
+            releaseAfter(limiter, 200);
+        }
+        assertEquals(limiter.getLimit(), 1);
+
+        // A call that finishes in time while the limiter is full grows the limit.
+        assertTrue(limiter.tryAcquire(0));
+        limiter.release(10, MILLISECONDS);
+        assertEquals(limiter.getLimit(), 2);
+
+        for (int i = 0; i < 20; i++) {
+            int limit = limiter.getLimit();
+            for (int j = 0; j < limit; j++) {
+                assertTrue(limiter.tryAcquire(0));
+            }
+            for (int j = 0; j < limit; j++) {
+                limiter.release(10, MILLISECONDS);
+            }
+        }
+        assertEquals(limiter.getLimit(), 3);
+    }
+
+    @Test
+    public void fastCallsWhileNotFullKeepLimit() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = makeLimiter(1, 10, 0, 100);
+        assertTrue(limiter.tryAcquire(0));
+        releaseAfter(limiter, 200);
+        assertEquals(limiter.getLimit(), 9);
+
+        assertTrue(limiter.tryAcquire(0));
+        limiter.release(10, MILLISECONDS);
+        assertEquals(limiter.getLimit(), 9);
+    }
+
+    @Test
+    public void zeroTargetKeepsLimitFixed() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 4, 0, 0);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(limiter.tryAcquire(0));
+            limiter.release(60_000, MILLISECONDS);
+        }
+        assertEquals(limiter.getLimit(), 4);
+    }
+
+    @Test
+    public void limitsAreClamped() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 0, -1, 100);
+        assertEquals(limiter.getLimit(), 1);
+        assertEquals(limiter.getMaxQueue(), 0);
+    }
+
+    private AdaptiveConcurrencyLimiter makeLimiter(int minLimit, int maxLimit, int maxQueue, long targetMillis) {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(minLimit, maxLimit, maxQueue,
+                targetMillis);
+        limiter.setNanoClock(nanos::get);
+        return limiter;
+    }
+
+    // Finishes a call that took the given time, which ends now.
+    private void releaseAfter(AdaptiveConcurrencyLimiter limiter, long millis) {
+        nanos.addAndGet(MILLISECONDS.toNanos(millis));
+        limiter.release(millis, MILLISECONDS);
+    }
+}
@@ -0,0 +1,81 @@
+package org.sagebionetworks.bridge.util;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Set;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.testng.annotations.Test;
+
+public class BulkDownloadUtilTest {
+    @Test
+    public void parseDefaults() throws Exception {
+        BulkDownloadUtil.Options options = BulkDownloadUtil.Options.parse(new String[] { "key1", "key2" });
+        assertEquals(options.threads, BulkDownloadUtil.DEFAULT_THREADS);
+        assertEquals(options.maxInFlightBytes, BulkDownloadUtil.DEFAULT_MAX_IN_FLIGHT_BYTES);
+        assertNull(options.checkpointFile);
+        assertEquals(options.s3Keys, ImmutableSet.of("key1", "key2"));
+    }
+
+    @Test
+    public void parseOptions() throws Exception {
+        File keysFile = File.createTempFile("keys", ".txt");
+        keysFile.deleteOnExit();
+        Files.write(keysFile.toPath(), ImmutableList.of("key2", "", "key3"), UTF_8);
+
+        BulkDownloadUtil.Options options = BulkDownloadUtil.Options.parse(new String[] { "--threads", "8",
+                "--max-in-flight-bytes", "1000000", "--checkpoint", "checkpoint.txt", "key1", "--keys-file",
+                keysFile.getAbsolutePath() });
+        assertEquals(options.threads, 8);
+        assertEquals(options.maxInFlightBytes, 1000000L);
+        assertEquals(options.checkpointFile.getName(), "checkpoint.txt");
+        assertEquals(options.s3Keys, ImmutableSet.of("key1", "key2", "key3"));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void parseInvalidThreads() throws Exception {
+        BulkDownloadUtil.Options.parse(new String[] { "--threads", "0", "key1" });
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void parseMissingValue() throws Exception {
+        BulkDownloadUtil.Options.parse(new String[] { "key1", "--threads" });
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void parseUnknownOption() throws Exception {
+        BulkDownloadUtil.Options.parse(new String[] { "--bogus", "value", "key1" });
+    }
+
+    @Test
+    public void readCheckpoint() throws Exception {
+        File checkpointFile = File.createTempFile("checkpoint", ".txt");
+        checkpointFile.deleteOnExit();
+        Files.write(checkpointFile.toPath(), ImmutableList.of("upload1", " upload2 ", ""), UTF_8);
+
+        Set<String> completed = BulkDownloadUtil.readCheckpoint(checkpointFile);
+        assertEquals(completed, ImmutableSet.of("upload1", "upload2"));
+    }
+
+    @Test
+    public void readCheckpointMissingFile() throws Exception {
+        assertTrue(BulkDownloadUtil.readCheckpoint(null).isEmpty());
+        assertTrue(BulkDownloadUtil.readCheckpoint(new File("does-not-exist-checkpoint.txt")).isEmpty());
+    }
+
+    @Test
+    public void progressSummary() {
+        BulkDownloadUtil.Progress progress = new BulkDownloadUtil.Progress(3);
+        progress.record(true, 1024);
+        progress.record(false, 2048);
+
+        String summary = progress.summary();
+        assertTrue(summary.startsWith("Processed 2/3 uploads (1 succeeded, 1 failed)"), summary);
+    }
+}
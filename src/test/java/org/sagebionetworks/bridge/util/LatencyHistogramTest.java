@@ -0,0 +1,72 @@
+package org.sagebionetworks.bridge.util;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void empty() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        assertEquals(histogram.getCount(), 0L);
+        assertEquals(histogram.getMeanMillis(), 0.0);
+        assertEquals(histogram.getMaxMillis(), 0.0);
+        assertEquals(histogram.getPercentileMillis(0.99), 0.0);
+    }
+
+    @Test
+    public void bucketsCoverAllValues() {
+        // Every value falls into a bucket whose bounds include it.
+        long previousUpperBound = -1L;
+        for (int i = 0; i < LatencyHistogram.BUCKET_COUNT; i++) {
+            long upperBound = LatencyHistogram.bucketUpperBound(i);
+            assertEquals(LatencyHistogram.bucketIndex(previousUpperBound + 1), i);
+            assertEquals(LatencyHistogram.bucketIndex(upperBound), i);
+            previousUpperBound = upperBound;
+        }
+        assertEquals(LatencyHistogram.bucketIndex(Long.MAX_VALUE), LatencyHistogram.BUCKET_COUNT - 1);
+    }
+
+    @Test
+    public void bucketErrorIsBounded() {
+        for (long micros = 16; micros < 100_000_000L; micros = micros * 3 / 2) {
+            long upperBound = LatencyHistogram.bucketUpperBound(LatencyHistogram.bucketIndex(micros));
+            assertTrue(upperBound >= micros);
+            assertTrue(upperBound <= micros * 1.125, "error too large for " + micros);
+        }
+    }
+
+    @Test
+    public void percentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i, TimeUnit.MILLISECONDS);
+        }
+
+        assertEquals(histogram.getCount(), 100L);
+        assertEquals(histogram.getMeanMillis(), 50.5);
+        assertEquals(histogram.getMaxMillis(), 100.0);
+        assertInRange(histogram.getPercentileMillis(0.5), 50.0);
+        assertInRange(histogram.getPercentileMillis(0.9), 90.0);
+        assertInRange(histogram.getPercentileMillis(0.99), 99.0);
+        assertEquals(histogram.getPercentileMillis(1.0), 100.0);
+    }
+
+    @Test
+    public void negativeDurationIsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5, TimeUnit.NANOSECONDS);
+
+        assertEquals(histogram.getCount(), 1L);
+        assertEquals(histogram.getMaxMillis(), 0.0);
+    }
+
+    private static void assertInRange(double actual, double expected) {
+        assertTrue(actual >= expected && actual <= expected * 1.125, "expected ~" + expected + " but was " + actual);
+    }
+}
@@ -93,6 +93,15 @@ public class UploadTableRowQueryValidatorTest {
                 "must be non-negative");
     }
 
+    @Test
+    public void offsetKeyWithStart() {
+        UploadTableRowQuery query = makeValidQuery();
+        query.setStart(0);
+        query.setOffsetKey("1525132800000:test-record");
+        assertValidatorMessage(UploadTableRowQueryValidator.INSTANCE, query, "offsetKey",
+                "cannot be specified with start");
+    }
+
     @Test
     public void pageSizeTooSmall() {
         UploadTableRowQuery query = makeValidQuery();